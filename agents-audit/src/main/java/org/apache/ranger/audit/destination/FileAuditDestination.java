@@ -19,10 +19,8 @@
 
 package org.apache.ranger.audit.destination;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
-import java.io.PrintWriter;
+import java.io.FileOutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
@@ -33,6 +31,8 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ranger.audit.model.AuditEventBase;
 import org.apache.ranger.audit.provider.MiscUtil;
+import org.apache.ranger.audit.serializer.AuditFileFormat;
+import org.apache.ranger.audit.serializer.AuditFileWriter;
 
 /**
  * This class write the logs to local file
@@ -53,7 +53,9 @@ public class FileAuditDestination extends AuditDestination {
 	boolean initDone = false;
 
 	private File logFolder;
-	PrintWriter logWriter = null;
+	private AuditFileFormat auditFileFormat = null;
+	AuditFileWriter logWriter = null;
+	private long lastSyncTime = 0;
 
 	private Date fileCreateTime = null;
 
@@ -101,6 +103,8 @@ public class FileAuditDestination extends AuditDestination {
 		logger.info("logFileNameFormat=" + logFileNameFormat + ", destName="
 				+ getName());
 
+		auditFileFormat = new AuditFileFormat(props, propPrefix);
+
 		initDone = true;
 	}
 
@@ -116,14 +120,21 @@ public class FileAuditDestination extends AuditDestination {
 		}
 
 		try {
-			PrintWriter out = getLogFileStream();
+			AuditFileWriter out = getLogFileStream();
 			for (String event : events) {
-				out.println(event);
+				out.write(event);
+			}
+			// events of a partly filled block are written to the file only periodically
+			if (System.currentTimeMillis() - lastSyncTime >= auditFileFormat.getSyncIntervalMS()) {
+				out.sync();
+				lastSyncTime = System.currentTimeMillis();
+			} else {
+				out.flush();
 			}
-			out.flush();
 		} catch (Throwable t) {
 			addDeferredCount(events.size());
 			logError("Error writing to log file.", t);
+			closeLogWriter();
 			return false;
 		}
 		addSuccessCount(events.size());
@@ -147,7 +158,7 @@ public class FileAuditDestination extends AuditDestination {
 		List<String> jsonList = new ArrayList<String>();
 		for (AuditEventBase event : events) {
 			try {
-				jsonList.add(MiscUtil.stringify(event));
+				jsonList.add(auditFileFormat != null ? auditFileFormat.getSerializer().serialize(event) : MiscUtil.stringify(event));
 			} catch (Throwable t) {
 				addTotalCount(1);
 				addFailedCount(1);
@@ -173,21 +184,12 @@ public class FileAuditDestination extends AuditDestination {
 	@Override
 	synchronized public void stop() {
 		isStopped = true;
-		if (logWriter != null) {
-			try {
-				logWriter.flush();
-				logWriter.close();
-			} catch (Throwable t) {
-				logger.error("Error on closing log writter. Exception will be ignored. name="
-						+ getName() + ", fileName=" + currentFileName);
-			}
-			logWriter = null;
-		}
+		closeLogWriter();
 		logStatus();
 	}
 
 	// Helper methods in this class
-	synchronized private PrintWriter getLogFileStream() throws Exception {
+	synchronized private AuditFileWriter getLogFileStream() throws Exception {
 		closeFileIfNeeded();
 
 		// Either there are no open log file or the previous one has been rolled
@@ -222,13 +224,14 @@ public class FileAuditDestination extends AuditDestination {
 				logger.info("Creating new file. destName=" + getName()
 						+ ", fileName=" + fileName);
 				// Open the file
-				logWriter = new PrintWriter(new BufferedWriter(new FileWriter(
-						outLogFile)));
+				logWriter = auditFileFormat.createWriter(new FileOutputStream(
+						outLogFile));
 			} else {
-				logWriter = new PrintWriter(new BufferedWriter(new FileWriter(
-						outLogFile, true)));
+				logWriter = auditFileFormat.createWriter(new FileOutputStream(
+						outLogFile, true));
 			}
 			fileCreateTime = new Date();
+			lastSyncTime = fileCreateTime.getTime();
 			currentFileName = outLogFile.getPath();
 		}
 		return logWriter;
@@ -241,15 +244,20 @@ public class FileAuditDestination extends AuditDestination {
 		if (System.currentTimeMillis() - fileCreateTime.getTime() > fileRolloverSec * 1000) {
 			logger.info("Closing file. Rolling over. name=" + getName()
 					+ ", fileName=" + currentFileName);
+			closeLogWriter();
+			currentFileName = null;
+		}
+	}
+
+	synchronized private void closeLogWriter() {
+		if (logWriter != null) {
 			try {
-				logWriter.flush();
 				logWriter.close();
 			} catch (Throwable t) {
 				logger.error("Error on closing log writter. Exception will be ignored. name="
 						+ getName() + ", fileName=" + currentFileName);
 			}
 			logWriter = null;
-			currentFileName = null;
 		}
 	}
 
@@ -21,7 +21,6 @@ package org.apache.ranger.audit.destination;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.net.URI;
 import java.security.PrivilegedExceptionAction;
 import java.util.*;
@@ -35,6 +34,8 @@ import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.ranger.audit.model.AuditEventBase;
 import org.apache.ranger.audit.provider.MiscUtil;
+import org.apache.ranger.audit.serializer.AuditFileFormat;
+import org.apache.ranger.audit.serializer.AuditFileWriter;
 import org.apache.ranger.audit.utils.RollingTimeUtil;
 
 /**
@@ -60,8 +61,11 @@ public class HDFSAuditDestination extends AuditDestination {
 
 	private String logFolder;
 
-	private PrintWriter logWriter = null;
+	private AuditFileFormat auditFileFormat = null;
+
+	private AuditFileWriter logWriter = null;
 	volatile FSDataOutputStream ostream = null; // output stream wrapped in logWriter
+	private long lastSyncTime = 0;
 
 	private String currentFileName;
 
@@ -125,6 +129,9 @@ public class HDFSAuditDestination extends AuditDestination {
 			rollOverByDuration = true;
 			nextRollOverTime = rollOverByDuration();
 		}
+
+		auditFileFormat = new AuditFileFormat(props, propPrefix);
+
 		initDone = true;
 	}
 
@@ -143,37 +150,30 @@ public class HDFSAuditDestination extends AuditDestination {
 			return false;
 		}
 
-		PrintWriter out = null;
+		AuditFileWriter out = null;
 		try {
 			if (logger.isDebugEnabled()) {
 				logger.debug("UGI=" + MiscUtil.getUGILoginUser()
 						+ ". Will write to HDFS file=" + currentFileName);
 			}
 
-			out = MiscUtil.executePrivilegedAction(new PrivilegedExceptionAction<PrintWriter>() {
+			out = MiscUtil.executePrivilegedAction(new PrivilegedExceptionAction<AuditFileWriter>() {
 				@Override
-				public PrintWriter run()  throws Exception {
-					PrintWriter out = getLogFileStream();
+				public AuditFileWriter run()  throws Exception {
+					AuditFileWriter out = getLogFileStream();
 					for (String event : events) {
-						out.println(event);
+						out.write(event);
 					}
+					out.flush();
 					return out;
 				};
 			});
-
-			// flush and check the stream for errors
-			if (out.checkError()) {
-				// In theory, this count may NOT be accurate as part of the messages may have been successfully written.
-				// However, in practice, since client does buffering, either all of none would succeed.
-				addDeferredCount(events.size());
-				out.close();
-				logWriter = null;
-				ostream = null;
-				return false;
-			}
 		} catch (Throwable t) {
+			// In theory, this count may NOT be accurate as part of the messages may have been successfully written.
+			// However, in practice, since client does buffering, either all of none would succeed.
 			addDeferredCount(events.size());
 			logError("Error writing to log file.", t);
+			closeLogWriter();
 			return false;
 		} finally {
 			logger.info("Flushing HDFS audit. Event Size:" + events.size());
@@ -191,12 +191,17 @@ public class HDFSAuditDestination extends AuditDestination {
 		if (ostream != null) {
 			try {
 				synchronized (this) {
-					if (ostream != null)
-						// 1) PrinterWriter does not have bufferring of its own so
-						// we need to flush its underlying stream
+					if (ostream != null) {
+						// events of a partly filled block are written to the stream only periodically
+						if (logWriter != null && System.currentTimeMillis() - lastSyncTime >= auditFileFormat.getSyncIntervalMS()) {
+							logWriter.sync();
+							lastSyncTime = System.currentTimeMillis();
+						}
+						// 1) logJSON() flushes logWriter to its underlying stream
 						// 2) HDFS flush() does not really flush all the way to disk.
 						ostream.hflush();
 						logger.info("Flush HDFS audit logs completed.....");
+					}
 				}
 			} catch (IOException e) {
 				logger.error("Error on flushing log writer: " + e.getMessage() +
@@ -223,7 +228,7 @@ public class HDFSAuditDestination extends AuditDestination {
 		List<String> jsonList = new ArrayList<String>();
 		for (AuditEventBase event : events) {
 			try {
-				jsonList.add(MiscUtil.stringify(event));
+				jsonList.add(auditFileFormat != null ? auditFileFormat.getSerializer().serialize(event) : MiscUtil.stringify(event));
 			} catch (Throwable t) {
 				logger.error("Error converting to JSON. event=" + event);
 				addTotalCount(1);
@@ -249,22 +254,12 @@ public class HDFSAuditDestination extends AuditDestination {
 	@Override
 	synchronized public void stop() {
 		isStopped = true;
-		if (logWriter != null) {
-			try {
-				logWriter.flush();
-				logWriter.close();
-			} catch (Throwable t) {
-				logger.error("Error on closing log writter. Exception will be ignored. name="
-						+ getName() + ", fileName=" + currentFileName);
-			}
-			logWriter = null;
-			ostream = null;
-		}
+		closeLogWriter();
 		logStatus();
 	}
 
 	// Helper methods in this class
-	synchronized private PrintWriter getLogFileStream() throws Exception {
+	synchronized private AuditFileWriter getLogFileStream() throws Exception {
 		closeFileIfNeeded();
 
 		// Either there are no open log file or the previous one has been rolled
@@ -304,7 +299,8 @@ public class HDFSAuditDestination extends AuditDestination {
 			// Create the file to write
 			logger.info("Creating new log file. hdfPath=" + fullPath);
 			ostream = fileSystem.create(hdfPath);
-			logWriter = new PrintWriter(ostream);
+			logWriter = auditFileFormat.createWriter(ostream);
+			lastSyncTime = System.currentTimeMillis();
 			currentFileName = fullPath;
 		}
 		return logWriter;
@@ -345,16 +341,7 @@ public class HDFSAuditDestination extends AuditDestination {
 		if ( System.currentTimeMillis() > nextRollOverTime.getTime() ) {
 			logger.info("Closing file. Rolling over. name=" + getName()
 				+ ", fileName=" + currentFileName);
-			try {
-				logWriter.flush();
-				logWriter.close();
-			} catch (Throwable t) {
-				logger.error("Error on closing log writter. Exception will be ignored. name="
-						+ getName() + ", fileName=" + currentFileName);
-			}
-
-			logWriter = null;
-			ostream = null;
+			closeLogWriter();
 			currentFileName = null;
 
 			if (!rollOverByDuration) {
@@ -373,6 +360,19 @@ public class HDFSAuditDestination extends AuditDestination {
 		}
 	}
 
+	synchronized private void closeLogWriter() {
+		if (logWriter != null) {
+			try {
+				logWriter.close();
+			} catch (Throwable t) {
+				logger.error("Error on closing log writter. Exception will be ignored. name="
+						+ getName() + ", fileName=" + currentFileName);
+			}
+			logWriter = null;
+			ostream = null;
+		}
+	}
+
 	private  Date rollOverByDuration() {
 		long rollOverTime = rollingTimeUtil.computeNextRollingTime(fileRolloverSec,nextRollOverTime);
 		return new Date(rollOverTime);
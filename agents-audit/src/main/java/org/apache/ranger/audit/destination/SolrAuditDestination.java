@@ -34,14 +34,27 @@ import org.apache.solr.client.solrj.impl.LBHttpSolrClient;
 import org.apache.solr.client.solrj.response.UpdateResponse;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.cloud.ClusterState;
+import org.apache.solr.common.cloud.DocCollection;
+import org.apache.solr.common.cloud.Slice;
+import org.apache.solr.common.cloud.ZkStateReader;
 
 import java.lang.reflect.Field;
 import java.security.PrivilegedExceptionAction;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 public class SolrAuditDestination extends AuditDestination {
@@ -52,29 +65,83 @@ public class SolrAuditDestination extends AuditDestination {
 	public static final String PROP_SOLR_ZK = "zookeepers";
 	public static final String PROP_SOLR_COLLECTION = "collection";
 	public static final String PROP_SOLR_FORCE_USE_INMEMORY_JAAS_CONFIG = "force.use.inmemory.jaas.config";
+	public static final String PROP_SOLR_MAX_INFLIGHT_REQUESTS = "request.max.inflight";
+	public static final String PROP_SOLR_REQUEST_MIN_DOCS = "request.docs.min";
+	public static final String PROP_SOLR_REQUEST_MAX_DOCS = "request.docs.max";
+	public static final String PROP_SOLR_REQUEST_TARGET_LATENCY_MS = "request.latency.target.ms";
+	public static final String PROP_SOLR_REQUEST_MAX_RETRIES = "request.max.retries";
+	public static final String PROP_SOLR_REQUEST_RETRY_BACKOFF_MS = "request.retry.backoff.ms";
 
 	public static final String DEFAULT_COLLECTION_NAME = "ranger_audits";
 	public static final String PROP_JAVA_SECURITY_AUTH_LOGIN_CONFIG = "java.security.auth.login.config";
 
 	private volatile SolrClient solrClient = null;
 
+	private final SolrAuditMetrics metrics = new SolrAuditMetrics();
+
+	private int maxInFlightRequests = 4;
+	private int requestMinDocs = 100;
+	private int requestMaxDocs = 1000;
+	private long requestTargetLatencyMs = 2000;
+	private int requestMaxRetries = 2;
+	private long requestRetryBackoffMs = 500;
+	private volatile int requestDocs = requestMaxDocs; // adjusted by observed latency and rejections
+	private ExecutorService senderPool = null;
+	private volatile boolean isStopped = false;
+
 	public SolrAuditDestination() {
 	}
 
+	// for tests, with a Solr stand-in
+	SolrAuditDestination(SolrClient solrClient) {
+		this.solrClient = solrClient;
+	}
+
 	@Override
 	public void init(Properties props, String propPrefix) {
 		LOG.info("init() called");
 		super.init(props, propPrefix);
 		init();
+		initRequestConfig();
 		connect();
 	}
 
 	@Override
 	public void stop() {
 		super.stop();
+
+		isStopped = true;
+
+		ExecutorService pool = senderPool;
+
+		if (pool != null) {
+			senderPool = null;
+
+			pool.shutdown();
+
+			try {
+				if (!pool.awaitTermination(30, TimeUnit.SECONDS)) {
+					LOG.warn("Solr audit requests didn't complete in 30 seconds. name=" + getName());
+				}
+			} catch (InterruptedException excp) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
 		logStatus();
 	}
 
+	@Override
+	public void logStatus() {
+		super.logStatus();
+
+		LOG.info("Solr Audit Metrics: name=" + getName() + ", requestDocs=" + requestDocs + ", " + metrics);
+	}
+
+	public SolrAuditMetrics getMetrics() {
+		return metrics;
+	}
+
 	synchronized void connect() {
 		SolrClient me = solrClient;
 		if (me == null) {
@@ -198,6 +265,13 @@ public class SolrAuditDestination extends AuditDestination {
 
     }
 
+	/*
+	 * Sends the events in update requests of at most requestDocs documents; with SolrCloud, each request has documents
+	 * of a single shard. Up to maxInFlightRequests requests are sent concurrently. Requests that fail with an I/O error,
+	 * or are rejected by Solr as overloaded, are retried; if they still fail, false is returned so that the upstream
+	 * queue spools the batch and sends it again later. Resending documents already indexed is harmless, as each
+	 * document is identified by the event id.
+	 */
 	@Override
 	public boolean log(Collection<AuditEventBase> events) {
 		boolean ret = false;
@@ -214,26 +288,59 @@ public class SolrAuditDestination extends AuditDestination {
 				}
 			}
 
-			final Collection<SolrInputDocument> docs = new ArrayList<SolrInputDocument>();
+			final List<AuditEventBase>    eventList = new ArrayList<AuditEventBase>(events.size());
+			final List<SolrInputDocument> docs      = new ArrayList<SolrInputDocument>(events.size());
 			for (AuditEventBase event : events) {
 				AuthzAuditEvent authzEvent = (AuthzAuditEvent) event;
 				// Convert AuditEventBase to Solr document
 				SolrInputDocument document = toSolrDoc(authzEvent);
+				eventList.add(event);
 				docs.add(document);
 			}
-			try {
-				final UpdateResponse response = SolrAppUtil.addDocsToSolr(solrClient, docs);
 
-				if (response.getStatus() != 0) {
-					addFailedCount(events.size());
-					logFailedEvent(events, response.toString());
-				} else {
-					addSuccessCount(events.size());
-					ret = true;
+			List<SolrUpdateRequest> requests = createRequests(eventList, docs);
+			ExecutorService         pool     = senderPool;
+
+			if (requests.size() == 1 || pool == null) {
+				for (SolrUpdateRequest request : requests) {
+					request.call();
+				}
+			} else {
+				List<Future<SolrUpdateRequest>> futures = new ArrayList<Future<SolrUpdateRequest>>(requests.size());
+
+				for (SolrUpdateRequest request : requests) {
+					futures.add(pool.submit(request));
+				}
+
+				for (Future<SolrUpdateRequest> future : futures) {
+					future.get();
+				}
+			}
+
+			ret = true;
+
+			for (SolrUpdateRequest request : requests) {
+				switch (request.status) {
+					case SENT:
+						addSuccessCount(request.events.size());
+						break;
+
+					case FAILED:
+						ret = false;
+						addFailedCount(request.events.size());
+						if (request.error != null) {
+							logFailedEvent(request.events, request.error);
+						} else {
+							logFailedEvent(request.events, request.response.toString());
+						}
+						break;
+
+					default:
+						ret = false;
+						addDeferredCount(request.events.size());
+						logError("Error sending message to Solr", request.error);
+						break;
 				}
-			} catch (SolrException ex) {
-				addFailedCount(events.size());
-				logFailedEvent(events, ex);
 			}
 		} catch (Throwable t) {
 			addDeferredCount(events.size());
@@ -285,6 +392,229 @@ public class SolrAuditDestination extends AuditDestination {
 		return true;
 	}
 
+	private void initRequestConfig() {
+		maxInFlightRequests = Math.max(1, MiscUtil.getIntProperty(props, propPrefix + "." + PROP_SOLR_MAX_INFLIGHT_REQUESTS, maxInFlightRequests));
+		requestMaxDocs = Math.max(1, MiscUtil.getIntProperty(props, propPrefix + "." + PROP_SOLR_REQUEST_MAX_DOCS, requestMaxDocs));
+		requestMinDocs = Math.max(1, Math.min(requestMaxDocs, MiscUtil.getIntProperty(props, propPrefix + "." + PROP_SOLR_REQUEST_MIN_DOCS, requestMinDocs)));
+		requestTargetLatencyMs = MiscUtil.getLongProperty(props, propPrefix + "." + PROP_SOLR_REQUEST_TARGET_LATENCY_MS, requestTargetLatencyMs);
+		requestMaxRetries = Math.max(0, MiscUtil.getIntProperty(props, propPrefix + "." + PROP_SOLR_REQUEST_MAX_RETRIES, requestMaxRetries));
+		requestRetryBackoffMs = MiscUtil.getLongProperty(props, propPrefix + "." + PROP_SOLR_REQUEST_RETRY_BACKOFF_MS, requestRetryBackoffMs);
+		requestDocs = requestMaxDocs;
+
+		if (maxInFlightRequests > 1) {
+			senderPool = Executors.newFixedThreadPool(maxInFlightRequests, new ThreadFactory() {
+				private final AtomicInteger threadCount = new AtomicInteger();
+
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "SolrAuditDestination-" + getName() + "-" + threadCount.incrementAndGet());
+
+					thread.setDaemon(true);
+
+					return thread;
+				}
+			});
+		}
+
+		LOG.info("Solr requests: maxInFlight=" + maxInFlightRequests + ", minDocs=" + requestMinDocs + ", maxDocs=" + requestMaxDocs
+				+ ", targetLatencyMs=" + requestTargetLatencyMs + ", maxRetries=" + requestMaxRetries + ", retryBackoffMs=" + requestRetryBackoffMs);
+	}
+
+	private List<SolrUpdateRequest> createRequests(List<AuditEventBase> events, List<SolrInputDocument> docs) {
+		int                        maxDocs       = requestDocs;
+		DocCollection              docCollection = getDocCollection();
+		Map<String, List<Integer>> shardDocs     = new LinkedHashMap<String, List<Integer>>();
+		List<SolrUpdateRequest>    ret           = new ArrayList<SolrUpdateRequest>();
+
+		for (int i = 0; i < docs.size(); i++) {
+			String        shardName = getShardName(docCollection, docs.get(i));
+			List<Integer> indexes   = shardDocs.get(shardName);
+
+			if (indexes == null) {
+				indexes = new ArrayList<Integer>();
+
+				shardDocs.put(shardName, indexes);
+			}
+
+			indexes.add(i);
+		}
+
+		for (List<Integer> indexes : shardDocs.values()) {
+			int     requestCount   = (indexes.size() + maxDocs - 1) / maxDocs;
+			int     docsPerRequest = (indexes.size() + requestCount - 1) / requestCount; // spread evenly across requests
+			boolean isSizeLimited  = indexes.size() >= maxDocs; // requests are smaller than maxDocs when spread evenly
+
+			for (int start = 0; start < indexes.size(); start += docsPerRequest) {
+				int                     end         = Math.min(start + docsPerRequest, indexes.size());
+				List<AuditEventBase>    chunkEvents = new ArrayList<AuditEventBase>(end - start);
+				List<SolrInputDocument> chunkDocs   = new ArrayList<SolrInputDocument>(end - start);
+
+				for (int idx : indexes.subList(start, end)) {
+					chunkEvents.add(events.get(idx));
+					chunkDocs.add(docs.get(idx));
+				}
+
+				ret.add(new SolrUpdateRequest(chunkEvents, chunkDocs, isSizeLimited));
+			}
+		}
+
+		return ret;
+	}
+
+	// collection to route documents by, when connected to SolrCloud
+	private DocCollection getDocCollection() {
+		DocCollection ret = null;
+		SolrClient    me  = solrClient;
+
+		if (me instanceof CloudSolrClient) {
+			try {
+				CloudSolrClient cloudClient   = (CloudSolrClient) me;
+				ZkStateReader   zkStateReader = cloudClient.getZkStateReader(); // null until the client connects, on the first request
+				ClusterState    clusterState  = zkStateReader != null ? zkStateReader.getClusterState() : null;
+
+				if (clusterState != null && cloudClient.getDefaultCollection() != null) {
+					ret = clusterState.getCollectionOrNull(cloudClient.getDefaultCollection());
+				}
+			} catch (Throwable t) {
+				logError("Unable to get Solr collection state. Documents will not be grouped by shard", t);
+			}
+		}
+
+		return ret;
+	}
+
+	private String getShardName(DocCollection docCollection, SolrInputDocument doc) {
+		String ret = "";
+
+		if (docCollection != null) {
+			Object id = doc.getFieldValue("id");
+
+			if (id != null) {
+				try {
+					Slice slice = docCollection.getRouter().getTargetSlice(id.toString(), doc, null, null, docCollection);
+
+					if (slice != null) {
+						ret = slice.getName();
+					}
+				} catch (Throwable t) {
+					// let CloudSolrClient route the document
+				}
+			}
+		}
+
+		return ret;
+	}
+
+	// isSizeLimited: whether the request size limited the number of documents sent in the request
+	private void onRequestComplete(boolean isSizeLimited, long latencyMs) {
+		if (latencyMs > requestTargetLatencyMs) {
+			decreaseRequestDocs();
+		} else if (latencyMs < requestTargetLatencyMs / 2 && isSizeLimited) {
+			synchronized (metrics) {
+				int docs = requestDocs;
+
+				requestDocs = Math.min(requestMaxDocs, docs + Math.max(1, docs / 4));
+			}
+		}
+	}
+
+	private void decreaseRequestDocs() {
+		synchronized (metrics) {
+			requestDocs = Math.max(requestMinDocs, requestDocs / 2);
+		}
+	}
+
+	// 429 (too many requests) and 503 (service unavailable) from an overloaded or recovering Solr
+	private static boolean isRejected(SolrException excp) {
+		return excp.code() == 429 || excp.code() == SolrException.ErrorCode.SERVICE_UNAVAILABLE.code;
+	}
+
+	enum SolrRequestStatus { PENDING, SENT, FAILED, DEFERRED }
+
+	class SolrUpdateRequest implements Callable<SolrUpdateRequest> {
+		final List<AuditEventBase>    events;
+		final List<SolrInputDocument> docs;
+		final boolean                 isSizeLimited;
+		SolrRequestStatus             status   = SolrRequestStatus.PENDING;
+		UpdateResponse                response = null;
+		Throwable                     error    = null;
+
+		SolrUpdateRequest(List<AuditEventBase> events, List<SolrInputDocument> docs, boolean isSizeLimited) {
+			this.events        = events;
+			this.docs          = docs;
+			this.isSizeLimited = isSizeLimited;
+		}
+
+		@Override
+		public SolrUpdateRequest call() {
+			for (int attempt = 0; ; attempt++) {
+				boolean isRetriable = false;
+				long    startTime   = System.nanoTime();
+
+				metrics.recordRequestStart();
+
+				try {
+					response = SolrAppUtil.addDocsToSolr(solrClient, docs);
+
+					long latencyNanos = System.nanoTime() - startTime;
+
+					metrics.recordRequestEnd(docs.size(), latencyNanos, response.getStatus() == 0);
+
+					if (response.getStatus() == 0) {
+						status = SolrRequestStatus.SENT;
+
+						onRequestComplete(isSizeLimited, TimeUnit.NANOSECONDS.toMillis(latencyNanos));
+					} else {
+						status = SolrRequestStatus.FAILED;
+
+						metrics.recordFailed();
+					}
+				} catch (SolrException excp) {
+					metrics.recordRequestEnd(docs.size(), System.nanoTime() - startTime, false);
+
+					error = excp;
+
+					if (isRejected(excp)) {
+						metrics.recordRejected();
+
+						decreaseRequestDocs();
+
+						isRetriable = true;
+						status      = SolrRequestStatus.DEFERRED;
+					} else {
+						metrics.recordFailed();
+
+						status = SolrRequestStatus.FAILED;
+					}
+				} catch (Throwable t) { // connection errors, timeouts
+					metrics.recordRequestEnd(docs.size(), System.nanoTime() - startTime, false);
+
+					decreaseRequestDocs();
+
+					error       = t;
+					isRetriable = true;
+					status      = SolrRequestStatus.DEFERRED;
+				}
+
+				if (!isRetriable || attempt >= requestMaxRetries || isStopped) {
+					break;
+				}
+
+				metrics.recordRetry();
+
+				try {
+					Thread.sleep(requestRetryBackoffMs * (attempt + 1));
+				} catch (InterruptedException excp) {
+					Thread.currentThread().interrupt();
+
+					break;
+				}
+			}
+
+			return this;
+		}
+	}
+
 	private void init() {
 		LOG.info("==>SolrAuditDestination.init()" );
 		try {
@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.destination;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of the update requests sent by SolrAuditDestination, updated by
+ * the sender threads without locking.
+ */
+public class SolrAuditMetrics {
+	private final LongAdder     documentsSent        = new LongAdder();
+	private final LongAdder     requestCount         = new LongAdder();
+	private final LongAdder     requestLatencyNanos  = new LongAdder();
+	private final AtomicLong    maxRequestLatency    = new AtomicLong();
+	private final AtomicInteger inFlightRequests     = new AtomicInteger();
+	private final AtomicLong    maxInFlightRequests  = new AtomicLong();
+	private final LongAdder     retryCount           = new LongAdder();
+	private final LongAdder     rejectedRequestCount = new LongAdder();
+	private final LongAdder     failedRequestCount   = new LongAdder();
+
+	public void recordRequestStart() {
+		updateMax(maxInFlightRequests, inFlightRequests.incrementAndGet());
+	}
+
+	public void recordRequestEnd(int docCount, long latencyNanos, boolean isSent) {
+		inFlightRequests.decrementAndGet();
+		requestCount.increment();
+		requestLatencyNanos.add(latencyNanos);
+
+		updateMax(maxRequestLatency, latencyNanos);
+
+		if (isSent) {
+			documentsSent.add(docCount);
+		}
+	}
+
+	public void recordRetry() {
+		retryCount.increment();
+	}
+
+	public void recordRejected() {
+		rejectedRequestCount.increment();
+	}
+
+	public void recordFailed() {
+		failedRequestCount.increment();
+	}
+
+	public long getDocumentsSent() {
+		return documentsSent.sum();
+	}
+
+	public long getRequestCount() {
+		return requestCount.sum();
+	}
+
+	public long getAvgRequestLatencyNanos() {
+		long count = requestCount.sum();
+
+		return count == 0 ? 0 : requestLatencyNanos.sum() / count;
+	}
+
+	public long getMaxRequestLatencyNanos() {
+		return maxRequestLatency.get();
+	}
+
+	public int getInFlightRequests() {
+		return inFlightRequests.get();
+	}
+
+	public long getMaxInFlightRequests() {
+		return maxInFlightRequests.get();
+	}
+
+	public long getRetryCount() {
+		return retryCount.sum();
+	}
+
+	public long getRejectedRequestCount() {
+		return rejectedRequestCount.sum();
+	}
+
+	public long getFailedRequestCount() {
+		return failedRequestCount.sum();
+	}
+
+	@Override
+	public String toString() {
+		return "documentsSent=" + getDocumentsSent()
+				+ ", requests=" + getRequestCount()
+				+ ", avgRequestLatencyNanos=" + getAvgRequestLatencyNanos()
+				+ ", maxRequestLatencyNanos=" + getMaxRequestLatencyNanos()
+				+ ", inFlightRequests=" + getInFlightRequests()
+				+ ", maxInFlightRequests=" + getMaxInFlightRequests()
+				+ ", retries=" + getRetryCount()
+				+ ", rejectedRequests=" + getRejectedRequestCount()
+				+ ", failedRequests=" + getFailedRequestCount();
+	}
+
+	private static void updateMax(AtomicLong max, long value) {
+		long curr = max.get();
+
+		while (value > curr && !max.compareAndSet(curr, value)) {
+			curr = max.get();
+		}
+	}
+}
@@ -39,6 +39,7 @@ import org.apache.ranger.audit.provider.solr.SolrAuditProvider;
 import org.apache.ranger.audit.queue.AuditAsyncQueue;
 import org.apache.ranger.audit.queue.AuditBatchQueue;
 import org.apache.ranger.audit.queue.AuditQueue;
+import org.apache.ranger.audit.queue.AuditRingBufferQueue;
 import org.apache.ranger.audit.queue.AuditSummaryQueue;
 
 /*
@@ -256,8 +257,10 @@ public class AuditProviderFactory {
 
 			if (!isAuditFileCacheProviderEnabled) {
 				// Create the AsysnQueue
-				AuditAsyncQueue asyncQueue = new AuditAsyncQueue(consumer);
 				propPrefix = BaseAuditHandler.PROP_DEFAULT_PREFIX + "." + "async";
+				boolean useRingBuffer = MiscUtil.getBooleanProperty(props,
+						propPrefix + "." + "ringbuffer" + "." + "enabled", false);
+				AuditQueue asyncQueue = useRingBuffer ? new AuditRingBufferQueue(consumer) : new AuditAsyncQueue(consumer);
 				asyncQueue.init(props, propPrefix);
 				asyncQueue.setParentPath(componentAppType);
 				mProvider = asyncQueue;
@@ -450,6 +453,8 @@ public class AuditProviderFactory {
 				provider = new AuditBatchQueue(consumer);
 			} else if (providerName.equals("async")) {
 				provider = new AuditAsyncQueue(consumer);
+			} else if (providerName.equals("ringbuffer")) {
+				provider = new AuditRingBufferQueue(consumer);
 			} else {
 				LOG.error("Provider name doesn't have any class associated with it. providerName="
 						+ providerName + ", propertyPrefix=" + propPrefix);
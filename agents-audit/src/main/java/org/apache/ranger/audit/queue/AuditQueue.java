@@ -52,6 +52,9 @@ public abstract class AuditQueue extends BaseAuditHandler {
 	public static final String PROP_FILE_SPOOL_ENABLE = "filespool.enable";
 	public static final String PROP_FILE_SPOOL_WAIT_FOR_FULL_DRAIN = "filespool.drain.full.wait.ms";
 	public static final String PROP_FILE_SPOOL_QUEUE_THRESHOLD = "filespool.drain.threshold.percent";
+	public static final String PROP_FILE_SPOOL_TYPE = "filespool.type";
+
+	public static final String FILE_SPOOL_TYPE_SEGMENTED = "segmented";
 
 	final protected AuditHandler consumer;
 	protected AuditFileSpool fileSpooler = null;
@@ -111,7 +114,13 @@ public abstract class AuditQueue extends BaseAuditHandler {
 			fileSpoolDrainThresholdPercent = MiscUtil.getIntProperty(props,
 					propPrefix + "." + PROP_FILE_SPOOL_QUEUE_THRESHOLD,
 					fileSpoolDrainThresholdPercent);
-			fileSpooler = new AuditFileSpool(this, consumer);
+			String fileSpoolType = MiscUtil.getStringProperty(props, propPrefix
+					+ "." + PROP_FILE_SPOOL_TYPE);
+			if (FILE_SPOOL_TYPE_SEGMENTED.equalsIgnoreCase(fileSpoolType)) {
+				fileSpooler = new AuditSegmentedFileSpool(this, consumer);
+			} else {
+				fileSpooler = new AuditFileSpool(this, consumer);
+			}
 			if (!fileSpooler.init(props, basePropertyName)) {
 				fileSpoolerEnabled = false;
 				LOG.fatal("Couldn't initialize file spooler. Disabling it. queue="
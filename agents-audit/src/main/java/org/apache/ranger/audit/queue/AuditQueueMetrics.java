@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.queue;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of an audit queue, updated by the threads that log audit events
+ * without locking.
+ */
+public class AuditQueueMetrics {
+	private final LongAdder  enqueuedCount       = new LongAdder();
+	private final LongAdder  enqueueLatencyNanos = new LongAdder();
+	private final AtomicLong maxEnqueueLatency   = new AtomicLong();
+	private final AtomicLong maxDepth            = new AtomicLong();
+	private final LongAdder  droppedCount        = new LongAdder();
+	private final LongAdder  spilledCount        = new LongAdder();
+	private final LongAdder  summarizedCount     = new LongAdder();
+
+	public void recordEnqueue(long latencyNanos, int depth) {
+		enqueuedCount.increment();
+		enqueueLatencyNanos.add(latencyNanos);
+
+		updateMax(maxEnqueueLatency, latencyNanos);
+		updateMax(maxDepth, depth);
+	}
+
+	public void recordDropped() {
+		droppedCount.increment();
+	}
+
+	public void recordSpilled() {
+		spilledCount.increment();
+	}
+
+	public void recordSummarized() {
+		summarizedCount.increment();
+	}
+
+	public long getEnqueuedCount() {
+		return enqueuedCount.sum();
+	}
+
+	public long getAvgEnqueueLatencyNanos() {
+		long count = enqueuedCount.sum();
+
+		return count == 0 ? 0 : enqueueLatencyNanos.sum() / count;
+	}
+
+	public long getMaxEnqueueLatencyNanos() {
+		return maxEnqueueLatency.get();
+	}
+
+	public long getMaxDepth() {
+		return maxDepth.get();
+	}
+
+	public long getDroppedCount() {
+		return droppedCount.sum();
+	}
+
+	public long getSpilledCount() {
+		return spilledCount.sum();
+	}
+
+	public long getSummarizedCount() {
+		return summarizedCount.sum();
+	}
+
+	@Override
+	public String toString() {
+		return "enqueued=" + getEnqueuedCount()
+				+ ", avgEnqueueLatencyNanos=" + getAvgEnqueueLatencyNanos()
+				+ ", maxEnqueueLatencyNanos=" + getMaxEnqueueLatencyNanos()
+				+ ", maxDepth=" + getMaxDepth()
+				+ ", dropped=" + getDroppedCount()
+				+ ", spilled=" + getSpilledCount()
+				+ ", summarized=" + getSummarizedCount();
+	}
+
+	private static void updateMax(AtomicLong max, long value) {
+		long curr = max.get();
+
+		while (value > curr && !max.compareAndSet(curr, value)) {
+			curr = max.get();
+		}
+	}
+}
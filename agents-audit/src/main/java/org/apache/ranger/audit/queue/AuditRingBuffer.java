@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.queue;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, lock-free queue backed by an array. Each slot has a sequence
+ * number that tells whether the slot is ready to be written or read, so
+ * producers and consumers only contend on a compare-and-set of the tail and
+ * the head respectively. Any thread can poll, which lets a producer drop the
+ * oldest element when the queue is full.
+ *
+ * Capacity is rounded up to a power of 2.
+ */
+public class AuditRingBuffer<T> {
+	private final int                     mask;
+	private final AtomicReferenceArray<T> elements;
+	private final AtomicLongArray         sequences;
+	private final AtomicLong              head = new AtomicLong();
+	private final AtomicLong              tail = new AtomicLong();
+
+	public AuditRingBuffer(int capacity) {
+		if (capacity < 1 || capacity > (1 << 30)) {
+			throw new IllegalArgumentException("invalid capacity: " + capacity);
+		}
+
+		int size = Integer.highestOneBit(capacity);
+
+		if (size < capacity) {
+			size <<= 1;
+		}
+
+		mask      = size - 1;
+		elements  = new AtomicReferenceArray<T>(size);
+		sequences = new AtomicLongArray(size);
+
+		for (int i = 0; i < size; i++) {
+			sequences.set(i, i);
+		}
+	}
+
+	/**
+	 * @return false if the queue is full
+	 */
+	public boolean offer(T element) {
+		if (element == null) {
+			throw new NullPointerException();
+		}
+
+		long pos = tail.get();
+
+		while (true) {
+			int  idx  = (int) (pos & mask);
+			long diff = sequences.get(idx) - pos;
+
+			if (diff == 0) { // slot is free
+				if (tail.compareAndSet(pos, pos + 1)) {
+					elements.lazySet(idx, element);
+					sequences.set(idx, pos + 1); // publishes the element to consumers
+
+					return true;
+				}
+
+				pos = tail.get();
+			} else if (diff < 0) { // slot not yet consumed after a wrap-around
+				return false;
+			} else { // another producer took this slot
+				pos = tail.get();
+			}
+		}
+	}
+
+	/**
+	 * @return null if the queue is empty
+	 */
+	public T poll() {
+		long pos = head.get();
+
+		while (true) {
+			int  idx  = (int) (pos & mask);
+			long diff = sequences.get(idx) - (pos + 1);
+
+			if (diff == 0) { // slot has an element
+				if (head.compareAndSet(pos, pos + 1)) {
+					T ret = elements.get(idx);
+
+					elements.lazySet(idx, null);
+					sequences.set(idx, pos + mask + 1); // frees the slot for producers
+
+					return ret;
+				}
+
+				pos = head.get();
+			} else if (diff < 0) { // slot not yet written
+				return null;
+			} else { // another thread took this element
+				pos = head.get();
+			}
+		}
+	}
+
+	public int drainTo(Collection<? super T> collection, int maxElements) {
+		int ret = 0;
+
+		while (ret < maxElements) {
+			T element = poll();
+
+			if (element == null) {
+				break;
+			}
+
+			collection.add(element);
+			ret++;
+		}
+
+		return ret;
+	}
+
+	public int size() {
+		while (true) {
+			long headPos = head.get();
+			long tailPos = tail.get();
+
+			if (headPos == head.get()) {
+				return (int) Math.max(0, Math.min(tailPos - headPos, capacity()));
+			}
+		}
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	public int capacity() {
+		return mask + 1;
+	}
+}
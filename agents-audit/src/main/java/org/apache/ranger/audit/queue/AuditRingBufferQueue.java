@@ -0,0 +1,447 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.queue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.log4j.MDC;
+import org.apache.ranger.audit.model.AuditEventBase;
+import org.apache.ranger.audit.provider.AuditHandler;
+import org.apache.ranger.audit.provider.MiscUtil;
+
+/**
+ * Bounded queue that doesn't take a lock when events are logged. Events are
+ * added to an AuditRingBuffer and sent to the consumer, in batches, by a
+ * single consumer thread. When the buffer is full, the configured overflow
+ * policy is applied:
+ * <ul>
+ * <li>block: wait for the consumer to make room</li>
+ * <li>drop_oldest: discard the oldest events in the buffer</li>
+ * <li>spill: write the event to the file spool, which must be enabled</li>
+ * <li>summarize: count the event against the summary of events having the
+ * same key, which is sent once the consumer catches up</li>
+ * </ul>
+ */
+public class AuditRingBufferQueue extends AuditQueue implements Runnable {
+	private static final Log logger = LogFactory.getLog(AuditRingBufferQueue.class);
+
+	public static final String PROP_OVERFLOW_POLICY = "overflow.policy";
+
+	public enum OverflowPolicy { BLOCK, DROP_OLDEST, SPILL, SUMMARIZE }
+
+	static final String DEFAULT_NAME = "ringbuffer";
+	static int threadCount = 0;
+
+	private static final long BLOCK_WAIT_NANOS    = TimeUnit.MICROSECONDS.toNanos(100);
+	private static final long CONSUMER_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+
+	private final AuditQueueMetrics                        metrics   = new AuditQueueMetrics();
+	private final ConcurrentHashMap<String, AuditSummary> summaries = new ConcurrentHashMap<String, AuditSummary>();
+
+	private AuditRingBuffer<AuditEventBase> buffer         = null;
+	private OverflowPolicy                  overflowPolicy = OverflowPolicy.DROP_OLDEST;
+
+	private volatile Thread  consumerThread    = null;
+	private volatile boolean consumerWaiting   = false;
+	private volatile long    consumerIdleSince = 0;
+
+	public AuditRingBufferQueue(AuditHandler consumer) {
+		super(consumer);
+		setName(DEFAULT_NAME);
+	}
+
+	@Override
+	public void init(Properties props, String basePropertyName) {
+		super.init(props, basePropertyName);
+
+		String policy = MiscUtil.getStringProperty(props, propPrefix + "." + PROP_OVERFLOW_POLICY);
+
+		if (policy != null && !policy.trim().isEmpty()) {
+			try {
+				overflowPolicy = OverflowPolicy.valueOf(policy.trim().toUpperCase().replace('-', '_'));
+			} catch (IllegalArgumentException excp) {
+				logger.error("Invalid " + propPrefix + "." + PROP_OVERFLOW_POLICY + "=" + policy + ". Using " + overflowPolicy);
+			}
+		}
+
+		if (overflowPolicy == OverflowPolicy.SPILL && !fileSpoolerEnabled) {
+			logger.error("Overflow policy is spill, but file spool is not enabled for queue " + getName() + ". Events will be dropped when the queue is full");
+		}
+
+		buffer = new AuditRingBuffer<AuditEventBase>(getMaxQueueSize());
+
+		logger.info("Created ring buffer. name=" + getName() + ", capacity=" + buffer.capacity() + ", overflowPolicy=" + overflowPolicy);
+	}
+
+	public OverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+
+	public AuditQueueMetrics getMetrics() {
+		return metrics;
+	}
+
+	public int getDepth() {
+		return buffer == null ? 0 : buffer.size();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.apache.ranger.audit.provider.AuditProvider#log(org.apache.ranger.
+	 * audit.model.AuditEventBase)
+	 */
+	@Override
+	public boolean log(AuditEventBase event) {
+		long    startTime = System.nanoTime();
+		boolean ret       = buffer.offer(event);
+
+		if (!ret) {
+			ret = handleOverflow(event);
+		}
+
+		if (ret) {
+			int depth = buffer.size();
+
+			metrics.recordEnqueue(System.nanoTime() - startTime, depth);
+
+			// wake the consumer for a full batch, or for the first event after it has been idle for the batch interval;
+			// otherwise the events are sent when its wait times out
+			if (consumerWaiting && (depth >= getMaxBatchSize() || System.currentTimeMillis() - consumerIdleSince >= getMaxBatchInterval())) {
+				LockSupport.unpark(consumerThread);
+			}
+		}
+
+		return ret;
+	}
+
+	@Override
+	public boolean log(Collection<AuditEventBase> events) {
+		boolean ret = true;
+		for (AuditEventBase event : events) {
+			ret = log(event);
+			if (!ret) {
+				break;
+			}
+		}
+		return ret;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.apache.ranger.audit.provider.AuditProvider#start()
+	 */
+	@Override
+	public void start() {
+		if (consumer != null) {
+			consumer.start();
+		} else {
+			logger.error("consumer is not set. Nothing will be sent to any consumer. name="
+					+ getName());
+		}
+
+		if (fileSpoolerEnabled) {
+			fileSpooler.start();
+		}
+
+		Thread thread = new Thread(this, this.getClass().getName()
+				+ (threadCount++));
+		thread.setDaemon(true);
+
+		consumerThread = thread;
+
+		thread.start();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.apache.ranger.audit.provider.AuditProvider#stop()
+	 */
+	@Override
+	public void stop() {
+		logger.info("Stop called. name=" + getName());
+		setDrain(true);
+		try {
+			Thread thread = consumerThread;
+
+			if (thread != null) {
+				logger.info("Interrupting consumerThread. name=" + getName()
+						+ ", consumer="
+						+ (consumer == null ? null : consumer.getName()));
+				thread.interrupt();
+			}
+		} catch (Throwable t) {
+			// ignore any exception
+		}
+		consumerThread = null;
+	}
+
+	@Override
+	public void logStatus() {
+		super.logStatus();
+
+		logger.info("Audit Queue Metrics: name=" + getName() + ", depth=" + getDepth() + ", " + metrics);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Runnable#run()
+	 */
+	@Override
+	public void run() {
+		try {
+			//This is done to clear the MDC context to avoid issue with Ranger Auditing for Knox
+			MDC.clear();
+			runLogAudit();
+		} catch (Throwable t) {
+			logger.fatal("Exited thread abnormaly. queue=" + getName(), t);
+		}
+	}
+
+	public void runLogAudit() {
+		List<AuditEventBase> eventList            = new ArrayList<AuditEventBase>();
+		long                 lastSummaryFlushTime = System.currentTimeMillis();
+
+		consumerIdleSince = System.currentTimeMillis();
+
+		while (true) {
+			try {
+				logStatusIfRequired();
+
+				buffer.drainTo(eventList, getMaxBatchSize());
+
+				if (eventList.isEmpty() && !isDrain()) {
+					waitForEvents();
+				}
+
+				if (!eventList.isEmpty()) {
+					dispatch(eventList);
+
+					eventList.clear();
+
+					consumerIdleSince = System.currentTimeMillis();
+				}
+
+				// summaries are sent only after the events queued before them
+				if (!summaries.isEmpty() && (isDrain() || buffer.isEmpty()
+						|| System.currentTimeMillis() - lastSummaryFlushTime > getMaxBatchInterval())) {
+					flushSummaries();
+
+					lastSummaryFlushTime = System.currentTimeMillis();
+				}
+			} catch (Throwable t) {
+				logger.error("Caught error during processing request.", t);
+			}
+
+			if (isDrain()) {
+				if (buffer.isEmpty() && summaries.isEmpty()) {
+					break;
+				}
+				if (isDrainMaxTimeElapsed()) {
+					logger.warn("Exiting polling loop because max time allowed reached. name="
+							+ getName()
+							+ ", waited for "
+							+ (stopTime - System.currentTimeMillis()) + " ms");
+					break;
+				}
+			}
+		}
+		logger.info("Exiting polling loop. name=" + getName());
+
+		try {
+			// Call stop on the consumer
+			logger.info("Calling to stop consumer. name=" + getName()
+					+ ", consumer.name=" + consumer.getName());
+
+			consumer.stop();
+			if (fileSpoolerEnabled) {
+				fileSpooler.stop();
+			}
+		} catch (Throwable t) {
+			logger.error("Error while calling stop on consumer.", t);
+		}
+		logStatus();
+		logger.info("Exiting consumerThread.run() method. name=" + getName());
+	}
+
+	private boolean handleOverflow(AuditEventBase event) {
+		boolean ret = false;
+
+		switch (overflowPolicy) {
+			case BLOCK:
+				while (!(ret = buffer.offer(event))) {
+					if (isDrain()) {
+						metrics.recordDropped();
+						break;
+					}
+
+					LockSupport.unpark(consumerThread);
+					LockSupport.parkNanos(this, BLOCK_WAIT_NANOS);
+				}
+				break;
+
+			case DROP_OLDEST:
+				while (!(ret = buffer.offer(event))) {
+					if (buffer.poll() != null) {
+						metrics.recordDropped();
+					}
+				}
+				break;
+
+			case SPILL:
+				if (fileSpoolerEnabled) {
+					fileSpooler.stashLogs(event);
+					metrics.recordSpilled();
+					ret = true;
+				} else {
+					metrics.recordDropped();
+				}
+				break;
+
+			case SUMMARIZE:
+				summarize(event);
+				metrics.recordSummarized();
+				ret = true;
+				break;
+		}
+
+		return ret;
+	}
+
+	private void summarize(AuditEventBase event) {
+		String key = String.valueOf(event.getEventKey());
+
+		while (true) {
+			AuditSummary summary = summaries.get(key);
+
+			if (summary == null) {
+				AuditSummary newSummary = new AuditSummary(event);
+				AuditSummary existing   = summaries.putIfAbsent(key, newSummary);
+
+				summary = existing != null ? existing : newSummary;
+			}
+
+			if (summary.add(event)) {
+				break;
+			}
+
+			// summary was closed by the consumer thread after it was looked up; retry with a new one
+		}
+	}
+
+	private void flushSummaries() {
+		Iterator<AuditSummary> iter = summaries.values().iterator();
+
+		while (iter.hasNext()) {
+			AuditSummary summary = iter.next();
+
+			iter.remove();
+
+			AuditEventBase event = summary.close();
+
+			if (!consumer.log(event)) {
+				// We need to drop this event
+				logFailedEvent(event);
+			}
+		}
+	}
+
+	private void dispatch(List<AuditEventBase> eventList) {
+		addTotalCount(eventList.size());
+
+		boolean ret = consumer.log(eventList);
+
+		if (ret) {
+			addSuccessCount(eventList.size());
+		} else if (fileSpoolerEnabled) {
+			// Transient error. Stash and move on
+			fileSpooler.stashLogs(eventList);
+			addStashedCount(eventList.size());
+		} else {
+			// We need to drop these events
+			addFailedCount(eventList.size());
+			logFailedEvent(eventList);
+		}
+	}
+
+	private void waitForEvents() {
+		consumerWaiting = true;
+
+		try {
+			// check again, as a batch might have been queued, or the idle time exceeded, before consumerWaiting was set
+			if (buffer.size() < getMaxBatchSize() && (buffer.isEmpty() || System.currentTimeMillis() - consumerIdleSince < getMaxBatchInterval())) {
+				LockSupport.parkNanos(this, summaries.isEmpty() ? CONSUMER_WAIT_NANOS : TimeUnit.MILLISECONDS.toNanos(getMaxBatchInterval()));
+			}
+		} finally {
+			consumerWaiting = false;
+		}
+	}
+
+	static class AuditSummary {
+		private final AuditEventBase event;
+		private final Date           startTime;
+		private Date                 endTime;
+		private int                  count;
+		private boolean              isClosed = false;
+
+		AuditSummary(AuditEventBase event) {
+			this.event     = event;
+			this.startTime = event.getEventTime();
+			this.endTime   = event.getEventTime();
+			this.count     = 0;
+		}
+
+		synchronized boolean add(AuditEventBase event) {
+			if (isClosed) {
+				return false;
+			}
+
+			endTime = event.getEventTime();
+			count++;
+
+			return true;
+		}
+
+		synchronized AuditEventBase close() {
+			isClosed = true;
+
+			long timeDiff = endTime != null && startTime != null ? endTime.getTime() - startTime.getTime() : 0;
+
+			event.setEventCount(count);
+			event.setEventDurationMS(timeDiff > 0 ? timeDiff : 1);
+
+			return event;
+		}
+	}
+}
@@ -0,0 +1,815 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.queue;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.audit.model.AuditEventBase;
+import org.apache.ranger.audit.provider.AuditHandler;
+import org.apache.ranger.audit.provider.MiscUtil;
+
+/**
+ * File spool that keeps audit events in append-only segment files, like a
+ * write-ahead log, for destinations that are overloaded or down. Enabled with
+ * filespool.type=segmented; AuditFileSpool remains the default.
+ *
+ * Threads that stash events only encode them and add them to a lock-free
+ * queue. A writer thread appends all queued events to the current segment
+ * with one write and one fsync (group commit), and starts a new segment when
+ * the current one reaches filespool.segment.max.bytes or is older than
+ * filespool.file.rollover.sec. The destination thread replays events from
+ * memory-mapped segments, including the part of the current segment written
+ * so far, and records the position of the last event sent in a fixed-size
+ * checkpoint file; segments are deleted once sent. Segments not yet sent are
+ * deleted, oldest first, when all segments together exceed
+ * filespool.retention.max.bytes or when older than
+ * filespool.retention.max.age.sec.
+ *
+ * Segment file: header (magic, version, create time), followed by records of
+ * (length, CRC32, event JSON in UTF-8). A record that is truncated or fails
+ * its CRC - after a crash - ends the segment.
+ */
+public class AuditSegmentedFileSpool extends AuditFileSpool {
+	private static final Log logger = LogFactory.getLog(AuditSegmentedFileSpool.class);
+
+	public static final String PROP_FILE_SPOOL_SEGMENT_MAX_BYTES = "filespool.segment.max.bytes";
+	public static final String PROP_FILE_SPOOL_RETENTION_MAX_BYTES = "filespool.retention.max.bytes";
+	public static final String PROP_FILE_SPOOL_RETENTION_MAX_AGE_SEC = "filespool.retention.max.age.sec";
+	public static final String PROP_FILE_SPOOL_FSYNC = "filespool.fsync";
+	public static final String PROP_FILE_SPOOL_MAX_PENDING_BYTES = "filespool.max.pending.bytes";
+
+	private static final int    SEGMENT_MAGIC        = 0x52535047; // RSPG
+	private static final int    CHECKPOINT_MAGIC     = 0x5253434b; // RSCK
+	private static final int    FILE_VERSION         = 1;
+	private static final int    SEGMENT_HEADER_SIZE  = 16; // magic, version, create time
+	private static final int    RECORD_HEADER_SIZE   = 8;  // length, CRC32
+	private static final int    CHECKPOINT_SLOT_SIZE = 32; // sequence, segment, offset, magic, CRC32
+	private static final int    MAX_WRITE_RECORDS    = 1024;
+	private static final String SEGMENT_FILE_EXT     = ".wal";
+	private static final long   WRITER_IDLE_NANOS    = TimeUnit.SECONDS.toNanos(1);
+	private static final long   RETENTION_CHECK_MS   = 60 * 1000;
+	private static final long   FLUSH_TIMEOUT_MS     = 10 * 1000;
+
+	private long    segmentMaxBytes   = 64L * 1024 * 1024;
+	private long    retentionMaxBytes = 1024L * 1024 * 1024;
+	private long    retentionMaxAgeMS = TimeUnit.DAYS.toMillis(7);
+	private long    maxPendingBytes   = 16L * 1024 * 1024;
+	private boolean isFsyncEnabled    = true;
+
+	// segment id => create time, of segments not yet sent
+	private final ConcurrentSkipListMap<Long, Long> segments       = new ConcurrentSkipListMap<Long, Long>();
+	private final ConcurrentLinkedQueue<byte[]>     pendingRecords = new ConcurrentLinkedQueue<byte[]>();
+	private final AtomicLong                        pendingBytes   = new AtomicLong();
+	private final AtomicLong                        stashedCount   = new AtomicLong();
+
+	// updated only by the writer thread
+	private volatile long          writtenCount      = 0;
+	private volatile WritePosition writePosition     = new WritePosition(-1, 0); // published for the destination thread
+	private          long          writeSegmentId    = -1;
+	private          long          writeSegmentSize  = 0; // events up to this offset are readable
+	private          long          writeSegmentTime  = 0;
+	private          FileChannel   writeChannel      = null;
+	private          long          lastRetentionTime = 0;
+	private volatile boolean       isWriterStopped   = false;
+	private volatile Thread        writerThread      = null;
+
+	// updated only by the destination thread
+	private FileChannel checkpointChannel = null;
+	private long        checkpointSeq     = 0;
+	private long        readSegmentId     = -1;
+	private long        readOffset        = SEGMENT_HEADER_SIZE;
+
+	private volatile boolean hasPending = false;
+
+	public AuditSegmentedFileSpool(AuditQueue queueProvider, AuditHandler consumerProvider) {
+		super(queueProvider, consumerProvider);
+	}
+
+	@Override
+	public boolean init(Properties props, String basePropertyName) {
+		if (initDone) {
+			logger.error("init() called more than once. queueProvider=" + queueProvider.getName() + ", consumerProvider=" + consumerProvider.getName());
+			return true;
+		}
+
+		String propPrefix = basePropertyName != null ? basePropertyName : "xasecure.audit.filespool";
+
+		try {
+			String logFolderProp = MiscUtil.getStringProperty(props, propPrefix + "." + PROP_FILE_SPOOL_LOCAL_DIR);
+
+			fileNamePrefix     = MiscUtil.getStringProperty(props, propPrefix + "." + PROP_FILE_SPOOL_FILENAME_PREFIX);
+			retryDestinationMS = MiscUtil.getIntProperty(props, propPrefix + "." + PROP_FILE_SPOOL_DEST_RETRY_MS, retryDestinationMS);
+			fileRolloverSec    = MiscUtil.getIntProperty(props, propPrefix + "." + PROP_FILE_SPOOL_FILE_ROLLOVER, fileRolloverSec);
+			segmentMaxBytes    = MiscUtil.getLongProperty(props, propPrefix + "." + PROP_FILE_SPOOL_SEGMENT_MAX_BYTES, segmentMaxBytes);
+			retentionMaxBytes  = MiscUtil.getLongProperty(props, propPrefix + "." + PROP_FILE_SPOOL_RETENTION_MAX_BYTES, retentionMaxBytes);
+			retentionMaxAgeMS  = TimeUnit.SECONDS.toMillis(MiscUtil.getLongProperty(props, propPrefix + "." + PROP_FILE_SPOOL_RETENTION_MAX_AGE_SEC, TimeUnit.MILLISECONDS.toSeconds(retentionMaxAgeMS)));
+			maxPendingBytes    = MiscUtil.getLongProperty(props, propPrefix + "." + PROP_FILE_SPOOL_MAX_PENDING_BYTES, maxPendingBytes);
+			isFsyncEnabled     = MiscUtil.getBooleanProperty(props, propPrefix + "." + PROP_FILE_SPOOL_FSYNC, isFsyncEnabled);
+
+			logger.info("retryDestinationMS=" + retryDestinationMS + ", fileRolloverSec=" + fileRolloverSec + ", segmentMaxBytes=" + segmentMaxBytes
+					+ ", retentionMaxBytes=" + retentionMaxBytes + ", retentionMaxAgeMS=" + retentionMaxAgeMS + ", maxPendingBytes=" + maxPendingBytes
+					+ ", isFsyncEnabled=" + isFsyncEnabled + ", queueName=" + queueProvider.getName());
+
+			if (logFolderProp == null || logFolderProp.isEmpty()) {
+				logger.fatal("Audit spool folder is not configured. Please set " + propPrefix + "." + PROP_FILE_SPOOL_LOCAL_DIR + ". queueName=" + queueProvider.getName());
+				return false;
+			}
+
+			logFolder = new File(logFolderProp);
+
+			if (!logFolder.isDirectory()) {
+				logFolder.mkdirs();
+
+				if (!logFolder.isDirectory()) {
+					logger.fatal("File Spool folder not found and can't be created. folder=" + logFolder.getAbsolutePath() + ", queueName=" + queueProvider.getName());
+					return false;
+				}
+			}
+
+			if (fileNamePrefix == null || fileNamePrefix.isEmpty()) {
+				fileNamePrefix = queueProvider.getName() + "_" + consumerProvider.getName();
+			}
+
+			logger.info("logFolder=" + logFolder + ", fileNamePrefix=" + fileNamePrefix + ", queueName=" + queueProvider.getName());
+
+			loadSegments();
+			loadCheckpoint();
+
+			Map.Entry<Long, Long> lastSegment = segments.lastEntry();
+
+			hasPending = lastSegment != null && (lastSegment.getKey() > readSegmentId || getSegmentFile(readSegmentId).length() > readOffset);
+
+			// events are appended to a new segment, so that a segment torn by a crash is never written again
+			openWriteSegment(lastSegment != null ? lastSegment.getKey() + 1 : 1);
+		} catch (Throwable t) {
+			logger.fatal("Error initializing File Spooler. queue=" + queueProvider.getName(), t);
+			return false;
+		}
+
+		initDone = true;
+
+		return true;
+	}
+
+	@Override
+	public void start() {
+		if (!initDone) {
+			logger.error("Cannot start Audit File Spooler. Initilization not done yet. queueName=" + queueProvider.getName());
+			return;
+		}
+
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				runWriter();
+			}
+		}, queueProvider.getName() + "_" + consumerProvider.getName() + "_spoolWriter");
+
+		thread.setDaemon(true);
+
+		writerThread = thread;
+
+		thread.start();
+
+		super.start();
+	}
+
+	@Override
+	public void stop() {
+		if (!initDone) {
+			logger.error("Cannot stop Audit File Spooler. Initilization not done. queueName=" + queueProvider.getName());
+			return;
+		}
+
+		logger.info("Stop called, queueName=" + queueProvider.getName() + ", consumer=" + consumerProvider.getName());
+
+		isDrain = true;
+
+		flush();
+
+		isWriterStopped = true;
+
+		Thread writer = writerThread;
+
+		if (writer != null) {
+			LockSupport.unpark(writer);
+
+			try {
+				writer.join(FLUSH_TIMEOUT_MS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+
+			writerThread = null;
+		}
+
+		Thread destination = destinationThread;
+
+		if (destination != null) {
+			destination.interrupt();
+
+			try {
+				destination.join(FLUSH_TIMEOUT_MS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+
+			destinationThread = null;
+		}
+
+		closeQuietly(writeChannel);
+		closeQuietly(checkpointChannel);
+	}
+
+	/**
+	 * Waits until events stashed so far are written to the spool.
+	 */
+	@Override
+	public void flush() {
+		if (!initDone) {
+			logger.error("Cannot flush Audit File Spooler. Initilization not done. queueName=" + queueProvider.getName());
+			return;
+		}
+
+		long   stashed  = stashedCount.get();
+		long   deadline = System.currentTimeMillis() + FLUSH_TIMEOUT_MS;
+		Thread writer   = writerThread;
+
+		while (writtenCount < stashed && writer != null && writer.isAlive() && System.currentTimeMillis() < deadline) {
+			LockSupport.unpark(writer);
+			LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+		}
+	}
+
+	@Override
+	public boolean isPending() {
+		if (!initDone) {
+			logError("isPending(): File Spooler not initialized. queueName=" + queueProvider.getName());
+			return false;
+		}
+
+		return hasPending;
+	}
+
+	@Override
+	public void stashLogs(AuditEventBase event) {
+		stashLogsString(MiscUtil.stringify(event));
+	}
+
+	@Override
+	public void stashLogs(Collection<AuditEventBase> events) {
+		for (AuditEventBase event : events) {
+			stashLogs(event);
+		}
+	}
+
+	@Override
+	public void stashLogsString(String event) {
+		if (isDrain) {
+			// Stop has been called, so this method shouldn't be called
+			logger.error("stashLogs() is called after stop is called. event=" + event);
+			return;
+		}
+
+		byte[] record = encodeRecord(event);
+
+		waitForPendingBytes();
+
+		pendingBytes.addAndGet(record.length);
+		pendingRecords.add(record);
+		stashedCount.incrementAndGet();
+
+		hasPending = true;
+
+		Thread writer = writerThread;
+
+		if (writer != null) {
+			LockSupport.unpark(writer);
+		}
+	}
+
+	@Override
+	public void stashLogsString(Collection<String> events) {
+		for (String event : events) {
+			stashLogsString(event);
+		}
+	}
+
+	@Override
+	public void runLogAudit() {
+		while (!isDrain) {
+			try {
+				if (isDestDown) {
+					logger.info("Destination is down. sleeping for " + retryDestinationMS + " milli seconds. queueName=" + queueProvider.getName() + ", consumer=" + consumerProvider.getName());
+
+					Thread.sleep(retryDestinationMS);
+				}
+
+				if (!sendPendingRecords()) {
+					LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(Math.min(retryDestinationMS, 1000)));
+				}
+
+				if (Thread.interrupted()) {
+					throw new InterruptedException();
+				}
+			} catch (InterruptedException e) {
+				logger.info("Caught exception in consumer thread. Shutdown might be in progress");
+			} catch (Throwable t) {
+				logger.error("Exception in destination writing thread.", t);
+			}
+		}
+
+		logger.info("Exiting file spooler. provider=" + queueProvider.getName() + ", consumer=" + consumerProvider.getName());
+	}
+
+	private void waitForPendingBytes() {
+		while (pendingBytes.get() > maxPendingBytes) {
+			Thread writer = writerThread;
+
+			if (writer == null || !writer.isAlive()) { // not started yet: buffer in memory
+				break;
+			}
+
+			LockSupport.unpark(writer);
+			LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+		}
+	}
+
+	private void runWriter() {
+		List<byte[]> records = new ArrayList<byte[]>(MAX_WRITE_RECORDS);
+
+		while (!isWriterStopped || !pendingRecords.isEmpty()) {
+			try {
+				records.clear();
+
+				for (byte[] record = pendingRecords.poll(); record != null; record = records.size() < MAX_WRITE_RECORDS ? pendingRecords.poll() : null) {
+					records.add(record);
+				}
+
+				if (!records.isEmpty()) {
+					writeRecords(records);
+				} else {
+					long now = System.currentTimeMillis();
+
+					if (writeSegmentSize > SEGMENT_HEADER_SIZE && now - writeSegmentTime > fileRolloverSec * 1000L) {
+						logger.info("Rolling over spool segment " + writeSegmentId + ". queueName=" + queueProvider.getName());
+
+						openWriteSegment(writeSegmentId + 1);
+					}
+
+					if (now - lastRetentionTime > RETENTION_CHECK_MS) {
+						enforceRetention();
+					}
+
+					LockSupport.parkNanos(WRITER_IDLE_NANOS);
+				}
+			} catch (Throwable t) {
+				logger.error("Exception in spool writer thread. queueName=" + queueProvider.getName(), t);
+
+				LockSupport.parkNanos(WRITER_IDLE_NANOS);
+			}
+		}
+
+		logger.info("Exiting spool writer. provider=" + queueProvider.getName() + ", consumer=" + consumerProvider.getName());
+	}
+
+	// group commit: all records are written with one write and one fsync
+	private void writeRecords(List<byte[]> records) throws IOException {
+		ByteBuffer[] buffers = new ByteBuffer[records.size()];
+		long         size    = 0;
+
+		for (int i = 0; i < buffers.length; i++) {
+			buffers[i] = ByteBuffer.wrap(records.get(i));
+			size      += buffers[i].remaining();
+		}
+
+		try {
+			long written = 0;
+
+			while (written < size) {
+				written += writeChannel.write(buffers);
+			}
+
+			if (isFsyncEnabled) {
+				writeChannel.force(false);
+			}
+
+			writeSegmentSize += size;
+			writePosition     = new WritePosition(writeSegmentId, writeSegmentSize);
+		} catch (IOException excp) {
+			logError("Error writing to spool segment " + writeSegmentId + ". Dropped " + records.size() + " events. queueName=" + queueProvider.getName() + ": " + excp);
+
+			openWriteSegment(writeSegmentId + 1); // a partial record at the end of the failed segment ends it
+		} finally {
+			pendingBytes.addAndGet(-size);
+
+			writtenCount += records.size();
+		}
+
+		Thread destination = destinationThread;
+
+		if (destination != null) {
+			LockSupport.unpark(destination);
+		}
+
+		if (writeSegmentSize >= segmentMaxBytes) {
+			openWriteSegment(writeSegmentId + 1);
+		}
+	}
+
+	private void openWriteSegment(long segmentId) throws IOException {
+		closeQuietly(writeChannel);
+
+		writeChannel = null;
+
+		long createTime = System.currentTimeMillis();
+		File file       = getSegmentFile(segmentId);
+
+		logger.info("Creating spool segment. queueName=" + queueProvider.getName() + ", fileName=" + file);
+
+		FileChannel channel = new RandomAccessFile(file, "rw").getChannel();
+		ByteBuffer  header  = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+
+		header.putInt(SEGMENT_MAGIC).putInt(FILE_VERSION).putLong(createTime).flip();
+
+		channel.truncate(0);
+
+		while (header.hasRemaining()) {
+			channel.write(header);
+		}
+
+		if (isFsyncEnabled) {
+			channel.force(true);
+		}
+
+		segments.put(segmentId, createTime);
+
+		writeChannel     = channel;
+		writeSegmentTime = createTime;
+		writeSegmentId   = segmentId;
+		writeSegmentSize = SEGMENT_HEADER_SIZE;
+		writePosition    = new WritePosition(segmentId, SEGMENT_HEADER_SIZE); // segment id and size are always read together
+
+		enforceRetention();
+	}
+
+	private void enforceRetention() {
+		lastRetentionTime = System.currentTimeMillis();
+
+		long totalBytes = 0;
+
+		for (Long segmentId : segments.keySet()) {
+			totalBytes += getSegmentFile(segmentId).length();
+		}
+
+		for (Map.Entry<Long, Long> segment = segments.firstEntry(); segment != null && segment.getKey() != writeSegmentId; segment = segments.firstEntry()) {
+			boolean isOverSize = totalBytes > retentionMaxBytes;
+			boolean isTooOld   = lastRetentionTime - segment.getValue() > retentionMaxAgeMS;
+
+			if (!isOverSize && !isTooOld) {
+				break;
+			}
+
+			File file   = getSegmentFile(segment.getKey());
+			long length = file.length();
+
+			logger.warn("Deleting spool segment " + file + " (" + length + " bytes): " + (isOverSize ? "spool size exceeds " + retentionMaxBytes + " bytes" : "older than " + retentionMaxAgeMS + "ms")
+					+ ". Audit events in this segment that were not sent to " + consumerProvider.getName() + " are lost");
+
+			segments.remove(segment.getKey());
+
+			if (!file.delete() && file.exists()) {
+				logger.error("Error deleting spool segment " + file);
+			}
+
+			totalBytes -= length;
+		}
+	}
+
+	/*
+	 * Sends events of the segment being read, from the checkpoint, in batches of
+	 * the queue's batch size. Returns false if there was nothing to send or the
+	 * destination failed.
+	 */
+	private boolean sendPendingRecords() throws IOException {
+		long stashed   = stashedCount.get();
+		Long segmentId = segments.ceilingKey(readSegmentId);
+
+		if (segmentId == null) { // all segments deleted by retention
+			return false;
+		}
+
+		if (segmentId != readSegmentId) {
+			readSegmentId = segmentId;
+			readOffset    = SEGMENT_HEADER_SIZE;
+		}
+
+		WritePosition writePos       = writePosition;
+		boolean       isWriteSegment = readSegmentId == writePos.segmentId;
+		File          file           = getSegmentFile(readSegmentId);
+		long          end            = isWriteSegment ? Math.min(writePos.size, file.length()) : file.length();
+
+		if (readOffset >= end) {
+			if (!isWriteSegment && readSegmentId < writePos.segmentId) { // segment sent entirely
+				logger.info("Done reading spool segment. file=" + file + ", queueName=" + queueProvider.getName() + ", consumer=" + consumerProvider.getName());
+
+				segments.remove(readSegmentId);
+
+				if (!file.delete() && file.exists()) {
+					logger.error("Error deleting spool segment " + file);
+				}
+
+				readSegmentId++;
+				readOffset = SEGMENT_HEADER_SIZE;
+
+				saveCheckpoint();
+
+				return true;
+			}
+
+			if (writtenCount == stashed) {
+				hasPending = false;
+
+				if (stashedCount.get() != stashed) {
+					hasPending = true;
+				}
+			}
+
+			return false;
+		}
+
+		MappedByteBuffer buffer;
+
+		try (FileChannel channel = new RandomAccessFile(file, "r").getChannel()) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, readOffset, end - readOffset);
+		} catch (IOException excp) {
+			if (!file.exists()) { // deleted by retention
+				return true;
+			}
+
+			throw excp;
+		}
+
+		int          maxBatchSize = Math.max(1, queueProvider.getMaxBatchSize());
+		List<String> lines        = new ArrayList<String>(Math.min(maxBatchSize, 1024));
+		CRC32        crc          = new CRC32();
+
+		while (buffer.hasRemaining()) {
+			String line = decodeRecord(buffer, crc);
+
+			if (line == null) {
+				logger.error("Invalid record at offset " + (readOffset + buffer.position()) + " of spool segment " + file + ". Rest of the segment is skipped. queueName=" + queueProvider.getName());
+
+				buffer.position(buffer.limit());
+
+				if (lines.isEmpty()) {
+					readOffset = end;
+
+					saveCheckpoint();
+
+					return true;
+				}
+
+				break;
+			}
+
+			lines.add(line);
+
+			if (lines.size() >= maxBatchSize) {
+				break;
+			}
+		}
+
+		if (!sendEvent(lines)) {
+			return false;
+		}
+
+		readOffset = buffer.hasRemaining() ? readOffset + buffer.position() : end;
+
+		saveCheckpoint();
+
+		return true;
+	}
+
+	private boolean sendEvent(List<String> lines) {
+		boolean ret = false;
+
+		try {
+			ret = consumerProvider.logJSON(lines);
+		} catch (Throwable t) {
+			logger.error("Error while sending logs to consumer. provider=" + queueProvider.getName() + ", consumer=" + consumerProvider.getName() + ", log=" + lines, t);
+		}
+
+		if (!ret) {
+			isDestDown      = true;
+			lastAttemptTime = System.currentTimeMillis();
+
+			logError("Destination down. queueName=" + queueProvider.getName() + ", consumer=" + consumerProvider.getName());
+		} else if (isDestDown) {
+			isDestDown = false;
+
+			logger.info("Destination up now. segment=" + readSegmentId + ", queueName=" + queueProvider.getName() + ", consumer=" + consumerProvider.getName());
+		}
+
+		return ret;
+	}
+
+	private static byte[] encodeRecord(String event) {
+		byte[] data = event.getBytes(StandardCharsets.UTF_8);
+		CRC32  crc  = new CRC32();
+
+		crc.update(data, 0, data.length);
+
+		return ByteBuffer.allocate(RECORD_HEADER_SIZE + data.length).putInt(data.length).putInt((int) crc.getValue()).put(data).array();
+	}
+
+	// returns null if the record at the buffer's position is truncated or corrupt
+	private static String decodeRecord(ByteBuffer buffer, CRC32 crc) {
+		if (buffer.remaining() < RECORD_HEADER_SIZE) {
+			return null;
+		}
+
+		int length   = buffer.getInt();
+		int checksum = buffer.getInt();
+
+		if (length < 0 || length > buffer.remaining()) {
+			return null;
+		}
+
+		byte[] data = new byte[length];
+
+		buffer.get(data);
+
+		crc.reset();
+		crc.update(data, 0, length);
+
+		return (int) crc.getValue() == checksum ? new String(data, StandardCharsets.UTF_8) : null;
+	}
+
+	private void loadSegments() throws IOException {
+		final String prefix = fileNamePrefix + "_";
+
+		File[] files = logFolder.listFiles(new FileFilter() {
+			public boolean accept(File pathname) {
+				String name = pathname.getName();
+
+				return name.startsWith(prefix) && name.endsWith(SEGMENT_FILE_EXT);
+			}
+		});
+
+		if (files != null) {
+			for (File file : files) {
+				String name = file.getName();
+				long   segmentId;
+
+				try {
+					segmentId = Long.parseLong(name.substring(prefix.length(), name.length() - SEGMENT_FILE_EXT.length()));
+				} catch (NumberFormatException excp) {
+					continue;
+				}
+
+				long createTime = file.lastModified();
+
+				try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+					if (in.length() >= SEGMENT_HEADER_SIZE && in.readInt() == SEGMENT_MAGIC && in.readInt() == FILE_VERSION) {
+						createTime = in.readLong();
+					} else {
+						logger.warn("Invalid header in spool segment " + file + ". Using its modified time as create time");
+					}
+				}
+
+				segments.put(segmentId, createTime);
+			}
+		}
+
+		logger.info("Found " + segments.size() + " spool segments. queueName=" + queueProvider.getName());
+	}
+
+	/*
+	 * The checkpoint file has two slots, written alternately, so that a torn
+	 * write leaves the previous checkpoint intact.
+	 */
+	private void loadCheckpoint() throws IOException {
+		File file = new File(logFolder, fileNamePrefix + ".checkpoint");
+
+		checkpointChannel = new RandomAccessFile(file, "rw").getChannel();
+
+		ByteBuffer buffer = ByteBuffer.allocate(CHECKPOINT_SLOT_SIZE * 2);
+		int        count  = 0;
+
+		while (buffer.hasRemaining() && count >= 0) {
+			count = checkpointChannel.read(buffer);
+		}
+
+		buffer.flip();
+
+		for (int slot = 0; slot < 2 && buffer.remaining() >= CHECKPOINT_SLOT_SIZE; slot++) {
+			long seq       = buffer.getLong();
+			long segmentId = buffer.getLong();
+			long offset    = buffer.getLong();
+			int  magic     = buffer.getInt();
+			int  checksum  = buffer.getInt();
+
+			if (magic == CHECKPOINT_MAGIC && checksum == getChecksum(seq, segmentId, offset) && seq >= checkpointSeq) {
+				checkpointSeq = seq;
+				readSegmentId = segmentId;
+				readOffset    = offset;
+			}
+		}
+
+		if (readSegmentId < 0 && !segments.isEmpty()) {
+			readSegmentId = segments.firstKey();
+			readOffset    = SEGMENT_HEADER_SIZE;
+		}
+
+		logger.info("Loaded spool checkpoint " + file + ": segment=" + readSegmentId + ", offset=" + readOffset + ", queueName=" + queueProvider.getName());
+	}
+
+	private void saveCheckpoint() throws IOException {
+		checkpointSeq++;
+
+		ByteBuffer buffer = ByteBuffer.allocate(CHECKPOINT_SLOT_SIZE);
+
+		buffer.putLong(checkpointSeq).putLong(readSegmentId).putLong(readOffset).putInt(CHECKPOINT_MAGIC).putInt(getChecksum(checkpointSeq, readSegmentId, readOffset)).flip();
+
+		long position = (checkpointSeq % 2) * CHECKPOINT_SLOT_SIZE;
+
+		while (buffer.hasRemaining()) {
+			position += checkpointChannel.write(buffer, position);
+		}
+
+		if (isFsyncEnabled) {
+			checkpointChannel.force(false);
+		}
+	}
+
+	private static int getChecksum(long seq, long segmentId, long offset) {
+		CRC32 crc = new CRC32();
+
+		crc.update(ByteBuffer.allocate(24).putLong(seq).putLong(segmentId).putLong(offset).array());
+
+		return (int) crc.getValue();
+	}
+
+	private File getSegmentFile(long segmentId) {
+		return new File(logFolder, fileNamePrefix + "_" + String.format("%020d", segmentId) + SEGMENT_FILE_EXT);
+	}
+
+	// segment being written, and the size up to which its records are complete
+	private static final class WritePosition {
+		final long segmentId;
+		final long size;
+
+		WritePosition(long segmentId, long size) {
+			this.segmentId = segmentId;
+			this.size      = size;
+		}
+	}
+
+	private static void closeQuietly(FileChannel channel) {
+		if (channel != null) {
+			try {
+				channel.close();
+			} catch (IOException excp) {
+				logger.debug("Error closing spool file", excp);
+			}
+		}
+	}
+}
@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.serializer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Properties;
+import java.util.zip.Deflater;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.audit.provider.MiscUtil;
+
+/**
+ * Serializer and file format of a file based audit destination, read from
+ * properties under the destination's prefix, like
+ * xasecure.audit.destination.hdfs:
+ * <pre>
+ *   serializer                          gson (default), json, or name of a class implementing AuditEventSerializer
+ *   file.format                         text (default): one event per line; block: see BlockCompressedAuditFileWriter
+ *   file.format.block.size              uncompressed bytes per block; default 256KB
+ *   file.format.block.compression       deflate (default) or none
+ *   file.format.block.compression.level 0 to 9; default 1
+ *   file.format.block.sync.interval.sec seconds after which a partly filled block is written; default 60
+ * </pre>
+ */
+public class AuditFileFormat {
+	private static final Log LOG = LogFactory.getLog(AuditFileFormat.class);
+
+	public static final String PROP_SERIALIZER                 = "serializer";
+	public static final String PROP_FILE_FORMAT                = "file.format";
+	public static final String PROP_BLOCK_SIZE                 = "file.format.block.size";
+	public static final String PROP_BLOCK_COMPRESSION          = "file.format.block.compression";
+	public static final String PROP_BLOCK_COMPRESSION_LEVEL    = "file.format.block.compression.level";
+	public static final String PROP_BLOCK_SYNC_INTERVAL_SEC    = "file.format.block.sync.interval.sec";
+
+	public static final String SERIALIZER_GSON                 = "gson";
+	public static final String SERIALIZER_JSON                 = "json";
+	public static final String FILE_FORMAT_TEXT                = "text";
+	public static final String FILE_FORMAT_BLOCK               = "block";
+	public static final String COMPRESSION_DEFLATE             = "deflate";
+	public static final String COMPRESSION_NONE                = "none";
+
+	public static final int    DEFAULT_BLOCK_SIZE              = 256 * 1024;
+	public static final int    DEFAULT_BLOCK_COMPRESSION_LEVEL = Deflater.BEST_SPEED;
+	public static final int    DEFAULT_BLOCK_SYNC_INTERVAL_SEC = 60;
+
+	private final AuditEventSerializer serializer;
+	private final boolean              isBlockFormat;
+	private final byte                 blockCodec;
+	private final int                  blockSize;
+	private final int                  compressionLevel;
+	private final long                 syncIntervalMS;
+
+	public AuditFileFormat(Properties props, String propPrefix) {
+		String serializerName = getStringProperty(props, propPrefix + "." + PROP_SERIALIZER, SERIALIZER_GSON);
+		String fileFormat     = getStringProperty(props, propPrefix + "." + PROP_FILE_FORMAT, FILE_FORMAT_TEXT);
+		String compression    = getStringProperty(props, propPrefix + "." + PROP_BLOCK_COMPRESSION, COMPRESSION_DEFLATE);
+
+		serializer       = createSerializer(serializerName);
+		isBlockFormat    = FILE_FORMAT_BLOCK.equalsIgnoreCase(fileFormat);
+		blockCodec       = COMPRESSION_NONE.equalsIgnoreCase(compression) ? BlockCompressedAuditFileWriter.CODEC_NONE : BlockCompressedAuditFileWriter.CODEC_DEFLATE;
+		blockSize        = MiscUtil.getIntProperty(props, propPrefix + "." + PROP_BLOCK_SIZE, DEFAULT_BLOCK_SIZE);
+		syncIntervalMS   = MiscUtil.getIntProperty(props, propPrefix + "." + PROP_BLOCK_SYNC_INTERVAL_SEC, DEFAULT_BLOCK_SYNC_INTERVAL_SEC) * 1000L;
+		compressionLevel = Math.max(Deflater.NO_COMPRESSION, Math.min(Deflater.BEST_COMPRESSION, MiscUtil.getIntProperty(props, propPrefix + "." + PROP_BLOCK_COMPRESSION_LEVEL, DEFAULT_BLOCK_COMPRESSION_LEVEL)));
+
+		if (!isBlockFormat && !FILE_FORMAT_TEXT.equalsIgnoreCase(fileFormat)) {
+			LOG.warn("Unknown " + propPrefix + "." + PROP_FILE_FORMAT + "=" + fileFormat + ". Using " + FILE_FORMAT_TEXT);
+		}
+
+		if (isBlockFormat && !COMPRESSION_NONE.equalsIgnoreCase(compression) && !COMPRESSION_DEFLATE.equalsIgnoreCase(compression)) {
+			LOG.warn("Unknown " + propPrefix + "." + PROP_BLOCK_COMPRESSION + "=" + compression + ". Using " + COMPRESSION_DEFLATE);
+		}
+
+		serializer.init(props, propPrefix);
+
+		LOG.info("Audit file format for " + propPrefix + ": serializer=" + serializer.getClass().getSimpleName() + ", format=" + (isBlockFormat ? FILE_FORMAT_BLOCK : FILE_FORMAT_TEXT)
+				+ (isBlockFormat ? (", blockSize=" + blockSize + ", syncIntervalMS=" + syncIntervalMS + ", compression=" + (blockCodec == BlockCompressedAuditFileWriter.CODEC_NONE ? COMPRESSION_NONE : (COMPRESSION_DEFLATE + ", level=" + compressionLevel))) : ""));
+	}
+
+	public AuditEventSerializer getSerializer() {
+		return serializer;
+	}
+
+	public boolean isBlockFormat() {
+		return isBlockFormat;
+	}
+
+	/**
+	 * @return interval at which destinations should call AuditFileWriter.sync()
+	 */
+	public long getSyncIntervalMS() {
+		return syncIntervalMS;
+	}
+
+	public AuditFileWriter createWriter(OutputStream out) throws IOException {
+		return isBlockFormat ? new BlockCompressedAuditFileWriter(out, blockCodec, compressionLevel, blockSize) : new TextAuditFileWriter(out);
+	}
+
+	private static String getStringProperty(Properties props, String propName, String defValue) {
+		String ret = MiscUtil.getStringProperty(props, propName);
+
+		return ret == null || ret.trim().isEmpty() ? defValue : ret.trim();
+	}
+
+	private static AuditEventSerializer createSerializer(String name) {
+		if (SERIALIZER_GSON.equalsIgnoreCase(name)) {
+			return new GsonAuditEventSerializer();
+		} else if (SERIALIZER_JSON.equalsIgnoreCase(name)) {
+			return new JsonAuditEventSerializer();
+		}
+
+		try {
+			return (AuditEventSerializer) Class.forName(name).newInstance();
+		} catch (Exception excp) {
+			LOG.error("Can't instantiate audit serializer " + name + ". Using " + SERIALIZER_GSON, excp);
+		}
+
+		return new GsonAuditEventSerializer();
+	}
+}
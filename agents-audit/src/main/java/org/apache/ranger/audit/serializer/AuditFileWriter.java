@@ -0,0 +1,44 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.serializer;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Writes serialized audit events to a file, in the format created by
+ * AuditFileWriterFactory. Not thread-safe.
+ */
+public interface AuditFileWriter extends Closeable {
+	void write(String event) throws IOException;
+
+	/**
+	 * Flushes the underlying stream. Formats that write events in blocks keep
+	 * the events of the block being filled buffered.
+	 */
+	void flush() throws IOException;
+
+	/**
+	 * Ends the block being filled, if the format writes blocks, and flushes the
+	 * underlying stream; called by destinations periodically, so that buffered
+	 * events don't wait for a full block or close() to be written.
+	 */
+	void sync() throws IOException;
+}
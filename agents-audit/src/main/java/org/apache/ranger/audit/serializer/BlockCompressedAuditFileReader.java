@@ -0,0 +1,318 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.serializer;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static org.apache.ranger.audit.serializer.BlockCompressedAuditFileWriter.CODEC_DEFLATE;
+import static org.apache.ranger.audit.serializer.BlockCompressedAuditFileWriter.CODEC_NONE;
+import static org.apache.ranger.audit.serializer.BlockCompressedAuditFileWriter.MAGIC;
+import static org.apache.ranger.audit.serializer.BlockCompressedAuditFileWriter.SYNC_SIZE;
+import static org.apache.ranger.audit.serializer.BlockCompressedAuditFileWriter.VERSION;
+
+/**
+ * Reads events from files written by BlockCompressedAuditFileWriter. A block
+ * that fails its checksum, or has a bad header, is skipped by scanning for the
+ * next sync marker; a truncated last block - as left by a writer that did not
+ * close the file - ends the file.
+ */
+public class BlockCompressedAuditFileReader implements Closeable {
+	private static final int MAX_BLOCK_LENGTH = 256 * 1024 * 1024;
+
+	private final DataInputStream in;
+	private final byte[]          sync              = new byte[SYNC_SIZE];
+	private final byte[]          marker            = new byte[SYNC_SIZE];
+	private final CRC32           crc               = new CRC32();
+	private final Inflater        inflater          = new Inflater(true);
+	private byte                  codec             = CODEC_NONE;
+	private byte[]                data              = new byte[0];
+	private byte[]                uncompressed      = new byte[0];
+	private String[]              events            = null;
+	private int                   nextEventIdx      = 0;
+	private long                  corruptBlockCount = 0;
+
+	public BlockCompressedAuditFileReader(InputStream in) throws IOException {
+		this.in = new DataInputStream(new BufferedInputStream(in));
+
+		if (readFully(marker, 0, MAGIC.length) < MAGIC.length || !BlockCompressedAuditFileWriter.startsWithMagic(marker)) {
+			throw new IOException("not a block-compressed audit file");
+		}
+
+		if (!readHeader()) {
+			throw new IOException("truncated header");
+		}
+	}
+
+	/**
+	 * @return the next event, or null at end of file
+	 */
+	public String next() throws IOException {
+		while (events == null || nextEventIdx >= events.length) {
+			if (!readBlock()) {
+				return null;
+			}
+		}
+
+		return events[nextEventIdx++];
+	}
+
+	public long getCorruptBlockCount() {
+		return corruptBlockCount;
+	}
+
+	@Override
+	public void close() throws IOException {
+		inflater.end();
+		in.close();
+	}
+
+	private boolean readBlock() throws IOException {
+		String[] blockEvents       = null;
+		boolean  isAfterSyncMarker = false; // set after skipping a corrupt block
+
+		while (blockEvents == null) {
+			if (!isAfterSyncMarker && !readSyncMarker()) {
+				return false;
+			}
+
+			if (readFully(marker, 0, 16) < 16) { // event count, lengths and checksum
+				return false;
+			}
+
+			int  eventCount      = getInt(marker, 0);
+			int  uncompressedLen = getInt(marker, 4);
+			int  dataLen         = getInt(marker, 8);
+			long checksum        = getInt(marker, 12) & 0xFFFFFFFFL;
+
+			if (eventCount > 0 && uncompressedLen >= 0 && uncompressedLen <= MAX_BLOCK_LENGTH && dataLen >= 0 && dataLen <= MAX_BLOCK_LENGTH) {
+				if (data.length < dataLen) {
+					data = new byte[dataLen];
+				}
+
+				if (readFully(data, 0, dataLen) < dataLen) {
+					return false;
+				}
+
+				blockEvents = decodeBlock(dataLen, uncompressedLen, checksum, eventCount);
+			}
+
+			isAfterSyncMarker = false;
+
+			if (blockEvents == null) {
+				corruptBlockCount++;
+
+				if (!skipToSyncMarker()) {
+					return false;
+				}
+
+				isAfterSyncMarker = true;
+			}
+		}
+
+		events       = blockEvents;
+		nextEventIdx = 0;
+
+		return true;
+	}
+
+	// reads the marker at the start of a block, and headers of appended writes before it
+	private boolean readSyncMarker() throws IOException {
+		while (true) {
+			if (readFully(marker, 0, MAGIC.length) < MAGIC.length) {
+				return false;
+			}
+
+			if (!BlockCompressedAuditFileWriter.startsWithMagic(marker)) {
+				break;
+			}
+
+			if (!readHeader()) {
+				return false;
+			}
+		}
+
+		if (readFully(marker, MAGIC.length, SYNC_SIZE - MAGIC.length) < SYNC_SIZE - MAGIC.length) {
+			return false;
+		}
+
+		if (Arrays.equals(marker, sync)) {
+			return true;
+		}
+
+		corruptBlockCount++;
+
+		return skipToSyncMarker();
+	}
+
+	// reads the header after the magic; returns false if truncated
+	private boolean readHeader() throws IOException {
+		byte[] versionAndCodec = new byte[2];
+
+		if (readFully(versionAndCodec, 0, versionAndCodec.length) < versionAndCodec.length) {
+			return false;
+		}
+
+		if (versionAndCodec[0] != VERSION) {
+			throw new IOException("unsupported version: " + versionAndCodec[0]);
+		}
+
+		if (versionAndCodec[1] != CODEC_NONE && versionAndCodec[1] != CODEC_DEFLATE) {
+			throw new IOException("unsupported codec: " + versionAndCodec[1]);
+		}
+
+		codec = versionAndCodec[1];
+
+		return readFully(sync, 0, SYNC_SIZE) == SYNC_SIZE;
+	}
+
+	private boolean skipToSyncMarker() throws IOException {
+		int len = readFully(marker, 0, SYNC_SIZE);
+
+		if (len < SYNC_SIZE) {
+			return false;
+		}
+
+		while (!Arrays.equals(marker, sync)) {
+			int b = in.read();
+
+			if (b == -1) {
+				return false;
+			}
+
+			System.arraycopy(marker, 1, marker, 0, SYNC_SIZE - 1);
+
+			marker[SYNC_SIZE - 1] = (byte) b;
+		}
+
+		return true;
+	}
+
+	private String[] decodeBlock(int dataLen, int uncompressedLen, long checksum, int eventCount) {
+		final byte[] block;
+
+		if (codec == CODEC_DEFLATE) {
+			if (uncompressed.length < uncompressedLen) {
+				uncompressed = new byte[uncompressedLen];
+			}
+
+			try {
+				inflater.reset();
+				inflater.setInput(data, 0, dataLen);
+
+				int len = 0;
+
+				while (len < uncompressedLen && !inflater.finished()) {
+					int count = inflater.inflate(uncompressed, len, uncompressedLen - len);
+
+					if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+						break;
+					}
+
+					len += count;
+				}
+
+				if (len != uncompressedLen) {
+					return null;
+				}
+			} catch (DataFormatException excp) {
+				return null;
+			}
+
+			block = uncompressed;
+		} else {
+			if (dataLen != uncompressedLen) {
+				return null;
+			}
+
+			block = data;
+		}
+
+		crc.reset();
+		crc.update(block, 0, uncompressedLen);
+
+		if (crc.getValue() != checksum) {
+			return null;
+		}
+
+		String[] ret   = new String[eventCount];
+		int      count = 0;
+		int      start = 0;
+
+		for (int i = 0; i < uncompressedLen; i++) {
+			if (block[i] == '\n') {
+				if (count == eventCount) {
+					return null;
+				}
+
+				ret[count++] = new String(block, start, i - start, StandardCharsets.UTF_8);
+				start        = i + 1;
+			}
+		}
+
+		return (count == eventCount && start == uncompressedLen) ? ret : null;
+	}
+
+	private int readFully(byte[] buf, int off, int len) throws IOException {
+		int ret = 0;
+
+		while (ret < len) {
+			int count = in.read(buf, off + ret, len - ret);
+
+			if (count == -1) {
+				break;
+			}
+
+			ret += count;
+		}
+
+		return ret;
+	}
+
+	private static int getInt(byte[] buf, int off) {
+		return ((buf[off] & 0xFF) << 24) | ((buf[off + 1] & 0xFF) << 16) | ((buf[off + 2] & 0xFF) << 8) | (buf[off + 3] & 0xFF);
+	}
+
+	/**
+	 * Prints the events in the given files, one per line.
+	 */
+	public static void main(String[] args) throws IOException {
+		for (String fileName : args) {
+			try (BlockCompressedAuditFileReader reader = new BlockCompressedAuditFileReader(new FileInputStream(fileName))) {
+				for (String event = reader.next(); event != null; event = reader.next()) {
+					System.out.println(event);
+				}
+
+				if (reader.getCorruptBlockCount() > 0) {
+					System.err.println(fileName + ": skipped " + reader.getCorruptBlockCount() + " corrupt block(s)");
+				}
+			}
+		}
+	}
+}
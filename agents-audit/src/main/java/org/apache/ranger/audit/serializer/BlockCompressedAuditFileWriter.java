@@ -0,0 +1,245 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.serializer;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes events in blocks, each compressed independently, so that a file can
+ * be split and read from any block, and a corrupt or truncated block loses
+ * only the events in it.
+ *
+ * File layout:
+ * <pre>
+ *   header: magic "RAUD", version (1 byte), codec (1 byte), sync marker (16 bytes)
+ *   block:  sync marker (16 bytes), event count (int), uncompressed length (int),
+ *           compressed length (int), CRC32 of uncompressed data (int), compressed data
+ * </pre>
+ * The uncompressed data of a block is the events in UTF-8, each followed by
+ * '\n' - the same bytes TextAuditFileWriter would write. The sync marker is
+ * random per file; readers scan for it to skip a corrupt block. A block is
+ * written when the buffered events reach blockSize bytes, on sync() and on
+ * close(); flush() only flushes blocks already written.
+ * Appending to an existing file writes a new header, which readers accept at
+ * any block boundary.
+ */
+public class BlockCompressedAuditFileWriter implements AuditFileWriter {
+	public static final byte[] MAGIC         = { 'R', 'A', 'U', 'D' };
+	public static final byte   VERSION       = 1;
+	public static final byte   CODEC_NONE    = 0;
+	public static final byte   CODEC_DEFLATE = 1;
+	public static final int    SYNC_SIZE     = 16;
+
+	private static final SecureRandom RANDOM = new SecureRandom();
+
+	private final DataOutputStream out;
+	private final int              blockSize;
+	private final Deflater         deflater;
+	private final byte[]           sync       = new byte[SYNC_SIZE];
+	private final CRC32            crc        = new CRC32();
+	private byte[]                 buffer;
+	private int                    bufferLen  = 0;
+	private byte[]                 compressed = new byte[0];
+	private int                    eventCount = 0;
+	private boolean                isClosed   = false;
+
+	public BlockCompressedAuditFileWriter(OutputStream out, byte codec, int compressionLevel, int blockSize) throws IOException {
+		if (codec != CODEC_NONE && codec != CODEC_DEFLATE) {
+			throw new IllegalArgumentException("unsupported codec: " + codec);
+		}
+
+		this.out       = new DataOutputStream(new BufferedOutputStream(out));
+		this.blockSize = Math.max(blockSize, 1024);
+		this.deflater  = codec == CODEC_DEFLATE ? new Deflater(compressionLevel, true) : null;
+		this.buffer    = new byte[Math.min(this.blockSize + 1024, 1024 * 1024)];
+
+		do {
+			RANDOM.nextBytes(sync);
+		} while (startsWithMagic(sync)); // so that readers can tell a block from an appended header
+
+		this.out.write(MAGIC);
+		this.out.writeByte(VERSION);
+		this.out.writeByte(codec);
+		this.out.write(sync);
+	}
+
+	@Override
+	public void write(String event) throws IOException {
+		ensureOpen();
+
+		appendUtf8(event);
+		appendByte('\n');
+
+		eventCount++;
+
+		if (bufferLen >= blockSize) {
+			writeBlock();
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		ensureOpen();
+
+		out.flush();
+	}
+
+	@Override
+	public void sync() throws IOException {
+		ensureOpen();
+
+		writeBlock();
+
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (isClosed) {
+			return;
+		}
+
+		try {
+			writeBlock();
+		} finally {
+			isClosed = true;
+
+			if (deflater != null) {
+				deflater.end();
+			}
+
+			out.close();
+		}
+	}
+
+	private void writeBlock() throws IOException {
+		if (eventCount == 0) {
+			return;
+		}
+
+		crc.reset();
+		crc.update(buffer, 0, bufferLen);
+
+		final byte[] data;
+		final int    dataLen;
+
+		if (deflater != null) {
+			deflater.reset();
+			deflater.setInput(buffer, 0, bufferLen);
+			deflater.finish();
+
+			int len = 0;
+
+			while (!deflater.finished()) {
+				if (len == compressed.length) {
+					compressed = Arrays.copyOf(compressed, Math.max(compressed.length * 2, 64 * 1024));
+				}
+
+				len += deflater.deflate(compressed, len, compressed.length - len);
+			}
+
+			data    = compressed;
+			dataLen = len;
+		} else {
+			data    = buffer;
+			dataLen = bufferLen;
+		}
+
+		out.write(sync);
+		out.writeInt(eventCount);
+		out.writeInt(bufferLen);
+		out.writeInt(dataLen);
+		out.writeInt((int) crc.getValue());
+		out.write(data, 0, dataLen);
+
+		bufferLen  = 0;
+		eventCount = 0;
+	}
+
+	// encodes as String.getBytes(UTF_8) would, without allocating; capacity is kept at least the remaining chars
+	private void appendUtf8(String str) {
+		int length = str.length();
+
+		ensureCapacity(bufferLen + length);
+
+		for (int i = 0; i < length; i++) {
+			char c = str.charAt(i);
+
+			if (c < 0x80) {
+				buffer[bufferLen++] = (byte) c;
+			} else {
+				ensureCapacity(bufferLen + 4 + (length - i));
+
+				if (c < 0x800) {
+					buffer[bufferLen++] = (byte) (0xC0 | (c >> 6));
+					buffer[bufferLen++] = (byte) (0x80 | (c & 0x3F));
+				} else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(str.charAt(i + 1))) {
+					int codePoint = Character.toCodePoint(c, str.charAt(++i));
+
+					buffer[bufferLen++] = (byte) (0xF0 | (codePoint >> 18));
+					buffer[bufferLen++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+					buffer[bufferLen++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+					buffer[bufferLen++] = (byte) (0x80 | (codePoint & 0x3F));
+				} else if (Character.isSurrogate(c)) { // unpaired surrogate
+					buffer[bufferLen++] = '?';
+				} else {
+					buffer[bufferLen++] = (byte) (0xE0 | (c >> 12));
+					buffer[bufferLen++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+					buffer[bufferLen++] = (byte) (0x80 | (c & 0x3F));
+				}
+			}
+		}
+	}
+
+	private void appendByte(char c) {
+		ensureCapacity(bufferLen + 1);
+
+		buffer[bufferLen++] = (byte) c;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > buffer.length) {
+			buffer = Arrays.copyOf(buffer, Math.max(capacity, buffer.length * 2));
+		}
+	}
+
+	static boolean startsWithMagic(byte[] bytes) {
+		for (int i = 0; i < MAGIC.length; i++) {
+			if (bytes[i] != MAGIC[i]) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private void ensureOpen() throws IOException {
+		if (isClosed) {
+			throw new IOException("writer is closed");
+		}
+	}
+}
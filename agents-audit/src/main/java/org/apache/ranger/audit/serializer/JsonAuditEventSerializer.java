@@ -0,0 +1,244 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.serializer;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
+
+import org.apache.ranger.audit.model.AuditEventBase;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.apache.ranger.audit.provider.MiscUtil;
+
+/**
+ * Serializes AuthzAuditEvent to JSON without reflection, producing the same
+ * text as GsonAuditEventSerializer: same field names and order, nulls
+ * omitted, dates in "yyyy-MM-dd HH:mm:ss.SSS" and the same HTML-safe escaping.
+ * Each thread reuses one buffer, and formats the date-time of an event only
+ * when it falls in a different second than the previous event. Events of
+ * other types are serialized with Gson.
+ */
+public class JsonAuditEventSerializer implements AuditEventSerializer {
+	private static final int    MAX_REUSED_BUFFER_SIZE = 64 * 1024;
+	private static final String DATE_FORMAT            = "yyyy-MM-dd HH:mm:ss";
+	private static final char[] HEX_DIGITS             = "0123456789abcdef".toCharArray();
+
+	private static final ThreadLocal<Encoder> ENCODER = new ThreadLocal<Encoder>() {
+		@Override
+		protected Encoder initialValue() {
+			return new Encoder();
+		}
+	};
+
+	@Override
+	public void init(Properties props, String propPrefix) {
+	}
+
+	@Override
+	public String serialize(AuditEventBase event) {
+		if (event == null || event.getClass() != AuthzAuditEvent.class) { // subclasses may add fields
+			return MiscUtil.stringify(event);
+		}
+
+		return ENCODER.get().encode((AuthzAuditEvent) event);
+	}
+
+	private static final class Encoder {
+		private final SimpleDateFormat dateFormat = new SimpleDateFormat(DATE_FORMAT, Locale.US);
+		private StringBuilder          sb         = new StringBuilder(1024);
+		private long                   dateSecond = Long.MIN_VALUE;
+		private String                 dateString = null;
+		private boolean                hasField   = false;
+
+		String encode(AuthzAuditEvent event) {
+			if (sb.capacity() > MAX_REUSED_BUFFER_SIZE) {
+				sb = new StringBuilder(1024);
+			} else {
+				sb.setLength(0);
+			}
+
+			hasField = false;
+
+			sb.append('{');
+
+			appendField("repoType", event.getRepositoryType());
+			appendField("repo", event.getRepositoryName());
+			appendField("reqUser", event.getUser());
+			appendField("evtTime", event.getEventTime());
+			appendField("access", event.getAccessType());
+			appendField("resource", event.getResourcePath());
+			appendField("resType", event.getResourceType());
+			appendField("action", event.getAction());
+			appendField("result", event.getAccessResult());
+			appendField("agent", event.getAgentId());
+			appendField("policy", event.getPolicyId());
+			appendField("reason", event.getResultReason());
+			appendField("enforcer", event.getAclEnforcer());
+			appendField("sess", event.getSessionId());
+			appendField("cliType", event.getClientType());
+			appendField("cliIP", event.getClientIP());
+			appendField("reqData", event.getRequestData());
+			appendField("agentHost", event.getAgentHostname());
+			appendField("logType", event.getLogType());
+			appendField("id", event.getEventId());
+			appendField("seq_num", event.getSeqNum());
+			appendField("event_count", event.getEventCount());
+			appendField("event_dur_ms", event.getEventDurationMS());
+			appendField("tags", event.getTags());
+			appendField("additional_info", event.getAdditionalInfo());
+			appendField("cluster_name", event.getClusterName());
+
+			sb.append('}');
+
+			return sb.toString();
+		}
+
+		private void appendName(String name) {
+			if (hasField) {
+				sb.append(',');
+			} else {
+				hasField = true;
+			}
+
+			sb.append('"').append(name).append("\":");
+		}
+
+		private void appendField(String name, long value) {
+			appendName(name);
+
+			sb.append(value);
+		}
+
+		private void appendField(String name, String value) {
+			if (value != null) {
+				appendName(name);
+				appendString(value);
+			}
+		}
+
+		private void appendField(String name, Date value) {
+			if (value != null) {
+				long time   = value.getTime();
+				long second = Math.floorDiv(time, 1000L);
+				int  millis = (int) Math.floorMod(time, 1000L);
+
+				if (second != dateSecond || dateString == null) {
+					dateString = dateFormat.format(new Date(second * 1000L));
+					dateSecond = second;
+				}
+
+				appendName(name);
+
+				sb.append('"').append(dateString).append('.');
+
+				if (millis < 100) {
+					sb.append('0');
+				}
+
+				if (millis < 10) {
+					sb.append('0');
+				}
+
+				sb.append(millis).append('"');
+			}
+		}
+
+		private void appendField(String name, Set<String> values) {
+			if (values != null) {
+				appendName(name);
+
+				sb.append('[');
+
+				boolean isFirst = true;
+
+				for (String value : values) {
+					if (isFirst) {
+						isFirst = false;
+					} else {
+						sb.append(',');
+					}
+
+					if (value == null) {
+						sb.append("null");
+					} else {
+						appendString(value);
+					}
+				}
+
+				sb.append(']');
+			}
+		}
+
+		// same escaping as Gson JsonWriter in HTML-safe mode, which is Gson's default
+		private void appendString(String value) {
+			sb.append('"');
+
+			int last   = 0;
+			int length = value.length();
+
+			for (int i = 0; i < length; i++) {
+				char   c           = value.charAt(i);
+				String replacement = null;
+
+				switch (c) {
+					case '"':  replacement = "\\\""; break;
+					case '\\': replacement = "\\\\"; break;
+					case '\t': replacement = "\\t";  break;
+					case '\b': replacement = "\\b";  break;
+					case '\n': replacement = "\\n";  break;
+					case '\r': replacement = "\\r";  break;
+					case '\f': replacement = "\\f";  break;
+					case '<':
+					case '>':
+					case '&':
+					case '=':
+					case '\'':
+					case '\u2028':
+					case '\u2029':
+						break;
+					default:
+						if (c >= 0x20) {
+							continue;
+						}
+				}
+
+				if (last < i) {
+					sb.append(value, last, i);
+				}
+
+				if (replacement != null) {
+					sb.append(replacement);
+				} else {
+					sb.append("\\u").append(HEX_DIGITS[(c >> 12) & 0xF]).append(HEX_DIGITS[(c >> 8) & 0xF]).append(HEX_DIGITS[(c >> 4) & 0xF]).append(HEX_DIGITS[c & 0xF]);
+				}
+
+				last = i + 1;
+			}
+
+			if (last < length) {
+				sb.append(value, last, length);
+			}
+
+			sb.append('"');
+		}
+	}
+}
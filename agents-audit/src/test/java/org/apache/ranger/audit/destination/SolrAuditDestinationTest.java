@@ -0,0 +1,437 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.destination;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.apache.ranger.audit.model.AuditEventBase;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.impl.CloudSolrClient;
+import org.apache.solr.client.solrj.impl.HttpSolrClient.RemoteSolrException;
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.cloud.ClusterState;
+import org.apache.solr.common.cloud.DocCollection;
+import org.apache.solr.common.cloud.DocRouter;
+import org.apache.solr.common.cloud.Replica;
+import org.apache.solr.common.cloud.Slice;
+import org.apache.solr.common.cloud.SolrZkClient;
+import org.apache.solr.common.cloud.ZkStateReader;
+import org.apache.solr.common.util.NamedList;
+import org.junit.After;
+import org.junit.Test;
+
+public class SolrAuditDestinationTest {
+	private static final String PROP_PREFIX = "xasecure.audit.destination.solr";
+	private static final String COLLECTION  = "ranger_audits";
+
+	private SolrAuditDestination destination;
+
+	@After
+	public void tearDown() {
+		if (destination != null) {
+			destination.stop();
+		}
+	}
+
+	@Test
+	public void testDocumentsAreGroupedByShard() {
+		DocCollection          docCollection = createDocCollection("shard1", "shard2", "shard3");
+		CloudSolrClientStandIn solr          = new CloudSolrClientStandIn(docCollection);
+
+		destination = createDestination(solr.cloudClient, 4, 10, 25, 60000, 0);
+
+		List<AuditEventBase> events = createEvents(0, 200);
+
+		assertTrue(destination.log(events));
+
+		Set<String>             shards = new HashSet<String>();
+		Set<String>             ids    = new HashSet<String>();
+		List<SolrInputDocument> sent   = new ArrayList<SolrInputDocument>();
+
+		for (List<SolrInputDocument> request : solr.getRequests()) {
+			String shard = null;
+
+			assertTrue("request of " + request.size() + " documents exceeds the request size", request.size() <= 25);
+
+			for (SolrInputDocument doc : request) {
+				String docShard = getShardName(docCollection, doc);
+
+				if (shard == null) {
+					shard = docShard;
+				}
+
+				assertEquals("documents of a request must be of one shard", shard, docShard);
+
+				ids.add(doc.getFieldValue("id").toString());
+				sent.add(doc);
+			}
+
+			shards.add(shard);
+		}
+
+		assertEquals(3, shards.size());
+		assertEquals(200, sent.size());
+		assertEquals(200, ids.size());
+		assertEquals(200, destination.getTotalSuccessCount());
+		assertEquals(200, destination.getMetrics().getDocumentsSent());
+		assertEquals(solr.getRequests().size(), destination.getMetrics().getRequestCount());
+		assertEquals(0, destination.getMetrics().getInFlightRequests());
+		assertTrue(destination.getMetrics().getMaxInFlightRequests() >= 1);
+		assertTrue(destination.getMetrics().getMaxInFlightRequests() <= 4);
+	}
+
+	@Test
+	public void testWithoutShardsDocumentsAreSpreadEvenlyAcrossRequests() {
+		SolrClientStandIn solr = new SolrClientStandIn();
+
+		destination = createDestination(solr, 1, 10, 40, 60000, 0);
+
+		assertTrue(destination.log(createEvents(0, 100)));
+
+		assertEquals(Arrays.asList(34, 34, 32), solr.getRequestSizes());
+	}
+
+	@Test
+	public void testRejectedRequestIsRetried() {
+		SolrClientStandIn solr = new SolrClientStandIn();
+
+		solr.rejectNext(429, 1);
+		solr.rejectNext(503, 1);
+
+		destination = createDestination(solr, 1, 10, 100, 60000, 2);
+
+		assertTrue(destination.log(createEvents(0, 50)));
+
+		SolrAuditMetrics metrics = destination.getMetrics();
+
+		assertEquals(Arrays.asList(50, 50, 50), solr.getRequestSizes());
+		assertEquals(3, metrics.getRequestCount());
+		assertEquals(2, metrics.getRetryCount());
+		assertEquals(2, metrics.getRejectedRequestCount());
+		assertEquals(0, metrics.getFailedRequestCount());
+		assertEquals(50, metrics.getDocumentsSent());
+		assertEquals(50, destination.getTotalSuccessCount());
+		assertEquals(0, destination.getTotalDeferredCount());
+	}
+
+	@Test
+	public void testRequestIsDeferredWhenRetriesAreExhausted() {
+		SolrClientStandIn solr = new SolrClientStandIn();
+
+		solr.rejectNext(503, 3);
+
+		destination = createDestination(solr, 1, 10, 100, 60000, 2);
+
+		// returns false so that the upstream queue spools the batch and sends it again later
+		assertFalse(destination.log(createEvents(0, 50)));
+
+		SolrAuditMetrics metrics = destination.getMetrics();
+
+		assertEquals(3, metrics.getRequestCount());
+		assertEquals(2, metrics.getRetryCount());
+		assertEquals(3, metrics.getRejectedRequestCount());
+		assertEquals(0, metrics.getDocumentsSent());
+		assertEquals(50, destination.getTotalDeferredCount());
+		assertEquals(0, destination.getTotalFailedCount());
+
+		// connection errors are deferred too
+		solr.failNext(new IOException("connection refused"), 3);
+
+		assertFalse(destination.log(createEvents(50, 10)));
+
+		assertEquals(60, destination.getTotalDeferredCount());
+		assertEquals(4, metrics.getRetryCount());
+
+		// the batch is accepted when Solr recovers
+		assertTrue(destination.log(createEvents(0, 50)));
+
+		assertEquals(50, metrics.getDocumentsSent());
+		assertEquals(50, destination.getTotalSuccessCount());
+	}
+
+	@Test
+	public void testInvalidRequestIsNotRetried() {
+		SolrClientStandIn solr = new SolrClientStandIn();
+
+		solr.rejectNext(400, 1);
+
+		destination = createDestination(solr, 1, 10, 100, 60000, 2);
+
+		assertFalse(destination.log(createEvents(0, 20)));
+
+		SolrAuditMetrics metrics = destination.getMetrics();
+
+		assertEquals(1, metrics.getRequestCount());
+		assertEquals(0, metrics.getRetryCount());
+		assertEquals(0, metrics.getRejectedRequestCount());
+		assertEquals(1, metrics.getFailedRequestCount());
+		assertEquals(20, destination.getTotalFailedCount());
+		assertEquals(0, destination.getTotalDeferredCount());
+	}
+
+	@Test
+	public void testRequestSizeShrinksOnRejectionAndGrowsBack() {
+		SolrClientStandIn solr = new SolrClientStandIn();
+
+		solr.rejectNext(503, 2);
+
+		destination = createDestination(solr, 1, 10, 80, 60000, 2);
+
+		// rejected twice: the request size is halved each time, 80 -> 40 -> 20; the fast third attempt grows it to 25
+		assertTrue(destination.log(createEvents(0, 80)));
+		assertEquals(Arrays.asList(80, 80, 80), solr.getRequestSizes());
+
+		// fast requests limited by the request size grow it by a quarter: 25 -> 31 -> 38 -> 47 -> 58
+		solr.getRequests().clear();
+
+		assertTrue(destination.log(createEvents(80, 80)));
+		assertEquals(Arrays.asList(20, 20, 20, 20), solr.getRequestSizes());
+
+		// 58 -> 72 -> 80 (the maximum)
+		solr.getRequests().clear();
+
+		assertTrue(destination.log(createEvents(160, 80)));
+		assertEquals(Arrays.asList(40, 40), solr.getRequestSizes());
+
+		solr.getRequests().clear();
+
+		assertTrue(destination.log(createEvents(240, 80)));
+		assertEquals(Arrays.asList(80), solr.getRequestSizes());
+
+		// rejected once: 80 -> 40, grown to 50 by the third attempt; batches smaller than the request size don't grow it
+		solr.getRequests().clear();
+		solr.rejectNext(503, 1);
+
+		assertTrue(destination.log(createEvents(320, 80)));
+
+		for (int i = 0; i < 3; i++) {
+			assertTrue(destination.log(createEvents(400 + i * 30, 30)));
+		}
+
+		assertTrue(destination.log(createEvents(490, 80)));
+		assertEquals(Arrays.asList(80, 80, 30, 30, 30, 40, 40), solr.getRequestSizes());
+
+		assertEquals(570, destination.getMetrics().getDocumentsSent());
+	}
+
+	@Test
+	public void testRequestSizeShrinksOnSlowRequestsDownToMinimum() {
+		SolrClientStandIn solr = new SolrClientStandIn();
+
+		solr.setLatencyMs(5);
+
+		destination = createDestination(solr, 1, 15, 100, 1, 0);
+
+		// every request is slower than the target latency of 1ms: 100 -> 50 -> 25 -> 15 (the minimum)
+		for (int i = 0; i < 3; i++) {
+			assertTrue(destination.log(createEvents(i * 100, 100)));
+		}
+
+		assertEquals(Arrays.asList(100, 50, 50, 15, 15, 15, 15, 15, 15, 10), solr.getRequestSizes());
+		assertTrue(destination.getMetrics().getMaxRequestLatencyNanos() >= 5000000L);
+		assertTrue(destination.getMetrics().getAvgRequestLatencyNanos() >= 5000000L);
+	}
+
+	private SolrAuditDestination createDestination(SolrClient solr, int maxInFlight, int minDocs, int maxDocs, long targetLatencyMs, int maxRetries) {
+		SolrAuditDestination ret   = new SolrAuditDestination(solr);
+		Properties           props = new Properties();
+
+		props.setProperty(PROP_PREFIX + "." + SolrAuditDestination.PROP_SOLR_MAX_INFLIGHT_REQUESTS, String.valueOf(maxInFlight));
+		props.setProperty(PROP_PREFIX + "." + SolrAuditDestination.PROP_SOLR_REQUEST_MIN_DOCS, String.valueOf(minDocs));
+		props.setProperty(PROP_PREFIX + "." + SolrAuditDestination.PROP_SOLR_REQUEST_MAX_DOCS, String.valueOf(maxDocs));
+		props.setProperty(PROP_PREFIX + "." + SolrAuditDestination.PROP_SOLR_REQUEST_TARGET_LATENCY_MS, String.valueOf(targetLatencyMs));
+		props.setProperty(PROP_PREFIX + "." + SolrAuditDestination.PROP_SOLR_REQUEST_MAX_RETRIES, String.valueOf(maxRetries));
+		props.setProperty(PROP_PREFIX + "." + SolrAuditDestination.PROP_SOLR_REQUEST_RETRY_BACKOFF_MS, "1");
+
+		ret.init(props, PROP_PREFIX);
+
+		return ret;
+	}
+
+	private List<AuditEventBase> createEvents(int start, int count) {
+		List<AuditEventBase> ret = new ArrayList<AuditEventBase>(count);
+
+		for (int i = start; i < start + count; i++) {
+			AuthzAuditEvent event = new AuthzAuditEvent();
+
+			event.setEventId("event-" + i);
+			event.setUser("user" + (i % 7));
+			event.setRepositoryName("hdfsdev");
+			event.setResourcePath("/data/" + i);
+
+			ret.add(event);
+		}
+
+		return ret;
+	}
+
+	private static DocCollection createDocCollection(String... shardNames) {
+		Map<String, Slice>    slices = new HashMap<String, Slice>();
+		List<DocRouter.Range> ranges = DocRouter.DEFAULT.partitionRange(shardNames.length, DocRouter.DEFAULT.fullRange());
+
+		for (int i = 0; i < shardNames.length; i++) {
+			Map<String, Object> sliceProps = new HashMap<String, Object>();
+
+			sliceProps.put(Slice.RANGE, ranges.get(i));
+
+			slices.put(shardNames[i], new Slice(shardNames[i], Collections.<String, Replica>emptyMap(), sliceProps));
+		}
+
+		return new DocCollection(COLLECTION, slices, Collections.<String, Object>emptyMap(), DocRouter.DEFAULT);
+	}
+
+	private static String getShardName(DocCollection docCollection, SolrInputDocument doc) {
+		return docCollection.getRouter().getTargetSlice(doc.getFieldValue("id").toString(), doc, null, null, docCollection).getName();
+	}
+
+	// records the documents of update requests; rejects or fails requests as told
+	static class SolrClientStandIn extends SolrClient {
+		private final List<List<SolrInputDocument>> requests     = Collections.synchronizedList(new ArrayList<List<SolrInputDocument>>());
+		private final List<Exception>               nextFailures = new ArrayList<Exception>();
+		private volatile long                       latencyMs    = 0;
+
+		List<List<SolrInputDocument>> getRequests() {
+			return requests;
+		}
+
+		List<Integer> getRequestSizes() {
+			List<Integer> ret = new ArrayList<Integer>();
+
+			synchronized (requests) {
+				for (List<SolrInputDocument> request : requests) {
+					ret.add(request.size());
+				}
+			}
+
+			return ret;
+		}
+
+		void setLatencyMs(long latencyMs) {
+			this.latencyMs = latencyMs;
+		}
+
+		void rejectNext(int httpStatus, int count) {
+			for (int i = 0; i < count; i++) {
+				failNext(new RemoteSolrException("localhost", httpStatus, "status " + httpStatus, null), 1);
+			}
+		}
+
+		synchronized void failNext(Exception excp, int count) {
+			for (int i = 0; i < count; i++) {
+				nextFailures.add(excp);
+			}
+		}
+
+		@Override
+		public NamedList<Object> request(SolrRequest request, String collection) throws SolrServerException, IOException {
+			List<SolrInputDocument> docs = ((UpdateRequest) request).getDocuments();
+
+			requests.add(new ArrayList<SolrInputDocument>(docs));
+
+			if (latencyMs > 0) {
+				try {
+					Thread.sleep(latencyMs);
+				} catch (InterruptedException excp) {
+					Thread.currentThread().interrupt();
+				}
+			}
+
+			Exception failure = null;
+
+			synchronized (this) {
+				if (!nextFailures.isEmpty()) {
+					failure = nextFailures.remove(0);
+				}
+			}
+
+			if (failure instanceof IOException) {
+				throw (IOException) failure;
+			} else if (failure instanceof RuntimeException) {
+				throw (RuntimeException) failure;
+			}
+
+			return createResponse();
+		}
+
+		@Override
+		public void close() {
+		}
+
+		@Override
+		public void shutdown() {
+		}
+
+		static NamedList<Object> createResponse() {
+			NamedList<Object> header = new NamedList<Object>();
+			NamedList<Object> ret    = new NamedList<Object>();
+
+			header.add("status", 0);
+			header.add("QTime", 1);
+			ret.add("responseHeader", header);
+
+			return ret;
+		}
+	}
+
+	// SolrCloud client whose cluster state has the given collection; records requests like SolrClientStandIn
+	static class CloudSolrClientStandIn extends SolrClientStandIn {
+		final CloudSolrClient cloudClient;
+
+		CloudSolrClientStandIn(final DocCollection docCollection) {
+			final ZkStateReader zkStateReader = new ZkStateReader((SolrZkClient) null) {
+				@Override
+				public ClusterState getClusterState() {
+					return new ClusterState(1, Collections.<String>emptySet(), Collections.singletonMap(COLLECTION, docCollection));
+				}
+			};
+
+			cloudClient = new CloudSolrClient("localhost:2181") {
+				@Override
+				public ZkStateReader getZkStateReader() {
+					return zkStateReader;
+				}
+
+				@Override
+				public NamedList<Object> request(SolrRequest request, String collection) throws SolrServerException, IOException {
+					return CloudSolrClientStandIn.this.request(request, collection);
+				}
+			};
+
+			cloudClient.setDefaultCollection(COLLECTION);
+		}
+	}
+}
@@ -0,0 +1,373 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.queue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ranger.audit.model.AuditEventBase;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.apache.ranger.audit.provider.DummyAuditProvider;
+import org.apache.ranger.audit.queue.AuditRingBufferQueue.OverflowPolicy;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AuditRingBufferQueueTest {
+	private static final long WAIT_MS = 30 * 1000;
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private List<AuditRingBufferQueue> queues = new ArrayList<>();
+
+	@After
+	public void tearDown() {
+		for (AuditRingBufferQueue queue : queues) {
+			queue.stop();
+		}
+	}
+
+	@Test
+	public void testConcurrentProducers() throws Exception {
+		final int                  threadCount = 4;
+		final int                  perThread   = 20000;
+		TestConsumer               consumer    = new TestConsumer();
+		final AuditRingBufferQueue queue       = createQueue(consumer, OverflowPolicy.BLOCK, 64, new Properties());
+
+		queue.start();
+
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+
+		for (int t = 0; t < threadCount; t++) {
+			final int thread = t;
+
+			executor.submit(new Runnable() {
+				@Override
+				public void run() {
+					for (int i = 0; i < perThread; i++) {
+						queue.log(event(thread + "-" + i, "user" + thread));
+					}
+				}
+			});
+		}
+
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(WAIT_MS, TimeUnit.MILLISECONDS));
+
+		waitForCount(consumer, threadCount * perThread);
+
+		// no event is lost or sent twice, and the events of a producer are sent in order
+		List<String> received = consumer.getReceivedIds();
+		int[]        next     = new int[threadCount];
+
+		assertEquals(threadCount * perThread, new HashSet<>(received).size());
+
+		for (String id : received) {
+			String[] ti = id.split("-");
+
+			assertEquals("event " + id, next[Integer.parseInt(ti[0])]++, Integer.parseInt(ti[1]));
+		}
+
+		AuditQueueMetrics metrics = queue.getMetrics();
+
+		assertEquals(threadCount * perThread, metrics.getEnqueuedCount());
+		assertEquals(0, metrics.getDroppedCount());
+		assertTrue(metrics.getMaxDepth() <= 64);
+	}
+
+	@Test
+	public void testOverflowBlock() throws Exception {
+		TestConsumer               consumer = new TestConsumer();
+		final AuditRingBufferQueue queue    = createQueue(consumer, OverflowPolicy.BLOCK, 4, new Properties());
+
+		Thread producer = new Thread() {
+			@Override
+			public void run() {
+				for (int i = 0; i < 6; i++) {
+					queue.log(event(Integer.toString(i), "user"));
+				}
+			}
+		};
+
+		producer.start();
+
+		// the producer waits for room in the full buffer, until the consumer is started
+		producer.join(500);
+
+		assertTrue(producer.isAlive());
+		assertEquals(4, queue.getDepth());
+
+		queue.start();
+
+		producer.join(WAIT_MS);
+
+		waitForCount(consumer, 6);
+
+		assertEquals(ids(0, 6), consumer.getReceivedIds());
+		assertEquals(6, queue.getMetrics().getEnqueuedCount());
+		assertEquals(0, queue.getMetrics().getDroppedCount());
+		assertEquals(4, queue.getMetrics().getMaxDepth());
+	}
+
+	@Test
+	public void testOverflowDropOldest() throws Exception {
+		TestConsumer         consumer = new TestConsumer();
+		AuditRingBufferQueue queue    = createQueue(consumer, OverflowPolicy.DROP_OLDEST, 4, new Properties());
+
+		for (int i = 0; i < 10; i++) {
+			assertTrue(queue.log(event(Integer.toString(i), "user")));
+		}
+
+		queue.start();
+
+		waitForCount(consumer, 4);
+
+		assertEquals(ids(6, 10), consumer.getReceivedIds());
+		assertEquals(10, queue.getMetrics().getEnqueuedCount());
+		assertEquals(6, queue.getMetrics().getDroppedCount());
+		assertEquals(4, queue.getMetrics().getMaxDepth());
+	}
+
+	@Test
+	public void testOverflowSpill() throws Exception {
+		Properties props = new Properties();
+
+		props.setProperty("q.filespool.enable", "true");
+		props.setProperty("q.filespool.type", AuditQueue.FILE_SPOOL_TYPE_SEGMENTED);
+		props.setProperty("q.filespool.dir", tempFolder.newFolder("spool").getPath());
+		props.setProperty("q.filespool.destination.retry.ms", "10");
+
+		TestConsumer         consumer = new TestConsumer();
+		AuditRingBufferQueue queue    = createQueue(consumer, OverflowPolicy.SPILL, 4, props);
+
+		for (int i = 0; i < 10; i++) {
+			assertTrue(queue.log(event(Integer.toString(i), "user")));
+		}
+
+		queue.start();
+		queue.fileSpooler.flush();
+
+		// the events in the buffer are sent by the queue, the spilled ones by the file spool
+		waitForCount(consumer, 4);
+		waitForJsonCount(consumer, 6);
+
+		assertEquals(ids(0, 4), consumer.getReceivedIds());
+		assertEquals(10, queue.getMetrics().getEnqueuedCount());
+		assertEquals(6, queue.getMetrics().getSpilledCount());
+		assertEquals(0, queue.getMetrics().getDroppedCount());
+	}
+
+	@Test
+	public void testOverflowSpillWithoutFileSpool() throws Exception {
+		TestConsumer         consumer = new TestConsumer();
+		AuditRingBufferQueue queue    = createQueue(consumer, OverflowPolicy.SPILL, 4, new Properties());
+
+		for (int i = 0; i < 10; i++) {
+			queue.log(event(Integer.toString(i), "user"));
+		}
+
+		assertEquals(4, queue.getMetrics().getEnqueuedCount());
+		assertEquals(6, queue.getMetrics().getDroppedCount());
+		assertEquals(0, queue.getMetrics().getSpilledCount());
+	}
+
+	@Test
+	public void testOverflowSummarize() throws Exception {
+		TestConsumer         consumer = new TestConsumer();
+		AuditRingBufferQueue queue    = createQueue(consumer, OverflowPolicy.SUMMARIZE, 4, new Properties());
+
+		for (int i = 0; i < 4; i++) {
+			assertTrue(queue.log(event(Integer.toString(i), "user")));
+		}
+
+		// events that don't fit in the buffer are counted against the summary of their key
+		for (int i = 4; i < 10; i++) {
+			assertTrue(queue.log(event(Integer.toString(i), "user" + (i % 2))));
+		}
+
+		queue.start();
+
+		waitForCount(consumer, 6);
+
+		List<AuditEventBase> received = consumer.getReceived();
+
+		assertEquals(ids(0, 4), consumer.getReceivedIds().subList(0, 4));
+
+		Set<String> summaries = new HashSet<>();
+
+		for (AuditEventBase event : received.subList(4, 6)) {
+			AuthzAuditEvent summary = (AuthzAuditEvent) event;
+
+			summaries.add(summary.getUser() + ":" + summary.getEventCount());
+		}
+
+		assertEquals(new HashSet<>(Arrays.asList("user0:3", "user1:3")), summaries);
+		assertEquals(10, queue.getMetrics().getEnqueuedCount());
+		assertEquals(6, queue.getMetrics().getSummarizedCount());
+		assertEquals(0, queue.getMetrics().getDroppedCount());
+	}
+
+	@Test
+	public void testConsumerWokenForFullBatch() throws Exception {
+		TestConsumer         consumer = new TestConsumer();
+		AuditRingBufferQueue queue    = createQueue(consumer, OverflowPolicy.BLOCK, 64, new Properties());
+
+		queue.setMaxBatchSize(10);
+		queue.setMaxBatchInterval(60 * 1000);
+		queue.start();
+
+		// wait for the consumer to find the buffer empty
+		Thread.sleep(100);
+
+		for (int i = 0; i < 10; i++) {
+			queue.log(event(Integer.toString(i), "user"));
+		}
+
+		waitForCount(consumer, 10);
+
+		// the consumer was not woken by each event, but once the batch was full
+		assertEquals(Collections.singletonList(10), consumer.getBatchSizes());
+	}
+
+	private AuditRingBufferQueue createQueue(TestConsumer consumer, OverflowPolicy overflowPolicy, int capacity, Properties props) {
+		props.setProperty("q." + AuditRingBufferQueue.PROP_OVERFLOW_POLICY, overflowPolicy.name());
+		props.setProperty("q." + AuditQueue.PROP_QUEUE_SIZE, Integer.toString(capacity));
+
+		AuditRingBufferQueue queue = new AuditRingBufferQueue(consumer);
+
+		queue.init(props, "q");
+
+		assertEquals(overflowPolicy, queue.getOverflowPolicy());
+
+		queues.add(queue);
+
+		return queue;
+	}
+
+	private static void waitForCount(TestConsumer consumer, int count) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + WAIT_MS;
+
+		while (consumer.getReceived().size() < count && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+
+		assertEquals(count, consumer.getReceived().size());
+	}
+
+	private static void waitForJsonCount(TestConsumer consumer, int count) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + WAIT_MS;
+
+		while (consumer.getReceivedJsonCount() < count && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+
+		assertEquals(count, consumer.getReceivedJsonCount());
+	}
+
+	private static AuthzAuditEvent event(String id, String user) {
+		AuthzAuditEvent ret = new AuthzAuditEvent();
+
+		ret.setEventId(id);
+		ret.setUser(user);
+		ret.setEventTime(new Date());
+
+		return ret;
+	}
+
+	private static List<String> ids(int from, int to) {
+		List<String> ret = new ArrayList<>();
+
+		for (int i = from; i < to; i++) {
+			ret.add(Integer.toString(i));
+		}
+
+		return ret;
+	}
+
+	private static class TestConsumer extends DummyAuditProvider {
+		private final List<AuditEventBase> received     = new ArrayList<>();
+		private final List<Integer>        batchSizes   = new ArrayList<>();
+		private int                        receivedJson = 0;
+
+		synchronized List<AuditEventBase> getReceived() {
+			return new ArrayList<>(received);
+		}
+
+		synchronized List<String> getReceivedIds() {
+			List<String> ret = new ArrayList<>();
+
+			for (AuditEventBase event : received) {
+				ret.add(((AuthzAuditEvent) event).getEventId());
+			}
+
+			return ret;
+		}
+
+		synchronized List<Integer> getBatchSizes() {
+			return new ArrayList<>(batchSizes);
+		}
+
+		synchronized int getReceivedJsonCount() {
+			return receivedJson;
+		}
+
+		@Override
+		public synchronized boolean log(AuditEventBase event) {
+			received.add(event);
+
+			return true;
+		}
+
+		@Override
+		public synchronized boolean log(Collection<AuditEventBase> events) {
+			received.addAll(events);
+			batchSizes.add(events.size());
+
+			return true;
+		}
+
+		@Override
+		public synchronized boolean logJSON(Collection<String> events) {
+			receivedJson += events.size();
+
+			return true;
+		}
+
+		@Override
+		public String getName() {
+			return "testConsumer";
+		}
+	}
+}
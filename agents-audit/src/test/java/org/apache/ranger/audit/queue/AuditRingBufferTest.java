@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.queue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.Test;
+
+public class AuditRingBufferTest {
+	private static final long WAIT_MS = 30 * 1000;
+
+	@Test
+	public void testCapacityIsPowerOf2() {
+		assertEquals(1, new AuditRingBuffer<Integer>(1).capacity());
+		assertEquals(8, new AuditRingBuffer<Integer>(5).capacity());
+		assertEquals(1024, new AuditRingBuffer<Integer>(1024).capacity());
+	}
+
+	@Test
+	public void testOfferAndPollInOrder() {
+		AuditRingBuffer<Integer> buffer = new AuditRingBuffer<Integer>(4);
+
+		// wraps around the array a few times
+		for (int round = 0; round < 3; round++) {
+			for (int i = 0; i < 4; i++) {
+				assertTrue(buffer.offer(round * 4 + i));
+			}
+
+			assertFalse(buffer.offer(-1));
+			assertEquals(4, buffer.size());
+
+			List<Integer> drained = new ArrayList<Integer>();
+
+			assertEquals(3, buffer.drainTo(drained, 3));
+			assertEquals(Integer.valueOf(round * 4 + 3), buffer.poll());
+			assertNull(buffer.poll());
+			assertTrue(buffer.isEmpty());
+
+			for (int i = 0; i < 3; i++) {
+				assertEquals(Integer.valueOf(round * 4 + i), drained.get(i));
+			}
+		}
+	}
+
+	@Test
+	public void testConcurrentProducersAndConsumers() throws Exception {
+		final int                      producerCount = 4;
+		final int                      consumerCount = 4;
+		final int                      perProducer   = 100000;
+		final int                      total         = producerCount * perProducer;
+		final AuditRingBuffer<Integer> buffer        = new AuditRingBuffer<Integer>(64);
+		final AtomicIntegerArray       received      = new AtomicIntegerArray(total);
+		final AtomicInteger            receivedCount = new AtomicInteger();
+
+		ExecutorService executor = Executors.newFixedThreadPool(producerCount + consumerCount);
+		List<Future<?>> futures  = new ArrayList<Future<?>>();
+
+		for (int p = 0; p < producerCount; p++) {
+			final int producer = p;
+
+			futures.add(executor.submit(new Runnable() {
+				@Override
+				public void run() {
+					for (int i = 0; i < perProducer; i++) {
+						Integer element = producer * perProducer + i;
+
+						while (!buffer.offer(element)) {
+							Thread.yield();
+						}
+					}
+				}
+			}));
+		}
+
+		for (int c = 0; c < consumerCount; c++) {
+			futures.add(executor.submit(new Runnable() {
+				@Override
+				public void run() {
+					int[] lastOfProducer = new int[producerCount];
+
+					for (int p = 0; p < producerCount; p++) {
+						lastOfProducer[p] = -1;
+					}
+
+					while (receivedCount.get() < total) {
+						Integer element = buffer.poll();
+
+						if (element == null) {
+							Thread.yield();
+
+							continue;
+						}
+
+						int producer = element / perProducer;
+						int index    = element % perProducer;
+
+						// a consumer sees the elements of a producer in the order they were offered
+						if (index <= lastOfProducer[producer]) {
+							throw new AssertionError("element " + element + " after " + (producer * perProducer + lastOfProducer[producer]));
+						}
+
+						lastOfProducer[producer] = index;
+
+						received.incrementAndGet(element);
+						receivedCount.incrementAndGet();
+					}
+				}
+			}));
+		}
+
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(WAIT_MS, TimeUnit.MILLISECONDS));
+
+		for (Future<?> future : futures) {
+			future.get(); // fails the test with the error of a consumer
+		}
+
+		assertEquals(total, receivedCount.get());
+
+		for (int i = 0; i < total; i++) {
+			assertEquals("element " + i, 1, received.get(i));
+		}
+
+		assertTrue(buffer.isEmpty());
+	}
+}
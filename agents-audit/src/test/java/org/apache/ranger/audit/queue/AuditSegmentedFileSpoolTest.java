@@ -0,0 +1,401 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.queue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.ranger.audit.provider.DummyAuditProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AuditSegmentedFileSpoolTest {
+	private static final Pattern EVENT_PATTERN  = Pattern.compile("\\{\"t\":(\\d+),\"i\":(\\d+)\\}");
+	private static final long    WAIT_MS        = 30 * 1000;
+	private static final int     SEGMENT_BYTES  = 4096;
+	private static final int     SLOT_SIZE      = 32;
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private File                          spoolDir;
+	private List<AuditSegmentedFileSpool> spools = new ArrayList<>();
+
+	@Before
+	public void setUp() throws IOException {
+		spoolDir = tempFolder.newFolder("spool");
+	}
+
+	@After
+	public void tearDown() {
+		for (AuditSegmentedFileSpool spool : spools) {
+			spool.stop();
+		}
+	}
+
+	@Test
+	public void testRolloverDuringRead() throws Exception {
+		final int      threadCount = 4;
+		final int      perThread   = 5000;
+		TestConsumer   consumer    = new TestConsumer(true);
+		final AuditSegmentedFileSpool spool = startSpool(consumer, new Properties());
+
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+
+		for (int t = 0; t < threadCount; t++) {
+			final int thread = t;
+
+			executor.submit(new Runnable() {
+				@Override
+				public void run() {
+					for (int i = 0; i < perThread; i++) {
+						spool.stashLogsString(event(thread, i));
+					}
+				}
+			});
+		}
+
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(WAIT_MS, TimeUnit.MILLISECONDS));
+
+		waitForCount(consumer, threadCount * perThread);
+
+		// every event is received once, in the order of its producer, across many segment rollovers
+		int[] next = new int[threadCount];
+
+		for (String event : consumer.getReceived()) {
+			int[] ti = parse(event);
+
+			assertEquals("event " + event, next[ti[0]], ti[1]);
+
+			next[ti[0]]++;
+		}
+
+		for (int t = 0; t < threadCount; t++) {
+			assertEquals(perThread, next[t]);
+		}
+	}
+
+	@Test
+	public void testReplayFromCheckpointAfterCrash() throws Exception {
+		TestConsumer            consumer = new TestConsumer(true);
+		AuditSegmentedFileSpool spool    = startSpool(consumer, new Properties());
+
+		for (int i = 0; i < 1000; i++) {
+			spool.stashLogsString(event(0, i));
+		}
+
+		waitForCount(consumer, 1000);
+
+		consumer.setIsUp(false);
+
+		for (int i = 1000; i < 1500; i++) {
+			spool.stashLogsString(event(0, i));
+		}
+
+		stopSpool(spool);
+
+		// a crash while writing: the latest checkpoint slot is torn, and so is the last record of the last segment
+		corruptLatestCheckpointSlot();
+
+		try (FileOutputStream out = new FileOutputStream(getSegmentFiles().get(getSegmentFiles().size() - 1), true)) {
+			out.write(new byte[] { 0, 0, 0, 100, 1, 2 });
+		}
+
+		TestConsumer replayConsumer = new TestConsumer(true);
+
+		spool = startSpool(replayConsumer, new Properties());
+
+		assertTrue(spool.isPending());
+
+		waitForNotPending(spool);
+
+		// replay starts at the previous checkpoint: events may be sent again, but none are lost or reordered
+		List<String> replayed = replayConsumer.getReceived();
+		int          first    = parse(replayed.get(0))[1];
+
+		assertTrue("replay started at " + first, first <= 1000);
+		assertEquals(1500 - first, replayed.size());
+
+		for (int i = 0; i < replayed.size(); i++) {
+			assertEquals(event(0, first + i), replayed.get(i));
+		}
+
+		stopSpool(spool);
+
+		// the checkpoint is at the end of the spool now: nothing is replayed after another restart
+		TestConsumer restartConsumer = new TestConsumer(true);
+
+		spool = startSpool(restartConsumer, new Properties());
+
+		assertFalse(spool.isPending());
+
+		Thread.sleep(500);
+
+		assertTrue(restartConsumer.getReceived().isEmpty());
+	}
+
+	@Test
+	public void testRetentionMaxBytes() throws Exception {
+		final long retentionMaxBytes = 10 * SEGMENT_BYTES;
+		final int  eventCount       = 5000;
+		Properties props            = new Properties();
+
+		props.setProperty("p." + AuditSegmentedFileSpool.PROP_FILE_SPOOL_RETENTION_MAX_BYTES, Long.toString(retentionMaxBytes));
+
+		TestConsumer            consumer = new TestConsumer(false);
+		AuditSegmentedFileSpool spool    = startSpool(consumer, props);
+
+		stash(spool, 0, eventCount);
+
+		long totalBytes = 0;
+
+		for (File file : getSegmentFiles()) {
+			totalBytes += file.length();
+		}
+
+		// the oldest segments are deleted when a segment is opened; the segment being written can then fill up
+		assertTrue("spool size " + totalBytes, totalBytes <= retentionMaxBytes + 2 * SEGMENT_BYTES);
+
+		consumer.setIsUp(true);
+
+		waitForNotPending(spool);
+
+		// events of the deleted segments are lost, the newest ones are sent in order
+		List<String> received = consumer.getReceived();
+		int          first    = parse(received.get(0))[1];
+
+		assertTrue("received " + received.size(), first > 0 && received.size() == eventCount - first);
+
+		for (int i = 0; i < received.size(); i++) {
+			assertEquals(event(0, first + i), received.get(i));
+		}
+	}
+
+	@Test
+	public void testRetentionMaxAge() throws Exception {
+		Properties props = new Properties();
+
+		props.setProperty("p." + AuditSegmentedFileSpool.PROP_FILE_SPOOL_RETENTION_MAX_AGE_SEC, "1");
+
+		TestConsumer            consumer = new TestConsumer(false);
+		AuditSegmentedFileSpool spool    = startSpool(consumer, props);
+
+		stash(spool, 0, 500);
+
+		List<File> oldSegments = getSegmentFiles();
+
+		assertTrue(oldSegments.size() > 2);
+
+		Thread.sleep(1500);
+
+		// opening new segments deletes the ones older than retention age, except the segment being written
+		stash(spool, 500, 1000);
+
+		for (File file : oldSegments.subList(0, oldSegments.size() - 1)) {
+			assertFalse(file + " exists", file.exists());
+		}
+
+		consumer.setIsUp(true);
+
+		waitForNotPending(spool);
+
+		List<String> received = consumer.getReceived();
+
+		assertFalse(received.contains(event(0, 0)));
+		assertEquals(event(0, 999), received.get(received.size() - 1));
+	}
+
+	// events are flushed in small groups, so that a group commit doesn't overshoot the segment size by much
+	private static void stash(AuditSegmentedFileSpool spool, int from, int to) {
+		for (int i = from; i < to; i++) {
+			spool.stashLogsString(event(0, i));
+
+			if (i % 20 == 19) {
+				spool.flush();
+			}
+		}
+
+		spool.flush();
+	}
+
+	private AuditSegmentedFileSpool startSpool(TestConsumer consumer, Properties props) {
+		props.setProperty("p.filespool.dir", spoolDir.getPath());
+		props.setProperty("p.filespool.destination.retry.ms", "10");
+		props.setProperty("p." + AuditSegmentedFileSpool.PROP_FILE_SPOOL_SEGMENT_MAX_BYTES, Integer.toString(SEGMENT_BYTES));
+		props.setProperty("p." + AuditSegmentedFileSpool.PROP_FILE_SPOOL_FSYNC, "false");
+
+		AuditBatchQueue queue = new AuditBatchQueue(consumer);
+
+		queue.setMaxBatchSize(100);
+
+		AuditSegmentedFileSpool spool = new AuditSegmentedFileSpool(queue, consumer);
+
+		assertTrue(spool.init(props, "p"));
+
+		spool.start();
+
+		spools.add(spool);
+
+		return spool;
+	}
+
+	private void stopSpool(AuditSegmentedFileSpool spool) {
+		spools.remove(spool);
+
+		spool.stop();
+	}
+
+	private void corruptLatestCheckpointSlot() throws IOException {
+		File[] files = spoolDir.listFiles();
+
+		assertTrue(files != null);
+
+		for (File file : files) {
+			if (file.getName().endsWith(".checkpoint")) {
+				try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+					assertEquals(2 * SLOT_SIZE, raf.length());
+
+					raf.seek(0);
+					long seq0 = raf.readLong();
+					raf.seek(SLOT_SIZE);
+					long seq1 = raf.readLong();
+
+					// flip a byte of the offset of the slot with the higher sequence
+					long position = (seq0 > seq1 ? 0 : SLOT_SIZE) + 16;
+
+					raf.seek(position);
+					int b = raf.read();
+					raf.seek(position);
+					raf.write(b ^ 0xff);
+				}
+
+				return;
+			}
+		}
+
+		throw new AssertionError("checkpoint file not found in " + spoolDir);
+	}
+
+	private List<File> getSegmentFiles() {
+		List<File> ret   = new ArrayList<>();
+		File[]     files = spoolDir.listFiles();
+
+		if (files != null) {
+			for (File file : files) {
+				if (file.getName().endsWith(".wal")) {
+					ret.add(file);
+				}
+			}
+		}
+
+		Collections.sort(ret);
+
+		return ret;
+	}
+
+	private static void waitForCount(TestConsumer consumer, int count) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + WAIT_MS;
+
+		while (consumer.getReceivedCount() < count && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+
+		assertEquals(count, consumer.getReceivedCount());
+	}
+
+	private static void waitForNotPending(AuditSegmentedFileSpool spool) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + WAIT_MS;
+
+		while (spool.isPending() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+
+		assertFalse(spool.isPending());
+	}
+
+	private static String event(int thread, int index) {
+		return "{\"t\":" + thread + ",\"i\":" + index + "}";
+	}
+
+	private static int[] parse(String event) {
+		Matcher matcher = EVENT_PATTERN.matcher(event);
+
+		assertTrue(event, matcher.matches());
+
+		return new int[] { Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)) };
+	}
+
+	private static class TestConsumer extends DummyAuditProvider {
+		private final List<String> received = new ArrayList<>();
+		private volatile boolean   isUp;
+
+		TestConsumer(boolean isUp) {
+			this.isUp = isUp;
+		}
+
+		void setIsUp(boolean isUp) {
+			this.isUp = isUp;
+		}
+
+		synchronized List<String> getReceived() {
+			return new ArrayList<>(received);
+		}
+
+		synchronized int getReceivedCount() {
+			return received.size();
+		}
+
+		@Override
+		public synchronized boolean logJSON(Collection<String> events) {
+			if (!isUp) {
+				return false;
+			}
+
+			received.addAll(events);
+
+			return true;
+		}
+
+		@Override
+		public String getName() {
+			return "testConsumer";
+		}
+	}
+}
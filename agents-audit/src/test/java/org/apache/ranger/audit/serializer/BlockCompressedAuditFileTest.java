@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.serializer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Deflater;
+
+import org.junit.Test;
+
+public class BlockCompressedAuditFileTest {
+	private static final int BLOCK_SIZE  = 1024;
+	private static final int HEADER_SIZE = BlockCompressedAuditFileWriter.MAGIC.length + 2 + BlockCompressedAuditFileWriter.SYNC_SIZE;
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		for (byte codec : new byte[] { BlockCompressedAuditFileWriter.CODEC_DEFLATE, BlockCompressedAuditFileWriter.CODEC_NONE }) {
+			List<String> events = createEvents(0, 1000);
+			byte[]       file   = write(codec, events);
+
+			assertTrue("codec " + codec, getBlockOffsets(file).size() > 10);
+			assertEquals("codec " + codec, events, read(file));
+		}
+	}
+
+	@Test
+	public void testNonAsciiEvents() throws IOException {
+		List<String> events = Arrays.asList("{\"user\":\"élève\"}", "{\"resource\":\"数据\"}", "{\"emoji\":\"😀\"}",
+		                                    "{\"separators\":\"\u2028\u2029\"}", "");
+
+		assertEquals(events, read(write(BlockCompressedAuditFileWriter.CODEC_DEFLATE, events)));
+	}
+
+	@Test
+	public void testBlocksAreCutOnSizeSyncAndClose() throws IOException {
+		ByteArrayOutputStream          out    = new ByteArrayOutputStream();
+		BlockCompressedAuditFileWriter writer = createWriter(out, BlockCompressedAuditFileWriter.CODEC_DEFLATE);
+
+		// flush() after every batch doesn't end the block being filled
+		for (int i = 0; i < 5; i++) {
+			writer.write(createEvent(i));
+			writer.flush();
+		}
+
+		assertEquals(HEADER_SIZE, out.size());
+
+		writer.sync();
+
+		assertEquals(1, getBlockOffsets(out.toByteArray()).size());
+
+		// sync() with no events buffered writes nothing
+		writer.sync();
+
+		assertEquals(1, getBlockOffsets(out.toByteArray()).size());
+
+		// a block is written when the buffered events reach the block size
+		int count = 5;
+
+		while (getBlockOffsets(out.toByteArray()).size() == 1) {
+			writer.write(createEvent(count++));
+			writer.flush();
+		}
+
+		assertTrue(count > 5 + 1);
+
+		writer.write(createEvent(count++));
+		writer.close();
+
+		byte[] file = out.toByteArray();
+
+		assertEquals(3, getBlockOffsets(file).size());
+		assertEquals(createEvents(0, count), read(file));
+	}
+
+	@Test
+	public void testTruncatedTail() throws IOException {
+		List<String>  events  = createEvents(0, 500);
+		byte[]        file    = write(BlockCompressedAuditFileWriter.CODEC_DEFLATE, events);
+		List<Integer> offsets = getBlockOffsets(file);
+		int           lastOff = offsets.get(offsets.size() - 1);
+
+		// every length at which the last block is cut: the events of the complete blocks are read
+		List<String> expected = read(Arrays.copyOf(file, lastOff));
+
+		assertEquals(events.subList(0, expected.size()), expected);
+
+		for (int len = lastOff; len < file.length; len++) {
+			BlockCompressedAuditFileReader reader = new BlockCompressedAuditFileReader(new ByteArrayInputStream(Arrays.copyOf(file, len)));
+
+			assertEquals("length " + len, expected, readAll(reader));
+			assertEquals("length " + len, 0, reader.getCorruptBlockCount());
+		}
+	}
+
+	@Test
+	public void testCorruptBlockIsSkipped() throws IOException {
+		List<String>  events  = createEvents(0, 500);
+		byte[]        file    = write(BlockCompressedAuditFileWriter.CODEC_DEFLATE, events);
+		List<Integer> offsets = getBlockOffsets(file);
+
+		assertTrue(offsets.size() > 3);
+
+		List<String> block1 = read(Arrays.copyOf(file, offsets.get(1)));
+		List<String> block2 = read(Arrays.copyOf(file, offsets.get(2)));
+
+		// corrupt the data of the second block
+		int dataOff = offsets.get(1) + BlockCompressedAuditFileWriter.SYNC_SIZE + 16;
+
+		file[dataOff + 10] ^= 0xff;
+
+		BlockCompressedAuditFileReader reader = new BlockCompressedAuditFileReader(new ByteArrayInputStream(file));
+		List<String>                   read   = readAll(reader);
+
+		List<String> expected = new ArrayList<>(events);
+
+		expected.removeAll(block2.subList(block1.size(), block2.size()));
+
+		assertEquals(expected, read);
+		assertEquals(1, reader.getCorruptBlockCount());
+	}
+
+	@Test
+	public void testAppendedFile() throws IOException {
+		List<String> events1 = createEvents(0, 300);
+		List<String> events2 = createEvents(300, 600);
+
+		// appending to an existing file writes a new header, with a different sync marker
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		out.write(write(BlockCompressedAuditFileWriter.CODEC_DEFLATE, events1));
+		out.write(write(BlockCompressedAuditFileWriter.CODEC_NONE, events2));
+
+		assertEquals(createEvents(0, 600), read(out.toByteArray()));
+	}
+
+	private static BlockCompressedAuditFileWriter createWriter(ByteArrayOutputStream out, byte codec) throws IOException {
+		return new BlockCompressedAuditFileWriter(out, codec, Deflater.BEST_SPEED, BLOCK_SIZE);
+	}
+
+	private static byte[] write(byte codec, List<String> events) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		try (BlockCompressedAuditFileWriter writer = createWriter(out, codec)) {
+			for (String event : events) {
+				writer.write(event);
+			}
+		}
+
+		return out.toByteArray();
+	}
+
+	private static List<String> read(byte[] file) throws IOException {
+		try (BlockCompressedAuditFileReader reader = new BlockCompressedAuditFileReader(new ByteArrayInputStream(file))) {
+			return readAll(reader);
+		}
+	}
+
+	private static List<String> readAll(BlockCompressedAuditFileReader reader) throws IOException {
+		List<String> ret = new ArrayList<>();
+
+		for (String event = reader.next(); event != null; event = reader.next()) {
+			ret.add(event);
+		}
+
+		assertNull(reader.next());
+
+		return ret;
+	}
+
+	// offsets of the sync markers that start blocks, after the header of a file written by one writer
+	private static List<Integer> getBlockOffsets(byte[] file) {
+		List<Integer> ret  = new ArrayList<>();
+		byte[]        sync = Arrays.copyOfRange(file, HEADER_SIZE - BlockCompressedAuditFileWriter.SYNC_SIZE, HEADER_SIZE);
+
+		for (int i = HEADER_SIZE; i + sync.length <= file.length; i++) {
+			if (Arrays.equals(sync, Arrays.copyOfRange(file, i, i + sync.length))) {
+				ret.add(i);
+			}
+		}
+
+		return ret;
+	}
+
+	private static List<String> createEvents(int from, int to) {
+		List<String> ret = new ArrayList<>();
+
+		for (int i = from; i < to; i++) {
+			ret.add(createEvent(i));
+		}
+
+		return ret;
+	}
+
+	private static String createEvent(int i) {
+		return "{\"repoType\":1,\"repo\":\"hdfsdev\",\"reqUser\":\"user" + (i % 7) + "\",\"evtTime\":\"2019-01-01 00:00:" + (i % 60) + ".000\",\"access\":\"read\",\"resource\":\"/data/file" + i + "\",\"seq_num\":" + i + "}";
+	}
+}
@@ -33,6 +33,7 @@ import org.apache.ranger.audit.provider.MiscUtil;
 import org.apache.ranger.authorization.hadoop.config.RangerConfiguration;
 import org.apache.ranger.authorization.utils.StringUtil;
 import org.apache.ranger.plugin.util.GrantRevokeRequest;
+import org.apache.ranger.plugin.util.RangerBinaryFormat;
 import org.apache.ranger.plugin.util.RangerRESTClient;
 import org.apache.ranger.plugin.util.RangerRESTUtils;
 import org.apache.ranger.plugin.util.RangerServiceNotFoundException;
@@ -40,6 +41,9 @@ import org.apache.ranger.plugin.util.ServicePolicies;
 import org.apache.ranger.plugin.util.ServiceTags;
 
 import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.core.MediaType;
+
+import java.io.InputStream;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.security.PrivilegedAction;
@@ -51,6 +55,8 @@ public class RangerAdminRESTClient implements RangerAdminClient {
 	private String           serviceName;
 	private String           pluginId;
 	private String clusterName;
+	private boolean          supportsPolicyDeltas;
+	private boolean          supportsBinaryFormat;
 	private RangerRESTClient restClient;
 	private RangerRESTUtils restUtils   = new RangerRESTUtils();
 
@@ -84,6 +90,8 @@ public class RangerAdminRESTClient implements RangerAdminClient {
 		clusterName       				= RangerConfiguration.getInstance().get(propertyPrefix + ".ambari.cluster.name", "");
 		int	 restClientConnTimeOutMs	= RangerConfiguration.getInstance().getInt(propertyPrefix + ".policy.rest.client.connection.timeoutMs", 120 * 1000);
 		int	 restClientReadTimeOutMs	= RangerConfiguration.getInstance().getInt(propertyPrefix + ".policy.rest.client.read.timeoutMs", 30 * 1000);
+		supportsPolicyDeltas            = RangerConfiguration.getInstance().getBoolean(propertyPrefix + ".policy.rest.supports.policy.deltas", false);
+		supportsBinaryFormat            = RangerConfiguration.getInstance().getBoolean(propertyPrefix + ".policy.rest.supports.binary.format", true);
         if (!StringUtil.isEmpty(tmpUrl)) {
             url = tmpUrl.trim();
         }
@@ -114,8 +122,9 @@ public class RangerAdminRESTClient implements RangerAdminClient {
 							.queryParam(RangerRESTUtils.REST_PARAM_LAST_KNOWN_POLICY_VERSION, Long.toString(lastKnownVersion))
 							.queryParam(RangerRESTUtils.REST_PARAM_LAST_ACTIVATION_TIME, Long.toString(lastActivationTimeInMillis))
 							.queryParam(RangerRESTUtils.REST_PARAM_PLUGIN_ID, pluginId)
-							.queryParam(RangerRESTUtils.REST_PARAM_CLUSTER_NAME, clusterName);
-					return secureWebResource.accept(RangerRESTUtils.REST_MIME_TYPE_JSON).get(ClientResponse.class);
+							.queryParam(RangerRESTUtils.REST_PARAM_CLUSTER_NAME, clusterName)
+							.queryParam(RangerRESTUtils.REST_PARAM_SUPPORTS_POLICY_DELTAS, Boolean.toString(supportsPolicyDeltas));
+					return secureWebResource.accept(getPolicyDownloadMimeTypes()).get(ClientResponse.class);
 				}
 			};
 			response = user.doAs(action);
@@ -127,8 +136,9 @@ public class RangerAdminRESTClient implements RangerAdminClient {
 					.queryParam(RangerRESTUtils.REST_PARAM_LAST_KNOWN_POLICY_VERSION, Long.toString(lastKnownVersion))
 					.queryParam(RangerRESTUtils.REST_PARAM_LAST_ACTIVATION_TIME, Long.toString(lastActivationTimeInMillis))
 					.queryParam(RangerRESTUtils.REST_PARAM_PLUGIN_ID, pluginId)
-					.queryParam(RangerRESTUtils.REST_PARAM_CLUSTER_NAME, clusterName);
-			response = webResource.accept(RangerRESTUtils.REST_MIME_TYPE_JSON).get(ClientResponse.class);
+					.queryParam(RangerRESTUtils.REST_PARAM_CLUSTER_NAME, clusterName)
+					.queryParam(RangerRESTUtils.REST_PARAM_SUPPORTS_POLICY_DELTAS, Boolean.toString(supportsPolicyDeltas));
+			response = webResource.accept(getPolicyDownloadMimeTypes()).get(ClientResponse.class);
 		}
 
 		if (response == null || response.getStatus() == HttpServletResponse.SC_NOT_MODIFIED) {
@@ -142,7 +152,13 @@ public class RangerAdminRESTClient implements RangerAdminClient {
 			}
 			ret = null;
 		} else if (response.getStatus() == HttpServletResponse.SC_OK) {
-			ret = response.getEntity(ServicePolicies.class);
+			if (isBinaryFormat(response)) {
+				try (InputStream in = response.getEntityInputStream()) {
+					ret = RangerBinaryFormat.read(in, ServicePolicies.class);
+				}
+			} else {
+				ret = response.getEntity(ServicePolicies.class);
+			}
 		} else if (response.getStatus() == HttpServletResponse.SC_NOT_FOUND) {
 			LOG.error("Error getting policies; service not found. secureMode=" + isSecureMode + ", user=" + user
 					+ ", response=" + response.getStatus() + ", serviceName=" + serviceName
@@ -271,6 +287,20 @@ public class RangerAdminRESTClient implements RangerAdminClient {
 		}
 	}
 
+	/*
+	 * Ranger Admin versions that don't support the binary format would respond in JSON, hence JSON is always accepted;
+	 * but with lower preference, so that Jersey picks the binary format when both are supported.
+	 */
+	private String[] getPolicyDownloadMimeTypes() {
+		return supportsBinaryFormat ? new String[] { RangerRESTUtils.REST_MIME_TYPE_BINARY, RangerRESTUtils.REST_MIME_TYPE_JSON + ";q=0.5" } : new String[] { RangerRESTUtils.REST_MIME_TYPE_JSON };
+	}
+
+	private boolean isBinaryFormat(ClientResponse response) {
+		MediaType type = response.getType();
+
+		return type != null && type.isCompatible(MediaType.valueOf(RangerRESTUtils.REST_MIME_TYPE_BINARY));
+	}
+
 	private WebResource createWebResource(String url) {
 		WebResource ret = restClient.getResource(url);
 		
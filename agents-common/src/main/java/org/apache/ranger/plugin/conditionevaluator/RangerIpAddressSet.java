@@ -0,0 +1,284 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.conditionevaluator;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.plugin.policyengine.RangerConcurrentCache;
+
+import com.google.common.net.InetAddresses;
+
+/**
+ * Immutable set of the ip addresses of an ip-range condition, looked up in time independent of the number of
+ * addresses in the set:
+ * <ul>
+ *     <li>CIDR values, like 10.1.0.0/16 or 2001:db8::/32, are kept in binary tries over the bits of IPv4 and IPv6
+ *     addresses. Request addresses are parsed without name lookups; a request address that is not an ip address
+ *     never matches a CIDR value.</li>
+ *     <li>Values with trailing wildcards, like 10.1.* or a0:b0:*, keep their string-prefix semantics - as in
+ *     earlier versions, they also match strings that are not valid addresses - and are kept in a character trie.</li>
+ *     <li>All other values are matched exactly, with a hash lookup.</li>
+ * </ul>
+ * Sets are shared by conditions that list the same values.
+ */
+final class RangerIpAddressSet {
+	private static final Log LOG = LogFactory.getLog(RangerIpAddressSet.class);
+
+	private static final int MAX_SHARED_SETS = 1024;
+
+	private static final RangerConcurrentCache<List<String>, RangerIpAddressSet> sharedSets = new RangerConcurrentCache<>(MAX_SHARED_SETS);
+
+	private final Set<String> exactIps     = new HashSet<>();
+	private final CharNode    wildcardIps  = new CharNode();
+	private final BitNode     ipv4Networks = new BitNode();
+	private final BitNode     ipv6Networks = new BitNode();
+	private       boolean     hasWildcardIps;
+	private       boolean     hasNetworks;
+
+	/**
+	 * @param exactIps    values to match exactly
+	 * @param wildcardIps digested values with trailing wildcards, to match as prefixes
+	 * @param networks    values in CIDR notation
+	 */
+	static RangerIpAddressSet getInstance(Collection<String> exactIps, Collection<String> wildcardIps, Collection<String> networks) {
+		List<String> key = new ArrayList<>(exactIps.size() + wildcardIps.size() + networks.size() + 2);
+
+		key.addAll(exactIps);
+		key.add(null); // separators, as a value could be in more than one collection
+		key.addAll(wildcardIps);
+		key.add(null);
+		key.addAll(networks);
+
+		RangerIpAddressSet ret = sharedSets.get(key);
+
+		if (ret == null) {
+			ret = new RangerIpAddressSet(exactIps, wildcardIps, networks);
+
+			sharedSets.put(key, ret);
+		}
+
+		return ret;
+	}
+
+	static String getSharedSetsCacheStats() {
+		return sharedSets.toString();
+	}
+
+	private RangerIpAddressSet(Collection<String> exactIps, Collection<String> wildcardIps, Collection<String> networks) {
+		this.exactIps.addAll(exactIps);
+
+		for (String ip : wildcardIps) {
+			addWildcardIp(ip);
+		}
+
+		for (String network : networks) {
+			addNetwork(network);
+		}
+	}
+
+	boolean contains(String requestIp) {
+		boolean ret;
+
+		String lowerCaseIp = requestIp.toLowerCase();
+		boolean isIpv4     = requestIp.contains(".");
+
+		ret = exactIps.contains(isIpv4 ? requestIp : lowerCaseIp);
+
+		if (!ret && hasWildcardIps) {
+			ret = isPrefixMatched(lowerCaseIp) || (isIpv4 && !lowerCaseIp.equals(requestIp) && isPrefixMatched(requestIp));
+		}
+
+		if (!ret && hasNetworks) {
+			ret = isInNetwork(requestIp);
+		}
+
+		return ret;
+	}
+
+	static boolean isNetwork(String ip) {
+		return ip.indexOf('/') != -1;
+	}
+
+	private void addWildcardIp(String ip) {
+		CharNode node = wildcardIps;
+
+		for (int i = 0; i < ip.length(); i++) {
+			node = node.getOrCreateChild(ip.charAt(i));
+		}
+
+		node.isTerminal = true;
+		hasWildcardIps  = true;
+	}
+
+	private void addNetwork(String network) {
+		int    idx          = network.indexOf('/');
+		byte[] address      = parseAddress(network.substring(0, idx).trim());
+		int    prefixLength = -1;
+
+		try {
+			prefixLength = Integer.parseInt(network.substring(idx + 1).trim());
+		} catch (NumberFormatException excp) {
+			// invalid network, handled below
+		}
+
+		if (address == null || prefixLength < 0 || prefixLength > address.length * 8) {
+			LOG.warn("RangerIpAddressSet: ignoring invalid network '" + network + "'");
+
+			return;
+		}
+
+		BitNode node = address.length == 4 ? ipv4Networks : ipv6Networks;
+
+		for (int i = 0; i < prefixLength && !node.isTerminal; i++) {
+			node = node.getOrCreateChild(getBit(address, i));
+		}
+
+		node.isTerminal = true;
+		node.children   = null; // longer prefixes are covered by this one
+		hasNetworks     = true;
+	}
+
+	private boolean isPrefixMatched(String ip) {
+		CharNode node = wildcardIps;
+
+		for (int i = 0; i < ip.length(); i++) {
+			node = node.getChild(ip.charAt(i));
+
+			if (node == null) {
+				return false;
+			} else if (node.isTerminal) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private boolean isInNetwork(String ip) {
+		byte[] address = parseAddress(ip);
+
+		if (address == null) {
+			return false;
+		}
+
+		BitNode node = address.length == 4 ? ipv4Networks : ipv6Networks;
+
+		for (int i = 0; !node.isTerminal; i++) {
+			node = node.getChild(getBit(address, i));
+
+			if (node == null) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	// parses an ip address literal, without the name lookup InetAddress.getByName() would do for other strings
+	private static byte[] parseAddress(String ip) {
+		byte[] ret = null;
+
+		try {
+			InetAddress address = InetAddresses.forString(ip);
+
+			ret = address.getAddress();
+		} catch (IllegalArgumentException excp) {
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("RangerIpAddressSet: '" + ip + "' is not an ip address");
+			}
+		}
+
+		return ret;
+	}
+
+	private static int getBit(byte[] address, int idx) {
+		return (address[idx >> 3] >> (7 - (idx & 7))) & 1;
+	}
+
+	private static final class CharNode {
+		private char[]     chars;
+		private CharNode[] children;
+		private boolean    isTerminal;
+
+		CharNode getChild(char ch) {
+			if (chars != null) {
+				for (int i = 0; i < chars.length; i++) { // few distinct characters occur in ip addresses
+					if (chars[i] == ch) {
+						return children[i];
+					}
+				}
+			}
+
+			return null;
+		}
+
+		CharNode getOrCreateChild(char ch) {
+			CharNode ret = getChild(ch);
+
+			if (ret == null) {
+				ret = new CharNode();
+
+				if (chars == null) {
+					chars    = new char[] { ch };
+					children = new CharNode[] { ret };
+				} else {
+					int len = chars.length;
+
+					chars    = Arrays.copyOf(chars, len + 1);
+					children = Arrays.copyOf(children, len + 1);
+
+					chars[len]    = ch;
+					children[len] = ret;
+				}
+			}
+
+			return ret;
+		}
+	}
+
+	private static final class BitNode {
+		private BitNode[] children;
+		private boolean   isTerminal;
+
+		BitNode getChild(int bit) {
+			return children != null ? children[bit] : null;
+		}
+
+		BitNode getOrCreateChild(int bit) {
+			if (children == null) {
+				children = new BitNode[2];
+			}
+
+			if (children[bit] == null) {
+				children[bit] = new BitNode();
+			}
+
+			return children[bit];
+		}
+	}
+}
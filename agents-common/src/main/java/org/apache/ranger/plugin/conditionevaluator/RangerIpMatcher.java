@@ -39,8 +39,17 @@ public class RangerIpMatcher extends RangerAbstractConditionEvaluator {
 	private static final Log LOG = LogFactory.getLog(RangerIpMatcher.class);
 	private List<String> _exactIps = new ArrayList<>();
 	private List<String> _wildCardIps = new ArrayList<>();
+	private List<String> _networks = new ArrayList<>();
+	private RangerIpAddressSet _ipSet;
 	private boolean _allowAny;
 	
+	/*
+	 * @return size, hit, miss and eviction counts of the ip-address sets shared by the matchers in the process
+	 */
+	public static String getSharedIpSetsCacheStats() {
+		return RangerIpAddressSet.getSharedSetsCacheStats();
+	}
+
 	@Override
 	public void init() {
 		if(LOG.isDebugEnabled()) {
@@ -65,16 +74,22 @@ public class RangerIpMatcher extends RangerAbstractConditionEvaluator {
 				if (digestedIp.isEmpty()) {
 					LOG.debug("init: digested ip was empty! Will match always");
 					_allowAny = true;
+				} else if (RangerIpAddressSet.isNetwork(ip)) {
+					_networks.add(ip);
 				} else if (digestedIp.equals(ip)) {
 					_exactIps.add(ip);
 				} else {
 					_wildCardIps.add(digestedIp);
 				}
 			}
+
+			if (!_allowAny) {
+				_ipSet = RangerIpAddressSet.getInstance(_exactIps, _wildCardIps, _networks);
+			}
 		}
 
 		if(LOG.isDebugEnabled()) {
-			LOG.debug("<== RangerIpMatcher.init(" + condition + "): exact-ips[" + _exactIps + "], wildcard-ips[" + _wildCardIps + "]");
+			LOG.debug("<== RangerIpMatcher.init(" + condition + "): exact-ips[" + _exactIps + "], wildcard-ips[" + _wildCardIps + "], networks[" + _networks + "]");
 		}
 	}
 
@@ -92,7 +107,7 @@ public class RangerIpMatcher extends RangerAbstractConditionEvaluator {
 			if (requestIp == null) {
 				LOG.debug("isMatched: couldn't get ip address from request.  Ok.  Implicitly matched!");
 			} else {
-				ipMatched = isWildcardMatched(_wildCardIps, requestIp) || isExactlyMatched(_exactIps, requestIp);
+				ipMatched = _ipSet.contains(requestIp);
 			}
 		}
 		
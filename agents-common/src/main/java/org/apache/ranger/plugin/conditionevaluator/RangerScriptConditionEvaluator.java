@@ -26,19 +26,89 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ranger.plugin.contextenricher.RangerTagForEval;
 import org.apache.ranger.plugin.policyengine.RangerAccessRequest;
+import org.apache.ranger.plugin.policyengine.RangerConcurrentCache;
+import org.apache.ranger.plugin.util.RangerAccessRequestUtil;
 
 import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+/*
+ * The script is compiled once, when the engine supports it. Each evaluation gets new engine-scope bindings, so that
+ * variables set by a script in one request - possibly of another user - are never seen by another evaluation.
+ *
+ * With evaluator option "memoizeResults"="true", results are cached by the values of the inputs the script reads -
+ * like the user, the resource or the current tag - found by looking for the ctx methods and bindings the script
+ * refers to. This must only be enabled for scripts whose result depends just on these inputs; scripts that call
+ * unknown ctx methods, or read the access time or the current time, are never memoized, as their inputs differ for
+ * almost every request.
+ */
 public class RangerScriptConditionEvaluator extends RangerAbstractConditionEvaluator {
 	private static final Log LOG = LogFactory.getLog(RangerScriptConditionEvaluator.class);
 
-	private ScriptEngine scriptEngine;
+	public static final String OPTION_ENGINE_NAME       = "engineName";
+	public static final String OPTION_MEMOIZE_RESULTS   = "memoizeResults";
+	public static final String OPTION_RESULT_CACHE_SIZE = "resultCacheSize";
+
+	private static final String DEFAULT_ENGINE_NAME       = "JavaScript";
+	private static final int    DEFAULT_RESULT_CACHE_SIZE = 10000;
+
+	private static final Pattern CTX_METHOD_PATTERN        = Pattern.compile("\\bctx\\s*\\.\\s*(\\w+)");
+	private static final Pattern CTX_OTHER_USE_PATTERN     = Pattern.compile("\\bctx\\b(?!\\s*\\.)");
+	private static final Pattern TAG_BINDING_PATTERN       = Pattern.compile("\\b(tag|tagAttr)\\b");
+	private static final Pattern NON_DETERMINISTIC_PATTERN = Pattern.compile("Math\\s*\\.\\s*random|Date\\s*\\.\\s*now|new\\s+Date\\s*\\(\\s*\\)");
+
+	private enum ScriptInput { USER, USER_GROUPS, ACCESS_TYPE, CLIENT_IP_ADDRESS, CLIENT_TYPE, ACTION, REQUEST_DATA, SESSION_ID, RESOURCE, CURRENT_TAG, ALL_TAGS }
+
+	private static final Map<String, Set<ScriptInput>> CTX_METHOD_INPUTS = new HashMap<>();
+
+	static {
+		Set<ScriptInput> none = EnumSet.noneOf(ScriptInput.class);
+
+		CTX_METHOD_INPUTS.put("getUser", EnumSet.of(ScriptInput.USER));
+		CTX_METHOD_INPUTS.put("getUserGroups", EnumSet.of(ScriptInput.USER_GROUPS));
+		CTX_METHOD_INPUTS.put("isAccessTypeAny", EnumSet.of(ScriptInput.ACCESS_TYPE));
+		CTX_METHOD_INPUTS.put("isAccessTypeDelegatedAdmin", EnumSet.of(ScriptInput.ACCESS_TYPE));
+		CTX_METHOD_INPUTS.put("getClientIPAddress", EnumSet.of(ScriptInput.CLIENT_IP_ADDRESS));
+		CTX_METHOD_INPUTS.put("getClientType", EnumSet.of(ScriptInput.CLIENT_TYPE));
+		CTX_METHOD_INPUTS.put("getAction", EnumSet.of(ScriptInput.ACTION));
+		CTX_METHOD_INPUTS.put("getRequestData", EnumSet.of(ScriptInput.REQUEST_DATA));
+		CTX_METHOD_INPUTS.put("getSessionId", EnumSet.of(ScriptInput.SESSION_ID));
+		CTX_METHOD_INPUTS.put("getResource", EnumSet.of(ScriptInput.RESOURCE));
+		CTX_METHOD_INPUTS.put("getCurrentTag", EnumSet.of(ScriptInput.CURRENT_TAG));
+		CTX_METHOD_INPUTS.put("getCurrentTagType", EnumSet.of(ScriptInput.CURRENT_TAG));
+		CTX_METHOD_INPUTS.put("getAllTagTypes", EnumSet.of(ScriptInput.ALL_TAGS));
+		CTX_METHOD_INPUTS.put("getTagAttributes", EnumSet.of(ScriptInput.ALL_TAGS));
+		CTX_METHOD_INPUTS.put("getAttributeNames", EnumSet.of(ScriptInput.ALL_TAGS));
+		CTX_METHOD_INPUTS.put("getAttributeValue", EnumSet.of(ScriptInput.CURRENT_TAG, ScriptInput.ALL_TAGS));
+		CTX_METHOD_INPUTS.put("getTagAttributeAsDate", EnumSet.of(ScriptInput.ALL_TAGS));
+		CTX_METHOD_INPUTS.put("getAsDate", none);
+		CTX_METHOD_INPUTS.put("getResult", none);
+		CTX_METHOD_INPUTS.put("setResult", none);
+		CTX_METHOD_INPUTS.put("logDebug", none);
+		CTX_METHOD_INPUTS.put("logInfo", none);
+		CTX_METHOD_INPUTS.put("logWarn", none);
+		CTX_METHOD_INPUTS.put("logError", none);
+		CTX_METHOD_INPUTS.put("logFatal", none);
+	}
+
+	private ScriptEngine                                 scriptEngine;
+	private CompiledScript                               compiledScript;
+	private ScriptInput[]                                memoizeInputs;
+	private RangerConcurrentCache<List<Object>, Boolean> resultCache;
 
 	@Override
 	public void init() {
@@ -49,16 +119,16 @@ public class RangerScriptConditionEvaluator extends RangerAbstractConditionEvalu
 
 		super.init();
 
-		String engineName = "JavaScript";
+		String engineName = DEFAULT_ENGINE_NAME;
 
 		Map<String, String> evalOptions = conditionDef. getEvaluatorOptions();
 
 		if (MapUtils.isNotEmpty(evalOptions)) {
-			engineName = evalOptions.get("engineName");
+			engineName = evalOptions.get(OPTION_ENGINE_NAME);
 		}
 
 		if (StringUtils.isBlank(engineName)) {
-			engineName = "JavaScript";
+			engineName = DEFAULT_ENGINE_NAME;
 		}
 
 		if (LOG.isDebugEnabled()) {
@@ -72,6 +142,8 @@ public class RangerScriptConditionEvaluator extends RangerAbstractConditionEvalu
 			LOG.error("RangerScriptConditionEvaluator.init() failed with exception=" + exp);
 		}
 
+		compileScript();
+
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("<== RangerScriptConditionEvaluator.init(" + condition + ")");
 		}
@@ -89,50 +161,71 @@ public class RangerScriptConditionEvaluator extends RangerAbstractConditionEvalu
 			String script = getScript();
 
 			if (StringUtils.isNotBlank(script)) {
+				List<Object> cacheKey     = resultCache != null ? getResultCacheKey(request) : null;
+				Boolean      cachedResult = cacheKey != null ? resultCache.get(cacheKey) : null;
 
-				RangerAccessRequest readOnlyRequest = request.getReadOnlyCopy();
+				if (cachedResult != null) {
+					result = cachedResult;
+				} else {
+					result = evaluateScript(request, script);
 
-				RangerScriptExecutionContext context    = new RangerScriptExecutionContext(readOnlyRequest);
-				RangerTagForEval             currentTag = context.getCurrentTag();
-				Map<String, String>          tagAttribs = currentTag != null ? currentTag.getAttributes() : Collections.<String, String>emptyMap();
+					if (cacheKey != null) {
+						resultCache.put(cacheKey, result);
+					}
+				}
+			}
 
-				Bindings bindings = scriptEngine.createBindings();
+		}
 
-				bindings.put("ctx", context);
-				bindings.put("tag", currentTag);
-				bindings.put("tagAttr", tagAttribs);
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("<== RangerScriptConditionEvaluator.isMatched(), result=" + result);
+		}
 
-				if (LOG.isDebugEnabled()) {
-					LOG.debug("RangerScriptConditionEvaluator.isMatched(): script={" + script + "}");
-				}
-				try {
+		return result;
 
-					Object ret = scriptEngine.eval(script, bindings);
+	}
 
-					if (ret == null) {
-						ret = context.getResult();
-					}
-					if (ret instanceof Boolean) {
-						result = (Boolean) ret;
-					}
+	/*
+	 * Compiles the script returned by getScript(), and decides whether its results can be memoized. Subclasses that set
+	 * up the script after init() of this class must call this again.
+	 */
+	protected void compileScript() {
+		String script = getScript();
 
-				} catch (NullPointerException nullp) {
-					LOG.error("RangerScriptConditionEvaluator.isMatched(): eval called with NULL argument(s)", nullp);
+		compiledScript = null;
+		memoizeInputs  = null;
+		resultCache    = null;
 
-				} catch (ScriptException exception) {
-					LOG.error("RangerScriptConditionEvaluator.isMatched(): failed to evaluate script," +
-							" exception=" + exception);
-				}
+		if (scriptEngine == null || StringUtils.isBlank(script)) {
+			return;
+		}
+
+		if (scriptEngine instanceof Compilable) {
+			try {
+				compiledScript = ((Compilable) scriptEngine).compile(script);
+			} catch (ScriptException exception) {
+				LOG.error("RangerScriptConditionEvaluator.compileScript(): failed to compile script={" + script + "}, exception=" + exception);
 			}
+		}
+
+		Map<String, String> evalOptions = conditionDef.getEvaluatorOptions();
 
+		if (Boolean.parseBoolean(MapUtils.getString(evalOptions, OPTION_MEMOIZE_RESULTS))) {
+			Set<ScriptInput> inputs = getScriptInputs(script);
+
+			if (inputs != null) {
+				int cacheSize = MapUtils.getIntValue(evalOptions, OPTION_RESULT_CACHE_SIZE, DEFAULT_RESULT_CACHE_SIZE);
+
+				memoizeInputs = inputs.toArray(new ScriptInput[inputs.size()]);
+				resultCache   = new RangerConcurrentCache<>(cacheSize);
+			} else {
+				LOG.warn("RangerScriptConditionEvaluator.compileScript(): results of script={" + script + "} will not be memoized, as it reads inputs other than known ctx methods and bindings");
+			}
 		}
 
 		if (LOG.isDebugEnabled()) {
-			LOG.debug("<== RangerScriptConditionEvaluator.isMatched(), result=" + result);
+			LOG.debug("RangerScriptConditionEvaluator.compileScript(): script={" + script + "}, isCompiled=" + (compiledScript != null) + ", memoizeInputs=" + (memoizeInputs != null ? Arrays.toString(memoizeInputs) : null));
 		}
-
-		return result;
-
 	}
 
 	protected String getScript() {
@@ -150,4 +243,105 @@ public class RangerScriptConditionEvaluator extends RangerAbstractConditionEvalu
 
 		return ret;
 	}
+
+	private boolean evaluateScript(RangerAccessRequest request, String script) {
+		boolean result = true;
+
+		RangerAccessRequest readOnlyRequest = request.getReadOnlyCopy();
+
+		RangerScriptExecutionContext context    = new RangerScriptExecutionContext(readOnlyRequest);
+		RangerTagForEval             currentTag = context.getCurrentTag();
+		Map<String, String>          tagAttribs = currentTag != null ? currentTag.getAttributes() : Collections.<String, String>emptyMap();
+
+		Bindings bindings = scriptEngine.createBindings();
+
+		bindings.put("ctx", context);
+		bindings.put("tag", currentTag);
+		bindings.put("tagAttr", tagAttribs);
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("RangerScriptConditionEvaluator.isMatched(): script={" + script + "}");
+		}
+		try {
+
+			Object ret = compiledScript != null ? compiledScript.eval(bindings) : scriptEngine.eval(script, bindings);
+
+			if (ret == null) {
+				ret = context.getResult();
+			}
+			if (ret instanceof Boolean) {
+				result = (Boolean) ret;
+			}
+
+		} catch (NullPointerException nullp) {
+			LOG.error("RangerScriptConditionEvaluator.isMatched(): eval called with NULL argument(s)", nullp);
+
+		} catch (ScriptException exception) {
+			LOG.error("RangerScriptConditionEvaluator.isMatched(): failed to evaluate script," +
+					" exception=" + exception);
+		}
+
+		return result;
+	}
+
+	private List<Object> getResultCacheKey(RangerAccessRequest request) {
+		List<Object>        ret     = new ArrayList<>(memoizeInputs.length);
+		Map<String, Object> context = request.getContext();
+
+		for (ScriptInput input : memoizeInputs) {
+			final Object value;
+
+			switch (input) {
+				case USER:              value = request.getUser(); break;
+				case USER_GROUPS:       value = request.getUserGroups(); break;
+				case ACCESS_TYPE:       value = request.getAccessType(); break;
+				case CLIENT_IP_ADDRESS: value = request.getClientIPAddress(); break;
+				case CLIENT_TYPE:       value = request.getClientType(); break;
+				case ACTION:            value = request.getAction(); break;
+				case REQUEST_DATA:      value = request.getRequestData(); break;
+				case SESSION_ID:        value = request.getSessionId(); break;
+				case RESOURCE:          value = context.get(RangerAccessRequestUtil.KEY_CONTEXT_RESOURCE); break;
+				case CURRENT_TAG:       value = context.get(RangerAccessRequestUtil.KEY_CONTEXT_TAG_OBJECT); break;
+				case ALL_TAGS:          value = RangerAccessRequestUtil.getRequestTagsFromContext(context); break;
+				default:                value = null; break;
+			}
+
+			ret.add(value);
+		}
+
+		return ret;
+	}
+
+	boolean isResultMemoized() {
+		return resultCache != null;
+	}
+
+	/*
+	 * @return inputs read by the script, or null if it reads anything else - including the access time, read by
+	 * ctx methods getAccessTime(), isAccessedAfter() and isAccessedBefore(), which are not in CTX_METHOD_INPUTS
+	 */
+	private static Set<ScriptInput> getScriptInputs(String script) {
+		if (CTX_OTHER_USE_PATTERN.matcher(script).find() || NON_DETERMINISTIC_PATTERN.matcher(script).find()) {
+			return null;
+		}
+
+		Set<ScriptInput> ret     = EnumSet.noneOf(ScriptInput.class);
+		Matcher          matcher = CTX_METHOD_PATTERN.matcher(script);
+
+		while (matcher.find()) {
+			Set<ScriptInput> methodInputs = CTX_METHOD_INPUTS.get(matcher.group(1));
+
+			if (methodInputs == null) {
+				return null;
+			}
+
+			ret.addAll(methodInputs);
+		}
+
+		if (TAG_BINDING_PATTERN.matcher(script).find()) {
+			ret.add(ScriptInput.CURRENT_TAG);
+		}
+
+		return ret;
+	}
 }
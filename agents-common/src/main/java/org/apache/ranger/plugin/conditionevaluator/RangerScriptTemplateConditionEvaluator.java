@@ -56,6 +56,8 @@ public class RangerScriptTemplateConditionEvaluator extends RangerScriptConditio
 			}
 		}
 
+		compileScript();
+
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("<== RangerScriptTemplateConditionEvaluator.init(" + condition + "): script=" + script + "; reverseResult=" + reverseResult);
 		}
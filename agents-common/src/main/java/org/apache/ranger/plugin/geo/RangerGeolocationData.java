@@ -25,6 +25,7 @@ import org.apache.commons.logging.LogFactory;
 
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.Arrays;
 import java.util.Objects;
 
 public class RangerGeolocationData implements Comparable<RangerGeolocationData>, RangeChecker<Long> {
@@ -34,6 +35,7 @@ public class RangerGeolocationData implements Comparable<RangerGeolocationData>,
 
 	private final long fromIPAddress;
 	private final long toIPAddress;
+	private final long[] ipv6Range;		// {fromHigh, fromLow, toHigh, toLow} for IPv6 ranges, null for IPv4 ranges
 	private final String[] locationData;
 	private int hash;
 
@@ -45,23 +47,38 @@ public class RangerGeolocationData implements Comparable<RangerGeolocationData>,
 			String startAddress = fields[0];
 			String endAddress = fields[1];
 
-			if (RangerGeolocationData.validateAsIP(startAddress, useDotFormat) && RangerGeolocationData.validateAsIP(endAddress, useDotFormat)) {
+			if (useDotFormat || (RangerGeolocationData.validateAsIP(startAddress, false) && RangerGeolocationData.validateAsIP(endAddress, false))) {
 
-				long startIP, endIP;
 				if (!useDotFormat) {
 					startAddress = RangerGeolocationData.unsignedIntToIPAddress(Long.valueOf(startAddress));
 					endAddress = RangerGeolocationData.unsignedIntToIPAddress(Long.valueOf(endAddress));
 				}
-				startIP = RangerGeolocationData.ipAddressToLong(startAddress);
-				endIP = RangerGeolocationData.ipAddressToLong(endAddress);
 
-				if ((endIP - startIP) >= 0) {
+				byte[] startBytes = RangerGeolocationData.ipAddressToBytes(startAddress);
+				byte[] endBytes = startBytes != null ? RangerGeolocationData.ipAddressToBytes(endAddress) : null;
 
+				if (startBytes != null && endBytes != null) {
 					String[] locationData = new String[fields.length-2];
 					for (int i = 2; i < fields.length; i++) {
 						locationData[i-2] = fields[i];
 					}
-					data = new RangerGeolocationData(startIP, endIP, locationData);
+
+					if (startBytes.length == 4 && endBytes.length == 4) {
+						long startIP = RangerGeolocationData.ipv4BytesToLong(startBytes);
+						long endIP = RangerGeolocationData.ipv4BytesToLong(endBytes);
+
+						if ((endIP - startIP) >= 0) {
+							data = new RangerGeolocationData(startIP, endIP, null, locationData);
+						}
+					} else if (startBytes.length == 16 && endBytes.length == 16) {
+						long[] ipv6Range = new long[] { bytesToLong(startBytes, 0), bytesToLong(startBytes, 8), bytesToLong(endBytes, 0), bytesToLong(endBytes, 8) };
+
+						if (compareIPv6(ipv6Range[2], ipv6Range[3], ipv6Range[0], ipv6Range[1]) >= 0) {
+							data = new RangerGeolocationData(0L, 0L, ipv6Range, locationData);
+						}
+					} else {
+						LOG.error("RangerGeolocationData.create() - start and end addresses must both be IPv4 or both be IPv6 at " + index);
+					}
 				}
 			}
 
@@ -71,9 +88,10 @@ public class RangerGeolocationData implements Comparable<RangerGeolocationData>,
 		return data;
 	}
 
-	private RangerGeolocationData(final long fromIPAddress, final long toIPAddress, final String[] locationData) {
+	RangerGeolocationData(final long fromIPAddress, final long toIPAddress, final long[] ipv6Range, final String[] locationData) {
 		this.fromIPAddress = fromIPAddress;
 		this.toIPAddress = toIPAddress;
+		this.ipv6Range = ipv6Range;
 		this.locationData = locationData;
 	}
 
@@ -81,6 +99,22 @@ public class RangerGeolocationData implements Comparable<RangerGeolocationData>,
 		return locationData;
 	}
 
+	public boolean isIPv6() {
+		return ipv6Range != null;
+	}
+
+	long getFromIPAddress() {
+		return fromIPAddress;
+	}
+
+	long getToIPAddress() {
+		return toIPAddress;
+	}
+
+	long[] getIPv6Range() {
+		return ipv6Range;
+	}
+
 	@Override
 	public int compareTo(final RangerGeolocationData other) {
 		int ret = (other == null) ? 1 : 0;
@@ -88,6 +122,9 @@ public class RangerGeolocationData implements Comparable<RangerGeolocationData>,
 			ret = Long.compare(fromIPAddress, other.fromIPAddress);
 			if (ret == 0) {
 				ret = Long.compare(toIPAddress, other.toIPAddress);
+			}
+			if (ret == 0) {
+				ret = compareIPv6Ranges(ipv6Range, other.ipv6Range);
 				if (ret == 0) {
 					ret = Integer.compare(locationData.length, other.locationData.length);
 					for (int i = 0; ret == 0 && i < locationData.length; i++) {
@@ -111,7 +148,7 @@ public class RangerGeolocationData implements Comparable<RangerGeolocationData>,
 	@Override
 	public int hashCode() {
 		if (hash == 0) {
-			hash = Objects.hash(fromIPAddress, toIPAddress, locationData);
+			hash = Objects.hash(fromIPAddress, toIPAddress, Arrays.hashCode(ipv6Range), Arrays.hashCode(locationData));
 		}
 		return hash;
 	}
@@ -134,18 +171,75 @@ public class RangerGeolocationData implements Comparable<RangerGeolocationData>,
 
 		long ret = 0L;
 
-		try {
-			byte[] bytes = InetAddress.getByName(ipAddress).getAddress();
+		byte[] bytes = ipAddressToBytes(ipAddress);
 
-			if (bytes != null && bytes.length <= 4) {
-				for (int i = 0; i < bytes.length; i++) {
-					int val = bytes[i] < 0 ? (256 + bytes[i]) : bytes[i];
-					ret += (val << (8 * (3 - i)));
-				}
-			}
+		if (bytes != null && bytes.length <= 4) {
+			ret = ipv4BytesToLong(bytes);
+		}
+
+		return ret;
+	}
+
+	/*
+	 * @return the 4 bytes of an IPv4 address or the 16 bytes of an IPv6 address, or null if the address is not valid
+	 */
+	public static byte[] ipAddressToBytes(final String ipAddress) {
+		byte[] ret = null;
+
+		try {
+			ret = InetAddress.getByName(ipAddress).getAddress();
 		}
 		catch (UnknownHostException exception) {
-			LOG.error("RangerGeolocationData.ipAddressToLong() - Invalid IP address " + ipAddress);
+			LOG.error("RangerGeolocationData.ipAddressToBytes() - Invalid IP address " + ipAddress);
+		}
+
+		return ret;
+	}
+
+	static long ipv4BytesToLong(final byte[] bytes) {
+		long ret = 0L;
+
+		for (int i = 0; i < bytes.length; i++) {
+			int val = bytes[i] < 0 ? (256 + bytes[i]) : bytes[i];
+			ret += ((long) val << (8 * (3 - i)));
+		}
+
+		return ret;
+	}
+
+	static long bytesToLong(final byte[] bytes, final int offset) {
+		long ret = 0L;
+
+		for (int i = offset; i < offset + 8; i++) {
+			ret = (ret << 8) | (bytes[i] & 0xff);
+		}
+
+		return ret;
+	}
+
+	/*
+	 * Compares IPv6 addresses given as their high and low 64 bits, as unsigned numbers
+	 */
+	static int compareIPv6(final long high1, final long low1, final long high2, final long low2) {
+		int ret = Long.compareUnsigned(high1, high2);
+
+		return ret != 0 ? ret : Long.compareUnsigned(low1, low2);
+	}
+
+	static String ipv6ToString(final long high, final long low) {
+		byte[] bytes = new byte[16];
+
+		for (int i = 0; i < 8; i++) {
+			bytes[i]     = (byte) (high >>> (8 * (7 - i)));
+			bytes[8 + i] = (byte) (low >>> (8 * (7 - i)));
+		}
+
+		String ret;
+
+		try {
+			ret = InetAddress.getByAddress(bytes).getHostAddress();
+		} catch (UnknownHostException exception) { // not thrown for an address of valid length
+			ret = Long.toHexString(high) + Long.toHexString(low);
 		}
 
 		return ret;
@@ -184,6 +278,25 @@ public class RangerGeolocationData implements Comparable<RangerGeolocationData>,
 		return ret;
 	}
 
+	private static int compareIPv6Ranges(long[] range1, long[] range2) {
+		int ret;
+
+		if (range1 == range2) {
+			ret = 0;
+		} else if (range1 == null) {
+			ret = -1;
+		} else if (range2 == null) {
+			ret = 1;
+		} else {
+			ret = compareIPv6(range1[0], range1[1], range2[0], range2[1]);
+			if (ret == 0) {
+				ret = compareIPv6(range1[2], range1[3], range2[2], range2[3]);
+			}
+		}
+
+		return ret;
+	}
+
 	private static int stringCompareTo(String str1, String str2) {
 		if(str1 == str2) {
 			return 0;
@@ -206,12 +319,21 @@ public class RangerGeolocationData implements Comparable<RangerGeolocationData>,
 	}
 
 	private StringBuilder toString(StringBuilder sb) {
-		sb.append("{")
-				.append("from=")
-				.append(RangerGeolocationData.unsignedIntToIPAddress(fromIPAddress))
-				.append(", to=")
-				.append(RangerGeolocationData.unsignedIntToIPAddress(toIPAddress))
-				.append(", location={");
+		if (ipv6Range != null) {
+			sb.append("{")
+					.append("from=")
+					.append(RangerGeolocationData.ipv6ToString(ipv6Range[0], ipv6Range[1]))
+					.append(", to=")
+					.append(RangerGeolocationData.ipv6ToString(ipv6Range[2], ipv6Range[3]))
+					.append(", location={");
+		} else {
+			sb.append("{")
+					.append("from=")
+					.append(RangerGeolocationData.unsignedIntToIPAddress(fromIPAddress))
+					.append(", to=")
+					.append(RangerGeolocationData.unsignedIntToIPAddress(toIPAddress))
+					.append(", location={");
+		}
 			for (String data : locationData) {
 				sb.append(data).append(", ");
 			}
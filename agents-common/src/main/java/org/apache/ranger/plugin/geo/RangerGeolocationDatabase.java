@@ -23,10 +23,28 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
 public class RangerGeolocationDatabase {
 	private static final Log LOG = LogFactory.getLog(RangerGeolocationDatabase.class);
 
-	private BinarySearchTree<RangerGeolocationData, Long> data = new BinarySearchTree<>();
+	private static final int INDEX_FILE_MAGIC   = 0x5247454f; // "RGEO"
+	private static final int INDEX_FILE_VERSION = 1;
+
+	private List<RangerGeolocationData> pendingData = new ArrayList<>();
+
+	private volatile RangerGeolocationIndex index = RangerGeolocationIndex.EMPTY;
 
 	private GeolocationMetadata metadata = new GeolocationMetadata();
 
@@ -55,35 +73,121 @@ public class RangerGeolocationDatabase {
 	public RangerGeolocationData find(final String ipAddressStr) {
 		RangerGeolocationData ret = null;
 
-		if (StringUtils.isNotBlank(ipAddressStr) && RangerGeolocationData.validateAsIP(ipAddressStr, true)) {
-			ret = data.find(RangerGeolocationData.ipAddressToLong(ipAddressStr));
+		if (StringUtils.isNotBlank(ipAddressStr)) {
+			byte[] address = RangerGeolocationData.ipAddressToBytes(ipAddressStr);
+
+			if (address != null) {
+				ret = index.find(address);
+			}
 		}
 		return ret;
 	}
 
+	/*
+	 * Adds a range to the database; it is searchable only after the next call to optimize()
+	 */
+	public void add(final RangerGeolocationData data) {
+		if (data != null) {
+			pendingData.add(data);
+		}
+	}
+
+	/*
+	 * Builds the index of ranges added since the last call, and replaces the current index with it
+	 */
 	public void optimize() {
 		long start = 0L, end = 0L;
 
 		start = System.currentTimeMillis();
-		data.rebalance();
+		index = RangerGeolocationIndex.build(pendingData);
+		pendingData = new ArrayList<>();
 		end = System.currentTimeMillis();
 
 		if (LOG.isDebugEnabled()) {
-			LOG.debug("RangerGeolocationDatabase.optimize() - Time taken for optimizing database = " + (end - start) + " milliseconds");
+			LOG.debug("RangerGeolocationDatabase.optimize() - Time taken for optimizing database = " + (end - start) + " milliseconds, size=" + index.size());
 		}
 	}
 
-	public void setData(final BinarySearchTree<RangerGeolocationData, Long> dataArg) { data = dataArg != null ? dataArg : new BinarySearchTree<RangerGeolocationData, Long>();}
+	public int size() {
+		return index.size();
+	}
+
+	public boolean isMapped() {
+		return index.isMapped();
+	}
 
 	public void setMetadata(final GeolocationMetadata metadataArg) { metadata = metadataArg != null ? metadataArg : new GeolocationMetadata();}
 
 	public GeolocationMetadata getMetadata() { return metadata; }
 
-	public BinarySearchTree<RangerGeolocationData, Long> getData() { return data; }
+	/*
+	 * Writes the metadata and index of this database to a file, which can later be loaded with mapIndexFile()
+	 */
+	public void writeIndexFile(final File file) throws IOException {
+		RangerGeolocationIndex currIndex = index;
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			String[] itemNames = metadata.getLocationDataItemNames();
+
+			out.writeInt(INDEX_FILE_MAGIC);
+			out.writeInt(INDEX_FILE_VERSION);
+			out.writeInt(itemNames.length);
+
+			for (String itemName : itemNames) {
+				byte[] bytes = itemName.getBytes(StandardCharsets.UTF_8);
+
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+
+			currIndex.writeTo(out);
+		}
+	}
+
+	/*
+	 * Creates a database whose index is memory-mapped from a file written by writeIndexFile(); lookups then read the
+	 * file contents directly instead of keeping the ranges on the heap.
+	 */
+	public static RangerGeolocationDatabase mapIndexFile(final File file) throws IOException {
+		final MappedByteBuffer buffer;
+
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+
+		if (buffer.remaining() < 12 || buffer.getInt() != INDEX_FILE_MAGIC) {
+			throw new IOException(file + ": not a geolocation index file");
+		}
+
+		int version = buffer.getInt();
+
+		if (version != INDEX_FILE_VERSION) {
+			throw new IOException(file + ": unsupported geolocation index version " + version);
+		}
+
+		int itemCount = buffer.getInt();
+
+		if (itemCount < 0 || itemCount > buffer.remaining() / 4) {
+			throw new IOException(file + ": truncated geolocation index");
+		}
+
+		String[] itemNames = new String[itemCount];
+
+		for (int i = 0; i < itemNames.length; i++) {
+			itemNames[i] = getString(buffer, file);
+		}
+
+		RangerGeolocationDatabase ret = new RangerGeolocationDatabase();
+
+		ret.setMetadata(new GeolocationMetadata(itemNames));
+		ret.index = RangerGeolocationIndex.map(buffer);
+
+		return ret;
+	}
 
 	public void dump(ValuePrinter<RangerGeolocationData> processor) {
 
-		BinarySearchTree<RangerGeolocationData, Long> geoDatabase = getData();
+		RangerGeolocationIndex geoDatabase = index;
 		GeolocationMetadata metadata = getMetadata();
 		processor.build();
 
@@ -91,9 +195,25 @@ public class RangerGeolocationDatabase {
 		processor.print(metadata.toString());
 
 		processor.print("#================== Dump of geoDatabase - START ==================");
-		geoDatabase.preOrderTraverseTree(processor);
+		for (int i = 0; i < geoDatabase.size(); i++) {
+			processor.process(geoDatabase.getValue(i));
+		}
 		processor.print("#================== Dump of geoDatabase - END   ==================");
 
 		processor.close();
 	}
+
+	private static String getString(ByteBuffer buffer, File file) throws IOException {
+		int len = buffer.remaining() >= 4 ? buffer.getInt() : -1;
+
+		if (len < 0 || len > buffer.remaining()) {
+			throw new IOException(file + ": truncated geolocation index");
+		}
+
+		byte[] bytes = new byte[len];
+
+		buffer.get(bytes);
+
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
 }
@@ -0,0 +1,326 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.geo;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/*
+ * Immutable index of IP address ranges, kept as primitive arrays sorted by the start of the ranges: IPv4 ranges as
+ * {from, to} pairs and IPv6 ranges as {fromHigh, fromLow, toHigh, toLow}. A lookup is a binary search for the last
+ * range that starts at or before the address, so ranges must not overlap - as in geolocation files.
+ *
+ * The arrays are either on the heap, with the location data of the ranges as objects, or views of a memory-mapped
+ * index file, from which the location data is decoded on lookup.
+ */
+final class RangerGeolocationIndex {
+	static final RangerGeolocationIndex EMPTY = build(Collections.<RangerGeolocationData>emptyList());
+
+	private static final Comparator<RangerGeolocationData> IPV4_START_COMPARATOR = new Comparator<RangerGeolocationData>() {
+		@Override
+		public int compare(RangerGeolocationData data1, RangerGeolocationData data2) {
+			return Long.compare(data1.getFromIPAddress(), data2.getFromIPAddress());
+		}
+	};
+
+	private static final Comparator<RangerGeolocationData> IPV6_START_COMPARATOR = new Comparator<RangerGeolocationData>() {
+		@Override
+		public int compare(RangerGeolocationData data1, RangerGeolocationData data2) {
+			long[] range1 = data1.getIPv6Range();
+			long[] range2 = data2.getIPv6Range();
+
+			return RangerGeolocationData.compareIPv6(range1[0], range1[1], range2[0], range2[1]);
+		}
+	};
+
+	private final int                     ipv4Count;
+	private final int                     ipv6Count;
+	private final LongBuffer              ipv4Ranges;
+	private final LongBuffer              ipv6Ranges;
+	private final RangerGeolocationData[] values;       // heap index: ipv4 ranges followed by ipv6 ranges
+	private final IntBuffer               valueOffsets; // mapped index: offsets of encoded location data in valueBytes
+	private final ByteBuffer              valueBytes;
+
+	private RangerGeolocationIndex(int ipv4Count, int ipv6Count, LongBuffer ipv4Ranges, LongBuffer ipv6Ranges, RangerGeolocationData[] values, IntBuffer valueOffsets, ByteBuffer valueBytes) {
+		this.ipv4Count    = ipv4Count;
+		this.ipv6Count    = ipv6Count;
+		this.ipv4Ranges   = ipv4Ranges;
+		this.ipv6Ranges   = ipv6Ranges;
+		this.values       = values;
+		this.valueOffsets = valueOffsets;
+		this.valueBytes   = valueBytes;
+	}
+
+	static RangerGeolocationIndex build(List<RangerGeolocationData> dataList) {
+		List<RangerGeolocationData> ipv4List = new ArrayList<>(dataList.size());
+		List<RangerGeolocationData> ipv6List = new ArrayList<>();
+
+		for (RangerGeolocationData data : dataList) {
+			if (data.isIPv6()) {
+				ipv6List.add(data);
+			} else {
+				ipv4List.add(data);
+			}
+		}
+
+		sortIfNeeded(ipv4List, IPV4_START_COMPARATOR);
+		sortIfNeeded(ipv6List, IPV6_START_COMPARATOR);
+
+		int                     ipv4Count  = ipv4List.size();
+		int                     ipv6Count  = ipv6List.size();
+		long[]                  ipv4Ranges = new long[2 * ipv4Count];
+		long[]                  ipv6Ranges = new long[4 * ipv6Count];
+		RangerGeolocationData[] values     = new RangerGeolocationData[ipv4Count + ipv6Count];
+
+		for (int i = 0; i < ipv4Count; i++) {
+			RangerGeolocationData data = ipv4List.get(i);
+
+			ipv4Ranges[2 * i]     = data.getFromIPAddress();
+			ipv4Ranges[2 * i + 1] = data.getToIPAddress();
+			values[i]             = data;
+		}
+
+		for (int i = 0; i < ipv6Count; i++) {
+			RangerGeolocationData data = ipv6List.get(i);
+
+			System.arraycopy(data.getIPv6Range(), 0, ipv6Ranges, 4 * i, 4);
+			values[ipv4Count + i] = data;
+		}
+
+		return new RangerGeolocationIndex(ipv4Count, ipv6Count, LongBuffer.wrap(ipv4Ranges), LongBuffer.wrap(ipv6Ranges), values, null, null);
+	}
+
+	/*
+	 * @param buffer contents written by writeTo(), from its current position
+	 */
+	static RangerGeolocationIndex map(ByteBuffer buffer) throws IOException {
+		ByteBuffer buf = buffer.slice();
+
+		if (buf.remaining() < 8) {
+			throw new IOException("truncated geolocation index");
+		}
+
+		int ipv4Count = buf.getInt();
+		int ipv6Count = buf.getInt();
+
+		long rangesSize  = 8L * (2L * ipv4Count + 4L * ipv6Count);
+		long offsetsSize = 4L * (ipv4Count + ipv6Count + 1L);
+
+		if (ipv4Count < 0 || ipv6Count < 0 || buf.remaining() < rangesSize + offsetsSize) {
+			throw new IOException("truncated geolocation index: ipv4Count=" + ipv4Count + ", ipv6Count=" + ipv6Count + ", size=" + buffer.remaining());
+		}
+
+		LongBuffer ipv4Ranges = slice(buf, 16 * ipv4Count).asLongBuffer();
+		LongBuffer ipv6Ranges = slice(buf, 32 * ipv6Count).asLongBuffer();
+		IntBuffer  offsets    = slice(buf, 4 * (ipv4Count + ipv6Count + 1)).asIntBuffer();
+		ByteBuffer valueBytes = buf.slice();
+
+		if (offsets.get(ipv4Count + ipv6Count) != valueBytes.remaining()) {
+			throw new IOException("truncated geolocation index: location data size=" + valueBytes.remaining() + ", expected=" + offsets.get(ipv4Count + ipv6Count));
+		}
+
+		return new RangerGeolocationIndex(ipv4Count, ipv6Count, ipv4Ranges, ipv6Ranges, null, offsets, valueBytes);
+	}
+
+	void writeTo(DataOutputStream out) throws IOException {
+		out.writeInt(ipv4Count);
+		out.writeInt(ipv6Count);
+
+		for (int i = 0; i < 2 * ipv4Count; i++) {
+			out.writeLong(ipv4Ranges.get(i));
+		}
+
+		for (int i = 0; i < 4 * ipv6Count; i++) {
+			out.writeLong(ipv6Ranges.get(i));
+		}
+
+		List<byte[][]> encodedValues = new ArrayList<>(size());
+		int            offset        = 0;
+
+		for (int i = 0; i < size(); i++) {
+			String[] locationData = getValue(i).getLocationData();
+			byte[][] encoded      = new byte[locationData.length][];
+
+			out.writeInt(offset);
+
+			offset += 2;
+
+			for (int j = 0; j < locationData.length; j++) {
+				encoded[j] = locationData[j] != null ? locationData[j].getBytes(StandardCharsets.UTF_8) : null;
+
+				offset += 4 + (encoded[j] != null ? encoded[j].length : 0);
+			}
+
+			encodedValues.add(encoded);
+		}
+
+		out.writeInt(offset);
+
+		for (byte[][] encoded : encodedValues) {
+			out.writeShort(encoded.length);
+
+			for (byte[] field : encoded) {
+				if (field == null) {
+					out.writeInt(-1);
+				} else {
+					out.writeInt(field.length);
+					out.write(field);
+				}
+			}
+		}
+	}
+
+	RangerGeolocationData find(byte[] address) {
+		RangerGeolocationData ret = null;
+
+		if (address.length == 4) {
+			long ip  = RangerGeolocationData.ipv4BytesToLong(address);
+			int  idx = findIPv4(ip);
+
+			if (idx >= 0 && ipv4Ranges.get(2 * idx + 1) >= ip) {
+				ret = getValue(idx);
+			}
+		} else if (address.length == 16) {
+			long high = RangerGeolocationData.bytesToLong(address, 0);
+			long low  = RangerGeolocationData.bytesToLong(address, 8);
+			int  idx  = findIPv6(high, low);
+
+			if (idx >= 0 && RangerGeolocationData.compareIPv6(ipv6Ranges.get(4 * idx + 2), ipv6Ranges.get(4 * idx + 3), high, low) >= 0) {
+				ret = getValue(ipv4Count + idx);
+			}
+		}
+
+		return ret;
+	}
+
+	int size() {
+		return ipv4Count + ipv6Count;
+	}
+
+	boolean isMapped() {
+		return values == null;
+	}
+
+	/*
+	 * @param idx index of the range: ipv4 ranges followed by ipv6 ranges, each in the order of their start
+	 */
+	RangerGeolocationData getValue(int idx) {
+		return values != null ? values[idx] : decodeValue(idx);
+	}
+
+	// index of the last range that starts at or before ip, or -1
+	private int findIPv4(long ip) {
+		int low  = 0;
+		int high = ipv4Count - 1;
+
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+
+			if (ipv4Ranges.get(2 * mid) <= ip) {
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+
+		return high;
+	}
+
+	private int findIPv6(long ipHigh, long ipLow) {
+		int low  = 0;
+		int high = ipv6Count - 1;
+
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+
+			if (RangerGeolocationData.compareIPv6(ipv6Ranges.get(4 * mid), ipv6Ranges.get(4 * mid + 1), ipHigh, ipLow) <= 0) {
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+
+		return high;
+	}
+
+	private RangerGeolocationData decodeValue(int idx) {
+		ByteBuffer buf = valueBytes.duplicate();
+
+		buf.position(valueOffsets.get(idx));
+
+		String[] locationData = new String[buf.getShort()];
+
+		for (int i = 0; i < locationData.length; i++) {
+			int len = buf.getInt();
+
+			if (len >= 0) {
+				byte[] bytes = new byte[len];
+
+				buf.get(bytes);
+
+				locationData[i] = new String(bytes, StandardCharsets.UTF_8);
+			}
+		}
+
+		final RangerGeolocationData ret;
+
+		if (idx < ipv4Count) {
+			ret = new RangerGeolocationData(ipv4Ranges.get(2 * idx), ipv4Ranges.get(2 * idx + 1), null, locationData);
+		} else {
+			int    ipv6Idx   = idx - ipv4Count;
+			long[] ipv6Range = new long[4];
+
+			for (int i = 0; i < 4; i++) {
+				ipv6Range[i] = ipv6Ranges.get(4 * ipv6Idx + i);
+			}
+
+			ret = new RangerGeolocationData(0L, 0L, ipv6Range, locationData);
+		}
+
+		return ret;
+	}
+
+	private static void sortIfNeeded(List<RangerGeolocationData> list, Comparator<RangerGeolocationData> comparator) {
+		for (int i = 1; i < list.size(); i++) {
+			if (comparator.compare(list.get(i - 1), list.get(i)) > 0) { // ranges in geolocation files are usually sorted already
+				Collections.sort(list, comparator);
+
+				break;
+			}
+		}
+	}
+
+	private static ByteBuffer slice(ByteBuffer buf, int length) {
+		ByteBuffer ret = buf.slice();
+
+		ret.limit(length);
+		buf.position(buf.position() + length);
+
+		return ret;
+	}
+}
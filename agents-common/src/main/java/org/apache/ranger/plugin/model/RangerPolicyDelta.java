@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.model;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import org.codehaus.jackson.annotate.JsonAutoDetect;
+import org.codehaus.jackson.annotate.JsonAutoDetect.Visibility;
+import org.codehaus.jackson.annotate.JsonIgnore;
+import org.codehaus.jackson.annotate.JsonIgnoreProperties;
+import org.codehaus.jackson.map.annotate.JsonSerialize;
+
+import java.io.Serializable;
+
+@JsonAutoDetect(fieldVisibility=Visibility.ANY)
+@JsonSerialize(include=JsonSerialize.Inclusion.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown=true)
+@XmlRootElement
+@XmlAccessorType(XmlAccessType.FIELD)
+public class RangerPolicyDelta implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final int CHANGE_TYPE_POLICY_CREATE = 0;
+    public static final int CHANGE_TYPE_POLICY_UPDATE = 1;
+    public static final int CHANGE_TYPE_POLICY_DELETE = 2;
+
+    private static final String[] changeTypeNames = { "POLICY_CREATE", "POLICY_UPDATE", "POLICY_DELETE" };
+
+    private Long         policyId;
+    private Integer      changeType;
+    private Long         policyVersion;
+    private RangerPolicy policy;
+
+    public RangerPolicyDelta() {
+        this(null, null, null, null);
+    }
+
+    public RangerPolicyDelta(Long policyId, Integer changeType, Long policyVersion, RangerPolicy policy) {
+        setPolicyId(policyId);
+        setChangeType(changeType);
+        setPolicyVersion(policyVersion);
+        setPolicy(policy);
+    }
+
+    public Long getPolicyId() { return policyId; }
+
+    public Integer getChangeType() { return changeType; }
+
+    public Long getPolicyVersion() { return policyVersion; }
+
+    public RangerPolicy getPolicy() { return policy; }
+
+    public void setPolicyId(Long policyId) { this.policyId = policyId; }
+
+    public void setChangeType(Integer changeType) { this.changeType = changeType; }
+
+    public void setPolicyVersion(Long policyVersion) { this.policyVersion = policyVersion; }
+
+    public void setPolicy(RangerPolicy policy) { this.policy = policy; }
+
+    @JsonIgnore
+    public String getChangeTypeName() {
+        return changeType != null && changeType >= 0 && changeType < changeTypeNames.length ? changeTypeNames[changeType] : String.valueOf(changeType);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append("RangerPolicyDelta={");
+        sb.append("policyId=").append(policyId);
+        sb.append(", changeType=").append(getChangeTypeName());
+        sb.append(", policyVersion=").append(policyVersion);
+        sb.append(", policyName=").append(policy != null ? policy.getName() : null);
+        sb.append("}");
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.policyengine;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.plugin.model.RangerPolicy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/*
+ * Caches results of access-policy evaluation, keyed by user, groups, resource and access-type, for one policy-engine
+ * instance. A policy-engine is replaced whenever policy or tag-policy version changes, and a cache must be created for
+ * the new engine; hence cached results never outlive the policies they were computed from.
+ *
+ * A cache should be created only for engines whose decisions don't depend on request context - see
+ * RangerPolicyEngineImpl.isAccessDecisionCacheable(). Cached decisions are still passed to the result-processor, so
+ * that audit events are generated for every request.
+ */
+public class RangerAccessDecisionCache {
+    private static final Log LOG = LogFactory.getLog(RangerAccessDecisionCache.class);
+
+    private static final char KEY_SEP = '\u0000';
+
+    private final RangerPolicyEngine                                policyEngine;
+    private final RangerConcurrentCache<String, RangerAccessResult> cache;
+
+    public RangerAccessDecisionCache(RangerPolicyEngine policyEngine, int maxSize) {
+        this.policyEngine = policyEngine;
+        this.cache        = new RangerConcurrentCache<>(maxSize);
+    }
+
+    public RangerPolicyEngine getPolicyEngine() {
+        return policyEngine;
+    }
+
+    public RangerConcurrentCache<String, RangerAccessResult> getCache() {
+        return cache;
+    }
+
+    /*
+     * Equivalent of policyEngine.evaluatePolicies(request, RangerPolicy.POLICY_TYPE_ACCESS, resultProcessor). The request
+     * must have been preprocessed by the policy-engine.
+     */
+    public RangerAccessResult evaluatePolicies(RangerAccessRequest request, RangerAccessResultProcessor resultProcessor) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("==> RangerAccessDecisionCache.evaluatePolicies(" + request + ")");
+        }
+
+        final RangerAccessResult ret;
+
+        String             key    = getKey(request);
+        RangerAccessResult cached = key != null ? cache.get(key) : null;
+
+        if (cached != null) {
+            ret = copyResult(cached, request);
+
+            if (resultProcessor != null) {
+                resultProcessor.processResult(ret);
+            }
+        } else {
+            ret = policyEngine.evaluatePolicies(request, RangerPolicy.POLICY_TYPE_ACCESS, resultProcessor);
+
+            if (key != null && ret != null) {
+                cache.put(key, copyResult(ret, null)); // don't hold on to the request
+            }
+        }
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("<== RangerAccessDecisionCache.evaluatePolicies(" + request + "): isCached=" + (cached != null) + ", ret=" + ret);
+        }
+
+        return ret;
+    }
+
+    @Override
+    public String toString() {
+        return "RangerAccessDecisionCache={policyVersion=" + policyEngine.getPolicyVersion() + ", cache=" + cache + "}";
+    }
+
+    private String getKey(RangerAccessRequest request) {
+        RangerAccessResource resource    = request.getResource();
+        String               resourceKey = resource != null ? resource.getCacheKey() : null;
+
+        if (resourceKey == null) {
+            return null;
+        }
+
+        StringBuilder sb = new StringBuilder();
+
+        sb.append(request.getUser()).append(KEY_SEP)
+          .append(request.getAccessType()).append(KEY_SEP)
+          .append(request.getResourceMatchingScope()).append(KEY_SEP)
+          .append(resource.getOwnerUser()).append(KEY_SEP)
+          .append(resourceKey).append(KEY_SEP);
+
+        Set<String> userGroups = request.getUserGroups();
+
+        if (userGroups != null && !userGroups.isEmpty()) {
+            List<String> groups = new ArrayList<>(userGroups);
+
+            Collections.sort(groups);
+
+            for (String group : groups) {
+                sb.append(KEY_SEP).append(group);
+            }
+        }
+
+        return sb.toString();
+    }
+
+    private static RangerAccessResult copyResult(RangerAccessResult result, RangerAccessRequest request) {
+        RangerAccessResult ret = new RangerAccessResult(result.getPolicyType(), result.getServiceName(), result.getServiceDef(), request);
+
+        ret.setAccessResultFrom(result);
+        ret.setAuditResultFrom(result);
+
+        return ret;
+    }
+}
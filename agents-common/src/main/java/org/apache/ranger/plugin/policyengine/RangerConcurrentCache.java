@@ -0,0 +1,205 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.policyengine;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * Bounded cache that can be used concurrently without a global lock: unlike CacheMap, lookups don't modify the structure
+ * of the cache. Eviction approximates LRU using the CLOCK (second-chance) algorithm: a lookup marks the entry as
+ * referenced, and the eviction sweep skips - and unmarks - referenced entries once before evicting them. Only one
+ * thread sweeps at a time; other threads adding entries don't wait for it, so the size might briefly exceed maxSize.
+ * Entries removed with remove() stay in the eviction queue until a sweep drops them; a sweep is also started when
+ * there are more than maxSize of these.
+ */
+public class RangerConcurrentCache<K, V> {
+    private static final Log LOG = LogFactory.getLog(RangerConcurrentCache.class);
+
+    private final int                                maxSize;
+    private final ConcurrentHashMap<K, Entry<K, V>>  entries;
+    private final Queue<Entry<K, V>>                 evictionQueue     = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger                      evictionQueueSize = new AtomicInteger(); // ConcurrentLinkedQueue.size() is O(n)
+    private final ReentrantLock                      evictionLock      = new ReentrantLock();
+    private final LongAdder                          hitCount          = new LongAdder();
+    private final LongAdder                          missCount         = new LongAdder();
+    private final LongAdder                          evictionCount     = new LongAdder();
+
+    public RangerConcurrentCache(int maxSize) {
+        this.maxSize = maxSize < 1 ? 1 : maxSize;
+        this.entries = new ConcurrentHashMap<>(Math.min(this.maxSize, 64 * 1024));
+    }
+
+    public V get(K key) {
+        Entry<K, V> entry = key != null ? entries.get(key) : null;
+
+        if (entry == null) {
+            missCount.increment();
+
+            return null;
+        }
+
+        hitCount.increment();
+
+        if (!entry.isReferenced) { // avoid writes to entries that are already marked, to keep their cache-lines shared
+            entry.isReferenced = true;
+        }
+
+        return entry.value;
+    }
+
+    public boolean containsKey(K key) {
+        return get(key) != null;
+    }
+
+    public void put(K key, V value) {
+        if (key == null || value == null) {
+            return;
+        }
+
+        Entry<K, V> newEntry = new Entry<>(key, value);
+        Entry<K, V> oldEntry = entries.putIfAbsent(key, newEntry);
+
+        if (oldEntry != null) { // replaced in place, so that the entry keeps its place in the eviction queue
+            oldEntry.value = value;
+        } else {
+            evictionQueue.offer(newEntry);
+
+            int queueSize = evictionQueueSize.incrementAndGet();
+            int size      = entries.size();
+
+            if (size > maxSize || queueSize - size > maxSize) {
+                evictIfNeeded();
+            }
+        }
+    }
+
+    public V remove(K key) {
+        Entry<K, V> entry = key != null ? entries.remove(key) : null;
+
+        return entry != null ? entry.value : null;
+    }
+
+    public void clear() {
+        entries.clear();
+        evictionQueue.clear();
+        evictionQueueSize.set(0);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "RangerConcurrentCache={size=" + size() + ", maxSize=" + maxSize + ", hitCount=" + getHitCount() + ", missCount=" + getMissCount() + ", evictionCount=" + getEvictionCount() + "}";
+    }
+
+    int getEvictionQueueSize() {
+        return evictionQueueSize.get();
+    }
+
+    private void evictIfNeeded() {
+        if (!evictionLock.tryLock()) { // another thread is evicting
+            return;
+        }
+
+        try {
+            // every entry gets at most one second-chance per sweep; bound the sweep in case lookups keep marking entries
+            int maxIterations = 2 * (maxSize + evictionQueueSize.get());
+
+            for (int i = 0; i < maxIterations; i++) {
+                int     size       = entries.size();
+                boolean isOverSize = size > maxSize;
+
+                if (!isOverSize && evictionQueueSize.get() - size <= maxSize) {
+                    break;
+                }
+
+                Entry<K, V> entry = evictionQueue.poll();
+
+                if (entry == null) {
+                    break;
+                }
+
+                evictionQueueSize.decrementAndGet();
+
+                if (entries.get(entry.key) != entry) { // removed after being queued: drop it from the queue
+                    continue;
+                }
+
+                if (!isOverSize) { // sweeping only to drop removed entries
+                    requeue(entry);
+                } else if (entry.isReferenced) {
+                    entry.isReferenced = false;
+
+                    requeue(entry);
+                } else if (entries.remove(entry.key, entry)) {
+                    evictionCount.increment();
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("RangerConcurrentCache.evictIfNeeded(): " + this);
+        }
+    }
+
+    private void requeue(Entry<K, V> entry) {
+        evictionQueue.offer(entry);
+        evictionQueueSize.incrementAndGet();
+    }
+
+    private static final class Entry<K, V> {
+        final    K       key;
+        volatile V       value;
+        volatile boolean isReferenced;
+
+        Entry(K key, V value) {
+            this.key   = key;
+            this.value = value;
+        }
+    }
+}
@@ -19,53 +19,197 @@
 
 package org.apache.ranger.plugin.policyengine;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ranger.plugin.store.ServiceStore;
 import org.apache.ranger.plugin.util.ServicePolicies;
 
+/*
+ * Policy engines of services, for one set of engine options. Lookups don't lock: each service has a holder of its
+ * current engine, and a new engine is built on builderExecutor when the service-store has newer policies. Until the
+ * build completes, callers get the current engine - or wait for the new one, if they ask to.
+ */
 class RangerPolicyEngineCache {
 	private static final Log LOG = LogFactory.getLog(RangerPolicyEngineCache.class);
 
-	private final Map<String, RangerPolicyEngine> policyEngineCache = new HashMap<String, RangerPolicyEngine>();
+	private final ConcurrentMap<String, PolicyEngineHolder> policyEngineHolders = new ConcurrentHashMap<>();
+	private final Executor                                  builderExecutor;
+	private final RangerPolicyEngineCacheMetrics            metrics;
+
+	RangerPolicyEngineCache(Executor builderExecutor, RangerPolicyEngineCacheMetrics metrics) {
+		this.builderExecutor = builderExecutor;
+		this.metrics         = metrics;
+	}
 
-	synchronized final RangerPolicyEngine getPolicyEngine(String serviceName, ServiceStore svcStore, RangerPolicyEngineOptions options) {
+	/*
+	 * @param waitForUpdate when the service-store has newer policies, whether to wait for the engine to be built with them.
+	 *                      Without an engine for the service yet, callers always wait.
+	 */
+	final RangerPolicyEngine getPolicyEngine(String serviceName, ServiceStore svcStore, RangerPolicyEngineOptions options, boolean waitForUpdate) {
 		RangerPolicyEngine ret = null;
 
 		if(serviceName != null) {
-			ret = policyEngineCache.get(serviceName);
+			PolicyEngineHolder holder = policyEngineHolders.get(serviceName);
+
+			if(holder == null) {
+				PolicyEngineHolder existing = policyEngineHolders.putIfAbsent(serviceName, holder = new PolicyEngineHolder(serviceName));
+
+				if(existing != null) {
+					holder = existing;
+				}
+			}
 
-			long policyVersion = ret != null ? ret.getPolicyVersion() : -1;
+			ret = holder.getPolicyEngine(svcStore, options, waitForUpdate);
+		}
+
+		return ret;
+	}
+
+	private static long getPolicyVersion(ServicePolicies policies) {
+		return policies.getPolicyVersion() != null ? policies.getPolicyVersion() : -1;
+	}
+
+	private final class PolicyEngineHolder {
+		private final String                              serviceName;
+		private final AtomicReference<RangerPolicyEngine> policyEngine = new AtomicReference<>();
+		private final AtomicReference<PolicyEngineBuild>  pendingBuild = new AtomicReference<>();
+
+		PolicyEngineHolder(String serviceName) {
+			this.serviceName = serviceName;
+		}
+
+		RangerPolicyEngine getPolicyEngine(ServiceStore svcStore, RangerPolicyEngineOptions options, boolean waitForUpdate) {
+			PolicyEngineBuild  build   = pendingBuild.get();
+			RangerPolicyEngine current = policyEngine.get();
 
 			if(svcStore != null) {
+				long knownVersion = build != null ? build.policyVersion : (current != null ? current.getPolicyVersion() : -1);
+
 				try {
-					ServicePolicies policies = svcStore.getServicePoliciesIfUpdated(serviceName, policyVersion);
+					ServicePolicies policies = svcStore.getServicePoliciesIfUpdated(serviceName, knownVersion);
 
 					if(policies != null) {
-						if(ret == null) {
-							ret = addPolicyEngine(policies, options);
-						} else if(policies.getPolicyVersion() != null && !policies.getPolicyVersion().equals(policyVersion)) {
-							ret = addPolicyEngine(policies, options);
+						if(current == null && build == null) {
+							build = startBuild(policies, options);
+						} else if(policies.getPolicyVersion() != null && !policies.getPolicyVersion().equals(knownVersion)) {
+							build = startBuild(policies, options);
 						}
 					}
 				} catch(Exception excp) {
 					LOG.error("getPolicyEngine(" + serviceName + "): failed to get latest policies from service-store", excp);
 				}
 			}
+
+			if(build != null && (waitForUpdate || current == null)) {
+				waitFor(build);
+			}
+
+			return policyEngine.get();
 		}
 
-		return ret;
-	}
+		// at most one build is pending: a build for newer policies replaces the pending one, which completes on its own
+		private PolicyEngineBuild startBuild(final ServicePolicies policies, final RangerPolicyEngineOptions options) {
+			final long        policyVersion = getPolicyVersion(policies);
+			PolicyEngineBuild ret           = new PolicyEngineBuild(policyVersion, new Callable<RangerPolicyEngine>() {
+				@Override
+				public RangerPolicyEngine call() {
+					return buildPolicyEngine(policies, options, policyVersion);
+				}
+			});
 
+			while (true) {
+				PolicyEngineBuild pending = pendingBuild.get();
 
-	private RangerPolicyEngine addPolicyEngine(ServicePolicies policies, RangerPolicyEngineOptions options) {
-		RangerPolicyEngine ret = new RangerPolicyEngineImpl("ranger-admin", policies, options);
+				if(pending != null && pending.policyVersion >= policyVersion) {
+					ret = pending;
 
-		policyEngineCache.put(policies.getServiceName(), ret);
+					break;
+				}
 
-		return ret;
+				if(pendingBuild.compareAndSet(pending, ret)) {
+					if(LOG.isDebugEnabled()) {
+						LOG.debug("RangerPolicyEngineCache.startBuild(serviceName=" + serviceName + ", policyVersion=" + policyVersion + ")");
+					}
+
+					builderExecutor.execute(ret);
+
+					break;
+				}
+			}
+
+			return ret;
+		}
+
+		private RangerPolicyEngine buildPolicyEngine(ServicePolicies policies, RangerPolicyEngineOptions options, long policyVersion) {
+			long startTimeNanos = System.nanoTime();
+
+			try {
+				RangerPolicyEngine ret = new RangerPolicyEngineImpl("ranger-admin", policies, options);
+
+				metrics.recordBuild(System.nanoTime() - startTimeNanos);
+
+				while (true) {
+					RangerPolicyEngine current = policyEngine.get();
+
+					if(current != null && current.getPolicyVersion() >= ret.getPolicyVersion()) { // a build for newer policies completed first
+						break;
+					}
+
+					if(policyEngine.compareAndSet(current, ret)) {
+						break;
+					}
+				}
+
+				if(LOG.isDebugEnabled()) {
+					LOG.debug("RangerPolicyEngineCache.buildPolicyEngine(serviceName=" + serviceName + ", policyVersion=" + policyVersion + "): " + metrics);
+				}
+
+				return ret;
+			} catch(RuntimeException excp) {
+				metrics.recordFailedBuild();
+
+				LOG.error("buildPolicyEngine(" + serviceName + ", " + policyVersion + "): failed to build policy-engine", excp);
+
+				throw excp;
+			} finally {
+				PolicyEngineBuild pending = pendingBuild.get();
+
+				if(pending != null && pending.policyVersion <= policyVersion) {
+					pendingBuild.compareAndSet(pending, null);
+				}
+			}
+		}
+
+		private void waitFor(PolicyEngineBuild build) {
+			long startTimeNanos = System.nanoTime();
+
+			try {
+				build.get();
+			} catch(InterruptedException excp) {
+				Thread.currentThread().interrupt();
+			} catch(ExecutionException excp) {
+				// logged by buildPolicyEngine(); callers get the current engine
+			} finally {
+				metrics.recordWait(System.nanoTime() - startTimeNanos);
+			}
+		}
+	}
+
+	private static final class PolicyEngineBuild extends FutureTask<RangerPolicyEngine> {
+		final long policyVersion;
+
+		PolicyEngineBuild(long policyVersion, Callable<RangerPolicyEngine> builder) {
+			super(builder);
+
+			this.policyVersion = policyVersion;
+		}
 	}
 }
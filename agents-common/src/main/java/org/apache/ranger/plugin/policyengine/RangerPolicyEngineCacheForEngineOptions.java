@@ -21,15 +21,43 @@ package org.apache.ranger.plugin.policyengine;
 
 import org.apache.ranger.plugin.store.ServiceStore;
 
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class RangerPolicyEngineCacheForEngineOptions {
 
+    private static final int  BUILDER_THREAD_COUNT         = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    private static final long BUILDER_THREAD_KEEPALIVE_SEC = 60;
+
+    private static final RangerPolicyEngineOptions NULL_OPTIONS_KEY = new RangerPolicyEngineOptions(); // ConcurrentHashMap does not allow null keys
+
     private static volatile RangerPolicyEngineCacheForEngineOptions sInstance = null;
 
-    private final Map<RangerPolicyEngineOptions, RangerPolicyEngineCache> policyEngineCacheForEngineOptions = Collections.synchronizedMap(new HashMap<RangerPolicyEngineOptions, RangerPolicyEngineCache>());
+    private final ConcurrentMap<RangerPolicyEngineOptions, RangerPolicyEngineCache> policyEngineCacheForEngineOptions = new ConcurrentHashMap<>();
+    private final RangerPolicyEngineCacheMetrics                                     metrics                           = new RangerPolicyEngineCacheMetrics();
+    private final ThreadPoolExecutor                                                 builderExecutor;
+
+    private RangerPolicyEngineCacheForEngineOptions() {
+        builderExecutor = new ThreadPoolExecutor(BUILDER_THREAD_COUNT, BUILDER_THREAD_COUNT, BUILDER_THREAD_KEEPALIVE_SEC, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger threadCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread ret = new Thread(runnable, "PolicyEngineBuilder-" + threadCount.incrementAndGet());
+
+                ret.setDaemon(true);
+
+                return ret;
+            }
+        });
+
+        builderExecutor.allowCoreThreadTimeOut(true);
+    }
 
     public static RangerPolicyEngineCacheForEngineOptions getInstance() {
         RangerPolicyEngineCacheForEngineOptions ret = sInstance;
@@ -45,18 +73,33 @@ public class RangerPolicyEngineCacheForEngineOptions {
         return ret;
     }
 
+    /*
+     * Waits for the policy engine to be updated when the service-store has newer policies
+     */
     public final RangerPolicyEngine getPolicyEngine(String serviceName, ServiceStore svcStore, RangerPolicyEngineOptions options) {
+        return getPolicyEngine(serviceName, svcStore, options, true);
+    }
+
+    /*
+     * @param waitForUpdate whether to wait for the policy engine to be updated when the service-store has newer policies,
+     *                      or to return the current engine while a new one is built in the background
+     */
+    public final RangerPolicyEngine getPolicyEngine(String serviceName, ServiceStore svcStore, RangerPolicyEngineOptions options, boolean waitForUpdate) {
+
+        RangerPolicyEngineOptions key               = options != null ? options : NULL_OPTIONS_KEY;
+        RangerPolicyEngineCache   policyEngineCache = policyEngineCacheForEngineOptions.get(key);
 
-        RangerPolicyEngineCache policyEngineCache;
+        if (policyEngineCache == null) {
+            RangerPolicyEngineCache existing = policyEngineCacheForEngineOptions.putIfAbsent(key, policyEngineCache = new RangerPolicyEngineCache(builderExecutor, metrics));
 
-        synchronized (this) {
-            policyEngineCache = policyEngineCacheForEngineOptions.get(options);
-            if (policyEngineCache == null) {
-                policyEngineCache = new RangerPolicyEngineCache();
-                policyEngineCacheForEngineOptions.put(options, policyEngineCache);
+            if (existing != null) {
+                policyEngineCache = existing;
             }
         }
-        return policyEngineCache.getPolicyEngine(serviceName, svcStore, options);
+        return policyEngineCache.getPolicyEngine(serviceName, svcStore, options, waitForUpdate);
     }
-}
 
+    public RangerPolicyEngineCacheMetrics getMetrics() {
+        return metrics;
+    }
+}
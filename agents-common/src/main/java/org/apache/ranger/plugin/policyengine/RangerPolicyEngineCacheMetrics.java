@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.policyengine;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of the policy engines built by Ranger Admin, and of the time callers waited for them,
+ * updated without locking.
+ */
+public class RangerPolicyEngineCacheMetrics {
+	private final LongAdder  buildCount        = new LongAdder();
+	private final LongAdder  failedBuildCount  = new LongAdder();
+	private final LongAdder  buildTimeNanos    = new LongAdder();
+	private final AtomicLong maxBuildTimeNanos = new AtomicLong();
+	private final LongAdder  waitCount         = new LongAdder();
+	private final LongAdder  waitTimeNanos     = new LongAdder();
+	private final AtomicLong maxWaitTimeNanos  = new AtomicLong();
+
+	public void recordBuild(long timeNanos) {
+		buildCount.increment();
+		buildTimeNanos.add(timeNanos);
+
+		updateMax(maxBuildTimeNanos, timeNanos);
+	}
+
+	public void recordFailedBuild() {
+		failedBuildCount.increment();
+	}
+
+	public void recordWait(long timeNanos) {
+		waitCount.increment();
+		waitTimeNanos.add(timeNanos);
+
+		updateMax(maxWaitTimeNanos, timeNanos);
+	}
+
+	public long getBuildCount() {
+		return buildCount.sum();
+	}
+
+	public long getFailedBuildCount() {
+		return failedBuildCount.sum();
+	}
+
+	public long getAvgBuildTimeNanos() {
+		long count = buildCount.sum();
+
+		return count == 0 ? 0 : buildTimeNanos.sum() / count;
+	}
+
+	public long getMaxBuildTimeNanos() {
+		return maxBuildTimeNanos.get();
+	}
+
+	public long getWaitCount() {
+		return waitCount.sum();
+	}
+
+	public long getAvgWaitTimeNanos() {
+		long count = waitCount.sum();
+
+		return count == 0 ? 0 : waitTimeNanos.sum() / count;
+	}
+
+	public long getMaxWaitTimeNanos() {
+		return maxWaitTimeNanos.get();
+	}
+
+	@Override
+	public String toString() {
+		return "builds=" + getBuildCount()
+				+ ", failedBuilds=" + getFailedBuildCount()
+				+ ", avgBuildTimeNanos=" + getAvgBuildTimeNanos()
+				+ ", maxBuildTimeNanos=" + getMaxBuildTimeNanos()
+				+ ", waits=" + getWaitCount()
+				+ ", avgWaitTimeNanos=" + getAvgWaitTimeNanos()
+				+ ", maxWaitTimeNanos=" + getMaxWaitTimeNanos();
+	}
+
+	private static void updateMax(AtomicLong max, long value) {
+		long curr = max.get();
+
+		while (value > curr && !max.compareAndSet(curr, value)) {
+			curr = max.get();
+		}
+	}
+}
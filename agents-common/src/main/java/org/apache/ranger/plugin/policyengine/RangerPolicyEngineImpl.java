@@ -25,6 +25,7 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ranger.authorization.hadoop.config.RangerConfiguration;
+import org.apache.ranger.plugin.conditionevaluator.RangerIpMatcher;
 import org.apache.ranger.plugin.contextenricher.RangerContextEnricher;
 import org.apache.ranger.plugin.contextenricher.RangerTagForEval;
 import org.apache.ranger.plugin.model.RangerPolicy;
@@ -32,17 +33,20 @@ import org.apache.ranger.plugin.model.RangerServiceDef;
 import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
 import org.apache.ranger.plugin.policyevaluator.RangerPolicyEvaluator;
 import org.apache.ranger.plugin.policyevaluator.RangerPolicyEvaluator.PolicyACLSummary;
+import org.apache.ranger.plugin.policyevaluator.RangerPolicyItemEvaluator;
 import org.apache.ranger.plugin.policyresourcematcher.RangerPolicyResourceMatcher;
 import org.apache.ranger.plugin.util.RangerAccessRequestUtil;
 import org.apache.ranger.plugin.util.RangerPerfTracer;
 import org.apache.ranger.plugin.util.ServicePolicies;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -59,6 +63,7 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 	private static final Log PERF_POLICYENGINE_REBALANCE_LOG = RangerPerfTracer.getPerfLogger("policyengine.rebalance");
 	private static final Log PERF_POLICYENGINE_USAGE_LOG = RangerPerfTracer.getPerfLogger("policyengine.usage");
 	private static final Log PERF_POLICYENGINE_GET_ACLS_LOG = RangerPerfTracer.getPerfLogger("policyengine.getResourceACLs");
+	private static final Log PERF_POLICYENGINE_CACHE_LOG = RangerPerfTracer.getPerfLogger("policyengine.cache");
 
 	private static final int MAX_POLICIES_FOR_CACHE_TYPE_EVALUATOR = 100;
 
@@ -69,6 +74,8 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 
 	private final Map<Long, RangerPolicyEvaluator> policyEvaluatorsMap;
 
+	private final boolean isAccessDecisionCacheable;
+
 	private boolean  useForwardedIPAddress;
 	private String[] trustedProxyAddresses;
 
@@ -134,24 +141,12 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 			tagPolicyRepository = null;
 		}
 
-		List<RangerContextEnricher> tmpList;
-
-		List<RangerContextEnricher> tagContextEnrichers = tagPolicyRepository == null ? null :tagPolicyRepository.getContextEnrichers();
-		List<RangerContextEnricher> resourceContextEnrichers = policyRepository.getContextEnrichers();
-
-		if (CollectionUtils.isEmpty(tagContextEnrichers)) {
-			tmpList = resourceContextEnrichers;
-		} else if (CollectionUtils.isEmpty(resourceContextEnrichers)) {
-			tmpList = tagContextEnrichers;
-		} else {
-			tmpList = new ArrayList<>(tagContextEnrichers);
-			tmpList.addAll(resourceContextEnrichers);
-		}
-
-		this.allContextEnrichers = tmpList;
+		this.allContextEnrichers = getAllContextEnrichers(policyRepository, tagPolicyRepository);
 
 		policyEvaluatorsMap = createPolicyEvaluatorsMap();
 
+		isAccessDecisionCacheable = tagPolicyRepository == null && !policyRepository.hasContextDependentPolicies(RangerPolicy.POLICY_TYPE_ACCESS);
+
 		RangerPerfTracer.log(perf);
 
 		if (PERF_POLICYENGINE_INIT_LOG.isDebugEnabled()) {
@@ -165,6 +160,61 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 		}
 	}
 
+	/*
+	 * Builds the engine for servicePolicies, which carry the policy-deltas from the version of the given engine, by
+	 * applying only the changes to its repositories: evaluators and resource-trie nodes for unchanged policies are shared.
+	 * The given engine is not modified, and can continue to serve requests until it is replaced.
+	 */
+	public RangerPolicyEngineImpl(RangerPolicyEngineImpl other, ServicePolicies servicePolicies, RangerPolicyEngineOptions options) {
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("==> RangerPolicyEngineImpl(fromVersion=" + other.getPolicyVersion() + ", toVersion=" + servicePolicies.getPolicyVersion() + ", deltaCount=" + (servicePolicies.getPolicyDeltas() == null ? 0 : servicePolicies.getPolicyDeltas().size()) + ")");
+		}
+
+		RangerPerfTracer perf = null;
+
+		if(RangerPerfTracer.isPerfTraceEnabled(PERF_POLICYENGINE_INIT_LOG)) {
+			perf = RangerPerfTracer.getPerfTracer(PERF_POLICYENGINE_INIT_LOG, "RangerPolicyEngine.initWithDeltas(appId=" + other.policyRepository.getAppId() + ",hashCode=" + Integer.toHexString(System.identityHashCode(this)) + ")");
+		}
+
+		if (options == null) {
+			options = new RangerPolicyEngineOptions();
+		}
+
+		long policyVersion = servicePolicies.getPolicyVersion() != null ? servicePolicies.getPolicyVersion() : -1;
+
+		policyRepository = new RangerPolicyRepository(other.policyRepository, servicePolicies.getPolicies(), servicePolicies.getPolicyDeltas(), policyVersion, options);
+
+		ServicePolicies.TagPolicies tagPolicies = servicePolicies.getTagPolicies();
+
+		if (!options.disableTagPolicyEvaluation
+				&& tagPolicies != null
+				&& !StringUtils.isEmpty(tagPolicies.getServiceName())
+				&& tagPolicies.getServiceDef() != null
+				&& !CollectionUtils.isEmpty(tagPolicies.getPolicies())) {
+			long tagPolicyVersion = tagPolicies.getPolicyVersion() != null ? tagPolicies.getPolicyVersion() : -1;
+
+			if (other.tagPolicyRepository != null && other.tagPolicyRepository.getPolicyVersion() == tagPolicyVersion) {
+				tagPolicyRepository = new RangerPolicyRepository(other.tagPolicyRepository, other.tagPolicyRepository.getPolicies(), null, tagPolicyVersion, options);
+			} else {
+				tagPolicyRepository = new RangerPolicyRepository(other.policyRepository.getAppId(), tagPolicies, options, servicePolicies.getServiceDef(), servicePolicies.getServiceName());
+			}
+		} else {
+			tagPolicyRepository = null;
+		}
+
+		this.allContextEnrichers = getAllContextEnrichers(policyRepository, tagPolicyRepository);
+
+		policyEvaluatorsMap = createPolicyEvaluatorsMap();
+
+		isAccessDecisionCacheable = tagPolicyRepository == null && !policyRepository.hasContextDependentPolicies(RangerPolicy.POLICY_TYPE_ACCESS);
+
+		RangerPerfTracer.log(perf);
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("<== RangerPolicyEngineImpl(fromVersion=" + other.getPolicyVersion() + ", toVersion=" + servicePolicies.getPolicyVersion() + ")");
+		}
+	}
+
 	@Override
 	protected void finalize() throws Throwable {
 		try {
@@ -214,6 +264,19 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 		return policyRepository.getServiceDef();
 	}
 
+	/*
+	 * Access decisions can be cached only when they depend solely on user, groups, resource and access-type: i.e. when
+	 * there are no tag policies (tags of a resource can change without a policy-version change), and no access policies
+	 * have conditions or validity schedules.
+	 */
+	public boolean isAccessDecisionCacheable() {
+		return isAccessDecisionCacheable;
+	}
+
+	RangerPolicyRepository getPolicyRepository() {
+		return policyRepository;
+	}
+
 	@Override
 	public long getPolicyVersion() {
 		return policyRepository.getPolicyVersion();
@@ -319,20 +382,50 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 			LOG.debug("==> RangerPolicyEngineImpl.evaluatePolicies(" + requests + ", policyType=" + policyType + ")");
 		}
 
+		RangerPerfTracer perf = null;
+
+		if(RangerPerfTracer.isPerfTraceEnabled(PERF_POLICYENGINE_REQUEST_LOG)) {
+			perf = RangerPerfTracer.getPerfTracer(PERF_POLICYENGINE_REQUEST_LOG, "RangerPolicyEngine.evaluatePolicies(requestCount=" + (requests == null ? 0 : requests.size()) + ",policyType=" + policyType + ")");
+		}
+
 		Collection<RangerAccessResult> ret = new ArrayList<>();
 
-		if (requests != null) {
-			for (RangerAccessRequest request : requests) {
-				RangerAccessResult result = evaluatePoliciesNoAudit(request, policyType);
+		if (CollectionUtils.isNotEmpty(requests)) {
+			RangerAccessRequest[]                    requestArray     = requests.toArray(new RangerAccessRequest[requests.size()]);
+			RangerAccessResult[]                     results          = new RangerAccessResult[requestArray.length];
+			Map<String, List<RangerPolicyEvaluator>> prefixEvaluators = new HashMap<>();
+
+			// requests of a user are evaluated together, so that the user/group match of each policy-item is done once for all of them
+			for (List<Integer> userRequestIndexes : groupRequestsByUser(requestArray)) {
+				Map<RangerPolicyItemEvaluator, Boolean> userGroupMatches = new HashMap<>();
 
-				ret.add(result);
+				for (Integer idx : userRequestIndexes) {
+					RangerAccessRequest request = requestArray[idx];
+					Map<String, Object> context = request != null ? request.getContext() : null;
+
+					if (context != null) {
+						RangerAccessRequestUtil.setUserGroupMatchesInContext(context, userGroupMatches);
+					}
+
+					try {
+						results[idx] = evaluatePoliciesNoAudit(request, policyType, prefixEvaluators);
+					} finally {
+						if (context != null) {
+							RangerAccessRequestUtil.setUserGroupMatchesInContext(context, null);
+						}
+					}
+				}
 			}
+
+			ret.addAll(Arrays.asList(results));
 		}
 
 		if (resultProcessor != null) {
 			resultProcessor.processResults(ret);
 		}
 
+		RangerPerfTracer.log(perf);
+
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("<== RangerPolicyEngineImpl.evaluatePolicies(" + requests + ", policyType=" + policyType + "): " + ret);
 		}
@@ -478,6 +571,10 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 			LOG.debug("==> RangerPolicyEngineImpl.preCleanup()");
 		}
 
+		if (PERF_POLICYENGINE_CACHE_LOG.isDebugEnabled()) {
+			PERF_POLICYENGINE_CACHE_LOG.debug("RangerPolicyEngine.preCleanup(serviceName=" + getServiceName() + ", policyVersion=" + getPolicyVersion() + "): accessAuditCache=" + policyRepository.getAccessAuditCacheStats() + ", sharedIpAddressSets=" + RangerIpMatcher.getSharedIpSetsCacheStats());
+		}
+
 		if (CollectionUtils.isNotEmpty(allContextEnrichers)) {
 			for (RangerContextEnricher contextEnricher : allContextEnrichers) {
 				boolean readyForCleanup = contextEnricher.preCleanup();
@@ -873,6 +970,14 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 	}
 
 	private RangerAccessResult evaluatePoliciesNoAudit(RangerAccessRequest request, int policyType) {
+		return evaluatePoliciesNoAudit(request, policyType, null);
+	}
+
+	/*
+	 * prefixEvaluators: when not null, evaluators found for resource prefixes are saved in (and reused from) this map;
+	 * used to share trie lookups across requests in a batch
+	 */
+	private RangerAccessResult evaluatePoliciesNoAudit(RangerAccessRequest request, int policyType, Map<String, List<RangerPolicyEvaluator>> prefixEvaluators) {
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("==> RangerPolicyEngineImpl.evaluatePoliciesNoAudit(" + request + ", policyType =" + policyType + ")");
 		}
@@ -904,7 +1009,7 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 
 				ret.setIsAccessDetermined(false); // discard result by tag-policies, to evaluate resource policies for possible override
 
-				List<RangerPolicyEvaluator> evaluators = policyRepository.getLikelyMatchPolicyEvaluators(request.getResource(), policyType);
+				List<RangerPolicyEvaluator> evaluators = policyRepository.getLikelyMatchPolicyEvaluators(request.getResource(), policyType, prefixEvaluators);
 
 				for (RangerPolicyEvaluator evaluator : evaluators) {
 					if (!evaluator.isApplicable(accessTime)) {
@@ -1026,6 +1131,27 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 		}
 	}
 
+	// returns indexes of requests, grouped by user and groups; groups are in the order of their first request
+	private static Collection<List<Integer>> groupRequestsByUser(RangerAccessRequest[] requests) {
+		Map<List<Object>, List<Integer>> ret = new LinkedHashMap<>();
+
+		for (int i = 0; i < requests.length; i++) {
+			RangerAccessRequest request = requests[i];
+			List<Object>        userKey = request == null ? Collections.<Object>emptyList() : Arrays.<Object>asList(request.getUser(), request.getUserGroups());
+			List<Integer>       indexes = ret.get(userKey);
+
+			if (indexes == null) {
+				indexes = new ArrayList<>();
+
+				ret.put(userKey, indexes);
+			}
+
+			indexes.add(i);
+		}
+
+		return ret.values();
+	}
+
 	private String getServiceName() {
 		return policyRepository.getServiceName();
 	}
@@ -1073,6 +1199,24 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 		return policyRepository != null && CollectionUtils.isNotEmpty(policyRepository.getPolicies());
 	}
 
+	private static List<RangerContextEnricher> getAllContextEnrichers(RangerPolicyRepository policyRepository, RangerPolicyRepository tagPolicyRepository) {
+		List<RangerContextEnricher> ret;
+
+		List<RangerContextEnricher> tagContextEnrichers = tagPolicyRepository == null ? null :tagPolicyRepository.getContextEnrichers();
+		List<RangerContextEnricher> resourceContextEnrichers = policyRepository.getContextEnrichers();
+
+		if (CollectionUtils.isEmpty(tagContextEnrichers)) {
+			ret = resourceContextEnrichers;
+		} else if (CollectionUtils.isEmpty(resourceContextEnrichers)) {
+			ret = tagContextEnrichers;
+		} else {
+			ret = new ArrayList<>(tagContextEnrichers);
+			ret.addAll(resourceContextEnrichers);
+		}
+
+		return ret;
+	}
+
 	private Map<Long, RangerPolicyEvaluator> createPolicyEvaluatorsMap() {
 		Map<Long, RangerPolicyEvaluator> tmpPolicyEvaluatorMap = new HashMap<>();
 
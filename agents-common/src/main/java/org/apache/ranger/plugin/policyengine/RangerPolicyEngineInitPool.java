@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.policyengine;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.authorization.hadoop.config.RangerConfiguration;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Fork-join pool shared by all policy-engines in the process, to build policy evaluators, context enrichers and
+ * resource tries in parallel. Parallelism is set with ranger.policyengine.init.parallelism, read when the pool is first
+ * used; a value of 1 or less builds policy-engines in the calling thread.
+ */
+final class RangerPolicyEngineInitPool {
+    private static final Log LOG = LogFactory.getLog(RangerPolicyEngineInitPool.class);
+
+    static final String CONFIG_PARALLELISM = "ranger.policyengine.init.parallelism";
+
+    private static volatile PoolHolder poolHolder;
+
+    private RangerPolicyEngineInitPool() { }
+
+    static int getParallelism() {
+        ForkJoinPool pool = getPool();
+
+        return pool == null ? 1 : pool.getParallelism();
+    }
+
+    /*
+     * Runs the task in the pool. Call join() on the returned task to get its result; an exception thrown by the task is
+     * rethrown by join(). Without a pool, the task is run before this method returns.
+     */
+    static <R> ForkJoinTask<R> submit(Callable<R> task) {
+        ForkJoinPool pool = getPool();
+
+        final ForkJoinTask<R> ret;
+
+        if (pool == null) {
+            ret = ForkJoinTask.adapt(task);
+
+            ret.invoke();
+        } else if (ForkJoinTask.getPool() == pool) { // called from a task in the pool; join() will help run the forked task
+            ret = ForkJoinTask.adapt(new ContextClassLoaderTask<>(task)).fork();
+        } else {
+            ret = pool.submit(new ContextClassLoaderTask<>(task));
+        }
+
+        return ret;
+    }
+
+    private static ForkJoinPool getPool() {
+        PoolHolder holder = poolHolder;
+
+        if (holder == null) {
+            synchronized (RangerPolicyEngineInitPool.class) {
+                holder = poolHolder;
+
+                if (holder == null) {
+                    int parallelism = RangerConfiguration.getInstance().getInt(CONFIG_PARALLELISM, Runtime.getRuntime().availableProcessors());
+
+                    holder     = new PoolHolder(parallelism > 1 ? new ForkJoinPool(parallelism, new InitThreadFactory(), null, false) : null);
+                    poolHolder = holder;
+
+                    LOG.info(CONFIG_PARALLELISM + " is set to [" + parallelism + "]");
+                }
+            }
+        }
+
+        return holder.pool;
+    }
+
+    // runs the task with the context class-loader of the submitting thread, as plugins load Ranger classes in their own class-loader
+    private static class ContextClassLoaderTask<R> implements Callable<R> {
+        private final Callable<R> task;
+        private final ClassLoader contextClassLoader;
+
+        ContextClassLoaderTask(Callable<R> task) {
+            this.task               = task;
+            this.contextClassLoader = Thread.currentThread().getContextClassLoader();
+        }
+
+        @Override
+        public R call() throws Exception {
+            Thread      thread              = Thread.currentThread();
+            ClassLoader previousClassLoader = thread.getContextClassLoader();
+
+            thread.setContextClassLoader(contextClassLoader);
+
+            try {
+                return task.call();
+            } finally {
+                thread.setContextClassLoader(previousClassLoader);
+            }
+        }
+    }
+
+    private static class PoolHolder {
+        final ForkJoinPool pool;
+
+        PoolHolder(ForkJoinPool pool) {
+            this.pool = pool;
+        }
+    }
+
+    private static class InitThreadFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        @Override
+        public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+            ForkJoinWorkerThread ret = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+
+            ret.setName("RangerPolicyEngineInit-" + threadCount.incrementAndGet());
+            ret.setDaemon(true);
+
+            return ret;
+        }
+    }
+}
@@ -29,6 +29,7 @@ import org.apache.ranger.plugin.contextenricher.RangerTagEnricher;
 import org.apache.ranger.plugin.contextenricher.RangerTagForEval;
 import org.apache.ranger.plugin.model.RangerPolicy;
 import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemDataMaskInfo;
+import org.apache.ranger.plugin.model.RangerPolicyDelta;
 import org.apache.ranger.plugin.model.RangerServiceDef;
 import org.apache.ranger.plugin.model.validation.RangerServiceDefHelper;
 import org.apache.ranger.plugin.policyevaluator.RangerCachedPolicyEvaluator;
@@ -36,6 +37,7 @@ import org.apache.ranger.plugin.policyevaluator.RangerOptimizedPolicyEvaluator;
 import org.apache.ranger.plugin.policyevaluator.RangerPolicyEvaluator;
 import org.apache.ranger.plugin.store.AbstractServiceStore;
 import org.apache.ranger.plugin.util.RangerPerfTracer;
+import org.apache.ranger.plugin.util.RangerPolicyDeltaUtil;
 import org.apache.ranger.plugin.util.RangerResourceTrie;
 import org.apache.ranger.plugin.util.ServiceDefUtil;
 import org.apache.ranger.plugin.util.ServicePolicies;
@@ -45,16 +47,25 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinTask;
 
 class RangerPolicyRepository {
     private static final Log LOG = LogFactory.getLog(RangerPolicyRepository.class);
 
     private static final Log PERF_CONTEXTENRICHER_INIT_LOG = RangerPerfTracer.getPerfLogger("contextenricher.init");
     private static final Log PERF_TRIE_OP_LOG = RangerPerfTracer.getPerfLogger("resourcetrie.retrieval");
+    private static final Log PERF_POLICYENGINE_INIT_LOG = RangerPerfTracer.getPerfLogger("policyengine.init");
+
+    private static final int MIN_POLICIES_PER_INIT_TASK = 64;
+    private static final int INIT_TASKS_PER_THREAD      = 4;
+    private static final int MIN_SIZE_FOR_SET_LOOKUP    = 16;
+    private static final char PREFIX_SEPARATOR          = '\u0001';
 
     enum AuditModeEnum {
         AUDIT_ALL, AUDIT_NONE, AUDIT_DEFAULT
@@ -86,7 +97,7 @@ class RangerPolicyRepository {
     private List<RangerPolicyEvaluator>       dataMaskPolicyEvaluators;
     private List<RangerPolicyEvaluator>       rowFilterPolicyEvaluators;
     private final AuditModeEnum               auditModeEnum;
-    private final Map<String, AuditInfo>      accessAuditCache;
+    private final RangerConcurrentCache<String, AuditInfo> accessAuditCache;
 
     private final String                      componentServiceName;
     private final RangerServiceDef            componentServiceDef;
@@ -119,17 +130,8 @@ class RangerPolicyRepository {
             auditModeEnum = AuditModeEnum.AUDIT_DEFAULT;
         }
 
-        if (auditModeEnum == AuditModeEnum.AUDIT_DEFAULT) {
-            String propertyName = "ranger.plugin." + serviceName + ".policyengine.auditcachesize";
-
-            if (options.cacheAuditResults) {
-                final int RANGER_POLICYENGINE_AUDITRESULT_CACHE_SIZE = 64 * 1024;
-
-                int auditResultCacheSize = RangerConfiguration.getInstance().getInt(propertyName, RANGER_POLICYENGINE_AUDITRESULT_CACHE_SIZE);
-                accessAuditCache = Collections.synchronizedMap(new CacheMap<String, AuditInfo>(auditResultCacheSize));
-            } else {
-                accessAuditCache = null;
-            }
+        if (auditModeEnum == AuditModeEnum.AUDIT_DEFAULT && options.cacheAuditResults) {
+            accessAuditCache = createAccessAuditCache();
         } else {
             this.accessAuditCache = null;
         }
@@ -146,9 +148,22 @@ class RangerPolicyRepository {
             dataMaskResourceTrie  = null;
             rowFilterResourceTrie = null;
         } else {
-            policyResourceTrie    = createResourceTrieMap(policyEvaluators, options.optimizeTrieForRetrieval);
-            dataMaskResourceTrie  = createResourceTrieMap(dataMaskPolicyEvaluators, options.optimizeTrieForRetrieval);
-            rowFilterResourceTrie = createResourceTrieMap(rowFilterPolicyEvaluators, options.optimizeTrieForRetrieval);
+            RangerPerfTracer perf = null;
+
+            if(RangerPerfTracer.isPerfTraceEnabled(PERF_POLICYENGINE_INIT_LOG)) {
+                perf = RangerPerfTracer.getPerfTracer(PERF_POLICYENGINE_INIT_LOG, "RangerPolicyRepository.buildResourceTries(serviceName=" + serviceName + ",parallelism=" + RangerPolicyEngineInitPool.getParallelism() + ")");
+            }
+
+            // submit all tries before waiting for any, so that tries of all policy-types are built in parallel
+            Map<String, ForkJoinTask<RangerResourceTrie>> policyTrieTasks    = submitBuildResourceTries(policyEvaluators, options.optimizeTrieForRetrieval);
+            Map<String, ForkJoinTask<RangerResourceTrie>> dataMaskTrieTasks  = submitBuildResourceTries(dataMaskPolicyEvaluators, options.optimizeTrieForRetrieval);
+            Map<String, ForkJoinTask<RangerResourceTrie>> rowFilterTrieTasks = submitBuildResourceTries(rowFilterPolicyEvaluators, options.optimizeTrieForRetrieval);
+
+            policyResourceTrie    = joinResourceTries(policyTrieTasks);
+            dataMaskResourceTrie  = joinResourceTries(dataMaskTrieTasks);
+            rowFilterResourceTrie = joinResourceTries(rowFilterTrieTasks);
+
+            RangerPerfTracer.log(perf);
         }
     }
 
@@ -191,9 +206,103 @@ class RangerPolicyRepository {
             dataMaskResourceTrie  = null;
             rowFilterResourceTrie = null;
         } else {
-            policyResourceTrie    = createResourceTrieMap(policyEvaluators, options.optimizeTrieForRetrieval);
-            dataMaskResourceTrie  = createResourceTrieMap(dataMaskPolicyEvaluators, options.optimizeTrieForRetrieval);
-            rowFilterResourceTrie = createResourceTrieMap(rowFilterPolicyEvaluators, options.optimizeTrieForRetrieval);
+            RangerPerfTracer perf = null;
+
+            if(RangerPerfTracer.isPerfTraceEnabled(PERF_POLICYENGINE_INIT_LOG)) {
+                perf = RangerPerfTracer.getPerfTracer(PERF_POLICYENGINE_INIT_LOG, "RangerPolicyRepository.buildResourceTries(serviceName=" + serviceName + ",parallelism=" + RangerPolicyEngineInitPool.getParallelism() + ")");
+            }
+
+            // submit all tries before waiting for any, so that tries of all policy-types are built in parallel
+            Map<String, ForkJoinTask<RangerResourceTrie>> policyTrieTasks    = submitBuildResourceTries(policyEvaluators, options.optimizeTrieForRetrieval);
+            Map<String, ForkJoinTask<RangerResourceTrie>> dataMaskTrieTasks  = submitBuildResourceTries(dataMaskPolicyEvaluators, options.optimizeTrieForRetrieval);
+            Map<String, ForkJoinTask<RangerResourceTrie>> rowFilterTrieTasks = submitBuildResourceTries(rowFilterPolicyEvaluators, options.optimizeTrieForRetrieval);
+
+            policyResourceTrie    = joinResourceTries(policyTrieTasks);
+            dataMaskResourceTrie  = joinResourceTries(dataMaskTrieTasks);
+            rowFilterResourceTrie = joinResourceTries(rowFilterTrieTasks);
+
+            RangerPerfTracer.log(perf);
+        }
+    }
+
+    /*
+     * Builds the repository for the given policies from an existing repository and the changes made since: evaluators
+     * of unchanged policies and resource-trie nodes not affected by the changes are shared with the given repository,
+     * which is not modified. Context enrichers and the audit-result cache are not shared, as the repositories have
+     * independent lifecycles.
+     */
+    RangerPolicyRepository(RangerPolicyRepository other, List<RangerPolicy> policies, List<RangerPolicyDelta> policyDeltas, long policyVersion, RangerPolicyEngineOptions options) {
+        super();
+
+        if(LOG.isDebugEnabled()) {
+            LOG.debug("==> RangerPolicyRepository(serviceName=" + other.serviceName + ", fromVersion=" + other.policyVersion + ", toVersion=" + policyVersion + ", deltaCount=" + (policyDeltas == null ? 0 : policyDeltas.size()) + ")");
+        }
+
+        this.serviceName          = other.serviceName;
+        this.componentServiceName = other.componentServiceName;
+        this.serviceDef           = other.serviceDef;
+        this.componentServiceDef  = other.componentServiceDef;
+        this.appId                = other.appId;
+        this.policies             = Collections.unmodifiableList(policies);
+        this.policyVersion        = policyVersion;
+        this.auditModeEnum        = other.auditModeEnum;
+        this.accessAuditCache     = other.accessAuditCache != null ? createAccessAuditCache() : null;
+
+        options.setServiceDefHelper(new RangerServiceDefHelper(serviceDef, false));
+
+        Map<Long, RangerPolicyDelta> deltasById = new HashMap<>();
+
+        for (RangerPolicyDelta delta : RangerPolicyDeltaUtil.compact(policyDeltas)) {
+            deltasById.put(delta.getPolicyId(), delta);
+        }
+
+        List<RangerPolicyEvaluator> newPolicyEvaluators          = new ArrayList<>();
+        List<RangerPolicyEvaluator> newDataMaskPolicyEvaluators  = new ArrayList<>();
+        List<RangerPolicyEvaluator> newRowFilterPolicyEvaluators = new ArrayList<>();
+
+        List<RangerPolicy> policiesToBuild = new ArrayList<>();
+
+        for (RangerPolicyDelta delta : deltasById.values()) {
+            RangerPolicy policy = delta.getPolicy();
+
+            if (policy == null || delta.getChangeType() == null || delta.getChangeType() == RangerPolicyDelta.CHANGE_TYPE_POLICY_DELETE) {
+                continue;
+            }
+
+            if (skipBuildingPolicyEvaluator(policy, options)) {
+                continue;
+            }
+
+            policiesToBuild.add(policy);
+        }
+
+        for (RangerPolicyEvaluator evaluator : buildPolicyEvaluators(policiesToBuild, options)) {
+            addToListByPolicyType(evaluator, newPolicyEvaluators, newDataMaskPolicyEvaluators, newRowFilterPolicyEvaluators);
+        }
+
+        List<RangerPolicyEvaluator> removedPolicyEvaluators          = new ArrayList<>();
+        List<RangerPolicyEvaluator> removedDataMaskPolicyEvaluators  = new ArrayList<>();
+        List<RangerPolicyEvaluator> removedRowFilterPolicyEvaluators = new ArrayList<>();
+
+        this.policyEvaluators          = applyChanges(other.policyEvaluators, deltasById, newPolicyEvaluators, removedPolicyEvaluators);
+        this.dataMaskPolicyEvaluators  = applyChanges(other.dataMaskPolicyEvaluators, deltasById, newDataMaskPolicyEvaluators, removedDataMaskPolicyEvaluators);
+        this.rowFilterPolicyEvaluators = applyChanges(other.rowFilterPolicyEvaluators, deltasById, newRowFilterPolicyEvaluators, removedRowFilterPolicyEvaluators);
+
+        this.contextEnrichers = submitBuildContextEnrichers(options, CollectionUtils.isNotEmpty(policyEvaluators) || CollectionUtils.isNotEmpty(dataMaskPolicyEvaluators) || CollectionUtils.isNotEmpty(rowFilterPolicyEvaluators)).join();
+
+        if (options.disableTrieLookupPrefilter) {
+            policyResourceTrie    = null;
+            dataMaskResourceTrie  = null;
+            rowFilterResourceTrie = null;
+        } else {
+            policyResourceTrie    = copyResourceTrieMap(other.policyResourceTrie, policyEvaluators, removedPolicyEvaluators, newPolicyEvaluators, options.optimizeTrieForRetrieval);
+            dataMaskResourceTrie  = copyResourceTrieMap(other.dataMaskResourceTrie, dataMaskPolicyEvaluators, removedDataMaskPolicyEvaluators, newDataMaskPolicyEvaluators, options.optimizeTrieForRetrieval);
+            rowFilterResourceTrie = copyResourceTrieMap(other.rowFilterResourceTrie, rowFilterPolicyEvaluators, removedRowFilterPolicyEvaluators, newRowFilterPolicyEvaluators, options.optimizeTrieForRetrieval);
+        }
+
+        if(LOG.isDebugEnabled()) {
+            LOG.debug("<== RangerPolicyRepository(serviceName=" + serviceName + ", fromVersion=" + other.policyVersion + ", toVersion=" + policyVersion + "): builtEvaluatorCount=" + (newPolicyEvaluators.size() + newDataMaskPolicyEvaluators.size() + newRowFilterPolicyEvaluators.size())
+                    + ", removedEvaluatorCount=" + (removedPolicyEvaluators.size() + removedDataMaskPolicyEvaluators.size() + removedRowFilterPolicyEvaluators.size()));
         }
     }
 
@@ -230,6 +339,8 @@ class RangerPolicyRepository {
 
     String getServiceName() { return serviceName; }
 
+    String getAppId() { return appId; }
+
     RangerServiceDef getServiceDef() {
         return serviceDef;
     }
@@ -362,6 +473,41 @@ class RangerPolicyRepository {
         }
     }
 
+    /*
+     * Same as getLikelyMatchPolicyEvaluators(resource, policyType), for use while evaluating a batch of requests: trie
+     * lookups are done for resource prefixes in the order of resource levels (like database, database/table), and the
+     * evaluators found for each prefix are saved in prefixEvaluators, to be reused for other requests of the batch
+     * having the same prefix - like requests for different columns of a table.
+     */
+    List<RangerPolicyEvaluator> getLikelyMatchPolicyEvaluators(RangerAccessResource resource, int policyType, Map<String, List<RangerPolicyEvaluator>> prefixEvaluators) {
+        final Map<String, RangerResourceTrie> resourceTrie;
+
+        switch(policyType) {
+            case RangerPolicy.POLICY_TYPE_ACCESS:
+                resourceTrie = policyResourceTrie;
+                break;
+            case RangerPolicy.POLICY_TYPE_DATAMASK:
+                resourceTrie = dataMaskResourceTrie;
+                break;
+            case RangerPolicy.POLICY_TYPE_ROWFILTER:
+                resourceTrie = rowFilterResourceTrie;
+                break;
+            default:
+                resourceTrie = null;
+                break;
+        }
+
+        final List<RangerPolicyEvaluator> ret;
+
+        if (resourceTrie == null || prefixEvaluators == null || resource == null || StringUtils.isEmpty(resource.getAsString())) {
+            ret = getLikelyMatchPolicyEvaluators(resource, policyType);
+        } else {
+            ret = getLikelyMatchPolicyEvaluators(resourceTrie, resource, policyType, prefixEvaluators);
+        }
+
+        return ret;
+    }
+
     private List<RangerPolicyEvaluator> getLikelyMatchAccessPolicyEvaluators(RangerAccessResource resource) {
        String resourceStr = resource == null ? null : resource.getAsString();
 
@@ -455,6 +601,76 @@ class RangerPolicyRepository {
         return ret;
     }
 
+    private List<RangerPolicyEvaluator> getLikelyMatchPolicyEvaluators(Map<String, RangerResourceTrie> resourceTrie, RangerAccessResource resource, int policyType, Map<String, List<RangerPolicyEvaluator>> prefixEvaluators) {
+        List<RangerPolicyEvaluator> ret          = null;
+        Set<String>                 resourceKeys = resource.getKeys();
+
+        RangerPerfTracer perf = null;
+
+        if(RangerPerfTracer.isPerfTraceEnabled(PERF_TRIE_OP_LOG)) {
+            perf = RangerPerfTracer.getPerfTracer(PERF_TRIE_OP_LOG, "RangerPolicyRepository.getLikelyMatchEvaluators(resource=" + resource.getAsString() + ",batch=true)");
+        }
+
+        if (CollectionUtils.isNotEmpty(resourceKeys)) {
+            StringBuilder prefix = new StringBuilder().append(policyType);
+
+            for (RangerServiceDef.RangerResourceDef resourceDef : serviceDef.getResources()) {
+                String             resourceName = resourceDef.getName();
+                RangerResourceTrie trie         = resourceKeys.contains(resourceName) ? resourceTrie.get(resourceName) : null;
+
+                if (trie == null) { // if no trie exists for this resource level, ignore and continue to next level
+                    continue;
+                }
+
+                Object resourceValue = resource.getValue(resourceName);
+
+                prefix.append(PREFIX_SEPARATOR).append(resourceName).append('=').append(resourceValue);
+
+                String                      prefixKey          = prefix.toString();
+                List<RangerPolicyEvaluator> evaluatorsOfPrefix = prefixEvaluators.get(prefixKey);
+
+                if (evaluatorsOfPrefix == null) {
+                    List<RangerPolicyEvaluator> resourceEvaluators = trie.getEvaluatorsForResource(resourceValue);
+
+                    evaluatorsOfPrefix = ret == null ? resourceEvaluators : intersect(ret, resourceEvaluators);
+
+                    if (evaluatorsOfPrefix == null) {
+                        evaluatorsOfPrefix = Collections.emptyList();
+                    }
+
+                    prefixEvaluators.put(prefixKey, evaluatorsOfPrefix);
+                }
+
+                ret = evaluatorsOfPrefix;
+
+                if (ret.isEmpty()) { // no policies for this resource, bail out
+                    break;
+                }
+            }
+        }
+
+        if(ret == null) {
+            ret = Collections.emptyList();
+        }
+
+        RangerPerfTracer.logAlways(perf);
+
+        return ret;
+    }
+
+    // returns evaluators present in both lists, in the order of the first list
+    private static List<RangerPolicyEvaluator> intersect(List<RangerPolicyEvaluator> list1, List<RangerPolicyEvaluator> list2) {
+        List<RangerPolicyEvaluator> ret = new ArrayList<>(list1);
+
+        if (CollectionUtils.isEmpty(list2)) {
+            ret.clear();
+        } else {
+            ret.retainAll(list2.size() > MIN_SIZE_FOR_SET_LOOKUP ? new HashSet<>(list2) : list2);
+        }
+
+        return ret;
+    }
+
     private RangerServiceDef normalizeAccessTypeDefs(RangerServiceDef serviceDef, final String componentType) {
 
         if (serviceDef != null && StringUtils.isNotBlank(componentType)) {
@@ -657,28 +873,27 @@ class RangerPolicyRepository {
         RangerServiceDefHelper serviceDefHelper = new RangerServiceDefHelper(serviceDef, false);
         options.setServiceDefHelper(serviceDefHelper);
 
-        List<RangerPolicyEvaluator> policyEvaluators = new ArrayList<>();
+        List<RangerPolicy>          policiesToBuild           = new ArrayList<>();
+        List<RangerPolicyEvaluator> policyEvaluators          = new ArrayList<>();
         List<RangerPolicyEvaluator> dataMaskPolicyEvaluators  = new ArrayList<>();
         List<RangerPolicyEvaluator> rowFilterPolicyEvaluators = new ArrayList<>();
+        boolean                     hasPolicyEvaluators       = false;
 
         for (RangerPolicy policy : policies) {
             if (skipBuildingPolicyEvaluator(policy, options)) {
                 continue;
             }
 
-            RangerPolicyEvaluator evaluator = buildPolicyEvaluator(policy, serviceDef, options);
+            policiesToBuild.add(policy);
 
-            if (evaluator != null) {
-                if(policy.getPolicyType() == null || policy.getPolicyType() == RangerPolicy.POLICY_TYPE_ACCESS) {
-                    policyEvaluators.add(evaluator);
-                } else if(policy.getPolicyType() == RangerPolicy.POLICY_TYPE_DATAMASK) {
-                    dataMaskPolicyEvaluators.add(evaluator);
-                } else if(policy.getPolicyType() == RangerPolicy.POLICY_TYPE_ROWFILTER) {
-                    rowFilterPolicyEvaluators.add(evaluator);
-                } else {
-                    LOG.warn("RangerPolicyEngine: ignoring policy id=" + policy.getId() + " - invalid policyType '" + policy.getPolicyType() + "'");
-                }
-            }
+            hasPolicyEvaluators = hasPolicyEvaluators || isValidPolicyType(policy);
+        }
+
+        // context enrichers don't depend on the evaluators, other than on whether there are any; hence are initialized in parallel
+        ForkJoinTask<List<RangerContextEnricher>> contextEnrichersTask = submitBuildContextEnrichers(options, hasPolicyEvaluators);
+
+        for (RangerPolicyEvaluator evaluator : buildPolicyEvaluators(policiesToBuild, options)) {
+            addToListByPolicyType(evaluator, policyEvaluators, dataMaskPolicyEvaluators, rowFilterPolicyEvaluators);
         }
         if (LOG.isInfoEnabled()) {
             LOG.info("This policy engine contains " + (policyEvaluators.size()+dataMaskPolicyEvaluators.size()+rowFilterPolicyEvaluators.size()) + " policy evaluators");
@@ -693,32 +908,7 @@ class RangerPolicyRepository {
         Collections.sort(rowFilterPolicyEvaluators, comparator);
         this.rowFilterPolicyEvaluators = Collections.unmodifiableList(rowFilterPolicyEvaluators);
 
-        List<RangerContextEnricher> contextEnrichers = new ArrayList<RangerContextEnricher>();
-        if (CollectionUtils.isNotEmpty(this.policyEvaluators) || CollectionUtils.isNotEmpty(this.dataMaskPolicyEvaluators)
-                || CollectionUtils.isNotEmpty(this.rowFilterPolicyEvaluators)) {
-            if (CollectionUtils.isNotEmpty(serviceDef.getContextEnrichers())) {
-                for (RangerServiceDef.RangerContextEnricherDef enricherDef : serviceDef.getContextEnrichers()) {
-                    if (enricherDef == null) {
-                        continue;
-                    }
-                    if (!options.disableContextEnrichers || options.enableTagEnricherWithLocalRefresher && StringUtils.equals(enricherDef.getEnricher(), RangerTagEnricher.class.getName())) {
-                        // This will be true only if the engine is initialized within ranger-admin
-                        RangerServiceDef.RangerContextEnricherDef contextEnricherDef = enricherDef;
-
-                        if (options.enableTagEnricherWithLocalRefresher && StringUtils.equals(enricherDef.getEnricher(), RangerTagEnricher.class.getName())) {
-                            contextEnricherDef = new RangerServiceDef.RangerContextEnricherDef(enricherDef.getItemId(), enricherDef.getName(), "org.apache.ranger.common.RangerAdminTagEnricher", null);
-                        }
-
-                        RangerContextEnricher contextEnricher = buildContextEnricher(contextEnricherDef);
-
-                        if (contextEnricher != null) {
-                            contextEnrichers.add(contextEnricher);
-                        }
-                    }
-                }
-            }
-        }
-        this.contextEnrichers = Collections.unmodifiableList(contextEnrichers);
+        this.contextEnrichers = contextEnrichersTask.join();
 
         if(LOG.isDebugEnabled()) {
             LOG.debug("policy evaluation order: " + this.policyEvaluators.size() + " policies");
@@ -748,6 +938,128 @@ class RangerPolicyRepository {
         }
     }
 
+    private static void addToListByPolicyType(RangerPolicyEvaluator evaluator, List<RangerPolicyEvaluator> policyEvaluators, List<RangerPolicyEvaluator> dataMaskPolicyEvaluators, List<RangerPolicyEvaluator> rowFilterPolicyEvaluators) {
+        if (evaluator != null) {
+            RangerPolicy policy = evaluator.getPolicy();
+
+            if(policy.getPolicyType() == null || policy.getPolicyType() == RangerPolicy.POLICY_TYPE_ACCESS) {
+                policyEvaluators.add(evaluator);
+            } else if(policy.getPolicyType() == RangerPolicy.POLICY_TYPE_DATAMASK) {
+                dataMaskPolicyEvaluators.add(evaluator);
+            } else if(policy.getPolicyType() == RangerPolicy.POLICY_TYPE_ROWFILTER) {
+                rowFilterPolicyEvaluators.add(evaluator);
+            } else {
+                LOG.warn("RangerPolicyEngine: ignoring policy id=" + policy.getId() + " - invalid policyType '" + policy.getPolicyType() + "'");
+            }
+        }
+    }
+
+    private static boolean isValidPolicyType(RangerPolicy policy) {
+        Integer policyType = policy.getPolicyType();
+
+        return policyType == null || policyType == RangerPolicy.POLICY_TYPE_ACCESS || policyType == RangerPolicy.POLICY_TYPE_DATAMASK || policyType == RangerPolicy.POLICY_TYPE_ROWFILTER;
+    }
+
+    private List<RangerPolicyEvaluator> buildPolicyEvaluators(List<RangerPolicy> policies, final RangerPolicyEngineOptions options) {
+        final List<RangerPolicyEvaluator> ret;
+
+        RangerPerfTracer perf = null;
+
+        int parallelism = RangerPolicyEngineInitPool.getParallelism();
+
+        if(RangerPerfTracer.isPerfTraceEnabled(PERF_POLICYENGINE_INIT_LOG)) {
+            perf = RangerPerfTracer.getPerfTracer(PERF_POLICYENGINE_INIT_LOG, "RangerPolicyRepository.buildPolicyEvaluators(serviceName=" + serviceName + ",policyCount=" + policies.size() + ",parallelism=" + parallelism + ")");
+        }
+
+        if (parallelism <= 1 || policies.size() < 2 * MIN_POLICIES_PER_INIT_TASK) {
+            ret = new ArrayList<>(policies.size());
+
+            for (RangerPolicy policy : policies) {
+                ret.add(buildPolicyEvaluator(policy, serviceDef, options));
+            }
+        } else {
+            // few chunks per thread, so that threads that get cheaper policies pick up more chunks
+            int                                             chunkSize = Math.max(MIN_POLICIES_PER_INIT_TASK, (policies.size() + INIT_TASKS_PER_THREAD * parallelism - 1) / (INIT_TASKS_PER_THREAD * parallelism));
+            List<ForkJoinTask<List<RangerPolicyEvaluator>>> tasks     = new ArrayList<>();
+
+            for (int fromIdx = 0; fromIdx < policies.size(); fromIdx += chunkSize) {
+                final List<RangerPolicy> chunk = policies.subList(fromIdx, Math.min(policies.size(), fromIdx + chunkSize));
+
+                tasks.add(RangerPolicyEngineInitPool.submit(new Callable<List<RangerPolicyEvaluator>>() {
+                    @Override
+                    public List<RangerPolicyEvaluator> call() {
+                        List<RangerPolicyEvaluator> ret = new ArrayList<>(chunk.size());
+
+                        for (RangerPolicy policy : chunk) {
+                            ret.add(buildPolicyEvaluator(policy, serviceDef, options));
+                        }
+
+                        return ret;
+                    }
+                }));
+            }
+
+            ret = new ArrayList<>(policies.size());
+
+            for (ForkJoinTask<List<RangerPolicyEvaluator>> task : tasks) {
+                ret.addAll(task.join());
+            }
+        }
+
+        RangerPerfTracer.log(perf);
+
+        return ret;
+    }
+
+    private ForkJoinTask<List<RangerContextEnricher>> submitBuildContextEnrichers(final RangerPolicyEngineOptions options, final boolean hasPolicyEvaluators) {
+        return RangerPolicyEngineInitPool.submit(new Callable<List<RangerContextEnricher>>() {
+            @Override
+            public List<RangerContextEnricher> call() {
+                RangerPerfTracer perf = null;
+
+                if(RangerPerfTracer.isPerfTraceEnabled(PERF_POLICYENGINE_INIT_LOG)) {
+                    perf = RangerPerfTracer.getPerfTracer(PERF_POLICYENGINE_INIT_LOG, "RangerPolicyRepository.buildContextEnrichers(serviceName=" + serviceName + ")");
+                }
+
+                List<RangerContextEnricher> ret = buildContextEnrichers(options, hasPolicyEvaluators);
+
+                RangerPerfTracer.log(perf);
+
+                return ret;
+            }
+        });
+    }
+
+    private List<RangerContextEnricher> buildContextEnrichers(RangerPolicyEngineOptions options, boolean hasPolicyEvaluators) {
+        List<RangerContextEnricher> contextEnrichers = new ArrayList<RangerContextEnricher>();
+
+        if (hasPolicyEvaluators) {
+            if (CollectionUtils.isNotEmpty(serviceDef.getContextEnrichers())) {
+                for (RangerServiceDef.RangerContextEnricherDef enricherDef : serviceDef.getContextEnrichers()) {
+                    if (enricherDef == null) {
+                        continue;
+                    }
+                    if (!options.disableContextEnrichers || options.enableTagEnricherWithLocalRefresher && StringUtils.equals(enricherDef.getEnricher(), RangerTagEnricher.class.getName())) {
+                        // This will be true only if the engine is initialized within ranger-admin
+                        RangerServiceDef.RangerContextEnricherDef contextEnricherDef = enricherDef;
+
+                        if (options.enableTagEnricherWithLocalRefresher && StringUtils.equals(enricherDef.getEnricher(), RangerTagEnricher.class.getName())) {
+                            contextEnricherDef = new RangerServiceDef.RangerContextEnricherDef(enricherDef.getItemId(), enricherDef.getName(), "org.apache.ranger.common.RangerAdminTagEnricher", null);
+                        }
+
+                        RangerContextEnricher contextEnricher = buildContextEnricher(contextEnricherDef);
+
+                        if (contextEnricher != null) {
+                            contextEnrichers.add(contextEnricher);
+                        }
+                    }
+                }
+            }
+        }
+
+        return Collections.unmodifiableList(contextEnrichers);
+    }
+
     private RangerContextEnricher buildContextEnricher(RangerServiceDef.RangerContextEnricherDef enricherDef) {
         if(LOG.isDebugEnabled()) {
             LOG.debug("==> RangerPolicyRepository.buildContextEnricher(" + enricherDef + ")");
@@ -888,14 +1200,139 @@ class RangerPolicyRepository {
         return ret;
     }
 
-    private Map<String, RangerResourceTrie> createResourceTrieMap(List<RangerPolicyEvaluator> evaluators, boolean optimizeTrieForRetrieval) {
+    /*
+     * Returns true if evaluation of policies of the given type can depend on anything other than the user, groups,
+     * resource and access-type of the request: i.e. if any of these policies has item conditions or validity schedules.
+     */
+    boolean hasContextDependentPolicies(int policyType) {
+        for (RangerPolicy policy : policies) {
+            int type = policy.getPolicyType() == null ? RangerPolicy.POLICY_TYPE_ACCESS : policy.getPolicyType();
+
+            if (type != policyType) {
+                continue;
+            }
+
+            if (CollectionUtils.isNotEmpty(policy.getValiditySchedules())
+                    || hasConditions(policy.getPolicyItems())
+                    || hasConditions(policy.getDenyPolicyItems())
+                    || hasConditions(policy.getAllowExceptions())
+                    || hasConditions(policy.getDenyExceptions())
+                    || hasConditions(policy.getDataMaskPolicyItems())
+                    || hasConditions(policy.getRowFilterPolicyItems())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean hasConditions(List<? extends RangerPolicy.RangerPolicyItem> policyItems) {
+        if (policyItems != null) {
+            for (RangerPolicy.RangerPolicyItem policyItem : policyItems) {
+                if (policyItem != null && CollectionUtils.isNotEmpty(policyItem.getConditions())) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    String getAccessAuditCacheStats() {
+        return accessAuditCache != null ? accessAuditCache.toString() : null;
+    }
+
+    private RangerConcurrentCache<String, AuditInfo> createAccessAuditCache() {
+        final int RANGER_POLICYENGINE_AUDITRESULT_CACHE_SIZE = 64 * 1024;
+
+        String propertyName         = "ranger.plugin." + serviceName + ".policyengine.auditcachesize";
+        int    auditResultCacheSize = RangerConfiguration.getInstance().getInt(propertyName, RANGER_POLICYENGINE_AUDITRESULT_CACHE_SIZE);
+
+        return new RangerConcurrentCache<>(auditResultCacheSize);
+    }
+
+    private static List<RangerPolicyEvaluator> applyChanges(List<RangerPolicyEvaluator> otherEvaluators, Map<Long, RangerPolicyDelta> deltasById, List<RangerPolicyEvaluator> newEvaluators, List<RangerPolicyEvaluator> removedEvaluators) {
+        List<RangerPolicyEvaluator> ret = new ArrayList<>(otherEvaluators.size() + newEvaluators.size());
+
+        for (RangerPolicyEvaluator evaluator : otherEvaluators) {
+            if (deltasById.containsKey(evaluator.getPolicy().getId())) {
+                removedEvaluators.add(evaluator);
+            } else {
+                ret.add(evaluator);
+            }
+        }
+
+        // usage-counts might have changed since the list was sorted; however priority and deny, which determine the
+        // evaluation semantics, don't change - so binary-search will find a position consistent with them
+        for (RangerPolicyEvaluator evaluator : newEvaluators) {
+            int index = Collections.binarySearch(ret, evaluator, RangerPolicyEvaluator.EVAL_ORDER_COMPARATOR);
+
+            ret.add(index < 0 ? -(index + 1) : index, evaluator);
+        }
+
+        return Collections.unmodifiableList(ret);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, RangerResourceTrie> copyResourceTrieMap(Map<String, RangerResourceTrie> otherTrieMap, List<RangerPolicyEvaluator> evaluators, final List<RangerPolicyEvaluator> removedEvaluators, final List<RangerPolicyEvaluator> addedEvaluators, boolean optimizeTrieForRetrieval) {
         final Map<String, RangerResourceTrie> ret;
 
+        if (otherTrieMap == null || CollectionUtils.isEmpty(evaluators)) {
+            ret = createResourceTrieMap(evaluators, optimizeTrieForRetrieval);
+        } else if (removedEvaluators.isEmpty() && addedEvaluators.isEmpty()) {
+            ret = otherTrieMap;
+        } else {
+            Map<String, ForkJoinTask<RangerResourceTrie>> tasks = new HashMap<>();
+
+            for (final Map.Entry<String, RangerResourceTrie> entry : otherTrieMap.entrySet()) {
+                tasks.put(entry.getKey(), RangerPolicyEngineInitPool.submit(new Callable<RangerResourceTrie>() {
+                    @Override
+                    public RangerResourceTrie call() {
+                        return entry.getValue().copyWithChanges(removedEvaluators, addedEvaluators);
+                    }
+                }));
+            }
+
+            ret = joinResourceTries(tasks);
+        }
+
+        return ret;
+    }
+
+    private Map<String, RangerResourceTrie> createResourceTrieMap(List<RangerPolicyEvaluator> evaluators, boolean optimizeTrieForRetrieval) {
+        return joinResourceTries(submitBuildResourceTries(evaluators, optimizeTrieForRetrieval));
+    }
+
+    // each trie is built by a task of its own; returns null if no trie is needed for the given evaluators
+    private Map<String, ForkJoinTask<RangerResourceTrie>> submitBuildResourceTries(final List<RangerPolicyEvaluator> evaluators, final boolean optimizeTrieForRetrieval) {
+        final Map<String, ForkJoinTask<RangerResourceTrie>> ret;
+
         if (CollectionUtils.isNotEmpty(evaluators) && serviceDef != null && CollectionUtils.isNotEmpty(serviceDef.getResources())) {
             ret = new HashMap<>();
 
-            for (RangerServiceDef.RangerResourceDef resourceDef : serviceDef.getResources()) {
-                ret.put(resourceDef.getName(), new RangerResourceTrie(resourceDef, evaluators, RangerPolicyEvaluator.EVAL_ORDER_COMPARATOR, optimizeTrieForRetrieval));
+            for (final RangerServiceDef.RangerResourceDef resourceDef : serviceDef.getResources()) {
+                ret.put(resourceDef.getName(), RangerPolicyEngineInitPool.submit(new Callable<RangerResourceTrie>() {
+                    @Override
+                    public RangerResourceTrie call() {
+                        return new RangerResourceTrie(resourceDef, evaluators, RangerPolicyEvaluator.EVAL_ORDER_COMPARATOR, optimizeTrieForRetrieval);
+                    }
+                }));
+            }
+        } else {
+            ret = null;
+        }
+
+        return ret;
+    }
+
+    private static Map<String, RangerResourceTrie> joinResourceTries(Map<String, ForkJoinTask<RangerResourceTrie>> tasks) {
+        final Map<String, RangerResourceTrie> ret;
+
+        if (tasks != null) {
+            ret = new HashMap<>();
+
+            for (Map.Entry<String, ForkJoinTask<RangerResourceTrie>> entry : tasks.entrySet()) {
+                ret.put(entry.getKey(), entry.getValue().join());
             }
         } else {
             ret = null;
@@ -0,0 +1,253 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.policyengine;
+
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItem;
+import org.apache.ranger.plugin.policyevaluator.RangerDefaultPolicyEvaluator;
+import org.apache.ranger.plugin.policyevaluator.RangerPolicyEvaluator;
+import org.apache.ranger.plugin.policyresourcematcher.RangerPolicyResourceMatcher;
+import org.apache.ranger.plugin.util.RangerAccessRequestUtil;
+import org.apache.ranger.plugin.util.RangerPerfTracer;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/*
+ * Access of one user, with a given set of groups, to resources protected by one policy-engine instance: used to find
+ * in one call which of a large number of resources - like the tables listed by SHOW TABLES - the user can access.
+ *
+ * The view is built from the access policies having items for the user, the user's groups, public group, {USER} or
+ * {OWNER}; other policies can't change the access decision for this user. The decision for a resource then depends
+ * only on the access-type, on whether the user owns the resource, and on which of these policies match the resource and
+ * how (self, ancestor, descendant). Resources are looked up in the resource-tries of the policy-engine, and decisions
+ * are remembered by this combination, so that the policy-engine is asked once for all tables matched by the same
+ * policies - for example, once for all tables of a database covered by a database/table=* policy. Decisions are exact:
+ * they are the same as those of policyEngine.evaluatePolicies() for each request.
+ *
+ * A view must be created only for engines whose decisions don't depend on request context - see
+ * RangerPolicyEngineImpl.isAccessDecisionCacheable(). A policy-engine is replaced whenever policy version changes; a
+ * view is for a single policy-engine instance, hence never outlives the policies it was built from.
+ */
+public class RangerUserAccessView {
+    private static final Log LOG = LogFactory.getLog(RangerUserAccessView.class);
+
+    private static final Log PERF_POLICYENGINE_REQUEST_LOG = RangerPerfTracer.getPerfLogger("policyengine.request");
+
+    private static final int  MAX_DECISIONS = 10000;
+    private static final char KEY_SEP       = '\u0000';
+
+    private final RangerPolicyEngineImpl                policyEngine;
+    private final String                                user;
+    private final Set<String>                           userGroups;
+    private final Map<RangerPolicyEvaluator, Boolean>   userEvaluators = new IdentityHashMap<>();
+    private final RangerConcurrentCache<String, Boolean> decisions      = new RangerConcurrentCache<>(MAX_DECISIONS);
+
+    public RangerUserAccessView(RangerPolicyEngineImpl policyEngine, String user, Set<String> userGroups) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("==> RangerUserAccessView(policyVersion=" + policyEngine.getPolicyVersion() + ", user=" + user + ", userGroups=" + userGroups + ")");
+        }
+
+        this.policyEngine = policyEngine;
+        this.user         = user;
+        this.userGroups   = userGroups == null ? Collections.<String>emptySet() : Collections.unmodifiableSet(new TreeSet<>(userGroups));
+
+        for (RangerPolicyEvaluator evaluator : policyEngine.getPolicyRepository().getPolicyEvaluators()) {
+            if (hasItemForUser(evaluator.getPolicy())) {
+                userEvaluators.put(evaluator, Boolean.TRUE);
+            }
+        }
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("<== RangerUserAccessView(policyVersion=" + policyEngine.getPolicyVersion() + ", user=" + user + ", userGroups=" + userGroups + "): policyCount=" + userEvaluators.size());
+        }
+    }
+
+    public RangerPolicyEngine getPolicyEngine() {
+        return policyEngine;
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public Set<String> getUserGroups() {
+        return userGroups;
+    }
+
+    public boolean isFor(RangerPolicyEngine policyEngine, String user, Set<String> userGroups) {
+        return this.policyEngine == policyEngine && StringUtils.equals(this.user, user) && this.userGroups.equals(userGroups == null ? Collections.<String>emptySet() : userGroups);
+    }
+
+    /*
+     * Returns the indexes of the requests that are allowed: bit i is set when
+     * policyEngine.evaluatePolicies(requests.get(i), RangerPolicy.POLICY_TYPE_ACCESS, null).getIsAllowed() would be true.
+     * Requests for a user or groups other than those of this view are evaluated by the policy-engine. Results are not
+     * audited.
+     */
+    public BitSet isAccessAllowed(List<? extends RangerAccessRequest> requests) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("==> RangerUserAccessView.isAccessAllowed(requestCount=" + (requests == null ? 0 : requests.size()) + ")");
+        }
+
+        RangerPerfTracer perf = null;
+
+        if (RangerPerfTracer.isPerfTraceEnabled(PERF_POLICYENGINE_REQUEST_LOG)) {
+            perf = RangerPerfTracer.getPerfTracer(PERF_POLICYENGINE_REQUEST_LOG, "RangerUserAccessView.isAccessAllowed(user=" + user + ",requestCount=" + (requests == null ? 0 : requests.size()) + ")");
+        }
+
+        BitSet ret = new BitSet();
+
+        if (CollectionUtils.isNotEmpty(requests)) {
+            Map<String, List<RangerPolicyEvaluator>> prefixEvaluators = new HashMap<>();
+            int                                      evaluatedCount   = 0;
+
+            for (int i = 0; i < requests.size(); i++) {
+                RangerAccessRequest request = requests.get(i);
+
+                if (request == null) {
+                    continue;
+                }
+
+                String  key       = getKey(request, prefixEvaluators);
+                Boolean isAllowed = key != null ? decisions.get(key) : null;
+
+                if (isAllowed == null) {
+                    isAllowed = evaluate(request);
+
+                    evaluatedCount++;
+
+                    if (key != null) {
+                        decisions.put(key, isAllowed);
+                    }
+                }
+
+                if (isAllowed) {
+                    ret.set(i);
+                }
+            }
+
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("RangerUserAccessView.isAccessAllowed(): user=" + user + ", requestCount=" + requests.size() + ", evaluatedByPolicyEngine=" + evaluatedCount + ", allowedCount=" + ret.cardinality());
+            }
+        }
+
+        RangerPerfTracer.log(perf);
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("<== RangerUserAccessView.isAccessAllowed(requestCount=" + (requests == null ? 0 : requests.size()) + "): " + ret.cardinality());
+        }
+
+        return ret;
+    }
+
+    private boolean evaluate(RangerAccessRequest request) {
+        policyEngine.preProcess(request);
+
+        RangerAccessResult result = policyEngine.evaluatePolicies(request, RangerPolicy.POLICY_TYPE_ACCESS, null);
+
+        return result != null && result.getIsAllowed();
+    }
+
+    /*
+     * Key of the decision for the request: access-type, resource ownership, and id and match-type of each policy of the
+     * user matching the resource. Returns null when the decision must be made by the policy-engine.
+     */
+    private String getKey(RangerAccessRequest request, Map<String, List<RangerPolicyEvaluator>> prefixEvaluators) {
+        if (!isFor(policyEngine, request.getUser(), request.getUserGroups()) || request.getResource() == null) {
+            return null;
+        }
+
+        RangerAccessResource resource = request.getResource();
+
+        if (resource.getServiceDef() == null && resource instanceof RangerMutableResource) { // as in policyEngine.preProcess()
+            ((RangerMutableResource) resource).setServiceDef(policyEngine.getServiceDef());
+        }
+
+        if (request.getContext() != null) { // for resource-matchers that use {USER}
+            RangerAccessRequestUtil.setCurrentUserInContext(request.getContext(), user);
+        }
+
+        StringBuilder sb = new StringBuilder();
+
+        sb.append(request.getAccessType()).append(KEY_SEP)
+          .append(request.getResourceMatchingScope()).append(KEY_SEP)
+          .append(user != null && user.equals(resource.getOwnerUser()));
+
+        List<RangerPolicyEvaluator> evaluators = policyEngine.getPolicyRepository().getLikelyMatchPolicyEvaluators(resource, RangerPolicy.POLICY_TYPE_ACCESS, prefixEvaluators);
+
+        for (RangerPolicyEvaluator evaluator : evaluators) {
+            if (!userEvaluators.containsKey(evaluator)) {
+                continue;
+            }
+
+            if (!(evaluator instanceof RangerDefaultPolicyEvaluator)) {
+                return null;
+            }
+
+            RangerPolicyResourceMatcher           resourceMatcher = ((RangerDefaultPolicyEvaluator) evaluator).getPolicyResourceMatcher();
+            RangerPolicyResourceMatcher.MatchType matchType       = resourceMatcher != null ? resourceMatcher.getMatchType(resource, request.getContext()) : RangerPolicyResourceMatcher.MatchType.NONE;
+
+            if (matchType != RangerPolicyResourceMatcher.MatchType.NONE) {
+                sb.append(KEY_SEP).append(evaluator.getPolicy().getId()).append(':').append(matchType.ordinal());
+            }
+        }
+
+        return sb.toString();
+    }
+
+    private boolean hasItemForUser(RangerPolicy policy) {
+        return hasItemForUser(policy.getPolicyItems()) || hasItemForUser(policy.getDenyPolicyItems())
+                || hasItemForUser(policy.getAllowExceptions()) || hasItemForUser(policy.getDenyExceptions());
+    }
+
+    private boolean hasItemForUser(List<? extends RangerPolicyItem> policyItems) {
+        if (policyItems != null) {
+            for (RangerPolicyItem policyItem : policyItems) {
+                if (policyItem == null) {
+                    continue;
+                }
+
+                List<String> users  = policyItem.getUsers();
+                List<String> groups = policyItem.getGroups();
+
+                if (users != null && (users.contains(RangerPolicyEngine.USER_CURRENT) || users.contains(RangerPolicyEngine.RESOURCE_OWNER) || (user != null && users.contains(user)))) {
+                    return true;
+                }
+
+                if (groups != null && (groups.contains(RangerPolicyEngine.GROUP_PUBLIC) || CollectionUtils.containsAny(groups, userGroups))) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+}
@@ -22,6 +22,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.collections.CollectionUtils;
@@ -42,6 +43,7 @@ import org.apache.ranger.plugin.policyengine.RangerAccessResult;
 import org.apache.ranger.plugin.policyengine.RangerPolicyEngine;
 import org.apache.ranger.plugin.policyengine.RangerPolicyEngineOptions;
 import org.apache.ranger.plugin.policyresourcematcher.RangerPolicyResourceMatcher;
+import org.apache.ranger.plugin.util.RangerAccessRequestUtil;
 import org.apache.ranger.plugin.util.RangerPerfTracer;
 
 
@@ -246,7 +248,21 @@ public class RangerDefaultPolicyItemEvaluator extends RangerAbstractPolicyItemEv
 			}
 		}
 		if (!ret) {
-			ret = matchUserGroup(user, userGroups);
+			Map<RangerPolicyItemEvaluator, Boolean> userGroupMatches = RangerAccessRequestUtil.getUserGroupMatchesFromContext(request.getContext());
+
+			if (userGroupMatches == null) {
+				ret = matchUserGroup(user, userGroups);
+			} else {
+				Boolean isMatched = userGroupMatches.get(this);
+
+				if (isMatched == null) {
+					isMatched = matchUserGroup(user, userGroups);
+
+					userGroupMatches.put(this, isMatched);
+				}
+
+				ret = isMatched;
+			}
 		}
 
 		if(LOG.isDebugEnabled()) {
@@ -19,14 +19,12 @@
 package org.apache.ranger.plugin.policyevaluator;
 
 
-import java.util.Map;
-
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ranger.authorization.hadoop.config.RangerConfiguration;
 import org.apache.ranger.plugin.model.RangerPolicy;
 import org.apache.ranger.plugin.model.RangerServiceDef;
-import org.apache.ranger.plugin.policyengine.CacheMap;
+import org.apache.ranger.plugin.policyengine.RangerConcurrentCache;
 import org.apache.ranger.plugin.policyengine.RangerAccessResource;
 
 
@@ -37,8 +35,8 @@ public class RangerResourceAccessCacheImpl implements RangerResourceAccessCache
         return new RangerResourceAccessCacheImpl(policy);
     }
 
-    private Map<String, String> matchedResourceCache;
-    private Map<String, String> notMatchedResourceCache;
+    private final RangerConcurrentCache<String, String> matchedResourceCache;
+    private final RangerConcurrentCache<String, String> notMatchedResourceCache;
 
     private RangerResourceAccessCacheImpl(RangerPolicy policy) {
         if(LOG.isDebugEnabled()) {
@@ -48,8 +46,8 @@ public class RangerResourceAccessCacheImpl implements RangerResourceAccessCache
         int matchedCacheSize    = RangerConfiguration.getInstance().getInt("ranger.policyengine.matched.cached.count", 1000);
         int notMatchedCacheSize = RangerConfiguration.getInstance().getInt("ranger.policyengine.not.matched.cached.count", matchedCacheSize * 10);
 
-        matchedResourceCache    = new CacheMap<String, String>(matchedCacheSize);
-        notMatchedResourceCache = new CacheMap<String, String>(notMatchedCacheSize);
+        matchedResourceCache    = new RangerConcurrentCache<>(matchedCacheSize);
+        notMatchedResourceCache = new RangerConcurrentCache<>(notMatchedCacheSize);
 
         if(LOG.isDebugEnabled()) {
             LOG.debug("<== RangerResourceAccessCacheImpl.constructor(), policyName:" + policy.getName());
@@ -67,13 +65,11 @@ public class RangerResourceAccessCacheImpl implements RangerResourceAccessCache
         LookupResult result = LookupResult.NOT_FOUND;
 
         try {
-        	synchronized(this) {
-	            if (matchedResourceCache.containsKey(strResource)) {
-	                result = LookupResult.IN_MATCHED_CACHE;
-	            } else if(notMatchedResourceCache.containsKey(strResource)) {
-	                result = LookupResult.IN_NOTMATCHED_CACHE;
-	            }
-        	}
+            if (matchedResourceCache.containsKey(strResource)) {
+                result = LookupResult.IN_MATCHED_CACHE;
+            } else if(notMatchedResourceCache.containsKey(strResource)) {
+                result = LookupResult.IN_NOTMATCHED_CACHE;
+            }
         } catch (Exception exception) {
             result = LookupResult.ERROR;
         }
@@ -93,22 +89,25 @@ public class RangerResourceAccessCacheImpl implements RangerResourceAccessCache
             LOG.debug("==> RangerResourceAccessCacheImpl.add(" + strResource + ", " + cacheType + ")");
         }
 
-        synchronized(this) {
-	        switch (cacheType) {
-	            case MATCHED_CACHE:
-	                matchedResourceCache.put(strResource, strResource);
-	                break;
-	
-	            case NOTMATCHED_CACHE:
-	                notMatchedResourceCache.put(strResource, strResource);
-	                break;
-	            default:
-	                break;
-	        }
+        switch (cacheType) {
+            case MATCHED_CACHE:
+                matchedResourceCache.put(strResource, strResource);
+                break;
+
+            case NOTMATCHED_CACHE:
+                notMatchedResourceCache.put(strResource, strResource);
+                break;
+            default:
+                break;
         }
 
         if(LOG.isDebugEnabled()) {
             LOG.debug("<== RangerResourceAccessCacheImpl.add(" + strResource + ", " + cacheType + ")");
         }
     }
+
+    @Override
+    public String toString() {
+        return "RangerResourceAccessCacheImpl={matchedResourceCache=" + matchedResourceCache + ", notMatchedResourceCache=" + notMatchedResourceCache + "}";
+    }
 }
@@ -140,6 +140,19 @@ public class RangerPathResourceMatcher extends RangerDefaultResourceMatcher {
 		return ret;
 	}
 
+	/*
+	 * @param compiledPattern wildcardPath compiled, or null to compile it here - for policy values with tokens
+	 */
+	static boolean isRecursiveWildCardMatch(String pathToCheck, RecursiveWildcardPattern compiledPattern, String wildcardPath, char pathSeparatorChar, IOCase caseSensitivity) {
+		RecursiveWildcardPattern pattern = compiledPattern;
+
+		if (pattern == null && wildcardPath != null) {
+			pattern = RecursiveWildcardPattern.compile(wildcardPath, pathSeparatorChar, caseSensitivity);
+		}
+
+		return pattern != null ? pattern.isMatch(pathToCheck) : isRecursiveWildCardMatch(pathToCheck, wildcardPath, pathSeparatorChar, caseSensitivity);
+	}
+
 	static boolean isRecursiveWildCardMatch(String pathToCheck, String wildcardPath, char pathSeparatorChar, IOCase caseSensitivity) {
 
 		boolean ret = false;
@@ -189,28 +202,32 @@ public class RangerPathResourceMatcher extends RangerDefaultResourceMatcher {
 
 final class CaseSensitiveRecursiveWildcardMatcher extends ResourceMatcher {
 	private final char levelSeparatorChar;
+	private final RecursiveWildcardPattern pattern;
 	CaseSensitiveRecursiveWildcardMatcher(String value, char levelSeparatorChar) {
 		super(value);
 		this.levelSeparatorChar = levelSeparatorChar;
+		this.pattern = RecursiveWildcardPattern.compile(value, levelSeparatorChar, IOCase.SENSITIVE);
 	}
 
 	@Override
 	boolean isMatch(String resourceValue, Map<String, Object> evalContext) {
-		return RangerPathResourceMatcher.isRecursiveWildCardMatch(resourceValue, getExpandedValue(evalContext), levelSeparatorChar, IOCase.SENSITIVE);
+		return RangerPathResourceMatcher.isRecursiveWildCardMatch(resourceValue, getNeedsDynamicEval() ? null : pattern, getExpandedValue(evalContext), levelSeparatorChar, IOCase.SENSITIVE);
 	}
 	int getPriority() { return 7 + (getNeedsDynamicEval() ? DYNAMIC_EVALUATION_PENALTY : 0);}
 }
 
 final class CaseInsensitiveRecursiveWildcardMatcher extends ResourceMatcher {
 	private final char levelSeparatorChar;
+	private final RecursiveWildcardPattern pattern;
 	CaseInsensitiveRecursiveWildcardMatcher(String value, char levelSeparatorChar) {
 		super(value);
 		this.levelSeparatorChar = levelSeparatorChar;
+		this.pattern = RecursiveWildcardPattern.compile(value, levelSeparatorChar, IOCase.INSENSITIVE);
 	}
 
 	@Override
 	boolean isMatch(String resourceValue, Map<String, Object> evalContext) {
-		return RangerPathResourceMatcher.isRecursiveWildCardMatch(resourceValue, getExpandedValue(evalContext), levelSeparatorChar, IOCase.INSENSITIVE);
+		return RangerPathResourceMatcher.isRecursiveWildCardMatch(resourceValue, getNeedsDynamicEval() ? null : pattern, getExpandedValue(evalContext), levelSeparatorChar, IOCase.INSENSITIVE);
 	}
 	int getPriority() { return 8 + (getNeedsDynamicEval() ? DYNAMIC_EVALUATION_PENALTY : 0);}
 
@@ -0,0 +1,220 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.resourcematcher;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOCase;
+
+/*
+ * Wildcard pattern ('*' and '?') compiled for recursive path matching: isMatch() tells whether the pattern matches any
+ * prefix of the path that ends at the end of a path element - same as RangerPathResourceMatcher.isRecursiveWildCardMatch(),
+ * which matches the pattern with each such prefix in turn, after collapsing repeated separators.
+ *
+ * The path is read once, left to right, without allocations: the part of the pattern up to the first wildcard is
+ * compared directly, and the rest is run as an NFA whose set of states - the number of pattern tokens matched so far -
+ * is kept as bits of a long.
+ */
+final class RecursiveWildcardPattern {
+	static final int MAX_NFA_TOKENS = 62; // bit 63 is IN_PREFIX
+
+	private static final long IN_PREFIX = Long.MIN_VALUE;
+
+	private final String  pattern;
+	private final char    separatorChar;
+	private final IOCase  caseSensitivity;
+	private final char[]  prefix;        // pattern up to the first wildcard
+	private final char[]  tokens;        // rest of the pattern, with repeated '*' collapsed
+	private final long    starMask;      // bits of '*' tokens
+	private final long    anyCharMask;   // bits of '?' tokens
+	private final long[]  asciiMasks;    // bits of literal tokens that match an ascii char
+	private final long    initialState;
+	private final long    acceptBit;
+
+	private RecursiveWildcardPattern(String pattern, char separatorChar, IOCase caseSensitivity, char[] prefix, char[] tokens) {
+		this.pattern         = pattern;
+		this.separatorChar   = separatorChar;
+		this.caseSensitivity = caseSensitivity;
+		this.prefix          = prefix;
+		this.tokens          = tokens;
+		this.asciiMasks      = new long[128];
+
+		long stars    = 0;
+		long anyChars = 0;
+
+		for (int i = 0; i < tokens.length; i++) {
+			char token = tokens[i];
+			long bit   = 1L << i;
+
+			if (token == '*') {
+				stars |= bit;
+			} else if (token == '?') {
+				anyChars |= bit;
+			} else {
+				for (char c = 0; c < asciiMasks.length; c++) {
+					if (isEqual(token, c)) {
+						asciiMasks[c] |= bit;
+					}
+				}
+			}
+		}
+
+		this.starMask     = stars;
+		this.anyCharMask  = anyChars;
+		this.acceptBit    = 1L << tokens.length;
+		this.initialState = closure(1L);
+	}
+
+	/*
+	 * @return null if the pattern has too many tokens after its first wildcard
+	 */
+	static RecursiveWildcardPattern compile(String pattern, char separatorChar, IOCase caseSensitivity) {
+		int prefixLen = 0;
+
+		while (prefixLen < pattern.length() && !isWildcard(pattern.charAt(prefixLen))) {
+			prefixLen++;
+		}
+
+		StringBuilder tokens = new StringBuilder(pattern.length() - prefixLen);
+
+		for (int i = prefixLen; i < pattern.length(); i++) {
+			char c = pattern.charAt(i);
+
+			if (c != '*' || tokens.length() == 0 || tokens.charAt(tokens.length() - 1) != '*') {
+				tokens.append(c);
+			}
+		}
+
+		if (tokens.length() > MAX_NFA_TOKENS) {
+			return null;
+		}
+
+		return new RecursiveWildcardPattern(pattern, separatorChar, caseSensitivity, pattern.substring(0, prefixLen).toCharArray(), tokens.toString().toCharArray());
+	}
+
+	boolean isMatch(String path) {
+		if (path == null || path.isEmpty()) {
+			return false;
+		}
+
+		long    state             = prefix.length > 0 ? IN_PREFIX : initialState;
+		int     consumed          = 0;     // chars of the path with repeated separators collapsed
+		boolean prevIsElementChar = false;
+		boolean pendingSeparator  = false; // a separator is consumed only when another element follows it
+
+		for (int i = 0; i < path.length(); i++) {
+			char c = path.charAt(i);
+
+			if (c == separatorChar) {
+				if (i == 0) {
+					state = next(state, consumed++, c);
+				} else if (prevIsElementChar) {
+					if ((state & acceptBit) != 0) {
+						return true;
+					}
+
+					pendingSeparator = true;
+				}
+
+				prevIsElementChar = false;
+			} else {
+				if (pendingSeparator) {
+					state = next(state, consumed++, separatorChar);
+
+					pendingSeparator = false;
+				}
+
+				if (state != 0) {
+					state = next(state, consumed++, c);
+				}
+
+				prevIsElementChar = true;
+			}
+
+			if (state == 0) { // no prefix of the rest of the path can match
+				return false;
+			}
+		}
+
+		if (consumed == 0 || (consumed == 1 && path.charAt(0) == separatorChar)) { // path has only separators
+			return FilenameUtils.wildcardMatch(path, pattern, caseSensitivity);
+		}
+
+		return prevIsElementChar && (state & acceptBit) != 0;
+	}
+
+	private long next(long state, int consumed, char c) {
+		final long ret;
+
+		if (state == IN_PREFIX) {
+			if (!isEqual(prefix[consumed], c)) {
+				ret = 0;
+			} else if (consumed + 1 == prefix.length) {
+				ret = initialState;
+			} else {
+				ret = IN_PREFIX;
+			}
+		} else {
+			ret = closure((state & starMask) | ((state & (anyCharMask | getLiteralMask(c))) << 1));
+		}
+
+		return ret;
+	}
+
+	// '*' matches an empty string too; repeated '*' were collapsed, so one step is enough
+	private long closure(long state) {
+		return state | ((state & starMask) << 1);
+	}
+
+	private long getLiteralMask(char c) {
+		if (c < asciiMasks.length) {
+			return asciiMasks[c];
+		}
+
+		long ret = 0;
+
+		for (int i = 0; i < tokens.length; i++) {
+			if (!isWildcard(tokens[i]) && isEqual(tokens[i], c)) {
+				ret |= 1L << i;
+			}
+		}
+
+		return ret;
+	}
+
+	// same comparison as String.regionMatches(), used by FilenameUtils.wildcardMatch()
+	private boolean isEqual(char c1, char c2) {
+		if (c1 == c2) {
+			return true;
+		}
+
+		if (caseSensitivity.isCaseSensitive()) {
+			return false;
+		}
+
+		char u1 = Character.toUpperCase(c1);
+		char u2 = Character.toUpperCase(c2);
+
+		return u1 == u2 || Character.toLowerCase(u1) == Character.toLowerCase(u2);
+	}
+
+	private static boolean isWildcard(char c) {
+		return c == '*' || c == '?';
+	}
+}
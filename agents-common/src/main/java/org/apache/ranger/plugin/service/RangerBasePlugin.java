@@ -23,6 +23,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Hashtable;
 import java.util.Map;
+import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.ConcurrentHashMap;
@@ -39,6 +40,7 @@ import org.apache.ranger.authorization.hadoop.config.RangerConfiguration;
 import org.apache.ranger.authorization.utils.StringUtil;
 import org.apache.ranger.plugin.model.RangerPolicy;
 import org.apache.ranger.plugin.model.RangerServiceDef;
+import org.apache.ranger.plugin.policyengine.RangerAccessDecisionCache;
 import org.apache.ranger.plugin.policyengine.RangerAccessRequest;
 import org.apache.ranger.plugin.policyengine.RangerAccessRequestImpl;
 import org.apache.ranger.plugin.policyengine.RangerAccessResourceImpl;
@@ -48,9 +50,11 @@ import org.apache.ranger.plugin.policyengine.RangerPolicyEngine;
 import org.apache.ranger.plugin.policyengine.RangerPolicyEngineImpl;
 import org.apache.ranger.plugin.policyengine.RangerPolicyEngineOptions;
 import org.apache.ranger.plugin.policyengine.RangerResourceAccessInfo;
+import org.apache.ranger.plugin.policyengine.RangerUserAccessView;
 import org.apache.ranger.plugin.store.EmbeddedServiceDefsUtil;
 import org.apache.ranger.plugin.util.GrantRevokeRequest;
 import org.apache.ranger.plugin.util.PolicyRefresher;
+import org.apache.ranger.plugin.util.RangerPolicyDeltaUtil;
 import org.apache.ranger.plugin.util.ServicePolicies;
 
 
@@ -67,6 +71,8 @@ public class RangerBasePlugin {
 	private String                    clusterName;
 	private PolicyRefresher           refresher;
 	private RangerPolicyEngine        policyEngine;
+	private RangerAccessDecisionCache decisionCache;
+	private int                       decisionCacheSize;
 	private RangerPolicyEngineOptions policyEngineOptions = new RangerPolicyEngineOptions();
 	private RangerAuthContext         currentAuthContext;
 	private RangerAuthContext         readOnlyAuthContext;
@@ -163,6 +169,12 @@ public class RangerBasePlugin {
 		return appId;
 	}
 
+	public Long getPolicyVersion() {
+		RangerPolicyEngine policyEngine = this.policyEngine;
+
+		return policyEngine == null ? null : policyEngine.getPolicyVersion();
+	}
+
 	public String getServiceName() {
 		return serviceName;
 	}
@@ -181,6 +193,8 @@ public class RangerBasePlugin {
 		serviceName = configuration.get(propertyPrefix + ".service.name");
 		clusterName = RangerConfiguration.getInstance().get(propertyPrefix + ".ambari.cluster.name", "");
 
+		decisionCacheSize = configuration.getInt(propertyPrefix + ".policyengine.decision.cache.size", 0);
+
 		useForwardedIPAddress = configuration.getBoolean(propertyPrefix + ".use.x-forwarded-for.ipaddress", false);
 		String trustedProxyAddressString = configuration.get(propertyPrefix + ".trusted.proxy.ipaddresses");
 		trustedProxyAddresses = StringUtils.split(trustedProxyAddressString, RANGER_TRUSTED_PROXY_IPADDRESSES_SEPARATOR_CHAR);
@@ -192,6 +206,7 @@ public class RangerBasePlugin {
 		if (LOG.isDebugEnabled()) {
 			LOG.debug(propertyPrefix + ".use.x-forwarded-for.ipaddress:" + useForwardedIPAddress);
 			LOG.debug(propertyPrefix + ".trusted.proxy.ipaddresses:[" + StringUtils.join(trustedProxyAddresses, ", ") + "]");
+			LOG.debug(propertyPrefix + ".policyengine.decision.cache.size:" + decisionCacheSize);
 		}
 
 		if (useForwardedIPAddress && StringUtils.isBlank(trustedProxyAddressString)) {
@@ -251,25 +266,44 @@ public class RangerBasePlugin {
 
 		// guard against catastrophic failure during policy engine Initialization or
 		try {
-			RangerPolicyEngine oldPolicyEngine = this.policyEngine;
+			RangerPolicyEngine        oldPolicyEngine  = this.policyEngine;
+			RangerAccessDecisionCache oldDecisionCache = this.decisionCache;
 
 			if (policies == null) {
 				policies = getDefaultSvcPolicies();
 			}
 			if (policies == null) {
 				this.policyEngine = null;
+				this.decisionCache = null;
 				readOnlyAuthContext = null;
 			} else {
 				currentAuthContext = new RangerAuthContext();
-				RangerPolicyEngine policyEngine = new RangerPolicyEngineImpl(appId, policies, policyEngineOptions);
+				RangerPolicyEngine policyEngine = null;
+
+				if (oldPolicyEngine instanceof RangerPolicyEngineImpl && RangerPolicyDeltaUtil.hasPolicyDeltas(policies)) {
+					try {
+						policyEngine = new RangerPolicyEngineImpl((RangerPolicyEngineImpl) oldPolicyEngine, policies, policyEngineOptions);
+					} catch (Exception e) {
+						LOG.warn("setPolicies: failed to apply policy-deltas to the current policy engine. Building policy engine with all policies", e);
+					}
+				}
+
+				if (policyEngine == null) {
+					policyEngine = new RangerPolicyEngineImpl(appId, policies, policyEngineOptions);
+				}
 				policyEngine.setUseForwardedIPAddress(useForwardedIPAddress);
 				policyEngine.setTrustedProxyAddresses(trustedProxyAddresses);
+				this.decisionCache = createDecisionCache(policyEngine);
 				this.policyEngine = policyEngine;
 				currentAuthContext.setPolicyEngine(this.policyEngine);
 				readOnlyAuthContext = new RangerAuthContext(currentAuthContext);
 			}
 			contextChanged();
 
+			if (oldDecisionCache != null) {
+				LOG.info("Replaced " + oldDecisionCache);
+			}
+
 			if (oldPolicyEngine != null && !oldPolicyEngine.preCleanup()) {
 				LOG.error("preCleanup() failed on the previous policy engine instance !!");
 			}
@@ -292,12 +326,15 @@ public class RangerBasePlugin {
 
 		RangerPolicyEngine policyEngine = this.policyEngine;
 
+		RangerAccessDecisionCache decisionCache = this.decisionCache;
+
 		Timer policyEngineRefreshTimer = this.policyEngineRefreshTimer;
 
 		String serviceName = this.serviceName;
 
 		this.serviceName  = null;
 		this.policyEngine = null;
+		this.decisionCache = null;
 		this.refresher    = null;
 		this.policyEngineRefreshTimer = null;
 
@@ -309,6 +346,10 @@ public class RangerBasePlugin {
 			policyEngineRefreshTimer.cancel();
 		}
 
+		if (decisionCache != null) {
+			LOG.info("Cleaned up " + decisionCache);
+		}
+
 		if (policyEngine != null) {
 			policyEngine.cleanup();
 		}
@@ -340,6 +381,12 @@ public class RangerBasePlugin {
 		if(policyEngine != null) {
 			policyEngine.preProcess(request);
 
+			RangerAccessDecisionCache decisionCache = this.decisionCache;
+
+			if (decisionCache != null && decisionCache.getPolicyEngine() == policyEngine) {
+				return decisionCache.evaluatePolicies(request, resultProcessor);
+			}
+
 			return policyEngine.evaluatePolicies(request, RangerPolicy.POLICY_TYPE_ACCESS, resultProcessor);
 		}
 
@@ -358,6 +405,26 @@ public class RangerBasePlugin {
 		return null;
 	}
 
+	/*
+	 * Returns a view to find, in bulk, the resources of current policies the user can access - see RangerUserAccessView.
+	 * The given view is returned if it is for the same user, groups and policy-engine. Returns null when access decisions
+	 * depend on request context - i.e. when tag policies, policy conditions or validity schedules are in use; requests
+	 * must then be evaluated one at a time with isAccessAllowed().
+	 */
+	public RangerUserAccessView getUserAccessView(String user, Set<String> userGroups, RangerUserAccessView view) {
+		RangerPolicyEngine policyEngine = this.policyEngine;
+
+		if (view != null && view.isFor(policyEngine, user, userGroups)) {
+			return view;
+		}
+
+		if (policyEngine instanceof RangerPolicyEngineImpl && ((RangerPolicyEngineImpl) policyEngine).isAccessDecisionCacheable()) {
+			return new RangerUserAccessView((RangerPolicyEngineImpl) policyEngine, user, userGroups);
+		}
+
+		return null;
+	}
+
 	public RangerAccessResult evalDataMaskPolicies(RangerAccessRequest request, RangerAccessResultProcessor resultProcessor) {
 		RangerPolicyEngine policyEngine = this.policyEngine;
 
@@ -536,6 +603,20 @@ public class RangerBasePlugin {
 		return ret;
 	}
 
+	private RangerAccessDecisionCache createDecisionCache(RangerPolicyEngine policyEngine) {
+		RangerAccessDecisionCache ret = null;
+
+		if (decisionCacheSize > 0) {
+			if (policyEngine instanceof RangerPolicyEngineImpl && ((RangerPolicyEngineImpl) policyEngine).isAccessDecisionCacheable()) {
+				ret = new RangerAccessDecisionCache(policyEngine, decisionCacheSize);
+			} else {
+				LOG.info("Access decisions will not be cached for policy version " + policyEngine.getPolicyVersion() + ": tag policies, policy conditions or validity schedules are in use");
+			}
+		}
+
+		return ret;
+	}
+
 	private ServicePolicies getDefaultSvcPolicies() {
 		ServicePolicies ret = null;
 
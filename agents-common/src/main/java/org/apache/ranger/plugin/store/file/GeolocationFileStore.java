@@ -35,8 +35,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class GeolocationFileStore implements GeolocationStore {
 	private static final Log LOG = LogFactory.getLog(GeolocationFileStore.class);
@@ -47,10 +47,13 @@ public class GeolocationFileStore implements GeolocationStore {
 	public static final String PROP_GEOLOCATION_FILE_LOCATION = "FilePath";
 	public static final String PROP_GEOLOCATION_FILE_REINIT = "ForceRead";
 	public static final String PROP_GEOLOCATION_IP_IN_DOT_FORMAT = "IPInDotFormat";
+	public static final String PROP_GEOLOCATION_INDEX_FILE_LOCATION = "IndexFilePath";
 
-	private static Map<String, RangerGeolocationDatabase> geolocationDBMap = new HashMap<>();
+	private static Map<String, RangerGeolocationDatabase> geolocationDBMap = new ConcurrentHashMap<>();
 
-	private RangerGeolocationDatabase geolocationDatabase;
+	private volatile RangerGeolocationDatabase geolocationDatabase;
+
+	private String indexFilePath;
 
 	private boolean isMetalineProcessed;
 	private boolean useDotFormat;
@@ -70,11 +73,13 @@ public class GeolocationFileStore implements GeolocationStore {
 		String ipInDotFormat = context.get(PROP_GEOLOCATION_IP_IN_DOT_FORMAT);
 		useDotFormat = ipInDotFormat == null || Boolean.parseBoolean(ipInDotFormat);
 
+		indexFilePath = context.get(PROP_GEOLOCATION_INDEX_FILE_LOCATION);
 
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("GeolocationFileStore.init() - Geolocation file location=" + filePathToGeolocationFile);
 			LOG.debug("GeolocationFileStore.init() - Reinitialize flag =" + reinitialize);
 			LOG.debug("GeolocationFileStore.init() - UseDotFormat flag =" + useDotFormat);
+			LOG.debug("GeolocationFileStore.init() - Index file location=" + indexFilePath);
 		}
 
 		RangerGeolocationDatabase database = geolocationDBMap.get(filePathToGeolocationFile);
@@ -162,6 +167,16 @@ public class GeolocationFileStore implements GeolocationStore {
 
 	RangerGeolocationDatabase build(String dataFileName) {
 
+		File indexFile = StringUtils.isNotBlank(indexFilePath) ? new File(indexFilePath) : null;
+
+		if (indexFile != null && isIndexFileCurrent(indexFile, dataFileName)) {
+			RangerGeolocationDatabase database = mapIndexFile(indexFile);
+
+			if (database != null) {
+				return database;
+			}
+		}
+
 		RangerGeolocationDatabase database = null;
 
 		BufferedReader bufferedReader = null;
@@ -215,11 +230,67 @@ public class GeolocationFileStore implements GeolocationStore {
 
 		if (database != null) {
 			database.optimize();
+
+			if (indexFile != null) {
+				RangerGeolocationDatabase mappedDatabase = writeIndexFile(database, indexFile);
+
+				if (mappedDatabase != null) {
+					database = mappedDatabase;
+				}
+			}
 		}
 
 		return database;
 	}
 
+	// index file is used only when it is newer than the geolocation file; an index of a resource would never be refreshed
+	private boolean isIndexFileCurrent(File indexFile, String dataFileName) {
+		File dataFile = new File(dataFileName);
+
+		return indexFile.isFile() && dataFile.isFile() && indexFile.lastModified() >= dataFile.lastModified();
+	}
+
+	private RangerGeolocationDatabase mapIndexFile(File indexFile) {
+		RangerGeolocationDatabase ret = null;
+
+		try {
+			ret = RangerGeolocationDatabase.mapIndexFile(indexFile);
+
+			LOG.info("GeolocationFileStore: loaded " + ret.size() + " location ranges from index file '" + indexFile + "'");
+		} catch (IOException ex) {
+			LOG.error("GeolocationFileStore.mapIndexFile() - Unable to load index file '" + indexFile + "', " + ex);
+		}
+
+		return ret;
+	}
+
+	/*
+	 * @return database mapped from the written index file, or null if the file could not be written
+	 */
+	private RangerGeolocationDatabase writeIndexFile(RangerGeolocationDatabase database, File indexFile) {
+		RangerGeolocationDatabase ret = null;
+
+		File tmpFile = new File(indexFile.getPath() + ".tmp");
+
+		try {
+			database.writeIndexFile(tmpFile);
+
+			if (!tmpFile.renameTo(indexFile)) { // rename replaces the index atomically, for other processes that map it
+				throw new IOException("failed to rename " + tmpFile + " to " + indexFile);
+			}
+
+			ret = mapIndexFile(indexFile);
+		} catch (IOException ex) {
+			LOG.error("GeolocationFileStore.writeIndexFile() - Unable to write index file '" + indexFile + "', " + ex);
+
+			if (tmpFile.exists() && !tmpFile.delete()) {
+				LOG.warn("GeolocationFileStore.writeIndexFile() - Unable to delete '" + tmpFile + "'");
+			}
+		}
+
+		return ret;
+	}
+
 	private boolean processLine(int lineNumber, String line, RangerGeolocationDatabase database) {
 
 		boolean ret = true;
@@ -241,7 +312,7 @@ public class GeolocationFileStore implements GeolocationStore {
 				} else {
 					RangerGeolocationData data = RangerGeolocationData.create(fields, lineNumber, useDotFormat);
 					if (data != null) {
-						database.getData().insert(data);
+						database.add(data);
 					} else {
 						LOG.error("GeolocationFileStore.processLine() - Invalid data specification " + lineNumber + ":" + line);
 					}
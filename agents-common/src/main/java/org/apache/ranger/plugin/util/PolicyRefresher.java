@@ -19,11 +19,17 @@
 
 package org.apache.ranger.plugin.util;
 
+import java.io.BufferedInputStream;
+import java.io.Closeable;
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
-import java.io.Reader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.Writer;
+import java.util.Objects;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
@@ -49,10 +55,12 @@ public class PolicyRefresher extends Thread {
 	private final String            cacheDir;
 	private final Gson              gson;
 	private final boolean           disableCacheIfServiceNotFound;
+	private final boolean           useBinaryCacheFormat;
 
 	private long 	pollingIntervalMs   = 30 * 1000;
 	private long 	lastKnownVersion    = -1L;
 	private long	lastActivationTimeInMillis;
+	private ServicePolicies lastKnownPolicies;
 	private boolean policiesSetInPlugin;
 	private boolean serviceDefSetInPlugin;
 
@@ -88,6 +96,8 @@ public class PolicyRefresher extends Thread {
 
 		String propertyPrefix    = "ranger.plugin." + serviceType;
 		disableCacheIfServiceNotFound = RangerConfiguration.getInstance().getBoolean(propertyPrefix + ".disable.cache.if.servicenotfound", true);
+		// opt-in: the cache file keeps its .json name, which tools outside the plugin may read as JSON; either format is detected on load
+		useBinaryCacheFormat          = RangerConfiguration.getInstance().getBoolean(propertyPrefix + ".policy.cache.binary.format", false);
 
 		if(LOG.isDebugEnabled()) {
 			LOG.debug("<== PolicyRefresher(serviceName=" + serviceName + ").PolicyRefresher()");
@@ -223,6 +233,8 @@ public class PolicyRefresher extends Thread {
 				policiesSetInPlugin = true;
 				setLastActivationTimeInMillis(System.currentTimeMillis());
 				lastKnownVersion = svcPolicies.getPolicyVersion();
+				// policy-deltas will be applied to the current policy engine; so don't keep the policies if they were not set in the plugin
+				lastKnownPolicies = Objects.equals(plugIn.getPolicyVersion(), svcPolicies.getPolicyVersion()) ? svcPolicies : null;
 			} else {
 				if (!policiesSetInPlugin && !serviceDefSetInPlugin) {
 					plugIn.setPolicies(null);
@@ -235,6 +247,7 @@ public class PolicyRefresher extends Thread {
 				plugIn.setPolicies(null);
 				setLastActivationTimeInMillis(System.currentTimeMillis());
 				lastKnownVersion = -1;
+				lastKnownPolicies = null;
 				serviceDefSetInPlugin = true;
 			}
 		} catch (Exception excp) {
@@ -263,6 +276,26 @@ public class PolicyRefresher extends Thread {
 		try {
 			svcPolicies = rangerAdmin.getServicePoliciesIfUpdated(lastKnownVersion, lastActivationTimeInMillis);
 
+			if (RangerPolicyDeltaUtil.hasPolicyDeltas(svcPolicies)) {
+				ServicePolicies mergedPolicies = RangerPolicyDeltaUtil.applyDeltas(lastKnownPolicies, svcPolicies);
+
+				if (mergedPolicies != null) {
+					LOG.info("PolicyRefresher(serviceName=" + serviceName + "): applied " + svcPolicies.getPolicyDeltas().size() + " policy-deltas to version " + lastKnownVersion);
+
+					svcPolicies = mergedPolicies;
+				} else {
+					LOG.warn("PolicyRefresher(serviceName=" + serviceName + "): received policy-deltas, but no policies are known locally for version " + lastKnownVersion + ". Downloading all policies");
+
+					svcPolicies = rangerAdmin.getServicePoliciesIfUpdated(-1L, lastActivationTimeInMillis);
+
+					if (RangerPolicyDeltaUtil.hasPolicyDeltas(svcPolicies)) {
+						LOG.error("PolicyRefresher(serviceName=" + serviceName + "): received policy-deltas for a full download request. Ignoring");
+
+						svcPolicies = null;
+					}
+				}
+			}
+
 			boolean isUpdated = svcPolicies != null;
 
 			if(isUpdated) {
@@ -310,7 +343,7 @@ public class PolicyRefresher extends Thread {
 		File cacheFile = cacheDir == null ? null : new File(cacheDir + File.separator + cacheFileName);
 
     	if(cacheFile != null && cacheFile.isFile() && cacheFile.canRead()) {
-    		Reader reader = null;
+    		Closeable reader = null;
 
     		RangerPerfTracer perf = null;
 
@@ -319,9 +352,20 @@ public class PolicyRefresher extends Thread {
     		}
 
     		try {
-	        	reader = new FileReader(cacheFile);
+	        	InputStream in = new BufferedInputStream(new FileInputStream(cacheFile));
+
+	        	reader = in;
+
+	        	// cache file could be in either format, depending on the configuration when it was saved
+	        	if (RangerBinaryFormat.isBinaryFormat(in)) {
+	        		policies = RangerBinaryFormat.read(in, ServicePolicies.class);
+	        	} else {
+	        		InputStreamReader jsonReader = new InputStreamReader(in);
+
+	        		reader = jsonReader;
 
-		        policies = gson.fromJson(reader, ServicePolicies.class);
+	        		policies = gson.fromJson(jsonReader, ServicePolicies.class);
+	        	}
 
 		        if(policies != null) {
 		        	if(!StringUtils.equals(serviceName, policies.getServiceName())) {
@@ -330,6 +374,8 @@ public class PolicyRefresher extends Thread {
 		        		policies.setServiceName(serviceName);
 		        	}
 
+		        	policies.setPolicyDeltas(null);
+
 		        	lastKnownVersion = policies.getPolicyVersion() == null ? -1 : policies.getPolicyVersion().longValue();
 		         }
 	        } catch (Exception excp) {
@@ -386,12 +432,24 @@ public class PolicyRefresher extends Thread {
 					perf = RangerPerfTracer.getPerfTracer(PERF_POLICYENGINE_INIT_LOG, "PolicyRefresher.saveToCache(serviceName=" + serviceName + ")");
 				}
 
-				Writer writer = null;
+				Closeable writer = null;
 	
 				try {
-					writer = new FileWriter(cacheFile);
-	
-			        gson.toJson(policies, writer);
+					ServicePolicies toSave = RangerPolicyDeltaUtil.hasPolicyDeltas(policies) ? copyWithoutDeltas(policies) : policies;
+
+					if (useBinaryCacheFormat) {
+						OutputStream out = new FileOutputStream(cacheFile);
+
+						writer = out;
+
+						RangerBinaryFormat.write(toSave, ServicePolicies.class, out);
+					} else {
+						Writer jsonWriter = new FileWriter(cacheFile);
+
+						writer = jsonWriter;
+
+						gson.toJson(toSave, jsonWriter);
+					}
 		        } catch (Exception excp) {
 		        	LOG.error("failed to save policies to cache file '" + cacheFile.getAbsolutePath() + "'", excp);
 		        } finally {
@@ -416,6 +474,21 @@ public class PolicyRefresher extends Thread {
 		}
 	}
 
+	private ServicePolicies copyWithoutDeltas(ServicePolicies policies) {
+		ServicePolicies ret = new ServicePolicies();
+
+		ret.setServiceName(policies.getServiceName());
+		ret.setServiceId(policies.getServiceId());
+		ret.setPolicyVersion(policies.getPolicyVersion());
+		ret.setPolicyUpdateTime(policies.getPolicyUpdateTime());
+		ret.setPolicies(policies.getPolicies());
+		ret.setServiceDef(policies.getServiceDef());
+		ret.setAuditMode(policies.getAuditMode());
+		ret.setTagPolicies(policies.getTagPolicies());
+
+		return ret;
+	}
+
 	private void disableCache() {
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("==> PolicyRefresher.disableCache(serviceName=" + serviceName + ")");
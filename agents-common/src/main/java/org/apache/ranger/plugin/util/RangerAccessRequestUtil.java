@@ -29,6 +29,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ranger.plugin.contextenricher.RangerTagForEval;
 import org.apache.ranger.plugin.policyengine.RangerAccessResource;
+import org.apache.ranger.plugin.policyevaluator.RangerPolicyItemEvaluator;
 
 public class RangerAccessRequestUtil {
 	private static final Log LOG = LogFactory.getLog(RangerAccessRequestUtil.class);
@@ -39,6 +40,7 @@ public class RangerAccessRequestUtil {
 	public static final String KEY_CONTEXT_REQUESTED_RESOURCES = "REQUESTED_RESOURCES";
 	public static final String KEY_TOKEN_NAMESPACE = "token:";
 	public static final String KEY_USER = "USER";
+	public static final String KEY_CONTEXT_USER_GROUP_MATCHES  = "USER_GROUP_MATCHES";
 
 	public static void setRequestTagsInContext(Map<String, Object> context, Set<RangerTagForEval> tags) {
 		if(CollectionUtils.isEmpty(tags)) {
@@ -128,6 +130,32 @@ public class RangerAccessRequestUtil {
 		return ret;
 	}
 
+	/*
+	 * Set while a batch of requests is evaluated: results of user/group match of policy-items, shared by requests
+	 * having the same user and groups.
+	 */
+	public static void setUserGroupMatchesInContext(Map<String, Object> context, Map<RangerPolicyItemEvaluator, Boolean> userGroupMatches) {
+		if(userGroupMatches == null) {
+			context.remove(KEY_CONTEXT_USER_GROUP_MATCHES);
+		} else {
+			context.put(KEY_CONTEXT_USER_GROUP_MATCHES, userGroupMatches);
+		}
+	}
+
+	public static Map<RangerPolicyItemEvaluator, Boolean> getUserGroupMatchesFromContext(Map<String, Object> context) {
+		Map<RangerPolicyItemEvaluator, Boolean> ret = null;
+		Object                                  val = MapUtils.isNotEmpty(context) ? context.get(KEY_CONTEXT_USER_GROUP_MATCHES) : null;
+
+		if(val instanceof Map<?, ?>) {
+			@SuppressWarnings("unchecked")
+			Map<RangerPolicyItemEvaluator, Boolean> userGroupMatches = (Map<RangerPolicyItemEvaluator, Boolean>) val;
+
+			ret = userGroupMatches;
+		}
+
+		return ret;
+	}
+
 	public static void setCurrentUserInContext(Map<String, Object> context, String user) {
 		setTokenInContext(context, KEY_USER, user);
 	}
@@ -0,0 +1,259 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/*
+ * Compact binary encoding of the JSON object model, used to download policies from Ranger Admin and to store them in
+ * the plugin's policy cache file. Objects are (de)serialized with the same Gson type-adapters as JSON, but:
+ *  - tokens are single bytes, numbers are variable-length and dates are written as milliseconds
+ *  - every string and member name is written only once; later occurrences are written as an index into a dictionary
+ *    that both the writer and reader build as they go. This dictionary makes repeated user, group, access-type and
+ *    resource names - the bulk of policies - cost a byte or two each
+ *  - the reader parses the stream directly into objects, without materializing JSON text
+ *
+ * Layout: MAGIC, FORMAT_VERSION, followed by tokens. A string is written as a variable-length integer: STRING_NEW or
+ * STRING_NEW_NOT_SHARED followed by length and UTF-8 bytes; or, for a string already in dictionary, its index plus
+ * STRING_REF_OFFSET.
+ */
+public class RangerBinaryFormat {
+    public static final byte[] MAGIC          = { (byte) 0xCA, 'R', 'B', 'F' };
+    public static final int    FORMAT_VERSION = 1;
+
+    static final int TOKEN_BEGIN_OBJECT = 1;
+    static final int TOKEN_END_OBJECT   = 2;
+    static final int TOKEN_BEGIN_ARRAY  = 3;
+    static final int TOKEN_END_ARRAY    = 4;
+    static final int TOKEN_NAME         = 5;
+    static final int TOKEN_STRING       = 6;
+    static final int TOKEN_NULL         = 7;
+    static final int TOKEN_TRUE         = 8;
+    static final int TOKEN_FALSE        = 9;
+    static final int TOKEN_LONG         = 10;
+    static final int TOKEN_DOUBLE       = 11;
+    static final int TOKEN_NUMBER       = 12;
+
+    static final int STRING_NEW            = 0;
+    static final int STRING_NEW_NOT_SHARED = 1;
+    static final int STRING_REF_OFFSET     = 2;
+
+    // longer strings, like descriptions and conditions, are unlikely to repeat; don't keep them in dictionary
+    static final int MAX_DICTIONARY_STRING_LENGTH = 256;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final Gson gson = new GsonBuilder().registerTypeHierarchyAdapter(Date.class, new DateAdapter())
+                                                      .registerTypeAdapterFactory(new StringKeyMapAdapterFactory())
+                                                      .create();
+
+    private RangerBinaryFormat() { }
+
+    public static <T> void write(T obj, Class<T> clazz, OutputStream out) throws IOException {
+        RangerBinaryJsonWriter writer = new RangerBinaryJsonWriter(new BufferedOutputStream(out, BUFFER_SIZE));
+
+        gson.getAdapter(clazz).write(writer, obj);
+
+        writer.flush();
+    }
+
+    public static <T> T read(InputStream in, Class<T> clazz) throws IOException {
+        RangerBinaryJsonReader reader = new RangerBinaryJsonReader(in instanceof BufferedInputStream ? in : new BufferedInputStream(in, BUFFER_SIZE));
+
+        try {
+            return gson.getAdapter(clazz).read(reader);
+        } catch (IllegalStateException | NumberFormatException excp) { // thrown by type-adapters on unexpected tokens
+            throw new IOException("failed to read " + clazz.getSimpleName(), excp);
+        }
+    }
+
+    /*
+     * Returns true if the stream starts with the header of this format; the stream must support mark/reset.
+     */
+    public static boolean isBinaryFormat(InputStream in) throws IOException {
+        byte[] header = new byte[MAGIC.length];
+        int    len    = 0;
+
+        in.mark(header.length);
+
+        try {
+            for (int count; len < header.length && (count = in.read(header, len, header.length - len)) != -1; ) {
+                len += count;
+            }
+        } finally {
+            in.reset();
+        }
+
+        return len == header.length && Arrays.equals(header, MAGIC);
+    }
+
+    private static class DateAdapter extends TypeAdapter<Date> {
+        @Override
+        public void write(JsonWriter out, Date value) throws IOException {
+            if (value == null) {
+                out.nullValue();
+            } else {
+                out.value(value.getTime());
+            }
+        }
+
+        @Override
+        public Date read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+
+                return null;
+            }
+
+            return new Date(in.nextLong());
+        }
+    }
+
+    /*
+     * Gson's own map adapter reads keys through JsonReader internals, which don't work with a JsonReader subclass.
+     * Maps in Ranger's object model have String keys, which this adapter reads with nextName().
+     */
+    private static class StringKeyMapAdapterFactory implements TypeAdapterFactory {
+        @Override
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> typeToken) {
+            Type type = typeToken.getType();
+
+            if (!Map.class.isAssignableFrom(typeToken.getRawType()) || !(type instanceof ParameterizedType)) {
+                return null;
+            }
+
+            Type[] typeArgs = ((ParameterizedType) type).getActualTypeArguments();
+
+            if (typeArgs.length != 2 || typeArgs[0] != String.class) {
+                return null;
+            }
+
+            @SuppressWarnings("unchecked")
+            TypeAdapter<T> ret = (TypeAdapter<T>) new StringKeyMapAdapter<>(gson, typeToken.getRawType(), typeArgs[1]);
+
+            return ret;
+        }
+    }
+
+    private static class StringKeyMapAdapter<V> extends TypeAdapter<Map<String, V>> {
+        private final Gson           gson;
+        private final Class<?>       mapClass;
+        private final TypeAdapter<V> valueAdapter;
+        private final boolean        isValueTypeObject;
+
+        @SuppressWarnings("unchecked")
+        StringKeyMapAdapter(Gson gson, Class<?> mapClass, Type valueType) {
+            this.gson              = gson;
+            this.mapClass          = mapClass;
+            this.valueAdapter      = (TypeAdapter<V>) gson.getAdapter(TypeToken.get(valueType));
+            this.isValueTypeObject = valueType == Object.class;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void write(JsonWriter out, Map<String, V> map) throws IOException {
+            if (map == null) {
+                out.nullValue();
+
+                return;
+            }
+
+            out.beginObject();
+
+            for (Map.Entry<String, V> entry : map.entrySet()) {
+                V value = entry.getValue();
+
+                out.name(String.valueOf(entry.getKey()));
+
+                if (isValueTypeObject && value != null) {
+                    ((TypeAdapter<V>) gson.getAdapter(value.getClass())).write(out, value);
+                } else {
+                    valueAdapter.write(out, value);
+                }
+            }
+
+            out.endObject();
+        }
+
+        @Override
+        public Map<String, V> read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+
+                return null;
+            }
+
+            Map<String, V> ret = createMap();
+
+            in.beginObject();
+
+            while (in.hasNext()) {
+                String key = in.nextName();
+
+                ret.put(key, valueAdapter.read(in));
+            }
+
+            in.endObject();
+
+            return ret;
+        }
+
+        @SuppressWarnings("unchecked")
+        private Map<String, V> createMap() throws IOException {
+            if (!mapClass.isInterface() && !Modifier.isAbstract(mapClass.getModifiers())) {
+                try {
+                    return (Map<String, V>) mapClass.newInstance();
+                } catch (InstantiationException | IllegalAccessException excp) {
+                    throw new IOException("failed to create instance of " + mapClass.getName(), excp);
+                }
+            } else if (SortedMap.class.isAssignableFrom(mapClass)) {
+                return new TreeMap<>();
+            } else if (ConcurrentMap.class.isAssignableFrom(mapClass)) {
+                return new ConcurrentHashMap<>();
+            } else {
+                return new LinkedHashMap<>();
+            }
+        }
+    }
+}
@@ -0,0 +1,386 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * JsonReader that reads tokens written by RangerBinaryJsonWriter, so that Gson type-adapters can deserialize objects
+ * directly from the binary format, without materializing JSON text. Repeated strings are returned as the same String
+ * instance.
+ */
+public class RangerBinaryJsonReader extends JsonReader {
+    private static final Reader UNREADABLE_READER = new Reader() {
+        @Override
+        public int read(char[] buffer, int offset, int count) {
+            throw new AssertionError();
+        }
+
+        @Override
+        public void close() {
+            throw new AssertionError();
+        }
+    };
+
+    private static final int PEEKED_NONE = -1;
+    private static final int PEEKED_EOF  = -2;
+
+    private final DataInputStream in;
+    private final List<String>    dictionary = new ArrayList<>();
+    private       byte[]          buffer     = new byte[256];
+    private       int             peeked     = PEEKED_NONE;
+
+    public RangerBinaryJsonReader(InputStream in) throws IOException {
+        super(UNREADABLE_READER);
+
+        this.in = new DataInputStream(in);
+
+        byte[] magic = new byte[RangerBinaryFormat.MAGIC.length];
+
+        this.in.readFully(magic);
+
+        if (!Arrays.equals(magic, RangerBinaryFormat.MAGIC)) {
+            throw new MalformedJsonException("not in " + RangerBinaryFormat.class.getSimpleName() + ": invalid header");
+        }
+
+        int version = this.in.readUnsignedByte();
+
+        if (version != RangerBinaryFormat.FORMAT_VERSION) {
+            throw new MalformedJsonException("unsupported " + RangerBinaryFormat.class.getSimpleName() + " version " + version);
+        }
+    }
+
+    @Override
+    public void beginArray() throws IOException {
+        consume(RangerBinaryFormat.TOKEN_BEGIN_ARRAY, JsonToken.BEGIN_ARRAY);
+    }
+
+    @Override
+    public void endArray() throws IOException {
+        consume(RangerBinaryFormat.TOKEN_END_ARRAY, JsonToken.END_ARRAY);
+    }
+
+    @Override
+    public void beginObject() throws IOException {
+        consume(RangerBinaryFormat.TOKEN_BEGIN_OBJECT, JsonToken.BEGIN_OBJECT);
+    }
+
+    @Override
+    public void endObject() throws IOException {
+        consume(RangerBinaryFormat.TOKEN_END_OBJECT, JsonToken.END_OBJECT);
+    }
+
+    @Override
+    public boolean hasNext() throws IOException {
+        int token = doPeek();
+
+        return token != RangerBinaryFormat.TOKEN_END_OBJECT && token != RangerBinaryFormat.TOKEN_END_ARRAY && token != PEEKED_EOF;
+    }
+
+    @Override
+    public JsonToken peek() throws IOException {
+        return toJsonToken(doPeek());
+    }
+
+    @Override
+    public String nextName() throws IOException {
+        consume(RangerBinaryFormat.TOKEN_NAME, JsonToken.NAME);
+
+        return readString();
+    }
+
+    @Override
+    public String nextString() throws IOException {
+        int token = doPeek();
+
+        switch (token) {
+            case RangerBinaryFormat.TOKEN_STRING:
+            case RangerBinaryFormat.TOKEN_NUMBER:
+                peeked = PEEKED_NONE;
+                return readString();
+
+            case RangerBinaryFormat.TOKEN_LONG:
+                peeked = PEEKED_NONE;
+                return Long.toString(readLong());
+
+            case RangerBinaryFormat.TOKEN_DOUBLE:
+                peeked = PEEKED_NONE;
+                return Double.toString(in.readDouble());
+
+            default:
+                throw unexpected(JsonToken.STRING, token);
+        }
+    }
+
+    @Override
+    public boolean nextBoolean() throws IOException {
+        int token = doPeek();
+
+        if (token == RangerBinaryFormat.TOKEN_TRUE || token == RangerBinaryFormat.TOKEN_FALSE) {
+            peeked = PEEKED_NONE;
+
+            return token == RangerBinaryFormat.TOKEN_TRUE;
+        }
+
+        throw unexpected(JsonToken.BOOLEAN, token);
+    }
+
+    @Override
+    public void nextNull() throws IOException {
+        consume(RangerBinaryFormat.TOKEN_NULL, JsonToken.NULL);
+    }
+
+    @Override
+    public double nextDouble() throws IOException {
+        int token = doPeek();
+
+        switch (token) {
+            case RangerBinaryFormat.TOKEN_DOUBLE:
+                peeked = PEEKED_NONE;
+                return in.readDouble();
+
+            case RangerBinaryFormat.TOKEN_LONG:
+                peeked = PEEKED_NONE;
+                return readLong();
+
+            case RangerBinaryFormat.TOKEN_NUMBER:
+            case RangerBinaryFormat.TOKEN_STRING:
+                peeked = PEEKED_NONE;
+                return Double.parseDouble(readString());
+
+            default:
+                throw unexpected(JsonToken.NUMBER, token);
+        }
+    }
+
+    @Override
+    public long nextLong() throws IOException {
+        int token = doPeek();
+
+        switch (token) {
+            case RangerBinaryFormat.TOKEN_LONG:
+                peeked = PEEKED_NONE;
+                return readLong();
+
+            case RangerBinaryFormat.TOKEN_DOUBLE: {
+                peeked = PEEKED_NONE;
+
+                double value = in.readDouble();
+                long   ret   = (long) value;
+
+                if (ret != value) {
+                    throw new NumberFormatException("Expected a long but was " + value);
+                }
+
+                return ret;
+            }
+
+            case RangerBinaryFormat.TOKEN_NUMBER:
+            case RangerBinaryFormat.TOKEN_STRING:
+                peeked = PEEKED_NONE;
+                return Long.parseLong(readString());
+
+            default:
+                throw unexpected(JsonToken.NUMBER, token);
+        }
+    }
+
+    @Override
+    public int nextInt() throws IOException {
+        long value = nextLong();
+        int  ret   = (int) value;
+
+        if (ret != value) {
+            throw new NumberFormatException("Expected an int but was " + value);
+        }
+
+        return ret;
+    }
+
+    @Override
+    public void skipValue() throws IOException {
+        int depth = 0;
+
+        do {
+            int token = doPeek();
+
+            peeked = PEEKED_NONE;
+
+            switch (token) {
+                case RangerBinaryFormat.TOKEN_BEGIN_ARRAY:
+                case RangerBinaryFormat.TOKEN_BEGIN_OBJECT:
+                    depth++;
+                    break;
+
+                case RangerBinaryFormat.TOKEN_END_ARRAY:
+                case RangerBinaryFormat.TOKEN_END_OBJECT:
+                    depth--;
+                    break;
+
+                case RangerBinaryFormat.TOKEN_NAME:
+                case RangerBinaryFormat.TOKEN_STRING:
+                case RangerBinaryFormat.TOKEN_NUMBER:
+                    readString();
+                    break;
+
+                case RangerBinaryFormat.TOKEN_LONG:
+                    readLong();
+                    break;
+
+                case RangerBinaryFormat.TOKEN_DOUBLE:
+                    in.readDouble();
+                    break;
+
+                case PEEKED_EOF:
+                    throw new EOFException("End of input");
+
+                default:
+                    break;
+            }
+        } while (depth > 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        peeked = PEEKED_EOF;
+
+        in.close();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{dictionarySize=" + dictionary.size() + "}";
+    }
+
+    private int doPeek() throws IOException {
+        if (peeked == PEEKED_NONE) {
+            int token = in.read();
+
+            peeked = token == -1 ? PEEKED_EOF : token;
+        }
+
+        return peeked;
+    }
+
+    private void consume(int expected, JsonToken expectedToken) throws IOException {
+        int token = doPeek();
+
+        if (token != expected) {
+            throw unexpected(expectedToken, token);
+        }
+
+        peeked = PEEKED_NONE;
+    }
+
+    private IllegalStateException unexpected(JsonToken expected, int token) throws IOException {
+        return new IllegalStateException("Expected " + expected + " but was " + toJsonToken(token));
+    }
+
+    private JsonToken toJsonToken(int token) throws IOException {
+        switch (token) {
+            case RangerBinaryFormat.TOKEN_BEGIN_OBJECT: return JsonToken.BEGIN_OBJECT;
+            case RangerBinaryFormat.TOKEN_END_OBJECT:   return JsonToken.END_OBJECT;
+            case RangerBinaryFormat.TOKEN_BEGIN_ARRAY:  return JsonToken.BEGIN_ARRAY;
+            case RangerBinaryFormat.TOKEN_END_ARRAY:    return JsonToken.END_ARRAY;
+            case RangerBinaryFormat.TOKEN_NAME:         return JsonToken.NAME;
+            case RangerBinaryFormat.TOKEN_STRING:       return JsonToken.STRING;
+            case RangerBinaryFormat.TOKEN_NULL:         return JsonToken.NULL;
+            case RangerBinaryFormat.TOKEN_TRUE:
+            case RangerBinaryFormat.TOKEN_FALSE:        return JsonToken.BOOLEAN;
+            case RangerBinaryFormat.TOKEN_LONG:
+            case RangerBinaryFormat.TOKEN_DOUBLE:
+            case RangerBinaryFormat.TOKEN_NUMBER:       return JsonToken.NUMBER;
+            case PEEKED_EOF:                            return JsonToken.END_DOCUMENT;
+            default:
+                throw new MalformedJsonException("invalid token " + token);
+        }
+    }
+
+    private String readString() throws IOException {
+        long ref = readVarLong();
+
+        if (ref >= RangerBinaryFormat.STRING_REF_OFFSET) {
+            long index = ref - RangerBinaryFormat.STRING_REF_OFFSET;
+
+            if (index >= dictionary.size()) {
+                throw new MalformedJsonException("invalid string reference " + index + ": dictionary size is " + dictionary.size());
+            }
+
+            return dictionary.get((int) index);
+        }
+
+        int len = (int) readVarLong();
+
+        if (len < 0) {
+            throw new MalformedJsonException("invalid string length " + len);
+        }
+
+        if (buffer.length < len) {
+            buffer = new byte[Math.max(len, buffer.length * 2)];
+        }
+
+        in.readFully(buffer, 0, len);
+
+        String ret = new String(buffer, 0, len, StandardCharsets.UTF_8);
+
+        if (ref == RangerBinaryFormat.STRING_NEW) {
+            dictionary.add(ret);
+        }
+
+        return ret;
+    }
+
+    private long readLong() throws IOException {
+        long value = readVarLong();
+
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private long readVarLong() throws IOException {
+        long ret   = 0;
+        int  shift = 0;
+
+        while (shift < 64) {
+            int b = in.readUnsignedByte();
+
+            ret |= (long) (b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0) {
+                return ret;
+            }
+
+            shift += 7;
+        }
+
+        throw new MalformedJsonException("malformed variable-length integer");
+    }
+}
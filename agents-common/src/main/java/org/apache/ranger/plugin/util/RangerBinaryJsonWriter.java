@@ -0,0 +1,245 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * JsonWriter that writes tokens in RangerBinaryFormat instead of JSON text, so that Gson type-adapters can be used to
+ * serialize objects in the binary format. Strings and names are written once, and subsequent occurrences refer to
+ * the first one. Object members with null value are not written.
+ */
+public class RangerBinaryJsonWriter extends JsonWriter {
+    private static final Writer UNWRITABLE_WRITER = new Writer() {
+        @Override
+        public void write(char[] buffer, int offset, int count) {
+            throw new AssertionError();
+        }
+
+        @Override
+        public void flush() {
+            throw new AssertionError();
+        }
+
+        @Override
+        public void close() {
+            throw new AssertionError();
+        }
+    };
+
+    private final DataOutputStream     out;
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private       String               deferredName;
+
+    public RangerBinaryJsonWriter(OutputStream out) throws IOException {
+        super(UNWRITABLE_WRITER);
+
+        this.out = new DataOutputStream(out);
+
+        this.out.write(RangerBinaryFormat.MAGIC);
+        this.out.writeByte(RangerBinaryFormat.FORMAT_VERSION);
+    }
+
+    @Override
+    public JsonWriter beginArray() throws IOException {
+        writeDeferredName();
+        out.writeByte(RangerBinaryFormat.TOKEN_BEGIN_ARRAY);
+
+        return this;
+    }
+
+    @Override
+    public JsonWriter endArray() throws IOException {
+        out.writeByte(RangerBinaryFormat.TOKEN_END_ARRAY);
+
+        return this;
+    }
+
+    @Override
+    public JsonWriter beginObject() throws IOException {
+        writeDeferredName();
+        out.writeByte(RangerBinaryFormat.TOKEN_BEGIN_OBJECT);
+
+        return this;
+    }
+
+    @Override
+    public JsonWriter endObject() throws IOException {
+        deferredName = null; // a name without value can only be left by nullValue()
+
+        out.writeByte(RangerBinaryFormat.TOKEN_END_OBJECT);
+
+        return this;
+    }
+
+    @Override
+    public JsonWriter name(String name) throws IOException {
+        if (name == null) {
+            throw new NullPointerException("name == null");
+        }
+
+        deferredName = name;
+
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(String value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+
+        writeDeferredName();
+        out.writeByte(RangerBinaryFormat.TOKEN_STRING);
+        writeString(value);
+
+        return this;
+    }
+
+    @Override
+    public JsonWriter nullValue() throws IOException {
+        if (deferredName != null) { // skip the member
+            deferredName = null;
+        } else {
+            out.writeByte(RangerBinaryFormat.TOKEN_NULL);
+        }
+
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(boolean value) throws IOException {
+        writeDeferredName();
+        out.writeByte(value ? RangerBinaryFormat.TOKEN_TRUE : RangerBinaryFormat.TOKEN_FALSE);
+
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(double value) throws IOException {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new IllegalArgumentException("Numeric values must be finite, but was " + value);
+        }
+
+        writeDeferredName();
+        out.writeByte(RangerBinaryFormat.TOKEN_DOUBLE);
+        out.writeDouble(value);
+
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(long value) throws IOException {
+        writeDeferredName();
+        out.writeByte(RangerBinaryFormat.TOKEN_LONG);
+        writeVarLong((value << 1) ^ (value >> 63)); // zig-zag, to keep small negative values short
+
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(Number value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte || value instanceof AtomicInteger || value instanceof AtomicLong) {
+            return value(value.longValue());
+        }
+
+        if (value instanceof Double || value instanceof Float) {
+            return value(value.doubleValue());
+        }
+
+        String str = value.toString();
+
+        if (!(value instanceof BigDecimal || value instanceof BigInteger) && (str.equals("NaN") || str.equals("Infinity") || str.equals("-Infinity"))) {
+            throw new IllegalArgumentException("Numeric values must be finite, but was " + value);
+        }
+
+        writeDeferredName();
+        out.writeByte(RangerBinaryFormat.TOKEN_NUMBER);
+        writeString(str);
+
+        return this;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void writeDeferredName() throws IOException {
+        if (deferredName != null) {
+            out.writeByte(RangerBinaryFormat.TOKEN_NAME);
+            writeString(deferredName);
+
+            deferredName = null;
+        }
+    }
+
+    private void writeString(String str) throws IOException {
+        Integer index = dictionary.get(str);
+
+        if (index != null) {
+            writeVarLong(index + RangerBinaryFormat.STRING_REF_OFFSET);
+        } else {
+            if (str.length() <= RangerBinaryFormat.MAX_DICTIONARY_STRING_LENGTH) {
+                dictionary.put(str, dictionary.size());
+
+                writeVarLong(RangerBinaryFormat.STRING_NEW);
+            } else {
+                writeVarLong(RangerBinaryFormat.STRING_NEW_NOT_SHARED);
+            }
+
+            byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+
+            writeVarLong(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private void writeVarLong(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+
+            value >>>= 7;
+        }
+
+        out.writeByte((int) value);
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerPolicyDelta;
+
+public class RangerPolicyDeltaUtil {
+	private static final Log LOG = LogFactory.getLog(RangerPolicyDeltaUtil.class);
+
+	private RangerPolicyDeltaUtil() {
+	}
+
+	/**
+	 * Compares two snapshots of the policies of a service and returns the changes needed to go from the first to the second.
+	 * Policies are matched by id; a policy is considered updated when its version differs.
+	 */
+	public static List<RangerPolicyDelta> computeDeltas(List<RangerPolicy> oldPolicies, List<RangerPolicy> newPolicies, Long policyVersion) {
+		List<RangerPolicyDelta> ret       = new ArrayList<>();
+		Map<Long, RangerPolicy> oldById   = toMapById(oldPolicies);
+		Map<Long, RangerPolicy> newById   = toMapById(newPolicies);
+
+		for (Map.Entry<Long, RangerPolicy> entry : newById.entrySet()) {
+			RangerPolicy newPolicy = entry.getValue();
+			RangerPolicy oldPolicy = oldById.get(entry.getKey());
+
+			if (oldPolicy == null) {
+				ret.add(new RangerPolicyDelta(entry.getKey(), RangerPolicyDelta.CHANGE_TYPE_POLICY_CREATE, policyVersion, newPolicy));
+			} else if (!Objects.equals(oldPolicy.getVersion(), newPolicy.getVersion())) {
+				ret.add(new RangerPolicyDelta(entry.getKey(), RangerPolicyDelta.CHANGE_TYPE_POLICY_UPDATE, policyVersion, newPolicy));
+			}
+		}
+
+		for (Long policyId : oldById.keySet()) {
+			if (!newById.containsKey(policyId)) {
+				ret.add(new RangerPolicyDelta(policyId, RangerPolicyDelta.CHANGE_TYPE_POLICY_DELETE, policyVersion, null));
+			}
+		}
+
+		return ret;
+	}
+
+	/**
+	 * Collapses a sequence of deltas, in the order they were made, into at most one delta per policy.
+	 */
+	public static List<RangerPolicyDelta> compact(List<RangerPolicyDelta> deltas) {
+		Map<Long, RangerPolicyDelta> firstById = new HashMap<>();
+		Map<Long, RangerPolicyDelta> lastById  = new LinkedHashMap<>();
+
+		if (deltas != null) {
+			for (RangerPolicyDelta delta : deltas) {
+				if (!firstById.containsKey(delta.getPolicyId())) {
+					firstById.put(delta.getPolicyId(), delta);
+				}
+
+				lastById.remove(delta.getPolicyId());
+				lastById.put(delta.getPolicyId(), delta);
+			}
+		}
+
+		List<RangerPolicyDelta> ret = new ArrayList<>(lastById.size());
+
+		for (RangerPolicyDelta last : lastById.values()) {
+			boolean isCreated = firstById.get(last.getPolicyId()).getChangeType() == RangerPolicyDelta.CHANGE_TYPE_POLICY_CREATE;
+			boolean isDeleted = last.getChangeType() == RangerPolicyDelta.CHANGE_TYPE_POLICY_DELETE;
+
+			if (isCreated && isDeleted) {
+				continue;
+			}
+
+			final int changeType;
+
+			if (isCreated) {
+				changeType = RangerPolicyDelta.CHANGE_TYPE_POLICY_CREATE;
+			} else if (isDeleted) {
+				changeType = RangerPolicyDelta.CHANGE_TYPE_POLICY_DELETE;
+			} else {
+				changeType = RangerPolicyDelta.CHANGE_TYPE_POLICY_UPDATE;
+			}
+
+			ret.add(new RangerPolicyDelta(last.getPolicyId(), changeType, last.getPolicyVersion(), last.getPolicy()));
+		}
+
+		return ret;
+	}
+
+	/**
+	 * Returns a new list of policies after applying the given deltas; the given list is not modified.
+	 */
+	public static List<RangerPolicy> applyDeltas(List<RangerPolicy> policies, List<RangerPolicyDelta> deltas) {
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("==> RangerPolicyDeltaUtil.applyDeltas(policyCount=" + (policies == null ? 0 : policies.size()) + ", deltas=" + deltas + ")");
+		}
+
+		Map<Long, RangerPolicy> policiesById = toMapById(policies);
+
+		if (deltas != null) {
+			for (RangerPolicyDelta delta : deltas) {
+				Integer changeType = delta.getChangeType();
+
+				if (changeType == null) {
+					LOG.warn("applyDeltas(): ignoring delta with no change-type: " + delta);
+
+					continue;
+				}
+
+				switch (changeType) {
+					case RangerPolicyDelta.CHANGE_TYPE_POLICY_CREATE:
+					case RangerPolicyDelta.CHANGE_TYPE_POLICY_UPDATE:
+						if (delta.getPolicy() == null) {
+							LOG.warn("applyDeltas(): ignoring delta with no policy: " + delta);
+						} else {
+							policiesById.put(delta.getPolicyId(), delta.getPolicy());
+						}
+						break;
+
+					case RangerPolicyDelta.CHANGE_TYPE_POLICY_DELETE:
+						if (policiesById.remove(delta.getPolicyId()) == null) {
+							LOG.warn("applyDeltas(): policy to be deleted does not exist: " + delta);
+						}
+						break;
+
+					default:
+						LOG.warn("applyDeltas(): ignoring delta with unknown change-type: " + delta);
+						break;
+				}
+			}
+		}
+
+		List<RangerPolicy> ret = new ArrayList<>(policiesById.values());
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("<== RangerPolicyDeltaUtil.applyDeltas(): policyCount=" + ret.size());
+		}
+
+		return ret;
+	}
+
+	/**
+	 * Merges a delta-only download into the last known full set of policies.
+	 *
+	 * @return full ServicePolicies for the version in policyDeltas, with the deltas retained; null if they can't be merged
+	 */
+	public static ServicePolicies applyDeltas(ServicePolicies lastKnownPolicies, ServicePolicies policyDeltas) {
+		ServicePolicies ret = null;
+
+		if (lastKnownPolicies != null && lastKnownPolicies.getPolicies() != null && policyDeltas != null && policyDeltas.getPolicyDeltas() != null) {
+			ret = new ServicePolicies();
+
+			ret.setServiceName(policyDeltas.getServiceName());
+			ret.setServiceId(policyDeltas.getServiceId());
+			ret.setPolicyVersion(policyDeltas.getPolicyVersion());
+			ret.setPolicyUpdateTime(policyDeltas.getPolicyUpdateTime());
+			ret.setAuditMode(policyDeltas.getAuditMode());
+			ret.setServiceDef(policyDeltas.getServiceDef() != null ? policyDeltas.getServiceDef() : lastKnownPolicies.getServiceDef());
+			ret.setTagPolicies(policyDeltas.getTagPolicies() != null ? policyDeltas.getTagPolicies() : lastKnownPolicies.getTagPolicies());
+			ret.setPolicies(applyDeltas(lastKnownPolicies.getPolicies(), policyDeltas.getPolicyDeltas()));
+			ret.setPolicyDeltas(policyDeltas.getPolicyDeltas());
+		}
+
+		return ret;
+	}
+
+	public static boolean hasPolicyDeltas(ServicePolicies servicePolicies) {
+		return servicePolicies != null && servicePolicies.getPolicyDeltas() != null;
+	}
+
+	private static Map<Long, RangerPolicy> toMapById(List<RangerPolicy> policies) {
+		final Map<Long, RangerPolicy> ret;
+
+		if (CollectionUtils.isEmpty(policies)) {
+			ret = new LinkedHashMap<>();
+		} else {
+			ret = new LinkedHashMap<>(policies.size());
+
+			for (RangerPolicy policy : policies) {
+				ret.put(policy.getId(), policy);
+			}
+		}
+
+		return ret;
+	}
+}
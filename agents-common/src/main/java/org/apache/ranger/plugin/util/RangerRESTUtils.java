@@ -54,10 +54,12 @@ public class RangerRESTUtils {
 
 	public static final String REST_EXPECTED_MIME_TYPE = "application/json";
 	public static final String REST_MIME_TYPE_JSON     = "application/json";
+	public static final String REST_MIME_TYPE_BINARY   = "application/x-ranger-binary";
 
 	public static final String REST_PARAM_LAST_KNOWN_POLICY_VERSION = "lastKnownVersion";
 	public static final String REST_PARAM_LAST_ACTIVATION_TIME = "lastActivationTime";
 	public static final String REST_PARAM_PLUGIN_ID                 = "pluginId";
+	public static final String REST_PARAM_SUPPORTS_POLICY_DELTAS    = "supportsPolicyDeltas";
 
 	private static final int MAX_PLUGIN_ID_LEN = 255;
 	
@@ -32,11 +32,15 @@ import org.apache.ranger.plugin.resourcematcher.RangerAbstractResourceMatcher;
 import org.apache.ranger.plugin.resourcematcher.RangerResourceMatcher;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 
@@ -48,6 +52,16 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
     private static final String DEFAULT_WILDCARD_CHARS = "*?";
     private static final String TRIE_BUILDER_THREAD_COUNT = "ranger.policyengine.trie.builder.thread.count";
 
+    private static final char[]                        EMPTY_CHILD_CHARS = new char[0];
+    private static final RangerResourceTrie.TrieNode[] EMPTY_CHILD_NODES = new RangerResourceTrie.TrieNode[0];
+    private static final int                           MAX_CHILD_COUNT_FOR_LINEAR_SEARCH = 8;
+
+    // approximate sizes, in bytes, of objects in a 64-bit JVM with compressed references; used to report memory used by the trie
+    private static final int OBJECT_HEADER_BYTES = 12;
+    private static final int ARRAY_HEADER_BYTES  = 16;
+    private static final int REFERENCE_BYTES     = 4;
+
+    private final RangerServiceDef.RangerResourceDef resourceDef;
     private final String        resourceName;
     private final boolean       optIgnoreCase;
     private final boolean       optWildcard;
@@ -96,6 +110,7 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
             tokenReplaceSpecialChars += delimiterEscape;
         }
 
+        this.resourceDef   = resourceDef;
         this.resourceName  = resourceDef.getName();
         this.optIgnoreCase = RangerAbstractResourceMatcher.getOptionIgnoreCase(matcherOptions);
         this.optWildcard   = RangerAbstractResourceMatcher.getOptionWildCard(matcherOptions);
@@ -128,10 +143,66 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
         }
     }
 
+    private RangerResourceTrie(RangerResourceTrie<T> other, TrieNode<T> root) {
+        this.resourceDef             = other.resourceDef;
+        this.resourceName            = other.resourceName;
+        this.optIgnoreCase           = other.optIgnoreCase;
+        this.optWildcard             = other.optWildcard;
+        this.wildcardChars           = other.wildcardChars;
+        this.comparator              = other.comparator;
+        this.isOptimizedForRetrieval = other.isOptimizedForRetrieval;
+        this.root                    = root;
+    }
+
     public String getResourceName() {
         return resourceName;
     }
 
+    /**
+     * Returns a trie with the given evaluators removed and added; this trie is not modified and can continue to be used.
+     * Only the nodes on the paths to the changed resources are copied, along with the subtrees under nodes whose
+     * wildcard evaluators change; all other nodes are shared with this trie. To update an evaluator, remove its old
+     * instance and add the new one.
+     */
+    public RangerResourceTrie<T> copyWithChanges(Collection<T> evaluatorsToRemove, Collection<T> evaluatorsToAdd) {
+        if(LOG.isDebugEnabled()) {
+            LOG.debug("==> RangerResourceTrie.copyWithChanges(" + resourceName + ", removeCount=" + (evaluatorsToRemove == null ? 0 : evaluatorsToRemove.size()) + ", addCount=" + (evaluatorsToAdd == null ? 0 : evaluatorsToAdd.size()) + ")");
+        }
+
+        RangerPerfTracer perf = null;
+
+        if(RangerPerfTracer.isPerfTraceEnabled(PERF_TRIE_INIT_LOG)) {
+            perf = RangerPerfTracer.getPerfTracer(PERF_TRIE_INIT_LOG, "RangerResourceTrie.copyWithChanges(name=" + resourceName + ")");
+        }
+
+        TrieUpdateContext<T> context = new TrieUpdateContext<>();
+        TrieNode<T>          newRoot = context.copyOf(root);
+
+        if (evaluatorsToRemove != null) {
+            for (T evaluator : evaluatorsToRemove) {
+                updateEvaluator(newRoot, evaluator, false, context);
+            }
+        }
+
+        if (evaluatorsToAdd != null) {
+            for (T evaluator : evaluatorsToAdd) {
+                updateEvaluator(newRoot, evaluator, true, context);
+            }
+        }
+
+        finalizeCopiedNode(newRoot, null, false, context);
+
+        RangerResourceTrie<T> ret = new RangerResourceTrie<>(this, newRoot);
+
+        RangerPerfTracer.logAlways(perf);
+
+        if(LOG.isDebugEnabled()) {
+            LOG.debug("<== RangerResourceTrie.copyWithChanges(" + resourceName + "): copiedNodeCount=" + context.copiedNodes.size() + ", " + ret);
+        }
+
+        return ret;
+    }
+
     public List<T> getEvaluatorsForResource(Object resource) {
         if (resource instanceof String) {
             return getEvaluatorsForResource((String) resource);
@@ -235,7 +306,7 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
                         t.add("", false, null);
                         // Wait for threads to finish work
                         t.join();
-                        ret.getChildren().putAll(t.getSubtrees());
+                        ret.addChildren(t.getSubtrees());
                     } catch (InterruptedException ex) {
                         LOG.error("BuilderThread " + t + " was interrupted:", ex);
                         LOG.error("Failing and retrying with one thread");
@@ -303,11 +374,11 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
         return root.getMaxDepth();
     }
 
-    private Character getLookupChar(char ch) {
+    private char getLookupChar(char ch) {
         return optIgnoreCase ? Character.toLowerCase(ch) : ch;
     }
 
-    private Character getLookupChar(String str, int index) {
+    private char getLookupChar(String str, int index) {
         return getLookupChar(str.charAt(index));
     }
 
@@ -350,6 +421,70 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
 
     }
 
+    private void updateEvaluator(TrieNode<T> currentRoot, T evaluator, boolean isAdd, TrieUpdateContext<T> context) {
+        Map<String, RangerPolicyResource> policyResources = evaluator.getPolicyResource();
+        RangerPolicyResource policyResource = policyResources != null ? policyResources.get(resourceName) : null;
+
+        if (policyResource == null) {
+            if (evaluator.getLeafResourceLevel() != null && resourceDef.getLevel() != null && evaluator.getLeafResourceLevel() < resourceDef.getLevel()) {
+                currentRoot.updateWildcardEvaluator(evaluator, isAdd, context);
+            }
+        } else if (policyResource.getIsExcludes()) {
+            currentRoot.updateWildcardEvaluator(evaluator, isAdd, context);
+        } else {
+            RangerResourceMatcher resourceMatcher = evaluator.getResourceMatcher(resourceName);
+
+            if (resourceMatcher != null && (resourceMatcher.isMatchAny())) {
+                currentRoot.updateWildcardEvaluator(evaluator, isAdd, context);
+            } else if (CollectionUtils.isNotEmpty(policyResource.getValues())) {
+                for (String resource : policyResource.getValues()) {
+                    final String  prefix     = getNonWildcardPrefix(resource);
+                    final boolean isWildcard = prefix.length() != resource.length() || policyResource.getIsRecursive();
+
+                    TrieNode<T> node = currentRoot;
+
+                    if (StringUtils.isNotEmpty(prefix)) {
+                        node = isAdd ? currentRoot.getOrCreateChildForUpdate(prefix, context) : currentRoot.getChildForUpdate(prefix, context);
+                    }
+
+                    if (node == null) {
+                        LOG.warn("RangerResourceTrie.copyWithChanges(" + resourceName + "): node for resource '" + resource + "' not found. Ignoring removal of evaluator " + evaluator.getId());
+                    } else if (isWildcard) {
+                        node.updateWildcardEvaluator(evaluator, isAdd, context);
+                    } else {
+                        node.updateEvaluator(evaluator, isAdd);
+                    }
+                }
+            }
+        }
+    }
+
+    private void finalizeCopiedNode(TrieNode<T> node, TrieNode<T> parent, boolean isParentWildcardChanged, TrieUpdateContext<T> context) {
+        final boolean isWildcardChanged = isParentWildcardChanged || context.wildcardChangedNodes.contains(node);
+
+        if (parent == null) {
+            node.setup(null, comparator);
+        } else if (isOptimizedForRetrieval) {
+            node.setup(parent.getWildcardEvaluators(), comparator);
+        } // else: node will be setup on first lookup
+
+        for (int i = 0; i < node.getChildCount(); i++) {
+            TrieNode<T> child = node.getChildAt(i);
+
+            if (!context.copiedNodes.contains(child)) {
+                if (!isWildcardChanged) { // wildcard evaluators inherited by this subtree are unchanged; share it
+                    continue;
+                }
+
+                child = context.copyOf(child);
+
+                node.setChildAt(i, child);
+            }
+
+            finalizeCopiedNode(child, node, isWildcardChanged, context);
+        }
+    }
+
     private String getNonWildcardPrefix(String str) {
 
         int minIndex = str.length();
@@ -487,6 +622,7 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
         sb.append("; wildcardEvaluatorListCount=").append(trieData.wildcardEvaluatorListCount);
         sb.append("; evaluatorListRefCount=").append(trieData.evaluatorListRefCount);
         sb.append("; wildcardEvaluatorListRefCount=").append(trieData.wildcardEvaluatorListRefCount);
+        sb.append("; estimatedBytes=").append(trieData.estimatedBytes);
 
         return sb.toString();
     }
@@ -529,7 +665,7 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
             this.parentWildcardEvaluators = parentWildcardEvaluators;
         }
 
-        Map<Character, TrieNode<T>> getSubtrees() { return thisRoot.getChildren(); }
+        TrieNode<T> getSubtrees() { return thisRoot; }
 
         @Override
         public void run() {
@@ -576,6 +712,25 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
         }
     }
 
+    class TrieUpdateContext<U extends RangerPolicyResourceEvaluator> {
+        final Set<TrieNode<U>> copiedNodes          = Collections.newSetFromMap(new IdentityHashMap<TrieNode<U>, Boolean>());
+        final Set<TrieNode<U>> wildcardChangedNodes = Collections.newSetFromMap(new IdentityHashMap<TrieNode<U>, Boolean>());
+
+        TrieNode<U> copyOf(TrieNode<U> node) {
+            TrieNode<U> ret = node.copy();
+
+            copiedNodes.add(ret);
+
+            return ret;
+        }
+
+        TrieNode<U> newNode(TrieNode<U> node) {
+            copiedNodes.add(node);
+
+            return node;
+        }
+    }
+
     class TrieData {
         int nodeCount;
         int leafNodeCount;
@@ -585,13 +740,62 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
         int wildcardEvaluatorListCount;
         int evaluatorListRefCount;
         int wildcardEvaluatorListRefCount;
+        long estimatedBytes;
+    }
+
+    private static int getArrayBytes(int length, int elementBytes) {
+        return align(ARRAY_HEADER_BYTES + length * elementBytes);
+    }
+
+    private static int align(int bytes) {
+        return (bytes + 7) & ~7;
+    }
+
+    private static int getStringBytes(String str) {
+        return str == null ? 0 : (align(OBJECT_HEADER_BYTES + REFERENCE_BYTES + 4) + getArrayBytes(str.length(), 2)); // String: value, hash
+    }
+
+    private static int getListBytes(List<?> list) {
+        if (list == null) {
+            return 0;
+        } else if (list instanceof ArrayList) {
+            return align(OBJECT_HEADER_BYTES + 4 + 4 + REFERENCE_BYTES) + getArrayBytes(list.size(), REFERENCE_BYTES); // modCount, size, elementData; excludes unused capacity
+        } else if (list.size() == 1) {
+            return align(OBJECT_HEADER_BYTES + REFERENCE_BYTES); // Collections.singletonList()
+        } else {
+            return align(OBJECT_HEADER_BYTES + REFERENCE_BYTES) + getArrayBytes(list.size(), REFERENCE_BYTES); // Arrays.asList()
+        }
+    }
+
+    /*
+     * Returns an immutable list of the given evaluators, without unused capacity: lists of finalized nodes are not
+     * modified; and a node is copied, along with its lists, before being changed by copyWithChanges().
+     */
+    @SuppressWarnings("unchecked")
+    private static <U> List<U> compact(List<U> list) {
+        final List<U> ret;
+
+        if (list == null || list.isEmpty()) {
+            ret = list;
+        } else if (list.size() == 1) {
+            ret = Collections.singletonList(list.get(0));
+        } else if (list instanceof ArrayList) {
+            ret = (List<U>) Arrays.asList(list.toArray());
+        } else {
+            ret = list;
+        }
+
+        return ret;
     }
 
     class TrieNode<U extends RangerPolicyResourceEvaluator> {
         private          String                      str;
-        private final    Map<Character, TrieNode<U>> children = new HashMap<>();
-        private          List<U>                     evaluators;
-        private          List<U>                     wildcardEvaluators;
+        private          char[]                      childChars = EMPTY_CHILD_CHARS; // sorted lookup-chars of children
+        private          TrieNode<U>[]               childNodes = emptyChildNodes(); // childNodes[i] is the child for childChars[i]
+        private          List<U>                     ownEvaluators;         // evaluators added to this node
+        private          List<U>                     ownWildcardEvaluators; // wildcard evaluators added to this node
+        private          List<U>                     evaluators;            // finalized by setup(): includes wildcardEvaluators
+        private          List<U>                     wildcardEvaluators;    // finalized by setup(): includes parent's wildcardEvaluators
         private          boolean                     isSharingParentWildcardEvaluators;
         private volatile boolean                     isSetup = false;
 
@@ -599,6 +803,24 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
             this.str = str;
         }
 
+        // copies the node without its finalized evaluator lists; children are shared with this node
+        TrieNode<U> copy() {
+            TrieNode<U> ret = new TrieNode<>(str);
+
+            ret.childChars = childChars; // never modified in place; replaced when a child is added
+            ret.childNodes = childNodes.length == 0 ? childNodes : childNodes.clone();
+
+            ret.ownEvaluators         = ownEvaluators == null ? null : new ArrayList<>(ownEvaluators);
+            ret.ownWildcardEvaluators = ownWildcardEvaluators == null ? null : new ArrayList<>(ownWildcardEvaluators);
+
+            return ret;
+        }
+
+        @SuppressWarnings("unchecked")
+        private TrieNode<U>[] emptyChildNodes() {
+            return (TrieNode<U>[]) EMPTY_CHILD_NODES;
+        }
+
         String getStr() {
             return str;
         }
@@ -607,8 +829,16 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
             this.str = str;
         }
 
-        Map<Character, TrieNode<U>> getChildren() {
-            return children;
+        int getChildCount() {
+            return childNodes.length;
+        }
+
+        TrieNode<U> getChildAt(int index) {
+            return childNodes[index];
+        }
+
+        void setChildAt(int index, TrieNode<U> child) {
+            childNodes[index] = child;
         }
 
         List<U> getEvaluators() {
@@ -619,12 +849,28 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
             return wildcardEvaluators;
         }
 
-        TrieNode<U> getChild(Character ch) {
-            return children == null ? null : children.get(ch);
+        TrieNode<U> getChild(char ch) {
+            final char[] chars = childChars;
+            final int    count = chars.length;
+
+            if (count <= MAX_CHILD_COUNT_FOR_LINEAR_SEARCH) {
+                for (int i = 0; i < count; i++) {
+                    if (chars[i] == ch) {
+                        return childNodes[i];
+                    }
+                }
+
+                return null;
+            }
+
+            int index = Arrays.binarySearch(chars, ch);
+
+            return index >= 0 ? childNodes[index] : null;
         }
 
         void populateTrieData(RangerResourceTrie.TrieData trieData) {
             trieData.nodeCount++;
+            trieData.estimatedBytes += getEstimatedBytes();
 
             if (wildcardEvaluators != null) {
                 if (isSharingParentWildcardEvaluators) {
@@ -642,14 +888,12 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
                 }
             }
 
-            if (children != null && !children.isEmpty()) {
-                if (children.size() == 1) {
+            if (childNodes.length > 0) {
+                if (childNodes.length == 1) {
                     trieData.singleChildNodeCount++;
                 }
 
-                for (Map.Entry<Character, TrieNode<U>> entry : children.entrySet()) {
-                    TrieNode child = entry.getValue();
-
+                for (TrieNode<U> child : childNodes) {
                     child.populateTrieData(trieData);
                 }
             } else {
@@ -657,18 +901,37 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
             }
         }
 
+        // excludes evaluators, and evaluator lists shared with the parent node
+        long getEstimatedBytes() {
+            long ret = align(OBJECT_HEADER_BYTES + 7 * REFERENCE_BYTES + 2) // str, childChars, childNodes, 4 evaluator lists, 2 booleans
+                     + getStringBytes(str);
+
+            if (childNodes.length > 0) {
+                ret += getArrayBytes(childChars.length, 2) + getArrayBytes(childNodes.length, REFERENCE_BYTES);
+            }
+
+            ret += getListBytes(ownEvaluators);
+            ret += getListBytes(ownWildcardEvaluators);
+
+            if (evaluators != ownEvaluators && evaluators != wildcardEvaluators) {
+                ret += getListBytes(evaluators);
+            }
+
+            if (wildcardEvaluators != ownWildcardEvaluators && !isSharingParentWildcardEvaluators) {
+                ret += getListBytes(wildcardEvaluators);
+            }
+
+            return ret;
+        }
+
         int getMaxDepth() {
             int ret = 0;
 
-            if (children != null) {
-                for (Map.Entry<Character, TrieNode<U>> entry : children.entrySet()) {
-                    TrieNode<U> child = entry.getValue();
-
-                    int maxChildDepth = child.getMaxDepth();
+            for (TrieNode<U> child : childNodes) {
+                int maxChildDepth = child.getMaxDepth();
 
-                    if (maxChildDepth > ret) {
-                        ret = maxChildDepth;
-                    }
+                if (maxChildDepth > ret) {
+                    ret = maxChildDepth;
                 }
             }
 
@@ -678,7 +941,7 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
         TrieNode<U> getOrCreateChild(String str) {
             int len = str.length();
 
-            TrieNode<U> child = children.get(getLookupChar(str, 0));
+            TrieNode<U> child = getChild(getLookupChar(str, 0));
 
             if (child == null) {
                 child = new TrieNode<>(str);
@@ -725,27 +988,159 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
             return child;
         }
 
+        // copy-on-write version of getOrCreateChild(): this node must be a copy owned by the update in progress
+        TrieNode<U> getOrCreateChildForUpdate(String str, TrieUpdateContext<U> context) {
+            final int len = str.length();
+
+            TrieNode<U> child = getChild(getLookupChar(str, 0));
+
+            if (child == null) {
+                child = context.newNode(new TrieNode<U>(str));
+                addChild(child);
+            } else {
+                child = getChildCopy(child, context);
+
+                final String childStr    = child.getStr();
+                final int    childStrLen = childStr.length();
+
+                final boolean isExactMatch = optIgnoreCase ? StringUtils.equalsIgnoreCase(childStr, str) : StringUtils.equals(childStr, str);
+
+                if (!isExactMatch) {
+                    final int numOfCharactersToMatch = childStrLen < len ? childStrLen : len;
+                    int index = 1;
+                    for (; index < numOfCharactersToMatch; index++) {
+                        if (getLookupChar(childStr, index) != getLookupChar(str, index)) {
+                            break;
+                        }
+                    }
+                    if (index == numOfCharactersToMatch) {
+                        if (childStrLen > len) {
+                            TrieNode<U> newChild = context.newNode(new TrieNode<U>(str));
+                            this.addChild(newChild);
+                            child.setStr(childStr.substring(index));
+                            newChild.addChild(child);
+                            child = newChild;
+                        } else {
+                            child = child.getOrCreateChildForUpdate(str.substring(index), context);
+                        }
+                    } else {
+                        String matchedPart = str.substring(0, index);
+                        TrieNode<U> newChild = context.newNode(new TrieNode<U>(matchedPart));
+                        this.addChild(newChild);
+                        child.setStr(childStr.substring(index));
+                        newChild.addChild(child);
+                        child = newChild.getOrCreateChildForUpdate(str.substring(index), context);
+                    }
+                }
+            }
+
+            return child;
+        }
+
+        // returns the copy of the node for the given string, or null if the trie has no such node
+        TrieNode<U> getChildForUpdate(String str, TrieUpdateContext<U> context) {
+            TrieNode<U> child = getChild(getLookupChar(str, 0));
+
+            if (child == null) {
+                return null;
+            }
+
+            final String childStr    = child.getStr();
+            final int    childStrLen = childStr.length();
+
+            if (childStrLen > str.length() || !str.regionMatches(optIgnoreCase, 0, childStr, 0, childStrLen)) {
+                return null;
+            }
+
+            child = getChildCopy(child, context);
+
+            return childStrLen == str.length() ? child : child.getChildForUpdate(str.substring(childStrLen), context);
+        }
+
+        private TrieNode<U> getChildCopy(TrieNode<U> child, TrieUpdateContext<U> context) {
+            TrieNode<U> ret = child;
+
+            if (!context.copiedNodes.contains(child)) {
+                ret = context.copyOf(child);
+
+                addChild(ret);
+            }
+
+            return ret;
+        }
+
+        // adds, or replaces, the child for the first character of its string
         private void addChild(TrieNode<U> child) {
-            children.put(getLookupChar(child.getStr(), 0), child);
+            final char ch    = getLookupChar(child.getStr(), 0);
+            final int  index = Arrays.binarySearch(childChars, ch);
+
+            if (index >= 0) {
+                childNodes[index] = child;
+            } else {
+                final int           insertAt = -(index + 1);
+                final int           count    = childChars.length;
+                final char[]        chars    = new char[count + 1];
+                final TrieNode<U>[] nodes    = Arrays.copyOf(childNodes, count + 1);
+
+                System.arraycopy(childChars, 0, chars, 0, insertAt);
+                System.arraycopy(childChars, insertAt, chars, insertAt + 1, count - insertAt);
+                System.arraycopy(childNodes, insertAt, nodes, insertAt + 1, count - insertAt);
+
+                chars[insertAt] = ch;
+                nodes[insertAt] = child;
+
+                childChars = chars;
+                childNodes = nodes;
+            }
+        }
+
+        void addChildren(TrieNode<U> other) {
+            for (TrieNode<U> child : other.childNodes) {
+                addChild(child);
+            }
         }
 
         void addEvaluator(U evaluator) {
-            if (evaluators == null) {
-                evaluators = new ArrayList<>();
+            if (ownEvaluators == null) {
+                ownEvaluators = new ArrayList<>();
             }
 
-            if (!evaluators.contains(evaluator)) {
-                evaluators.add(evaluator);
+            if (!ownEvaluators.contains(evaluator)) {
+                ownEvaluators.add(evaluator);
             }
         }
 
         void addWildcardEvaluator(U evaluator) {
-            if (wildcardEvaluators == null) {
-                wildcardEvaluators = new ArrayList<>();
+            if (ownWildcardEvaluators == null) {
+                ownWildcardEvaluators = new ArrayList<>();
+            }
+
+            if (!ownWildcardEvaluators.contains(evaluator)) {
+                ownWildcardEvaluators.add(evaluator);
+            }
+        }
+
+        void updateEvaluator(U evaluator, boolean isAdd) {
+            if (isAdd) {
+                addEvaluator(evaluator);
+            } else if (ownEvaluators != null) {
+                ownEvaluators.remove(evaluator);
+            }
+        }
+
+        void updateWildcardEvaluator(U evaluator, boolean isAdd, TrieUpdateContext<U> context) {
+            final boolean isChanged;
+
+            if (isAdd) {
+                isChanged = ownWildcardEvaluators == null || !ownWildcardEvaluators.contains(evaluator);
+
+                addWildcardEvaluator(evaluator);
+            } else {
+                isChanged = ownWildcardEvaluators != null && ownWildcardEvaluators.remove(evaluator);
             }
 
-            if (!wildcardEvaluators.contains(evaluator)) {
-                wildcardEvaluators.add(evaluator);
+            if (isChanged) {
+                context.wildcardChangedNodes.add(this);
             }
         }
 
@@ -753,12 +1148,8 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
 
             setup(parentWildcardEvaluators, comparator);
 
-            if (children != null) {
-                for (Map.Entry<Character, TrieNode<U>> entry : children.entrySet()) {
-                    TrieNode<U> child = entry.getValue();
-
-                    child.postSetup(wildcardEvaluators, comparator);
-                }
+            for (TrieNode<U> child : childNodes) {
+                child.postSetup(wildcardEvaluators, comparator);
             }
         }
 
@@ -782,38 +1173,47 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
         }
 
         void setup(List<U> parentWildcardEvaluators, Comparator<U> comparator) {
+            ownEvaluators         = compact(ownEvaluators);
+            ownWildcardEvaluators = compact(ownWildcardEvaluators);
+
             // finalize wildcard-evaluators list by including parent's wildcard evaluators
-            if (parentWildcardEvaluators != null) {
-                if (CollectionUtils.isEmpty(this.wildcardEvaluators)) {
-                    this.wildcardEvaluators = parentWildcardEvaluators;
-                } else {
-                    for (U evaluator : parentWildcardEvaluators) {
-                        addWildcardEvaluator(evaluator);
-                    }
-                }
-            }
-            this.isSharingParentWildcardEvaluators = wildcardEvaluators == parentWildcardEvaluators;
+            this.wildcardEvaluators = combine(ownWildcardEvaluators, parentWildcardEvaluators, comparator);
+
+            this.isSharingParentWildcardEvaluators = wildcardEvaluators != null && wildcardEvaluators == parentWildcardEvaluators;
 
             // finalize evaluators list by including wildcard evaluators
-            if (wildcardEvaluators != null) {
-                if (CollectionUtils.isEmpty(this.evaluators)) {
-                    this.evaluators = wildcardEvaluators;
+            this.evaluators = combine(ownEvaluators, wildcardEvaluators, comparator);
+        }
+
+        // own list is kept as-is, so that the node can later be copied with changes (see copyWithChanges())
+        private List<U> combine(List<U> own, List<U> inherited, Comparator<U> comparator) {
+            final List<U> ret;
+
+            if (CollectionUtils.isEmpty(own)) {
+                ret = inherited;
+            } else {
+                if (CollectionUtils.isEmpty(inherited)) {
+                    ret = own;
                 } else {
-                    for (U evaluator : wildcardEvaluators) {
-                        addEvaluator(evaluator);
+                    List<U> combined = new ArrayList<>(own.size() + inherited.size());
+
+                    combined.addAll(own);
+
+                    for (U evaluator : inherited) {
+                        if (!own.contains(evaluator)) {
+                            combined.add(evaluator);
+                        }
                     }
-                }
-            }
 
-            if (comparator != null) {
-                if (!isSharingParentWildcardEvaluators && CollectionUtils.isNotEmpty(wildcardEvaluators)) {
-                    wildcardEvaluators.sort(comparator);
+                    ret = compact(combined);
                 }
 
-                if (evaluators != wildcardEvaluators && CollectionUtils.isNotEmpty(evaluators)) {
-                    evaluators.sort(comparator);
+                if (comparator != null) {
+                    ret.sort(comparator);
                 }
             }
+
+            return ret;
         }
 
         public void toString(String prefix, StringBuilder sb) {
@@ -824,7 +1224,7 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
             }
 
             sb.append("nodeValue=").append(nodeValue);
-            sb.append("; childCount=").append(children == null ? 0 : children.size());
+            sb.append("; childCount=").append(childNodes.length);
             sb.append("; evaluators=[ ");
             if (evaluators != null) {
                 for (U evaluator : evaluators) {
@@ -841,22 +1241,19 @@ public class RangerResourceTrie<T extends RangerPolicyResourceEvaluator> {
             }
             sb.append("]\n");
 
-            if (children != null) {
-                for (Map.Entry<Character, TrieNode<U>> entry : children.entrySet()) {
-                    TrieNode<U> child = entry.getValue();
-
-                    child.toString(nodeValue, sb);
-                }
+            for (TrieNode<U> child : childNodes) {
+                child.toString(nodeValue, sb);
             }
         }
 
         public void clear() {
-            if (children != null) {
-                children.clear();
-            }
+            childChars = EMPTY_CHILD_CHARS;
+            childNodes = emptyChildNodes();
 
-            evaluators         = null;
-            wildcardEvaluators = null;
+            ownEvaluators         = null;
+            ownWildcardEvaluators = null;
+            evaluators            = null;
+            wildcardEvaluators    = null;
         }
     }
 }
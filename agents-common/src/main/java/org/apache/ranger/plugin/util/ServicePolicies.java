@@ -28,6 +28,7 @@ import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlRootElement;
 
 import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerPolicyDelta;
 import org.apache.ranger.plugin.model.RangerServiceDef;
 import org.apache.ranger.plugin.policyengine.RangerPolicyEngine;
 import org.codehaus.jackson.annotate.JsonAutoDetect;
@@ -53,6 +54,7 @@ public class ServicePolicies implements java.io.Serializable {
 	private RangerServiceDef   serviceDef;
 	private String             auditMode = RangerPolicyEngine.AUDIT_DEFAULT;
 	private TagPolicies        tagPolicies;
+	private List<RangerPolicyDelta> policyDeltas;
 
 	/**
 	 * @return the serviceName
@@ -146,7 +148,19 @@ public class ServicePolicies implements java.io.Serializable {
 	public void setTagPolicies(ServicePolicies.TagPolicies tagPolicies) {
 		this.tagPolicies = tagPolicies;
 	}
-	
+	/**
+	 * @return the policyDeltas; non-null only when policies have been sent as changes since a previously known version
+	 */
+	public List<RangerPolicyDelta> getPolicyDeltas() {
+		return policyDeltas;
+	}
+	/**
+	 * @param policyDeltas the policyDeltas to set
+	 */
+	public void setPolicyDeltas(List<RangerPolicyDelta> policyDeltas) {
+		this.policyDeltas = policyDeltas;
+	}
+
 	@Override
 	public String toString() {
 		return Objects.toStringHelper(this.getClass())
@@ -158,6 +172,7 @@ public class ServicePolicies implements java.io.Serializable {
 			.add("serviceDef", serviceDef)
 			.add("auditMode", auditMode)
 			.add("tagPolicies", tagPolicies)
+			.add("policyDeltas", policyDeltas)
 			.toString();
 	}
 
@@ -221,6 +221,47 @@ public class RangerIpMatcherTest {
 		Assert.assertFalse(ipMatcher.isMatched(createRequest("10.20.33.10")));
 	}
 	
+	@Test
+	public void test_cidr() {
+		RangerIpMatcher ipMatcher = createMatcher(new String[]{"10.20.0.0/16", "192.168.1.128/25", "2001:DB8::/32", "1.2.3.*", "5.6.7.8"} );
+		Assert.assertTrue(ipMatcher.isMatched(createRequest("10.20.0.0")));
+		Assert.assertTrue(ipMatcher.isMatched(createRequest("10.20.255.255")));
+		Assert.assertTrue(ipMatcher.isMatched(createRequest("192.168.1.128")));
+		Assert.assertTrue(ipMatcher.isMatched(createRequest("192.168.1.255")));
+		Assert.assertTrue(ipMatcher.isMatched(createRequest("2001:db8::1")));
+		Assert.assertTrue(ipMatcher.isMatched(createRequest("2001:DB8:FFFF:0:0:0:0:1")));
+		Assert.assertTrue(ipMatcher.isMatched(createRequest("::ffff:10.20.30.40"))); // IPv4-mapped IPv6 address
+		// legacy values still work alongside networks
+		Assert.assertTrue(ipMatcher.isMatched(createRequest("1.2.3.boo")));
+		Assert.assertTrue(ipMatcher.isMatched(createRequest("5.6.7.8")));
+		// mismatches
+		Assert.assertFalse(ipMatcher.isMatched(createRequest("10.21.0.0")));
+		Assert.assertFalse(ipMatcher.isMatched(createRequest("192.168.1.127")));
+		Assert.assertFalse(ipMatcher.isMatched(createRequest("2001:db9::1")));
+		Assert.assertFalse(ipMatcher.isMatched(createRequest("10.20.boo")));
+		Assert.assertFalse(ipMatcher.isMatched(createRequest("5.6.7.9")));
+
+		// zero-length prefix matches all addresses of its family; invalid networks are ignored
+		ipMatcher = createMatcher(new String[]{"0.0.0.0/0", "10.0.0.0/33", "boo/8"} );
+		Assert.assertTrue(ipMatcher.isMatched(createRequest("1.2.3.4")));
+		Assert.assertFalse(ipMatcher.isMatched(createRequest("2001:db8::1")));
+
+		// matchers with the same values share the parsed set
+		Assert.assertSame(getIpSet(createMatcher(new String[]{"10.20.0.0/16", "1.2.3.*"})), getIpSet(createMatcher(new String[]{"10.20.0.0/16", "1.2.3.*"})));
+	}
+
+	private static Object getIpSet(RangerIpMatcher matcher) {
+		try {
+			java.lang.reflect.Field field = RangerIpMatcher.class.getDeclaredField("_ipSet");
+
+			field.setAccessible(true);
+
+			return field.get(matcher);
+		} catch (ReflectiveOperationException excp) {
+			throw new AssertionError(excp);
+		}
+	}
+
 	RangerIpMatcher createMatcher(String[] ipArray) {
 		RangerIpMatcher matcher = new RangerIpMatcher();
 
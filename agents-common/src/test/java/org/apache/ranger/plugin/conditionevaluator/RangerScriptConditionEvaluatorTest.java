@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.conditionevaluator;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.ranger.plugin.contextenricher.RangerTagForEval;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemCondition;
+import org.apache.ranger.plugin.model.RangerServiceDef.RangerPolicyConditionDef;
+import org.apache.ranger.plugin.model.RangerTag;
+import org.apache.ranger.plugin.policyengine.RangerAccessRequestImpl;
+import org.apache.ranger.plugin.policyengine.RangerAccessResourceImpl;
+import org.apache.ranger.plugin.policyresourcematcher.RangerPolicyResourceMatcher;
+import org.apache.ranger.plugin.util.RangerAccessRequestUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RangerScriptConditionEvaluatorTest {
+
+	@Test
+	public void testExpiryScriptTemplate() {
+		RangerScriptConditionEvaluator evaluator = createTemplateEvaluator("yes", false);
+
+		for (int i = 0; i < 3; i++) {
+			Assert.assertTrue(evaluator.isMatched(createRequest("2010/01/01", new Date())));
+			Assert.assertFalse(evaluator.isMatched(createRequest("2099/01/01", new Date())));
+		}
+
+		evaluator = createTemplateEvaluator("no", false);
+
+		Assert.assertFalse(evaluator.isMatched(createRequest("2010/01/01", new Date())));
+		Assert.assertTrue(evaluator.isMatched(createRequest("2099/01/01", new Date())));
+	}
+
+	@Test
+	public void testMemoizedExpiryScriptTemplate() {
+		RangerScriptConditionEvaluator evaluator = createTemplateEvaluator("yes", true);
+
+		// isAccessedAfter() reads the access time, which differs for almost every request
+		Assert.assertFalse(evaluator.isResultMemoized());
+
+		long now = System.currentTimeMillis();
+
+		for (int i = 0; i < 3; i++) {
+			Assert.assertTrue(evaluator.isMatched(createRequest("2010/01/01", new Date(now + i))));
+			Assert.assertFalse(evaluator.isMatched(createRequest("2099/01/01", new Date(now + i))));
+		}
+
+		Assert.assertTrue(evaluator.isMatched(createRequest("2099/01/01", new Date(4102444800000L + 86400000L))));
+	}
+
+	@Test
+	public void testMemoizedScript() {
+		RangerScriptConditionEvaluator evaluator = createEvaluator("ctx.getUser() == 'user1' && tagAttr.get('expiry_date') == '2010/01/01'", true);
+
+		Assert.assertTrue(evaluator.isResultMemoized());
+
+		long now = System.currentTimeMillis();
+
+		for (int i = 0; i < 3; i++) {
+			Assert.assertTrue(evaluator.isMatched(createRequest("2010/01/01", new Date(now + i))));
+			Assert.assertFalse(evaluator.isMatched(createRequest("2099/01/01", new Date(now + i))));
+		}
+
+		RangerAccessRequestImpl request = createRequest("2010/01/01", new Date(now));
+
+		request.setUser("user2");
+		Assert.assertFalse(evaluator.isMatched(request));
+	}
+
+	@Test
+	public void testScriptGlobalsNotSharedAcrossRequests() {
+		// a top-level var, and a global assigned without var, set only for user1
+		String script = "if (ctx.getUser() == 'user1') { var isUser1 = true; granted = true; } (typeof granted !== 'undefined' && granted === true) || (typeof isUser1 !== 'undefined' && isUser1 === true);";
+
+		for (boolean memoizeResults : new boolean[] { false, true }) {
+			RangerScriptConditionEvaluator evaluator = createEvaluator(script, memoizeResults);
+			RangerAccessRequestImpl        request1  = createRequest("2010/01/01", new Date());
+			RangerAccessRequestImpl        request2  = createRequest("2010/01/01", new Date());
+
+			request2.setUser("user2");
+
+			for (int i = 0; i < 3; i++) {
+				Assert.assertTrue(evaluator.isMatched(request1));
+				Assert.assertFalse("globals set by the script for user1 must not be seen in a request of user2", evaluator.isMatched(request2));
+			}
+		}
+	}
+
+	@Test
+	public void testMemoizedScriptWithUnknownInputs() {
+		RangerScriptConditionEvaluator evaluator = createEvaluator("ctx.getRequestContextAttribute('attr') == 'x'", true);
+
+		RangerAccessRequestImpl request = createRequest("2010/01/01", new Date());
+
+		request.getContext().put("attr", "x");
+		Assert.assertTrue(evaluator.isMatched(request));
+
+		request.getContext().put("attr", "y");
+		Assert.assertFalse(evaluator.isMatched(request));
+	}
+
+	private RangerScriptConditionEvaluator createTemplateEvaluator(String value, boolean memoizeResults) {
+		Map<String, String> evaluatorOptions = new HashMap<>();
+
+		evaluatorOptions.put("scriptTemplate", "ctx.isAccessedAfter('expiry_date');");
+		evaluatorOptions.put(RangerScriptConditionEvaluator.OPTION_MEMOIZE_RESULTS, Boolean.toString(memoizeResults));
+
+		return init(new RangerScriptTemplateConditionEvaluator(), evaluatorOptions, value);
+	}
+
+	private RangerScriptConditionEvaluator createEvaluator(String script, boolean memoizeResults) {
+		Map<String, String> evaluatorOptions = new HashMap<>();
+
+		evaluatorOptions.put(RangerScriptConditionEvaluator.OPTION_MEMOIZE_RESULTS, Boolean.toString(memoizeResults));
+
+		return init(new RangerScriptConditionEvaluator(), evaluatorOptions, script);
+	}
+
+	private RangerScriptConditionEvaluator init(RangerScriptConditionEvaluator evaluator, Map<String, String> evaluatorOptions, String value) {
+		evaluator.setConditionDef(new RangerPolicyConditionDef(1L, "expression", evaluator.getClass().getName(), evaluatorOptions));
+		evaluator.setPolicyItemCondition(new RangerPolicyItemCondition("expression", Collections.singletonList(value)));
+		evaluator.init();
+
+		return evaluator;
+	}
+
+	private RangerAccessRequestImpl createRequest(String expiryDate, Date accessTime) {
+		RangerAccessRequestImpl request = new RangerAccessRequestImpl();
+		RangerTagForEval        tag     = new RangerTagForEval(new RangerTag("PII", Collections.singletonMap("expiry_date", expiryDate)), RangerPolicyResourceMatcher.MatchType.SELF);
+
+		request.setResource(new RangerAccessResourceImpl());
+		request.setUser("user1");
+		request.setAccessTime(accessTime);
+		RangerAccessRequestUtil.setCurrentTagInContext(request.getContext(), tag);
+		RangerAccessRequestUtil.setRequestTagsInContext(request.getContext(), Collections.singleton(tag));
+
+		return request;
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.geo;
+
+import java.io.File;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestRangerGeolocationDatabase {
+
+	@Test
+	public void testFind() {
+		RangerGeolocationDatabase database = createDatabase();
+
+		verify(database);
+		Assert.assertFalse(database.isMapped());
+	}
+
+	@Test
+	public void testMappedIndexFile() throws Exception {
+		RangerGeolocationDatabase database  = createDatabase();
+		File                      indexFile = File.createTempFile("geo", ".idx");
+
+		try {
+			database.writeIndexFile(indexFile);
+
+			RangerGeolocationDatabase mappedDatabase = RangerGeolocationDatabase.mapIndexFile(indexFile);
+
+			Assert.assertTrue(mappedDatabase.isMapped());
+			Assert.assertEquals(database.size(), mappedDatabase.size());
+			Assert.assertArrayEquals(database.getMetadata().getLocationDataItemNames(), mappedDatabase.getMetadata().getLocationDataItemNames());
+
+			verify(mappedDatabase);
+			Assert.assertEquals(database.find("20.0.100.85"), mappedDatabase.find("20.0.100.85"));
+			Assert.assertEquals(database.find("2001:db8::1"), mappedDatabase.find("2001:db8::1"));
+		} finally {
+			Assert.assertTrue(indexFile.delete());
+		}
+	}
+
+	@Test
+	public void testOptimizeReplacesIndex() {
+		RangerGeolocationDatabase database = createDatabase();
+
+		database.add(create("30.0.0.0", "30.0.0.255", "FR"));
+
+		Assert.assertNull("ranges must not be searchable until optimize()", database.find("30.0.0.1"));
+
+		database.optimize();
+
+		Assert.assertEquals("FR", getCountry(database, "30.0.0.1"));
+		Assert.assertNull("optimize() must replace the earlier index", database.find("20.0.100.85"));
+	}
+
+	private void verify(RangerGeolocationDatabase database) {
+		Assert.assertEquals(6, database.size());
+
+		Assert.assertEquals("CA", getCountry(database, "20.0.100.80"));
+		Assert.assertEquals("CA", getCountry(database, "20.0.100.85"));
+		Assert.assertEquals("CA", getCountry(database, "20.0.100.89"));
+		Assert.assertEquals("US", getCountry(database, "20.0.100.100"));
+		Assert.assertEquals("IN", getCountry(database, "20.0.100.70"));
+		Assert.assertEquals("BR", getCountry(database, "200.1.2.3"));
+		Assert.assertEquals("DE", getCountry(database, "2001:db8::1"));
+		Assert.assertEquals("DE", getCountry(database, "2001:db8:0:ffff:ffff:ffff:ffff:ffff"));
+		Assert.assertEquals("JP", getCountry(database, "fe80::1"));
+
+		Assert.assertNull(database.find("20.0.100.90"));
+		Assert.assertNull(database.find("20.0.100.69"));
+		Assert.assertNull(database.find("1.1.1.1"));
+		Assert.assertNull(database.find("2001:db8:1::"));
+		Assert.assertNull(database.find("::1"));
+		Assert.assertNull(database.find(""));
+	}
+
+	private RangerGeolocationDatabase createDatabase() {
+		RangerGeolocationDatabase ret = new RangerGeolocationDatabase();
+
+		ret.setMetadata(GeolocationMetadata.create(new String[] { "FROM_IP", "TO_IP", "COUNTRY_CODE", "COUNTRY_NAME" }, 1));
+
+		// not in the order of addresses
+		ret.add(create("20.0.100.100", "20.0.100.109", "US"));
+		ret.add(create("20.0.100.80", "20.0.100.89", "CA"));
+		ret.add(create("fe80::", "fe80::ffff", "JP"));
+		ret.add(create("200.0.0.0", "200.255.255.255", "BR"));
+		ret.add(create("20.0.100.70", "20.0.100.73", "IN"));
+		ret.add(create("2001:db8::", "2001:db8:0:ffff:ffff:ffff:ffff:ffff", "DE"));
+
+		ret.optimize();
+
+		return ret;
+	}
+
+	private RangerGeolocationData create(String from, String to, String countryCode) {
+		RangerGeolocationData ret = RangerGeolocationData.create(new String[] { from, to, countryCode, countryCode + "-name" }, 0, true);
+
+		Assert.assertNotNull(ret);
+
+		return ret;
+	}
+
+	private String getCountry(RangerGeolocationDatabase database, String ipAddress) {
+		return database.getValue(database.find(ipAddress), "COUNTRY_CODE");
+	}
+}
@@ -35,11 +35,13 @@ import org.apache.ranger.authorization.hadoop.config.RangerConfiguration;
 import org.apache.ranger.plugin.audit.RangerDefaultAuditHandler;
 import org.apache.ranger.plugin.contextenricher.RangerTagForEval;
 import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerPolicyDelta;
 import org.apache.ranger.plugin.model.RangerServiceDef;
 import org.apache.ranger.plugin.model.RangerValiditySchedule;
 import org.apache.ranger.plugin.model.validation.RangerValidityScheduleValidator;
 import org.apache.ranger.plugin.model.validation.ValidationFailureDetails;
 import org.apache.ranger.plugin.policyengine.TestPolicyEngine.PolicyEngineTestCase.TestData;
+import org.apache.ranger.plugin.policyevaluator.RangerPolicyEvaluator;
 import org.apache.ranger.plugin.policyevaluator.RangerValidityScheduleEvaluator;
 import org.apache.ranger.plugin.util.RangerAccessRequestUtil;
 import org.apache.ranger.plugin.util.RangerRequestedResources;
@@ -56,12 +58,16 @@ import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.TimeZone;
+import java.util.TreeSet;
 
 import static org.junit.Assert.*;
 
@@ -164,6 +170,10 @@ public class TestPolicyEngine {
 				"                <name>ranger.policyengine.trie.builder.thread.count</name>\n" +
 				"                <value>3</value>\n" +
 				"        </property>\n" +
+				"        <property>\n" +
+				"                <name>ranger.policyengine.init.parallelism</name>\n" +
+				"                <value>4</value>\n" +
+				"        </property>\n" +
                 "</configuration>\n");
 		writer.close();
 
@@ -219,7 +229,7 @@ public class TestPolicyEngine {
 
 	@Test
 	public void testPolicyEngine_hiveForTag() {
-		String[] hiveTestResourceFiles = { "/policyengine/test_policyengine_tag_hive.json" };
+		String[] hiveTestResourceFiles = { "/policyengine/test_policyengine_tag_hdfs.json" };
 
 		runTestsFromResourceFiles(hiveTestResourceFiles);
 	}
@@ -333,6 +343,175 @@ public class TestPolicyEngine {
 		runTestsFromResourceFiles(resourceFiles);
 	}
 
+	@Test
+	public void testPolicyEngine_withPolicyDeltas() {
+		String[] resourceFiles = { "/policyengine/test_policyengine_hdfs.json",
+		                           "/policyengine/test_policyengine_hive.json",
+		                           "/policyengine/test_policyengine_hive_mask_filter.json",
+		                           "/policyengine/test_policyengine_hbase.json",
+		                           "/policyengine/test_policyengine_tag_hdfs.json" };
+
+		for (boolean optimizeTrieForRetrieval : new boolean[] { false, true }) {
+			for (String resourceName : resourceFiles) {
+				InputStream       inStream = this.getClass().getResourceAsStream(resourceName);
+				InputStreamReader reader   = new InputStreamReader(inStream);
+
+				runTests(reader, resourceName, true, optimizeTrieForRetrieval, false);
+			}
+		}
+	}
+
+	@Test
+	public void testPolicyEngine_withDecisionCache() {
+		String[] resourceFiles = { "/policyengine/test_policyengine_hive.json",
+		                           "/policyengine/test_policyengine_hbase.json",
+		                           "/policyengine/test_policyengine_owner.json",
+		                           "/policyengine/test_policyengine_atlas.json" };
+
+		for (String resourceName : resourceFiles) {
+			InputStream       inStream = this.getClass().getResourceAsStream(resourceName);
+			InputStreamReader reader   = new InputStreamReader(inStream);
+
+			runTests(reader, resourceName, false, false, true);
+		}
+	}
+
+	@Test
+	public void testPolicyEngine_isAccessDecisionCacheable() {
+		assertTrue(createPolicyEngine("/policyengine/test_policyengine_hive.json").isAccessDecisionCacheable());
+		assertFalse("policy conditions", createPolicyEngine("/policyengine/test_policyengine_conditions.json").isAccessDecisionCacheable());
+		assertFalse("tag policies", createPolicyEngine("/policyengine/test_policyengine_tag_hive_mask.json").isAccessDecisionCacheable());
+	}
+
+	@Test
+	public void testPolicyEngine_userAccessView() {
+		RangerPolicyEngineImpl policyEngine = createPolicyEngine("/policyengine/test_policyengine_hive.json");
+		String[]               databases    = { "default", "db1", "db2" };
+		String[]               tables       = { null, "test1", "test2", "tbl1", "tmp", "other" };
+		String[]               accessTypes  = { RangerPolicyEngine.ANY_ACCESS, "select", "create" };
+		String[][]             users        = { { "user1" }, { "user3", "group1" }, { "user3" }, { "admin", "admin" } };
+
+		for (String[] userAndGroups : users) {
+			String                  user       = userAndGroups[0];
+			Set<String>             userGroups = new HashSet<>(Arrays.asList(userAndGroups).subList(1, userAndGroups.length));
+			RangerUserAccessView    view       = new RangerUserAccessView(policyEngine, user, userGroups);
+			List<RangerAccessRequest> requests = new ArrayList<>();
+
+			for (int i = 0; i < 2; i++) { // second round is answered from decisions of the view
+				for (String database : databases) {
+					for (String table : tables) {
+						for (String accessType : accessTypes) {
+							RangerAccessResourceImpl resource = new RangerAccessResourceImpl();
+
+							resource.setValue("database", database);
+
+							if (table != null) {
+								resource.setValue("table", table);
+							}
+
+							requests.add(new RangerAccessRequestImpl(resource, accessType, user, userGroups));
+						}
+					}
+				}
+			}
+
+			BitSet allowed = view.isAccessAllowed(requests);
+
+			for (int i = 0; i < requests.size(); i++) {
+				RangerAccessRequest request = requests.get(i);
+				RangerAccessRequest copy    = new RangerAccessRequestImpl(request.getResource(), request.getAccessType(), user, userGroups);
+
+				policyEngine.preProcess(copy);
+
+				RangerAccessResult expected = policyEngine.evaluatePolicies(copy, RangerPolicy.POLICY_TYPE_ACCESS, null);
+
+				assertEquals("isAllowed mismatched! - " + copy, expected.getIsAllowed(), allowed.get(i));
+			}
+
+			assertTrue(view.isFor(policyEngine, user, new TreeSet<>(userGroups)));
+			assertFalse(view.isFor(policyEngine, user + "_other", userGroups));
+		}
+	}
+
+	@Test
+	public void testPolicyRepository_withManyPolicies() {
+		// enough policies for evaluators to be built by multiple tasks
+		final int            policyCount = 1000;
+		InputStream          inStream    = this.getClass().getResourceAsStream("/policyengine/test_policyengine_hive.json");
+		PolicyEngineTestCase testCase    = gsonBuilder.fromJson(new InputStreamReader(inStream), PolicyEngineTestCase.class);
+		List<RangerPolicy>   policies    = new ArrayList<>();
+
+		for (int i = 0; i < policyCount; i++) {
+			RangerPolicy                  policy = new RangerPolicy();
+			RangerPolicy.RangerPolicyItem item   = new RangerPolicy.RangerPolicyItem();
+
+			policy.setId((long) i);
+			policy.setName("policy-" + i);
+			policy.setService(testCase.serviceName);
+			policy.getResources().put("database", new RangerPolicy.RangerPolicyResource("db_" + i));
+			policy.getResources().put("table", new RangerPolicy.RangerPolicyResource("*"));
+			policy.getResources().put("column", new RangerPolicy.RangerPolicyResource("*"));
+
+			item.getAccesses().add(new RangerPolicy.RangerPolicyItemAccess("select"));
+			item.getUsers().add("user_" + i);
+
+			policy.getPolicyItems().add(item);
+
+			policies.add(policy);
+		}
+
+		ServicePolicies servicePolicies = new ServicePolicies();
+
+		servicePolicies.setServiceName(testCase.serviceName);
+		servicePolicies.setServiceDef(testCase.serviceDef);
+		servicePolicies.setPolicies(policies);
+
+		RangerPolicyRepository      repository = new RangerPolicyRepository("test", servicePolicies, new RangerPolicyEngineOptions());
+		List<RangerPolicyEvaluator> evaluators = repository.getPolicyEvaluators();
+
+		assertEquals(policyCount, evaluators.size());
+
+		for (int i = 1; i < evaluators.size(); i++) {
+			assertTrue("evaluators not in eval-order", RangerPolicyEvaluator.EVAL_ORDER_COMPARATOR.compare(evaluators.get(i - 1), evaluators.get(i)) <= 0);
+		}
+
+		for (int i = 0; i < policyCount; i += 97) {
+			RangerAccessResourceImpl resource = new RangerAccessResourceImpl();
+
+			resource.setServiceDef(testCase.serviceDef);
+
+			resource.setValue("database", "db_" + i);
+			resource.setValue("table", "tbl_1");
+
+			List<RangerPolicyEvaluator> matches = repository.getLikelyMatchPolicyEvaluators(resource);
+
+			assertEquals(1, matches.size());
+			assertEquals(Long.valueOf(i), matches.get(0).getPolicy().getId());
+		}
+	}
+
+	private RangerPolicyEngineImpl createPolicyEngine(String resourceName) {
+		InputStream          inStream = this.getClass().getResourceAsStream(resourceName);
+		PolicyEngineTestCase testCase = gsonBuilder.fromJson(new InputStreamReader(inStream), PolicyEngineTestCase.class);
+		ServicePolicies      servicePolicies = new ServicePolicies();
+
+		servicePolicies.setServiceName(testCase.serviceName);
+		servicePolicies.setServiceDef(testCase.serviceDef);
+		servicePolicies.setPolicies(testCase.policies);
+
+		if (testCase.tagPolicyInfo != null) {
+			ServicePolicies.TagPolicies tagPolicies = new ServicePolicies.TagPolicies();
+
+			tagPolicies.setServiceName(testCase.tagPolicyInfo.serviceName);
+			tagPolicies.setServiceDef(testCase.tagPolicyInfo.serviceDef);
+			tagPolicies.setPolicies(testCase.tagPolicyInfo.tagPolicies);
+
+			servicePolicies.setTagPolicies(tagPolicies);
+		}
+
+		return new RangerPolicyEngineImpl(resourceName, servicePolicies, new RangerPolicyEngineOptions());
+	}
+
 	private void runTestsFromResourceFiles(String[] resourceNames) {
 		for(String resourceName : resourceNames) {
 			InputStream inStream = this.getClass().getResourceAsStream(resourceName);
@@ -343,6 +522,10 @@ public class TestPolicyEngine {
 	}
 
 	private void runTests(InputStreamReader reader, String testName) {
+		runTests(reader, testName, false, false, false);
+	}
+
+	private void runTests(InputStreamReader reader, String testName, boolean withPolicyDeltas, boolean optimizeTrieForRetrieval, boolean withDecisionCache) {
 		PolicyEngineTestCase testCase = gsonBuilder.fromJson(reader, PolicyEngineTestCase.class);
 
 		assertTrue("invalid input: " + testName, testCase != null && testCase.serviceDef != null && testCase.policies != null && testCase.tests != null);
@@ -372,7 +555,7 @@ public class TestPolicyEngine {
 
 		policyEngineOptions.disableTagPolicyEvaluation = false;
 		policyEngineOptions.disableAccessEvaluationWithPolicyACLSummary = false;
-		policyEngineOptions.optimizeTrieForRetrieval = false;
+		policyEngineOptions.optimizeTrieForRetrieval = optimizeTrieForRetrieval;
 
 		boolean useForwardedIPAddress = RangerConfiguration.getInstance().getBoolean("ranger.plugin.hive.use.x-forwarded-for.ipaddress", false);
 		String trustedProxyAddressString = RangerConfiguration.getInstance().get("ranger.plugin.hive.trusted.proxy.ipaddresses");
@@ -382,11 +565,19 @@ public class TestPolicyEngine {
 				trustedProxyAddresses[i] = trustedProxyAddresses[i].trim();
 			}
 		}
-		RangerPolicyEngine policyEngine = new RangerPolicyEngineImpl(testName, servicePolicies, policyEngineOptions);
+		RangerPolicyEngine policyEngine = withPolicyDeltas ? createPolicyEngineWithDeltas(testName, servicePolicies, policyEngineOptions) : new RangerPolicyEngineImpl(testName, servicePolicies, policyEngineOptions);
 
 		policyEngine.setUseForwardedIPAddress(useForwardedIPAddress);
 		policyEngine.setTrustedProxyAddresses(trustedProxyAddresses);
 
+		RangerAccessDecisionCache decisionCache = null;
+
+		if (withDecisionCache) {
+			assertTrue("decisions not cacheable: " + testName, ((RangerPolicyEngineImpl) policyEngine).isAccessDecisionCacheable());
+
+			decisionCache = new RangerAccessDecisionCache(policyEngine, 1000);
+		}
+
 		policyEngineOptions.disableAccessEvaluationWithPolicyACLSummary = true;
 		policyEngineOptions.optimizeTrieForRetrieval = false;
 
@@ -399,6 +590,9 @@ public class TestPolicyEngine {
 
 		RangerAccessRequest request = null;
 
+		List<RangerAccessRequest> batchRequests = new ArrayList<>();
+		List<TestData>            batchTests    = new ArrayList<>();
+
 		for(TestData test : testCase.tests) {
 			request = test.request;
 			if ((requestCount++ % 10) == 1) {
@@ -483,6 +677,21 @@ public class TestPolicyEngine {
 				assertEquals("isAllowed mismatched! - " + test.name, expected.getIsAllowed(), result.getIsAllowed());
 				assertEquals("isAudited mismatched! - " + test.name, expected.getIsAudited(), result.getIsAudited());
 				assertEquals("policyId mismatched! - " + test.name, expected.getPolicyId(), result.getPolicyId());
+
+				batchRequests.add(request);
+				batchTests.add(test);
+
+				if (decisionCache != null) {
+					for (int i = 0; i < 2; i++) { // first call might populate the cache, the next one must be served from it
+						result = decisionCache.evaluatePolicies(request, auditHandler);
+
+						assertNotNull("result was null! - " + test.name, result);
+						assertSame("request mismatched! - " + test.name, request, result.getAccessRequest());
+						assertEquals("isAllowed mismatched! - " + test.name, expected.getIsAllowed(), result.getIsAllowed());
+						assertEquals("isAudited mismatched! - " + test.name, expected.getIsAudited(), result.getIsAudited());
+						assertEquals("policyId mismatched! - " + test.name, expected.getPolicyId(), result.getPolicyId());
+					}
+				}
 			}
 
 			if(test.dataMaskResult != null) {
@@ -517,6 +726,78 @@ public class TestPolicyEngine {
 				assertEquals("deniedGroups mismatched! - " + test.name, expected.getDeniedGroups(), result.getDeniedGroups());
 			}
 		}
+
+		if (decisionCache != null) {
+			assertTrue("no decisions served from cache: " + testName, decisionCache.getCache().getHitCount() > 0);
+		}
+
+		// all requests evaluated in a single batch must get the same results as when evaluated one at a time
+		List<RangerAccessResult> batchResults = new ArrayList<>(policyEngine.evaluatePolicies(batchRequests, RangerPolicy.POLICY_TYPE_ACCESS, null));
+
+		assertEquals("batch result count mismatched! - " + testName, batchRequests.size(), batchResults.size());
+
+		for (int i = 0; i < batchResults.size(); i++) {
+			TestData           test     = batchTests.get(i);
+			RangerAccessResult expected = test.result;
+			RangerAccessResult result   = batchResults.get(i);
+
+			assertNotNull("batch result was null! - " + test.name, result);
+			assertSame("batch request mismatched! - " + test.name, batchRequests.get(i), result.getAccessRequest());
+			assertEquals("batch isAllowed mismatched! - " + test.name, expected.getIsAllowed(), result.getIsAllowed());
+			assertEquals("batch isAudited mismatched! - " + test.name, expected.getIsAudited(), result.getIsAudited());
+			assertEquals("batch policyId mismatched! - " + test.name, expected.getPolicyId(), result.getPolicyId());
+		}
+	}
+
+	// builds the engine for the given policies from an engine having half of them, by adding, deleting and re-adding the rest with deltas
+	private static RangerPolicyEngine createPolicyEngineWithDeltas(String appId, ServicePolicies servicePolicies, RangerPolicyEngineOptions options) {
+		List<RangerPolicy>      policies         = servicePolicies.getPolicies();
+		List<RangerPolicy>      retainedPolicies = new ArrayList<>();
+		List<RangerPolicyDelta> createDeltas     = new ArrayList<>();
+		List<RangerPolicyDelta> deleteDeltas     = new ArrayList<>();
+
+		for (int i = 0; i < policies.size(); i++) {
+			RangerPolicy policy = policies.get(i);
+
+			if (i % 2 == 0) {
+				retainedPolicies.add(policy);
+			} else {
+				createDeltas.add(new RangerPolicyDelta(policy.getId(), RangerPolicyDelta.CHANGE_TYPE_POLICY_CREATE, 2L, policy));
+				deleteDeltas.add(new RangerPolicyDelta(policy.getId(), RangerPolicyDelta.CHANGE_TYPE_POLICY_DELETE, 3L, null));
+			}
+		}
+
+		List<RangerPolicyDelta> recreateDeltas = new ArrayList<>(createDeltas);
+
+		if (!retainedPolicies.isEmpty()) {
+			RangerPolicy policy = retainedPolicies.get(0);
+
+			recreateDeltas.add(new RangerPolicyDelta(policy.getId(), RangerPolicyDelta.CHANGE_TYPE_POLICY_UPDATE, 4L, policy));
+		}
+
+		RangerPolicyEngineImpl engine = new RangerPolicyEngineImpl(appId, createServicePolicies(servicePolicies, retainedPolicies, null, 1L), options);
+
+		engine = new RangerPolicyEngineImpl(engine, createServicePolicies(servicePolicies, policies, createDeltas, 2L), options);
+		engine = new RangerPolicyEngineImpl(engine, createServicePolicies(servicePolicies, retainedPolicies, deleteDeltas, 3L), options);
+		engine = new RangerPolicyEngineImpl(engine, createServicePolicies(servicePolicies, policies, recreateDeltas, 4L), options);
+
+		assertEquals("policyVersion mismatched! - " + appId, 4L, engine.getPolicyVersion());
+
+		return engine;
+	}
+
+	private static ServicePolicies createServicePolicies(ServicePolicies servicePolicies, List<RangerPolicy> policies, List<RangerPolicyDelta> policyDeltas, Long policyVersion) {
+		ServicePolicies ret = new ServicePolicies();
+
+		ret.setServiceName(servicePolicies.getServiceName());
+		ret.setServiceDef(servicePolicies.getServiceDef());
+		ret.setAuditMode(servicePolicies.getAuditMode());
+		ret.setTagPolicies(servicePolicies.getTagPolicies());
+		ret.setPolicyVersion(policyVersion);
+		ret.setPolicies(policies);
+		ret.setPolicyDeltas(policyDeltas);
+
+		return ret;
 	}
 
 	static class PolicyEngineTestCase {
@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.policyengine;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestRangerConcurrentCache {
+
+	@Test
+	public void testHitMissAndEvictionCounts() {
+		RangerConcurrentCache<String, String> cache = new RangerConcurrentCache<>(4);
+
+		for (int i = 0; i < 4; i++) {
+			cache.put(String.valueOf(i), "value-" + i);
+		}
+
+		assertEquals(4, cache.size());
+		assertEquals("value-0", cache.get("0"));
+		assertNull(cache.get("unknown"));
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+		assertEquals(0, cache.getEvictionCount());
+
+		cache.put("4", "value-4");
+
+		assertEquals(4, cache.size());
+		assertEquals(1, cache.getEvictionCount());
+		assertTrue("recently referenced entry must survive eviction", cache.containsKey("0"));
+		assertFalse("least recently added, unreferenced entry must be evicted", cache.containsKey("1"));
+		assertTrue(cache.containsKey("4"));
+	}
+
+	@Test
+	public void testReplaceAndRemove() {
+		RangerConcurrentCache<String, String> cache = new RangerConcurrentCache<>(2);
+
+		cache.put("a", "1");
+		cache.put("a", "2");
+		cache.put(null, "3");
+		cache.put("b", null);
+
+		assertEquals(1, cache.size());
+		assertEquals("2", cache.get("a"));
+		assertEquals("2", cache.remove("a"));
+		assertEquals(0, cache.size());
+
+		for (int i = 0; i < 10; i++) {
+			cache.put(String.valueOf(i), String.valueOf(i));
+		}
+
+		assertEquals(2, cache.size());
+		assertEquals(8, cache.getEvictionCount());
+
+		cache.clear();
+
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testRemoveAndPutCycles() {
+		RangerConcurrentCache<String, String> cache = new RangerConcurrentCache<>(10);
+
+		cache.put("x", "x");
+
+		for (int i = 0; i < 1000; i++) {
+			String key = String.valueOf(i % 5);
+
+			cache.put(key, key);
+			cache.remove(key);
+		}
+
+		assertEquals(1, cache.size());
+		assertEquals("x", cache.get("x"));
+		assertEquals(0, cache.getEvictionCount());
+		assertTrue("eviction queue grew to " + cache.getEvictionQueueSize(), cache.getEvictionQueueSize() <= 2 * cache.getMaxSize() + 1);
+
+		cache.clear();
+
+		assertEquals(0, cache.getEvictionQueueSize());
+	}
+
+	@Test
+	public void testConcurrentAccess() throws Exception {
+		final int                                    maxSize  = 100;
+		final RangerConcurrentCache<Integer, Integer> cache   = new RangerConcurrentCache<>(maxSize);
+		final int                                    nThreads = 8;
+		ExecutorService                              executor = Executors.newFixedThreadPool(nThreads);
+		List<Future<?>>                              futures  = new ArrayList<>();
+
+		for (int t = 0; t < nThreads; t++) {
+			final int seed = t;
+
+			futures.add(executor.submit(new Runnable() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 20000; i++) {
+						Integer key   = (i * 31 + seed) % 1000;
+						Integer value = cache.get(key);
+
+						if (value == null) {
+							cache.put(key, key);
+						} else {
+							assertEquals(key, value);
+						}
+					}
+				}
+			}));
+		}
+
+		for (Future<?> future : futures) {
+			future.get();
+		}
+
+		executor.shutdown();
+		executor.awaitTermination(10, TimeUnit.SECONDS);
+
+		cache.put(-1, -1); // a single-threaded put completes any eviction skipped while other threads were sweeping
+
+		assertTrue("size " + cache.size() + " exceeds maxSize " + maxSize, cache.size() <= maxSize);
+		assertEquals((long) nThreads * 20000, cache.getHitCount() + cache.getMissCount());
+		assertTrue(cache.getEvictionCount() > 0);
+	}
+}
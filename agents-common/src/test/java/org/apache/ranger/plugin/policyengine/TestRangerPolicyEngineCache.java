@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.policyengine;
+
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerServiceDef;
+import org.apache.ranger.plugin.store.ServiceStore;
+import org.apache.ranger.plugin.util.ServicePolicies;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TestRangerPolicyEngineCache {
+	private static final String SERVICE_NAME = "dev_test";
+
+	private final List<Runnable>                 deferredTasks = new ArrayList<>();
+	private       boolean                        deferTasks;
+	private       ServiceStore                   svcStore;
+	private       RangerPolicyEngineOptions      options;
+	private       RangerPolicyEngineCacheMetrics metrics;
+	private       RangerPolicyEngineCache        cache;
+
+	@Before
+	public void setUp() {
+		Executor executor = new Executor() {
+			@Override
+			public void execute(Runnable task) {
+				if (deferTasks) {
+					deferredTasks.add(task);
+				} else {
+					task.run();
+				}
+			}
+		};
+
+		svcStore = mock(ServiceStore.class);
+		options  = new RangerPolicyEngineOptions();
+		metrics  = new RangerPolicyEngineCacheMetrics();
+		cache    = new RangerPolicyEngineCache(executor, metrics);
+
+		options.disableContextEnrichers = true;
+		options.disableCustomConditions = true;
+	}
+
+	@Test
+	public void testServesCurrentEngineDuringBuild() throws Exception {
+		setPolicyVersion(1L);
+
+		RangerPolicyEngine engine1 = cache.getPolicyEngine(SERVICE_NAME, svcStore, options, false);
+
+		assertEquals("first lookup must wait for the engine", 1L, engine1.getPolicyVersion());
+		assertSame(engine1, cache.getPolicyEngine(SERVICE_NAME, svcStore, options, false));
+
+		setPolicyVersion(2L);
+		deferTasks = true;
+
+		assertSame("current engine must be served while the new one is built", engine1, cache.getPolicyEngine(SERVICE_NAME, svcStore, options, false));
+		assertSame(engine1, cache.getPolicyEngine(SERVICE_NAME, svcStore, options, false));
+		assertEquals("only one build must be started for a version", 1, deferredTasks.size());
+
+		deferredTasks.remove(0).run();
+
+		assertEquals(2L, cache.getPolicyEngine(SERVICE_NAME, svcStore, options, false).getPolicyVersion());
+		assertEquals(2, metrics.getBuildCount());
+		assertEquals(1, metrics.getWaitCount());
+	}
+
+	@Test
+	public void testWaitForUpdate() throws Exception {
+		setPolicyVersion(1L);
+
+		RangerPolicyEngine engine1 = cache.getPolicyEngine(SERVICE_NAME, svcStore, options, true);
+
+		setPolicyVersion(2L);
+
+		RangerPolicyEngine engine2 = cache.getPolicyEngine(SERVICE_NAME, svcStore, options, true);
+
+		assertEquals(1L, engine1.getPolicyVersion());
+		assertEquals(2L, engine2.getPolicyVersion());
+		assertSame(engine2, cache.getPolicyEngine(SERVICE_NAME, svcStore, options, true));
+		assertEquals(2, metrics.getBuildCount());
+		assertEquals(2, metrics.getWaitCount());
+		assertEquals(0, metrics.getFailedBuildCount());
+	}
+
+	private void setPolicyVersion(long policyVersion) throws Exception {
+		RangerServiceDef serviceDef = new RangerServiceDef();
+		ServicePolicies  policies   = new ServicePolicies();
+
+		serviceDef.setName("test");
+		policies.setServiceName(SERVICE_NAME);
+		policies.setServiceDef(serviceDef);
+		policies.setPolicyVersion(policyVersion);
+		policies.setPolicies(new ArrayList<RangerPolicy>());
+
+		when(svcStore.getServicePoliciesIfUpdated(eq(SERVICE_NAME), anyLong())).thenReturn(policies);
+		when(svcStore.getServicePoliciesIfUpdated(SERVICE_NAME, policyVersion)).thenReturn(null);
+	}
+}
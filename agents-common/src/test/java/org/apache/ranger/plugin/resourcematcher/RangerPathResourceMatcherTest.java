@@ -26,6 +26,9 @@ import org.junit.Test;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Random;
+
+import org.apache.commons.io.IOCase;
 
 import static org.junit.Assert.assertEquals;
 
@@ -48,6 +51,11 @@ public class RangerPathResourceMatcherTest {
             { "/app/hbase/test.tbl",  "/app/hive/test*",   true, false, false, "user" },
             { "/app/hive/test.db",    "/app/hive/test.db", true, false, true, "user" },
             { "/app/hbase/test.tbl",  "/app/hive/test.db", true, false, false, "user" },
+            { "/app/hive/test.db",    "/app/h?ve",         true, true,  true, "user" },
+            { "/app/hive/test.db",    "/app/h?ve/",        true, true,  true, "user" },
+            { "/app/hbase/test.tbl",  "/app/h?ve",         true, true,  false, "user" },
+            { "/app//hive/test.db/",  "/*/hive/*.db",      true, true,  true, "user" },
+            { "/app/hive/test.db",    "/*/test",           true, true,  false, "user" },
     };
 
     @Test
@@ -68,6 +76,41 @@ public class RangerPathResourceMatcherTest {
         }
     }
 
+    @Test
+    public void testRecursiveWildcardPattern() {
+        // compiled patterns must match the same paths as the reference implementation, which matches each path prefix
+        String[] patterns = { "/a*", "/a/*/c", "*b?", "/a/b/", "/?/*", "*/*", "a*b*c", "/A/b*", "/*a?*/c*", "?", "/", "*//*" };
+        Random   random   = new Random(0);
+        char[]   chars    = { '/', '/', 'a', 'b', 'c', 'A', 'B' };
+
+        for (int i = 0; i < 20000; i++) {
+            StringBuilder path = new StringBuilder();
+            int           len  = random.nextInt(12);
+
+            for (int j = 0; j < len; j++) {
+                path.append(chars[random.nextInt(chars.length)]);
+            }
+
+            for (String pattern : patterns) {
+                for (IOCase caseSensitivity : new IOCase[] { IOCase.SENSITIVE, IOCase.INSENSITIVE }) {
+                    RecursiveWildcardPattern compiled = RecursiveWildcardPattern.compile(pattern, '/', caseSensitivity);
+
+                    assertEquals("path=" + path + ", pattern=" + pattern + ", case=" + caseSensitivity,
+                                 RangerPathResourceMatcher.isRecursiveWildCardMatch(path.toString(), pattern, '/', caseSensitivity),
+                                 compiled.isMatch(path.toString()));
+                }
+            }
+        }
+
+        StringBuilder longPattern = new StringBuilder("/data");
+
+        for (int i = 0; i < RecursiveWildcardPattern.MAX_NFA_TOKENS; i++) {
+            longPattern.append('?');
+        }
+
+        assertEquals(null, RecursiveWildcardPattern.compile(longPattern.append('*').toString(), '/', IOCase.SENSITIVE));
+    }
+
     String getMessage(Object[] row) {
         return String.format("Resource=%s, Policy=%s, optWildcard=%s, recursive=%s, result=%s",
                 (String)row[0], (String)row[1], (boolean)row[2], (boolean)row[3], (boolean)row[4]);
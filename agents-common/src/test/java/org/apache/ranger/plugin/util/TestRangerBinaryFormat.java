@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerPolicyDelta;
+import org.apache.ranger.plugin.model.RangerServiceDef;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestRangerBinaryFormat {
+	private static final String[] RESOURCE_FILES = { "/policyengine/test_policyengine_hive.json",
+	                                                 "/policyengine/test_policyengine_hive_mask_filter.json",
+	                                                 "/policyengine/test_policyengine_tag_hive.json",
+	                                                 "/policyengine/test_policyengine_temporary.json",
+	                                                 "/policyengine/test_policyengine_conditions.json" };
+
+	private final Gson gson = new GsonBuilder().setDateFormat("yyyyMMdd-HH:mm:ss.SSS-Z").create();
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		for (String resourceFile : RESOURCE_FILES) {
+			ServicePolicies servicePolicies = loadServicePolicies(resourceFile);
+			byte[]          json            = gson.toJson(servicePolicies).getBytes(StandardCharsets.UTF_8);
+			byte[]          binary          = toBinary(servicePolicies);
+			ServicePolicies copy            = RangerBinaryFormat.read(new ByteArrayInputStream(binary), ServicePolicies.class);
+
+			assertEquals(resourceFile, gson.toJson(servicePolicies), gson.toJson(copy));
+			assertEquals(resourceFile, servicePolicies.getPolicyUpdateTime(), copy.getPolicyUpdateTime());
+			assertTrue(resourceFile + ": binary size " + binary.length + " is not less than JSON size " + json.length, binary.length < json.length);
+		}
+	}
+
+	@Test
+	public void testRepeatedStringsAreShared() throws Exception {
+		ServicePolicies servicePolicies = loadServicePolicies("/policyengine/test_policyengine_hive.json");
+		ServicePolicies copy            = RangerBinaryFormat.read(new ByteArrayInputStream(toBinary(servicePolicies)), ServicePolicies.class);
+		List<String>    accessTypes     = new ArrayList<>();
+
+		for (RangerPolicy policy : copy.getPolicies()) {
+			for (RangerPolicy.RangerPolicyItem policyItem : policy.getPolicyItems()) {
+				for (RangerPolicy.RangerPolicyItemAccess access : policyItem.getAccesses()) {
+					if ("select".equals(access.getType())) {
+						accessTypes.add(access.getType());
+					}
+				}
+			}
+		}
+
+		assertTrue(accessTypes.size() > 1);
+
+		for (String accessType : accessTypes) {
+			assertSame(accessTypes.get(0), accessType);
+		}
+	}
+
+	@Test
+	public void testPolicyDeltasAndSpecialValues() throws Exception {
+		RangerPolicy policy = new RangerPolicy();
+
+		policy.setId(-5L);
+		policy.setName("policy with ünicode and a long description");
+		policy.setDescription(new String(new char[1000]).replace('\0', 'x'));
+		policy.setVersion(Long.MAX_VALUE);
+		policy.setPolicyPriority(Integer.MIN_VALUE);
+
+		ServicePolicies servicePolicies = new ServicePolicies();
+
+		servicePolicies.setServiceName("svc");
+		servicePolicies.setPolicyVersion(10L);
+		servicePolicies.setPolicyUpdateTime(new Date());
+		servicePolicies.setPolicies(new ArrayList<RangerPolicy>());
+		servicePolicies.setPolicyDeltas(Arrays.asList(new RangerPolicyDelta(1L, RangerPolicyDelta.CHANGE_TYPE_POLICY_CREATE, 9L, policy),
+		                                              new RangerPolicyDelta(2L, RangerPolicyDelta.CHANGE_TYPE_POLICY_DELETE, 10L, policy)));
+
+		ServicePolicies copy = RangerBinaryFormat.read(new ByteArrayInputStream(toBinary(servicePolicies)), ServicePolicies.class);
+
+		assertEquals(gson.toJson(servicePolicies), gson.toJson(copy));
+		assertEquals(policy.getDescription(), copy.getPolicyDeltas().get(1).getPolicy().getDescription());
+	}
+
+	@Test
+	public void testFormatDetection() throws Exception {
+		ServicePolicies servicePolicies = loadServicePolicies("/policyengine/test_policyengine_hive.json");
+		InputStream     binary          = new BufferedInputStream(new ByteArrayInputStream(toBinary(servicePolicies)));
+		InputStream     json            = new BufferedInputStream(new ByteArrayInputStream(gson.toJson(servicePolicies).getBytes(StandardCharsets.UTF_8)));
+
+		assertTrue(RangerBinaryFormat.isBinaryFormat(binary));
+		assertFalse(RangerBinaryFormat.isBinaryFormat(json));
+		assertFalse(RangerBinaryFormat.isBinaryFormat(new BufferedInputStream(new ByteArrayInputStream(new byte[2]))));
+
+		// detection must not consume the stream
+		assertEquals(servicePolicies.getPolicies().size(), RangerBinaryFormat.read(binary, ServicePolicies.class).getPolicies().size());
+	}
+
+	@Test(expected = IOException.class)
+	public void testJsonIsNotReadAsBinaryFormat() throws Exception {
+		ServicePolicies servicePolicies = loadServicePolicies("/policyengine/test_policyengine_hive.json");
+
+		RangerBinaryFormat.read(new ByteArrayInputStream(gson.toJson(servicePolicies).getBytes(StandardCharsets.UTF_8)), ServicePolicies.class);
+	}
+
+	private byte[] toBinary(ServicePolicies servicePolicies) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		RangerBinaryFormat.write(servicePolicies, ServicePolicies.class, out);
+
+		return out.toByteArray();
+	}
+
+	private ServicePolicies loadServicePolicies(String resourceFile) {
+		InputStreamReader reader   = new InputStreamReader(this.getClass().getResourceAsStream(resourceFile), StandardCharsets.UTF_8);
+		PoliciesTestCase  testCase = gson.fromJson(reader, PoliciesTestCase.class);
+		ServicePolicies   ret      = new ServicePolicies();
+
+		ret.setServiceName(testCase.serviceName);
+		ret.setServiceDef(testCase.serviceDef);
+		ret.setPolicies(testCase.policies);
+		ret.setPolicyVersion(100L);
+		ret.setPolicyUpdateTime(new Date());
+
+		if (testCase.tagPolicyInfo != null) {
+			ServicePolicies.TagPolicies tagPolicies = new ServicePolicies.TagPolicies();
+
+			tagPolicies.setServiceName(testCase.tagPolicyInfo.serviceName);
+			tagPolicies.setServiceDef(testCase.tagPolicyInfo.serviceDef);
+			tagPolicies.setPolicies(testCase.tagPolicyInfo.tagPolicies);
+			tagPolicies.setPolicyVersion(200L);
+
+			ret.setTagPolicies(tagPolicies);
+		}
+
+		return ret;
+	}
+
+	static class PoliciesTestCase {
+		public String             serviceName;
+		public RangerServiceDef   serviceDef;
+		public List<RangerPolicy> policies;
+		public TagPolicyInfo      tagPolicyInfo;
+
+		static class TagPolicyInfo {
+			public String             serviceName;
+			public RangerServiceDef   serviceDef;
+			public List<RangerPolicy> tagPolicies;
+		}
+	}
+}
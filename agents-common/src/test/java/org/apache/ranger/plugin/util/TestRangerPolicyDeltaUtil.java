@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerPolicyDelta;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class TestRangerPolicyDeltaUtil {
+
+	@Test
+	public void testComputeAndApplyDeltas() {
+		RangerPolicy p1 = createPolicy(1L, 1L);
+		RangerPolicy p2 = createPolicy(2L, 1L);
+		RangerPolicy p3 = createPolicy(3L, 1L);
+
+		List<RangerPolicy> oldPolicies = Arrays.asList(p1, p2, p3);
+
+		RangerPolicy p2Updated = createPolicy(2L, 2L);
+		RangerPolicy p4        = createPolicy(4L, 1L);
+
+		List<RangerPolicy> newPolicies = Arrays.asList(p1, p2Updated, p4);
+
+		List<RangerPolicyDelta> deltas = RangerPolicyDeltaUtil.computeDeltas(oldPolicies, newPolicies, 10L);
+
+		assertEquals(3, deltas.size());
+		assertEquals(RangerPolicyDelta.CHANGE_TYPE_POLICY_UPDATE, changeTypeOf(deltas, 2L));
+		assertEquals(RangerPolicyDelta.CHANGE_TYPE_POLICY_DELETE, changeTypeOf(deltas, 3L));
+		assertEquals(RangerPolicyDelta.CHANGE_TYPE_POLICY_CREATE, changeTypeOf(deltas, 4L));
+
+		List<RangerPolicy> applied = RangerPolicyDeltaUtil.applyDeltas(oldPolicies, deltas);
+
+		assertEquals(3, applied.size());
+		assertSame(p1, applied.get(0));
+		assertSame(p2Updated, applied.get(1));
+		assertSame(p4, applied.get(2));
+		assertEquals(3, oldPolicies.size());
+	}
+
+	@Test
+	public void testCompact() {
+		List<RangerPolicyDelta> deltas = new ArrayList<>();
+
+		deltas.add(new RangerPolicyDelta(1L, RangerPolicyDelta.CHANGE_TYPE_POLICY_CREATE, 2L, createPolicy(1L, 1L)));
+		deltas.add(new RangerPolicyDelta(1L, RangerPolicyDelta.CHANGE_TYPE_POLICY_UPDATE, 3L, createPolicy(1L, 2L)));
+		deltas.add(new RangerPolicyDelta(2L, RangerPolicyDelta.CHANGE_TYPE_POLICY_CREATE, 3L, createPolicy(2L, 1L)));
+		deltas.add(new RangerPolicyDelta(2L, RangerPolicyDelta.CHANGE_TYPE_POLICY_DELETE, 4L, null));
+		deltas.add(new RangerPolicyDelta(3L, RangerPolicyDelta.CHANGE_TYPE_POLICY_UPDATE, 4L, createPolicy(3L, 5L)));
+		deltas.add(new RangerPolicyDelta(3L, RangerPolicyDelta.CHANGE_TYPE_POLICY_DELETE, 5L, null));
+
+		List<RangerPolicyDelta> compacted = RangerPolicyDeltaUtil.compact(deltas);
+
+		assertEquals(2, compacted.size());
+		assertEquals(RangerPolicyDelta.CHANGE_TYPE_POLICY_CREATE, changeTypeOf(compacted, 1L));
+		assertEquals(Long.valueOf(2L), findDelta(compacted, 1L).getPolicy().getVersion());
+		assertNull(findDelta(compacted, 2L));
+		assertEquals(RangerPolicyDelta.CHANGE_TYPE_POLICY_DELETE, changeTypeOf(compacted, 3L));
+	}
+
+	@Test
+	public void testApplyDeltasToServicePolicies() {
+		ServicePolicies lastKnown = new ServicePolicies();
+
+		lastKnown.setServiceName("svc");
+		lastKnown.setPolicyVersion(5L);
+		lastKnown.setPolicies(new ArrayList<>(Arrays.asList(createPolicy(1L, 1L), createPolicy(2L, 1L))));
+
+		ServicePolicies deltas = new ServicePolicies();
+
+		deltas.setServiceName("svc");
+		deltas.setPolicyVersion(6L);
+		deltas.setPolicyDeltas(Arrays.asList(new RangerPolicyDelta(1L, RangerPolicyDelta.CHANGE_TYPE_POLICY_DELETE, 6L, null)));
+
+		ServicePolicies merged = RangerPolicyDeltaUtil.applyDeltas(lastKnown, deltas);
+
+		assertEquals(Long.valueOf(6L), merged.getPolicyVersion());
+		assertEquals(1, merged.getPolicies().size());
+		assertEquals(Long.valueOf(2L), merged.getPolicies().get(0).getId());
+		assertEquals(2, lastKnown.getPolicies().size());
+
+		assertNull(RangerPolicyDeltaUtil.applyDeltas(null, deltas));
+	}
+
+	private static RangerPolicy createPolicy(Long id, Long version) {
+		RangerPolicy ret = new RangerPolicy();
+
+		ret.setId(id);
+		ret.setVersion(version);
+		ret.setName("policy-" + id);
+
+		return ret;
+	}
+
+	private static RangerPolicyDelta findDelta(List<RangerPolicyDelta> deltas, Long policyId) {
+		for (RangerPolicyDelta delta : deltas) {
+			if (policyId.equals(delta.getPolicyId())) {
+				return delta;
+			}
+		}
+
+		return null;
+	}
+
+	private static int changeTypeOf(List<RangerPolicyDelta> deltas, Long policyId) {
+		return findDelta(deltas, policyId).getChangeType();
+	}
+}
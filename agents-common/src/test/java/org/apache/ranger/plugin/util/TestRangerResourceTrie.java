@@ -0,0 +1,205 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+import org.apache.ranger.plugin.model.RangerServiceDef.RangerResourceDef;
+import org.apache.ranger.plugin.policyresourcematcher.RangerPolicyResourceEvaluator;
+import org.apache.ranger.plugin.policyresourcematcher.RangerPolicyResourceMatcher;
+import org.apache.ranger.plugin.resourcematcher.RangerResourceMatcher;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestRangerResourceTrie {
+	private static final String   RESOURCE_NAME = "path";
+	private static final String[] SEGMENTS      = { "/", "a", "ab", "b", "/data", "/tmp", "x", "" };
+
+	private static final Comparator<TestEvaluator> ID_COMPARATOR = new Comparator<TestEvaluator>() {
+		@Override
+		public int compare(TestEvaluator me, TestEvaluator other) {
+			return Long.compare(me.getId(), other.getId());
+		}
+	};
+
+	@Test
+	public void testCopyWithChanges() {
+		for (boolean isOptimizedForRetrieval : new boolean[] { false, true }) {
+			Random              random     = new Random(isOptimizedForRetrieval ? 1 : 2);
+			RangerResourceDef   resourceDef = createResourceDef();
+			List<TestEvaluator> evaluators = new ArrayList<>();
+			long                nextId     = 1;
+
+			for (; nextId <= 200; nextId++) {
+				evaluators.add(createEvaluator(nextId, random));
+			}
+
+			RangerResourceTrie<TestEvaluator> trie = new RangerResourceTrie<>(resourceDef, evaluators, ID_COMPARATOR, isOptimizedForRetrieval);
+
+			for (int round = 0; round < 10; round++) {
+				List<TestEvaluator> removed = new ArrayList<>();
+				List<TestEvaluator> added   = new ArrayList<>();
+
+				for (int i = 0; i < 5; i++) {
+					removed.add(evaluators.remove(random.nextInt(evaluators.size())));
+				}
+
+				for (int i = 0; i < 5; i++) {
+					added.add(createEvaluator(nextId++, random));
+				}
+
+				List<TestEvaluator> oldEvaluators = new ArrayList<>(evaluators);
+
+				oldEvaluators.addAll(removed);
+				evaluators.addAll(added);
+
+				RangerResourceTrie<TestEvaluator> updatedTrie = trie.copyWithChanges(removed, added);
+
+				assertSameLookups(new RangerResourceTrie<>(resourceDef, evaluators, ID_COMPARATOR, isOptimizedForRetrieval), updatedTrie, random);
+				assertSameLookups(new RangerResourceTrie<>(resourceDef, oldEvaluators, ID_COMPARATOR, isOptimizedForRetrieval), trie, random);
+
+				trie = updatedTrie;
+			}
+		}
+	}
+
+	@Test
+	public void testLookupAmongManyChildren() {
+		// first characters beyond the range of cached Character instances, and more children than linear search handles
+		String              firstChars  = "abcdefghijklmnopqrstuvwxyz0123456789\u00e9\u00f1\u03a9\u4e2d";
+		RangerResourceDef   resourceDef = createResourceDef();
+		List<TestEvaluator> evaluators  = new ArrayList<>();
+
+		resourceDef.getMatcherOptions().put("ignoreCase", "true");
+
+		for (int i = 0; i < firstChars.length(); i++) {
+			String value = firstChars.charAt(i) + "_db";
+
+			evaluators.add(new TestEvaluator(i + 1, Collections.singletonMap(RESOURCE_NAME, new RangerPolicyResource(Arrays.asList(value, value + "/tmp*"), Boolean.FALSE, Boolean.FALSE))));
+		}
+
+		for (boolean isOptimizedForRetrieval : new boolean[] { false, true }) {
+			RangerResourceTrie<TestEvaluator> trie = new RangerResourceTrie<>(resourceDef, evaluators, ID_COMPARATOR, isOptimizedForRetrieval);
+
+			for (int i = 0; i < firstChars.length(); i++) {
+				String     value    = firstChars.charAt(i) + "_db";
+				List<Long> expected = Collections.singletonList((long) (i + 1));
+
+				assertEquals(value, expected, getIds(trie.getEvaluatorsForResource(value)));
+				assertEquals(value, expected, getIds(trie.getEvaluatorsForResource(value.toUpperCase())));
+				assertEquals(value, expected, getIds(trie.getEvaluatorsForResource(value + "/tmp/data")));
+				assertEquals(value, Collections.<Long>emptyList(), getIds(trie.getEvaluatorsForResource(value + "x")));
+			}
+
+			assertTrue(trie.toString(), trie.toString().contains("estimatedBytes="));
+		}
+	}
+
+	private static void assertSameLookups(RangerResourceTrie<TestEvaluator> expected, RangerResourceTrie<TestEvaluator> actual, Random random) {
+		for (int i = 0; i < 300; i++) {
+			String resource = createResourceValue(random, false);
+
+			assertEquals("evaluators mismatched for " + resource, getIds(expected.getEvaluatorsForResource(resource)), getIds(actual.getEvaluatorsForResource(resource)));
+		}
+	}
+
+	private static List<Long> getIds(List<TestEvaluator> evaluators) {
+		List<Long> ret = new ArrayList<>();
+
+		if (evaluators != null) {
+			for (TestEvaluator evaluator : evaluators) {
+				ret.add(evaluator.getId());
+			}
+		}
+
+		return ret;
+	}
+
+	private static RangerResourceDef createResourceDef() {
+		RangerResourceDef ret = new RangerResourceDef();
+
+		ret.setName(RESOURCE_NAME);
+		ret.setLevel(10);
+		ret.setMatcherOptions(new HashMap<String, String>());
+
+		return ret;
+	}
+
+	private static TestEvaluator createEvaluator(long id, Random random) {
+		List<String> values = new ArrayList<>();
+
+		for (int i = 1 + random.nextInt(2); i > 0; i--) {
+			values.add(createResourceValue(random, random.nextInt(4) == 0));
+		}
+
+		RangerPolicyResource policyResource = new RangerPolicyResource(values, Boolean.FALSE, random.nextInt(5) == 0);
+
+		return new TestEvaluator(id, Collections.singletonMap(RESOURCE_NAME, policyResource));
+	}
+
+	private static String createResourceValue(Random random, boolean isWildcard) {
+		StringBuilder sb = new StringBuilder();
+
+		for (int i = random.nextInt(4); i >= 0; i--) {
+			sb.append(SEGMENTS[random.nextInt(SEGMENTS.length)]);
+		}
+
+		if (isWildcard) {
+			sb.append('*');
+		}
+
+		return sb.toString();
+	}
+
+	static class TestEvaluator implements RangerPolicyResourceEvaluator {
+		private final long                              id;
+		private final Map<String, RangerPolicyResource> policyResource;
+
+		TestEvaluator(long id, Map<String, RangerPolicyResource> policyResource) {
+			this.id             = id;
+			this.policyResource = policyResource;
+		}
+
+		@Override
+		public long getId() { return id; }
+
+		@Override
+		public RangerPolicyResourceMatcher getPolicyResourceMatcher() { return null; }
+
+		@Override
+		public Map<String, RangerPolicyResource> getPolicyResource() { return policyResource; }
+
+		@Override
+		public RangerResourceMatcher getResourceMatcher(String resourceName) { return null; }
+
+		@Override
+		public Integer getLeafResourceLevel() { return null; }
+	}
+}
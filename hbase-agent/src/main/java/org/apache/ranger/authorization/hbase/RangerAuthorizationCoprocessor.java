@@ -127,6 +127,8 @@ public class RangerAuthorizationCoprocessor extends RangerAuthorizationCoprocess
 
     private RegionCoprocessorEnvironment regionEnv;
 	private Map<InternalScanner, String> scannerOwners = new MapMaker().weakKeys().makeMap();
+	// filters of open scanners, to log the audit events they aggregate when the scanner is closed
+	private Map<InternalScanner, RangerAuthorizationFilter> scannerFilters = new MapMaker().weakKeys().makeMap();
 	
 	/*
 	 * These are package level only for testability and aren't meant to be exposed outside via getters/setters or made available to derived classes.
@@ -742,6 +744,10 @@ public class RangerAuthorizationCoprocessor extends RangerAuthorizationCoprocess
 	@Override
 	public void postScannerClose(ObserverContext<RegionCoprocessorEnvironment> c, InternalScanner s) throws IOException {
 		scannerOwners.remove(s);
+		RangerAuthorizationFilter filter = scannerFilters.remove(s);
+		if (filter != null) {
+			filter.logAggregatedAudits();
+		}
 	}
 	@Override
 	public RegionScanner postScannerOpen(ObserverContext<RegionCoprocessorEnvironment> c, Scan scan, RegionScanner s) throws IOException {
@@ -749,9 +755,39 @@ public class RangerAuthorizationCoprocessor extends RangerAuthorizationCoprocess
 		if (user != null && user.getShortName() != null) {
 			scannerOwners.put(s, user.getShortName());
 		}
+		RangerAuthorizationFilter filter = getAuthorizationFilter(scan.getFilter());
+		if (filter != null) {
+			scannerFilters.put(s, filter);
+		}
 		return s;
 	}
 	@Override
+	public void postGetOp(final ObserverContext<RegionCoprocessorEnvironment> rEnv, final Get get, final List<Cell> results) throws IOException {
+		RangerAuthorizationFilter filter = getAuthorizationFilter(get.getFilter());
+		if (filter != null) {
+			filter.logAggregatedAudits();
+		}
+	}
+
+	/*
+	 * @return the filter added by preScannerOpen()/preGetOp(), if any
+	 */
+	RangerAuthorizationFilter getAuthorizationFilter(Filter filter) {
+		RangerAuthorizationFilter ret = null;
+		if (filter instanceof RangerAuthorizationFilter) {
+			ret = (RangerAuthorizationFilter) filter;
+		} else if (filter instanceof FilterList) {
+			// see combineFilters()
+			for (Filter aFilter : ((FilterList) filter).getFilters()) {
+				if (aFilter instanceof RangerAuthorizationFilter) {
+					ret = (RangerAuthorizationFilter) aFilter;
+					break;
+				}
+			}
+		}
+		return ret;
+	}
+	@Override
 	public void postStartMaster(ObserverContext<MasterCoprocessorEnvironment> ctx) throws IOException {
 		if(UpdateRangerPoliciesOnGrantRevoke) {
 			RangerAccessControlLists.init(ctx.getEnvironment().getMasterServices());
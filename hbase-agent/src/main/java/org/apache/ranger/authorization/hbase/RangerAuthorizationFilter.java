@@ -20,7 +20,12 @@
 package org.apache.ranger.authorization.hbase;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -33,18 +38,45 @@ import org.apache.hadoop.hbase.filter.FilterBase;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.ranger.audit.model.AuthzAuditEvent;
 
+/*
+ * Filters the cells of a scan or get to the columns the user has access to. The access to a column is evaluated once per
+ * scan, when its first cell is seen, and is kept in a table of decisions by family and column. Accesses to audited
+ * columns are aggregated into one audit event per column - with the number of cells accessed as its event count - which
+ * are logged when the scan ends (see RangerAuthorizationCoprocessor.postScannerClose()), and periodically in long scans.
+ *
+ * A filter is used by one scan, from one thread at a time.
+ */
 public class RangerAuthorizationFilter extends FilterBase {
 
 	private static final Log LOG = LogFactory.getLog(RangerAuthorizationFilter.class.getName());
+
+	// columns with dynamic qualifiers could make the decision table grow without bound; beyond this many columns, access to other columns is evaluated for each cell
+	static final int  MAX_COLUMN_DECISIONS       = 10000;
+	static final long AUDIT_LOG_INTERVAL_MS      = 60 * 1000L;
+	static final int  AUDIT_LOG_CHECK_CELL_COUNT = 1024;
+
 	final Set<String> _familiesAccessAllowed;
 	final Set<String> _familiesAccessDenied;
 	final Set<String> _familiesAccessIndeterminate;
 	final Map<String, Set<String>> _columnsAccessAllowed;
 	final AuthorizationSession _session;
-	final HbaseAuditHandler _auditHandler = HbaseFactory.getInstance().getAuditHandler();
+	final HbaseAuditHandler _auditHandler;
+	// decisions of this scan: family -> column -> decision
+	final Map<ByteBuffer, Map<ByteBuffer, ColumnDecision>> _columnDecisions = new HashMap<ByteBuffer, Map<ByteBuffer, ColumnDecision>>();
+	int _columnDecisionCount = 0;
+	long _auditedCellCount = 0;
+	long _lastAuditLogTime = System.currentTimeMillis();
 
 	public RangerAuthorizationFilter(AuthorizationSession session, Set<String> familiesAccessAllowed, Set<String> familiesAccessDenied, Set<String> familiesAccessIndeterminate,
 									 Map<String, Set<String>> columnsAccessAllowed) {
+		this(session, familiesAccessAllowed, familiesAccessDenied, familiesAccessIndeterminate, columnsAccessAllowed, HbaseFactory.getInstance().getAuditHandler());
+	}
+
+	/*
+	 * package level only for testability
+	 */
+	RangerAuthorizationFilter(AuthorizationSession session, Set<String> familiesAccessAllowed, Set<String> familiesAccessDenied, Set<String> familiesAccessIndeterminate,
+							  Map<String, Set<String>> columnsAccessAllowed, HbaseAuditHandler auditHandler) {
 		// the class assumes that all of these can be empty but none of these can be null
 		_familiesAccessAllowed = familiesAccessAllowed;
 		_familiesAccessDenied = familiesAccessDenied;
@@ -53,6 +85,7 @@ public class RangerAuthorizationFilter extends FilterBase {
 		// this session should have everything set on it except family and column which would be altered based on need
 		_session = session;
 		// we don't want to audit denial, so we need to make sure the hander is what we need it to be.
+		_auditHandler = auditHandler;
 		_session.auditHandler(_auditHandler);
 	}
 	
@@ -63,6 +96,90 @@ public class RangerAuthorizationFilter extends FilterBase {
 			LOG.debug("==> filterKeyValue");
 		}
 
+		final ReturnCode result;
+
+		// look up the decision without copying family and qualifier out of the cell
+		ByteBuffer familyKey = ByteBuffer.wrap(kv.getFamilyArray(), kv.getFamilyOffset(), kv.getFamilyLength());
+		ByteBuffer columnKey = ByteBuffer.wrap(kv.getQualifierArray(), kv.getQualifierOffset(), kv.getQualifierLength());
+		Map<ByteBuffer, ColumnDecision> familyDecisions = _columnDecisions.get(familyKey);
+		ColumnDecision decision = familyDecisions == null ? null : familyDecisions.get(columnKey);
+
+		if (decision != null) {
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("filterKeyValue: family/column found in decisions of this scan.");
+			}
+			result = decision._returnCode;
+			if (decision._auditEvent != null) {
+				decision._cellCount++;
+				auditedCellAccessed();
+			}
+		} else {
+			decision = evaluate(kv);
+			result = decision._returnCode;
+			if (_columnDecisionCount < MAX_COLUMN_DECISIONS) {
+				if (familyDecisions == null) {
+					familyDecisions = new HashMap<ByteBuffer, ColumnDecision>();
+					_columnDecisions.put(ByteBuffer.wrap(CellUtil.cloneFamily(kv)), familyDecisions);
+				}
+				familyDecisions.put(ByteBuffer.wrap(CellUtil.cloneQualifier(kv)), decision);
+				_columnDecisionCount++;
+				if (decision._auditEvent != null) {
+					auditedCellAccessed();
+				}
+			} else if (decision._auditEvent != null) {
+				LOG.debug("filterKeyValue: too many columns in this scan to keep their decisions. Access is audited per cell.");
+				_auditHandler.logAuthzAudits(Collections.singletonList(decision._auditEvent));
+			}
+		}
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("filterKeyValue: " + result);
+		}
+		return result;
+	}
+
+	/**
+	 * Logs the audit events aggregated since the last call, one per audited column.  Called at the end of the scan; after this call
+	 * the next access to an audited column is evaluated again, to get a new audit event.
+	 */
+	void logAggregatedAudits() {
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("==> logAggregatedAudits");
+		}
+
+		List<AuthzAuditEvent> auditEvents = new ArrayList<AuthzAuditEvent>();
+		for (Map<ByteBuffer, ColumnDecision> familyDecisions : _columnDecisions.values()) {
+			for (Iterator<ColumnDecision> iter = familyDecisions.values().iterator(); iter.hasNext(); ) {
+				ColumnDecision decision = iter.next();
+				if (decision._auditEvent != null) {
+					// the event is handed over to the audit handler, hence must not be updated after this
+					decision._auditEvent.setEventCount(decision._cellCount);
+					auditEvents.add(decision._auditEvent);
+					iter.remove();
+					_columnDecisionCount--;
+				}
+			}
+		}
+		_auditedCellCount = 0;
+		_lastAuditLogTime = System.currentTimeMillis();
+
+		if (!auditEvents.isEmpty()) {
+			_auditHandler.logAuthzAudits(auditEvents);
+		}
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("<== logAggregatedAudits: logged " + auditEvents.size() + " audit events");
+		}
+	}
+
+	private void auditedCellAccessed() {
+		// avoid reading the clock for every cell
+		if (++_auditedCellCount % AUDIT_LOG_CHECK_CELL_COUNT == 0 && System.currentTimeMillis() - _lastAuditLogTime > AUDIT_LOG_INTERVAL_MS) {
+			LOG.debug("filterKeyValue: logging audit events aggregated in this long running scan.");
+			logAggregatedAudits();
+		}
+	}
+
+	private ColumnDecision evaluate(Cell kv) {
 		String family = null;
 		byte[] familyBytes = CellUtil.cloneFamily(kv);
 		if (familyBytes != null && familyBytes.length > 0) {
@@ -73,7 +190,7 @@ public class RangerAuthorizationFilter extends FilterBase {
 		}
 		String column = null;
 		byte[] qualifier = CellUtil.cloneQualifier(kv);
-                if (qualifier != null && qualifier.length > 0) {
+		if (qualifier != null && qualifier.length > 0) {
 			column = Bytes.toString(qualifier);
 			if (LOG.isDebugEnabled()) {
 				LOG.debug("filterKeyValue: evaluating column[" + column + "].");
@@ -83,6 +200,7 @@ public class RangerAuthorizationFilter extends FilterBase {
 		}
 
 		ReturnCode result = ReturnCode.NEXT_COL;
+		AuthzAuditEvent auditEvent = null;
 		boolean authCheckNeeded = false;
 		if (family == null) {
 			LOG.warn("filterKeyValue: Unexpected - null/empty family! Access denied!");
@@ -113,13 +231,13 @@ public class RangerAuthorizationFilter extends FilterBase {
 					.buildRequest()
 					.authorize();
 			// must always purge the captured audit event out of the audit handler to avoid messing up the next check
-			AuthzAuditEvent auditEvent = _auditHandler.getAndDiscardMostRecentEvent();
+			AuthzAuditEvent capturedEvent = _auditHandler.getAndDiscardMostRecentEvent();
 			if (_session.isAuthorized()) {
 				LOG.debug("filterKeyValue: Access granted.");
 				result = ReturnCode.INCLUDE;
-				if (auditEvent != null) {
+				if (capturedEvent != null) {
 					LOG.debug("filterKeyValue: access is audited.");
-					_auditHandler.logAuthzAudits(Collections.singletonList(auditEvent));
+					auditEvent = capturedEvent;
 				} else {
 					LOG.debug("filterKeyValue: no audit event returned.  Access not audited.");
 				}
@@ -127,10 +245,7 @@ public class RangerAuthorizationFilter extends FilterBase {
 				LOG.debug("filterKeyValue: Access denied.  Denial not audited.");
 			}
 		}
-		if (LOG.isDebugEnabled()) {
-			LOG.debug("filterKeyValue: " + result);
-		}
-		return result;
+		return new ColumnDecision(result, auditEvent);
 	}
 
 	@Override
@@ -140,8 +255,19 @@ public class RangerAuthorizationFilter extends FilterBase {
 				.add("familiesAccessDenied", _familiesAccessDenied)
 				.add("familiesAccessUnknown", _familiesAccessIndeterminate)
 				.add("columnsAccessAllowed", _columnsAccessAllowed)
+				.add("columnDecisionCount", _columnDecisionCount)
 				.toString();
 
 	}
 
+	static class ColumnDecision {
+		final ReturnCode _returnCode;
+		final AuthzAuditEvent _auditEvent; // null if access is denied or not audited
+		long _cellCount = 1;
+
+		ColumnDecision(ReturnCode returnCode, AuthzAuditEvent auditEvent) {
+			_returnCode = returnCode;
+			_auditEvent = auditEvent;
+		}
+	}
 }
@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ranger.authorization.hbase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.security.PrivilegedExceptionAction;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.Filter.ReturnCode;
+import org.apache.hadoop.hbase.regionserver.Region;
+import org.apache.hadoop.hbase.security.access.Permission.Action;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.security.UserGroupInformation;
+import org.junit.Test;
+
+/**
+ * Measures the time RangerAuthorizationFilter spends per cell of a scan over a wide table, in a family whose access must
+ * be evaluated per column: policies from hbase-policies.json allow group IT to read family colfam1 of table temp, and
+ * nothing in colfam2. The filter is created by RangerAuthorizationCoprocessor, started with a mock
+ * RegionCoprocessorEnvironment. Cells of the first row are evaluated by the policy engine - as every cell was before
+ * decisions were kept per scan - while cells of other rows use the decisions of the scan. Size of the scan can be set with
+ * -Dranger.perftest.hbase.filter.rows (default 10000) and -Dranger.perftest.hbase.filter.columns (default 100).
+ */
+public class RangerAuthorizationFilterPerformanceTest {
+	private static final int    ROW_COUNT    = Integer.getInteger("ranger.perftest.hbase.filter.rows", 10000);
+	private static final int    COLUMN_COUNT = Integer.getInteger("ranger.perftest.hbase.filter.columns", 100);
+	private static final byte[] ALLOWED_FAMILY = Bytes.toBytes("colfam1");
+	private static final byte[] DENIED_FAMILY  = Bytes.toBytes("colfam2");
+
+	@Test
+	public void testScanOfWideTable() throws Exception {
+		Configuration conf = HBaseConfiguration.create();
+
+		final RegionCoprocessorEnvironment env = mock(RegionCoprocessorEnvironment.class);
+		Region region = mock(Region.class);
+		HRegionInfo regionInfo = mock(HRegionInfo.class);
+		when(env.getConfiguration()).thenReturn(conf);
+		when(env.getRegion()).thenReturn(region);
+		when(region.getRegionInfo()).thenReturn(regionInfo);
+		when(regionInfo.getTable()).thenReturn(TableName.valueOf("temp"));
+
+		final RangerAuthorizationCoprocessor coprocessor = new RangerAuthorizationCoprocessor();
+		coprocessor.start(env);
+
+		// family level scan of both families, as in preScannerOpen()
+		final Map<byte[], NavigableSet<byte[]>> familyMap = new TreeMap<byte[], NavigableSet<byte[]>>(Bytes.BYTES_COMPARATOR);
+		familyMap.put(ALLOWED_FAMILY, null);
+		familyMap.put(DENIED_FAMILY, null);
+
+		UserGroupInformation ugi = UserGroupInformation.createUserForTesting("IT", new String[] { "IT" });
+		Filter filter = ugi.doAs(new PrivilegedExceptionAction<Filter>() {
+			@Override
+			public Filter run() throws Exception {
+				return coprocessor.authorizeAccess("scannerOpen", Action.READ, env, familyMap);
+			}
+		});
+		assertTrue("expected partial access", filter instanceof RangerAuthorizationFilter);
+
+		Cell[][] rows = new Cell[ROW_COUNT][];
+		for (int i = 0; i < ROW_COUNT; i++) {
+			byte[] row = Bytes.toBytes("row-" + i);
+			rows[i] = new Cell[COLUMN_COUNT * 2];
+			for (int j = 0; j < COLUMN_COUNT; j++) {
+				byte[] qualifier = Bytes.toBytes("column-" + j);
+				rows[i][j * 2] = new KeyValue(row, ALLOWED_FAMILY, qualifier, qualifier);
+				rows[i][j * 2 + 1] = new KeyValue(row, DENIED_FAMILY, qualifier, qualifier);
+			}
+		}
+
+		int includedCount = 0;
+		long firstRowNanos = 0;
+		long startTime = System.nanoTime();
+		for (int i = 0; i < ROW_COUNT; i++) {
+			for (Cell cell : rows[i]) {
+				if (filter.filterKeyValue(cell) == ReturnCode.INCLUDE) {
+					includedCount++;
+				}
+			}
+			if (i == 0) {
+				firstRowNanos = System.nanoTime() - startTime;
+			}
+		}
+		long otherRowsNanos = System.nanoTime() - startTime - firstRowNanos;
+
+		((RangerAuthorizationFilter) filter).logAggregatedAudits();
+
+		assertEquals(ROW_COUNT * COLUMN_COUNT, includedCount);
+
+		int cellsPerRow = COLUMN_COUNT * 2;
+		System.out.println(String.format("RangerAuthorizationFilter: %d rows x %d cells: first row: %d ns/cell (evaluated by policy engine), other rows: %d ns/cell (decisions of the scan)",
+				ROW_COUNT, cellsPerRow, firstRowNanos / cellsPerRow, ROW_COUNT > 1 ? otherRowsNanos / ((long) (ROW_COUNT - 1) * cellsPerRow) : 0));
+	}
+}
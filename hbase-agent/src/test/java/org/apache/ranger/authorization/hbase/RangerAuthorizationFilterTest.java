@@ -19,11 +19,17 @@
 package org.apache.ranger.authorization.hbase;
 
 import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -31,7 +37,11 @@ import java.util.Set;
 import com.google.common.collect.ImmutableSet;
 import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.filter.Filter.ReturnCode;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 public class RangerAuthorizationFilterTest {
 
@@ -98,6 +108,50 @@ public class RangerAuthorizationFilterTest {
 		}
 	}
 
+	@Test
+	public void testFilterKeyValueCell_columnEvaluatedOncePerScan() throws IOException {
+		Set<String> familiesAccessAllowed = ImmutableSet.of("family1");
+		Set<String> empty = Collections.emptySet();
+
+		AuthorizationSession session = createSessionMock();
+		when(session.isAuthorized()).thenReturn(true);
+		HbaseAuditHandler auditHandler = mock(HbaseAuditHandler.class);
+		when(auditHandler.getAndDiscardMostRecentEvent()).thenAnswer(new Answer<AuthzAuditEvent>() {
+			@Override
+			public AuthzAuditEvent answer(InvocationOnMock invocation) {
+				return new AuthzAuditEvent();
+			}
+		});
+		RangerAuthorizationFilter filter = new RangerAuthorizationFilter(session, familiesAccessAllowed, empty, empty, new HashMap<String, Set<String>>(), auditHandler);
+
+		String[] columns = new String[] { "column1", "column2", "column3" };
+		Cell aCell = mock(Cell.class);
+		for (int row = 0; row < 10; row++) {
+			for (String column : columns) {
+				setFamilyArray(aCell, "family1".getBytes());
+				setQualifierArray(aCell, column.getBytes());
+				assertEquals(ReturnCode.INCLUDE, filter.filterKeyValue(aCell));
+			}
+		}
+		// each column is authorized once, and its accesses are not audited per cell
+		verify(session, times(columns.length)).authorize();
+		verify(auditHandler, never()).logAuthzAudits(any());
+
+		filter.logAggregatedAudits();
+
+		@SuppressWarnings("unchecked")
+		ArgumentCaptor<Collection<AuthzAuditEvent>> auditEvents = ArgumentCaptor.forClass((Class) Collection.class);
+		verify(auditHandler).logAuthzAudits(auditEvents.capture());
+		assertEquals(columns.length, auditEvents.getValue().size());
+		for (AuthzAuditEvent auditEvent : auditEvents.getValue()) {
+			assertEquals(10, auditEvent.getEventCount());
+		}
+
+		// the logged events are not reused: next access to an audited column is authorized again
+		assertEquals(ReturnCode.INCLUDE, filter.filterKeyValue(aCell));
+		verify(session, times(columns.length + 1)).authorize();
+	}
+
 	private void setFamilyArray(Cell aCell, byte[] familyArray) {
 		when(aCell.getFamilyArray()).thenReturn(familyArray);
 		when(aCell.getFamilyLength()).thenReturn((byte) familyArray.length);
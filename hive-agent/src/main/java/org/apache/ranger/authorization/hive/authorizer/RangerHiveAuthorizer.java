@@ -21,6 +21,7 @@ package org.apache.ranger.authorization.hive.authorizer;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -68,6 +69,7 @@ import org.apache.ranger.plugin.model.RangerPolicy;
 import org.apache.ranger.plugin.model.RangerServiceDef.RangerDataMaskTypeDef;
 import org.apache.ranger.plugin.policyengine.RangerAccessRequest;
 import org.apache.ranger.plugin.policyengine.RangerAccessResult;
+import org.apache.ranger.plugin.policyengine.RangerUserAccessView;
 import org.apache.ranger.plugin.service.RangerBasePlugin;
 import org.apache.ranger.plugin.util.GrantRevokeRequest;
 import org.apache.ranger.plugin.util.RangerAccessRequestUtil;
@@ -88,6 +90,8 @@ public class RangerHiveAuthorizer extends RangerHiveAuthorizerBase {
 
 	private static volatile RangerHivePlugin hivePlugin = null;
 
+	private volatile RangerUserAccessView userAccessView = null; // of the session user, used by filterListCmdObjects()
+
 	public RangerHiveAuthorizer(HiveMetastoreClientFactory metastoreClientFactory,
 								  HiveConf                   hiveConf,
 								  HiveAuthenticationProvider hiveAuthenticator,
@@ -494,6 +498,9 @@ public class RangerHiveAuthorizer extends RangerHiveAuthorizerBase {
 			if (ret == null) { // if we got any items to filter then we can't return back a null.  We must return back a list even if its empty.
 				ret = new ArrayList<HivePrivilegeObject>(objs.size());
 			}
+			List<HivePrivilegeObject>     resourceObjs = new ArrayList<HivePrivilegeObject>(objs.size());
+			List<RangerHiveAccessRequest> requests     = new ArrayList<RangerHiveAccessRequest>(objs.size());
+
 			for (HivePrivilegeObject privilegeObject : objs) {
 				if (LOG.isDebugEnabled()) {
 					HivePrivObjectActionType actionType = privilegeObject.getActionType();
@@ -513,21 +520,44 @@ public class RangerHiveAuthorizer extends RangerHiveAuthorizerBase {
 				if (resource == null) {
 					LOG.error("filterListCmdObjects: RangerHiveResource returned by createHiveResource is null");
 				} else {
-					RangerHiveAccessRequest request = new RangerHiveAccessRequest(resource, user, groups, context, sessionContext, hivePlugin.getClusterName());
+					resourceObjs.add(privilegeObject);
+					requests.add(new RangerHiveAccessRequest(resource, user, groups, context, sessionContext, hivePlugin.getClusterName()));
+				}
+			}
+
+			// objects are checked in bulk when decisions don't depend on request context; the view is kept for the session
+			RangerUserAccessView userAccessView = hivePlugin.getUserAccessView(user, groups, this.userAccessView);
+
+			if (userAccessView != null) {
+				this.userAccessView = userAccessView;
+
+				BitSet allowed = userAccessView.isAccessAllowed(requests);
+
+				for (int i = 0; i < requests.size(); i++) {
+					if (allowed.get(i)) {
+						ret.add(resourceObjs.get(i));
+					} else if (LOG.isDebugEnabled()) {
+						LOG.debug(String.format("filterListCmdObjects: Permission denied: user [%s] does not have [%s] privilege on [%s]. request[%s]",
+								user, requests.get(i).getHiveAccessType().name(), requests.get(i).getResource().getAsString(), requests.get(i)));
+					}
+				}
+			} else {
+				for (int i = 0; i < requests.size(); i++) {
+					RangerHiveAccessRequest request = requests.get(i);
 					RangerAccessResult result = hivePlugin.isAccessAllowed(request);
 					if (result == null) {
 						LOG.error("filterListCmdObjects: Internal error: null RangerAccessResult object received back from isAccessAllowed()!");
 					} else if (!result.getIsAllowed()) {
 						if (!LOG.isDebugEnabled()) {
-							String path = resource.getAsString();
+							String path = request.getResource().getAsString();
 							LOG.debug(String.format("filterListCmdObjects: Permission denied: user [%s] does not have [%s] privilege on [%s]. resource[%s], request[%s], result[%s]",
-									user, request.getHiveAccessType().name(), path, resource, request, result));
+									user, request.getHiveAccessType().name(), path, request.getResource(), request, result));
 						}
 					} else {
 						if (LOG.isDebugEnabled()) {
-							LOG.debug(String.format("filterListCmdObjects: access allowed. resource[%s], request[%s], result[%s]", resource, request, result));
+							LOG.debug(String.format("filterListCmdObjects: access allowed. resource[%s], request[%s], result[%s]", request.getResource(), request, result));
 						}
-						ret.add(privilegeObject);
+						ret.add(resourceObjs.get(i));
 					}
 				}
 			}
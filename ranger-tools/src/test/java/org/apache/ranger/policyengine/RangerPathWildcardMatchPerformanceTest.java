@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.policyengine;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOCase;
+import org.apache.commons.lang.StringUtils;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+import org.apache.ranger.plugin.model.RangerServiceDef.RangerResourceDef;
+import org.apache.ranger.plugin.resourcematcher.RangerPathResourceMatcher;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Measures nanoseconds per match of recursive wildcard policy values of RangerPathResourceMatcher - compiled into a
+ * single-pass matcher - and of the earlier algorithm, which runs FilenameUtils.wildcardMatch() on every prefix of the
+ * path. Paths are HDFS paths with 24 components; patterns mix '*' and '?', and either match a prefix of the path, match
+ * only the full path, or match none. Number of matches can be set with -Dranger.perftest.pathmatch.iterations
+ * (default 1000000).
+ */
+public class RangerPathWildcardMatchPerformanceTest {
+	private static final int      ITERATIONS    = Integer.getInteger("ranger.perftest.pathmatch.iterations", 1000000);
+	private static final int      PATH_DEPTH    = 24;
+	private static final String[] POLICY_VALUES = { "/data/warehouse/sales_*/year=20??/*", "/data/*/sales_db/*/part_2?/*/file_*.orc", "/data/*/finance_db/*/month=1?" };
+
+	@Test
+	public void testRecursiveWildcardMatch() {
+		String path = createPath();
+
+		for (String policyValue : POLICY_VALUES) {
+			final RangerPathResourceMatcher matcher     = createMatcher(policyValue);
+			final Map<String, Object>       evalContext = Collections.emptyMap();
+
+			Assert.assertEquals("matchers disagree for policyValue=" + policyValue, prefixWildcardMatch(path, policyValue), matcher.isMatch(path, evalContext));
+
+			PathMatcher compiled = new PathMatcher() {
+				@Override
+				public boolean isMatch(String pathToCheck, String value) {
+					return matcher.isMatch(pathToCheck, evalContext);
+				}
+			};
+
+			PathMatcher perPrefix = new PathMatcher() {
+				@Override
+				public boolean isMatch(String pathToCheck, String value) {
+					return prefixWildcardMatch(pathToCheck, value);
+				}
+			};
+
+			run(policyValue, "perPrefix", perPrefix, path);
+			run(policyValue, "compiled", compiled, path);
+		}
+	}
+
+	private void run(String policyValue, String name, PathMatcher matcher, String path) {
+		run(matcher, path, policyValue, Math.min(ITERATIONS, 100000)); // warm-up
+
+		long start   = System.nanoTime();
+		int  matched = run(matcher, path, policyValue, ITERATIONS);
+		long nanos   = System.nanoTime() - start;
+
+		System.out.println(String.format("%-45s %-10s %d matches: %,.1f ns/match, %d matched",
+		                                 policyValue, name, ITERATIONS, (double) nanos / ITERATIONS, matched));
+	}
+
+	private int run(PathMatcher matcher, String path, String policyValue, int iterations) {
+		int ret = 0;
+
+		for (int i = 0; i < iterations; i++) {
+			if (matcher.isMatch(path, policyValue)) {
+				ret++;
+			}
+		}
+
+		return ret;
+	}
+
+	private String createPath() {
+		StringBuilder sb = new StringBuilder("/data/warehouse/sales_db/year=2019");
+
+		for (int i = 4; i < PATH_DEPTH - 1; i++) {
+			sb.append("/part_").append(i);
+		}
+
+		return sb.append("/file_0001.orc").toString();
+	}
+
+	private RangerPathResourceMatcher createMatcher(String policyValue) {
+		RangerResourceDef resourceDef = new RangerResourceDef();
+
+		resourceDef.setName("path");
+		resourceDef.setMatcher(RangerPathResourceMatcher.class.getName());
+		resourceDef.setMatcherOptions(new HashMap<String, String>());
+
+		RangerPathResourceMatcher ret = new RangerPathResourceMatcher();
+
+		ret.setResourceDef(resourceDef);
+		ret.setPolicyResource(new RangerPolicyResource(policyValue, false, true));
+		ret.init();
+
+		return ret;
+	}
+
+	// RangerPathResourceMatcher before the pattern was compiled
+	private static boolean prefixWildcardMatch(String pathToCheck, String wildcardPath) {
+		boolean       ret          = false;
+		String[]      pathElements = StringUtils.split(pathToCheck, '/');
+		StringBuilder sb           = new StringBuilder();
+
+		if (pathToCheck.charAt(0) == '/') {
+			sb.append('/');
+		}
+
+		for (String p : pathElements) {
+			sb.append(p);
+
+			ret = FilenameUtils.wildcardMatch(sb.toString(), wildcardPath, IOCase.SENSITIVE);
+
+			if (ret) {
+				break;
+			}
+
+			sb.append('/');
+		}
+
+		return ret;
+	}
+
+	interface PathMatcher {
+		boolean isMatch(String path, String policyValue);
+	}
+}
@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.policyengine;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItem;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemAccess;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+import org.apache.ranger.plugin.util.RangerBinaryFormat;
+import org.apache.ranger.plugin.util.ServicePolicies;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Compares size and (de)serialization time of ServicePolicies in JSON, as downloaded by plugins today, with
+ * RangerBinaryFormat. Policies are generated with resources, users and groups drawn from pools, like in a typical
+ * large deployment. Number of policies can be set with -Dranger.perftest.download.policies (default 100000).
+ */
+public class RangerPolicyDownloadFormatPerformanceTest {
+	private static final int      POLICY_COUNT       = Integer.getInteger("ranger.perftest.download.policies", 100000);
+	private static final int      ITERATIONS         = 5;
+	private static final String[] ACCESS_TYPES       = { "select", "update", "create", "drop", "alter", "index", "lock", "read", "write" };
+	private static final int      USER_POOL_SIZE     = 5000;
+	private static final int      GROUP_POOL_SIZE    = 500;
+	private static final int      DATABASE_POOL_SIZE = 200;
+
+	private static ServicePolicies servicePolicies;
+
+	private final Gson gson = new GsonBuilder().setDateFormat("yyyyMMdd-HH:mm:ss.SSS-Z").setPrettyPrinting().create();
+
+	@BeforeClass
+	public static void createServicePolicies() {
+		Random             random   = new Random(0);
+		List<RangerPolicy> policies = new ArrayList<>(POLICY_COUNT);
+
+		for (int i = 0; i < POLICY_COUNT; i++) {
+			RangerPolicy policy = new RangerPolicy();
+
+			policy.setId((long) i);
+			policy.setGuid("guid-" + i);
+			policy.setService("cl1_hive");
+			policy.setName("policy-" + i);
+			policy.setDescription("generated policy " + i);
+			policy.setIsEnabled(true);
+			policy.setIsAuditEnabled(true);
+			policy.setVersion(1L);
+			policy.setCreateTime(new Date());
+			policy.setUpdateTime(new Date());
+			policy.setCreatedBy("admin");
+			policy.setUpdatedBy("admin");
+
+			Map<String, RangerPolicyResource> resources = new HashMap<>();
+
+			resources.put("database", new RangerPolicyResource("db_" + random.nextInt(DATABASE_POOL_SIZE)));
+			resources.put("table", new RangerPolicyResource("tbl_" + i));
+			resources.put("column", new RangerPolicyResource("*"));
+
+			policy.setResources(resources);
+
+			int itemCount = 2 + random.nextInt(2);
+
+			for (int j = 0; j < itemCount; j++) {
+				RangerPolicyItem item = new RangerPolicyItem();
+
+				for (int k = 0; k < 3; k++) {
+					item.getAccesses().add(new RangerPolicyItemAccess(ACCESS_TYPES[random.nextInt(ACCESS_TYPES.length)]));
+				}
+
+				item.setUsers(new ArrayList<>(Arrays.asList("user_" + random.nextInt(USER_POOL_SIZE), "user_" + random.nextInt(USER_POOL_SIZE))));
+				item.setGroups(new ArrayList<>(Arrays.asList("group_" + random.nextInt(GROUP_POOL_SIZE))));
+
+				policy.getPolicyItems().add(item);
+			}
+
+			policies.add(policy);
+		}
+
+		servicePolicies = new ServicePolicies();
+
+		servicePolicies.setServiceName("cl1_hive");
+		servicePolicies.setPolicyVersion(1L);
+		servicePolicies.setPolicyUpdateTime(new Date());
+		servicePolicies.setPolicies(policies);
+	}
+
+	@Test
+	public void testJsonAndBinaryFormat() throws Exception {
+		byte[] json   = null;
+		byte[] binary = null;
+		long   jsonWriteNanos = 0, jsonReadNanos = 0, binaryWriteNanos = 0, binaryReadNanos = 0;
+
+		for (int i = 0; i <= ITERATIONS; i++) { // first iteration is warm-up
+			boolean isWarmup = i == 0;
+
+			long start = System.nanoTime();
+
+			json = toJson(servicePolicies);
+
+			long afterJsonWrite = System.nanoTime();
+
+			ServicePolicies fromJson = gson.fromJson(new InputStreamReader(new ByteArrayInputStream(json), StandardCharsets.UTF_8), ServicePolicies.class);
+
+			long afterJsonRead = System.nanoTime();
+
+			binary = toBinary(servicePolicies);
+
+			long afterBinaryWrite = System.nanoTime();
+
+			ServicePolicies fromBinary = RangerBinaryFormat.read(new ByteArrayInputStream(binary), ServicePolicies.class);
+
+			long afterBinaryRead = System.nanoTime();
+
+			Assert.assertEquals(POLICY_COUNT, fromJson.getPolicies().size());
+			Assert.assertEquals(POLICY_COUNT, fromBinary.getPolicies().size());
+
+			if (!isWarmup) {
+				jsonWriteNanos   += afterJsonWrite - start;
+				jsonReadNanos    += afterJsonRead - afterJsonWrite;
+				binaryWriteNanos += afterBinaryWrite - afterJsonRead;
+				binaryReadNanos  += afterBinaryRead - afterBinaryWrite;
+			}
+		}
+
+		System.out.println(String.format("%d policies: JSON %,d bytes, write %d ms, read %d ms; binary %,d bytes, write %d ms, read %d ms",
+		                                 POLICY_COUNT,
+		                                 json.length, jsonWriteNanos / ITERATIONS / 1000000, jsonReadNanos / ITERATIONS / 1000000,
+		                                 binary.length, binaryWriteNanos / ITERATIONS / 1000000, binaryReadNanos / ITERATIONS / 1000000));
+
+		Assert.assertTrue(binary.length < json.length);
+	}
+
+	private byte[] toJson(ServicePolicies servicePolicies) throws Exception {
+		ByteArrayOutputStream out    = new ByteArrayOutputStream();
+		Writer                writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+
+		gson.toJson(servicePolicies, writer);
+
+		writer.flush();
+
+		return out.toByteArray();
+	}
+
+	private byte[] toBinary(ServicePolicies servicePolicies) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		RangerBinaryFormat.write(servicePolicies, ServicePolicies.class, out);
+
+		return out.toByteArray();
+	}
+}
@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.policyengine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+import org.apache.ranger.plugin.model.RangerServiceDef.RangerResourceDef;
+import org.apache.ranger.plugin.policyresourcematcher.RangerPolicyResourceEvaluator;
+import org.apache.ranger.plugin.policyresourcematcher.RangerPolicyResourceMatcher;
+import org.apache.ranger.plugin.resourcematcher.RangerResourceMatcher;
+import org.apache.ranger.plugin.util.RangerResourceTrie;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Measures heap used by RangerResourceTrie, and its lookup latency, for a large number of evaluators with one resource
+ * each - like a tag trie with a RangerServiceResourceMatcher for every tagged resource. Number of evaluators can be set
+ * with -Dranger.perftest.trie.evaluators (default 1000000).
+ */
+public class RangerResourceTriePerformanceTest {
+	private static final int    EVALUATOR_COUNT = Integer.getInteger("ranger.perftest.trie.evaluators", 1000000);
+	private static final int    LOOKUP_COUNT    = 1000000;
+	private static final String RESOURCE_NAME   = "path";
+
+	@Test
+	public void testTrieMemoryAndLookup() {
+		// perf-tracing of every lookup, enabled in test log4j.properties, would dominate the lookup latency
+		Logger.getLogger("org.apache.ranger.perf.resourcetrie.op").setLevel(Level.INFO);
+
+		Random              random     = new Random(0);
+		List<TestEvaluator> evaluators = new ArrayList<>(EVALUATOR_COUNT);
+		String[]            resources  = new String[EVALUATOR_COUNT];
+
+		for (int i = 0; i < EVALUATOR_COUNT; i++) {
+			resources[i] = "/warehouse/db_" + random.nextInt(100) + "/tbl_" + random.nextInt(10000) + "/part_" + i;
+
+			evaluators.add(new TestEvaluator(i, Collections.singletonMap(RESOURCE_NAME, new RangerPolicyResource(resources[i]))));
+		}
+
+		RangerResourceDef resourceDef = new RangerResourceDef();
+
+		resourceDef.setName(RESOURCE_NAME);
+		resourceDef.setLevel(10);
+		resourceDef.setMatcherOptions(new HashMap<String, String>());
+
+		long usedBefore = getUsedMemory();
+		long buildStart = System.nanoTime();
+
+		RangerResourceTrie<TestEvaluator> trie = new RangerResourceTrie<>(resourceDef, evaluators, null, true);
+
+		long buildNanos = System.nanoTime() - buildStart;
+		long usedAfter  = getUsedMemory();
+
+		int found = 0;
+
+		for (int i = 0; i < LOOKUP_COUNT; i++) { // warm-up
+			found += size(trie.getEvaluatorsForResource(resources[random.nextInt(EVALUATOR_COUNT)]));
+		}
+
+		long lookupStart = System.nanoTime();
+
+		for (int i = 0; i < LOOKUP_COUNT; i++) {
+			found += size(trie.getEvaluatorsForResource(resources[random.nextInt(EVALUATOR_COUNT)]));
+		}
+
+		long lookupNanos = System.nanoTime() - lookupStart;
+
+		System.out.println(String.format("%d evaluators: build %d ms, trie heap %,d bytes, lookup %d ns/op; %s",
+		                                 EVALUATOR_COUNT, buildNanos / 1000000, usedAfter - usedBefore, lookupNanos / LOOKUP_COUNT, trie));
+
+		Assert.assertEquals(2 * LOOKUP_COUNT, found);
+	}
+
+	private static int size(List<?> list) {
+		return list == null ? 0 : list.size();
+	}
+
+	private static long getUsedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	static class TestEvaluator implements RangerPolicyResourceEvaluator {
+		private final long                              id;
+		private final Map<String, RangerPolicyResource> policyResource;
+
+		TestEvaluator(long id, Map<String, RangerPolicyResource> policyResource) {
+			this.id             = id;
+			this.policyResource = policyResource;
+		}
+
+		@Override
+		public long getId() { return id; }
+
+		@Override
+		public RangerPolicyResourceMatcher getPolicyResourceMatcher() { return null; }
+
+		@Override
+		public Map<String, RangerPolicyResource> getPolicyResource() { return policyResource; }
+
+		@Override
+		public RangerResourceMatcher getResourceMatcher(String resourceName) { return null; }
+
+		@Override
+		public Integer getLeafResourceLevel() { return null; }
+	}
+}
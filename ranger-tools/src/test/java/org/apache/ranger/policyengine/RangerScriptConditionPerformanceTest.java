@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.policyengine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.script.Bindings;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+
+import org.apache.ranger.plugin.conditionevaluator.RangerConditionEvaluator;
+import org.apache.ranger.plugin.conditionevaluator.RangerScriptTemplateConditionEvaluator;
+import org.apache.ranger.plugin.contextenricher.RangerTagForEval;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemCondition;
+import org.apache.ranger.plugin.model.RangerServiceDef.RangerPolicyConditionDef;
+import org.apache.ranger.plugin.model.RangerTag;
+import org.apache.ranger.plugin.policyengine.RangerAccessRequest;
+import org.apache.ranger.plugin.policyengine.RangerAccessRequestImpl;
+import org.apache.ranger.plugin.policyengine.RangerAccessResourceImpl;
+import org.apache.ranger.plugin.policyresourcematcher.RangerPolicyResourceMatcher;
+import org.apache.ranger.plugin.util.RangerAccessRequestUtil;
+import org.junit.Test;
+
+/**
+ * Measures requests/sec of the expiry-date script condition of tag policies - "ctx.isAccessedAfter('expiry_date');" -
+ * over a corpus of tagged resources, when the script is evaluated from its text for every request (as before it was
+ * compiled at init), and when it is compiled at init. The script reads the access time, so its results are not
+ * memoized. Number of requests and threads can be set with
+ * -Dranger.perftest.script.requests (default 200000) and -Dranger.perftest.script.threads (default 4).
+ */
+public class RangerScriptConditionPerformanceTest {
+	private static final int    REQUEST_COUNT = Integer.getInteger("ranger.perftest.script.requests", 200000);
+	private static final int    THREAD_COUNT  = Integer.getInteger("ranger.perftest.script.threads", 4);
+	private static final int    TAG_COUNT     = 100;
+	private static final int    BATCH_SIZE    = 1000;
+	private static final String SCRIPT        = "ctx.isAccessedAfter('expiry_date');";
+
+	@Test
+	public void testExpiryDateCondition() throws Exception {
+		List<RangerAccessRequest> requests = createRequests();
+
+		final ScriptEngine scriptEngine = new ScriptEngineManager().getEngineByName("JavaScript");
+
+		RequestEvaluator uncompiled = new RequestEvaluator() {
+			@Override
+			public boolean isMatched(RangerAccessRequest request) throws Exception {
+				RangerTagForEval tag      = (RangerTagForEval) request.getContext().get(RangerAccessRequestUtil.KEY_CONTEXT_TAG_OBJECT);
+				Bindings         bindings = scriptEngine.createBindings();
+
+				bindings.put("tag", tag);
+				bindings.put("tagAttr", tag.getAttributes());
+				bindings.put("accessTime", request.getAccessTime());
+
+				// same work as ctx.isAccessedAfter(), which can't be called here as the context is not public
+				return (Boolean) scriptEngine.eval("var expiry = new java.text.SimpleDateFormat('yyyy/MM/dd').parse(tagAttr.get('expiry_date')); !accessTime.before(expiry);", bindings);
+			}
+		};
+
+		run("uncompiled", uncompiled, requests);
+
+		run("compiled", createEvaluator(), requests);
+	}
+
+	private void run(String name, final RequestEvaluator evaluator, final List<RangerAccessRequest> requests) throws Exception {
+		run(evaluator, requests.subList(0, Math.min(requests.size(), 20000))); // warm-up
+
+		long start   = System.nanoTime();
+		int  matched = run(evaluator, requests);
+		long nanos   = System.nanoTime() - start;
+
+		System.out.println(String.format("%-20s %d requests, %d threads: %,d requests/sec, %d matched",
+		                                 name, requests.size(), THREAD_COUNT, (long) (requests.size() * 1e9 / nanos), matched));
+	}
+
+	private int run(final RequestEvaluator evaluator, final List<RangerAccessRequest> requests) throws Exception {
+		ExecutorService       executor = Executors.newFixedThreadPool(THREAD_COUNT);
+		List<Future<Integer>> futures  = new ArrayList<>();
+
+		try {
+			for (int t = 0; t < THREAD_COUNT; t++) {
+				final int from = requests.size() * t / THREAD_COUNT;
+				final int to   = requests.size() * (t + 1) / THREAD_COUNT;
+
+				futures.add(executor.submit(new Callable<Integer>() {
+					@Override
+					public Integer call() throws Exception {
+						int ret = 0;
+
+						for (int i = from; i < to; i++) {
+							if (evaluator.isMatched(requests.get(i))) {
+								ret++;
+							}
+						}
+
+						return ret;
+					}
+				}));
+			}
+
+			int ret = 0;
+
+			for (Future<Integer> future : futures) {
+				ret += future.get();
+			}
+
+			return ret;
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private RequestEvaluator createEvaluator() {
+		Map<String, String> evaluatorOptions = new HashMap<>();
+
+		evaluatorOptions.put("scriptTemplate", SCRIPT);
+
+		final RangerConditionEvaluator evaluator = new RangerScriptTemplateConditionEvaluator();
+
+		evaluator.setConditionDef(new RangerPolicyConditionDef(1L, "accessed-after-expiry", RangerScriptTemplateConditionEvaluator.class.getName(), evaluatorOptions));
+		evaluator.setPolicyItemCondition(new RangerPolicyItemCondition("accessed-after-expiry", Collections.singletonList("yes")));
+		evaluator.init();
+
+		return new RequestEvaluator() {
+			@Override
+			public boolean isMatched(RangerAccessRequest request) {
+				return evaluator.isMatched(request);
+			}
+		};
+	}
+
+	private List<RangerAccessRequest> createRequests() {
+		Random                 random = new Random(0);
+		List<RangerTagForEval> tags   = new ArrayList<>(TAG_COUNT);
+
+		for (int i = 0; i < TAG_COUNT; i++) {
+			String expiryDate = (2000 + random.nextInt(100)) + "/0" + (1 + random.nextInt(9)) + "/1" + random.nextInt(10);
+
+			tags.add(new RangerTagForEval(new RangerTag("EXPIRES_ON", Collections.singletonMap("expiry_date", expiryDate)), RangerPolicyResourceMatcher.MatchType.SELF));
+		}
+
+		List<RangerAccessRequest> ret        = new ArrayList<>(REQUEST_COUNT);
+		Date                      accessTime = null;
+
+		for (int i = 0; i < REQUEST_COUNT; i++) {
+			if (i % BATCH_SIZE == 0) {
+				accessTime = new Date(System.currentTimeMillis() + i);
+			}
+
+			RangerTagForEval        tag     = tags.get(random.nextInt(TAG_COUNT));
+			RangerAccessRequestImpl request = new RangerAccessRequestImpl(new RangerAccessResourceImpl(), "select", "user" + random.nextInt(10), null);
+
+			request.setAccessTime(accessTime);
+			RangerAccessRequestUtil.setCurrentTagInContext(request.getContext(), tag);
+			RangerAccessRequestUtil.setRequestTagsInContext(request.getContext(), Collections.singleton(tag));
+
+			ret.add(request);
+		}
+
+		return ret;
+	}
+
+	interface RequestEvaluator {
+		boolean isMatched(RangerAccessRequest request) throws Exception;
+	}
+}
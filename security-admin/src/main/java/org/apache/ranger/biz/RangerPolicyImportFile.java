@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.biz;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.codehaus.jackson.JsonParseException;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.type.TypeReference;
+
+/**
+ * Policies file uploaded for import, in the format written by the json export (RangerExportPolicyList).
+ *
+ * The upload is spooled to a temporary file, from which policies are parsed one at a time - so that the file can be
+ * validated in one pass and imported in another, without all its policies in memory at the same time.
+ */
+public class RangerPolicyImportFile implements Closeable {
+	private static final Log LOG = LogFactory.getLog(RangerPolicyImportFile.class);
+
+	private static final String FIELD_METADATA_INFO = "metaDataInfo";
+	private static final String FIELD_POLICIES      = "policies";
+
+	private final ObjectMapper mapper = new ObjectMapper();
+	private final File         file;
+
+	public RangerPolicyImportFile(InputStream uploadedInputStream) throws IOException {
+		file = File.createTempFile("ranger_policy_import_", ".json");
+
+		OutputStream out = null;
+
+		try {
+			out = new BufferedOutputStream(new FileOutputStream(file));
+
+			IOUtils.copy(uploadedInputStream, out);
+		} catch (IOException excp) {
+			IOUtils.closeQuietly(out);
+			close();
+
+			throw excp;
+		} finally {
+			IOUtils.closeQuietly(out);
+		}
+	}
+
+	public PolicyReader openReader() throws IOException {
+		return new PolicyReader(new BufferedInputStream(new FileInputStream(file)));
+	}
+
+	@Override
+	public void close() {
+		if (!file.delete() && file.exists()) {
+			LOG.warn("RangerPolicyImportFile: failed to delete temporary file " + file);
+		}
+	}
+
+	public class PolicyReader implements Closeable {
+		private final InputStream         in;
+		private final JsonParser          parser;
+		private final boolean             isEmpty;
+		private       boolean             isDone;
+		private       boolean             inPolicies;
+		private       Map<String, Object> metaDataInfo;
+
+		private PolicyReader(InputStream in) throws IOException {
+			this.in = in;
+
+			try {
+				this.parser = mapper.getJsonFactory().createJsonParser(in);
+
+				JsonToken token = parser.nextToken();
+
+				this.isEmpty = token == null;
+				this.isDone  = isEmpty;
+
+				if (!isEmpty && token != JsonToken.START_OBJECT) {
+					throw new JsonParseException("expected a json object", parser.getCurrentLocation());
+				}
+			} catch (IOException excp) {
+				close();
+
+				throw excp;
+			}
+		}
+
+		public boolean isEmpty() {
+			return isEmpty;
+		}
+
+		/**
+		 * @return next policy in the file, or null after the last one; null entries in the list of policies are skipped
+		 */
+		public RangerPolicy next() throws IOException {
+			RangerPolicy ret = null;
+
+			while (ret == null && !isDone) {
+				JsonToken token = parser.nextToken();
+
+				if (inPolicies) {
+					if (token == JsonToken.END_ARRAY) {
+						inPolicies = false;
+					} else {
+						ret = mapper.readValue(parser, RangerPolicy.class);
+					}
+				} else if (token == JsonToken.FIELD_NAME) {
+					String    fieldName  = parser.getCurrentName();
+					JsonToken fieldValue = parser.nextToken();
+
+					if (FIELD_POLICIES.equals(fieldName) && fieldValue == JsonToken.START_ARRAY) {
+						inPolicies = true;
+					} else if (FIELD_METADATA_INFO.equals(fieldName) && fieldValue == JsonToken.START_OBJECT) {
+						metaDataInfo = mapper.readValue(parser, new TypeReference<LinkedHashMap<String, Object>>() {});
+					} else {
+						parser.skipChildren();
+					}
+				} else if (token == JsonToken.END_OBJECT) {
+					isDone = true;
+				} else {
+					throw new JsonParseException("unexpected end of policies file", parser.getCurrentLocation());
+				}
+			}
+
+			return ret;
+		}
+
+		/**
+		 * @return metadata of the export; read along with the policies, so it might not be available before the last policy was read
+		 */
+		public Map<String, Object> getMetaDataInfo() {
+			return metaDataInfo;
+		}
+
+		@Override
+		public void close() {
+			IOUtils.closeQuietly(in);
+		}
+	}
+}
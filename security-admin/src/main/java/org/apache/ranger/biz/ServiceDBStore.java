@@ -26,16 +26,21 @@ import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.StringTokenizer;
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.net.UnknownHostException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
@@ -43,6 +48,7 @@ import java.text.SimpleDateFormat;
 import javax.annotation.PostConstruct;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.WebApplicationException;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.collections.MapUtils;
@@ -50,13 +56,12 @@ import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellStyle;
 import org.apache.poi.ss.usermodel.Font;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.ranger.audit.provider.MiscUtil;
 import org.apache.ranger.authorization.hadoop.config.RangerConfiguration;
 import org.apache.ranger.common.AppConstants;
@@ -80,6 +85,7 @@ import org.apache.ranger.common.PropertiesUtil;
 import org.apache.ranger.common.RESTErrorUtil;
 import org.apache.ranger.common.RangerConstants;
 import org.apache.ranger.common.RangerFactory;
+import org.apache.ranger.common.RangerPolicySearchIndex;
 import org.apache.ranger.common.RangerServicePoliciesCache;
 import org.apache.ranger.common.RangerVersionInfo;
 import org.apache.ranger.common.SearchCriteria;
@@ -99,6 +105,7 @@ import org.apache.ranger.db.XXServiceConfigDefDao;
 import org.apache.ranger.db.XXServiceConfigMapDao;
 import org.apache.ranger.db.XXServiceDao;
 import org.apache.ranger.db.XXServiceVersionInfoDao;
+import org.apache.ranger.plugin.model.RangerBaseModelObject;
 import org.apache.ranger.plugin.model.RangerPolicy;
 import org.apache.ranger.plugin.model.RangerPolicy.RangerDataMaskPolicyItem;
 import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItem;
@@ -120,6 +127,7 @@ import org.apache.ranger.plugin.model.RangerServiceDef.RangerResourceDef;
 import org.apache.ranger.plugin.model.RangerServiceDef.RangerRowFilterDef;
 import org.apache.ranger.plugin.model.RangerServiceDef.RangerServiceConfigDef;
 import org.apache.ranger.plugin.model.validation.RangerServiceDefHelper;
+import org.apache.ranger.plugin.store.AbstractPredicateUtil;
 import org.apache.ranger.plugin.store.AbstractServiceStore;
 import org.apache.ranger.plugin.store.EmbeddedServiceDefsUtil;
 import org.apache.ranger.plugin.store.PList;
@@ -168,6 +176,9 @@ import org.springframework.transaction.support.TransactionTemplate;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
 @Component
 public class ServiceDBStore extends AbstractServiceStore {
@@ -189,6 +200,9 @@ public class ServiceDBStore extends AbstractServiceStore {
 	private static final String RANGER_VERSION = "Ranger apache version";
 	private static final String TIMESTAMP      = "Export time";
 
+	public  static final String EXPORT_EXCEL_CONTENT_TYPE     = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+	private static final int    EXPORT_EXCEL_ROW_WINDOW_SIZE  = 100;
+
     private static final String AMBARI_SERVICE_CHECK_USER = "ambari.service.check.user";
 	private static final String SERVICE_ADMIN_USERS     = "service.admin.users";
 
@@ -1703,6 +1717,15 @@ public class ServiceDBStore extends AbstractServiceStore {
 
 		svcService.delete(service);
 
+		final String serviceName = service.getName();
+
+		transactionSynchronizationAdapter.executeOnTransactionCommit(new Runnable() {
+			@Override
+			public void run() {
+				RangerPolicySearchIndex.getInstance().onServiceDelete(serviceName);
+			}
+		});
+
 		dataHistService.createObjectDataHistory(service, RangerDataHistService.ACTION_DELETE);
 
 		List<XXTrxLog> trxLogList = svcService.getTransactionLog(service, RangerServiceService.OPERATION_DELETE_CONTEXT);
@@ -1864,6 +1887,7 @@ public class ServiceDBStore extends AbstractServiceStore {
 		createNewLabelsForPolicy(xCreatedPolicy, policyLabels);
 		handlePolicyUpdate(service);
                 RangerPolicy createdPolicy = policyService.getPopulatedViewObject(xCreatedPolicy);
+		updatePolicySearchIndex(service, createdPolicy.getId(), createdPolicy);
 		dataHistService.createObjectDataHistory(createdPolicy, RangerDataHistService.ACTION_CREATE);
 
 		List<XXTrxLog> trxLogList = policyService.getTransactionLog(createdPolicy, RangerPolicyService.OPERATION_CREATE_CONTEXT);
@@ -1961,6 +1985,7 @@ public class ServiceDBStore extends AbstractServiceStore {
 		createNewLabelsForPolicy(newUpdPolicy, policyLabels);
         handlePolicyUpdate(service);
 		RangerPolicy updPolicy = policyService.getPopulatedViewObject(newUpdPolicy);
+		updatePolicySearchIndex(service, updPolicy.getId(), updPolicy);
 		dataHistService.createObjectDataHistory(updPolicy, RangerDataHistService.ACTION_UPDATE);
 
 		bizUtil.createTrxLog(trxLogList);
@@ -2003,6 +2028,7 @@ public class ServiceDBStore extends AbstractServiceStore {
 		deleteExistingPolicyLabel(policy);
 		policyService.delete(policy);
 		handlePolicyUpdate(service);
+		updatePolicySearchIndex(service, policyId, null);
 		
 		dataHistService.createObjectDataHistory(policy, RangerDataHistService.ACTION_DELETE);
 		
@@ -2046,16 +2072,16 @@ public class ServiceDBStore extends AbstractServiceStore {
 	}
 
 
-	public void getPoliciesInExcel(List<RangerPolicy> policies, HttpServletResponse response) throws Exception {
+	public void getPoliciesInExcel(Iterator<RangerPolicy> policies, HttpServletResponse response) throws Exception {
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("==> ServiceDBStore.getPoliciesInExcel()");
 		}
 		String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date());
-		String excelFileName = "Ranger_Policies_"+timeStamp+".xls";
+		String excelFileName = "Ranger_Policies_"+timeStamp+".xlsx";
 		writeExcel(policies, excelFileName, response);
 	}
 
-	public void getPoliciesInCSV(List<RangerPolicy> policies,
+	public void getPoliciesInCSV(Iterator<RangerPolicy> policies,
 			HttpServletResponse response) throws Exception {
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("==> ServiceDBStore.getPoliciesInCSV()");
@@ -2066,8 +2092,9 @@ public class ServiceDBStore extends AbstractServiceStore {
 			String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date());
 			CSVFileName = "Ranger_Policies_" + timeStamp + ".csv";
 			out = response.getOutputStream();
-			StringBuilder sb = writeCSV(policies, CSVFileName, response);
-			IOUtils.write(sb.toString(), out, "UTF-8");
+			writeCSV(policies, CSVFileName, response, out);
+		} catch (WebApplicationException e) { // denied access to a policy read while writing
+			throw e;
 		} catch (Exception e) {
 			LOG.error("Error while generating report file " + CSVFileName, e);
 			e.printStackTrace();
@@ -2082,7 +2109,7 @@ public class ServiceDBStore extends AbstractServiceStore {
 		}
 	}
 	
-	public void getPoliciesInJson(List<RangerPolicy> policies,
+	public void getPoliciesInJson(Iterator<RangerPolicy> policies,
 			HttpServletResponse response) throws Exception {
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("==> ServiceDBStore.getPoliciesInJson()");
@@ -2097,21 +2124,12 @@ public class ServiceDBStore extends AbstractServiceStore {
 			LOG.debug("==> ServiceDBStore.getPaginatedPolicies(+ " + filter + ")");
 		}
 
-		RangerPolicyList policyList = searchRangerPolicies(filter);
-
-		if (LOG.isDebugEnabled()) {
-			LOG.debug("before filter: count=" + policyList.getListSize());
-		}
-		predicateUtil.applyFilter(policyList.getPolicies(), filter);
-		if (LOG.isDebugEnabled()) {
-			LOG.debug("after filter: count=" + policyList.getListSize());
-		}
+		RangerPolicyList policyList = searchRangerPolicies(filter); // filtered, sorted and paged
 
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("<== ServiceDBStore.getPaginatedPolicies(" + filter + "): count=" + policyList.getListSize());
 		}
 
-
 		return new PList<RangerPolicy>(policyList.getPolicies(), policyList.getStartIndex(), policyList.getPageSize(), policyList.getTotalCount(),
 				policyList.getResultSize(), policyList.getSortType(), policyList.getSortBy());
 
@@ -2189,11 +2207,21 @@ public class ServiceDBStore extends AbstractServiceStore {
 			throw new Exception("service does not exist");
 		}
 
-		List<RangerPolicy> ret = null;
-
 		ServicePolicies servicePolicies = RangerServicePoliciesCache.getInstance().getServicePolicies(service.getName(), service.getId(), this);
 		List<RangerPolicy> policies = servicePolicies != null ? servicePolicies.getPolicies() : null;
 
+		List<RangerPolicy> ret = filterServicePolicies(servicePolicies, policies, filter);
+
+		if(LOG.isDebugEnabled()) {
+			LOG.debug("<== ServiceDBStore.getServicePolicies(): count=" + ((ret == null) ? 0 : ret.size()));
+		}
+
+		return ret;
+	}
+
+	private List<RangerPolicy> filterServicePolicies(ServicePolicies servicePolicies, List<RangerPolicy> policies, SearchFilter filter) {
+		List<RangerPolicy> ret = null;
+
 		if(policies != null && filter != null) {
 			Map<String, String> filterResources = filter.getParamsWithPrefix(SearchFilter.RESOURCE_PREFIX, true);
 			String resourceMatchScope = filter.getParam(SearchFilter.RESOURCE_MATCH_SCOPE);
@@ -2255,10 +2283,6 @@ public class ServiceDBStore extends AbstractServiceStore {
 			ret = policies;
 		}
 
-		if(LOG.isDebugEnabled()) {
-			LOG.debug("<== ServiceDBStore.getServicePolicies(): count=" + ((ret == null) ? 0 : ret.size()));
-		}
-
 		return ret;
 	}
 
@@ -2397,8 +2421,12 @@ public class ServiceDBStore extends AbstractServiceStore {
 
 	@Override
 	public ServicePolicies getServicePoliciesIfUpdated(String serviceName, Long lastKnownVersion) throws Exception {
+		return getServicePoliciesIfUpdated(serviceName, lastKnownVersion, false);
+	}
+
+	public ServicePolicies getServicePoliciesIfUpdated(String serviceName, Long lastKnownVersion, boolean supportsPolicyDeltas) throws Exception {
 		if (LOG.isDebugEnabled()) {
-			LOG.debug("==> ServiceDBStore.getServicePoliciesIfUpdated(" + serviceName + ", " + lastKnownVersion + ")");
+			LOG.debug("==> ServiceDBStore.getServicePoliciesIfUpdated(" + serviceName + ", " + lastKnownVersion + ", " + supportsPolicyDeltas + ")");
 		}
 
 		ServicePolicies ret = null;
@@ -2416,7 +2444,11 @@ public class ServiceDBStore extends AbstractServiceStore {
 		}
 
 		if (lastKnownVersion == null || serviceVersionInfoDbObj == null || serviceVersionInfoDbObj.getPolicyVersion() == null || !lastKnownVersion.equals(serviceVersionInfoDbObj.getPolicyVersion())) {
-			ret = RangerServicePoliciesCache.getInstance().getServicePolicies(serviceName, serviceDbObj.getId(), this);
+			if (supportsPolicyDeltas) {
+				ret = RangerServicePoliciesCache.getInstance().getServicePolicyDeltasOrPolicies(serviceName, serviceDbObj.getId(), lastKnownVersion, this);
+			} else {
+				ret = RangerServicePoliciesCache.getInstance().getServicePolicies(serviceName, serviceDbObj.getId(), this);
+			}
 		}
 
 		if (ret != null && lastKnownVersion != null && lastKnownVersion.equals(ret.getPolicyVersion())) {
@@ -2429,7 +2461,7 @@ public class ServiceDBStore extends AbstractServiceStore {
 		}
 
 		if (LOG.isDebugEnabled()) {
-			LOG.debug("<== ServiceDBStore.getServicePoliciesIfUpdated(" + serviceName + ", " + lastKnownVersion + "): count=" + ((ret == null || ret.getPolicies() == null) ? 0 : ret.getPolicies().size()));
+			LOG.debug("<== ServiceDBStore.getServicePoliciesIfUpdated(" + serviceName + ", " + lastKnownVersion + ", " + supportsPolicyDeltas + "): count=" + ((ret == null || ret.getPolicies() == null) ? 0 : ret.getPolicies().size()) + ", deltaCount=" + ((ret == null || ret.getPolicyDeltas() == null) ? 0 : ret.getPolicyDeltas().size()));
 		}
 
 		return ret;
@@ -2715,6 +2747,11 @@ public class ServiceDBStore extends AbstractServiceStore {
 		updatePolicyVersion(service);
 	}
 
+	// after the commit, and after the policy version of the service is updated
+	private void updatePolicySearchIndex(RangerService service, Long policyId, RangerPolicy policy) {
+		transactionSynchronizationAdapter.executeOnTransactionCommit(new PolicySearchIndexUpdater(daoMgr, service.getName(), service.getId(), policyId, policy));
+	}
+
 	public enum VERSION_TYPE { POLICY_VERSION, TAG_VERSION, POLICY_AND_TAG_VERSION }
 
 	private void updatePolicyVersion(RangerService service) throws Exception {
@@ -2960,17 +2997,19 @@ public class ServiceDBStore extends AbstractServiceStore {
 		return false;
 	}
 
-        private void writeExcel(List<RangerPolicy> policies, String excelFileName,
+        private void writeExcel(Iterator<RangerPolicy> policies, String excelFileName,
                         HttpServletResponse response) throws IOException {
-		Workbook workbook = null;
+		SXSSFWorkbook workbook = null;
 		OutputStream outStream = null;
 		try {
-			workbook = new HSSFWorkbook();
+			workbook = new SXSSFWorkbook(EXPORT_EXCEL_ROW_WINDOW_SIZE); // rows out of the window are flushed to a temporary file
 			Sheet sheet = workbook.createSheet();
 			createHeaderRow(sheet);
 			int rowCount = 0;
-			if (!CollectionUtils.isEmpty(policies)) {
-				for (RangerPolicy policy : policies) {
+			Map<String, String> serviceTypes = new HashMap<String, String>();
+			if (policies != null) {
+				while (policies.hasNext()) { // policies are read from the store as rows are written
+					RangerPolicy policy = policies.next();
 
                                         List<RangerPolicyItem> policyItems = policy
                                                         .getPolicyItems();
@@ -2984,17 +3023,7 @@ public class ServiceDBStore extends AbstractServiceStore {
                                                         .getDenyExceptions();
                                         List<RangerPolicyItem> denyPolicyItems = policy
                                                         .getDenyPolicyItems();
-                                        XXService xxservice = daoMgr.getXXService().findByName(
-                                                        policy.getService());
-                                        String serviceType = "";
-                                        if (xxservice != null) {
-                                                Long ServiceId = xxservice.getType();
-                                                XXServiceDef xxservDef = daoMgr.getXXServiceDef()
-                                                                .getById(ServiceId);
-                                                if (xxservDef != null) {
-                                                        serviceType = xxservDef.getName();
-                                                }
-                                        }
+                                        String serviceType = getServiceTypeForExport(policy.getService(), serviceTypes);
 					if (CollectionUtils.isNotEmpty(policyItems)) {
 						for (RangerPolicyItem policyItem : policyItems) {
 							Row row = sheet.createRow(++rowCount);
@@ -3052,18 +3081,16 @@ public class ServiceDBStore extends AbstractServiceStore {
                                         }
 				}
 			}
-			ByteArrayOutputStream outByteStream = new ByteArrayOutputStream();
-			workbook.write(outByteStream);
-			byte[] outArray = outByteStream.toByteArray();
-			response.setContentType("application/ms-excel");
-			response.setContentLength(outArray.length);
+			response.setContentType(EXPORT_EXCEL_CONTENT_TYPE);
 			response.setHeader("Expires:", "0");
                         response.setHeader("Content-Disposition", "attachment; filename="
                                         + excelFileName);
 			response.setStatus(HttpServletResponse.SC_OK);
 			outStream = response.getOutputStream();
-			outStream.write(outArray);
+			workbook.write(outStream);
 			outStream.flush();
+		} catch (WebApplicationException ex) { // denied access to a policy read while writing
+			throw ex;
 		} catch (IOException ex) {
 			LOG.error("Failed to create report file " + excelFileName, ex);
 		} catch (Exception ex) {
@@ -3073,14 +3100,21 @@ public class ServiceDBStore extends AbstractServiceStore {
 				outStream.close();
 			}
 			if (workbook != null) {
+				workbook.dispose();
 				workbook.close();
 			}
 		}
 	}
 
-        private StringBuilder writeCSV(List<RangerPolicy> policies,
-                        String cSVFileName, HttpServletResponse response) {
+        private void writeCSV(Iterator<RangerPolicy> policies,
+                        String cSVFileName, HttpServletResponse response, OutputStream out) throws IOException {
 		response.setContentType("text/csv");
+                response.setHeader("Content-Disposition", "attachment; filename="
+                                + cSVFileName);
+		response.setStatus(HttpServletResponse.SC_OK);
+
+		Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+		Map<String, String> serviceTypes = new HashMap<String, String>();
 
 		final String LINE_SEPARATOR = "\n";
                 final String FILE_HEADER = "ID|Name|Resources|Groups|Users|Accesses|Service Type|Status|Policy Type|Delegate Admin|isRecursive|"
@@ -3088,8 +3122,9 @@ public class ServiceDBStore extends AbstractServiceStore {
 		StringBuilder csvBuffer = new StringBuilder();
 		csvBuffer.append(FILE_HEADER);
 		csvBuffer.append(LINE_SEPARATOR);
-                if (!CollectionUtils.isEmpty(policies)) {
-                        for (RangerPolicy policy : policies) {
+                if (policies != null) {
+                        while (policies.hasNext()) { // policies are read from the store as lines are written
+                                RangerPolicy policy = policies.next();
                                 List<RangerPolicyItem> policyItems = policy.getPolicyItems();
                                 List<RangerRowFilterPolicyItem> rowFilterPolicyItems = policy
                                                 .getRowFilterPolicyItems();
@@ -3101,17 +3136,7 @@ public class ServiceDBStore extends AbstractServiceStore {
                                                 .getDenyExceptions();
                                 List<RangerPolicyItem> denyPolicyItems = policy
                                                 .getDenyPolicyItems();
-                                XXService xxservice = daoMgr.getXXService().findByName(
-                                                policy.getService());
-                                String serviceType = "";
-                                if (xxservice != null) {
-                                        Long ServiceId = xxservice.getType();
-                                        XXServiceDef xxservDef = daoMgr.getXXServiceDef().getById(
-                                                        ServiceId);
-                                        if (xxservDef != null) {
-                                                serviceType = xxservDef.getName();
-					}
-				}
+                                String serviceType = getServiceTypeForExport(policy.getService(), serviceTypes);
                                 if (CollectionUtils.isNotEmpty(policyItems)) {
 					for (RangerPolicyItem policyItem : policyItems) {
                                                 writeCSVForPolicyItems(policy, policyItem, null, null,
@@ -3159,12 +3184,35 @@ public class ServiceDBStore extends AbstractServiceStore {
                                                                 csvBuffer, POLICY_DENY_INCLUDE);
                                         }
                                 }
+
+                                writer.append(csvBuffer); // one policy at a time, instead of the whole file
+                                csvBuffer.setLength(0);
                         }
                 }
-                response.setHeader("Content-Disposition", "attachment; filename="
-                                + cSVFileName);
-		response.setStatus(HttpServletResponse.SC_OK);
-		return csvBuffer;
+		writer.append(csvBuffer);
+		writer.flush();
+	}
+
+	private String getServiceTypeForExport(String serviceName, Map<String, String> serviceTypes) {
+		String ret = serviceTypes.get(serviceName);
+
+		if (ret == null) {
+			ret = "";
+
+			XXService xxservice = daoMgr.getXXService().findByName(serviceName);
+
+			if (xxservice != null) {
+				XXServiceDef xxservDef = daoMgr.getXXServiceDef().getById(xxservice.getType());
+
+				if (xxservDef != null) {
+					ret = xxservDef.getName();
+				}
+			}
+
+			serviceTypes.put(serviceName, ret);
+		}
+
+		return ret;
 	}
 
         private void writeCSVForPolicyItems(RangerPolicy policy,
@@ -3411,20 +3459,47 @@ public class ServiceDBStore extends AbstractServiceStore {
 		rangerExportPolicyList.setMetaDataInfo(metaDataInfo);
 	}
 	
-	private void writeJson(List<RangerPolicy> policies, String jsonFileName,
+	private void writeJson(Iterator<RangerPolicy> policies, String jsonFileName,
 			HttpServletResponse response) throws JSONException, IOException {
 		response.setContentType("text/json");
 		response.setHeader("Content-Disposition", "attachment; filename="+ jsonFileName);
 		ServletOutputStream out = null;
 		RangerExportPolicyList rangerExportPolicyList = new RangerExportPolicyList();
 		putMetaDataInfo(rangerExportPolicyList);
-		rangerExportPolicyList.setPolicies(policies);
+		rangerExportPolicyList.setPolicies(new ArrayList<RangerPolicy>());
 		Gson gson = new GsonBuilder().setPrettyPrinting().create();
-		String json = gson.toJson(rangerExportPolicyList, RangerExportPolicyList.class);
 		try {
 			out = response.getOutputStream();
 			response.setStatus(HttpServletResponse.SC_OK);
-			IOUtils.write(json, out, "UTF-8");
+
+			JsonWriter jsonWriter = new JsonWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+
+			jsonWriter.setIndent("  ");
+			jsonWriter.setHtmlSafe(true);
+
+			// same document as gson.toJson(rangerExportPolicyList), with policies serialized one at a time to the response
+			JsonObject exportList = gson.toJsonTree(rangerExportPolicyList, RangerExportPolicyList.class).getAsJsonObject();
+
+			jsonWriter.beginObject();
+			for (Map.Entry<String, JsonElement> field : exportList.entrySet()) {
+				jsonWriter.name(field.getKey());
+
+				if ("policies".equals(field.getKey())) {
+					jsonWriter.beginArray();
+					if (policies != null) {
+						while (policies.hasNext()) { // policies are read from the store as they are written
+							gson.toJson(policies.next(), RangerPolicy.class, jsonWriter);
+						}
+					}
+					jsonWriter.endArray();
+				} else {
+					gson.toJson(field.getValue(), jsonWriter);
+				}
+			}
+			jsonWriter.endObject();
+			jsonWriter.flush();
+		} catch (WebApplicationException e) { // denied access to a policy read while writing
+			throw e;
 		} catch (Exception e) {
 			LOG.error("Error while exporting json file " + jsonFileName, e);
 		} finally {
@@ -3793,87 +3868,168 @@ public class ServiceDBStore extends AbstractServiceStore {
         }
 
 	private RangerPolicyList searchRangerPolicies(SearchFilter searchFilter) {
-		List<RangerPolicy> policyList = new ArrayList<RangerPolicy>();
-		RangerPolicyList retList = new RangerPolicyList();
-		Map<Long,RangerPolicy> policyMap=new HashMap<Long,RangerPolicy>();
-		Set<Long> processedServices=new HashSet<Long>();
-		Set<Long> processedPolicies=new HashSet<Long>();
-		Comparator<RangerPolicy> comparator = new Comparator<RangerPolicy>() {
-			public int compare(RangerPolicy c1, RangerPolicy c2) {
-				return (int) ((c1.getId()).compareTo(c2.getId()));
-			}
-		};
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("==> ServiceDBStore.searchRangerPolicies(" + searchFilter + ")");
+		}
 
-		List<XXPolicy> xPolList = (List<XXPolicy>) policyService.searchResources(searchFilter, policyService.searchFields, policyService.sortFields, retList);
-		if (!CollectionUtils.isEmpty(xPolList)) {
-			for (XXPolicy xXPolicy : xPolList) {
-				if(!processedServices.contains(xXPolicy.getService())){
-					loadRangerPolicies(xXPolicy.getService(),processedServices,policyMap,searchFilter);
-				}
-			}
+		RangerPolicyList retList    = new RangerPolicyList();
+		String           userName   = searchFilter.getParam(SearchFilter.USER);
+		Set<String>      userGroups = StringUtils.isEmpty(userName) ? null : daoMgr.getXXGroupUser().findGroupNamesByUserName(userName);
+		Map<Long, Long>  dbVersions = getPolicyVersionsForPolicySearch(searchFilter);
+
+		// parameters not matched by the index are applied per service, on the policies found by the index
+		Map<String, String> residualParams = new HashMap<String, String>();
+
+		if (searchFilter.getParams() != null) {
+			residualParams.putAll(searchFilter.getParams());
+			residualParams.keySet().removeAll(RangerPolicySearchIndex.INDEXED_PARAMS);
 		}
-		String userName = searchFilter.getParam("user");
-		if (!StringUtils.isEmpty(userName)) {
-			searchFilter.removeParam("user");
-			Set<String> groupNames = daoMgr.getXXGroupUser().findGroupNamesByUserName(userName);
-			if (!CollectionUtils.isEmpty(groupNames)) {
-				List<XXPolicy> xPolList2 = null;
-				for (String groupName : groupNames) {
-					xPolList2 = new ArrayList<XXPolicy>();
-					searchFilter.setParam("group", groupName);
-					xPolList2 = (List<XXPolicy>) policyService.searchResources(searchFilter, policyService.searchFields, policyService.sortFields, retList);
-					if (!CollectionUtils.isEmpty(xPolList2)) {
-						for (XXPolicy xPol2 : xPolList2) {
-							if(xPol2!=null){
-								if(!processedPolicies.contains(xPol2.getId())){
-									if(!processedServices.contains(xPol2.getService())){
-										loadRangerPolicies(xPol2.getService(),processedServices,policyMap,searchFilter);
-									}
-									if(policyMap.containsKey(xPol2.getId())){
-										policyList.add(policyMap.get(xPol2.getId()));
-										processedPolicies.add(xPol2.getId());
-									}
-								}
+
+		boolean isResourceMatchScope = searchFilter.getParam(SearchFilter.RESOURCE_MATCH_SCOPE) != null;
+
+		// only the policies up to the end of the requested page are kept and sorted; the others are just counted
+		Comparator<RangerBaseModelObject> comparator = getPolicySearchComparator(searchFilter);
+		int                               startIndex = Math.max(0, searchFilter.getStartIndex());
+		int                               pageSize   = searchFilter.getMaxRows();
+		int                               maxKept    = pageSize > 0 ? (int) Math.min((long) startIndex + pageSize, Integer.MAX_VALUE) : Integer.MAX_VALUE;
+		PriorityQueue<RangerPolicy>       kept       = new PriorityQueue<RangerPolicy>(11, Collections.reverseOrder(comparator));
+		int                               totalCount = 0;
+
+		for (XXService xService : getServicesForPolicySearch(searchFilter)) {
+			try {
+				Long               dbVersion = dbVersions != null ? dbVersions.get(xService.getId()) : null;
+				List<RangerPolicy> policies  = dbVersions != null ? RangerPolicySearchIndex.getInstance().search(xService.getName(), xService.getId(), dbVersion, this, searchFilter, userGroups)
+				                                                  : RangerPolicySearchIndex.getInstance().search(xService.getName(), xService.getId(), this, searchFilter, userGroups);
+
+				if (CollectionUtils.isNotEmpty(policies)) {
+					// the service-def is needed only to match resources with a match scope
+					ServicePolicies servicePolicies = isResourceMatchScope ? RangerServicePoliciesCache.getInstance().getServicePolicies(xService.getName(), xService.getId(), this) : null;
+					SearchFilter    serviceFilter   = new SearchFilter(new HashMap<String, String>(residualParams)); // filterServicePolicies() removes resource params
+
+					policies = filterServicePolicies(servicePolicies, policies, serviceFilter);
+
+					if (policies != null) {
+						for (RangerPolicy policy : policies) {
+							totalCount++;
+
+							if (kept.size() < maxKept) {
+								kept.add(policy);
+							} else if (comparator.compare(policy, kept.peek()) < 0) {
+								kept.poll();
+								kept.add(policy);
 							}
 						}
 					}
 				}
+			} catch (Exception excp) {
+				LOG.error("searchRangerPolicies(" + searchFilter + "): failed to search policies of service " + xService.getName(), excp);
 			}
 		}
-		if (!CollectionUtils.isEmpty(xPolList)) {
-			for (XXPolicy xPol : xPolList) {
-				if(xPol!=null){
-					if(!processedPolicies.contains(xPol.getId())){
-						if(!processedServices.contains(xPol.getService())){
-							loadRangerPolicies(xPol.getService(),processedServices,policyMap,searchFilter);
-						}
-						if(policyMap.containsKey(xPol.getId())){
-							policyList.add(policyMap.get(xPol.getId()));
-							processedPolicies.add(xPol.getId());
-						}
-					}
+
+		List<RangerPolicy> policyList = new ArrayList<RangerPolicy>(kept);
+
+		Collections.sort(policyList, comparator);
+
+		int fromIndex = Math.min(startIndex, policyList.size());
+
+		retList.setPolicies(new ArrayList<RangerPolicy>(policyList.subList(fromIndex, policyList.size())));
+		retList.setStartIndex(startIndex);
+		retList.setPageSize(pageSize);
+		retList.setResultSize(policyList.size() - fromIndex);
+		retList.setTotalCount(totalCount);
+		retList.setSortBy(searchFilter.getSortBy());
+		retList.setSortType(searchFilter.getSortType());
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("<== ServiceDBStore.searchRangerPolicies(" + searchFilter + "): totalCount=" + totalCount + ", resultSize=" + retList.getResultSize());
+		}
+
+		return retList;
+	}
+
+	// order of the sortBy field of the filter, then of policy id - so that pages don't overlap
+	private Comparator<RangerBaseModelObject> getPolicySearchComparator(SearchFilter searchFilter) {
+		final Comparator<RangerBaseModelObject> sorter = predicateUtil.getSorter(searchFilter);
+		final boolean                           isDesc = StringUtils.equalsIgnoreCase(searchFilter.getSortType(), "desc");
+
+		return new Comparator<RangerBaseModelObject>() {
+			@Override
+			public int compare(RangerBaseModelObject o1, RangerBaseModelObject o2) {
+				int ret = sorter != null ? sorter.compare(o1, o2) : 0;
+
+				if (ret == 0) {
+					ret = AbstractPredicateUtil.idComparator.compare(o1, o2);
+				}
+
+				return isDesc ? -ret : ret;
+			}
+		};
+	}
+
+	/*
+	 * @return policy versions by service id, read with one query for a search of all services; null for a search of
+	 *         one service, whose version is read by the index
+	 */
+	private Map<Long, Long> getPolicyVersionsForPolicySearch(SearchFilter searchFilter) {
+		Map<Long, Long> ret = null;
+
+		if (StringUtils.isEmpty(searchFilter.getParam(SearchFilter.SERVICE_NAME)) && StringUtils.isEmpty(searchFilter.getParam(SearchFilter.SERVICE_ID))) {
+			ret = new HashMap<Long, Long>();
+
+			List<Object[]> versionInfos = daoMgr.getXXServiceVersionInfo().getAllWithServiceNames();
+
+			if (versionInfos != null) {
+				for (Object[] versionInfo : versionInfos) {
+					XXServiceVersionInfo xVersionInfo = (XXServiceVersionInfo) versionInfo[0];
+
+					ret.put(xVersionInfo.getServiceId(), xVersionInfo.getPolicyVersion());
 				}
 			}
-			Collections.sort(policyList, comparator);
 		}
-		retList.setPolicies(policyList);
-		return retList;
+
+		return ret;
 	}
 
-	private void loadRangerPolicies(Long serviceId,Set<Long> processedServices,Map<Long,RangerPolicy> policyMap,SearchFilter searchFilter){
-		try {
-			List<RangerPolicy> tempPolicyList = getServicePolicies(serviceId,searchFilter);
-			if(!CollectionUtils.isEmpty(tempPolicyList)){
-				for (RangerPolicy rangerPolicy : tempPolicyList) {
-					if(!policyMap.containsKey(rangerPolicy.getId())){
-						policyMap.put(rangerPolicy.getId(), rangerPolicy);
-					}
+	private List<XXService> getServicesForPolicySearch(SearchFilter searchFilter) {
+		List<XXService> ret;
+
+		String serviceName = searchFilter.getParam(SearchFilter.SERVICE_NAME);
+		String serviceId   = searchFilter.getParam(SearchFilter.SERVICE_ID);
+
+		if (StringUtils.isNotEmpty(serviceName)) {
+			XXService xService = daoMgr.getXXService().findByName(serviceName);
+
+			ret = xService != null ? Collections.singletonList(xService) : Collections.<XXService>emptyList();
+		} else if (StringUtils.isNotEmpty(serviceId)) {
+			XXService xService = StringUtils.isNumeric(serviceId) ? daoMgr.getXXService().getById(Long.valueOf(serviceId)) : null;
+
+			ret = xService != null ? Collections.singletonList(xService) : Collections.<XXService>emptyList();
+		} else {
+			ret = daoMgr.getXXService().getAll();
+		}
+
+		String serviceType   = searchFilter.getParam(SearchFilter.SERVICE_TYPE);
+		String serviceTypeId = searchFilter.getParam(SearchFilter.SERVICE_TYPE_ID);
+
+		if (StringUtils.isNotEmpty(serviceType) || StringUtils.isNotEmpty(serviceTypeId)) {
+			XXServiceDef    xServiceDef  = StringUtils.isNotEmpty(serviceType) ? daoMgr.getXXServiceDef().findByName(serviceType) : null;
+			List<XXService> typeServices = new ArrayList<XXService>();
+
+			for (XXService xService : ret) {
+				boolean isMatch = (StringUtils.isEmpty(serviceType) || (xServiceDef != null && xServiceDef.getId().equals(xService.getType())))
+				               && (StringUtils.isEmpty(serviceTypeId) || serviceTypeId.equals(String.valueOf(xService.getType())));
+
+				if (isMatch) {
+					typeServices.add(xService);
 				}
-				processedServices.add(serviceId);
 			}
-		} catch (Exception e) {
+
+			ret = typeServices;
 		}
+
+		return ret != null ? ret : Collections.<XXService>emptyList();
 	}
+
 	public void getServiceUpgraded(){
 		LOG.info("==> ServiceDBStore.getServiceUpgraded()");
 		updateServiceWithCustomProperty();
@@ -4389,4 +4545,32 @@ public class ServiceDBStore extends AbstractServiceStore {
 			ServiceDBStore.persistVersionChange(this.daoManager, this.serviceId, this.versionType);
 		}
 	}
+
+	public static class PolicySearchIndexUpdater implements Runnable {
+		final RangerDaoManager daoManager;
+		final String           serviceName;
+		final Long             serviceId;
+		final Long             policyId;
+		final RangerPolicy     policy; // null when the policy was deleted
+
+		public PolicySearchIndexUpdater(RangerDaoManager daoManager, String serviceName, Long serviceId, Long policyId, RangerPolicy policy) {
+			this.daoManager  = daoManager;
+			this.serviceName = serviceName;
+			this.serviceId   = serviceId;
+			this.policyId    = policyId;
+			this.policy      = policy;
+		}
+
+		@Override
+		public void run() {
+			XXServiceVersionInfo serviceVersionInfo = daoManager.getXXServiceVersionInfo().findByServiceId(serviceId);
+			Long                 policyVersion      = serviceVersionInfo != null ? serviceVersionInfo.getPolicyVersion() : null;
+
+			if (policy != null) {
+				RangerPolicySearchIndex.getInstance().onPolicyUpdate(serviceName, serviceId, policyVersion, policy);
+			} else {
+				RangerPolicySearchIndex.getInstance().onPolicyDelete(serviceName, serviceId, policyVersion, policyId);
+			}
+		}
+	}
 }
@@ -24,6 +24,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -576,6 +577,166 @@ public class XUserMgr extends XUserMgrBase {
 		return vxUGInfo;
 	}
 	
+	/**
+	 * Bulk version of createXUserGroupFromMap(), for usersync: each entry has a user and all the groups of the user.
+	 * Users and groups are looked up with a query per batch of names, and the group user mappings are set to the
+	 * given groups - adding missing mappings and removing the others - with batched inserts and deletes. Portal
+	 * users and roles are still handled one user at a time, but only for new users and for users whose roles change.
+	 */
+	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
+	public VXUserGroupInfoList createXUserGroupsFromMap(VXUserGroupInfoList vXUserGroupInfoList) {
+		checkAdminAccess();
+		xaBizUtil.blockAuditorRoleUser();
+
+		Map<String, VXUser>        users      = new LinkedHashMap<String, VXUser>();
+		Map<String, List<VXGroup>> userGroups = new HashMap<String, List<VXGroup>>();
+		List<VXGroup>              groups     = new ArrayList<VXGroup>();
+
+		if (vXUserGroupInfoList != null && vXUserGroupInfoList.getList() != null) {
+			for (VXUserGroupInfo vXUserGroupInfo : vXUserGroupInfoList.getList()) {
+				VXUser vXUser = vXUserGroupInfo != null ? vXUserGroupInfo.getXuserInfo() : null;
+
+				if (vXUser == null || StringUtils.isBlank(vXUser.getName())) {
+					continue;
+				}
+
+				List<VXGroup> vXGroups = vXUserGroupInfo.getXgroupInfo() != null ? vXUserGroupInfo.getXgroupInfo() : new ArrayList<VXGroup>();
+
+				users.put(vXUser.getName(), vXUser);
+				userGroups.put(vXUser.getName(), vXGroups);
+				groups.addAll(vXGroups);
+			}
+		}
+
+		if (logger.isDebugEnabled()) {
+			logger.debug("==> XUserMgr.createXUserGroupsFromMap(): users=" + users.size() + ", groups=" + groups.size());
+		}
+
+		Set<String> newUsers = new HashSet<String>(users.keySet());
+
+		for (XXUser xxUser : daoManager.getXXUser().findByUserNames(users.keySet())) {
+			newUsers.remove(xxUser.getName());
+		}
+
+		for (VXUser vXUser : users.values()) {
+			if (newUsers.contains(vXUser.getName())) {
+				createPortalUserIfNotExists(vXUser);
+			} else {
+				updateRolesIfChanged(vXUser);
+			}
+		}
+
+		Map<String, XXUser>            xxUsers      = xUserService.createXUsersWithOutLogin(users.values());
+		Map<String, XXGroup>           xxGroups     = xGroupService.createOrUpdateXGroupsWithOutLogin(groups);
+		Map<Long, Collection<XXGroup>> xxUserGroups = new HashMap<Long, Collection<XXGroup>>();
+		List<VXUserGroupInfo>          vxUGInfoList = new ArrayList<VXUserGroupInfo>(users.size());
+
+		for (VXUser vXUser : users.values()) {
+			XXUser        xxUser      = xxUsers.get(vXUser.getName());
+			List<XXGroup> xxGroupList = new ArrayList<XXGroup>();
+			List<VXGroup> vxGroupList = new ArrayList<VXGroup>();
+
+			for (VXGroup vXGroup : userGroups.get(vXUser.getName())) {
+				XXGroup xxGroup = vXGroup.getName() != null ? xxGroups.get(vXGroup.getName()) : null;
+
+				if (xxGroup != null) {
+					xxGroupList.add(xxGroup);
+					vxGroupList.add(toVXGroup(xxGroup));
+				}
+			}
+
+			xxUserGroups.put(xxUser.getId(), xxGroupList);
+
+			VXUserGroupInfo vxUGInfo = new VXUserGroupInfo();
+
+			vxUGInfo.setXuserInfo(toVXUser(xxUser, vXUser.getUserRoleList()));
+			vxUGInfo.setXgroupInfo(vxGroupList);
+
+			vxUGInfoList.add(vxUGInfo);
+		}
+
+		xGroupUserService.setGroupsForUsersWithOutLogin(xxUserGroups);
+
+		if (logger.isDebugEnabled()) {
+			logger.debug("<== XUserMgr.createXUserGroupsFromMap(): users=" + users.size() + ", newUsers=" + newUsers.size());
+		}
+
+		return new VXUserGroupInfoList(vxUGInfoList);
+	}
+
+	private void createPortalUserIfNotExists(VXUser vXUser) {
+		XXPortalUser xxPortalUser = daoManager.getXXPortalUser().findByLoginId(vXUser.getName());
+
+		if (xxPortalUser == null) {
+			VXPortalUser vXPortalUser = new VXPortalUser();
+
+			vXPortalUser.setLoginId(vXUser.getName());
+			vXPortalUser.setFirstName(vXUser.getName());
+			vXPortalUser.setLastName(vXUser.getName());
+			vXPortalUser.setUserRoleList(vXUser.getUserRoleList());
+
+			vXPortalUser = userMgr.createDefaultAccountUser(vXPortalUser);
+
+			if (vXPortalUser != null) {
+				assignPermissionToUser(vXPortalUser, true);
+			}
+		} else if (!updateRolesIfChanged(vXUser)) {
+			assignPermissionToUser(userMgr.mapXXPortalUserToVXPortalUserForDefaultAccount(xxPortalUser), true);
+		}
+	}
+
+	// returns true if the roles of the user were updated
+	private boolean updateRolesIfChanged(VXUser vXUser) {
+		Collection<String> reqRoleList = vXUser.getUserRoleList();
+
+		if (CollectionUtils.isEmpty(reqRoleList) || reqRoleList.contains(null)) {
+			return false;
+		}
+
+		XXPortalUser xxPortalUser = daoManager.getXXPortalUser().findByLoginId(vXUser.getName());
+
+		if (xxPortalUser != null && xxPortalUser.getUserSource() == RangerCommonEnums.USER_EXTERNAL) {
+			List<String> existingRole = daoManager.getXXPortalUserRole().findXPortalUserRolebyXPortalUserId(xxPortalUser.getId());
+
+			if (!new ArrayList<String>(reqRoleList).equals(existingRole)) {
+				VXPortalUser vXPortalUser = userMgr.mapXXPortalUserToVXPortalUserForDefaultAccount(xxPortalUser);
+
+				vXPortalUser = userMgr.updateRoleForExternalUsers(reqRoleList, existingRole, vXPortalUser);
+
+				assignPermissionToUser(vXPortalUser, true);
+
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private VXUser toVXUser(XXUser xxUser, Collection<String> userRoleList) {
+		VXUser ret = new VXUser();
+
+		ret.setId(xxUser.getId());
+		ret.setName(xxUser.getName());
+		ret.setDescription(xxUser.getDescription());
+		ret.setIsVisible(xxUser.getIsVisible());
+		ret.setUserRoleList(userRoleList);
+
+		return ret;
+	}
+
+	private VXGroup toVXGroup(XXGroup xxGroup) {
+		VXGroup ret = new VXGroup();
+
+		ret.setId(xxGroup.getId());
+		ret.setName(xxGroup.getName());
+		ret.setDescription(xxGroup.getDescription());
+		ret.setGroupType(xxGroup.getGroupType());
+		ret.setGroupSource(xxGroup.getGroupSource());
+		ret.setIsVisible(xxGroup.getIsVisible());
+
+		return ret;
+	}
+
 	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
 	public VXGroupUserInfo createXGroupUserFromMap(
 			VXGroupUserInfo vXGroupUserInfo) {
@@ -0,0 +1,465 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItem;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+import org.apache.ranger.plugin.store.ServiceStore;
+import org.apache.ranger.plugin.util.SearchFilter;
+import org.apache.ranger.plugin.util.ServicePolicies;
+
+/**
+ * In-memory inverted index of the policies of each service, to search policies by user, group, name, label and resource
+ * value without filtering every policy of the service:
+ * <ul>
+ *     <li>users, groups and names are matched exactly - like the database search did - with hash lookups;</li>
+ *     <li>partial names, resource values and labels are matched, ignoring case, against the distinct terms of the service,
+ *     which are far fewer than its policies.</li>
+ * </ul>
+ * The index of a service is built from RangerServicePoliciesCache on first search, updated by ServiceDBStore after each
+ * committed policy create/update/delete, and synced again with RangerServicePoliciesCache when the policy version of the
+ * service in the database moves otherwise - for example by an update through another Ranger Admin instance. A sync
+ * re-indexes only the policies whose version changed.
+ */
+public class RangerPolicySearchIndex {
+	private static final Log LOG = LogFactory.getLog(RangerPolicySearchIndex.class);
+
+	/**
+	 * Search parameters matched by the index. Other parameters of a search are left to the caller to apply on the results.
+	 */
+	public static final Set<String> INDEXED_PARAMS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+			SearchFilter.USER, SearchFilter.GROUP, SearchFilter.POLICY_NAME, SearchFilter.POLICY_NAME_PARTIAL,
+			SearchFilter.POL_RESOURCE, SearchFilter.POLICY_LABELS_PARTIAL, SearchFilter.GUID)));
+
+	private static volatile RangerPolicySearchIndex sInstance = null;
+
+	private final ConcurrentMap<String, ServicePolicyIndex> serviceIndexes = new ConcurrentHashMap<>();
+
+	public static RangerPolicySearchIndex getInstance() {
+		RangerPolicySearchIndex ret = sInstance;
+
+		if (ret == null) {
+			synchronized (RangerPolicySearchIndex.class) {
+				ret = sInstance;
+
+				if (ret == null) {
+					sInstance = ret = new RangerPolicySearchIndex();
+				}
+			}
+		}
+
+		return ret;
+	}
+
+	/**
+	 * @param userGroups groups of the user in filter; policies that refer to any of these groups match the user
+	 * @return policies of the service that match the indexed parameters of filter
+	 */
+	public List<RangerPolicy> search(String serviceName, Long serviceId, ServiceStore serviceStore, SearchFilter filter, Collection<String> userGroups) throws Exception {
+		return search(serviceName, serviceId, serviceStore.getServicePolicyVersion(serviceName), serviceStore, filter, userGroups);
+	}
+
+	/**
+	 * @param dbVersion policy version of the service in the database, read by the caller - like for a search of many services
+	 * @param userGroups groups of the user in filter; policies that refer to any of these groups match the user
+	 * @return policies of the service that match the indexed parameters of filter
+	 */
+	public List<RangerPolicy> search(String serviceName, Long serviceId, Long dbVersion, ServiceStore serviceStore, SearchFilter filter, Collection<String> userGroups) throws Exception {
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("==> RangerPolicySearchIndex.search(" + serviceName + ", " + filter + ")");
+		}
+
+		ServicePolicyIndex index = getServiceIndex(serviceName, serviceId);
+
+		if (dbVersion == null || !dbVersion.equals(index.getPolicyVersion())) {
+			ServicePolicies servicePolicies = RangerServicePoliciesCache.getInstance().getServicePolicies(serviceName, serviceId, serviceStore);
+
+			if (servicePolicies != null) {
+				index.sync(servicePolicies);
+			}
+		}
+
+		List<RangerPolicy> ret = index.search(filter, userGroups);
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("<== RangerPolicySearchIndex.search(" + serviceName + ", " + filter + "): count=" + ret.size());
+		}
+
+		return ret;
+	}
+
+	/**
+	 * @param policyVersion policy version of the service after the change was committed
+	 */
+	public void onPolicyUpdate(String serviceName, Long serviceId, Long policyVersion, RangerPolicy policy) {
+		ServicePolicyIndex index = serviceIndexes.get(serviceName);
+
+		if (index != null && Objects.equals(index.serviceId, serviceId)) {
+			index.update(policy.getId(), policy, policyVersion);
+		}
+	}
+
+	/**
+	 * @param policyVersion policy version of the service after the change was committed
+	 */
+	public void onPolicyDelete(String serviceName, Long serviceId, Long policyVersion, Long policyId) {
+		ServicePolicyIndex index = serviceIndexes.get(serviceName);
+
+		if (index != null && Objects.equals(index.serviceId, serviceId)) {
+			index.update(policyId, null, policyVersion);
+		}
+	}
+
+	public void onServiceDelete(String serviceName) {
+		serviceIndexes.remove(serviceName);
+	}
+
+	private ServicePolicyIndex getServiceIndex(String serviceName, Long serviceId) {
+		ServicePolicyIndex ret = serviceIndexes.get(serviceName);
+
+		if (ret == null || !Objects.equals(ret.serviceId, serviceId)) { // not indexed yet, or service recreated with the same name
+			ServicePolicyIndex index    = new ServicePolicyIndex(serviceId);
+			ServicePolicyIndex existing = ret == null ? serviceIndexes.putIfAbsent(serviceName, index)
+			                                          : (serviceIndexes.replace(serviceName, ret, index) ? null : serviceIndexes.get(serviceName));
+
+			ret = existing != null && Objects.equals(existing.serviceId, serviceId) ? existing : index;
+		}
+
+		return ret;
+	}
+
+	private static final class ServicePolicyIndex {
+		final Long serviceId;
+
+		private final ReentrantReadWriteLock   lock           = new ReentrantReadWriteLock();
+		private final Map<Long, IndexedPolicy> policies       = new HashMap<>();
+		private final Map<String, Set<Long>>   users          = new HashMap<>();
+		private final Map<String, Set<Long>>   groups         = new HashMap<>();
+		private final Map<String, Set<Long>>   names          = new HashMap<>();
+		private final Map<String, Set<Long>>   lowerNames     = new HashMap<>();
+		private final Map<String, Set<Long>>   resourceValues = new HashMap<>(); // lower case
+		private final Map<String, Set<Long>>   labels         = new HashMap<>(); // lower case
+		private       Long                     policyVersion;
+
+		ServicePolicyIndex(Long serviceId) {
+			this.serviceId = serviceId;
+		}
+
+		Long getPolicyVersion() {
+			lock.readLock().lock();
+
+			try {
+				return policyVersion;
+			} finally {
+				lock.readLock().unlock();
+			}
+		}
+
+		void sync(ServicePolicies servicePolicies) {
+			lock.writeLock().lock();
+
+			try {
+				if (policyVersion != null && policyVersion.equals(servicePolicies.getPolicyVersion())) {
+					return;
+				}
+
+				List<RangerPolicy> latest     = servicePolicies.getPolicies() != null ? servicePolicies.getPolicies() : Collections.<RangerPolicy>emptyList();
+				Set<Long>          removedIds = new HashSet<>(policies.keySet());
+				int                reindexed  = 0;
+
+				for (RangerPolicy policy : latest) {
+					IndexedPolicy existing = policies.get(policy.getId());
+
+					removedIds.remove(policy.getId());
+
+					if (existing == null || !Objects.equals(existing.policy.getVersion(), policy.getVersion())) {
+						reindex(policy.getId(), policy);
+
+						reindexed++;
+					}
+				}
+
+				for (Long policyId : removedIds) {
+					reindex(policyId, null);
+				}
+
+				policyVersion = servicePolicies.getPolicyVersion();
+
+				if (LOG.isDebugEnabled()) {
+					LOG.debug("RangerPolicySearchIndex.sync(serviceId=" + serviceId + ", policyVersion=" + policyVersion + "): reindexed=" + reindexed + ", removed=" + removedIds.size() + ", count=" + policies.size());
+				}
+			} finally {
+				lock.writeLock().unlock();
+			}
+		}
+
+		void update(Long policyId, RangerPolicy policy, Long newPolicyVersion) {
+			lock.writeLock().lock();
+
+			try {
+				reindex(policyId, policy);
+
+				// with no other change in between, the index is at the new version; otherwise the next search syncs it
+				if (policyVersion != null && newPolicyVersion != null && newPolicyVersion == policyVersion + 1) {
+					policyVersion = newPolicyVersion;
+				}
+			} finally {
+				lock.writeLock().unlock();
+			}
+		}
+
+		List<RangerPolicy> search(SearchFilter filter, Collection<String> userGroups) {
+			lock.readLock().lock();
+
+			try {
+				Set<Long> matches = null;
+
+				String userName = filter.getParam(SearchFilter.USER);
+
+				if (StringUtils.isNotEmpty(userName)) {
+					Set<Long> userMatches = new HashSet<>(get(users, userName));
+
+					if (userGroups != null) {
+						for (String userGroup : userGroups) {
+							userMatches.addAll(get(groups, userGroup));
+						}
+					}
+
+					matches = intersect(matches, userMatches);
+				}
+
+				String groupName = filter.getParam(SearchFilter.GROUP);
+
+				if (StringUtils.isNotEmpty(groupName)) {
+					matches = intersect(matches, get(groups, groupName));
+				}
+
+				String policyName = filter.getParam(SearchFilter.POLICY_NAME);
+
+				if (StringUtils.isNotEmpty(policyName)) {
+					matches = intersect(matches, get(names, policyName));
+				}
+
+				matches = intersectPartial(matches, lowerNames, filter.getParam(SearchFilter.POLICY_NAME_PARTIAL));
+				matches = intersectPartial(matches, resourceValues, filter.getParam(SearchFilter.POL_RESOURCE));
+				matches = intersectPartial(matches, labels, filter.getParam(SearchFilter.POLICY_LABELS_PARTIAL));
+
+				String             guid = filter.getParam(SearchFilter.GUID);
+				List<RangerPolicy> ret  = new ArrayList<>(matches != null ? matches.size() : policies.size());
+
+				for (IndexedPolicy indexed : (matches != null ? getPolicies(matches) : policies.values())) {
+					if (StringUtils.isEmpty(guid) || StringUtils.equals(guid, indexed.policy.getGuid())) {
+						ret.add(indexed.policy);
+					}
+				}
+
+				return ret;
+			} finally {
+				lock.readLock().unlock();
+			}
+		}
+
+		private void reindex(Long policyId, RangerPolicy policy) {
+			IndexedPolicy existing = policies.remove(policyId);
+
+			if (existing != null) {
+				remove(users, existing.users, policyId);
+				remove(groups, existing.groups, policyId);
+				remove(names, Collections.singleton(existing.name), policyId);
+				remove(lowerNames, Collections.singleton(toLowerCase(existing.name)), policyId);
+				remove(resourceValues, existing.resourceValues, policyId);
+				remove(labels, existing.labels, policyId);
+			}
+
+			if (policy != null) {
+				IndexedPolicy indexed = new IndexedPolicy(policy);
+
+				policies.put(policyId, indexed);
+
+				add(users, indexed.users, policyId);
+				add(groups, indexed.groups, policyId);
+				add(names, Collections.singleton(indexed.name), policyId);
+				add(lowerNames, Collections.singleton(toLowerCase(indexed.name)), policyId);
+				add(resourceValues, indexed.resourceValues, policyId);
+				add(labels, indexed.labels, policyId);
+			}
+		}
+
+		private List<IndexedPolicy> getPolicies(Set<Long> policyIds) {
+			List<IndexedPolicy> ret = new ArrayList<>(policyIds.size());
+
+			for (Long policyId : policyIds) {
+				IndexedPolicy indexed = policies.get(policyId);
+
+				if (indexed != null) {
+					ret.add(indexed);
+				}
+			}
+
+			return ret;
+		}
+
+		private static Set<Long> intersectPartial(Set<Long> matches, Map<String, Set<Long>> index, String value) {
+			if (StringUtils.isEmpty(value)) {
+				return matches;
+			}
+
+			String    lowerValue = toLowerCase(value);
+			Set<Long> ret        = new HashSet<>();
+
+			for (Map.Entry<String, Set<Long>> entry : index.entrySet()) {
+				if (entry.getKey().contains(lowerValue)) {
+					ret.addAll(entry.getValue());
+				}
+			}
+
+			return intersect(matches, ret);
+		}
+
+		private static Set<Long> intersect(Set<Long> matches, Set<Long> termMatches) {
+			final Set<Long> ret;
+
+			if (matches == null) {
+				ret = new HashSet<>(termMatches);
+			} else {
+				ret = matches;
+
+				ret.retainAll(termMatches);
+			}
+
+			return ret;
+		}
+
+		private static Set<Long> get(Map<String, Set<Long>> index, String term) {
+			Set<Long> ret = index.get(term);
+
+			return ret != null ? ret : Collections.<Long>emptySet();
+		}
+
+		private static void add(Map<String, Set<Long>> index, Collection<String> terms, Long policyId) {
+			for (String term : terms) {
+				if (term != null) {
+					Set<Long> policyIds = index.get(term);
+
+					if (policyIds == null) {
+						policyIds = new HashSet<>();
+
+						index.put(term, policyIds);
+					}
+
+					policyIds.add(policyId);
+				}
+			}
+		}
+
+		private static void remove(Map<String, Set<Long>> index, Collection<String> terms, Long policyId) {
+			for (String term : terms) {
+				Set<Long> policyIds = term != null ? index.get(term) : null;
+
+				if (policyIds != null) {
+					policyIds.remove(policyId);
+
+					if (policyIds.isEmpty()) {
+						index.remove(term);
+					}
+				}
+			}
+		}
+	}
+
+	// terms of a policy, kept to remove the policy from the index when it changes
+	private static final class IndexedPolicy {
+		final RangerPolicy policy;
+		final String       name;
+		final Set<String>  users          = new HashSet<>();
+		final Set<String>  groups         = new HashSet<>();
+		final Set<String>  resourceValues = new HashSet<>();
+		final Set<String>  labels         = new HashSet<>();
+
+		IndexedPolicy(RangerPolicy policy) {
+			this.policy = policy;
+			this.name   = policy.getName();
+
+			List<?>[] policyItemsList = new List<?>[] { policy.getPolicyItems(),
+														policy.getDenyPolicyItems(),
+														policy.getAllowExceptions(),
+														policy.getDenyExceptions(),
+														policy.getDataMaskPolicyItems(),
+														policy.getRowFilterPolicyItems()
+													  };
+
+			for (List<?> policyItemsObj : policyItemsList) {
+				@SuppressWarnings("unchecked")
+				List<RangerPolicyItem> policyItems = (List<RangerPolicyItem>) policyItemsObj;
+
+				if (policyItems != null) {
+					for (RangerPolicyItem policyItem : policyItems) {
+						if (policyItem.getUsers() != null) {
+							users.addAll(policyItem.getUsers());
+						}
+
+						if (policyItem.getGroups() != null) {
+							groups.addAll(policyItem.getGroups());
+						}
+					}
+				}
+			}
+
+			if (policy.getResources() != null) {
+				for (RangerPolicyResource policyResource : policy.getResources().values()) {
+					if (policyResource != null && CollectionUtils.isNotEmpty(policyResource.getValues())) {
+						for (String value : policyResource.getValues()) {
+							resourceValues.add(toLowerCase(value));
+						}
+					}
+				}
+			}
+
+			if (policy.getPolicyLabels() != null) {
+				for (String label : policy.getPolicyLabels()) {
+					labels.add(toLowerCase(label));
+				}
+			}
+		}
+	}
+
+	private static String toLowerCase(String str) {
+		return str != null ? str.toLowerCase() : null;
+	}
+}
@@ -23,16 +23,23 @@ import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.ranger.authorization.hadoop.config.RangerConfiguration;
 import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerPolicyDelta;
+import org.apache.ranger.plugin.model.RangerServiceDef;
 import org.apache.ranger.plugin.store.ServiceStore;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.plugin.util.RangerPolicyDeltaUtil;
 import org.apache.ranger.plugin.util.ServicePolicies;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
@@ -41,10 +48,14 @@ public class RangerServicePoliciesCache {
 	private static final Log LOG = LogFactory.getLog(RangerServicePoliciesCache.class);
 
 	private static final int MAX_WAIT_TIME_FOR_UPDATE = 10;
+	private static final int MAX_POLICY_DELTA_LOG_VERSIONS = 100;
+	private static final int MAX_POLICY_DELTA_LOG_ENTRIES  = 1000;
 
 	public static volatile RangerServicePoliciesCache sInstance = null;
 	private final boolean useServicePoliciesCache;
 	private final int waitTimeInSeconds;
+	private final int maxPolicyDeltaLogVersions;
+	private final int maxPolicyDeltaLogEntries;
 
 	private final Map<String, ServicePoliciesWrapper> servicePoliciesMap = new HashMap<String, ServicePoliciesWrapper>();
 
@@ -62,6 +73,8 @@ public class RangerServicePoliciesCache {
 	private RangerServicePoliciesCache() {
 		useServicePoliciesCache = RangerConfiguration.getInstance().getBoolean("ranger.admin.policy.download.usecache", true);
 		waitTimeInSeconds = RangerConfiguration.getInstance().getInt("ranger.admin.policy.download.cache.max.waittime.for.update", MAX_WAIT_TIME_FOR_UPDATE);
+		maxPolicyDeltaLogVersions = RangerConfiguration.getInstance().getInt("ranger.admin.policy.download.delta.log.max.versions", MAX_POLICY_DELTA_LOG_VERSIONS);
+		maxPolicyDeltaLogEntries = RangerConfiguration.getInstance().getInt("ranger.admin.policy.download.delta.log.max.entries", MAX_POLICY_DELTA_LOG_ENTRIES);
 	}
 
 	public void dump() {
@@ -164,11 +177,66 @@ public class RangerServicePoliciesCache {
 		return ret;
 	}
 
+	/**
+	 * Returns the policies of the service as changes since lastKnownVersion, when the change-log of the service reaches back
+	 * to that version; otherwise returns all policies of the service, same as getServicePolicies().
+	 */
+	public ServicePolicies getServicePolicyDeltasOrPolicies(String serviceName, Long serviceId, Long lastKnownVersion, ServiceStore serviceStore) throws Exception {
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("==> RangerServicePoliciesCache.getServicePolicyDeltasOrPolicies(" + serviceName + ", " + serviceId + ", " + lastKnownVersion + ")");
+		}
+
+		ServicePolicies ret = getServicePolicies(serviceName, serviceId, serviceStore);
+
+		if (useServicePoliciesCache && ret != null && lastKnownVersion != null && lastKnownVersion != -1L && !lastKnownVersion.equals(ret.getPolicyVersion())) {
+			ServicePoliciesWrapper servicePoliciesWrapper;
+
+			synchronized (this) {
+				servicePoliciesWrapper = servicePoliciesMap.get(serviceName);
+			}
+
+			List<RangerPolicyDelta> policyDeltas = servicePoliciesWrapper != null ? servicePoliciesWrapper.getPolicyDeltas(lastKnownVersion, ret) : null;
+
+			if (policyDeltas != null) {
+				ServicePolicies deltas = new ServicePolicies();
+
+				deltas.setServiceName(ret.getServiceName());
+				deltas.setServiceId(ret.getServiceId());
+				deltas.setPolicyVersion(ret.getPolicyVersion());
+				deltas.setPolicyUpdateTime(ret.getPolicyUpdateTime());
+				deltas.setServiceDef(ret.getServiceDef());
+				deltas.setAuditMode(ret.getAuditMode());
+				deltas.setPolicyDeltas(policyDeltas);
+
+				ret = deltas;
+			}
+		}
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("<== RangerServicePoliciesCache.getServicePolicyDeltasOrPolicies(" + serviceName + ", " + serviceId + ", " + lastKnownVersion + "): deltaCount=" + ((ret == null || ret.getPolicyDeltas() == null) ? null : ret.getPolicyDeltas().size()));
+		}
+
+		return ret;
+	}
+
+	private static class PolicyChangeLogEntry {
+		final Long                    fromVersion;
+		final Long                    toVersion;
+		final List<RangerPolicyDelta> deltas;
+
+		PolicyChangeLogEntry(Long fromVersion, Long toVersion, List<RangerPolicyDelta> deltas) {
+			this.fromVersion = fromVersion;
+			this.toVersion   = toVersion;
+			this.deltas      = deltas;
+		}
+	}
+
 	private class ServicePoliciesWrapper {
 		final Long serviceId;
 		ServicePolicies servicePolicies;
 		Date updateTime = null;
 		long longestDbLoadTimeInMs = -1;
+		volatile List<PolicyChangeLogEntry> policyChangeLog = Collections.emptyList();
 
 		ReentrantLock lock = new ReentrantLock();
 
@@ -242,6 +310,7 @@ public class RangerServicePoliciesCache {
 					if (servicePoliciesFromDb.getPolicyVersion() == null) {
 						servicePoliciesFromDb.setPolicyVersion(0L);
 					}
+					updatePolicyChangeLog(servicePolicies, servicePoliciesFromDb);
 					servicePolicies = servicePoliciesFromDb;
 					pruneUnusedAttributes();
 				}
@@ -252,6 +321,116 @@ public class RangerServicePoliciesCache {
 			}
 		}
 
+		List<RangerPolicyDelta> getPolicyDeltas(Long lastKnownVersion, ServicePolicies latest) {
+			List<PolicyChangeLogEntry> changeLog = policyChangeLog;
+			List<RangerPolicyDelta>    ret       = null;
+			Long                       version   = lastKnownVersion;
+			boolean                    found     = false;
+
+			for (PolicyChangeLogEntry entry : changeLog) {
+				if (!found) {
+					found = Objects.equals(entry.fromVersion, lastKnownVersion);
+
+					if (!found) {
+						continue;
+					}
+
+					ret = new ArrayList<>();
+				}
+
+				if (!Objects.equals(entry.fromVersion, version)) { // gap in the change-log
+					ret = null;
+
+					break;
+				}
+
+				ret.addAll(entry.deltas);
+
+				version = entry.toVersion;
+			}
+
+			if (ret != null && !Objects.equals(version, latest.getPolicyVersion())) {
+				if (LOG.isDebugEnabled()) {
+					LOG.debug("policy change-log ends at version " + version + ", latest version=" + latest.getPolicyVersion());
+				}
+
+				ret = null;
+			}
+
+			if (ret != null) {
+				ret = RangerPolicyDeltaUtil.compact(ret);
+
+				int policyCount = latest.getPolicies() != null ? latest.getPolicies().size() : 0;
+
+				if (ret.size() > policyCount) { // all policies would be smaller than the deltas
+					ret = null;
+				}
+			}
+
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("getPolicyDeltas(lastKnownVersion=" + lastKnownVersion + "): " + (ret == null ? "change-log does not cover this version" : (ret.size() + " deltas")));
+			}
+
+			return ret;
+		}
+
+		private void updatePolicyChangeLog(ServicePolicies oldPolicies, ServicePolicies newPolicies) {
+			List<PolicyChangeLogEntry> changeLog = null;
+
+			if (oldPolicies != null && oldPolicies.getPolicyVersion() != null && isDeltaCompatible(oldPolicies, newPolicies)) {
+				List<RangerPolicyDelta> deltas = RangerPolicyDeltaUtil.computeDeltas(oldPolicies.getPolicies(), newPolicies.getPolicies(), newPolicies.getPolicyVersion());
+
+				changeLog = new LinkedList<>(policyChangeLog);
+
+				changeLog.add(new PolicyChangeLogEntry(oldPolicies.getPolicyVersion(), newPolicies.getPolicyVersion(), deltas));
+
+				int entryCount = 0;
+
+				for (PolicyChangeLogEntry entry : changeLog) {
+					entryCount += entry.deltas.size();
+				}
+
+				while (!changeLog.isEmpty() && (changeLog.size() > maxPolicyDeltaLogVersions || entryCount > maxPolicyDeltaLogEntries)) {
+					entryCount -= changeLog.remove(0).deltas.size();
+				}
+			}
+
+			policyChangeLog = changeLog == null ? Collections.<PolicyChangeLogEntry>emptyList() : Collections.unmodifiableList(changeLog);
+		}
+
+		// deltas only carry resource-policies; any other change requires plugins to download all policies
+		private boolean isDeltaCompatible(ServicePolicies oldPolicies, ServicePolicies newPolicies) {
+			boolean ret = isSameServiceDef(oldPolicies.getServiceDef(), newPolicies.getServiceDef())
+					&& StringUtils.equals(oldPolicies.getAuditMode(), newPolicies.getAuditMode());
+
+			if (ret) {
+				ServicePolicies.TagPolicies oldTagPolicies = oldPolicies.getTagPolicies();
+				ServicePolicies.TagPolicies newTagPolicies = newPolicies.getTagPolicies();
+
+				if (oldTagPolicies == null || newTagPolicies == null) {
+					ret = oldTagPolicies == newTagPolicies;
+				} else {
+					ret = Objects.equals(oldTagPolicies.getPolicyVersion(), newTagPolicies.getPolicyVersion())
+							&& isSameServiceDef(oldTagPolicies.getServiceDef(), newTagPolicies.getServiceDef());
+				}
+			}
+
+			return ret;
+		}
+
+		private boolean isSameServiceDef(RangerServiceDef oldServiceDef, RangerServiceDef newServiceDef) {
+			final boolean ret;
+
+			if (oldServiceDef == null || newServiceDef == null) {
+				ret = oldServiceDef == newServiceDef;
+			} else {
+				ret = Objects.equals(oldServiceDef.getId(), newServiceDef.getId())
+						&& Objects.equals(oldServiceDef.getVersion(), newServiceDef.getVersion());
+			}
+
+			return ret;
+		}
+
 		private void pruneUnusedAttributes() {
 			if (servicePolicies != null) {
 				pruneUnusedPolicyAttributes(servicePolicies.getPolicies());
@@ -285,7 +464,8 @@ public class RangerServicePoliciesCache {
 			sb.append("updateTime=").append(updateTime)
 					.append(", longestDbLoadTimeInMs=").append(longestDbLoadTimeInMs)
 					.append(", Service-Version:").append(servicePolicies != null ? servicePolicies.getPolicyVersion() : "null")
-					.append(", Number-Of-Policies:").append(servicePolicies != null ? servicePolicies.getPolicies().size() : 0);
+					.append(", Number-Of-Policies:").append(servicePolicies != null ? servicePolicies.getPolicies().size() : 0)
+					.append(", Change-Log-Versions:").append(policyChangeLog.size());
 
 			sb.append("} ");
 
@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.common;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+
+import org.apache.ranger.plugin.util.RangerBinaryFormat;
+import org.apache.ranger.plugin.util.RangerRESTUtils;
+import org.apache.ranger.plugin.util.ServicePolicies;
+
+/**
+ * Writes policies downloaded by plugins in RangerBinaryFormat, when requested by the plugin in Accept header
+ */
+@Provider
+@Produces(RangerRESTUtils.REST_MIME_TYPE_BINARY)
+public class ServicePoliciesBinaryWriter implements MessageBodyWriter<ServicePolicies> {
+
+	@Override
+	public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+		return ServicePolicies.class.isAssignableFrom(type);
+	}
+
+	@Override
+	public long getSize(ServicePolicies servicePolicies, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+		return -1; // unknown until written
+	}
+
+	@Override
+	public void writeTo(ServicePolicies servicePolicies, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+						MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException, WebApplicationException {
+		RangerBinaryFormat.write(servicePolicies, ServicePolicies.class, entityStream);
+	}
+}
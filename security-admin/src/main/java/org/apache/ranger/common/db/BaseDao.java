@@ -26,6 +26,7 @@ import java.lang.reflect.Type;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import javax.persistence.EntityManager;
@@ -39,10 +40,21 @@ import org.apache.ranger.biz.RangerBizUtil;
 import org.apache.ranger.common.AppConstants;
 import org.apache.ranger.db.RangerDaoManager;
 import org.apache.ranger.db.RangerDaoManagerBase;
+import org.eclipse.persistence.internal.databaseaccess.Accessor;
+import org.eclipse.persistence.internal.databaseaccess.DatabaseAccessor;
+import org.eclipse.persistence.internal.databaseaccess.DatabasePlatform;
+import org.eclipse.persistence.internal.sessions.AbstractSession;
+import org.eclipse.persistence.internal.sessions.UnitOfWorkImpl;
+import org.eclipse.persistence.sessions.server.ClientSession;
 
 public abstract class BaseDao<T> {
 	private static final Logger logger = Logger.getLogger(BaseDao.class);
 
+	private static final int JDBC_BATCH_WRITING_SIZE = 1000;
+
+	// Oracle does not accept more than 1000 expressions in an IN list
+	protected static final int MAX_IN_LIST_SIZE = 1000;
+
 	protected RangerDaoManager daoManager;
 
 	EntityManager em;
@@ -98,6 +110,92 @@ public abstract class BaseDao<T> {
 		return obj;
 	}
 
+	/*
+	 * batchCreate(), batchUpdate() and batchDelete() flush once for all the given objects, instead of once per object,
+	 * and the statements of that flush are sent to the database in JDBC batches
+	 */
+	public List<T> batchCreate(List<T> objList) {
+		for (T obj : objList) {
+			em.persist(obj);
+		}
+
+		if (!objList.isEmpty()) {
+			flushInJdbcBatches();
+		}
+
+		return objList;
+	}
+
+	public List<T> batchUpdate(List<T> objList) {
+		for (T obj : objList) {
+			em.merge(obj);
+		}
+
+		if (!objList.isEmpty()) {
+			flushInJdbcBatches();
+		}
+
+		return objList;
+	}
+
+	public void batchDelete(List<T> objList) {
+		for (T obj : objList) {
+			em.remove(obj);
+		}
+
+		if (!objList.isEmpty()) {
+			flushInJdbcBatches();
+		}
+	}
+
+	/*
+	 * JDBC batch writing is not enabled for the persistence unit, as it changes when statements of every transaction
+	 * reach the database. It is enabled here only for this flush, on the connection of the current transaction.
+	 */
+	private void flushInJdbcBatches() {
+		List<DatabaseAccessor> accessors = new ArrayList<DatabaseAccessor>();
+		List<DatabasePlatform> platforms = new ArrayList<DatabasePlatform>();
+
+		try {
+			UnitOfWorkImpl  uow     = em.unwrap(UnitOfWorkImpl.class);
+			AbstractSession session = uow != null ? uow.getParent() : null;
+
+			// only the connection held by this transaction: accessors of the server session are shared
+			if (session instanceof ClientSession && session.isInTransaction()) {
+				session.getAccessor(); // acquires the connection of the transaction if not done yet, as the flush would
+			}
+
+			if (session instanceof ClientSession && ((ClientSession) session).hasWriteConnection()) {
+				for (Accessor accessor : ((ClientSession) session).getWriteConnections().values()) {
+					if (accessor instanceof DatabaseAccessor && !((DatabaseAccessor) accessor).getPlatform().usesBatchWriting()) {
+						DatabaseAccessor dbAccessor    = (DatabaseAccessor) accessor;
+						DatabasePlatform platform      = dbAccessor.getPlatform();
+						DatabasePlatform batchPlatform = (DatabasePlatform) platform.clone();
+
+						batchPlatform.setUsesBatchWriting(true);
+						batchPlatform.setUsesJDBCBatchWriting(true);
+						batchPlatform.setMaxBatchWritingSize(JDBC_BATCH_WRITING_SIZE);
+
+						dbAccessor.setDatasourcePlatform(batchPlatform);
+
+						accessors.add(dbAccessor);
+						platforms.add(platform);
+					}
+				}
+			}
+		} catch (RuntimeException excp) {
+			logger.warn("JDBC batch writing could not be enabled. Statements will be sent one at a time", excp);
+		}
+
+		try {
+			em.flush();
+		} finally {
+			for (int i = 0; i < accessors.size(); i++) {
+				accessors.get(i).setDatasourcePlatform(platforms.get(i));
+			}
+		}
+	}
+
 	public boolean remove(Long id) {
 		return remove(getById(id));
 	}
@@ -143,6 +241,30 @@ public abstract class BaseDao<T> {
 		return ret;
 	}
 
+	/*
+	 * runs the named query with values bound to paramName, MAX_IN_LIST_SIZE values at a time
+	 */
+	protected List<T> findByNamedQueryInBatches(String namedQuery, String paramName, Collection<?> values) {
+		List<T>      ret   = new ArrayList<T>();
+		List<Object> batch = new ArrayList<Object>(Math.min(values.size(), MAX_IN_LIST_SIZE));
+
+		for (Object value : values) {
+			batch.add(value);
+
+			if (batch.size() == MAX_IN_LIST_SIZE) {
+				ret.addAll(findByNamedQuery(namedQuery, paramName, batch));
+
+				batch = new ArrayList<Object>(MAX_IN_LIST_SIZE);
+			}
+		}
+
+		if (!batch.isEmpty()) {
+			ret.addAll(findByNamedQuery(namedQuery, paramName, batch));
+		}
+
+		return ret;
+	}
+
 	public List<T> findByParentId(Long parentId) {
 		String namedQuery = tClass.getSimpleName() + ".findByParentId";
 		return findByNamedQuery(namedQuery, "parentId", parentId);
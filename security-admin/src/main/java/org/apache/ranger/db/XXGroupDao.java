@@ -21,6 +21,7 @@
 
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import org.apache.ranger.common.db.BaseDao;
@@ -67,4 +68,12 @@ public class XXGroupDao extends BaseDao<XXGroup> {
 		return null;
 	}
 
+	public List<XXGroup> findByGroupNames(Collection<String> groupNames) {
+		if (groupNames == null || groupNames.isEmpty()) {
+			return new ArrayList<XXGroup>();
+		}
+
+		return findByNamedQueryInBatches("XXGroup.findByGroupNames", "names", groupNames);
+	}
+
 }
@@ -21,6 +21,7 @@
 
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -66,6 +67,14 @@ public class XXGroupUserDao extends BaseDao<XXGroupUser> {
 		return null;
 	}
 
+	public List<XXGroupUser> findByUserIds(Collection<Long> userIds) {
+		if (userIds == null || userIds.isEmpty()) {
+			return new ArrayList<XXGroupUser>();
+		}
+
+		return findByNamedQueryInBatches("XXGroupUser.findByUserIds", "userIds", userIds);
+	}
+
 	/**
 	 * @param xUserId
 	 *            -- Id of X_USER table
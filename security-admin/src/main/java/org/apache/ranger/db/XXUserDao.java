@@ -19,6 +19,10 @@
 
 package org.apache.ranger.db;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
 import javax.persistence.NoResultException;
 
 import org.apache.log4j.Logger;
@@ -50,6 +54,14 @@ public class XXUserDao extends BaseDao<XXUser> {
 		return null;
 	}
 
+	public List<XXUser> findByUserNames(Collection<String> names) {
+		if (names == null || names.isEmpty()) {
+			return new ArrayList<XXUser>();
+		}
+
+		return findByNamedQueryInBatches("XXUser.findByUserNames", "names", names);
+	}
+
 	public XXUser findByPortalUserId(Long portalUserId) {
 		if (portalUserId == null) {
 			return null;
@@ -21,16 +21,20 @@ package org.apache.ranger.rest;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NoSuchElementException;
 import java.util.Set;
-import java.util.TreeMap;
 
 import javax.annotation.PostConstruct;
 import javax.servlet.http.HttpServletRequest;
@@ -51,7 +55,6 @@ import javax.ws.rs.core.MediaType;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.collections.MapUtils;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
@@ -61,6 +64,7 @@ import org.apache.ranger.authorization.hadoop.config.RangerConfiguration;
 import org.apache.ranger.authorization.utils.StringUtil;
 import org.apache.ranger.biz.AssetMgr;
 import org.apache.ranger.biz.RangerBizUtil;
+import org.apache.ranger.biz.RangerPolicyImportFile;
 import org.apache.ranger.biz.ServiceDBStore;
 import org.apache.ranger.biz.ServiceMgr;
 import org.apache.ranger.biz.TagDBStore;
@@ -107,6 +111,7 @@ import org.apache.ranger.plugin.store.ServiceStore;
 import org.apache.ranger.plugin.util.GrantRevokeRequest;
 import org.apache.ranger.plugin.util.RangerAccessRequestUtil;
 import org.apache.ranger.plugin.util.RangerPerfTracer;
+import org.apache.ranger.plugin.util.RangerRESTUtils;
 import org.apache.ranger.plugin.util.SearchFilter;
 import org.apache.ranger.plugin.util.ServicePolicies;
 import org.apache.ranger.security.context.RangerAPIList;
@@ -125,16 +130,21 @@ import org.apache.ranger.view.RangerServiceList;
 import org.apache.ranger.view.VXResponse;
 import org.apache.ranger.view.VXString;
 import org.apache.ranger.view.VXUser;
+import org.codehaus.jackson.JsonProcessingException;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Scope;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonSyntaxException;
 import com.sun.jersey.core.header.FormDataContentDisposition;
 import com.sun.jersey.multipart.FormDataParam;
 
@@ -214,9 +224,16 @@ public class ServiceREST {
 	@Autowired
     JSONUtil jsonUtil;
 
+	@Autowired
+	@Qualifier(value = "transactionManager")
+	PlatformTransactionManager txManager;
+
 	private RangerPolicyEngineOptions delegateAdminOptions;
 	private RangerPolicyEngineOptions policySearchAdminOptions;
 	private RangerPolicyEngineOptions defaultAdminOptions;
+	private boolean                   policySearchWaitForUpdate;
+	private int                       policyImportBatchSize;
+	private int                       policyExportPageSize = 1000;
 
 	public ServiceREST() {
 	}
@@ -227,6 +244,9 @@ public class ServiceREST {
 		delegateAdminOptions = getDelegatedAdminPolicyEngineOptions();
 		policySearchAdminOptions = getPolicySearchRangerAdminPolicyEngineOptions();
 		defaultAdminOptions = getDefaultRangerAdminPolicyEngineOptions();
+		policySearchWaitForUpdate = RangerConfiguration.getInstance().getBoolean("ranger.admin.policyengine.policysearch.wait.for.update", false);
+		policyImportBatchSize = RangerConfiguration.getInstance().getInt("ranger.admin.policy.import.batch.size", 1000);
+		policyExportPageSize = Math.max(1, RangerConfiguration.getInstance().getInt("ranger.admin.policy.export.page.size", 1000));
 	}
 
 	@POST
@@ -1860,7 +1880,7 @@ public class ServiceREST {
 
 	@GET
 	@Path("/policies/downloadExcel")
-	@Produces("application/ms-excel")
+	@Produces(ServiceDBStore.EXPORT_EXCEL_CONTENT_TYPE)
 	public void getPoliciesInExcel(@Context HttpServletRequest request,
 			@Context HttpServletResponse response) {
 
@@ -1874,16 +1894,9 @@ public class ServiceREST {
 			if (RangerPerfTracer.isPerfTraceEnabled(PERF_LOG)) {
 				perf = RangerPerfTracer.getPerfTracer(PERF_LOG, "ServiceREST.getPoliciesInExcel()");
 			}
-			List<RangerPolicy> policyLists = new ArrayList<RangerPolicy>();
-			
-			policyLists = getAllFilteredPolicyList(filter, request, policyLists);
-			if (CollectionUtils.isNotEmpty(policyLists)){
-                                for (RangerPolicy rangerPolicy : policyLists) {
-                                        if (rangerPolicy != null) {
-                                                ensureAdminAndAuditAccess(rangerPolicy);
-                                        }
-                                }
-				svcStore.getPoliciesInExcel(policyLists, response);
+			Iterator<RangerPolicy> policies = getAllFilteredPolicies(filter, request);
+			if (policies.hasNext()){
+				svcStore.getPoliciesInExcel(policies, response);
 			}else{
 				response.setStatus(HttpServletResponse.SC_NO_CONTENT);
 				LOG.error("No policies found to download!");
@@ -1926,17 +1939,9 @@ public class ServiceREST {
 			if (RangerPerfTracer.isPerfTraceEnabled(PERF_LOG)) {
 				perf = RangerPerfTracer.getPerfTracer(PERF_LOG, "ServiceREST.getPoliciesInCsv()");
 			}
-			List<RangerPolicy> policyLists = new ArrayList<RangerPolicy>();
-			
-			policyLists = getAllFilteredPolicyList(filter, request, policyLists);
-			if (CollectionUtils.isNotEmpty(policyLists)){
-                                for (RangerPolicy rangerPolicy : policyLists) {
-                                        if (rangerPolicy != null) {
-                                                ensureAdminAndAuditAccess(rangerPolicy);
-                                        }
-                                }
-
-				svcStore.getPoliciesInCSV(policyLists, response);
+			Iterator<RangerPolicy> policies = getAllFilteredPolicies(filter, request);
+			if (policies.hasNext()){
+				svcStore.getPoliciesInCSV(policies, response);
 			}else{
 				response.setStatus(HttpServletResponse.SC_NO_CONTENT);
 				LOG.error("No policies found to download!");
@@ -1984,17 +1989,10 @@ public class ServiceREST {
 				checkPoliciesExists = false;
 			}
 
-			List<RangerPolicy> policyLists = new ArrayList<RangerPolicy>();
-			
-			policyLists = getAllFilteredPolicyList(filter, request, policyLists);
-			if (CollectionUtils.isNotEmpty(policyLists)) {
-				for (RangerPolicy rangerPolicy : policyLists) {
-					if (rangerPolicy != null) {
-						ensureAdminAndAuditAccess(rangerPolicy);
-					}
-				}
+			Iterator<RangerPolicy> policies = getAllFilteredPolicies(filter, request);
+			if (policies.hasNext()) {
 				bizUtil.blockAuditorRoleUser();
-				svcStore.getPoliciesInJson(policyLists, response);
+				svcStore.getPoliciesInJson(policies, response);
 			} else {
 				checkPoliciesExists = true;
 				response.setStatus(HttpServletResponse.SC_NO_CONTENT);
@@ -2115,70 +2113,64 @@ public class ServiceREST {
 			
 			String fileName = fileDetail.getFileName();
 			int totalPolicyCreate = 0;
-			Map<String, RangerPolicy> policiesMap = new LinkedHashMap<String, RangerPolicy>();
-			List<String> dataFileSourceServices = new ArrayList<String>();
 			if (fileName.endsWith("json")) {
+				RangerPolicyImportFile importFile = null;
 				try {
-					RangerExportPolicyList rangerExportPolicyList = null;
-					List<RangerPolicy> policies = null;
-					Gson gson = new Gson();
-					
-					String policiesString = IOUtils.toString(uploadedInputStream);
-					policiesString = policiesString.trim();
-					if (StringUtils.isNotEmpty(policiesString)){
-						gson.fromJson(policiesString, RangerExportPolicyList.class);
-						rangerExportPolicyList = new ObjectMapper().readValue(policiesString, RangerExportPolicyList.class);
-					} else {
-						LOG.error("Provided json file is empty!!");
-						throw restErrorUtil.createRESTException("Provided json file is empty!!");
-					}
-					if (rangerExportPolicyList != null && !CollectionUtils.sizeIsEmpty(rangerExportPolicyList.getMetaDataInfo())){
-						metaDataInfo = new ObjectMapper().writeValueAsString(rangerExportPolicyList.getMetaDataInfo());
-					} else {
-						LOG.info("metadata info is not provided!!");
+					importFile = new RangerPolicyImportFile(uploadedInputStream);
+
+					// first pass: validate the file and collect what is needed before importing, without keeping the policies in memory
+					Map<String, Integer> lastPolicyIndexes = new HashMap<String, Integer>(); // of policies with same name, service and resources, the last one is imported
+					Set<String> policyNames = new HashSet<String>();
+					Set<String> dataFileSourceServices = new LinkedHashSet<String>();
+					boolean hasPolicyWithoutService = false;
+					int policyCount = 0;
+					RangerPolicyImportFile.PolicyReader reader = importFile.openReader();
+					try {
+						if (reader.isEmpty()) {
+							LOG.error("Provided json file is empty!!");
+							throw restErrorUtil.createRESTException("Provided json file is empty!!");
+						}
+						for (RangerPolicy policyInJson = reader.next(); policyInJson != null; policyInJson = reader.next(), policyCount++) {
+							String serviceName = StringUtils.trim(policyInJson.getService());
+							if (StringUtils.isNotEmpty(serviceName)) {
+								dataFileSourceServices.add(serviceName);
+							} else {
+								hasPolicyWithoutService = true;
+							}
+							policyNames.add(policyInJson.getName());
+							lastPolicyIndexes.put(getImportPolicyKey(policyInJson), policyCount);
+						}
+						if (!MapUtils.isEmpty(reader.getMetaDataInfo())) {
+							metaDataInfo = new ObjectMapper().writeValueAsString(reader.getMetaDataInfo());
+						} else {
+							LOG.info("metadata info is not provided!!");
+						}
+					} finally {
+						reader.close();
 					}
-					if (rangerExportPolicyList != null && !CollectionUtils.sizeIsEmpty(rangerExportPolicyList.getPolicies())){
-						policies = rangerExportPolicyList.getPolicies();
-					} else {
+					if (policyCount == 0) {
 						LOG.error("Provided json file does not contain any policy!!");
 						throw restErrorUtil.createRESTException("Provided json file does not contain any policy!!");
 					}
 					if (CollectionUtils.sizeIsEmpty(servicesMappingMap) && isOverride){
-						if(policies != null && !CollectionUtils.sizeIsEmpty(policies)){
-							for (RangerPolicy policyInJson: policies){
-								if (policyInJson != null) {
-									if (StringUtils.isNotEmpty(policyInJson.getService().trim())) {
-										String serviceName = policyInJson.getService().trim();
-										if (CollectionUtils.isNotEmpty(serviceNameList) && serviceNameList.contains(serviceName)) {
-											sourceServices.add(serviceName);
-											destinationServices.add(serviceName);
-										} else if (CollectionUtils.isEmpty(serviceNameList)) {
-											sourceServices.add(serviceName);
-											destinationServices.add(serviceName);
-										}
-									}else{
-										LOG.error("Service Name or Policy Name is not provided!!");
-										throw restErrorUtil.createRESTException("Service Name or Policy Name is not provided!!");
-									}
-								}
+						if (hasPolicyWithoutService) {
+							LOG.error("Service Name or Policy Name is not provided!!");
+							throw restErrorUtil.createRESTException("Service Name or Policy Name is not provided!!");
+						}
+						for (String serviceName : dataFileSourceServices) {
+							if (CollectionUtils.isEmpty(serviceNameList) || serviceNameList.contains(serviceName)) {
+								sourceServices.add(serviceName);
+								destinationServices.add(serviceName);
 							}
 						}
 					}else if (!CollectionUtils.sizeIsEmpty(servicesMappingMap)) {
-						if (policies != null && !CollectionUtils.sizeIsEmpty(policies)){
-							for (RangerPolicy policyInJson: policies){
-								if (policyInJson != null){
-									if (StringUtils.isNotEmpty(policyInJson.getService().trim())) {
-										dataFileSourceServices.add(policyInJson.getService().trim());
-									}else{
-										LOG.error("Service Name or Policy Name is not provided!!");
-										throw restErrorUtil.createRESTException("Service Name or Policy Name is not provided!!");
-									}
-								}
-							}
-							if(!dataFileSourceServices.containsAll(sourceServices)){
-								LOG.error("Json File does not contain sepcified source service name.");
-								throw restErrorUtil.createRESTException("Json File does not contain sepcified source service name.");
-							}
+						if (hasPolicyWithoutService) {
+							LOG.error("Service Name or Policy Name is not provided!!");
+							throw restErrorUtil.createRESTException("Service Name or Policy Name is not provided!!");
+						}
+						if(!dataFileSourceServices.containsAll(sourceServices)){
+							LOG.error("Json File does not contain sepcified source service name.");
+							throw restErrorUtil.createRESTException("Json File does not contain sepcified source service name.");
 						}
 					}
 					String updateIfExists = request.getParameter(PARAM_UPDATE_IF_EXISTS);
@@ -2188,12 +2180,18 @@ public class ServiceREST {
 					} else if (updateIfExists.equalsIgnoreCase("true")) {
 						isOverride = false;
 					}
+					Runnable policyDeleter = null;
 					if (isOverride && "false".equalsIgnoreCase(updateIfExists) && StringUtils.isEmpty(polResource)) {
 						if (LOG.isDebugEnabled()) {
 							LOG.debug("Deleting Policy from provided services in servicesMapJson file...");
 						}
 						if (CollectionUtils.isNotEmpty(sourceServices) && CollectionUtils.isNotEmpty(destinationServices)) {
-							deletePoliciesProvidedInServiceMap(sourceServices, destinationServices);
+							policyDeleter = new Runnable() {
+								@Override
+								public void run() {
+									deletePoliciesProvidedInServiceMap(sourceServices, destinationServices);
+								}
+							};
 						}
 					}
 
@@ -2202,53 +2200,60 @@ public class ServiceREST {
 							LOG.debug("Deleting Policy from provided services in servicesMapJson file for specific resource...");
 						}
 						if (CollectionUtils.isNotEmpty(sourceServices) && CollectionUtils.isNotEmpty(destinationServices)){
-							deletePoliciesForResource(sourceServices, destinationServices, request, policies);
+							policyDeleter = new Runnable() {
+								@Override
+								public void run() {
+									deletePoliciesForResource(sourceServices, destinationServices, request, policyNames);
+								}
+							};
 						}
 					}
-					if (policies != null && !CollectionUtils.sizeIsEmpty(policies)){
-						for (RangerPolicy policyInJson: policies){
-							if (policyInJson != null){
+
+					// second pass: create the policies, committing each batch in its own transaction. The existing policies
+					// are deleted in the transaction of the first batch, so a failure in it leaves them as they were; but
+					// batches committed before a failure are not rolled back. With batch size 0, the import is one transaction.
+					Map<String, RangerPolicy> policiesMap = new LinkedHashMap<String, RangerPolicy>();
+					boolean hasPoliciesToImport = false;
+					int committedBatchCount = 0;
+					int policyIndex = 0;
+					Runnable pendingPolicyDeleter = policyDeleter;
+					try {
+						reader = importFile.openReader();
+						try {
+							for (RangerPolicy policyInJson = reader.next(); policyInJson != null; policyInJson = reader.next(), policyIndex++) {
+								if (lastPolicyIndexes.get(getImportPolicyKey(policyInJson)) != policyIndex) {
+									continue;
+								}
 								policiesMap = svcStore.createPolicyMap(servicesMappingMap, sourceServices, destinationServices, policyInJson, policiesMap);
-							}
-						}
-					}
-					if (!CollectionUtils.sizeIsEmpty(policiesMap.entrySet())) {
-						for (Entry<String, RangerPolicy> entry : policiesMap.entrySet()) {
-							RangerPolicy policy = entry.getValue();
-							if (policy != null){
-								if (!CollectionUtils.isEmpty(serviceNameList)) {
-									for (String service : serviceNameList) {
-										if (StringUtils.isNotEmpty(service.trim()) && StringUtils.isNotEmpty(policy.getService().trim())){
-											if (policy.getService().trim().equalsIgnoreCase(service.trim())) {
-												if (updateIfExists != null && !updateIfExists.isEmpty()){
-													request.setAttribute(PARAM_SERVICE_NAME, policy.getService());
-													request.setAttribute(PARAM_POLICY_NAME, policy.getName());
-												}
-												createPolicy(policy, request);
-												totalPolicyCreate = totalPolicyCreate + 1;
-												if (LOG.isDebugEnabled()) {
-													LOG.debug("Policy " + policy.getName() + " created successfully.");
-												}
-												break;
-											}
-										} else {
-											LOG.error("Service Name or Policy Name is not provided!!");
-											throw restErrorUtil.createRESTException("Service Name or Policy Name is not provided!!");
-										}
-									}
-								} else {
-									if (updateIfExists != null && !updateIfExists.isEmpty()){
-										request.setAttribute(PARAM_SERVICE_NAME, policy.getService());
-										request.setAttribute(PARAM_POLICY_NAME, policy.getName());
-									}
-									createPolicy(policy, request);
-									totalPolicyCreate = totalPolicyCreate + 1;
-									if (LOG.isDebugEnabled()) {
-										LOG.debug("Policy " + policy.getName() + " created successfully.");
-									}
+								if (policyImportBatchSize > 0 && policiesMap.size() >= policyImportBatchSize) {
+									hasPoliciesToImport = true;
+									totalPolicyCreate += createImportedPolicies(pendingPolicyDeleter, policiesMap, serviceNameList, updateIfExists, request);
+									pendingPolicyDeleter = null;
+									committedBatchCount++;
+									policiesMap = new LinkedHashMap<String, RangerPolicy>();
+									LOG.info("importPoliciesFromFile(" + fileName + "): committed batch " + committedBatchCount + ", imported " + totalPolicyCreate + " policies, read " + (policyIndex + 1) + " of " + policyCount);
 								}
 							}
+						} finally {
+							reader.close();
+						}
+						if (!CollectionUtils.sizeIsEmpty(policiesMap.entrySet())) {
+							hasPoliciesToImport = true;
+							totalPolicyCreate += createImportedPolicies(pendingPolicyDeleter, policiesMap, serviceNameList, updateIfExists, request);
+							pendingPolicyDeleter = null;
+							committedBatchCount++;
+						} else if (pendingPolicyDeleter != null) {
+							executeInNewTransaction(pendingPolicyDeleter);
+							pendingPolicyDeleter = null;
+						}
+					} catch (RuntimeException excp) {
+						if (committedBatchCount > 0) {
+							LOG.error("importPoliciesFromFile(" + fileName + "): failed after committing " + committedBatchCount + " batches, with " + totalPolicyCreate + " policies" + (policyDeleter != null ? " and the deletion of existing policies" : "") + "; these are not rolled back");
 						}
+						throw excp;
+					}
+					if (hasPoliciesToImport) {
+						LOG.info("importPoliciesFromFile(" + fileName + "): imported " + totalPolicyCreate + " policies, read " + policyCount + " of " + policyCount);
 						if (LOG.isDebugEnabled()) {
 							LOG.debug("Total Policy Created From Json file : " + totalPolicyCreate);
 						}
@@ -2257,25 +2262,22 @@ public class ServiceREST {
 							throw restErrorUtil.createRESTException("zero policy is created from provided data file!!");
 						}
 					}
+				} catch (JsonProcessingException e) {
+					LOG.error("Provided json file is not valid!!", e);
+					throw restErrorUtil.createRESTException(e.getMessage());
 				} catch (IOException e) {
 					LOG.error(e.getMessage());
 					throw restErrorUtil.createRESTException(e.getMessage());
+				} finally {
+					if (importFile != null) {
+						importFile.close();
+					}
 				}
 			}else{
 				LOG.error("Provided file format is not supported!!");
 				throw restErrorUtil.createRESTException("Provided file format is not supported!!");
 			}
-		} catch(JsonSyntaxException ex) { 
-			LOG.error("Provided json file is not valid!!", ex);
-			xxTrxLogError.setAction("IMPORT ERROR");
-			xxTrxLogError.setObjectClassType(AppConstants.CLASS_TYPE_RANGER_POLICY);
-			if(StringUtils.isNotEmpty(metaDataInfo)){
-				xxTrxLogError.setPreviousValue(metaDataInfo);
-			}
-			trxLogListError.add(xxTrxLogError);
-			bizUtil.createTrxLog(trxLogListError);
-			throw restErrorUtil.createRESTException(ex.getMessage());
-	      }catch (WebApplicationException excp) {
+		} catch (WebApplicationException excp) {
 			LOG.error("Error while importing policy from file!!", excp);
 			xxTrxLogError.setAction("IMPORT ERROR");
 			xxTrxLogError.setObjectClassType(AppConstants.CLASS_TYPE_RANGER_POLICY);
@@ -2312,100 +2314,271 @@ public class ServiceREST {
 		}
 	}
 	
-	private List<RangerPolicy> getAllFilteredPolicyList(SearchFilter filter,
-			HttpServletRequest request, List<RangerPolicy> policyLists) {
-		String serviceNames = null;
-		String serviceType = null;
-		List<String> serviceNameList = null;
-		List<String> serviceTypeList = null;
-		List<String> serviceNameInServiceTypeList = new ArrayList<String>();
-		boolean isServiceExists = false;
-		
-		if (request.getParameter(PARAM_SERVICE_NAME) != null){
-			serviceNames = request.getParameter(PARAM_SERVICE_NAME);
-		}
-		if (StringUtils.isNotEmpty(serviceNames)) {
-			serviceNameList = new ArrayList<String>(Arrays.asList(serviceNames.split(",")));
-		}
-		
-		if (request.getParameter(PARAM_SERVICE_TYPE) != null){
-			serviceType = request.getParameter(PARAM_SERVICE_TYPE);
+	/*
+	 * @return policies to export, in the order of their ids. Policies are read from the store a page at a time, as the
+	 *         iterator advances, so that the export is written while the search pages through the policies.
+	 */
+	private Iterator<RangerPolicy> getAllFilteredPolicies(SearchFilter filter, HttpServletRequest request) {
+		List<String>       serviceNameList = null;
+		List<String>       serviceTypeList = null;
+		List<SearchFilter> pageFilters     = new ArrayList<SearchFilter>();
+
+		if (StringUtils.isNotEmpty(request.getParameter(PARAM_SERVICE_NAME))) {
+			serviceNameList = new ArrayList<String>(Arrays.asList(request.getParameter(PARAM_SERVICE_NAME).split(",")));
 		}
-		if(StringUtils.isNotEmpty(serviceType)){
-			serviceTypeList = new ArrayList<String>(Arrays.asList(serviceType.split(",")));
+
+		if (StringUtils.isNotEmpty(request.getParameter(PARAM_SERVICE_TYPE))) {
+			serviceTypeList = new ArrayList<String>(Arrays.asList(request.getParameter(PARAM_SERVICE_TYPE).split(",")));
 		}
-		
-		List<RangerPolicy> policyList = new ArrayList<RangerPolicy>();
-		List<RangerPolicy> policyListByServiceName = new ArrayList<RangerPolicy>();
-		
+
 		if (filter != null) {
-			filter.setStartIndex(0);
-			filter.setMaxRows(Integer.MAX_VALUE);
-			
-			if (!CollectionUtils.isEmpty(serviceTypeList)) {
+			if (CollectionUtils.isEmpty(serviceNameList) && CollectionUtils.isEmpty(serviceTypeList)) {
+				pageFilters.add(filter);
+			} else if (CollectionUtils.isEmpty(serviceNameList)) {
 				for (String s : serviceTypeList) {
-					filter.removeParam(PARAM_SERVICE_TYPE);
-					if (request.getParameter(PARAM_SERVICE_NAME) != null){
-						filter.removeParam(PARAM_SERVICE_NAME);
-					}
-					filter.setParam(PARAM_SERVICE_TYPE, s.trim());
-					policyList = getPolicies(filter);
-					policyLists.addAll(policyList);
+					pageFilters.add(copyFilter(filter, PARAM_SERVICE_TYPE, s.trim()));
 				}
-				if(!CollectionUtils.sizeIsEmpty(policyLists)){
-					for (RangerPolicy rangerPolicy:policyLists){
-						if (StringUtils.isNotEmpty(rangerPolicy.getService())){
-							serviceNameInServiceTypeList.add(rangerPolicy.getService());
-						}
-					}
+			} else if (CollectionUtils.isEmpty(serviceTypeList) || isServiceOfTypes(serviceNameList, serviceTypeList)) {
+				for (String s : serviceNameList) {
+					pageFilters.add(copyFilter(filter, PARAM_SERVICE_NAME, s.trim()));
 				}
 			}
-			if (!CollectionUtils.isEmpty(serviceNameList) && !CollectionUtils.isEmpty(serviceTypeList)){
-				isServiceExists = serviceNameInServiceTypeList.containsAll(serviceNameList);
-				if(isServiceExists){
-					for (String s : serviceNameList) {
-						filter.removeParam(PARAM_SERVICE_NAME);
-						filter.removeParam(PARAM_SERVICE_TYPE);
-						filter.setParam(PARAM_SERVICE_NAME, s.trim());
-						policyList = getPolicies(filter);
-						policyListByServiceName.addAll(policyList);
+
+			for (SearchFilter pageFilter : pageFilters) {
+				pageFilter.setSortBy(null); // in the order of policy ids, so that the pages of each filter can be merged
+				pageFilter.setSortType(null);
+			}
+		}
+
+		boolean isFullResourceMatch = "full".equalsIgnoreCase(request.getParameter("resourceMatch"));
+
+		return new PolicyExportIterator(pageFilters, isFullResourceMatch ? request : null);
+	}
+
+	private SearchFilter copyFilter(SearchFilter filter, String serviceParamName, String serviceParamValue) {
+		SearchFilter ret = new SearchFilter(filter.getParams() != null ? new HashMap<String, String>(filter.getParams()) : new HashMap<String, String>());
+
+		ret.removeParam(PARAM_SERVICE_NAME);
+		ret.removeParam(PARAM_SERVICE_TYPE);
+		ret.setParam(serviceParamName, serviceParamValue);
+
+		return ret;
+	}
+
+	// policies of given services are exported only if each of the services is of one of the given types
+	private boolean isServiceOfTypes(List<String> serviceNames, List<String> serviceTypes) {
+		Set<String> types = new HashSet<String>();
+
+		for (String serviceType : serviceTypes) {
+			types.add(serviceType.trim());
+		}
+
+		for (String serviceName : serviceNames) {
+			XXService    xService    = daoManager.getXXService().findByName(serviceName.trim());
+			XXServiceDef xServiceDef = xService != null ? daoManager.getXXServiceDef().getById(xService.getType()) : null;
+
+			if (xServiceDef == null || !types.contains(xServiceDef.getName())) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/*
+	 * Merges the policies found by each filter, in the order of their ids; a policy found by more than one filter is
+	 * returned once. Each filter pages through the store policyExportPageSize policies at a time.
+	 */
+	private class PolicyExportIterator implements Iterator<RangerPolicy> {
+		private final List<SearchFilter>        filters;
+		private final HttpServletRequest        resourceMatchRequest;
+		private final List<Deque<RangerPolicy>> pages       = new ArrayList<Deque<RangerPolicy>>();
+		private final int[]                     nextIndexes;
+		private final boolean[]                 isExhausted;
+		private RangerPolicy                    next;
+		private Long                            lastPolicyId;
+
+		PolicyExportIterator(List<SearchFilter> filters, HttpServletRequest resourceMatchRequest) {
+			this.filters              = filters;
+			this.resourceMatchRequest = resourceMatchRequest;
+			this.nextIndexes          = new int[filters.size()];
+			this.isExhausted          = new boolean[filters.size()];
+
+			for (int i = 0; i < filters.size(); i++) {
+				pages.add(new ArrayDeque<RangerPolicy>());
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (next == null) {
+				int minIdx = -1;
+
+				for (int i = 0; i < filters.size(); i++) {
+					Deque<RangerPolicy> page = pages.get(i);
+
+					while (page.isEmpty() && !isExhausted[i]) {
+						readPage(i);
+					}
+
+					if (!page.isEmpty() && (minIdx == -1 || page.peekFirst().getId() < pages.get(minIdx).peekFirst().getId())) {
+						minIdx = i;
 					}
-					policyLists = policyListByServiceName;
-				}else{
-					policyLists = new ArrayList<RangerPolicy>();
 				}
-			}else if (CollectionUtils.isEmpty(serviceNameList) && CollectionUtils.isEmpty(serviceTypeList)){
-				policyLists = getPolicies(filter);
-			}
-			if (!CollectionUtils.isEmpty(serviceNameList) && CollectionUtils.isEmpty(serviceTypeList)) {
-				for (String s : serviceNameList) {
-					filter.removeParam(PARAM_SERVICE_NAME);
-					filter.setParam(PARAM_SERVICE_NAME, s.trim());
-					policyList = getPolicies(filter);
-					policyLists.addAll(policyList);
+
+				if (minIdx == -1) {
+					break;
+				}
+
+				RangerPolicy policy = pages.get(minIdx).pollFirst();
+
+				if (lastPolicyId == null || !lastPolicyId.equals(policy.getId())) {
+					next         = policy;
+					lastPolicyId = policy.getId();
 				}
 			}
+
+			return next != null;
 		}
-		if (StringUtils.isNotEmpty(request.getParameter("resourceMatch"))
-				&& "full".equalsIgnoreCase(request.getParameter("resourceMatch"))) {
-			policyLists = serviceUtil.getMatchingPoliciesForResource(request, policyLists);
+
+		@Override
+		public RangerPolicy next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			RangerPolicy ret = next;
+
+			next = null;
+
+			return ret;
 		}
-		Map<Long, RangerPolicy> orderedPolicies = new TreeMap<Long, RangerPolicy>();
-		
-		if (!CollectionUtils.isEmpty(policyLists)) {
-			for (RangerPolicy policy : policyLists) {
-				if (policy != null) {
-					orderedPolicies.put(policy.getId(), policy);
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		private void readPage(int filterIdx) {
+			SearchFilter filter = filters.get(filterIdx);
+
+			filter.setStartIndex(nextIndexes[filterIdx]);
+			filter.setMaxRows(policyExportPageSize);
+
+			List<RangerPolicy> policies;
+
+			try {
+				policies = svcStore.getPolicies(filter);
+			} catch (WebApplicationException excp) {
+				throw excp;
+			} catch (Exception excp) {
+				throw restErrorUtil.createRESTException(excp.getMessage());
+			}
+
+			int count = policies == null ? 0 : policies.size();
+
+			nextIndexes[filterIdx] += count;
+			isExhausted[filterIdx] = count < policyExportPageSize;
+
+			if (count > 0) {
+				policies = applyAdminAccessFilter(policies);
+
+				if (resourceMatchRequest != null) {
+					policies = serviceUtil.getMatchingPoliciesForResource(resourceMatchRequest, policies);
+				}
+
+				for (RangerPolicy policy : policies) {
+					if (policy != null) {
+						ensureAdminAndAuditAccess(policy);
+
+						pages.get(filterIdx).addLast(policy);
+					}
 				}
 			}
-			if (!orderedPolicies.isEmpty()) {
-				policyLists.clear();
-				policyLists.addAll(orderedPolicies.values());
+
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("ServiceREST.PolicyExportIterator.readPage(" + filter + "): read " + count + " policies, " + pages.get(filterIdx).size() + " to export");
 			}
 		}
-		return policyLists;
 	}
-	
+
+	/*
+	 * @param policyDeleter if not null, run in the same transaction before the policies are created
+	 */
+	private int createImportedPolicies(final Runnable policyDeleter, final Map<String, RangerPolicy> policiesMap, final List<String> serviceNameList, final String updateIfExists, final HttpServletRequest request) {
+		TransactionTemplate txTemplate = new TransactionTemplate(txManager);
+
+		txTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+		Integer ret = txTemplate.execute(new TransactionCallback<Integer>() {
+			@Override
+			public Integer doInTransaction(TransactionStatus status) {
+				if (policyDeleter != null) {
+					policyDeleter.run();
+				}
+				int policyCreateCount = 0;
+				for (Entry<String, RangerPolicy> entry : policiesMap.entrySet()) {
+					RangerPolicy policy = entry.getValue();
+					if (policy != null){
+						if (!CollectionUtils.isEmpty(serviceNameList)) {
+							for (String service : serviceNameList) {
+								if (StringUtils.isNotEmpty(service.trim()) && StringUtils.isNotEmpty(policy.getService().trim())){
+									if (policy.getService().trim().equalsIgnoreCase(service.trim())) {
+										if (updateIfExists != null && !updateIfExists.isEmpty()){
+											request.setAttribute(PARAM_SERVICE_NAME, policy.getService());
+											request.setAttribute(PARAM_POLICY_NAME, policy.getName());
+										}
+										createPolicy(policy, request);
+										policyCreateCount = policyCreateCount + 1;
+										if (LOG.isDebugEnabled()) {
+											LOG.debug("Policy " + policy.getName() + " created successfully.");
+										}
+										break;
+									}
+								} else {
+									LOG.error("Service Name or Policy Name is not provided!!");
+									throw restErrorUtil.createRESTException("Service Name or Policy Name is not provided!!");
+								}
+							}
+						} else {
+							if (updateIfExists != null && !updateIfExists.isEmpty()){
+								request.setAttribute(PARAM_SERVICE_NAME, policy.getService());
+								request.setAttribute(PARAM_POLICY_NAME, policy.getName());
+							}
+							createPolicy(policy, request);
+							policyCreateCount = policyCreateCount + 1;
+							if (LOG.isDebugEnabled()) {
+								LOG.debug("Policy " + policy.getName() + " created successfully.");
+							}
+						}
+					}
+				}
+				return policyCreateCount;
+			}
+		});
+
+		return ret != null ? ret : 0;
+	}
+
+	private void executeInNewTransaction(final Runnable task) {
+		TransactionTemplate txTemplate = new TransactionTemplate(txManager);
+
+		txTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+		txTemplate.execute(new TransactionCallback<Object>() {
+			@Override
+			public Object doInTransaction(TransactionStatus status) {
+				task.run();
+				return null;
+			}
+		});
+	}
+
+	// same as the key of ServiceDBStore.setPolicyMapKeyValue(), before the service is mapped
+	private String getImportPolicyKey(RangerPolicy policy) {
+		return StringUtils.trim(policy.getName()) + " " + StringUtils.trim(policy.getService()) + " " + (policy.getResources() != null ? policy.getResources().toString().trim() : null);
+	}
+
 	private void deletePoliciesProvidedInServiceMap(
 			List<String> sourceServices, List<String> destinationServices) {
 		int totalDeletedPilicies = 0;
@@ -2445,18 +2618,10 @@ public class ServiceREST {
 		}
 	}
 
-	private void deletePoliciesForResource(List<String> sourceServices, List<String> destinationServices, HttpServletRequest request, List<RangerPolicy> exportPolicies) {
+	private void deletePoliciesForResource(List<String> sourceServices, List<String> destinationServices, HttpServletRequest request, Set<String> exportedPolicyNames) {
 		int totalDeletedPilicies = 0;
 		if (CollectionUtils.isNotEmpty(sourceServices)
 				&& CollectionUtils.isNotEmpty(destinationServices)) {
-			Set<String> exportedPolicyNames=new HashSet<String>();
-			if (CollectionUtils.isNotEmpty(exportPolicies)) {
-				for (RangerPolicy rangerPolicy : exportPolicies) {
-					if (rangerPolicy!=null) {
-						exportedPolicyNames.add(rangerPolicy.getName());
-					}
-				}
-			}
 			for (int i = 0; i < sourceServices.size(); i++) {
 				if (!destinationServices.get(i).isEmpty()) {
 					RangerPolicyList servicePolicies = null;
@@ -2694,13 +2859,14 @@ public class ServiceREST {
 
 	@GET
 	@Path("/policies/download/{serviceName}")
-	@Produces({ "application/json", "application/xml" })
+	@Produces({ "application/json", "application/xml", RangerRESTUtils.REST_MIME_TYPE_BINARY })
 	public ServicePolicies getServicePoliciesIfUpdated(
 			@PathParam("serviceName") String serviceName,
 			@QueryParam("lastKnownVersion") Long lastKnownVersion,
 			@DefaultValue("0") @QueryParam("lastActivationTime") Long lastActivationTime,
 			@QueryParam("pluginId") String pluginId,
 			@DefaultValue("") @QueryParam("clusterName") String clusterName,
+			@DefaultValue("false") @QueryParam("supportsPolicyDeltas") Boolean supportsPolicyDeltas,
 			@Context HttpServletRequest request) throws Exception {
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("==> ServiceREST.getServicePoliciesIfUpdated("
@@ -2733,7 +2899,7 @@ public class ServiceREST {
 				if(RangerPerfTracer.isPerfTraceEnabled(PERF_LOG)) {
 					perf = RangerPerfTracer.getPerfTracer(PERF_LOG, "ServiceREST.getServicePoliciesIfUpdated(serviceName=" + serviceName + ",lastKnownVersion=" + lastKnownVersion + ",lastActivationTime=" + lastActivationTime + ")");
 				}
-				ServicePolicies servicePolicies = svcStore.getServicePoliciesIfUpdated(serviceName, lastKnownVersion);
+				ServicePolicies servicePolicies = svcStore.getServicePoliciesIfUpdated(serviceName, lastKnownVersion, Boolean.TRUE.equals(supportsPolicyDeltas));
 
 				if (servicePolicies == null) {
 					downloadedVersion = lastKnownVersion;
@@ -2743,7 +2909,7 @@ public class ServiceREST {
 					downloadedVersion = servicePolicies.getPolicyVersion();
 					ret = filterServicePolicies(servicePolicies);
 					httpCode = HttpServletResponse.SC_OK;
-					logMsg = "Returning " + (ret.getPolicies() != null ? ret.getPolicies().size() : 0) + " policies. Policy version=" + ret.getPolicyVersion();
+					logMsg = "Returning " + (ret.getPolicyDeltas() != null ? (ret.getPolicyDeltas().size() + " policy-deltas") : ((ret.getPolicies() != null ? ret.getPolicies().size() : 0) + " policies")) + ". Policy version=" + ret.getPolicyVersion();
 				}
 			} catch (Throwable excp) {
 				LOG.error("getServicePoliciesIfUpdated(" + serviceName + ", " + lastKnownVersion + ", " + lastActivationTime + ") failed");
@@ -2771,13 +2937,14 @@ public class ServiceREST {
 
 	@GET
 	@Path("/secure/policies/download/{serviceName}")
-	@Produces({ "application/json", "application/xml" })
+	@Produces({ "application/json", "application/xml", RangerRESTUtils.REST_MIME_TYPE_BINARY })
 	public ServicePolicies getSecureServicePoliciesIfUpdated(
 			@PathParam("serviceName") String serviceName,
 			@QueryParam("lastKnownVersion") Long lastKnownVersion,
 			@DefaultValue("0") @QueryParam("lastActivationTime") Long lastActivationTime,
 			@QueryParam("pluginId") String pluginId,
 			@DefaultValue("") @QueryParam("clusterName") String clusterName,
+			@DefaultValue("false") @QueryParam("supportsPolicyDeltas") Boolean supportsPolicyDeltas,
 			@Context HttpServletRequest request) throws Exception {
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("==> ServiceREST.getSecureServicePoliciesIfUpdated("
@@ -2840,7 +3007,7 @@ public class ServiceREST {
 					}
 				}
 				if (isAllowed) {
-					ServicePolicies servicePolicies = svcStore.getServicePoliciesIfUpdated(serviceName, lastKnownVersion);
+					ServicePolicies servicePolicies = svcStore.getServicePoliciesIfUpdated(serviceName, lastKnownVersion, Boolean.TRUE.equals(supportsPolicyDeltas));
 					if (servicePolicies == null) {
 						downloadedVersion = lastKnownVersion;
 						httpCode = HttpServletResponse.SC_NOT_MODIFIED;
@@ -2849,7 +3016,7 @@ public class ServiceREST {
 						downloadedVersion = servicePolicies.getPolicyVersion();
 						ret = filterServicePolicies(servicePolicies);
 						httpCode = HttpServletResponse.SC_OK;
-						logMsg = "Returning " + (ret.getPolicies() != null ? ret.getPolicies().size() : 0) + " policies. Policy version=" + ret.getPolicyVersion();
+						logMsg = "Returning " + (ret.getPolicyDeltas() != null ? (ret.getPolicyDeltas().size() + " policy-deltas") : ((ret.getPolicies() != null ? ret.getPolicies().size() : 0) + " policies")) + ". Policy version=" + ret.getPolicyVersion();
 					}
 
 				} else {
@@ -3278,11 +3445,12 @@ public class ServiceREST {
 	}
 
 	private RangerPolicyEngine getDelegatedAdminPolicyEngine(String serviceName) {
-		return RangerPolicyEngineCacheForEngineOptions.getInstance().getPolicyEngine(serviceName, svcStore, delegateAdminOptions);
+		// access checks must see the latest policies
+		return RangerPolicyEngineCacheForEngineOptions.getInstance().getPolicyEngine(serviceName, svcStore, delegateAdminOptions, true);
 	}
 
 	private RangerPolicyEngine getPolicySearchPolicyEngine(String serviceName) throws Exception {
-		return RangerPolicyEngineCacheForEngineOptions.getInstance().getPolicyEngine(serviceName, svcStore, policySearchAdminOptions);
+		return RangerPolicyEngineCacheForEngineOptions.getInstance().getPolicyEngine(serviceName, svcStore, policySearchAdminOptions, policySearchWaitForUpdate);
 	}
 
 	private RangerPolicyEngine getPolicyEngine(String serviceName) throws Exception {
@@ -3439,6 +3607,7 @@ public class ServiceREST {
 				ret.setPolicyUpdateTime(servicePolicies.getPolicyUpdateTime());
 				ret.setPolicies(servicePolicies.getPolicies());
 				ret.setTagPolicies(servicePolicies.getTagPolicies());
+				ret.setPolicyDeltas(servicePolicies.getPolicyDeltas());
 
 				if (containsDisabledResourcePolicies) {
 					List<RangerPolicy> filteredPolicies = new ArrayList<RangerPolicy>();
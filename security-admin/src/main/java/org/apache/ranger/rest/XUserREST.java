@@ -274,6 +274,14 @@ public class XUserREST {
 	public VXUserGroupInfo createXUserGroupFromMap(VXUserGroupInfo vXUserGroupInfo) {
 		return  xUserMgr.createXUserGroupFromMap(vXUserGroupInfo);
 	}
+
+	@POST
+	@Path("/users/userinfo/batch")
+	@Produces({ "application/xml", "application/json" })
+	@PreAuthorize("hasRole('ROLE_SYS_ADMIN')")
+	public VXUserGroupInfoList createXUserGroupsFromMap(VXUserGroupInfoList vXUserGroupInfoList) {
+		return xUserMgr.createXUserGroupsFromMap(vXUserGroupInfoList);
+	}
 	
 	@POST
 	@Path("/secure/users")
@@ -144,6 +144,7 @@ public class RangerAPIList {
 	public static final String SECURE_GET_X_USER = "XUserREST.secureGetXUser";
 	public static final String CREATE_X_USER = "XUserREST.createXUser";
 	public static final String CREATE_X_USER_GROUP_FROM_MAP = "XUserREST.createXUserGroupFromMap";
+	public static final String CREATE_X_USER_GROUPS_FROM_MAP = "XUserREST.createXUserGroupsFromMap";
 	public static final String SECURE_CREATE_X_USER = "XUserREST.secureCreateXUser";
 	public static final String UPDATE_X_USER = "XUserREST.updateXUser";
 	public static final String SECURE_UPDATE_X_USER = "XUserREST.secureUpdateXUser";
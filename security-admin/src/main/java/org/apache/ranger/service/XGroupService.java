@@ -21,7 +21,9 @@
 
 import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -133,6 +135,69 @@ public class XGroupService extends XGroupServiceBase<XXGroup, VXGroup> {
 		return vxGroup;
 	}
 
+	/**
+	 * Creates the given groups that don't exist, and updates the group source of the existing ones, with one flush
+	 * for all the inserts and one for all the updates.
+	 *
+	 * @return the groups, by the names given in vxGroups
+	 */
+	public Map<String, XXGroup> createOrUpdateXGroupsWithOutLogin(Collection<VXGroup> vxGroups) {
+		Map<String, VXGroup> requestedGroups = new LinkedHashMap<String, VXGroup>();
+
+		for (VXGroup vxGroup : vxGroups) {
+			if (vxGroup.getName() != null && !requestedGroups.containsKey(vxGroup.getName())) {
+				requestedGroups.put(vxGroup.getName(), vxGroup);
+			}
+		}
+
+		Map<String, XXGroup> existingGroups            = new HashMap<String, XXGroup>();
+		Map<String, XXGroup> existingGroupsByLowerName = new HashMap<String, XXGroup>(); // for databases that compare names ignoring case
+
+		for (XXGroup xxGroup : daoManager.getXXGroup().findByGroupNames(requestedGroups.keySet())) {
+			existingGroups.put(xxGroup.getName(), xxGroup);
+			existingGroupsByLowerName.put(xxGroup.getName().toLowerCase(), xxGroup);
+		}
+
+		Map<String, XXGroup> ret            = new HashMap<String, XXGroup>();
+		List<XXGroup>        groupsToAdd    = new ArrayList<XXGroup>();
+		List<XXGroup>        groupsToUpdate = new ArrayList<XXGroup>();
+		boolean              isCreatorValid = daoManager.getXXPortalUser().getById(createdByUserId) != null;
+
+		for (VXGroup vxGroup : requestedGroups.values()) {
+			XXGroup xxGroup = existingGroups.get(vxGroup.getName());
+
+			if (xxGroup == null) {
+				xxGroup = existingGroupsByLowerName.get(vxGroup.getName().toLowerCase());
+			}
+
+			if (xxGroup == null) {
+				xxGroup = mapViewToEntityBean(vxGroup, new XXGroup(), 0);
+
+				if (isCreatorValid) {
+					xxGroup.setAddedByUserId(createdByUserId);
+					xxGroup.setUpdatedByUserId(createdByUserId);
+				}
+
+				groupsToAdd.add(xxGroup);
+			} else if (xxGroup.getGroupSource() != vxGroup.getGroupSource()) {
+				xxGroup.setGroupSource(vxGroup.getGroupSource());
+
+				if (isCreatorValid) {
+					xxGroup.setUpdatedByUserId(createdByUserId);
+				}
+
+				groupsToUpdate.add(xxGroup);
+			}
+
+			ret.put(vxGroup.getName(), xxGroup);
+		}
+
+		getDao().batchCreate(groupsToAdd);
+		getDao().batchUpdate(groupsToUpdate);
+
+		return ret;
+	}
+
 	public VXGroup readResourceWithOutLogin(Long id) {
 		XXGroup resource = getDao().getById(id);
 		if (resource == null) {
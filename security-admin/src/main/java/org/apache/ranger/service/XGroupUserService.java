@@ -21,8 +21,10 @@
 
 import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.ranger.common.AppConstants;
 import org.apache.ranger.common.MessageEnums;
@@ -103,6 +105,58 @@ public class XGroupUserService extends
 		return vxGroupUser;
 	}
 
+	/**
+	 * Sets the groups of the given users: adds the missing group user mappings and removes the ones to other groups,
+	 * with one flush for all the inserts and one for all the deletes.
+	 *
+	 * @param userGroups groups of each user, by user id
+	 */
+	public void setGroupsForUsersWithOutLogin(Map<Long, Collection<XXGroup>> userGroups) {
+		Map<Long, Map<Long, XXGroup>> groupsToAdd      = new HashMap<Long, Map<Long, XXGroup>>();
+		List<XXGroupUser>             mappingsToAdd    = new ArrayList<XXGroupUser>();
+		List<XXGroupUser>             mappingsToDelete = new ArrayList<XXGroupUser>();
+
+		for (Map.Entry<Long, Collection<XXGroup>> entry : userGroups.entrySet()) {
+			Map<Long, XXGroup> groups = new HashMap<Long, XXGroup>();
+
+			for (XXGroup xxGroup : entry.getValue()) {
+				groups.put(xxGroup.getId(), xxGroup);
+			}
+
+			groupsToAdd.put(entry.getKey(), groups);
+		}
+
+		for (XXGroupUser xxGroupUser : daoManager.getXXGroupUser().findByUserIds(userGroups.keySet())) {
+			Map<Long, XXGroup> groups = groupsToAdd.get(xxGroupUser.getUserId());
+
+			if (groups.remove(xxGroupUser.getParentGroupId()) == null) { // not requested, or a duplicate of a mapping seen already
+				mappingsToDelete.add(xxGroupUser);
+			}
+		}
+
+		boolean isCreatorValid = daoManager.getXXPortalUser().getById(createdByUserId) != null;
+
+		for (Map.Entry<Long, Map<Long, XXGroup>> entry : groupsToAdd.entrySet()) {
+			for (XXGroup xxGroup : entry.getValue().values()) {
+				XXGroupUser xxGroupUser = new XXGroupUser();
+
+				xxGroupUser.setName(xxGroup.getName());
+				xxGroupUser.setParentGroupId(xxGroup.getId());
+				xxGroupUser.setUserId(entry.getKey());
+
+				if (isCreatorValid) {
+					xxGroupUser.setAddedByUserId(createdByUserId);
+					xxGroupUser.setUpdatedByUserId(createdByUserId);
+				}
+
+				mappingsToAdd.add(xxGroupUser);
+			}
+		}
+
+		getDao().batchDelete(mappingsToDelete);
+		getDao().batchCreate(mappingsToAdd);
+	}
+
 	public VXGroupUser readResourceWithOutLogin(Long id) {
 		XXGroupUser resource = getDao().getById(id);
 		if (resource == null) {
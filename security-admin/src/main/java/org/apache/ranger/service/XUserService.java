@@ -21,7 +21,9 @@
 
 import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -185,6 +187,58 @@ public class XUserService extends XUserServiceBase<XXUser, VXUser> {
 		return vxUser;
 	}
 
+	/**
+	 * Creates the given users that don't exist, with one flush for all the inserts; existing users are left as they are.
+	 *
+	 * @return the users, by the names given in vxUsers
+	 */
+	public Map<String, XXUser> createXUsersWithOutLogin(Collection<VXUser> vxUsers) {
+		Map<String, VXUser> requestedUsers = new LinkedHashMap<String, VXUser>();
+
+		for (VXUser vxUser : vxUsers) {
+			if (vxUser.getName() != null && !requestedUsers.containsKey(vxUser.getName())) {
+				requestedUsers.put(vxUser.getName(), vxUser);
+			}
+		}
+
+		Map<String, XXUser> existingUsers            = new HashMap<String, XXUser>();
+		Map<String, XXUser> existingUsersByLowerName = new HashMap<String, XXUser>(); // for databases that compare names ignoring case
+
+		for (XXUser xxUser : daoManager.getXXUser().findByUserNames(requestedUsers.keySet())) {
+			existingUsers.put(xxUser.getName(), xxUser);
+			existingUsersByLowerName.put(xxUser.getName().toLowerCase(), xxUser);
+		}
+
+		Map<String, XXUser> ret            = new HashMap<String, XXUser>();
+		List<XXUser>        usersToAdd     = new ArrayList<XXUser>();
+		boolean             isCreatorValid = daoManager.getXXPortalUser().getById(createdByUserId) != null;
+
+		for (VXUser vxUser : requestedUsers.values()) {
+			XXUser xxUser = existingUsers.get(vxUser.getName());
+
+			if (xxUser == null) {
+				xxUser = existingUsersByLowerName.get(vxUser.getName().toLowerCase());
+			}
+
+			if (xxUser == null) {
+				xxUser = mapViewToEntityBean(vxUser, new XXUser(), 0);
+
+				if (isCreatorValid) {
+					xxUser.setAddedByUserId(createdByUserId);
+					xxUser.setUpdatedByUserId(createdByUserId);
+				}
+
+				usersToAdd.add(xxUser);
+			}
+
+			ret.put(vxUser.getName(), xxUser);
+		}
+
+		getDao().batchCreate(usersToAdd);
+
+		return ret;
+	}
+
 	public VXUser readResourceWithOutLogin(Long id) {
 		XXUser resource = getDao().getById(id);
 		if (resource == null) {
@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+ package org.apache.ranger.view;
+
+/**
+ * List wrapper class for VXUserGroupInfo
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import org.apache.ranger.common.view.VList;
+import org.codehaus.jackson.annotate.JsonAutoDetect;
+import org.codehaus.jackson.annotate.JsonAutoDetect.Visibility;
+import org.codehaus.jackson.annotate.JsonIgnoreProperties;
+import org.codehaus.jackson.map.annotate.JsonSerialize;
+
+@JsonAutoDetect(getterVisibility=Visibility.NONE, setterVisibility=Visibility.NONE, fieldVisibility=Visibility.ANY)
+@JsonSerialize(include=JsonSerialize.Inclusion.NON_NULL )
+@JsonIgnoreProperties(ignoreUnknown=true)
+@XmlRootElement
+@XmlAccessorType(XmlAccessType.FIELD)
+public class VXUserGroupInfoList extends VList {
+	private static final long serialVersionUID = 1L;
+	List<VXUserGroupInfo> vXUserGroupInfos = new ArrayList<VXUserGroupInfo>();
+
+	public VXUserGroupInfoList() {
+		super();
+	}
+
+	public VXUserGroupInfoList(List<VXUserGroupInfo> objList) {
+		super(objList);
+		this.vXUserGroupInfos = objList;
+	}
+
+	/**
+	 * @return the vXUserGroupInfos
+	 */
+	public List<VXUserGroupInfo> getVXUserGroupInfos() {
+		return vXUserGroupInfos;
+	}
+
+	/**
+	 * @param vXUserGroupInfos
+	 *            the vXUserGroupInfos to set
+	 */
+	public void setVXUserGroupInfos(List<VXUserGroupInfo> vXUserGroupInfos) {
+		this.vXUserGroupInfos = vXUserGroupInfos;
+	}
+
+	@Override
+	public int getListSize() {
+		if (vXUserGroupInfos != null) {
+			return vXUserGroupInfos.size();
+		}
+		return 0;
+	}
+
+	@Override
+	public List<VXUserGroupInfo> getList() {
+		return vXUserGroupInfos;
+	}
+
+}
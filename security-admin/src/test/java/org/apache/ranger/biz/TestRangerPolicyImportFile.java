@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.biz;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.view.RangerExportPolicyList;
+import org.codehaus.jackson.JsonProcessingException;
+import org.junit.Test;
+
+import com.google.gson.GsonBuilder;
+
+public class TestRangerPolicyImportFile {
+	private static final String IMPORT_TEST_FILE = "./src/test/java/org/apache/ranger/rest/importPolicy/import_policy_test_file.json";
+
+	@Test
+	public void testReadExportedPolicies() throws Exception {
+		RangerExportPolicyList exportList = new RangerExportPolicyList();
+
+		exportList.getMetaDataInfo().put("Exported by", "admin");
+		exportList.setPolicies(Arrays.asList(policy("p1"), null, policy("p2")));
+
+		String json = new GsonBuilder().setPrettyPrinting().create().toJson(exportList, RangerExportPolicyList.class);
+
+		RangerPolicyImportFile importFile = new RangerPolicyImportFile(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+
+		try {
+			// policies can be read more than once
+			for (int i = 0; i < 2; i++) {
+				RangerPolicyImportFile.PolicyReader reader = importFile.openReader();
+
+				assertFalse(reader.isEmpty());
+				assertEquals(Arrays.asList("p1", "p2"), readPolicyNames(reader));
+				assertEquals("admin", reader.getMetaDataInfo().get("Exported by"));
+
+				reader.close();
+			}
+		} finally {
+			importFile.close();
+		}
+	}
+
+	@Test
+	public void testReadImportTestFile() throws Exception {
+		RangerPolicyImportFile importFile = new RangerPolicyImportFile(new FileInputStream(IMPORT_TEST_FILE));
+
+		try {
+			RangerPolicyImportFile.PolicyReader reader = importFile.openReader();
+
+			assertFalse(readPolicyNames(reader).isEmpty());
+			assertEquals("admin", reader.getMetaDataInfo().get("Exported by"));
+
+			reader.close();
+		} finally {
+			importFile.close();
+		}
+	}
+
+	@Test
+	public void testEmptyFile() throws Exception {
+		RangerPolicyImportFile importFile = new RangerPolicyImportFile(new ByteArrayInputStream(" \n".getBytes(StandardCharsets.UTF_8)));
+
+		try {
+			RangerPolicyImportFile.PolicyReader reader = importFile.openReader();
+
+			assertTrue(reader.isEmpty());
+			assertNull(reader.next());
+
+			reader.close();
+		} finally {
+			importFile.close();
+		}
+	}
+
+	@Test(expected = JsonProcessingException.class)
+	public void testTruncatedFile() throws Exception {
+		String json = "{\"policies\": [{\"name\": \"p1\", \"service\": \"svc\"}, {\"name\": \"p2\"";
+
+		RangerPolicyImportFile importFile = new RangerPolicyImportFile(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+
+		try {
+			readPolicyNames(importFile.openReader());
+		} finally {
+			importFile.close();
+		}
+	}
+
+	private static List<String> readPolicyNames(RangerPolicyImportFile.PolicyReader reader) throws IOException {
+		List<String> ret = new ArrayList<>();
+
+		for (RangerPolicy policy = reader.next(); policy != null; policy = reader.next()) {
+			ret.add(policy.getName());
+		}
+
+		return ret;
+	}
+
+	private static RangerPolicy policy(String name) {
+		RangerPolicy ret = new RangerPolicy();
+
+		ret.setName(name);
+		ret.setService("svc");
+
+		return ret;
+	}
+}
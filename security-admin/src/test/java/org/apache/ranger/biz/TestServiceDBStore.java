@@ -1989,6 +1989,9 @@ public class TestServiceDBStore {
 
 	@Test
 	public void test30getPolicies() throws Exception {
+		XXServiceDao xServiceDao = Mockito.mock(XXServiceDao.class);
+		Mockito.when(daoManager.getXXService()).thenReturn(xServiceDao);
+
 		SearchFilter filter = new SearchFilter();
 		filter.setParam(SearchFilter.POLICY_NAME, "policyName");
 		filter.setParam(SearchFilter.SERVICE_NAME, "serviceName");
@@ -2011,6 +2014,9 @@ public class TestServiceDBStore {
 
 	@Test
 	public void test31getPaginatedPolicies() throws Exception {
+		XXServiceDao xServiceDao = Mockito.mock(XXServiceDao.class);
+		Mockito.when(daoManager.getXXService()).thenReturn(xServiceDao);
+
 		SearchFilter filter = new SearchFilter();
 		filter.setParam(SearchFilter.POLICY_NAME, "policyName");
 		filter.setParam(SearchFilter.SERVICE_NAME, "serviceName");
@@ -2028,6 +2034,74 @@ public class TestServiceDBStore {
 		Assert.assertNotNull(dbRangerPolicyList);
 	}
 
+	@Test
+	public void test31getPaginatedPoliciesOfAllServices() throws Exception {
+		XXServiceDao            xServiceDao            = Mockito.mock(XXServiceDao.class);
+		XXServiceVersionInfoDao xServiceVersionInfoDao = Mockito.mock(XXServiceVersionInfoDao.class);
+		ServiceDBStore          spy                    = Mockito.spy(serviceDBStore);
+		List<XXService>         xServices              = new ArrayList<XXService>();
+		List<Object[]>          versionInfos           = new ArrayList<Object[]>();
+		long[][]                policyIds              = { { 1L, 4L, 5L }, { 2L, 3L } };
+
+		for (int i = 0; i < policyIds.length; i++) {
+			String    serviceName = "allServicesSearchTest_" + i;
+			XXService xService    = new XXService();
+
+			xService.setId(2000L + i);
+			xService.setName(serviceName);
+			xServices.add(xService);
+
+			XXServiceVersionInfo xVersionInfo = new XXServiceVersionInfo();
+
+			xVersionInfo.setServiceId(xService.getId());
+			xVersionInfo.setPolicyVersion(1L);
+			versionInfos.add(new Object[] { xVersionInfo, serviceName });
+
+			ServicePolicies servicePolicies = new ServicePolicies();
+
+			servicePolicies.setServiceName(serviceName);
+			servicePolicies.setServiceId(xService.getId());
+			servicePolicies.setPolicyVersion(1L);
+			servicePolicies.setPolicies(new ArrayList<RangerPolicy>());
+
+			for (long policyId : policyIds[i]) {
+				RangerPolicy policy = rangerPolicy();
+
+				policy.setId(policyId);
+				policy.setService(serviceName);
+				servicePolicies.getPolicies().add(policy);
+			}
+
+			Mockito.doReturn(1L).when(spy).getServicePolicyVersion(serviceName);
+			Mockito.doReturn(servicePolicies).when(spy).getServicePolicies(serviceName);
+		}
+
+		Mockito.when(daoManager.getXXService()).thenReturn(xServiceDao);
+		Mockito.when(xServiceDao.getAll()).thenReturn(xServices);
+		Mockito.when(daoManager.getXXServiceVersionInfo()).thenReturn(xServiceVersionInfoDao);
+		Mockito.when(xServiceVersionInfoDao.getAllWithServiceNames()).thenReturn(versionInfos);
+
+		SearchFilter filter = new SearchFilter();
+
+		filter.setStartIndex(1);
+		filter.setMaxRows(2);
+
+		PList<RangerPolicy> policies = spy.getPaginatedPolicies(filter);
+
+		Assert.assertEquals(5, policies.getTotalCount());
+		Assert.assertEquals(2, policies.getList().size());
+		Assert.assertEquals(Long.valueOf(2L), policies.getList().get(0).getId());
+		Assert.assertEquals(Long.valueOf(3L), policies.getList().get(1).getId());
+
+		filter.setStartIndex(0);
+		filter.setSortType("desc");
+
+		policies = spy.getPaginatedPolicies(filter);
+
+		Assert.assertEquals(Long.valueOf(5L), policies.getList().get(0).getId());
+		Assert.assertEquals(Long.valueOf(4L), policies.getList().get(1).getId());
+	}
+
 	@Test
 	public void test32getServicePolicies() throws Exception {
 		SearchFilter filter = new SearchFilter();
@@ -2110,6 +2184,9 @@ public class TestServiceDBStore {
 
 	@Test
 	public void test36getPaginatedServicePolicies() throws Exception {
+		XXServiceDao xServiceDao = Mockito.mock(XXServiceDao.class);
+		Mockito.when(daoManager.getXXService()).thenReturn(xServiceDao);
+
 		String serviceName = "HDFS_1";
 		RangerPolicyList policyList = new RangerPolicyList();
 		policyList.setPageSize(0);
@@ -2137,7 +2214,7 @@ public class TestServiceDBStore {
 
 		//PList<RangerPolicy> dbRangerPolicyList =
         serviceDBStore.getPaginatedServicePolicies(rangerService.getId(), filter);
-		Mockito.verify(daoManager).getXXService();
+		Mockito.verify(daoManager, Mockito.times(2)).getXXService(); // service by id, then services to search
 	}
 
 	@Test
@@ -2248,6 +2325,12 @@ public class TestServiceDBStore {
     @Test
     public void test44getMetricByTypePolicies() throws Exception{
     	String type = "policies";
+    	XXServiceDao xServiceDao = Mockito.mock(XXServiceDao.class);
+    	Mockito.when(daoManager.getXXService()).thenReturn(xServiceDao);
+    	XXServiceDefDao xServiceDefDao = Mockito.mock(XXServiceDefDao.class);
+    	Mockito.when(daoManager.getXXServiceDef()).thenReturn(xServiceDefDao);
+    	XXServiceVersionInfoDao xServiceVersionInfoDao = Mockito.mock(XXServiceVersionInfoDao.class);
+    	Mockito.when(daoManager.getXXServiceVersionInfo()).thenReturn(xServiceVersionInfoDao);
     	RangerServiceList svcList = new RangerServiceList();
     	svcList.setTotalCount(10l);
     	Mockito.when(svcService.searchRangerServices(Mockito.any(SearchFilter.class))).thenReturn(svcList);
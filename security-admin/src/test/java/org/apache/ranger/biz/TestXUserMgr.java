@@ -106,6 +106,7 @@ import org.apache.ranger.view.VXStringList;
 import org.apache.ranger.view.VXUgsyncAuditInfo;
 import org.apache.ranger.view.VXUser;
 import org.apache.ranger.view.VXUserGroupInfo;
+import org.apache.ranger.view.VXUserGroupInfoList;
 import org.apache.ranger.view.VXUserList;
 import org.apache.ranger.view.VXUserPermission;
 import org.apache.ranger.view.VXString;
@@ -117,6 +118,7 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.junit.runner.RunWith;
 import org.junit.runners.MethodSorters;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
@@ -3541,4 +3543,57 @@ public class TestXUserMgr {
 		Assert.assertEquals(rcvVXGroupList.getList().get(0).getName(),expectedVXGroup.getName());
 	}
 
+	@Test
+	public void test109CreateXUserGroupsFromMap() {
+		setup();
+		VXUser vXUser = vxUser();
+		vXUser.setUserRoleList(new ArrayList<String>());
+		VXGroup vXGroup1 = vxGroup();
+		VXGroup vXGroup2 = vxGroup();
+		vXGroup2.setName("users");
+		List<VXGroup> vXGroupList = new ArrayList<VXGroup>();
+		vXGroupList.add(vXGroup1);
+		vXGroupList.add(vXGroup2);
+		VXUserGroupInfo vXUserGroupInfo = new VXUserGroupInfo();
+		vXUserGroupInfo.setXuserInfo(vXUser);
+		vXUserGroupInfo.setXgroupInfo(vXGroupList);
+		List<VXUserGroupInfo> vXUserGroupInfos = new ArrayList<VXUserGroupInfo>();
+		vXUserGroupInfos.add(vXUserGroupInfo);
+
+		XXUser xXUser = xxUser(vXUser);
+		List<XXUser> existingUsers = new ArrayList<XXUser>();
+		existingUsers.add(xXUser);
+		XXUserDao xxUserDao = Mockito.mock(XXUserDao.class);
+		Mockito.when(daoManager.getXXUser()).thenReturn(xxUserDao);
+		Mockito.when(xxUserDao.findByUserNames(Mockito.anyCollection())).thenReturn(existingUsers);
+		Map<String, XXUser> xxUsers = new HashMap<String, XXUser>();
+		xxUsers.put(xXUser.getName(), xXUser);
+		Mockito.when(xUserService.createXUsersWithOutLogin(Mockito.anyCollection())).thenReturn(xxUsers);
+		Map<String, XXGroup> xxGroups = new HashMap<String, XXGroup>();
+		for (VXGroup vXGroup : vXGroupList) {
+			XXGroup xXGroup = new XXGroup();
+			xXGroup.setId((long) (xxGroups.size() + 1));
+			xXGroup.setName(vXGroup.getName());
+			xXGroup.setGroupSource(RangerCommonEnums.GROUP_EXTERNAL);
+			xxGroups.put(vXGroup.getName(), xXGroup);
+		}
+		Mockito.when(xGroupService.createOrUpdateXGroupsWithOutLogin(Mockito.anyCollection())).thenReturn(xxGroups);
+
+		VXUserGroupInfoList result = xUserMgr.createXUserGroupsFromMap(new VXUserGroupInfoList(vXUserGroupInfos));
+
+		Assert.assertEquals(1, result.getListSize());
+		VXUserGroupInfo resultInfo = result.getList().get(0);
+		Assert.assertEquals(userId, resultInfo.getXuserInfo().getId());
+		Assert.assertEquals(userLoginID, resultInfo.getXuserInfo().getName());
+		Assert.assertEquals(2, resultInfo.getXgroupInfo().size());
+		Assert.assertEquals(groupName, resultInfo.getXgroupInfo().get(0).getName());
+		Assert.assertEquals(RangerCommonEnums.GROUP_EXTERNAL, resultInfo.getXgroupInfo().get(1).getGroupSource());
+
+		@SuppressWarnings("unchecked")
+		ArgumentCaptor<Map<Long, Collection<XXGroup>>> userGroups = ArgumentCaptor.forClass(Map.class);
+		Mockito.verify(xGroupUserService).setGroupsForUsersWithOutLogin(userGroups.capture());
+		Assert.assertEquals(1, userGroups.getValue().size());
+		Assert.assertEquals(2, userGroups.getValue().get(userId).size());
+		Mockito.verify(userMgr, Mockito.never()).createDefaultAccountUser((VXPortalUser) Mockito.any());
+	}
 }
@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItem;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+import org.apache.ranger.plugin.model.RangerServiceDef;
+import org.apache.ranger.plugin.store.ServiceStore;
+import org.apache.ranger.plugin.util.SearchFilter;
+import org.apache.ranger.plugin.util.ServicePolicies;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestRangerPolicySearchIndex {
+	private static int serviceCount = 0;
+
+	private String       serviceName;
+	private Long         serviceId;
+	private ServiceStore serviceStore;
+
+	@Before
+	public void setUp() throws Exception {
+		serviceCount++;
+
+		serviceName  = "searchIndexTest_" + serviceCount;
+		serviceId    = 1000L + serviceCount;
+		serviceStore = mock(ServiceStore.class);
+
+		setServicePolicies(1L, policy(1L, "hdfs-tmp", "/tmp", "user1", "group1", "pii"),
+		                       policy(2L, "hdfs-home", "/home/user2", "user2", "group2", "finance"),
+		                       policy(3L, "warehouse", "/apps/hive/warehouse", "user3", "group1", "Finance-Audit"));
+	}
+
+	@Test
+	public void testSearch() throws Exception {
+		assertEquals(ids(1L), search(SearchFilter.USER, "user1", null));
+		assertEquals("groups of the user must match", ids(1L, 3L), search(SearchFilter.USER, "user1", Collections.singleton("group1")));
+		assertEquals(ids(1L, 3L), search(SearchFilter.GROUP, "group1", null));
+		assertEquals(ids(), search(SearchFilter.GROUP, "group", null));
+		assertEquals(ids(2L), search(SearchFilter.POLICY_NAME, "hdfs-home", null));
+		assertEquals(ids(1L, 2L), search(SearchFilter.POLICY_NAME_PARTIAL, "HDFS", null));
+		assertEquals(ids(2L, 3L), search(SearchFilter.POLICY_LABELS_PARTIAL, "finance", null));
+		assertEquals(ids(2L), search(SearchFilter.POL_RESOURCE, "/Home/User2", null, SearchFilter.POLICY_LABELS_PARTIAL, "finance"));
+		assertEquals(ids(1L, 2L, 3L), search(SearchFilter.POLICY_TYPE, "0", null));
+	}
+
+	@Test
+	public void testIncrementalUpdate() throws Exception {
+		RangerPolicySearchIndex index = RangerPolicySearchIndex.getInstance();
+
+		assertEquals(ids(1L, 3L), search(SearchFilter.GROUP, "group1", null));
+
+		when(serviceStore.getServicePolicyVersion(serviceName)).thenReturn(2L);
+		index.onPolicyUpdate(serviceName, serviceId, 2L, policy(4L, "new-policy", "/data", "user4", "group1", null));
+
+		when(serviceStore.getServicePolicyVersion(serviceName)).thenReturn(3L);
+		index.onPolicyDelete(serviceName, serviceId, 3L, 1L);
+
+		assertEquals(ids(3L, 4L), search(SearchFilter.GROUP, "group1", null));
+		verify(serviceStore, times(1)).getServicePolicies(serviceName);
+
+		// changed elsewhere: the index must sync with the service-policies cache
+		RangerPolicy updated = policy(3L, "warehouse", "/apps/hive/warehouse", "user3", "group3", null);
+
+		updated.setVersion(2L);
+
+		setServicePolicies(5L, updated);
+
+		assertEquals(ids(), search(SearchFilter.GROUP, "group1", null));
+		assertEquals(ids(3L), search(SearchFilter.GROUP, "group3", null));
+		verify(serviceStore, times(2)).getServicePolicies(serviceName);
+	}
+
+	private Set<Long> search(String param, String value, Collection<String> userGroups, String... otherParams) throws Exception {
+		SearchFilter filter = new SearchFilter(new HashMap<String, String>());
+
+		filter.setParam(param, value);
+
+		for (int i = 0; i + 1 < otherParams.length; i += 2) {
+			filter.setParam(otherParams[i], otherParams[i + 1]);
+		}
+
+		Set<Long> ret = new TreeSet<>();
+
+		for (RangerPolicy policy : RangerPolicySearchIndex.getInstance().search(serviceName, serviceId, serviceStore, filter, userGroups)) {
+			ret.add(policy.getId());
+		}
+
+		return ret;
+	}
+
+	private void setServicePolicies(Long policyVersion, RangerPolicy... policies) throws Exception {
+		ServicePolicies servicePolicies = new ServicePolicies();
+
+		servicePolicies.setServiceName(serviceName);
+		servicePolicies.setServiceId(serviceId);
+		servicePolicies.setServiceDef(new RangerServiceDef());
+		servicePolicies.setPolicyVersion(policyVersion);
+		servicePolicies.setPolicies(new ArrayList<>(Arrays.asList(policies)));
+
+		when(serviceStore.getServicePolicyVersion(serviceName)).thenReturn(policyVersion);
+		when(serviceStore.getServicePolicies(serviceName)).thenReturn(servicePolicies);
+	}
+
+	private RangerPolicy policy(Long id, String name, String path, String user, String group, String label) {
+		RangerPolicy     policy = new RangerPolicy();
+		RangerPolicyItem item   = new RangerPolicyItem();
+
+		item.getUsers().add(user);
+		item.getGroups().add(group);
+
+		policy.setId(id);
+		policy.setVersion(1L);
+		policy.setName(name);
+		policy.setService(serviceName);
+		policy.getResources().put("path", new RangerPolicyResource(path));
+		policy.getPolicyItems().add(item);
+
+		if (label != null) {
+			policy.getPolicyLabels().add(label);
+		}
+
+		return policy;
+	}
+
+	private static Set<Long> ids(Long... ids) {
+		return new TreeSet<>(Arrays.asList(ids));
+	}
+}
@@ -21,9 +21,11 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -105,10 +107,16 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.junit.runner.RunWith;
 import org.junit.runners.MethodSorters;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import com.sun.jersey.core.header.FormDataContentDisposition;
 
@@ -213,6 +221,12 @@ public class TestServiceREST {
 	@Mock
 	RangerPolicyEngineImpl rpImpl;
 
+	@Mock
+	PlatformTransactionManager txManager;
+
+	@Captor
+	ArgumentCaptor<Iterator<RangerPolicy>> exportedPolicies;
+
 	@Rule
 	public ExpectedException thrown = ExpectedException.none();
 
@@ -992,7 +1006,7 @@ public class TestServiceREST {
 
 		ServicePolicies dbServicePolicies = serviceREST
 				.getServicePoliciesIfUpdated(serviceName, lastKnownVersion, 0L,
-						pluginId, "", request);
+						pluginId, "", false, request);
 		Assert.assertNull(dbServicePolicies);
 	}
 
@@ -1545,7 +1559,8 @@ public class TestServiceREST {
 		Mockito.when(daoManager.getXXServiceDef().getById(xService.getType())).thenReturn(xServiceDef);
 		serviceREST.getPoliciesInJson(request, response, false);
 
-		Mockito.verify(svcStore).getPoliciesInJson(rangerPolicyList, response);
+		Mockito.verify(svcStore).getPoliciesInJson(exportedPolicies.capture(), Mockito.eq(response));
+		Assert.assertEquals(rangerPolicyList, toList(exportedPolicies.getValue()));
 	}
 
 	@Test
@@ -1581,7 +1596,8 @@ public class TestServiceREST {
 		Mockito.when(daoManager.getXXServiceDef().getById(xService.getType())).thenReturn(xServiceDef);
 		serviceREST.getPoliciesInCsv(request, response);
 
-		Mockito.verify(svcStore).getPoliciesInCSV(rangerPolicyList, response);
+		Mockito.verify(svcStore).getPoliciesInCSV(exportedPolicies.capture(), Mockito.eq(response));
+		Assert.assertEquals(rangerPolicyList, toList(exportedPolicies.getValue()));
 	}
 
       /*  @Test
@@ -1634,7 +1650,84 @@ public class TestServiceREST {
 		Mockito.when(daoManager.getXXService().findByName("HDFS_1-1-20150316062453")).thenReturn(xService);
 		Mockito.when(daoManager.getXXServiceDef().getById(xService.getType())).thenReturn(xServiceDef);
 		serviceREST.getPoliciesInExcel(request, response);
-		Mockito.verify(svcStore).getPoliciesInExcel(rangerPolicyList, response);
+		Mockito.verify(svcStore).getPoliciesInExcel(exportedPolicies.capture(), Mockito.eq(response));
+		Assert.assertEquals(rangerPolicyList, toList(exportedPolicies.getValue()));
+	}
+
+	@Test
+	public void test48exportPoliciesOfServicesInPages() throws Exception {
+		HttpServletRequest  request  = Mockito.mock(HttpServletRequest.class);
+		HttpServletResponse response = Mockito.mock(HttpServletResponse.class);
+		SearchFilter        filter   = new SearchFilter();
+
+		final Map<String, List<RangerPolicy>> servicePolicies = new HashMap<String, List<RangerPolicy>>();
+
+		servicePolicies.put("svc1", exportPolicies("svc1", 1L, 3L, 4L, 8L));
+		servicePolicies.put("svc2", exportPolicies("svc2", 2L, 5L, 6L, 7L, 9L));
+
+		ReflectionTestUtils.setField(serviceREST, "policyExportPageSize", 2);
+
+		Mockito.when(request.getParameter(ServiceREST.PARAM_SERVICE_NAME)).thenReturn("svc1,svc2,svc1");
+		Mockito.when(request.getParameter(ServiceREST.PARAM_SERVICE_TYPE)).thenReturn(null);
+		Mockito.when(request.getParameter("resourceMatch")).thenReturn(null);
+		Mockito.when(searchUtil.getSearchFilter(request, policyService.sortFields)).thenReturn(filter);
+		Mockito.when(svcStore.getPolicies(Mockito.any(SearchFilter.class))).thenAnswer(new Answer<List<RangerPolicy>>() {
+			@Override
+			public List<RangerPolicy> answer(InvocationOnMock invocation) {
+				SearchFilter       pageFilter = (SearchFilter) invocation.getArguments()[0];
+				List<RangerPolicy> policies   = servicePolicies.get(pageFilter.getParam(SearchFilter.SERVICE_NAME));
+				int                fromIndex  = Math.min(pageFilter.getStartIndex(), policies.size());
+
+				Assert.assertEquals(2, pageFilter.getMaxRows());
+
+				return new ArrayList<RangerPolicy>(policies.subList(fromIndex, Math.min(fromIndex + pageFilter.getMaxRows(), policies.size())));
+			}
+		});
+		Mockito.when(bizUtil.isAdmin()).thenReturn(true);
+		Mockito.when(bizUtil.getCurrentUserLoginId()).thenReturn("admin");
+		XXServiceDefDao xServiceDefDao = Mockito.mock(XXServiceDefDao.class);
+
+		Mockito.when(daoManager.getXXService()).thenReturn(xServiceDao);
+		Mockito.when(daoManager.getXXServiceDef()).thenReturn(xServiceDefDao);
+		Mockito.when(xServiceDao.findByName(Mockito.anyString())).thenReturn(xService());
+		Mockito.when(xServiceDefDao.getById(Mockito.anyLong())).thenReturn(serviceDef());
+
+		serviceREST.getPoliciesInJson(request, response, false);
+
+		Mockito.verify(svcStore).getPoliciesInJson(exportedPolicies.capture(), Mockito.eq(response));
+
+		List<Long> exportedIds = new ArrayList<Long>();
+
+		for (RangerPolicy policy : toList(exportedPolicies.getValue())) {
+			exportedIds.add(policy.getId());
+		}
+
+		Assert.assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L), exportedIds);
+	}
+
+	private List<RangerPolicy> exportPolicies(String serviceName, Long... ids) {
+		List<RangerPolicy> ret = new ArrayList<RangerPolicy>();
+
+		for (Long id : ids) {
+			RangerPolicy policy = rangerPolicy();
+
+			policy.setId(id);
+			policy.setService(serviceName);
+
+			ret.add(policy);
+		}
+
+		return ret;
+	}
+
+	private List<RangerPolicy> toList(Iterator<RangerPolicy> policies) {
+		List<RangerPolicy> ret = new ArrayList<RangerPolicy>();
+
+		while (policies.hasNext()) {
+			ret.add(policies.next());
+		}
+
+		return ret;
 	}
 
 	@SuppressWarnings("unchecked")
@@ -1797,7 +1890,7 @@ public class TestServiceREST {
 		Mockito.when(restErrorUtil.createRESTException(Mockito.anyInt(), Mockito.anyString(), Mockito.anyBoolean()))
 				.thenThrow(new WebApplicationException());
 		thrown.expect(WebApplicationException.class);
-		serviceREST.getServicePoliciesIfUpdated(serviceName, lastKnownVersion, 0L, pluginId, "", request);
+		serviceREST.getServicePoliciesIfUpdated(serviceName, lastKnownVersion, 0L, pluginId, "", false, request);
 	}
 
 	@Test
@@ -1808,9 +1901,9 @@ public class TestServiceREST {
 		Long lastKnownVersion = 1L;
 		String pluginId = "1";
 		Mockito.when(serviceUtil.isValidateHttpsAuthentication(serviceName, request)).thenReturn(true);
-		Mockito.when(svcStore.getServicePoliciesIfUpdated(serviceName, lastKnownVersion)).thenReturn(servicePolicies);
+		Mockito.when(svcStore.getServicePoliciesIfUpdated(serviceName, lastKnownVersion, false)).thenReturn(servicePolicies);
 		ServicePolicies dbServicePolicies = serviceREST.getServicePoliciesIfUpdated(serviceName, lastKnownVersion, 0L,
-				pluginId, "", request);
+				pluginId, "", false, request);
 		Assert.assertNotNull(dbServicePolicies);
 	}
 
@@ -1834,7 +1927,7 @@ public class TestServiceREST {
 				.thenThrow(new WebApplicationException());
 		thrown.expect(WebApplicationException.class);
 
-		serviceREST.getSecureServicePoliciesIfUpdated(serviceName, lastKnownVersion, 0L, pluginId, "", request);
+		serviceREST.getSecureServicePoliciesIfUpdated(serviceName, lastKnownVersion, 0L, pluginId, "", false, request);
 	}
 
 	@Test
@@ -1860,7 +1953,7 @@ public class TestServiceREST {
 				.thenThrow(new WebApplicationException());
 		thrown.expect(WebApplicationException.class);
 
-		serviceREST.getSecureServicePoliciesIfUpdated(serviceName, lastKnownVersion, 0L, pluginId, "", request);
+		serviceREST.getSecureServicePoliciesIfUpdated(serviceName, lastKnownVersion, 0L, pluginId, "", false, request);
 	}
 
 	@Test
@@ -1883,16 +1976,16 @@ public class TestServiceREST {
 		Mockito.when(xServiceDefDao.getById(xService.getType())).thenReturn(xServiceDef);
 		Mockito.when(svcStore.getServiceByNameForDP(serviceName)).thenReturn(rs);
 		Mockito.when(bizUtil.isUserAllowed(rs, ServiceREST.Allowed_User_List_For_Grant_Revoke)).thenReturn(true);
-		Mockito.when(svcStore.getServicePoliciesIfUpdated(serviceName, lastKnownVersion)).thenReturn(sp);
+		Mockito.when(svcStore.getServicePoliciesIfUpdated(serviceName, lastKnownVersion, false)).thenReturn(sp);
 		ServicePolicies dbServiceSecurePolicies = serviceREST.getSecureServicePoliciesIfUpdated(serviceName,
-				lastKnownVersion, 0L, pluginId, "", request);
+				lastKnownVersion, 0L, pluginId, "", false, request);
 		Assert.assertNotNull(dbServiceSecurePolicies);
 		Mockito.verify(serviceUtil).isValidService(serviceName, request);
 		Mockito.verify(xServiceDao).findByName(serviceName);
 		Mockito.verify(xServiceDefDao).getById(xService.getType());
 		Mockito.verify(svcStore).getServiceByNameForDP(serviceName);
 		Mockito.verify(bizUtil).isUserAllowed(rs, ServiceREST.Allowed_User_List_For_Grant_Revoke);
-		Mockito.verify(svcStore).getServicePoliciesIfUpdated(serviceName, lastKnownVersion);
+		Mockito.verify(svcStore).getServicePoliciesIfUpdated(serviceName, lastKnownVersion, false);
 	}
 
 	@Test
@@ -18,7 +18,12 @@
  */
 package org.apache.ranger.service;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.apache.ranger.common.db.BaseDao;
 import org.apache.ranger.db.RangerDaoManager;
@@ -32,10 +37,12 @@ import org.apache.ranger.entity.XXGroupUser;
 import org.apache.ranger.entity.XXPortalUser;
 import org.apache.ranger.entity.XXUser;
 import org.apache.ranger.view.VXGroupUser;
+import org.junit.Assert;
 import org.junit.FixMethodOrder;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.MethodSorters;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
@@ -128,6 +135,51 @@ public class TestXGroupUserService {
 
 	}
 
+	@Test
+	@SuppressWarnings("unchecked")
+	public void test4SetGroupsForUsersWithOutLogin() {
+		XXGroup group1 = createXXGroup();
+		XXGroup group2 = createXXGroup();
+		XXGroup group3 = createXXGroup();
+		group2.setId(2L);
+		group2.setName("testName2");
+		group3.setId(3L);
+		group3.setName("testName3");
+
+		XXGroupUser mapping1 = createXXGroupUser();
+		XXGroupUser mapping2 = createXXGroupUser();
+		mapping2.setId(2L);
+		mapping2.setParentGroupId(2L);
+		List<XXGroupUser> existingMappings = new ArrayList<XXGroupUser>();
+		existingMappings.add(mapping1);
+		existingMappings.add(mapping2);
+
+		List<XXGroup> requestedGroups = new ArrayList<XXGroup>();
+		requestedGroups.add(group2);
+		requestedGroups.add(group3);
+		Map<Long, Collection<XXGroup>> userGroups = new HashMap<Long, Collection<XXGroup>>();
+		userGroups.put(1L, requestedGroups);
+
+		Mockito.when(daoManager.getXXGroupUser()).thenReturn(xXGroupUserDao);
+		Mockito.when(xXGroupUserDao.findByUserIds(userGroups.keySet())).thenReturn(existingMappings);
+		Mockito.when(daoManager.getXXPortalUser()).thenReturn(xXPortalUserDao);
+		Mockito.when(xXPortalUserDao.getById(1L)).thenReturn(tUser);
+
+		xGroupUserService.setGroupsForUsersWithOutLogin(userGroups);
+
+		ArgumentCaptor<List<XXGroupUser>> deleted = ArgumentCaptor.forClass(List.class);
+		ArgumentCaptor<List<XXGroupUser>> created = ArgumentCaptor.forClass(List.class);
+		Mockito.verify(entityDao).batchDelete(deleted.capture());
+		Mockito.verify(entityDao).batchCreate(created.capture());
+		Assert.assertEquals(1, deleted.getValue().size());
+		Assert.assertSame(mapping1, deleted.getValue().get(0));
+		Assert.assertEquals(1, created.getValue().size());
+		Assert.assertEquals(Long.valueOf(3L), created.getValue().get(0).getParentGroupId());
+		Assert.assertEquals("testName3", created.getValue().get(0).getName());
+		Assert.assertEquals(Long.valueOf(1L), created.getValue().get(0).getUserId());
+		Assert.assertEquals(Long.valueOf(1L), created.getValue().get(0).getAddedByUserId());
+	}
+
 	private XXGroup createXXGroup() {
 		XXGroup xXGroup = new XXGroup();
 		Date date = new Date();
@@ -24,6 +24,8 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ranger.plugin.util.ServiceTags;
 
+import java.util.concurrent.Future;
+
 public abstract  class AbstractTagSource implements TagSource {
 	private static final Log LOG = LogFactory.getLog(AbstractTagSource.class);
 	private TagSink tagSink;
@@ -79,4 +81,26 @@ public abstract  class AbstractTagSource implements TagSource {
 		}
 	}
 
+	/*
+	 * @return future that completes when the upload is done, or null if the upload could not be queued
+	 */
+	protected Future<ServiceTags> updateSinkAsync(final ServiceTags toUpload) {
+		Future<ServiceTags> ret = null;
+
+		if (LOG.isDebugEnabled()) {
+			String toUploadJSON = new Gson().toJson(toUpload);
+			LOG.debug("Queueing upload of serviceTags=" + toUploadJSON);
+		}
+
+		try {
+			ret = tagSink.uploadAsync(toUpload);
+		} catch (Exception exception) {
+			String toUploadJSON = new Gson().toJson(toUpload);
+			LOG.error("Failed to upload serviceTags: " + toUploadJSON);
+			LOG.error("Exception : ", exception);
+		}
+
+		return ret;
+	}
+
 }
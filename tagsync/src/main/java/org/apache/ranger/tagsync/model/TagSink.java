@@ -22,11 +22,14 @@ package org.apache.ranger.tagsync.model;
 import org.apache.ranger.plugin.util.ServiceTags;
 
 import java.util.Properties;
+import java.util.concurrent.Future;
 
 
 public interface TagSink {
 	boolean initialize(Properties properties);
 	ServiceTags upload(ServiceTags toUpload) throws Exception;
+	// queues the upload, without waiting for it to complete; uploads of the same resource are applied in the order queued
+	Future<ServiceTags> uploadAsync(ServiceTags toUpload) throws Exception;
 	boolean start();
 	void stop();
 }
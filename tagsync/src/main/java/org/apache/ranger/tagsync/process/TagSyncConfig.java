@@ -66,6 +66,12 @@ public class TagSyncConfig extends Configuration {
 
 	private static final String TAGSYNC_TAGADMIN_CONNECTION_CHECK_INTERVAL_PROP = "ranger.tagsync.dest.ranger.connection.check.interval";
 
+	private static final String TAGSYNC_TAGADMIN_UPLOAD_BATCH_SIZE_PROP = "ranger.tagsync.dest.ranger.upload.batch.size";
+
+	private static final String TAGSYNC_TAGADMIN_UPLOAD_BATCH_DELAY_PROP = "ranger.tagsync.dest.ranger.upload.batch.delay.millis";
+
+	private static final String TAGSYNC_TAGADMIN_MAX_UPLOADS_IN_FLIGHT_PROP = "ranger.tagsync.dest.ranger.upload.max.inflight";
+
 	private static final String TAGSYNC_SOURCE_ATLAS_CUSTOM_RESOURCE_MAPPERS_PROP = "ranger.tagsync.atlas.custom.resource.mappers";
 
 	private static final String TAGSYNC_ATLASSOURCE_ENDPOINT_PROP = "ranger.tagsync.source.atlasrest.endpoint";
@@ -89,6 +95,9 @@ public class TagSyncConfig extends Configuration {
 	private static final String DEFAULT_ATLASREST_PASSWORD = "admin";
 
 	private static final int DEFAULT_TAGSYNC_TAGADMIN_CONNECTION_CHECK_INTERVAL = 15000;
+	private static final int DEFAULT_TAGSYNC_TAGADMIN_UPLOAD_BATCH_SIZE = 100;
+	private static final long DEFAULT_TAGSYNC_TAGADMIN_UPLOAD_BATCH_DELAY = 100;
+	private static final int DEFAULT_TAGSYNC_TAGADMIN_MAX_UPLOADS_IN_FLIGHT = 4;
 	private static final long DEFAULT_TAGSYNC_ATLASREST_SOURCE_DOWNLOAD_INTERVAL = 900000;
 	private static final long DEFAULT_TAGSYNC_FILESOURCE_MOD_TIME_CHECK_INTERVAL = 60000;
 	private static final long DEFAULT_TAGSYNC_SOURCE_RETRY_INITIALIZATION_INTERVAL = 10000;
@@ -390,6 +399,47 @@ public class TagSyncConfig extends Configuration {
 		return ret;
 	}
 
+	// maximum number of ServiceTags, from the tag source, uploaded together
+	static public int getTagAdminUploadBatchSize(Properties prop) {
+		int ret = DEFAULT_TAGSYNC_TAGADMIN_UPLOAD_BATCH_SIZE;
+		String val = prop.getProperty(TAGSYNC_TAGADMIN_UPLOAD_BATCH_SIZE_PROP);
+		if (StringUtils.isNotBlank(val)) {
+			try {
+				ret = Integer.valueOf(val);
+			} catch (NumberFormatException exception) {
+				// Ignore
+			}
+		}
+		return ret < 1 ? 1 : ret;
+	}
+
+	// time to wait for more ServiceTags before uploading a batch that is not full
+	static public long getTagAdminUploadBatchDelay(Properties prop) {
+		long ret = DEFAULT_TAGSYNC_TAGADMIN_UPLOAD_BATCH_DELAY;
+		String val = prop.getProperty(TAGSYNC_TAGADMIN_UPLOAD_BATCH_DELAY_PROP);
+		if (StringUtils.isNotBlank(val)) {
+			try {
+				ret = Long.valueOf(val);
+			} catch (NumberFormatException exception) {
+				// Ignore
+			}
+		}
+		return ret < 0 ? 0 : ret;
+	}
+
+	static public int getTagAdminMaxUploadsInFlight(Properties prop) {
+		int ret = DEFAULT_TAGSYNC_TAGADMIN_MAX_UPLOADS_IN_FLIGHT;
+		String val = prop.getProperty(TAGSYNC_TAGADMIN_MAX_UPLOADS_IN_FLIGHT_PROP);
+		if (StringUtils.isNotBlank(val)) {
+			try {
+				ret = Integer.valueOf(val);
+			} catch (NumberFormatException exception) {
+				// Ignore
+			}
+		}
+		return ret < 1 ? 1 : ret;
+	}
+
 	static public long getTagSourceRetryInitializationInterval(Properties prop) {
 		long ret = DEFAULT_TAGSYNC_SOURCE_RETRY_INITIALIZATION_INTERVAL;
 		String val = prop.getProperty(TAGSYNC_SOURCE_RETRY_INITIALIZATION_INTERVAL_PROP);
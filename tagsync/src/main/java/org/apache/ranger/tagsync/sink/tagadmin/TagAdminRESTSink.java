@@ -22,6 +22,7 @@ package org.apache.ranger.tagsync.sink.tagadmin;
 import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.api.client.WebResource;
 
+import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.collections.MapUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
@@ -33,7 +34,13 @@ import com.sun.jersey.api.client.Client;
 import javax.ws.rs.core.Cookie;
 import javax.ws.rs.core.NewCookie;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+
+import org.apache.ranger.plugin.model.RangerServiceResource;
+import org.apache.ranger.plugin.model.RangerTag;
+import org.apache.ranger.plugin.model.RangerTagDef;
 import org.apache.ranger.plugin.util.RangerRESTClient;
 import org.apache.ranger.plugin.util.SearchFilter;
 import org.apache.ranger.plugin.util.ServiceTags;
@@ -44,9 +51,11 @@ import java.io.IOException;
 import java.security.PrivilegedAction;
 import java.util.Map;
 import java.util.Properties;
-import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 public class TagAdminRESTSink implements TagSink, Runnable {
 	private static final Log LOG = LogFactory.getLog(TagAdminRESTSink.class);
@@ -60,11 +69,12 @@ public class TagAdminRESTSink implements TagSink, Runnable {
 
 	private long rangerAdminConnectionCheckInterval;
 
-	private Cookie sessionId=null;
+	// updated by all upload threads
+	private volatile Cookie sessionId=null;
 
-	private boolean isValidRangerCookie=false;
+	private volatile boolean isValidRangerCookie=false;
 
-	List<NewCookie> cookieList=new ArrayList<>();
+	volatile List<NewCookie> cookieList=new ArrayList<>();
 
 	private boolean isRangerCookieEnabled;
 
@@ -76,6 +86,16 @@ public class TagAdminRESTSink implements TagSink, Runnable {
 
 	private Thread myThread = null;
 
+	private int uploadBatchSize;
+
+	private long uploadBatchDelay;
+
+	private UploadLane[] uploadLanes;
+
+	private final Object uploadLanesLock = new Object();
+
+	private int itemsInUploadLanes = 0; // guarded by uploadLanesLock
+
 	@Override
 	public boolean initialize(Properties properties) {
 		if (LOG.isDebugEnabled()) {
@@ -91,6 +111,8 @@ public class TagAdminRESTSink implements TagSink, Runnable {
 		rangerAdminConnectionCheckInterval = TagSyncConfig.getTagAdminConnectionCheckInterval(properties);
 		isKerberized = TagSyncConfig.getTagsyncKerberosIdentity(properties) != null;
 		isRangerCookieEnabled = TagSyncConfig.isTagSyncRangerCookieEnabled(properties);
+		uploadBatchSize = TagSyncConfig.getTagAdminUploadBatchSize(properties);
+		uploadBatchDelay = TagSyncConfig.getTagAdminUploadBatchDelay(properties);
 		sessionId=null;
 
 		if (LOG.isDebugEnabled()) {
@@ -99,6 +121,8 @@ public class TagAdminRESTSink implements TagSink, Runnable {
 			LOG.debug("userName=" + userName);
 			LOG.debug("rangerAdminConnectionCheckInterval=" + rangerAdminConnectionCheckInterval);
 			LOG.debug("isKerberized=" + isKerberized);
+			LOG.debug("uploadBatchSize=" + uploadBatchSize);
+			LOG.debug("uploadBatchDelay=" + uploadBatchDelay);
 		}
 
 		if (StringUtils.isNotBlank(restUrl)) {
@@ -110,6 +134,12 @@ public class TagAdminRESTSink implements TagSink, Runnable {
 			tagRESTClient.getClient();
 
 			uploadWorkItems = new LinkedBlockingQueue<UploadWorkItem>();
+			uploadLanes = new UploadLane[TagSyncConfig.getTagAdminMaxUploadsInFlight(properties)];
+
+			for (int i = 0; i < uploadLanes.length; i++) {
+				uploadLanes[i] = new UploadLane();
+			}
+
 			ret = true;
 		} else {
 			LOG.error("No value specified for property 'ranger.tagsync.tagadmin.rest.url'!");
@@ -129,12 +159,8 @@ public class TagAdminRESTSink implements TagSink, Runnable {
 			LOG.debug("==> upload() ");
 		}
 
-		UploadWorkItem uploadWorkItem = new UploadWorkItem(toUpload);
-
-		uploadWorkItems.put(uploadWorkItem);
-
 		// Wait until message is successfully delivered
-		ServiceTags ret = uploadWorkItem.waitForUpload();
+		ServiceTags ret = uploadAsync(toUpload).get();
 
 		if(LOG.isDebugEnabled()) {
 			LOG.debug("<== upload()");
@@ -143,7 +169,19 @@ public class TagAdminRESTSink implements TagSink, Runnable {
 		return ret;
 	}
 
-	private ServiceTags doUpload(ServiceTags serviceTags) throws Exception {
+	@Override
+	public Future<ServiceTags> uploadAsync(ServiceTags toUpload) throws Exception {
+		UploadWorkItem uploadWorkItem = new UploadWorkItem(toUpload);
+
+		uploadWorkItems.put(uploadWorkItem);
+
+		return uploadWorkItem.getUploaded();
+	}
+
+	/*
+	 * @return HTTP status of the upload, or null if the upload failed and should be retried
+	 */
+	private Integer doUpload(ServiceTags serviceTags) throws Exception {
 			if(isKerberized) {
 				try{
 					UserGroupInformation userGroupInformation = UserGroupInformation.getLoginUser();
@@ -160,9 +198,9 @@ public class TagAdminRESTSink implements TagSink, Runnable {
 							LOG.debug("Using Principal = " + userGroupInformation.getUserName());
 						}
 						final ServiceTags serviceTag = serviceTags;
-						ServiceTags ret = userGroupInformation.doAs(new PrivilegedAction<ServiceTags>() {
+						Integer ret = userGroupInformation.doAs(new PrivilegedAction<Integer>() {
 							@Override
-							public ServiceTags run() {
+							public Integer run() {
 								try {
 									return uploadServiceTags(serviceTag);
 								} catch (Exception e) {
@@ -185,7 +223,7 @@ public class TagAdminRESTSink implements TagSink, Runnable {
 			}
 	}
 	
-	private ServiceTags uploadServiceTags(ServiceTags serviceTags) throws Exception {
+	private int uploadServiceTags(ServiceTags serviceTags) throws Exception {
 		if(LOG.isDebugEnabled()) {
 			LOG.debug("==> doUpload()");
 		}
@@ -214,7 +252,7 @@ public class TagAdminRESTSink implements TagSink, Runnable {
 			LOG.debug("<== doUpload()");
 		}
 
-		return serviceTags;
+		return response.getStatus();
 	}
 
 	private ClientResponse uploadServiceTagsUsingCookie(ServiceTags serviceTags) {
@@ -364,6 +402,10 @@ public class TagAdminRESTSink implements TagSink, Runnable {
 		myThread.setDaemon(true);
 		myThread.start();
 
+		for (UploadLane uploadLane : uploadLanes) {
+			uploadLane.start();
+		}
+
 		return true;
 	}
 
@@ -372,8 +414,19 @@ public class TagAdminRESTSink implements TagSink, Runnable {
 		if (myThread != null && myThread.isAlive()) {
 			myThread.interrupt();
 		}
+
+		if (uploadLanes != null) {
+			for (UploadLane uploadLane : uploadLanes) {
+				uploadLane.stop();
+			}
+		}
 	}
 
+	/*
+	 * Dispatches uploads to the upload lanes: all updates of a resource go to the same lane, where they are uploaded in
+	 * the order they were received. Uploads that don't update a single resource - like full syncs - are run alone, after
+	 * all uploads received earlier complete.
+	 */
 	@Override
 	public void run() {
 		if (LOG.isDebugEnabled()) {
@@ -381,38 +434,25 @@ public class TagAdminRESTSink implements TagSink, Runnable {
 		}
 
 		while (true) {
-			UploadWorkItem uploadWorkItem;
-
 			try {
-				uploadWorkItem = uploadWorkItems.take();
+				UploadWorkItem uploadWorkItem = uploadWorkItems.take();
 
-				ServiceTags toUpload = uploadWorkItem.getServiceTags();
+				String entityKey = uploadWorkItem.getEntityKey();
 
-				boolean doRetry;
+				if (entityKey == null) {
+					waitForUploadLanes();
 
-				do {
-					doRetry = false;
+					uploadWithRetry(uploadWorkItem.getServiceTags());
 
-					try {
-						ServiceTags uploaded = doUpload(toUpload);
-						if (uploaded == null) { // Treat this as if an Exception is thrown by doUpload
-							doRetry = true;
-							Thread.sleep(rangerAdminConnectionCheckInterval);
-						} else {
-							// ServiceTags uploaded successfully
-							uploadWorkItem.uploadCompleted(uploaded);
-						}
-					} catch (InterruptedException interrupted) {
-						LOG.error("Caught exception..: ", interrupted);
-						return;
-					} catch (Exception exception) {
-						doRetry = true;
-						Thread.sleep(rangerAdminConnectionCheckInterval);
+					uploadWorkItem.uploadCompleted(uploadWorkItem.getServiceTags());
+				} else {
+					synchronized (uploadLanesLock) {
+						itemsInUploadLanes++;
 					}
-				} while (doRetry);
 
-			}
-			catch (InterruptedException exception) {
+					uploadLanes[(entityKey.hashCode() & Integer.MAX_VALUE) % uploadLanes.length].add(uploadWorkItem);
+				}
+			} catch (InterruptedException exception) {
 				LOG.error("Interrupted..: ", exception);
 				return;
 			}
@@ -420,32 +460,273 @@ public class TagAdminRESTSink implements TagSink, Runnable {
 
 	}
 
+	private void waitForUploadLanes() throws InterruptedException {
+		synchronized (uploadLanesLock) {
+			while (itemsInUploadLanes > 0) {
+				uploadLanesLock.wait();
+			}
+		}
+	}
+
+	private void uploadLaneItemsCompleted(int count) {
+		synchronized (uploadLanesLock) {
+			itemsInUploadLanes -= count;
+
+			uploadLanesLock.notifyAll();
+		}
+	}
+
+	/*
+	 * @return HTTP status of the upload: SC_NO_CONTENT or SC_BAD_REQUEST
+	 */
+	private int uploadWithRetry(ServiceTags toUpload) throws InterruptedException {
+		while (true) {
+			try {
+				Integer status = doUpload(toUpload);
+
+				if (status != null) {
+					return status;
+				}
+				// null status: treat this as if an Exception is thrown by doUpload
+			} catch (Exception exception) {
+				if (LOG.isDebugEnabled()) {
+					LOG.debug("Upload of service-tags failed. Will retry after " + rangerAdminConnectionCheckInterval + "ms", exception);
+				}
+			}
+
+			Thread.sleep(rangerAdminConnectionCheckInterval);
+		}
+	}
+
+	/*
+	 * Uploads a batch of updates received by an upload lane:
+	 *  - only the last update of each resource is uploaded, as each update carries the complete tags of its resource
+	 *  - updates with the same op and service are merged into one ServiceTags
+	 *  - when Ranger Admin rejects a merged upload, its updates are uploaded one by one, so that one bad update doesn't
+	 *    fail the others
+	 */
+	private void uploadBatch(List<UploadWorkItem> batch) throws InterruptedException {
+		Map<String, ServiceTags> lastUpdates = new LinkedHashMap<String, ServiceTags>();
+
+		for (UploadWorkItem uploadWorkItem : batch) {
+			lastUpdates.remove(uploadWorkItem.getEntityKey()); // to keep the order of the last updates
+			lastUpdates.put(uploadWorkItem.getEntityKey(), uploadWorkItem.getServiceTags());
+		}
+
+		Map<String, List<ServiceTags>> toMerge = new LinkedHashMap<String, List<ServiceTags>>();
+
+		for (ServiceTags serviceTags : lastUpdates.values()) {
+			String           mergeKey = serviceTags.getOp() + "/" + serviceTags.getServiceName();
+			List<ServiceTags> updates = toMerge.get(mergeKey);
+
+			if (updates == null) {
+				updates = new ArrayList<ServiceTags>();
+
+				toMerge.put(mergeKey, updates);
+			}
+
+			updates.add(serviceTags);
+		}
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("TagAdminRESTSink.uploadBatch(): received " + batch.size() + " updates, uploading " + lastUpdates.size() + " updates in " + toMerge.size() + " requests");
+		}
+
+		for (List<ServiceTags> updates : toMerge.values()) {
+			if (updates.size() == 1) {
+				uploadWithRetry(updates.get(0));
+			} else {
+				int status = uploadWithRetry(mergeServiceTags(updates));
+
+				if (status == HttpServletResponse.SC_BAD_REQUEST) {
+					LOG.warn("Upload of " + updates.size() + " merged service-tags failed. Uploading them one by one");
+
+					for (ServiceTags serviceTags : updates) {
+						uploadWithRetry(serviceTags);
+					}
+				}
+			}
+		}
+	}
+
+	/*
+	 * @return key of the resource updated by the given ServiceTags, or null if it doesn't update exactly one resource
+	 */
+	static String getEntityKey(ServiceTags serviceTags) {
+		String ret = null;
+
+		if (serviceTags != null && (ServiceTags.OP_ADD_OR_UPDATE.equals(serviceTags.getOp()) || ServiceTags.OP_DELETE.equals(serviceTags.getOp()))
+				&& CollectionUtils.size(serviceTags.getServiceResources()) == 1) {
+			RangerServiceResource resource = serviceTags.getServiceResources().get(0);
+
+			if (StringUtils.isNotEmpty(resource.getGuid())) {
+				ret = resource.getGuid();
+			} else if (serviceTags.getServiceName() != null) {
+				ret = serviceTags.getServiceName() + resource.getResourceElements();
+			}
+		}
+
+		return ret;
+	}
+
+	/*
+	 * Merges updates with the same op and service. The ids of tag-defs, tags and resources are only references within
+	 * one ServiceTags, hence are reassigned; the given updates are not modified.
+	 */
+	static ServiceTags mergeServiceTags(List<ServiceTags> updates) {
+		ServiceTags first = updates.get(0);
+		ServiceTags ret   = new ServiceTags();
+
+		ret.setOp(first.getOp());
+		ret.setServiceName(first.getServiceName());
+		ret.setTagVersion(first.getTagVersion());
+		ret.setTagUpdateTime(first.getTagUpdateTime());
+
+		Map<String, Long> tagDefIdsByName = new HashMap<String, Long>();
+		long              nextTagDefId    = 0;
+		long              nextTagId       = 0;
+		long              nextResourceId  = 0;
+
+		for (ServiceTags serviceTags : updates) {
+			for (RangerTagDef tagDef : serviceTags.getTagDefinitions().values()) {
+				Long tagDefId = tagDef.getName() != null ? tagDefIdsByName.get(tagDef.getName()) : null;
+
+				if (tagDefId == null) {
+					tagDefId = nextTagDefId++;
+
+					if (tagDef.getName() != null) {
+						tagDefIdsByName.put(tagDef.getName(), tagDefId);
+					}
+				}
+
+				ret.getTagDefinitions().put(tagDefId, tagDef); // a later tag-def of the same name replaces the earlier one
+			}
+
+			Map<Long, Long> tagIds = new HashMap<Long, Long>();
+
+			for (Map.Entry<Long, RangerTag> entry : serviceTags.getTags().entrySet()) {
+				Long tagId = nextTagId++;
+
+				tagIds.put(entry.getKey(), tagId);
+				ret.getTags().put(tagId, entry.getValue());
+			}
+
+			for (RangerServiceResource resource : serviceTags.getServiceResources()) {
+				RangerServiceResource copy       = new RangerServiceResource(resource.getGuid(), resource.getServiceName(), resource.getResourceElements(), resource.getResourceSignature());
+				Long                  resourceId = nextResourceId++;
+
+				copy.updateFrom(resource);
+				copy.setId(resourceId);
+
+				ret.getServiceResources().add(copy);
+
+				List<Long> resourceTagIds = resource.getId() != null ? serviceTags.getResourceToTagIds().get(resource.getId()) : null;
+
+				if (resourceTagIds != null) {
+					List<Long> copyTagIds = new ArrayList<Long>(resourceTagIds.size());
+
+					for (Long tagId : resourceTagIds) {
+						Long copyTagId = tagIds.get(tagId);
+
+						if (copyTagId != null) { // Ranger Admin skips tag ids not in the update
+							copyTagIds.add(copyTagId);
+						}
+					}
+
+					ret.getResourceToTagIds().put(resourceId, copyTagIds);
+				}
+			}
+		}
+
+		return ret;
+	}
+
 	static class UploadWorkItem {
-		private ServiceTags serviceTags;
-		private BlockingQueue<ServiceTags> uploadedServiceTags;
+		private final ServiceTags                    serviceTags;
+		private final String                         entityKey;
+		private final CompletableFuture<ServiceTags> uploaded = new CompletableFuture<ServiceTags>();
 
 		ServiceTags getServiceTags() {
 			return serviceTags;
 		}
 
-		ServiceTags waitForUpload() throws InterruptedException {
-			return uploadedServiceTags.take();
+		String getEntityKey() {
+			return entityKey;
+		}
+
+		Future<ServiceTags> getUploaded() {
+			return uploaded;
 		}
 
-		void uploadCompleted(ServiceTags uploaded) throws InterruptedException {
+		void uploadCompleted(ServiceTags uploaded) {
 			// ServiceTags uploaded successfully
-			uploadedServiceTags.put(uploaded);
+			this.uploaded.complete(uploaded);
 		}
 
 		UploadWorkItem(ServiceTags serviceTags) {
-			setServiceTags(serviceTags);
-			uploadedServiceTags = new ArrayBlockingQueue<ServiceTags>(1);
+			this.serviceTags = serviceTags;
+			this.entityKey   = TagAdminRESTSink.getEntityKey(serviceTags);
 		}
 
-		void setServiceTags(ServiceTags serviceTags) {
-			this.serviceTags = serviceTags;
+	}
+
+	/*
+	 * Uploads the updates dispatched to it, in batches of up to uploadBatchSize updates received within uploadBatchDelay
+	 * of the first one. Lanes upload concurrently, which bounds the uploads in flight to the number of lanes.
+	 */
+	class UploadLane implements Runnable {
+		private final BlockingQueue<UploadWorkItem> items = new LinkedBlockingQueue<UploadWorkItem>();
+		private       Thread                        thread;
+
+		void add(UploadWorkItem uploadWorkItem) throws InterruptedException {
+			items.put(uploadWorkItem);
 		}
 
+		void start() {
+			thread = new Thread(this);
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		void stop() {
+			if (thread != null && thread.isAlive()) {
+				thread.interrupt();
+			}
+		}
+
+		@Override
+		public void run() {
+			while (true) {
+				try {
+					List<UploadWorkItem> batch = new ArrayList<UploadWorkItem>();
+
+					batch.add(items.take());
+
+					long batchEndTime = System.currentTimeMillis() + uploadBatchDelay;
+
+					while (batch.size() < uploadBatchSize) {
+						UploadWorkItem uploadWorkItem = items.poll(Math.max(batchEndTime - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+
+						if (uploadWorkItem == null) {
+							break;
+						}
+
+						batch.add(uploadWorkItem);
+					}
+
+					uploadBatch(batch);
+
+					for (UploadWorkItem uploadWorkItem : batch) {
+						uploadWorkItem.uploadCompleted(uploadWorkItem.getServiceTags());
+					}
+
+					uploadLaneItemsCompleted(batch.size());
+				} catch (InterruptedException exception) {
+					LOG.error("Interrupted..: ", exception);
+					return;
+				}
+			}
+		}
 	}
 
 }
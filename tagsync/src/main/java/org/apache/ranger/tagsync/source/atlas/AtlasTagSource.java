@@ -36,8 +36,14 @@ import org.apache.ranger.tagsync.source.atlasrest.RangerAtlasEntityWithTags;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 public class AtlasTagSource extends AbstractTagSource {
 	private static final Log LOG = LogFactory.getLog(AtlasTagSource.class);
@@ -148,9 +154,19 @@ public class AtlasTagSource extends AbstractTagSource {
 		return sb.toString();
 	}
 
+	/*
+	 * Messages are uploaded to Ranger asynchronously - the sink batches and pipelines the uploads - and are committed to
+	 * Kafka only after their upload, and the upload of all messages received before them, completes.
+	 */
 	private class ConsumerRunnable implements Runnable {
 
+		private static final int MAX_PENDING_COMMITS = 10000;
+
 		private final NotificationConsumer<EntityNotification> consumer;
+		private final Deque<PendingCommit>                     pendingCommits = new ArrayDeque<>();
+
+		private boolean seenCommitException = false;
+		private long    offsetOfLastMessageDeliveredToRanger = -1L;
 
 		private ConsumerRunnable(NotificationConsumer<EntityNotification> consumer) {
 			this.consumer = consumer;
@@ -163,9 +179,6 @@ public class AtlasTagSource extends AbstractTagSource {
 				LOG.debug("==> ConsumerRunnable.run()");
 			}
 
-			boolean seenCommitException = false;
-			long offsetOfLastMessageDeliveredToRanger = -1L;
-
 			while (true) {
 				try {
 					List<AtlasKafkaMessage<EntityNotification>> messages = consumer.receive(1000L);
@@ -180,16 +193,10 @@ public class AtlasTagSource extends AbstractTagSource {
 							AtlasKafkaMessage<EntityNotification> message = messages.get(index);
 							if (message.getOffset() <= offsetOfLastMessageDeliveredToRanger) {
 								// Already delivered to Ranger
-								TopicPartition partition = new TopicPartition("ATLAS_ENTITIES", message.getPartition());
-								try {
-									if (LOG.isDebugEnabled()) {
-										LOG.debug("Committing previously commit-failed message with offset:[" + message.getOffset() + "]");
-									}
-									consumer.commit(partition, message.getOffset());
-								} catch (Exception commitException) {
-									LOG.warn("Ranger tagsync already processed message at offset " + message.getOffset() + ". Ignoring failure in committing this message and continuing to process next message", commitException);
-									LOG.warn("This will cause Kafka to deliver this message:[" + message.getOffset() + "] repeatedly!! This may be unrecoverable error!!");
+								if (LOG.isDebugEnabled()) {
+									LOG.debug("Committing previously commit-failed message with offset:[" + message.getOffset() + "]");
 								}
+								addPendingCommit(message, null);
 							} else {
 								break;
 							}
@@ -197,7 +204,6 @@ public class AtlasTagSource extends AbstractTagSource {
 					}
 
 					seenCommitException = false;
-					offsetOfLastMessageDeliveredToRanger = -1L;
 
 					for (; index < messages.size(); index++) {
 						AtlasKafkaMessage<EntityNotification> message = messages.get(index);
@@ -216,25 +222,17 @@ public class AtlasTagSource extends AbstractTagSource {
 								}
 
 								ServiceTags serviceTags = AtlasNotificationMapper.processEntityNotification(notificationWrapper);
-								if (serviceTags != null) {
-									updateSink(serviceTags);
-								}
-								offsetOfLastMessageDeliveredToRanger = message.getOffset();
 
-								if (!seenCommitException) {
-									TopicPartition partition = new TopicPartition("ATLAS_ENTITIES", message.getPartition());
-									try {
-										consumer.commit(partition, message.getOffset());
-									} catch (Exception commitException) {
-										seenCommitException = true;
-										LOG.warn("Ranger tagsync processed message at offset " + message.getOffset() + ". Ignoring failure in committing this message and continuing to process next message", commitException);
-									}
-								}
+								addPendingCommit(message, serviceTags != null ? updateSinkAsync(serviceTags) : null);
+
+								offsetOfLastMessageDeliveredToRanger = message.getOffset();
 							}
 						} else {
 							LOG.error("Null entityNotification received from Kafka!! Ignoring..");
 						}
 					}
+
+					commitUploadedMessages();
 				} catch (Exception exception) {
 					LOG.error("Caught exception..: ", exception);
 					// If transient error, retry after short interval
@@ -248,6 +246,71 @@ public class AtlasTagSource extends AbstractTagSource {
 				}
 			}
 		}
+
+		// waits for the oldest upload when too many messages are waiting to be committed
+		private void addPendingCommit(AtlasKafkaMessage<EntityNotification> message, Future<ServiceTags> upload) throws InterruptedException {
+			while (pendingCommits.size() >= MAX_PENDING_COMMITS) {
+				Future<ServiceTags> oldestUpload = pendingCommits.peekFirst().upload;
+
+				if (oldestUpload != null) {
+					try {
+						oldestUpload.get();
+					} catch (ExecutionException excp) {
+						// logged by commitUploadedMessages()
+					}
+				}
+
+				commitUploadedMessages();
+			}
+
+			pendingCommits.addLast(new PendingCommit(message.getPartition(), message.getOffset(), upload));
+		}
+
+		// commits, in each partition, the last message whose upload completed along with the uploads of all earlier messages
+		private void commitUploadedMessages() throws InterruptedException {
+			Map<Integer, Long> offsetsToCommit = new LinkedHashMap<>();
+
+			while (!pendingCommits.isEmpty()) {
+				PendingCommit pendingCommit = pendingCommits.peekFirst();
+
+				if (pendingCommit.upload != null) {
+					if (!pendingCommit.upload.isDone()) {
+						break;
+					}
+
+					try {
+						pendingCommit.upload.get();
+					} catch (ExecutionException excp) {
+						LOG.error("Failed to upload serviceTags for message at offset " + pendingCommit.offset, excp.getCause());
+					}
+				}
+
+				pendingCommits.removeFirst();
+
+				offsetsToCommit.put(pendingCommit.partition, pendingCommit.offset);
+			}
+
+			for (Map.Entry<Integer, Long> entry : offsetsToCommit.entrySet()) {
+				TopicPartition partition = new TopicPartition("ATLAS_ENTITIES", entry.getKey());
+				try {
+					consumer.commit(partition, entry.getValue());
+				} catch (Exception commitException) {
+					seenCommitException = true;
+					LOG.warn("Ranger tagsync processed message at offset " + entry.getValue() + ". Ignoring failure in committing this message and continuing to process next message", commitException);
+				}
+			}
+		}
 	}
-}
 
+	private static class PendingCommit {
+		final int                 partition;
+		final long                offset;
+		final Future<ServiceTags> upload; // null if there is nothing to upload
+
+		PendingCommit(int partition, long offset, Future<ServiceTags> upload) {
+			this.partition = partition;
+			this.offset    = offset;
+			this.upload    = upload;
+		}
+	}
+}
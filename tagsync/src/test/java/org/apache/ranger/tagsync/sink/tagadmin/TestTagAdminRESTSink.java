@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.tagsync.sink.tagadmin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+import org.apache.ranger.plugin.model.RangerServiceResource;
+import org.apache.ranger.plugin.model.RangerTag;
+import org.apache.ranger.plugin.model.RangerTagDef;
+import org.apache.ranger.plugin.util.ServiceTags;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestTagAdminRESTSink {
+    private static final String SERVICE_NAME = "cl1_hive";
+
+    @Test
+    public void testEntityKey() {
+        Assert.assertEquals("guid-1", TagAdminRESTSink.getEntityKey(getServiceTags(ServiceTags.OP_ADD_OR_UPDATE, "guid-1", "db1", "PII")));
+        Assert.assertEquals("guid-1", TagAdminRESTSink.getEntityKey(getServiceTags(ServiceTags.OP_DELETE, "guid-1", "db1")));
+        Assert.assertNotNull(TagAdminRESTSink.getEntityKey(getServiceTags(ServiceTags.OP_ADD_OR_UPDATE, null, "db1", "PII")));
+
+        ServiceTags fullSync = getServiceTags(ServiceTags.OP_REPLACE, "guid-1", "db1", "PII");
+
+        Assert.assertNull("full sync must not be reordered", TagAdminRESTSink.getEntityKey(fullSync));
+
+        ServiceTags twoResources = getServiceTags(ServiceTags.OP_ADD_OR_UPDATE, "guid-1", "db1", "PII");
+
+        twoResources.getServiceResources().add(getResource("guid-2", "db2"));
+
+        Assert.assertNull(TagAdminRESTSink.getEntityKey(twoResources));
+    }
+
+    @Test
+    public void testMergeServiceTags() {
+        ServiceTags update1 = getServiceTags(ServiceTags.OP_ADD_OR_UPDATE, "guid-1", "db1", "PII", "EXPIRES_ON");
+        ServiceTags update2 = getServiceTags(ServiceTags.OP_ADD_OR_UPDATE, "guid-2", "db2", "PII");
+
+        ServiceTags merged = TagAdminRESTSink.mergeServiceTags(Arrays.asList(update1, update2));
+
+        Assert.assertEquals(ServiceTags.OP_ADD_OR_UPDATE, merged.getOp());
+        Assert.assertEquals(SERVICE_NAME, merged.getServiceName());
+        Assert.assertEquals(2, merged.getServiceResources().size());
+        Assert.assertEquals(3, merged.getTags().size());
+        Assert.assertEquals("tag-defs of the same name must be merged", 2, merged.getTagDefinitions().size());
+
+        Set<Long> resourceIds = new HashSet<>();
+
+        for (RangerServiceResource resource : merged.getServiceResources()) {
+            Assert.assertTrue("resource ids must be unique", resourceIds.add(resource.getId()));
+        }
+
+        Assert.assertEquals(getTagTypes(update1, update1.getServiceResources().get(0)), getTagTypes(merged, merged.getServiceResources().get(0)));
+        Assert.assertEquals(getTagTypes(update2, update2.getServiceResources().get(0)), getTagTypes(merged, merged.getServiceResources().get(1)));
+
+        // the merged updates are not modified
+        Assert.assertEquals(Long.valueOf(1L), update2.getServiceResources().get(0).getId());
+        Assert.assertEquals(Collections.singletonList(1L), update2.getResourceToTagIds().get(1L));
+    }
+
+    private static List<String> getTagTypes(ServiceTags serviceTags, RangerServiceResource resource) {
+        List<String> ret = new ArrayList<>();
+
+        for (Long tagId : serviceTags.getResourceToTagIds().get(resource.getId())) {
+            ret.add(serviceTags.getTags().get(tagId).getType());
+        }
+
+        return ret;
+    }
+
+    // ids start at 1 in each ServiceTags, as in the ones built by AtlasNotificationMapper
+    private static ServiceTags getServiceTags(String op, String guid, String database, String... tagTypes) {
+        ServiceTags ret = new ServiceTags();
+
+        ret.setOp(op);
+        ret.setServiceName(SERVICE_NAME);
+
+        RangerServiceResource resource = getResource(guid, database);
+
+        resource.setId(1L);
+
+        ret.getServiceResources().add(resource);
+
+        List<Long> tagIds = new ArrayList<>();
+        long       id     = 1;
+
+        for (String tagType : tagTypes) {
+            RangerTagDef tagDef = new RangerTagDef(tagType);
+            RangerTag    tag    = new RangerTag(tagType, new HashMap<String, String>());
+
+            tagDef.setId(id);
+            tag.setId(id);
+
+            ret.getTagDefinitions().put(id, tagDef);
+            ret.getTags().put(id, tag);
+
+            tagIds.add(id++);
+        }
+
+        if (!tagIds.isEmpty()) {
+            ret.getResourceToTagIds().put(resource.getId(), tagIds);
+        }
+
+        return ret;
+    }
+
+    private static RangerServiceResource getResource(String guid, String database) {
+        Map<String, RangerPolicyResource> elements = new HashMap<>();
+
+        elements.put("database", new RangerPolicyResource(database));
+
+        return new RangerServiceResource(guid, SERVICE_NAME, elements);
+    }
+}
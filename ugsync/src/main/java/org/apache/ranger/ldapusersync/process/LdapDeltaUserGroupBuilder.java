@@ -323,6 +323,7 @@ public class LdapDeltaUserGroupBuilder extends AbstractUserGroupSource {
 	@Override
 	public void updateSink(UserGroupSink sink) throws Throwable {
 		LOG.info("LdapDeltaUserGroupBuilder updateSink started");
+		LdapSyncStageTimer timer = new LdapSyncStageTimer();
 		groupUserTable = HashBasedTable.create();
         groupNameMap = new DualHashBidiMap();
 		noOfNewUsers = 0;
@@ -332,17 +333,21 @@ public class LdapDeltaUserGroupBuilder extends AbstractUserGroupSource {
 
         if (!groupSearchFirstEnabled) {
 			LOG.info("Performing user search first");
+			timer.start("userSearch");
 			getUsers(sink);
 			if (groupSearchEnabled) {
+				timer.start("groupSearch");
 				getGroups(sink);
 			}
 			//LOG.debug("Total No. of users saved = " + groupUserTable.columnKeySet().size());
 
 		} else {
 			LOG.info("Performing Group search first");
+			timer.start("groupSearch");
 			getGroups(sink);
 			if (userSearchEnabled) {
 				LOG.info("User search is enabled and hence computing user membership.");
+				timer.start("userSearch");
 				getUsers(sink);
 			}
 		}
@@ -354,16 +359,20 @@ public class LdapDeltaUserGroupBuilder extends AbstractUserGroupSource {
 			ugsyncAuditInfo.setNoOfModifiedGroups(Integer.toUnsignedLong(noOfModifiedGroups));
 			ldapSyncSourceInfo.setUserSearchFilter(extendedUserSearchFilter);
 			ldapSyncSourceInfo.setGroupSearchFilter(extendedAllGroupsSearchFilter);
+			timer.start("postAuditInfo");
 			try {
 				sink.postUserGroupAuditInfo(ugsyncAuditInfo);
 			} catch (Throwable t) {
 				LOG.error("sink.postUserGroupAuditInfo failed with exception: " + t.getMessage());
 			}
+			timer.stop();
+			LOG.info("LdapDeltaUserGroupBuilder updateSink completed with no changes. Time taken: " + timer);
 			return;
 		}
         
 		if (groupHierarchyLevels > 0) {
 			LOG.info("Going through group hierarchy for nested group evaluation");
+			timer.start("groupHierarchy");
             Set<String> groupFullNames = groupNameMap.keySet();
 			for(String group : groupFullNames) {
 				Set<String> nextLevelGroups = groupUserTable.column(group).keySet();
@@ -372,6 +381,7 @@ public class LdapDeltaUserGroupBuilder extends AbstractUserGroupSource {
 			LOG.info("Completed group hierarchy computation");
 		}
 
+		timer.start("sink");
 		Iterator<String> groupUserTableIterator = groupUserTable.rowKeySet().iterator();
 		while (groupUserTableIterator.hasNext()) {
 			String groupName = groupUserTableIterator.next();
@@ -404,11 +414,15 @@ public class LdapDeltaUserGroupBuilder extends AbstractUserGroupSource {
 		ldapSyncSourceInfo.setTotalUsersSynced(userNameMap.size());
 		ldapSyncSourceInfo.setTotalGroupsSynced(groupNames.size());
 
+		timer.start("postAuditInfo");
 		try {
 			sink.postUserGroupAuditInfo(ugsyncAuditInfo);
 		} catch (Throwable t) {
 			LOG.error("sink.postUserGroupAuditInfo failed with exception: " + t.getMessage());
 		}
+		timer.stop();
+		LOG.info("LdapDeltaUserGroupBuilder updateSink completed with new users: " + noOfNewUsers + ", new groups: " + noOfNewGroups
+				+ ", modified users: " + noOfModifiedUsers + ", modified groups: " + noOfModifiedGroups + ". Time taken: " + timer);
 	}
 
 	private void getUsers(UserGroupSink sink) throws Throwable {
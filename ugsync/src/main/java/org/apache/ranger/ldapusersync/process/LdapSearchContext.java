@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.ldapusersync.process;
+
+import java.io.IOException;
+import java.util.Properties;
+
+import javax.naming.Context;
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.directory.SearchControls;
+import javax.naming.directory.SearchResult;
+import javax.naming.ldap.Control;
+import javax.naming.ldap.InitialLdapContext;
+import javax.naming.ldap.LdapContext;
+import javax.naming.ldap.PagedResultsControl;
+import javax.naming.ldap.PagedResultsResponseControl;
+import javax.naming.ldap.StartTlsRequest;
+import javax.naming.ldap.StartTlsResponse;
+
+import org.apache.log4j.Logger;
+import org.apache.ranger.unixusersync.config.UserGroupSyncConfig;
+
+/*
+ * LDAP connection used by one thread of a sync cycle - JNDI contexts must not be shared between threads - with
+ * searches that read all pages of their results.
+ */
+final class LdapSearchContext {
+	private static final Logger LOG = Logger.getLogger(LdapSearchContext.class);
+
+	interface SearchResultHandler {
+		void handle(SearchResult entry) throws NamingException;
+	}
+
+	private final LdapContext      ldapContext;
+	private final StartTlsResponse tls;
+	private final boolean          pagedResultsEnabled;
+	private final int              pagedResultsSize;
+
+	private LdapSearchContext(LdapContext ldapContext, StartTlsResponse tls, boolean pagedResultsEnabled, int pagedResultsSize) {
+		this.ldapContext         = ldapContext;
+		this.tls                 = tls;
+		this.pagedResultsEnabled = pagedResultsEnabled;
+		this.pagedResultsSize    = pagedResultsSize;
+	}
+
+	// same setup as LdapUserGroupBuilder.createLdapContext()
+	static LdapSearchContext open(UserGroupSyncConfig config, String ldapUrl, String ldapBindDn, String ldapBindPassword, String ldapAuthenticationMechanism,
+								  String ldapReferral, boolean pagedResultsEnabled, int pagedResultsSize) throws NamingException, IOException {
+		Properties env = new Properties();
+		env.put(Context.INITIAL_CONTEXT_FACTORY, "com.sun.jndi.ldap.LdapCtxFactory");
+		env.put(Context.PROVIDER_URL, ldapUrl);
+		if (ldapUrl.startsWith("ldaps") && (config.getSSLTrustStorePath() != null && !config.getSSLTrustStorePath().trim().isEmpty())) {
+			env.put("java.naming.ldap.factory.socket", "org.apache.ranger.ldapusersync.process.CustomSSLSocketFactory");
+		}
+
+		LdapContext      ldapContext = new InitialLdapContext(env, null);
+		StartTlsResponse tls         = null;
+
+		try {
+			if (!ldapUrl.startsWith("ldaps") && config.isStartTlsEnabled()) {
+				tls = (StartTlsResponse) ldapContext.extendedOperation(new StartTlsRequest());
+				if (config.getSSLTrustStorePath() != null && !config.getSSLTrustStorePath().trim().isEmpty()) {
+					tls.negotiate(CustomSSLSocketFactory.getDefault());
+				} else {
+					tls.negotiate();
+				}
+			}
+
+			ldapContext.addToEnvironment(Context.SECURITY_PRINCIPAL, ldapBindDn);
+			ldapContext.addToEnvironment(Context.SECURITY_CREDENTIALS, ldapBindPassword);
+			ldapContext.addToEnvironment(Context.SECURITY_AUTHENTICATION, ldapAuthenticationMechanism);
+			ldapContext.addToEnvironment(Context.REFERRAL, ldapReferral);
+		} catch (NamingException | IOException | RuntimeException excp) {
+			close(ldapContext, tls);
+
+			throw excp;
+		}
+
+		return new LdapSearchContext(ldapContext, tls, pagedResultsEnabled, pagedResultsSize);
+	}
+
+	/*
+	 * @return number of entries passed to the handler
+	 */
+	int search(String searchBase, String filter, Object[] filterArgs, SearchControls searchControls, SearchResultHandler handler) throws NamingException, IOException {
+		int    ret    = 0;
+		byte[] cookie = null;
+		int    paged  = 0;
+
+		ldapContext.setRequestControls(pagedResultsEnabled ? new Control[] { new PagedResultsControl(pagedResultsSize, Control.NONCRITICAL) } : null);
+
+		do {
+			NamingEnumeration<SearchResult> searchResultEnum = filterArgs != null ? ldapContext.search(searchBase, filter, filterArgs, searchControls)
+			                                                                      : ldapContext.search(searchBase, filter, searchControls);
+
+			try {
+				while (searchResultEnum.hasMore()) {
+					SearchResult entry = searchResultEnum.next();
+
+					if (entry != null) {
+						handler.handle(entry);
+
+						ret++;
+					}
+				}
+			} finally {
+				searchResultEnum.close();
+			}
+
+			cookie = null;
+
+			Control[] controls = ldapContext.getResponseControls();
+			if (controls != null) {
+				for (Control control : controls) {
+					if (control instanceof PagedResultsResponseControl) {
+						cookie = ((PagedResultsResponseControl) control).getCookie();
+					}
+				}
+			}
+
+			if (pagedResultsEnabled) {
+				if (LOG.isDebugEnabled()) {
+					LOG.debug(String.format("Fetched paged results round: %s, from %s", ++paged, searchBase));
+				}
+
+				ldapContext.setRequestControls(new Control[] { new PagedResultsControl(pagedResultsSize, cookie, Control.CRITICAL) });
+			}
+		} while (cookie != null);
+
+		return ret;
+	}
+
+	void close() {
+		close(ldapContext, tls);
+	}
+
+	private static void close(LdapContext ldapContext, StartTlsResponse tls) {
+		try {
+			if (tls != null) {
+				tls.close();
+			}
+		} catch (IOException excp) {
+			LOG.warn("Failed to close TLS session", excp);
+		}
+
+		try {
+			ldapContext.close();
+		} catch (NamingException excp) {
+			LOG.warn("Failed to close LDAP context", excp);
+		}
+	}
+}
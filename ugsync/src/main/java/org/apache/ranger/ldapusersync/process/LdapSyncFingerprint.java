@@ -0,0 +1,202 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.ldapusersync.process;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+/*
+ * Users and groups sent to Ranger Admin by the last sync cycles, kept in a local file as a hash of the groups of each
+ * user and of the members of each group; a sync cycle sends only the users and groups whose hash changed.
+ *
+ * The fingerprint is discarded - so that all users and groups are sent again - when it is older than maxAge, to
+ * recover from changes made in Ranger Admin and from updates that Ranger Admin failed to apply, and when it was
+ * written for another Ranger Admin.
+ */
+final class LdapSyncFingerprint {
+	private static final Logger LOG = Logger.getLogger(LdapSyncFingerprint.class);
+
+	private static final int FILE_VERSION = 1;
+
+	private final File              file;
+	private final String            target;
+	private final long              maxAge;
+	private final Map<String, Long> lastUsers  = new HashMap<>();
+	private final Map<String, Long> lastGroups = new HashMap<>();
+	private final Map<String, Long> users      = new HashMap<>();
+	private final Map<String, Long> groups     = new HashMap<>();
+	private       long              createTime;
+
+	/*
+	 * @param target Ranger Admin the users and groups are sent to; null when not configured
+	 */
+	LdapSyncFingerprint(File file, String target, long maxAge) {
+		this.file   = file;
+		this.target = target != null ? target : "";
+		this.maxAge = maxAge;
+	}
+
+	// starts a sync cycle: loads the fingerprint saved by the last cycle
+	void load() {
+		lastUsers.clear();
+		lastGroups.clear();
+		users.clear();
+		groups.clear();
+
+		createTime = System.currentTimeMillis();
+
+		if (!file.exists()) {
+			LOG.info("LdapSyncFingerprint.load(): " + file + " not found. All users and groups will be synced");
+
+			return;
+		}
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			int    version     = in.readInt();
+			String fileTarget  = in.readUTF();
+			long   fileCreated = in.readLong();
+
+			if (version != FILE_VERSION || !fileTarget.equals(target)) {
+				LOG.info("LdapSyncFingerprint.load(): " + file + " was written for " + fileTarget + ". All users and groups will be synced");
+			} else if (fileCreated + maxAge < createTime) {
+				LOG.info("LdapSyncFingerprint.load(): " + file + " is older than " + maxAge + "ms. All users and groups will be synced");
+			} else {
+				readEntries(in, lastUsers);
+				readEntries(in, lastGroups);
+
+				createTime = fileCreated;
+
+				LOG.info("LdapSyncFingerprint.load(): loaded " + lastUsers.size() + " users and " + lastGroups.size() + " groups from " + file);
+			}
+		} catch (IOException excp) {
+			LOG.warn("LdapSyncFingerprint.load(): failed to read " + file + ". All users and groups will be synced", excp);
+
+			lastUsers.clear();
+			lastGroups.clear();
+		}
+	}
+
+	boolean isUserChanged(String userName, Collection<String> userGroups) {
+		return !Long.valueOf(hash(userGroups)).equals(lastUsers.get(userName));
+	}
+
+	boolean isGroupChanged(String groupName, Collection<String> groupUsers) {
+		return !Long.valueOf(hash(groupUsers)).equals(lastGroups.get(groupName));
+	}
+
+	// records a user as sent to Ranger Admin, or as unchanged
+	void setUserSynced(String userName, Collection<String> userGroups) {
+		users.put(userName, hash(userGroups));
+	}
+
+	void setGroupSynced(String groupName, Collection<String> groupUsers) {
+		groups.put(groupName, hash(groupUsers));
+	}
+
+	// ends a sync cycle: saves the users and groups recorded in this cycle
+	void save() {
+		File tmpFile = new File(file.getPath() + ".tmp");
+
+		try {
+			File dir = file.getAbsoluteFile().getParentFile();
+
+			if (dir != null && !dir.exists() && !dir.mkdirs()) {
+				throw new IOException("failed to create directory " + dir);
+			}
+
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+				out.writeInt(FILE_VERSION);
+				out.writeUTF(target);
+				out.writeLong(createTime);
+
+				writeEntries(out, users);
+				writeEntries(out, groups);
+			}
+
+			Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+			LOG.info("LdapSyncFingerprint.save(): saved " + users.size() + " users and " + groups.size() + " groups to " + file);
+		} catch (IOException excp) {
+			LOG.error("LdapSyncFingerprint.save(): failed to write " + file, excp);
+
+			if (!tmpFile.delete() && tmpFile.exists()) {
+				LOG.warn("LdapSyncFingerprint.save(): failed to delete " + tmpFile);
+			}
+		}
+	}
+
+	private static void readEntries(DataInputStream in, Map<String, Long> entries) throws IOException {
+		int count = in.readInt();
+
+		for (int i = 0; i < count; i++) {
+			String name = in.readUTF();
+			long   hash = in.readLong();
+
+			entries.put(name, hash);
+		}
+	}
+
+	private static void writeEntries(DataOutputStream out, Map<String, Long> entries) throws IOException {
+		out.writeInt(entries.size());
+
+		for (Map.Entry<String, Long> entry : entries.entrySet()) {
+			out.writeUTF(entry.getKey());
+			out.writeLong(entry.getValue());
+		}
+	}
+
+	// 64-bit FNV-1a of the sorted names
+	private static long hash(Collection<String> names) {
+		long ret = 0xcbf29ce484222325L;
+
+		if (names != null && !names.isEmpty()) {
+			List<String> sortedNames = new ArrayList<>(names);
+
+			Collections.sort(sortedNames);
+
+			for (String name : sortedNames) {
+				for (byte b : String.valueOf(name).getBytes(StandardCharsets.UTF_8)) {
+					ret = (ret ^ (b & 0xff)) * 0x100000001b3L;
+				}
+
+				ret = (ret ^ 0xff) * 0x100000001b3L; // separator: 0xff doesn't occur in UTF-8
+			}
+		}
+
+		return ret;
+	}
+}
@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.ldapusersync.process;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * Time spent in each stage of a sync cycle, for the sync log. A stage can be entered more than once.
+ */
+final class LdapSyncStageTimer {
+	private final Map<String, Long> stageTimes = new LinkedHashMap<>();
+	private final long              startTime  = System.currentTimeMillis();
+	private       String            stage;
+	private       long              stageStartTime;
+
+	void start(String stage) {
+		stop();
+
+		this.stage          = stage;
+		this.stageStartTime = System.currentTimeMillis();
+	}
+
+	void stop() {
+		if (stage != null) {
+			Long time = stageTimes.get(stage);
+
+			stageTimes.put(stage, (time != null ? time : 0L) + System.currentTimeMillis() - stageStartTime);
+
+			stage = null;
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+
+		for (Map.Entry<String, Long> entry : stageTimes.entrySet()) {
+			sb.append(entry.getKey()).append("=").append(entry.getValue()).append("ms, ");
+		}
+
+		sb.append("total=").append(System.currentTimeMillis() - startTime).append("ms");
+
+		return sb.toString();
+	}
+}
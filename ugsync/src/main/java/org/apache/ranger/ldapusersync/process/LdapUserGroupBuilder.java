@@ -20,8 +20,10 @@
 package org.apache.ranger.ldapusersync.process;
 
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -29,10 +31,18 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.naming.Context;
 import javax.naming.InvalidNameException;
 import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
 import javax.naming.directory.Attribute;
 import javax.naming.directory.Attributes;
 import javax.naming.directory.SearchControls;
@@ -105,6 +115,11 @@ public class LdapUserGroupBuilder extends AbstractUserGroupSource {
     //private Set<String> firstGroupDNs;
 	private Set<String> allUsers;
 
+	private int searchThreads;
+	private LdapSyncFingerprint fingerprint;
+	private int unchangedUsers;
+	private int unchangedGroups;
+
 	UgsyncAuditInfo ugsyncAuditInfo;
 	LdapSyncSourceInfo ldapSyncSourceInfo;
 
@@ -249,6 +264,10 @@ public class LdapUserGroupBuilder extends AbstractUserGroupSource {
 			extendedGroupSearchFilter =  "(&"  + extendedGroupSearchFilter + "(|(" + groupMemberAttributeName + "={0})(" + groupMemberAttributeName + "={1})))";
 		}
 		groupUserMapSyncEnabled = config.isGroupUserMapSyncEnabled();
+		searchThreads = config.getLdapSearchThreads();
+
+		String fingerprintFile = config.getLdapFingerprintFile();
+		fingerprint = fingerprintFile != null ? new LdapSyncFingerprint(new File(fingerprintFile), config.getPolicyManagerBaseURL(), config.getLdapFingerprintMaxAge()) : null;
 
 		groupSearchControls = new SearchControls();
 		groupSearchControls.setSearchScope(groupSearchScope);
@@ -291,6 +310,8 @@ public class LdapUserGroupBuilder extends AbstractUserGroupSource {
 					+ ", groupSearchFirstEnabled: " + groupSearchFirstEnabled
 					+ ", userSearchEnabled: " + userSearchEnabled
 					+ ",  ldapReferral: " + ldapReferral
+					+ ",  searchThreads: " + searchThreads
+					+ ",  fingerprintFile: " + fingerprintFile
 					);
 		}
 
@@ -314,482 +335,524 @@ public class LdapUserGroupBuilder extends AbstractUserGroupSource {
 	@Override
 	public void updateSink(UserGroupSink sink) throws Throwable {
 		LOG.info("LDAPUserGroupBuilder updateSink started");
+		LdapSyncStageTimer timer = new LdapSyncStageTimer();
 		userGroupMap = new HashMap<String, UserInfo>();
 		Set<String> allGroups = new HashSet<String>();
 		allUsers = new HashSet<String>();
+		unchangedUsers = 0;
+		unchangedGroups = 0;
+
+		if (fingerprint != null) {
+			timer.start("loadFingerprint");
+			fingerprint.load();
+		}
 
 		if (!groupSearchFirstEnabled) {
 			LOG.info("Performing user search first");
+			timer.start("userSearch");
 			getUsers(sink);
 			LOG.debug("Total No. of users saved = " + userGroupMap.size());
 			if (!groupSearchEnabled && groupHierarchyLevels > 0) {
 				getRootDN();
 			}
-            //Iterator<UserInfo> userInfoIterator = userGroupMap.
+			if (groupSearchEnabled) {
+				// Perform group search
+				LOG.info("groupSearch is enabled, would search for groups and compute memberships");
+				timer.start("groupSearch");
+				getGroups(userGroupMap.values());
+			}
 			for (UserInfo userInfo : userGroupMap.values()) {
 				String userName = userInfo.getUserName();
-				if (groupSearchEnabled) {
-					// Perform group search
-					LOG.info("groupSearch is enabled, would search for groups and compute memberships");
-                    //firstGroupDNs = new HashSet<String>();
-					getGroups(sink, userInfo);
+				if (groupHierarchyLevels > 0) {
+					timer.start("groupHierarchy");
+					LOG.debug("Going through group hierarchy for nested group evaluation");
+					goUpGroupHierarchyLdap(userInfo.getGroupDNs(), groupHierarchyLevels - 1, userInfo);
+					LOG.debug("Completed group hierarchy computation");
 				}
-                if (groupHierarchyLevels > 0) {
-                    LOG.debug("Going through group hierarchy for nested group evaluation");
-                    goUpGroupHierarchyLdap(userInfo.getGroupDNs(), groupHierarchyLevels - 1, userInfo);
-                    LOG.debug("Completed group hierarchy computation");
-                }
+				timer.start("sink");
 				List<String> groupList = userInfo.getGroups();
 				allGroups.addAll(groupList);
-                LOG.debug("updateSink(): group list for " + userName + " = " + groupList);
-				if (userNameCaseConversionFlag) {
-					if (userNameLowerCaseFlag) {
-						userName = userName.toLowerCase();
-					}
-					else {
-						userName = userName.toUpperCase();
-					}
-				}
-
-				if (userNameRegExInst != null) {
-					userName = userNameRegExInst.transform(userName);
-				}
-				try {
-					sink.addOrUpdateUser(userName, groupList);
-				} catch (Throwable t) {
-					LOG.error("sink.addOrUpdateUser failed with exception: " + t.getMessage()
-					+ ", for user: " + userName
-					+ ", groups: " + groupList);
-				}
+				LOG.debug("updateSink(): group list for " + userName + " = " + groupList);
+				addOrUpdateUser(sink, userNameTransform(userName), groupList);
 			}
-			ldapSyncSourceInfo.setUserSearchFilter(extendedUserSearchFilter);
-			ldapSyncSourceInfo.setGroupSearchFilter(extendedAllGroupsSearchFilter);
-			ldapSyncSourceInfo.setTotalUsersSynced(allUsers.size());
-			ldapSyncSourceInfo.setTotalGroupsSynced(allGroups.size());
-			try {
-				sink.postUserGroupAuditInfo(ugsyncAuditInfo);
-			} catch (Throwable t) {
-				LOG.error("sink.postUserGroupAuditInfo failed with exception: " + t.getMessage());
-			}
-
 		} else {
 			LOG.info("Performing Group search first");
-			getGroups(sink, null);
-			 // Go through the userInfo map and update ranger admin.
-            for (UserInfo userInfo : userGroupMap.values()) {
+			timer.start("groupSearch");
+			getGroups(sink);
+			// Go through the userInfo map and update ranger admin.
+			for (UserInfo userInfo : userGroupMap.values()) {
 				LOG.debug("userName from map = " + userInfo.getUserFullName());
-                String userName = getShortUserName(userInfo.getUserFullName());
-                if (groupHierarchyLevels > 0) {
-                    //System.out.println("Going through group hierarchy for nested group evaluation");
-                    goUpGroupHierarchyLdap(userInfo.getGroupDNs(), groupHierarchyLevels - 1, userInfo);
-                    //System.out.println("Completed group hierarchy computation");
-                }
+				String userName = getShortUserName(userInfo.getUserFullName());
+				if (groupHierarchyLevels > 0) {
+					timer.start("groupHierarchy");
+					goUpGroupHierarchyLdap(userInfo.getGroupDNs(), groupHierarchyLevels - 1, userInfo);
+				}
 				List<String> groupList = userInfo.getGroups();
 				allGroups.addAll(groupList);
-                if (userSearchEnabled) {
-                    LOG.info("User search is enabled and hence computing user membership.");
-                    getUsers(sink);
-                } else {
-                    LOG.info("User search is disabled and hence using the group member attribute for username" + userName);
-					allGroups.addAll(groupList);
+				if (!userSearchEnabled) {
+					LOG.info("User search is disabled and hence using the group member attribute for username" + userName);
+					timer.start("sink");
 					allUsers.add(userName); // Note:- in this case the usernames may contain groups as part of nested groups
-                    if (userNameCaseConversionFlag) {
-                        if (userNameLowerCaseFlag) {
-                            userName = userName.toLowerCase();
-                        } else {
-                            userName = userName.toUpperCase();
-                        }
-                    }
-
-                    if (userNameRegExInst != null) {
-                        userName = userNameRegExInst.transform(userName);
-                    }
-
-                    try {
-                        sink.addOrUpdateUser(userName, groupList);
-                    } catch (Throwable t) {
-                        LOG.error("sink.addOrUpdateUser failed with exception: " + t.getMessage()
-                                + ", for user: " + userName
-                                + ", groups: " + groupList);
-                    }
-                }
-            }
-			ldapSyncSourceInfo.setUserSearchFilter(extendedUserSearchFilter);
-			ldapSyncSourceInfo.setGroupSearchFilter(extendedAllGroupsSearchFilter);
-			ldapSyncSourceInfo.setTotalUsersSynced(allUsers.size());
-			ldapSyncSourceInfo.setTotalGroupsSynced(allGroups.size());
-			try {
-				sink.postUserGroupAuditInfo(ugsyncAuditInfo);
-			} catch (Throwable t) {
-				LOG.error("sink.postUserGroupAuditInfo failed with exception: " + t.getMessage());
+					addOrUpdateUser(sink, userNameTransform(userName), groupList);
+				}
+			}
+			if (userSearchEnabled) {
+				// users are searched once, after the groups of all users are known
+				LOG.info("User search is enabled and hence computing user membership.");
+				timer.start("userSearch");
+				getUsers(sink);
 			}
 		}
+
+		ldapSyncSourceInfo.setUserSearchFilter(extendedUserSearchFilter);
+		ldapSyncSourceInfo.setGroupSearchFilter(extendedAllGroupsSearchFilter);
+		ldapSyncSourceInfo.setTotalUsersSynced(allUsers.size());
+		ldapSyncSourceInfo.setTotalGroupsSynced(allGroups.size());
+
+		timer.start("postAuditInfo");
+		boolean isAuditInfoPosted = false;
+		try {
+			sink.postUserGroupAuditInfo(ugsyncAuditInfo);
+			isAuditInfoPosted = true;
+		} catch (Throwable t) {
+			LOG.error("sink.postUserGroupAuditInfo failed with exception: " + t.getMessage());
+		}
+
+		// when the sink reports a failure, the fingerprint of the last cycle is kept; this cycle will be sent again
+		if (fingerprint != null && isAuditInfoPosted) {
+			timer.start("saveFingerprint");
+			fingerprint.save();
+		}
+		timer.stop();
+
+		LOG.info("LDAPUserGroupBuilder updateSink completed with users: " + allUsers.size() + ", groups: " + allGroups.size()
+				+ ", unchanged users: " + unchangedUsers + ", unchanged groups: " + unchangedGroups
+				+ ". Time taken: " + timer);
 	}
 
-	private void getUsers(UserGroupSink sink) throws Throwable {
-		UserInfo userInfo;
-		NamingEnumeration<SearchResult> userSearchResultEnum = null;
-		NamingEnumeration<SearchResult> groupSearchResultEnum = null;
+	private void addOrUpdateUser(UserGroupSink sink, String userName, List<String> groupList) {
+		if (fingerprint != null && !fingerprint.isUserChanged(userName, groupList)) {
+			fingerprint.setUserSynced(userName, groupList);
+			unchangedUsers++;
+			return;
+		}
+
 		try {
-			createLdapContext();
-			int total;
-			// Activate paged results
-			if (pagedResultsEnabled)   {
-				ldapContext.setRequestControls(new Control[]{
-						new PagedResultsControl(pagedResultsSize, Control.NONCRITICAL) });
+			sink.addOrUpdateUser(userName, groupList);
+
+			if (fingerprint != null) {
+				fingerprint.setUserSynced(userName, groupList);
 			}
+		} catch (Throwable t) {
+			LOG.error("sink.addOrUpdateUser failed with exception: " + t.getMessage()
+			+ ", for user: " + userName
+			+ ", groups: " + groupList);
+		}
+	}
 
-			// When multiple OUs are configured, go through each OU as the user search base to search for users.
-			for (String ou : userSearchBase) {
-				byte[] cookie = null;
-				int counter = 0;
-				try {
-					int paged = 0;
-					do {
-						userSearchResultEnum = ldapContext
-								.search(ou, extendedUserSearchFilter, userSearchControls);
+	private void addOrUpdateGroup(UserGroupSink sink, String groupName, boolean hasMembers) {
+		if (fingerprint != null && !fingerprint.isGroupChanged(groupName, null)) {
+			fingerprint.setGroupSynced(groupName, null);
+			unchangedGroups++;
+			return;
+		}
 
-						while (userSearchResultEnum.hasMore()) {
-							// searchResults contains all the user entries
-							final SearchResult userEntry = userSearchResultEnum.next();
+		try {
+			if (hasMembers) {
+				sink.addOrUpdateGroup(groupName);
+			} else {
+				sink.addOrUpdateGroup(groupName, null);
+			}
 
-							if (userEntry == null)  {
-								if (LOG.isInfoEnabled())  {
-									LOG.info("userEntry null, skipping sync for the entry");
-								}
-								continue;
-							}
+			if (fingerprint != null) {
+				fingerprint.setGroupSynced(groupName, null);
+			}
+		} catch (Throwable t) {
+			LOG.error("sink.addOrUpdateGroup failed with exception: " + t.getMessage()
+			+ ", for group: " + groupName);
+		}
+	}
 
-							Attributes attributes = userEntry.getAttributes();
-							if (attributes == null)  {
-								if (LOG.isInfoEnabled())  {
-									LOG.info("attributes  missing for entry " + userEntry.getNameInNamespace() +
-											", skipping sync");
-								}
-								continue;
-							}
+	private void getUsers(UserGroupSink sink) throws Throwable {
+		List<Callable<List<LdapUserEntry>>> searches = new ArrayList<Callable<List<LdapUserEntry>>>();
+
+		// When multiple OUs are configured, go through each OU as the user search base to search for users.
+		for (final String ou : userSearchBase) {
+			searches.add(new Callable<List<LdapUserEntry>>() {
+				@Override
+				public List<LdapUserEntry> call() {
+					return searchUsers(ou);
+				}
+			});
+		}
 
-							Attribute userNameAttr  = attributes.get(userNameAttribute);
-							if (userNameAttr == null)  {
-								if (LOG.isInfoEnabled())  {
-									LOG.info(userNameAttribute + " missing for entry " + userEntry.getNameInNamespace() +
-											", skipping sync");
-								}
-								continue;
-							}
+		int counter = 0;
+		for (List<LdapUserEntry> userEntries : runSearches(searches)) {
+			for (LdapUserEntry userEntry : userEntries) {
+				String userName = userEntry.userName;
 
-							String userName = (String) userNameAttr.get();
+				if (!groupSearchFirstEnabled) {
+					UserInfo userInfo = new UserInfo(userName, userEntry.userFullName);
+					Set<String> groups = new HashSet<String>();
 
-							if (userName == null || userName.trim().isEmpty())  {
-								if (LOG.isInfoEnabled())  {
-									LOG.info(userNameAttribute + " empty for entry " + userEntry.getNameInNamespace() +
-											", skipping sync");
-								}
-								continue;
+					for (String groupDN : userEntry.groupDNs) {
+						LOG.debug("Adding " + groupDN + " to " + userName);
+						userInfo.addGroupDN(groupDN);
+						groups.add(groupNameTransform(getShortGroupName(groupDN)));
+					}
+
+					userInfo.addGroups(groups);
+
+					//populate the userGroupMap with username, userInfo.
+					//userInfo contains details of user that will be later used for
+					//group search to compute group membership as well as to call sink.addOrUpdateUser()
+					if (userGroupMap.containsKey(userName)) {
+						LOG.warn("user object with username " + userName + " already exists and is replaced with the latest user object." );
+					}
+					userGroupMap.put(userName, userInfo);
+					allUsers.add(userName);
+
+					List<String> groupList = userInfo.getGroups();
+					counter++;
+					if (counter <= 2000) {
+						if (LOG.isInfoEnabled()) {
+							LOG.info("Updating user count: " + counter
+									+ ", userName: " + userName + ", groupList: "
+									+ groupList);
+						}
+						if ( counter == 2000 ) {
+							LOG.info("===> 2000 user records have been synchronized so far. From now on, only a summary progress log will be written for every 100 users. To continue to see detailed log for every user, please enable Trace level logging. <===");
+						}
+					} else {
+						if (LOG.isTraceEnabled()) {
+							LOG.trace("Updating user count: " + counter
+									+ ", userName: " + userName + ", groupList: "
+									+ groupList);
+						} else  {
+							if ( counter % 100 == 0) {
+								LOG.info("Synced " + counter + " users till now");
 							}
+						}
+					}
+				} else {
+					// If the user from the search result is present in the usersList,
+					// then update user name in the userInfo map with the value from the search result
+					// and update ranger admin.
+					String userFullName = userEntry.userFullName.toLowerCase();
+					LOG.debug("Checking if the user " + userFullName + " is part of the retrieved groups");
+
+					UserInfo userInfo = userGroupMap.get(userFullName);
+					if (userInfo == null) {
+						userInfo = userGroupMap.get(userName.toLowerCase());
+					}
+					if (userInfo != null) {
+						counter++;
+						LOG.info("Updating username for " + userFullName + " with " + userName);
+						userInfo.updateUserName(userName);
+						allUsers.add(userName);
+						addOrUpdateUser(sink, userNameTransform(userName), userInfo.getGroups());
+					}
+				}
+			}
+		}
+		LOG.info("LDAPUserGroupBuilder.getUsers() completed with user count: " + counter);
+	}
 
-							if (!groupSearchFirstEnabled) {
-								userInfo = new UserInfo(userName, userEntry.getNameInNamespace());
-								Set<String> groups = new HashSet<String>();
-
-								// Get all the groups from the group name attribute of the user only when group search is not enabled.
-								if (!groupSearchEnabled) {
-									for (String useGroupNameAttribute : userGroupNameAttributeSet) {
-										Attribute userGroupfAttribute = userEntry.getAttributes().get(useGroupNameAttribute);
-										if (userGroupfAttribute != null) {
-											NamingEnumeration<?> groupEnum = userGroupfAttribute.getAll();
-											while (groupEnum.hasMore()) {
-                                                String groupDN = (String) groupEnum.next();
-                                                LOG.debug("Adding " + groupDN + " to " + userName);
-                                                userInfo.addGroupDN(groupDN);
-												String gName = getShortGroupName(groupDN);
-												if (groupNameCaseConversionFlag) {
-													if (groupNameLowerCaseFlag) {
-														gName = gName.toLowerCase();
-													} else {
-														gName = gName.toUpperCase();
-													}
-												}
-												if (groupNameRegExInst != null) {
-													gName = groupNameRegExInst.transform(gName);
-												}
-												groups.add(gName);
-											}
-										}
-									}
-								}
+	// runs in a search thread: only reads the entries, which are processed by the caller
+	private List<LdapUserEntry> searchUsers(String ou) {
+		final List<LdapUserEntry> ret = new ArrayList<LdapUserEntry>();
+		LdapSearchContext searchContext = null;
+		try {
+			searchContext = openSearchContext();
+			searchContext.search(ou, extendedUserSearchFilter, null, userSearchControls, new LdapSearchContext.SearchResultHandler() {
+				@Override
+				public void handle(SearchResult userEntry) throws NamingException {
+					Attributes attributes = userEntry.getAttributes();
+					if (attributes == null)  {
+						if (LOG.isInfoEnabled())  {
+							LOG.info("attributes  missing for entry " + userEntry.getNameInNamespace() +
+									", skipping sync");
+						}
+						return;
+					}
 
-								userInfo.addGroups(groups);
+					Attribute userNameAttr  = attributes.get(userNameAttribute);
+					if (userNameAttr == null)  {
+						if (LOG.isInfoEnabled())  {
+							LOG.info(userNameAttribute + " missing for entry " + userEntry.getNameInNamespace() +
+									", skipping sync");
+						}
+						return;
+					}
 
-								//populate the userGroupMap with username, userInfo.
-								//userInfo contains details of user that will be later used for
-								//group search to compute group membership as well as to call sink.addOrUpdateUser()
-								if (userGroupMap.containsKey(userName)) {
-									LOG.warn("user object with username " + userName + " already exists and is replaced with the latest user object." );
-								}
-								userGroupMap.put(userName, userInfo);
-								allUsers.add(userName);
-
-								//List<String> groupList = new ArrayList<String>(groups);
-								List<String> groupList = userInfo.getGroups();
-								counter++;
-								if (counter <= 2000) {
-									if (LOG.isInfoEnabled()) {
-										LOG.info("Updating user count: " + counter
-												+ ", userName: " + userName + ", groupList: "
-												+ groupList);
-									}
-									if ( counter == 2000 ) {
-										LOG.info("===> 2000 user records have been synchronized so far. From now on, only a summary progress log will be written for every 100 users. To continue to see detailed log for every user, please enable Trace level logging. <===");
-									}
-								} else {
-									if (LOG.isTraceEnabled()) {
-										LOG.trace("Updating user count: " + counter
-												+ ", userName: " + userName + ", groupList: "
-												+ groupList);
-									} else  {
-										if ( counter % 100 == 0) {
-											LOG.info("Synced " + counter + " users till now");
-										}
-									}
-								}
-							} else {
-								// If the user from the search result is present in the usersList,
-								// then update user name in the userInfo map with the value from the search result
-								// and update ranger admin.
-								String userFullName = (userEntry.getNameInNamespace()).toLowerCase();
-								LOG.debug("Checking if the user " + userFullName + " is part of the retrieved groups");
-
-								userInfo = userGroupMap.get(userFullName);
-								if (userInfo == null) {
-									userInfo = userGroupMap.get(userName.toLowerCase());
-								}
-								if (userInfo != null) {
-									counter++;
-									LOG.info("Updating username for " + userFullName + " with " + userName);
-									userInfo.updateUserName(userName);
-									allUsers.add(userName);
-                                    List<String> groupList = userInfo.getGroups();
-                                    if (userNameCaseConversionFlag) {
-                                        if (userNameLowerCaseFlag) {
-                                            userName = userName.toLowerCase();
-                                        }
-                                        else {
-                                            userName = userName.toUpperCase();
-                                        }
-                                    }
-
-                                    if (userNameRegExInst != null) {
-                                        userName = userNameRegExInst.transform(userName);
-                                    }
-
-                                    try {
-                                        sink.addOrUpdateUser(userName, groupList);
-                                    } catch (Throwable t) {
-                                        LOG.error("sink.addOrUpdateUser failed with exception: " + t.getMessage()
-                                                + ", for user: " + userName
-                                                + ", groups: " + groupList);
-                                    }
-								}
-							}
+					String userName = (String) userNameAttr.get();
 
+					if (userName == null || userName.trim().isEmpty())  {
+						if (LOG.isInfoEnabled())  {
+							LOG.info(userNameAttribute + " empty for entry " + userEntry.getNameInNamespace() +
+									", skipping sync");
 						}
+						return;
+					}
 
-						// Examine the paged results control response
-						Control[] controls = ldapContext.getResponseControls();
-						if (controls != null) {
-							for (Control control : controls) {
-								if (control instanceof PagedResultsResponseControl) {
-									PagedResultsResponseControl prrc =
-											(PagedResultsResponseControl)control;
-									total = prrc.getResultSize();
-									if (total != 0) {
-										LOG.debug("END-OF-PAGE total : " + total);
-									} else {
-										LOG.debug("END-OF-PAGE total : unknown");
-									}
-									cookie = prrc.getCookie();
+					List<String> groupDNs = new ArrayList<String>();
+
+					// Get all the groups from the group name attribute of the user only when group search is not enabled.
+					if (!groupSearchFirstEnabled && !groupSearchEnabled) {
+						for (String useGroupNameAttribute : userGroupNameAttributeSet) {
+							Attribute userGroupfAttribute = attributes.get(useGroupNameAttribute);
+							if (userGroupfAttribute != null) {
+								NamingEnumeration<?> groupEnum = userGroupfAttribute.getAll();
+								while (groupEnum.hasMore()) {
+									groupDNs.add((String) groupEnum.next());
 								}
 							}
-						} else {
-							LOG.debug("No controls were sent from the server");
-						}
-						// Re-activate paged results
-						if (pagedResultsEnabled)   {
-							LOG.debug(String.format("Fetched paged results round: %s", ++paged));
-							ldapContext.setRequestControls(new Control[]{
-									new PagedResultsControl(pagedResultsSize, cookie, Control.CRITICAL) });
 						}
-					} while (cookie != null);
-					LOG.info("LDAPUserGroupBuilder.getUsers() completed with user count: "
-							+ counter);
-				} catch (Throwable t) {
-					LOG.error("LDAPUserGroupBuilder.getUsers() failed with exception: " + t);
-					LOG.info("LDAPUserGroupBuilder.getUsers() user count: "
-							+ counter);
+					}
+
+					ret.add(new LdapUserEntry(userName, userEntry.getNameInNamespace(), groupDNs));
 				}
+			});
+			LOG.info("LDAPUserGroupBuilder.getUsers() completed for " + ou + " with user count: " + ret.size());
+		} catch (Throwable t) {
+			LOG.error("LDAPUserGroupBuilder.getUsers() failed with exception: " + t);
+			LOG.info("LDAPUserGroupBuilder.getUsers() user count: " + ret.size());
+		} finally {
+			if (searchContext != null) {
+				searchContext.close();
 			}
+		}
+		return ret;
+	}
 
-		} finally {
-			if (userSearchResultEnum != null) {
-				userSearchResultEnum.close();
+	// group search first: all groups, with their members
+	private void getGroups(UserGroupSink sink) throws Throwable {
+		List<Callable<List<LdapGroupEntry>>> searches = new ArrayList<Callable<List<LdapGroupEntry>>>();
+
+		for (final String ou : groupSearchBase) {
+			searches.add(new Callable<List<LdapGroupEntry>>() {
+				@Override
+				public List<LdapGroupEntry> call() {
+					List<LdapGroupEntry> ret = new ArrayList<LdapGroupEntry>();
+					LdapSearchContext searchContext = null;
+					try {
+						searchContext = openSearchContext();
+						searchGroups(searchContext, ou, extendedAllGroupsSearchFilter, null, ret);
+						LOG.info("LDAPUserGroupBuilder.getGroups() completed for " + ou + " with group count: " + ret.size());
+					} catch (Throwable t) {
+						LOG.error("LDAPUserGroupBuilder.getGroups() failed with exception: " + t);
+						LOG.info("LDAPUserGroupBuilder.getGroups() group count: " + ret.size());
+					} finally {
+						if (searchContext != null) {
+							searchContext.close();
+						}
+					}
+					return ret;
+				}
+			});
+		}
+
+		for (List<LdapGroupEntry> groupEntries : runSearches(searches)) {
+			for (LdapGroupEntry groupEntry : groupEntries) {
+				// If group based search is enabled, then
+				// update the group name to ranger admin
+				// check for group members and populate userInfo object with user's full name and group mapping
+				String gName = groupNameTransform(groupEntry.groupName);
+				LOG.debug("Update Ranger admin with " + gName);
+				if (groupEntry.members.isEmpty()) {
+					LOG.info("No members available for " + gName);
+					addOrUpdateGroup(sink, gName, false);
+					continue;
+				}
+				addOrUpdateGroup(sink, gName, true);
+				int userCount = 0;
+				for (String originalUserFullName : groupEntry.members) {
+					if (originalUserFullName == null || originalUserFullName.trim().isEmpty()) {
+						continue;
+					}
+					String userFullName = originalUserFullName.toLowerCase();
+					userCount++;
+					UserInfo userInfo = userGroupMap.get(userFullName);
+					if (userInfo == null) {
+						userInfo = new UserInfo(userFullName, originalUserFullName); // Preserving the original full name for later
+						userGroupMap.put(userFullName, userInfo);
+					}
+					LOG.info("Adding " + gName + " to user " + userInfo.getUserFullName());
+					userInfo.addGroup(gName);
+					userInfo.addGroupDN(groupEntry.groupDN);
+				}
+				LOG.info("No. of members in the group " + gName + " = " + userCount);
 			}
-			if (groupSearchResultEnum != null) {
-				groupSearchResultEnum.close();
+		}
+	}
+
+	// user search first: groups of each user, searched by searchThreads threads with a connection each
+	private void getGroups(Collection<UserInfo> userInfos) throws Throwable {
+		List<UserInfo> users = new ArrayList<UserInfo>(userInfos);
+		List<Callable<Map<UserInfo, List<LdapGroupEntry>>>> searches = new ArrayList<Callable<Map<UserInfo, List<LdapGroupEntry>>>>();
+		int chunkSize = Math.max(1, (users.size() + searchThreads - 1) / searchThreads);
+
+		for (int i = 0; i < users.size(); i += chunkSize) {
+			final List<UserInfo> chunk = users.subList(i, Math.min(i + chunkSize, users.size()));
+
+			searches.add(new Callable<Map<UserInfo, List<LdapGroupEntry>>>() {
+				@Override
+				public Map<UserInfo, List<LdapGroupEntry>> call() {
+					return searchGroupsOfUsers(chunk);
+				}
+			});
+		}
+
+		for (Map<UserInfo, List<LdapGroupEntry>> userGroups : runSearches(searches)) {
+			for (Map.Entry<UserInfo, List<LdapGroupEntry>> entry : userGroups.entrySet()) {
+				UserInfo userInfo = entry.getKey();
+				for (LdapGroupEntry groupEntry : entry.getValue()) {
+					String gName = groupNameTransform(groupEntry.groupName);
+					if (LOG.isInfoEnabled())  {
+						LOG.info("computed groups for user: " + userInfo.getUserName() + ", groups: " + gName);
+					}
+					userInfo.addGroupDN(groupEntry.groupDN);
+					userInfo.addGroup(gName);
+				}
 			}
-			closeLdapContext();
 		}
 	}
 
-	private void getGroups(UserGroupSink sink, UserInfo userInfo) throws Throwable {
-        //LOG.debug("getGroups(): for user " + userInfo.getUserName());
-		NamingEnumeration<SearchResult> groupSearchResultEnum = null;
+	private Map<UserInfo, List<LdapGroupEntry>> searchGroupsOfUsers(List<UserInfo> users) {
+		Map<UserInfo, List<LdapGroupEntry>> ret = new HashMap<UserInfo, List<LdapGroupEntry>>();
+		LdapSearchContext searchContext = null;
 		try {
-			createLdapContext();
-			int total;
-            // Activate paged results
-			if (pagedResultsEnabled)   {
-				ldapContext.setRequestControls(new Control[]{
-						new PagedResultsControl(pagedResultsSize, Control.NONCRITICAL) });
+			searchContext = openSearchContext();
+			for (UserInfo userInfo : users) {
+				List<LdapGroupEntry> groupEntries = new ArrayList<LdapGroupEntry>();
+				ret.put(userInfo, groupEntries);
+				if (LOG.isDebugEnabled()) {
+					LOG.debug("Searching for groups for user " + userInfo.getUserName() +
+							" using filter " + String.format(extendedGroupSearchFilter, userInfo.getUserFullName(),
+									userInfo.getUserName()));
+				}
+				for (String ou : groupSearchBase) {
+					try {
+						searchGroups(searchContext, ou, extendedGroupSearchFilter, new Object[]{userInfo.getUserFullName(), userInfo.getUserName()}, groupEntries);
+					} catch (Throwable t) {
+						LOG.error("LDAPUserGroupBuilder.getGroups() failed with exception: " + t);
+					}
+				}
 			}
-            for (String ou : groupSearchBase) {
-				byte[] cookie = null;
-				int counter = 0;
-				try {
-					int paged = 0;
-					do {
-						if (!groupSearchFirstEnabled) {
-							if (userInfo == null) {
-								// Should never reach this.
-								LOG.error("No user information provided for group search!");
-								return;
-							}
-							if (LOG.isDebugEnabled()) {
-								LOG.debug("Searching for groups for user " + userInfo.getUserName() +
-										" using filter " + String.format(extendedGroupSearchFilter, userInfo.getUserFullName(),
-												userInfo.getUserName()));
-							}
-							groupSearchResultEnum = ldapContext
-									.search(ou, extendedGroupSearchFilter,
-											new Object[]{userInfo.getUserFullName(), userInfo.getUserName()},
-											groupSearchControls);
-						} else {
-							// If group based search is enabled, then first retrieve all the groups based on the group configuration.
-							groupSearchResultEnum = ldapContext
-									.search(ou, extendedAllGroupsSearchFilter,
-											groupSearchControls);
-						}
-						while (groupSearchResultEnum.hasMore()) {
-							final SearchResult groupEntry = groupSearchResultEnum.next();
-							if (groupEntry != null) {
-								counter++;
-								Attribute groupNameAttr = groupEntry.getAttributes().get(groupNameAttribute);
-                                //System.out.println("getGroups(): Going through all groups");
-								if (groupNameAttr == null) {
-									if (LOG.isInfoEnabled())  {
-										LOG.info(groupNameAttribute + " empty for entry " + groupEntry.getNameInNamespace() +
-												", skipping sync");
-									}
-									continue;
-								}
-                                String groupDN = groupEntry.getNameInNamespace();
-                                //System.out.println("getGroups(): groupDN = " + groupDN);
-                                String gName = (String) groupNameAttr.get();
-								if (groupNameCaseConversionFlag) {
-									if (groupNameLowerCaseFlag) {
-										gName = gName.toLowerCase();
-									} else {
-										gName = gName.toUpperCase();
-									}
-								}
-								if (groupNameRegExInst != null) {
-									gName = groupNameRegExInst.transform(gName);
-								}
-								if (!groupSearchFirstEnabled) {
-									//computedGroups.add(gName);
-									if (LOG.isInfoEnabled())  {
-										LOG.info("computed groups for user: " + userInfo.getUserName() + ", groups: " + gName);
-									}
-                                    userInfo.addGroupDN(groupDN);
-                                    userInfo.addGroup(gName);
-								} else {
-									// If group based search is enabled, then
-									// update the group name to ranger admin
-									// check for group members and populate userInfo object with user's full name and group mapping
-									Attribute groupMemberAttr = groupEntry.getAttributes().get(groupMemberAttributeName);
-									LOG.debug("Update Ranger admin with " + gName);
-									int userCount = 0;
-									if (groupMemberAttr == null || groupMemberAttr.size() <= 0) {
-										LOG.info("No members available for " + gName);
-										sink.addOrUpdateGroup(gName, null);
-										continue;
-									}
-									sink.addOrUpdateGroup(gName);
-									NamingEnumeration<?> userEnum = groupMemberAttr.getAll();
-									while (userEnum.hasMore()) {
-										String originalUserFullName = (String) userEnum.next();
-										if (originalUserFullName == null || originalUserFullName.trim().isEmpty()) {
-											continue;
-										}
-										String userFullName = originalUserFullName.toLowerCase();
-										userCount++;
-										if (!userGroupMap.containsKey(userFullName)) {
-											userInfo = new UserInfo(userFullName, originalUserFullName); // Preserving the original full name for later
-											userGroupMap.put(userFullName, userInfo);
-										} else {
-											userInfo = userGroupMap.get(userFullName);
-                                        }
-                                        LOG.info("Adding " + gName + " to user " + userInfo.getUserFullName());
-                                        userInfo.addGroup(gName);
-                                        userInfo.addGroupDN(groupDN);
-									}
-									LOG.info("No. of members in the group " + gName + " = " + userCount);
-								}
-							}
-						}
-						// Examine the paged results control response
-						Control[] controls = ldapContext.getResponseControls();
-						if (controls != null) {
-							for (Control control : controls) {
-								if (control instanceof PagedResultsResponseControl) {
-									PagedResultsResponseControl prrc =
-											(PagedResultsResponseControl)control;
-									total = prrc.getResultSize();
-									if (total != 0) {
-										LOG.debug("END-OF-PAGE total : " + total);
-									} else {
-										LOG.debug("END-OF-PAGE total : unknown");
-									}
-									cookie = prrc.getCookie();
-								}
-							}
-						} else {
-							LOG.debug("No controls were sent from the server");
-						}
-						// Re-activate paged results
-						if (pagedResultsEnabled)   {
-							LOG.debug(String.format("Fetched paged results round: %s", ++paged));
-							ldapContext.setRequestControls(new Control[]{
-									new PagedResultsControl(pagedResultsSize, cookie, Control.CRITICAL) });
+		} catch (Throwable t) {
+			LOG.error("LDAPUserGroupBuilder.getGroups() failed with exception: " + t);
+		} finally {
+			if (searchContext != null) {
+				searchContext.close();
+			}
+		}
+		return ret;
+	}
+
+	private void searchGroups(LdapSearchContext searchContext, String ou, String filter, Object[] filterArgs, final List<LdapGroupEntry> groupEntries) throws Throwable {
+		searchContext.search(ou, filter, filterArgs, groupSearchControls, new LdapSearchContext.SearchResultHandler() {
+			@Override
+			public void handle(SearchResult groupEntry) throws NamingException {
+				Attribute groupNameAttr = groupEntry.getAttributes().get(groupNameAttribute);
+				if (groupNameAttr == null) {
+					if (LOG.isInfoEnabled())  {
+						LOG.info(groupNameAttribute + " empty for entry " + groupEntry.getNameInNamespace() +
+								", skipping sync");
+					}
+					return;
+				}
+				List<String> members = new ArrayList<String>();
+				if (groupSearchFirstEnabled) {
+					Attribute groupMemberAttr = groupEntry.getAttributes().get(groupMemberAttributeName);
+					if (groupMemberAttr != null) {
+						NamingEnumeration<?> userEnum = groupMemberAttr.getAll();
+						while (userEnum.hasMore()) {
+							members.add((String) userEnum.next());
 						}
-					} while (cookie != null);
-					LOG.info("LDAPUserGroupBuilder.getGroups() completed with group count: "
-							+ counter);
-				} catch (Throwable t) {
-					LOG.error("LDAPUserGroupBuilder.getGroups() failed with exception: " + t);
-					LOG.info("LDAPUserGroupBuilder.getGroups() group count: "
-							+ counter);
+					}
 				}
+				groupEntries.add(new LdapGroupEntry((String) groupNameAttr.get(), groupEntry.getNameInNamespace(), members));
 			}
+		});
+	}
 
-		} finally {
-			if (groupSearchResultEnum != null) {
-				groupSearchResultEnum.close();
+	/*
+	 * Runs the searches on up to searchThreads threads, each with its own LDAP connection.
+	 * @return results of the searches, in the same order
+	 */
+	private <T> List<T> runSearches(List<Callable<T>> searches) throws Throwable {
+		List<T> ret = new ArrayList<T>(searches.size());
+		int threads = Math.min(searchThreads, searches.size());
+
+		if (threads <= 1) {
+			for (Callable<T> search : searches) {
+				ret.add(search.call());
+			}
+		} else {
+			ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+				private final AtomicInteger threadCount = new AtomicInteger();
+
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "LdapUserGroupBuilder-search-" + threadCount.incrementAndGet());
+
+					thread.setDaemon(true);
+
+					return thread;
+				}
+			});
+
+			try {
+				for (Future<T> future : executor.invokeAll(searches)) {
+					try {
+						ret.add(future.get());
+					} catch (ExecutionException e) {
+						throw e.getCause();
+					}
+				}
+			} finally {
+				executor.shutdownNow();
 			}
-			closeLdapContext();
 		}
+
+		return ret;
 	}
 
+	private LdapSearchContext openSearchContext() throws Throwable {
+		return LdapSearchContext.open(config, ldapUrl, ldapBindDn, ldapBindPassword, ldapAuthenticationMechanism, ldapReferral, pagedResultsEnabled, pagedResultsSize);
+	}
+
+	private String userNameTransform(String userName) {
+		if (userNameCaseConversionFlag) {
+			if (userNameLowerCaseFlag) {
+				userName = userName.toLowerCase();
+			} else {
+				userName = userName.toUpperCase();
+			}
+		}
+
+		if (userNameRegExInst != null) {
+			userName = userNameRegExInst.transform(userName);
+		}
+
+		return userName;
+	}
+
+	private String groupNameTransform(String groupName) {
+		if (groupNameCaseConversionFlag) {
+			if (groupNameLowerCaseFlag) {
+				groupName = groupName.toLowerCase();
+			} else {
+				groupName = groupName.toUpperCase();
+			}
+		}
+
+		if (groupNameRegExInst != null) {
+			groupName = groupNameRegExInst.transform(groupName);
+		}
+
+		return groupName;
+	}
 
 	private static String getShortGroupName(String longGroupName) throws InvalidNameException {
 		if (longGroupName == null) {
@@ -978,6 +1041,30 @@ public class LdapUserGroupBuilder extends AbstractUserGroupSource {
 	}
 }
 
+class LdapUserEntry {
+	final String       userName;
+	final String       userFullName;
+	final List<String> groupDNs;
+
+	LdapUserEntry(String userName, String userFullName, List<String> groupDNs) {
+		this.userName     = userName;
+		this.userFullName = userFullName;
+		this.groupDNs     = groupDNs;
+	}
+}
+
+class LdapGroupEntry {
+	final String       groupName;
+	final String       groupDN;
+	final List<String> members;
+
+	LdapGroupEntry(String groupName, String groupDN, List<String> members) {
+		this.groupName = groupName;
+		this.groupDN   = groupDN;
+		this.members   = members;
+	}
+}
+
 class UserInfo {
 	private String userName;
 	private String userFullName;
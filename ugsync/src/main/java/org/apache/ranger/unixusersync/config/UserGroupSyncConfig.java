@@ -235,6 +235,20 @@ public class UserGroupSyncConfig  {
 
     private static final String USERSYNC_RANGER_COOKIE_ENABLED_PROP = "ranger.usersync.cookie.enabled";
 
+	private static final String UGSYNC_SINK_BATCH_SIZE = "ranger.usersync.sink.batch.size";
+	private static final int DEFAULT_UGSYNC_SINK_BATCH_SIZE = 1000;
+
+	private static final String UGSYNC_SINK_BATCH_CONCURRENCY = "ranger.usersync.sink.batch.concurrency";
+	private static final int DEFAULT_UGSYNC_SINK_BATCH_CONCURRENCY = 4;
+
+	private static final String LGSYNC_LDAP_SEARCH_THREADS = "ranger.usersync.ldap.search.threads";
+	private static final int DEFAULT_LGSYNC_LDAP_SEARCH_THREADS = 4;
+
+	private static final String LGSYNC_LDAP_FINGERPRINT_FILE = "ranger.usersync.ldap.fingerprint.file";
+
+	private static final String LGSYNC_LDAP_FINGERPRINT_MAX_AGE = "ranger.usersync.ldap.fingerprint.maxage.millis";
+	private static final long DEFAULT_LGSYNC_LDAP_FINGERPRINT_MAX_AGE = 24 * 60 * 60 * 1000L;
+
     private Properties prop = new Properties();
 
 	private static volatile UserGroupSyncConfig me = null;
@@ -928,6 +942,61 @@ public class UserGroupSyncConfig  {
 		return val == null || Boolean.valueOf(val.trim());
 	}
 
+	/* number of users sent to Ranger Admin in one request; 0 sends users one at a time */
+	public int getSinkBatchSize() {
+		int sinkBatchSize = DEFAULT_UGSYNC_SINK_BATCH_SIZE;
+		String val = prop.getProperty(UGSYNC_SINK_BATCH_SIZE);
+		if (val != null && !val.trim().isEmpty()) {
+			sinkBatchSize = Integer.parseInt(val.trim());
+		}
+		if (sinkBatchSize < 0) {
+			sinkBatchSize = DEFAULT_UGSYNC_SINK_BATCH_SIZE;
+		}
+		return sinkBatchSize;
+	}
+
+	/* number of batches of users sent to Ranger Admin at the same time */
+	public int getSinkBatchConcurrency() {
+		int sinkBatchConcurrency = DEFAULT_UGSYNC_SINK_BATCH_CONCURRENCY;
+		String val = prop.getProperty(UGSYNC_SINK_BATCH_CONCURRENCY);
+		if (val != null && !val.trim().isEmpty()) {
+			sinkBatchConcurrency = Integer.parseInt(val.trim());
+		}
+		if (sinkBatchConcurrency < 1) {
+			sinkBatchConcurrency = DEFAULT_UGSYNC_SINK_BATCH_CONCURRENCY;
+		}
+		return sinkBatchConcurrency;
+	}
+
+	/* number of threads, each with its own LDAP connection, that run the searches of a sync cycle */
+	public int getLdapSearchThreads() {
+		int searchThreads = DEFAULT_LGSYNC_LDAP_SEARCH_THREADS;
+		String val = prop.getProperty(LGSYNC_LDAP_SEARCH_THREADS);
+		if (val != null && !val.trim().isEmpty()) {
+			searchThreads = Integer.parseInt(val.trim());
+		}
+		if (searchThreads < 1) {
+			searchThreads = DEFAULT_LGSYNC_LDAP_SEARCH_THREADS;
+		}
+		return searchThreads;
+	}
+
+	/* file with the users and groups sent to Ranger Admin by the last LDAP sync; null if not configured */
+	public String getLdapFingerprintFile() {
+		String val = prop.getProperty(LGSYNC_LDAP_FINGERPRINT_FILE);
+		return val != null && !val.trim().isEmpty() ? val.trim() : null;
+	}
+
+	/* age after which the LDAP sync fingerprint is discarded, and all users and groups are sent again */
+	public long getLdapFingerprintMaxAge() {
+		long maxAge = DEFAULT_LGSYNC_LDAP_FINGERPRINT_MAX_AGE;
+		String val = prop.getProperty(LGSYNC_LDAP_FINGERPRINT_MAX_AGE);
+		if (val != null && !val.trim().isEmpty()) {
+			maxAge = Long.parseLong(val.trim());
+		}
+		return maxAge;
+	}
+
 
     public String getRoleDelimiter() {
         if (prop != null && prop.containsKey(ROLE_ASSIGNMENT_LIST_DELIMITER)) {
@@ -28,13 +28,22 @@ import java.net.UnknownHostException;
 import java.security.KeyStore;
 import java.security.PrivilegedAction;
 import java.security.SecureRandom;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 
 import javax.net.ssl.HostnameVerifier;
@@ -60,6 +69,7 @@ import org.apache.ranger.unixusersync.model.GetXUserListResponse;
 import org.apache.ranger.unixusersync.model.MUserInfo;
 import org.apache.ranger.unixusersync.model.UgsyncAuditInfo;
 import org.apache.ranger.unixusersync.model.UserGroupInfo;
+import org.apache.ranger.unixusersync.model.UserGroupInfoList;
 import org.apache.ranger.unixusersync.model.XGroupInfo;
 import org.apache.ranger.unixusersync.model.XUserGroupInfo;
 import org.apache.ranger.unixusersync.model.XUserInfo;
@@ -89,6 +99,8 @@ public class PolicyMgrUserGroupBuilder implements UserGroupSink {
 	public static final String PM_USER_LIST_URI  = "/service/xusers/users/";				// GET
 	private static final String PM_ADD_USER_GROUP_INFO_URI = "/service/xusers/users/userinfo";	// POST
 
+	private static final String PM_ADD_USER_GROUP_INFO_BATCH_URI = "/service/xusers/users/userinfo/batch";	// POST
+
 	public static final String PM_GROUP_LIST_URI = "/service/xusers/groups/";				// GET
 	private static final String PM_ADD_GROUP_URI = "/service/xusers/groups/";				// POST
 
@@ -108,9 +120,10 @@ public class PolicyMgrUserGroupBuilder implements UserGroupSink {
 	private boolean isMockRun = false;
 	private String policyMgrBaseUrl;
 
-	private Cookie sessionId=null;
-	private boolean isValidRangerCookie=false;
-	List<NewCookie> cookieList=new ArrayList<>();
+	// updated by the threads that upload batches of users too
+	private volatile Cookie sessionId=null;
+	private volatile boolean isValidRangerCookie=false;
+	volatile List<NewCookie> cookieList=new ArrayList<>();
 
 	private UserGroupSyncConfig  config = UserGroupSyncConfig.getInstance();
 
@@ -148,6 +161,15 @@ public class PolicyMgrUserGroupBuilder implements UserGroupSink {
 	private boolean isRangerCookieEnabled;
 	boolean isStartupFlag = false;
 
+	private int sinkBatchSize;
+	private int sinkBatchConcurrency;
+	private ExecutorService batchUploadExecutor;
+	private List<UserGroupInfo> pendingUserGroupInfos = new ArrayList<UserGroupInfo>();
+	private final Deque<Future<UserGroupInfoList>> batchUploadsInProgress = new ArrayDeque<Future<UserGroupInfoList>>();
+	private int failedBatchCount;
+	private boolean isUserGroupInfoBatchProbed;
+	private Boolean isUserGroupInfoBatchSupported;
+
 	static {
 		try {
 			LOCAL_HOSTNAME = java.net.InetAddress.getLocalHost().getCanonicalHostName();
@@ -173,6 +195,8 @@ public class PolicyMgrUserGroupBuilder implements UserGroupSink {
 		noOfModifiedGroups = 0;
 		isStartupFlag = true;
 		isRangerCookieEnabled = config.isUserSyncRangerCookieEnabled();
+		sinkBatchSize = config.getSinkBatchSize();
+		sinkBatchConcurrency = config.getSinkBatchConcurrency();
 		if (isMockRun) {
 			LOG.setLevel(Level.DEBUG);
 		}
@@ -246,11 +270,11 @@ public class PolicyMgrUserGroupBuilder implements UserGroupSink {
 	private void rebuildUserGroupMap() {
 
 		for(XUserInfo user : xuserList) {
-			addUserToList(user);
+			addUserToMap(user);
 		}
 
 		for(XGroupInfo group : xgroupList) {
-			addGroupToList(group);
+			addGroupToMap(group);
 		}
 
 
@@ -267,6 +291,10 @@ public class PolicyMgrUserGroupBuilder implements UserGroupSink {
 			xuserList.add(aUserInfo);
 		}
 
+		addUserToMap(aUserInfo);
+	}
+
+	private void addUserToMap(XUserInfo aUserInfo) {
 		String userId = aUserInfo.getId();
 
 		if (userId != null) {
@@ -287,6 +315,10 @@ public class PolicyMgrUserGroupBuilder implements UserGroupSink {
 			xgroupList.add(aGroupInfo);
 		}
 
+		addGroupToMap(aGroupInfo);
+	}
+
+	private void addGroupToMap(XGroupInfo aGroupInfo) {
 		if (aGroupInfo.getName() != null) {
 			groupName2XGroupInfoMap.put(aGroupInfo.getName(), aGroupInfo);
 		}
@@ -343,6 +375,12 @@ public class PolicyMgrUserGroupBuilder implements UserGroupSink {
 	@Override
 	public void addOrUpdateUser(String userName, List<String> groups) throws Throwable {
 
+		if (sinkBatchSize > 0 && isUserGroupInfoBatchSupported()) {
+			addOrUpdateUserInBatch(userName, groups != null ? groups : new ArrayList<String>());
+
+			return;
+		}
+
 		UserGroupInfo ugInfo		  = new UserGroupInfo();
 		XUserInfo user = userName2XUserInfoMap.get(userName);
 
@@ -567,6 +605,360 @@ public class PolicyMgrUserGroupBuilder implements UserGroupSink {
 		}
 	}
 
+	/*
+	 * Batched version of addOrUpdateUser(): the user, with all its groups, is added to a batch that is sent to
+	 * Ranger Admin - which adds the missing group memberships and removes the others - once it has sinkBatchSize
+	 * users. Up to sinkBatchConcurrency batches are sent at the same time; the responses are applied to the user
+	 * and group maps in this thread, as later batches are queued and in postUserGroupAuditInfo(). Only used when
+	 * Ranger Admin has the batch endpoint - see isUserGroupInfoBatchSupported().
+	 */
+	private void addOrUpdateUserInBatch(String userName, List<String> groups) {
+		XUserInfo user      = userName2XUserInfoMap.get(userName);
+		boolean   isChanged = true;
+
+		if (user == null) {
+			newUserList.add(userName);
+			for (String group : groups) {
+				if (groupName2XGroupInfoMap.containsKey(group) && !newGroupList.contains(group)) {
+					modifiedGroupList.add(group);
+				} else {
+					newGroupList.add(group);
+				}
+			}
+		} else {
+			List<String> oldGroups    = user.getGroups();
+			List<String> addGroups    = new ArrayList<String>();
+			List<String> delGroups    = new ArrayList<String>();
+			List<String> updateGroups = new ArrayList<String>();
+
+			for (String group : groups) {
+				if (!oldGroups.contains(group)) {
+					addGroups.add(group);
+					if (!groupName2XGroupInfoMap.containsKey(group)) {
+						newGroupList.add(group);
+					} else {
+						modifiedGroupList.add(group);
+					}
+				} else {
+					XGroupInfo groupInfo = groupName2XGroupInfoMap.get(group);
+					if (groupInfo != null && !GROUP_SOURCE_EXTERNAL.equals(groupInfo.getGroupSource())) {
+						updateGroups.add(group);
+					}
+				}
+			}
+
+			for (String group : oldGroups) {
+				if (!groups.contains(group)) {
+					delGroups.add(group);
+				}
+			}
+
+			isChanged = !addGroups.isEmpty() || !delGroups.isEmpty() || !updateGroups.isEmpty();
+
+			if (isStartupFlag) {
+				modifiedGroupList.addAll(oldGroups);
+				modifiedUserList.add(userName);
+			} else {
+				if (isChanged) {
+					modifiedUserList.add(userName);
+				}
+				modifiedGroupList.addAll(updateGroups);
+				modifiedGroupList.addAll(delGroups);
+			}
+		}
+
+		List<String> userRoleList = getUserRoleList(userName, groups);
+
+		if (isMockRun || (!isChanged && userRoleList == null)) {
+			return;
+		}
+
+		XUserInfo xUserInfo = new XUserInfo();
+
+		xUserInfo.setName(userName);
+		xUserInfo.setDescription(userName + " - add from Unix box");
+
+		if (userRoleList != null) {
+			xUserInfo.setUserRoleList(userRoleList);
+		}
+
+		UserGroupInfo ugInfo = new UserGroupInfo();
+
+		ugInfo.setXuserInfo(xUserInfo);
+		ugInfo.setXgroupInfo(getXGroupInfoList(groups));
+
+		pendingUserGroupInfos.add(ugInfo);
+
+		if (pendingUserGroupInfos.size() >= sinkBatchSize) {
+			submitUserGroupInfoBatch();
+		}
+	}
+
+	// role from the user and group role assignment rules, like in addOrUpdateUser(); null if no rule applies
+	private List<String> getUserRoleList(String userName, List<String> groups) {
+		String role = userMap.get(userName);
+
+		if (role == null) {
+			for (String group : groups) {
+				String groupRole = groupMap.get(group);
+
+				if (groupRole != null) {
+					role = groupRole;
+				}
+			}
+		}
+
+		List<String> ret = null;
+
+		if (role != null) {
+			ret = new ArrayList<String>();
+
+			ret.add(role);
+		}
+
+		return ret;
+	}
+
+	private void submitUserGroupInfoBatch() {
+		if (pendingUserGroupInfos.isEmpty()) {
+			return;
+		}
+
+		UserGroupInfoList batch = new UserGroupInfoList();
+
+		batch.setUserGroupInfoList(pendingUserGroupInfos);
+
+		pendingUserGroupInfos = new ArrayList<UserGroupInfo>();
+
+		// serialized here, as the group infos in the batch are shared with groupName2XGroupInfoMap
+		final String jsonString = new GsonBuilder().create().toJson(batch);
+		final int    batchSize  = batch.getUserGroupInfoList().size();
+
+		while (batchUploadsInProgress.size() >= sinkBatchConcurrency) {
+			completeUserGroupInfoBatch(batchUploadsInProgress.poll());
+		}
+
+		if (batchUploadExecutor == null) {
+			batchUploadExecutor = Executors.newFixedThreadPool(sinkBatchConcurrency, new ThreadFactory() {
+				private final AtomicInteger threadCount = new AtomicInteger();
+
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread ret = new Thread(r, "UserGroupBatchUploader-" + threadCount.incrementAndGet());
+
+					ret.setDaemon(true);
+
+					return ret;
+				}
+			});
+		}
+
+		batchUploadsInProgress.add(batchUploadExecutor.submit(new Callable<UserGroupInfoList>() {
+			@Override
+			public UserGroupInfoList call() throws Exception {
+				return addUserGroupInfoBatch(jsonString, batchSize);
+			}
+		}));
+	}
+
+	/*
+	 * @return number of batches that failed, since the last flush
+	 */
+	private int flushUserGroupInfoBatches() {
+		submitUserGroupInfoBatch();
+
+		while (!batchUploadsInProgress.isEmpty()) {
+			completeUserGroupInfoBatch(batchUploadsInProgress.poll());
+		}
+
+		int ret = failedBatchCount;
+
+		failedBatchCount = 0;
+
+		return ret;
+	}
+
+	private void completeUserGroupInfoBatch(Future<UserGroupInfoList> batchUpload) {
+		UserGroupInfoList result = null;
+
+		try {
+			result = batchUpload.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+
+			LOG.error("Interrupted while waiting for user group info batch upload", e);
+		} catch (ExecutionException e) {
+			LOG.error("Failed to add user group info batch", e.getCause());
+		}
+
+		if (result == null || result.getUserGroupInfoList() == null) {
+			// the users of the batch are not in the user map, so they will be sent again in the next sync cycle
+			LOG.error("Failed to add user group info batch");
+
+			failedBatchCount++;
+
+			return;
+		}
+
+		for (UserGroupInfo ugInfo : result.getUserGroupInfoList()) {
+			XUserInfo    xUserInfo  = ugInfo.getXuserInfo();
+			List<String> groupNames = new ArrayList<String>();
+
+			if (ugInfo.getXgroupInfo() != null) {
+				for (XGroupInfo xGroupInfo : ugInfo.getXgroupInfo()) {
+					XGroupInfo group = groupName2XGroupInfoMap.get(xGroupInfo.getName());
+
+					if (group == null) {
+						addGroupToList(xGroupInfo);
+					} else {
+						group.setGroupSource(xGroupInfo.getGroupSource());
+					}
+
+					groupNames.add(xGroupInfo.getName());
+				}
+			}
+
+			XUserInfo user = userName2XUserInfoMap.get(xUserInfo.getName());
+
+			if (user == null) {
+				xUserInfo.setGroupNameList(groupNames);
+
+				xuserList.add(xUserInfo);
+				addUserToMap(xUserInfo);
+			} else {
+				user.setGroupNameList(groupNames);
+			}
+		}
+	}
+
+	private UserGroupInfoList addUserGroupInfoBatch(final String jsonString, final int batchSize) throws Exception {
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("==> PolicyMgrUserGroupBuilder.addUserGroupInfoBatch(" + batchSize + ")");
+		}
+
+		UserGroupInfoList ret;
+
+		if (authenticationType != null && AUTH_KERBEROS.equalsIgnoreCase(authenticationType) && SecureClientLogin.isKerberosCredentialExists(principal, keytab)) {
+			Subject sub = SecureClientLogin.loginUserFromKeytab(principal, keytab, nameRules);
+
+			ret = Subject.doAs(sub, new PrivilegedAction<UserGroupInfoList>() {
+				@Override
+				public UserGroupInfoList run() {
+					return getUserGroupInfoBatch(jsonString);
+				}
+			});
+		} else {
+			ret = getUserGroupInfoBatch(jsonString);
+		}
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("<== PolicyMgrUserGroupBuilder.addUserGroupInfoBatch(" + batchSize + "): ret=" + (ret != null && ret.getUserGroupInfoList() != null ? ret.getUserGroupInfoList().size() : null));
+		}
+
+		return ret;
+	}
+
+	/*
+	 * Ranger Admin versions without the batch endpoint respond with 404 (or 405) to it; users are then added one at a
+	 * time, with addOrUpdateUser(). The endpoint is probed with an empty batch once; if the probe is inconclusive,
+	 * like when Ranger Admin is down, batches are used for this sync cycle and the probe is repeated in the next one.
+	 */
+	private boolean isUserGroupInfoBatchSupported() {
+		if (!isUserGroupInfoBatchProbed) {
+			isUserGroupInfoBatchProbed = true;
+
+			if (!isMockRun) {
+				isUserGroupInfoBatchSupported = probeUserGroupInfoBatch();
+
+				if (Boolean.FALSE.equals(isUserGroupInfoBatchSupported)) {
+					LOG.warn("Ranger Admin does not support " + PM_ADD_USER_GROUP_INFO_BATCH_URI + "; users will be added one at a time, ignoring sink batch size " + sinkBatchSize);
+				}
+			}
+		}
+
+		return !Boolean.FALSE.equals(isUserGroupInfoBatchSupported);
+	}
+
+	private Boolean probeUserGroupInfoBatch() {
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("==> PolicyMgrUserGroupBuilder.probeUserGroupInfoBatch()");
+		}
+
+		Boolean ret = null;
+
+		try {
+			final String jsonString = new GsonBuilder().create().toJson(new UserGroupInfoList());
+
+			if (authenticationType != null && AUTH_KERBEROS.equalsIgnoreCase(authenticationType) && SecureClientLogin.isKerberosCredentialExists(principal, keytab)) {
+				Subject sub = SecureClientLogin.loginUserFromKeytab(principal, keytab, nameRules);
+
+				ret = Subject.doAs(sub, new PrivilegedAction<Boolean>() {
+					@Override
+					public Boolean run() {
+						return getUserGroupInfoBatchSupport(jsonString);
+					}
+				});
+			} else {
+				ret = getUserGroupInfoBatchSupport(jsonString);
+			}
+		} catch (Throwable t) {
+			LOG.error("Failed to check for " + PM_ADD_USER_GROUP_INFO_BATCH_URI + " in Ranger Admin", t);
+		}
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("<== PolicyMgrUserGroupBuilder.probeUserGroupInfoBatch(): ret=" + ret);
+		}
+
+		return ret;
+	}
+
+	private Boolean getUserGroupInfoBatchSupport(String jsonString) {
+		Boolean        ret        = null;
+		ClientResponse clientResp = null;
+
+		try {
+			WebResource r = getClient().resource(getURL(PM_ADD_USER_GROUP_INFO_BATCH_URI));
+
+			clientResp = r.accept(MediaType.APPLICATION_JSON_TYPE).type(MediaType.APPLICATION_JSON_TYPE).post(ClientResponse.class, jsonString);
+		} catch (Throwable t) {
+			LOG.error("Failed to communicate Ranger Admin : ", t);
+		}
+
+		if (clientResp != null) {
+			int status = clientResp.getStatus();
+
+			if (status == HttpServletResponse.SC_NOT_FOUND || status == HttpServletResponse.SC_METHOD_NOT_ALLOWED) {
+				ret = Boolean.FALSE;
+			} else if (status == HttpServletResponse.SC_OK || status == HttpServletResponse.SC_NO_CONTENT) {
+				ret = Boolean.TRUE;
+			} else {
+				LOG.warn("Unexpected response from " + PM_ADD_USER_GROUP_INFO_BATCH_URI + " in Ranger Admin: " + status);
+			}
+
+			clientResp.close();
+		}
+
+		return ret;
+	}
+
+	private UserGroupInfoList getUserGroupInfoBatch(String jsonString) {
+		String response = null;
+
+		if (isRangerCookieEnabled) {
+			response = cookieBasedUploadEntity(jsonString, PM_ADD_USER_GROUP_INFO_BATCH_URI);
+		} else {
+			Client c = getClient();
+			WebResource r = c.resource(getURL(PM_ADD_USER_GROUP_INFO_BATCH_URI));
+			try {
+				response = r.accept(MediaType.APPLICATION_JSON_TYPE).type(MediaType.APPLICATION_JSON_TYPE).post(String.class, jsonString);
+			} catch (Throwable t) {
+				LOG.error("Failed to communicate Ranger Admin : ", t);
+			}
+		}
+
+		return new GsonBuilder().create().fromJson(response, UserGroupInfoList.class);
+	}
+
 	private void buildGroupList() {
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("==> PolicyMgrUserGroupBuilder.buildGroupList()");
@@ -1611,6 +2003,12 @@ public class PolicyMgrUserGroupBuilder implements UserGroupSink {
 	
 	@Override
 	public void postUserGroupAuditInfo(UgsyncAuditInfo ugsyncAuditInfo) throws Throwable {
+		int failedBatchCount = flushUserGroupInfoBatches();
+
+		if (isUserGroupInfoBatchSupported == null) {
+			isUserGroupInfoBatchProbed = false;
+		}
+
 		if (! isMockRun) {
 			addUserGroupAuditInfo(ugsyncAuditInfo);
 		}
@@ -1623,6 +2021,10 @@ public class PolicyMgrUserGroupBuilder implements UserGroupSink {
 		modifiedUserList.clear();
 		newGroupList.clear();
 		modifiedGroupList.clear();
+
+		if (failedBatchCount > 0) {
+			throw new Exception("Failed to add " + failedBatchCount + " user group info batches");
+		}
 	}
 
 	private UgsyncAuditInfo addUserGroupAuditInfo(UgsyncAuditInfo auditInfo) {
@@ -19,26 +19,33 @@
 
 package org.apache.ranger.usergroupsync;
 
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import org.apache.ranger.unixusersync.model.UgsyncAuditInfo;
 import org.apache.ranger.unixusersync.process.PolicyMgrUserGroupBuilder;
 
 public class PolicyMgrUserGroupBuilderTest extends PolicyMgrUserGroupBuilder {
         private Set<String> allGroups;
         private Set<String> allUsers;
+        private Map<String, Set<String>> userGroups;
+        private boolean failAuditInfo;
 
         @Override
         public void init() throws Throwable {
                 allGroups = new HashSet<>();
                 allUsers = new HashSet<>();
+                userGroups = new HashMap<>();
         }
 
         @Override
         public void addOrUpdateUser(String user, List<String> groups) {
                 allGroups.addAll(groups);
                 allUsers.add(user);
+                userGroups.put(user, new HashSet<>(groups));
                 //System.out.println("Username: " + user + " and associated groups: " + groups);
         }
 
@@ -52,6 +59,17 @@ public class PolicyMgrUserGroupBuilderTest extends PolicyMgrUserGroupBuilder {
                 addOrUpdateGroup(group);
         }
 
+        @Override
+        public void postUserGroupAuditInfo(UgsyncAuditInfo ugsyncAuditInfo) throws Throwable {
+                if (failAuditInfo) {
+                        throw new Exception("failed to send a batch of users and groups");
+                }
+        }
+
+        public void setFailAuditInfo(boolean failAuditInfo) {
+                this.failAuditInfo = failAuditInfo;
+        }
+
         public int getTotalUsers() {
                 return allUsers.size();
         }
@@ -68,4 +86,8 @@ public class PolicyMgrUserGroupBuilderTest extends PolicyMgrUserGroupBuilder {
         public Set<String> getAllUsers() {
                 return allUsers;
         }
+
+        public Map<String, Set<String>> getUserGroups() {
+                return userGroups;
+        }
 }
\ No newline at end of file
@@ -21,6 +21,9 @@ package org.apache.ranger.usergroupsync;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
 
 import org.apache.directory.server.annotations.CreateLdapConnectionPool;
 import org.apache.directory.server.core.annotations.ApplyLdifFiles;
@@ -72,6 +75,9 @@ partitions =
 }
 		)
 public class TestLdapUserGroup extends AbstractLdapTestUnit{
+	private static final String LDAP_SEARCH_THREADS = "ranger.usersync.ldap.search.threads";
+	private static final String LDAP_FINGERPRINT_FILE = "ranger.usersync.ldap.fingerprint.file";
+
 	private UserGroupSyncConfig config;
 	private UserGroupSource ldapBuilder;
 
@@ -701,8 +707,107 @@ public class TestLdapUserGroup extends AbstractLdapTestUnit{
 		assertEquals(2, sink.getTotalGroups());
 	}
 
+	@Test
+	public void testParallelSearchMultipleOUs() throws Throwable {
+		setupMultipleOUs(false);
+		PolicyMgrUserGroupBuilderTest serialSink = runSyncCycle(1);
+		PolicyMgrUserGroupBuilderTest parallelSink = runSyncCycle(4);
+		assertEquals(111, parallelSink.getTotalUsers());
+		assertEquals(2, parallelSink.getTotalGroups());
+		assertEquals(serialSink.getAllUsers(), parallelSink.getAllUsers());
+		assertEquals(serialSink.getAllGroups(), parallelSink.getAllGroups());
+		assertEquals(serialSink.getUserGroups(), parallelSink.getUserGroups());
+	}
+
+	@Test
+	public void testParallelSearchMultipleOUsGroupBased() throws Throwable {
+		setupMultipleOUs(true);
+		PolicyMgrUserGroupBuilderTest serialSink = runSyncCycle(1);
+		PolicyMgrUserGroupBuilderTest parallelSink = runSyncCycle(4);
+		assertFalse(parallelSink.getUserGroups().isEmpty());
+		assertEquals(serialSink.getAllUsers(), parallelSink.getAllUsers());
+		assertEquals(serialSink.getAllGroups(), parallelSink.getAllGroups());
+		assertEquals(serialSink.getUserGroups(), parallelSink.getUserGroups());
+	}
+
+	@Test
+	public void testFingerprintSkipsUnchangedUsers() throws Throwable {
+		File fingerprintFile = File.createTempFile("ldap-sync-fingerprint", ".dat");
+		try {
+			assertTrue(fingerprintFile.delete());
+			config.setProperty(LDAP_FINGERPRINT_FILE, fingerprintFile.getAbsolutePath());
+			setupMultipleOUs(false);
+
+			PolicyMgrUserGroupBuilderTest sink = runSyncCycle(4);
+			assertEquals(111, sink.getTotalUsers());
+			assertTrue(fingerprintFile.exists());
+
+			sink = runSyncCycle(4);
+			assertEquals(0, sink.getTotalUsers());
+			assertEquals(0, sink.getTotalGroups());
+		} finally {
+			fingerprintFile.delete();
+		}
+	}
+
+	@Test
+	public void testFingerprintKeptOnFailedSink() throws Throwable {
+		File fingerprintFile = File.createTempFile("ldap-sync-fingerprint", ".dat");
+		try {
+			assertTrue(fingerprintFile.delete());
+			config.setProperty(LDAP_FINGERPRINT_FILE, fingerprintFile.getAbsolutePath());
+			setupMultipleOUs(false);
+
+			ldapBuilder.init();
+			PolicyMgrUserGroupBuilderTest sink = new PolicyMgrUserGroupBuilderTest();
+			sink.init();
+			sink.setFailAuditInfo(true);
+			ldapBuilder.updateSink(sink);
+			assertEquals(111, sink.getTotalUsers());
+			assertFalse(fingerprintFile.exists());
+
+			// the failed cycle is sent again in full, after which there is nothing left to send
+			sink = runSyncCycle(4);
+			assertEquals(111, sink.getTotalUsers());
+			assertEquals(2, sink.getTotalGroups());
+
+			sink = runSyncCycle(4);
+			assertEquals(0, sink.getTotalUsers());
+		} finally {
+			fingerprintFile.delete();
+		}
+	}
+
+	private void setupMultipleOUs(boolean groupSearchFirst) throws Throwable {
+		config.setUserNameAttribute("sAMAccountName");
+		config.setUserSearchBase("cn=users,DC=ranger,DC=qe,DC=hortonworks,DC=com;ou=HadoopUsers,DC=ranger,DC=qe,DC=hortonworks,DC=com;ou=BusinessUsers,DC=ranger,DC=qe,DC=hortonworks,DC=com");
+		config.setUserSearchFilter("cn=*");
+		config.setGroupSearchBase("OU=HdpGroups,OU=HadoopUsers,DC=ranger,DC=qe,DC=hortonworks,DC=com;OU=Groups,DC=ranger,DC=qe,DC=hortonworks,DC=com");
+		config.setGroupSearchFilter("cn=*Group10");
+		config.setUserGroupMemberAttributeName("member");
+		config.setUserObjectClass("organizationalPerson");
+		config.setGroupObjectClass("groupOfNames");
+		config.setGroupSearchEnabled(true);
+		config.setGroupSearchFirstEnabled(groupSearchFirst);
+		config.setUserSearchEnabled(true);
+		config.setDeltaSync(false);
+	}
+
+	private PolicyMgrUserGroupBuilderTest runSyncCycle(int searchThreads) throws Throwable {
+		config.setProperty(LDAP_SEARCH_THREADS, String.valueOf(searchThreads));
+		ldapBuilder = new LdapUserGroupBuilder();
+		ldapBuilder.init();
+		PolicyMgrUserGroupBuilderTest sink = new PolicyMgrUserGroupBuilderTest();
+		sink.init();
+		ldapBuilder.updateSink(sink);
+		return sink;
+	}
+
 	@After
 	public void shutdown() throws Exception {
+		// the config is shared by all tests
+		config.setProperty(LDAP_SEARCH_THREADS, "");
+		config.setProperty(LDAP_FINGERPRINT_FILE, "");
 		if (getService().isStarted()) {
 			getService().shutdown();
 		}